@@ -391,6 +391,7 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
     public int repaint()
     {
         this.frameTime = System.currentTimeMillis();
+        long frameStart = Instrumentation.start();
 
         this.perFrameStatistics.clear();
         this.renderingExceptions.clear(); // Clear the rendering exceptions accumulated during the last frame.
@@ -398,6 +399,9 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
         this.initializeDrawContext(this.dc);
         this.doRepaint(this.dc);
 
+        Instrumentation.stop(Instrumentation.FRAME, frameStart);
+        Instrumentation.endFrame();
+
         ++this.frame;
         long time = System.currentTimeMillis();
         this.frameTime = System.currentTimeMillis() - this.frameTime;
@@ -570,6 +574,7 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
 
     protected void preRender(DrawContext dc)
     {
+        long preRenderStart = Instrumentation.start();
         try
         {
             dc.setPreRenderMode(true);
@@ -582,7 +587,9 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
                     try
                     {
                         dc.setCurrentLayer(layer);
+                        long layerStart = Instrumentation.start();
                         layer.preRender(dc);
+                        Instrumentation.stop(Instrumentation.LAYER_PRE_RENDER, layer, layerStart);
                     }
                     catch (Exception e)
                     {
@@ -607,6 +614,7 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
         finally
         {
             dc.setPreRenderMode(false);
+            Instrumentation.stop(Instrumentation.PRE_RENDER, preRenderStart);
         }
     }
 
@@ -653,7 +661,9 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
                     if (layer != null && layer.isPickEnabled())
                     {
                         dc.setCurrentLayer(layer);
+                        long layerStart = Instrumentation.start();
                         layer.pick(dc, dc.getPickPoint());
+                        Instrumentation.stop(Instrumentation.LAYER_PICK, layer, layerStart);
                     }
                 }
                 catch (Exception e)
@@ -770,6 +780,7 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
     protected void pick(DrawContext dc)
     {
         this.pickTime = System.currentTimeMillis();
+        long pickStart = Instrumentation.start();
         this.lastPickedObjects = null;
         this.lastObjectsInPickRect = null;
 
@@ -800,6 +811,7 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
         {
             dc.disablePickingMode();
             this.pickTime = System.currentTimeMillis() - this.pickTime;
+            Instrumentation.stop(Instrumentation.PICK, pickStart);
         }
     }
 
@@ -879,6 +891,7 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
 
     protected void draw(DrawContext dc)
     {
+        long drawStart = Instrumentation.start();
         try
         {
             // Draw the layers.
@@ -891,7 +904,9 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
                         if (layer != null)
                         {
                             dc.setCurrentLayer(layer);
+                            long layerStart = Instrumentation.start();
                             layer.render(dc);
+                            Instrumentation.stop(Instrumentation.LAYER_RENDER, layer, layerStart);
                         }
                     }
                     catch (Exception e)
@@ -916,6 +931,7 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
                 this.screenCreditController.render(dc);
 
             // Draw the deferred/ordered renderables.
+            long orderedStart = Instrumentation.start();
             dc.setOrderedRenderingMode(true);
 //            dc.applyGroupingFilters();
             dc.applyClutterFilter();
@@ -932,6 +948,7 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
                 }
             }
             dc.setOrderedRenderingMode(false);
+            Instrumentation.stop(Instrumentation.ORDERED_RENDERING, orderedStart);
 
             // Draw the diagnostic displays.
             if (dc.getSurfaceGeometry() != null && dc.getModel() != null && (dc.getModel().isShowWireframeExterior() ||
@@ -962,6 +979,10 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
         {
             Logging.logger().log(Level.SEVERE, Logging.getMessage("BasicSceneController.ExceptionDuringRendering"), e);
         }
+        finally
+        {
+            Instrumentation.stop(Instrumentation.DRAW, drawStart);
+        }
     }
 
     /**
@@ -9,6 +9,7 @@ import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.cache.*;
 import gov.nasa.worldwind.exception.WWRuntimeException;
 import gov.nasa.worldwind.formats.tiff.GeotiffImageReaderSpi;
+import gov.nasa.worldwind.layers.TextureTileLoader;
 import gov.nasa.worldwind.retrieve.RetrievalService;
 import gov.nasa.worldwind.util.*;
 
@@ -84,12 +85,15 @@ public final class WorldWind
             this.remoteRetrievalService.shutdown(true);
         if (this.localRetrievalService != null)
             this.localRetrievalService.shutdown(true);
+        if (this.dataFileStore instanceof Disposable)
+            ((Disposable) this.dataFileStore).dispose();
         if (this.memoryCacheSet != null)
             this.memoryCacheSet.clear();
         if (this.sessionCache != null)
             this.sessionCache.clear();
         if (this.scheduledTaskService != null)
             this.scheduledTaskService.shutdown(true);
+        TextureTileLoader.disposeInstance();
     }
 
     /**
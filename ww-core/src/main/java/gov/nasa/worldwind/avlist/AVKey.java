@@ -83,6 +83,7 @@ public interface AVKey // TODO: Eliminate unused constants, if any
      * <code>FLOAT32</code>, or <code>FLOAT64</code>.
      */
     final String DATA_TYPE = "gov.nasa.worldwind.avkey.DataType";
+    final String DDS_COMPRESSOR_THREAD_POOL_SIZE = "gov.nasa.worldwind.avkey.DDSCompressorThreadPoolSize";
     final String DELETE_CACHE_ON_EXIT = "gov.nasa.worldwind.avkey.DeleteCacheOnExit";
     /**
      * Indicates the World Wind scene's worst-case depth resolution, in meters. This is typically interpreted by the
@@ -157,6 +158,8 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     final String HEADING = "gov.nasa.worldwind.avkey.Heading";
     final String HEIGHT = "gov.nasa.worldwind.avkey.Height";
     final String HIDDEN = "gov.nasa.worldwind.avkey.Hidden";
+    final String HIGH_RESOLUTION_TERRAIN_THREAD_POOL_SIZE =
+        "gov.nasa.worldwind.avkey.HighResolutionTerrainThreadPoolSize";
     final String HORIZONTAL = "gov.nasa.worldwind.avkey.Horizontal";
     final String HOT_SPOT = "gov.nasa.worldwind.avkey.HotSpot";
     final String HOVER_TEXT = "gov.nasa.worldwind.avkey.HoverText";
@@ -180,6 +183,9 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     final String INITIAL_PITCH = "gov.nasa.worldwind.avkey.InitialPitch";
     final String INPUT_HANDLER_CLASS_NAME = "gov.nasa.worldwind.avkey.InputHandlerClassName";
     final String INSET_PIXELS = "gov.nasa.worldwind.avkey.InsetPixels";
+    final String INSTRUMENTATION_DUMP_FILE = "gov.nasa.worldwind.avkey.InstrumentationDumpFile";
+    final String INSTRUMENTATION_ENABLED = "gov.nasa.worldwind.avkey.InstrumentationEnabled";
+    final String INSTRUMENTATION_JMX_ENABLED = "gov.nasa.worldwind.avkey.InstrumentationJMXEnabled";
     final String INT8 = "gov.nasa.worldwind.avkey.Int8";
     final String INT16 = "gov.nasa.worldwind.avkey.Int16";
     final String INT32 = "gov.nasa.worldwind.avkey.Int32";
@@ -219,6 +225,12 @@ public interface AVKey // TODO: Eliminate unused constants, if any
 
     final String MAX_ACTIVE_ALTITUDE = "gov.nasa.worldwind.avkey.MaxActiveAltitude";
     final String MAX_MESSAGE_REPEAT = "gov.nasa.worldwind.avkey.MaxMessageRepeat";
+    /**
+     * Indicates the {@link gov.nasa.worldwind.cache.MemoryCache} implementation created by {@link
+     * gov.nasa.worldwind.cache.BasicMemoryCacheSet#createMemoryCache(long, long)}. The class must provide a public
+     * constructor taking the low water level and the capacity as <code>long</code> arguments.
+     */
+    final String MEMORY_CACHE_CLASS_NAME = "gov.nasa.worldwind.avkey.MemoryCacheClassName";
     final String MEMORY_CACHE_SET_CLASS_NAME = "gov.nasa.worldwind.avkey.MemoryCacheSetClassName";
     /**
      * Indicates the location that MIL-STD-2525 tactical symbols and tactical point graphics retrieve their icons from.
@@ -226,6 +238,17 @@ public interface AVKey // TODO: Eliminate unused constants, if any
      * ZIP/JAR file, or a path to folder on the local file system.
      */
     final String MIL_STD_2525_ICON_RETRIEVER_PATH = "gov.nasa.worldwind.avkey.MilStd2525IconRetrieverPath";
+    /**
+     * Indicates the directory that MIL-STD-2525 tactical symbols cache their icons in on disk. When used as a key, the
+     * corresponding value must be a path to a folder on the local file system. Icons are cached only in memory if no
+     * directory is specified.
+     */
+    final String MIL_STD_2525_ICON_CACHE_PATH = "gov.nasa.worldwind.avkey.MilStd2525IconCachePath";
+    /**
+     * Indicates the number of bytes of icons that MIL-STD-2525 tactical symbols cache in memory. When used as a key,
+     * the corresponding value must be a long integer.
+     */
+    final String MIL_STD_2525_ICON_CACHE_SIZE = "gov.nasa.worldwind.avkey.MilStd2525IconCacheSize";
     final String MIME_TYPE = "gov.nasa.worldwind.avkey.MimeType";
 
     /**
@@ -297,6 +320,10 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     final String PLAY = "gov.nasa.worldwind.avkey.Play";
     final String POSITION = "gov.nasa.worldwind.avkey.Position";
     final String PREVIOUS = "gov.nasa.worldwind.avkey.Previous";
+    final String PREFETCH_BANDWIDTH = "gov.nasa.worldwind.avkey.PrefetchBandwidth";
+    final String PREFETCH_HORIZON = "gov.nasa.worldwind.avkey.PrefetchHorizon";
+    final String PREFETCH_INTERVAL = "gov.nasa.worldwind.avkey.PrefetchInterval";
+    final String PREFETCH_MEMORY_BUDGET = "gov.nasa.worldwind.avkey.PrefetchMemoryBudget";
 
     final String PRODUCER_ENABLE_FULL_PYRAMID = "gov.nasa.worldwind.avkey.Producer.EnableFullPyramid";
 
@@ -355,6 +382,17 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     /** Does not modify the item size when the window changes size. */
     final String RESIZE_KEEP_FIXED_SIZE = "gov.nasa.worldwind.CompassLayer.ResizeKeepFixedSize";
     final String RETAIN_LEVEL_ZERO_TILES = "gov.nasa.worldwind.avkey.RetainLevelZeroTiles";
+    /**
+     * Indicates the number of idle connections per host that the Java runtime keeps for reuse. When specified, {@link
+     * gov.nasa.worldwind.retrieve.HTTPRetriever} sets the JVM-wide <code>http.maxConnections</code> system property to
+     * this value unless the application has already set it.
+     */
+    final String RETRIEVAL_HTTP_MAX_CONNECTIONS = "gov.nasa.worldwind.avkey.RetrievalHttpMaxConnections";
+    /**
+     * Indicates the maximum number of retrievals from a single host that {@link
+     * gov.nasa.worldwind.retrieve.PriorityRetrievalService} runs concurrently.
+     */
+    final String RETRIEVAL_MAX_CONNECTIONS_PER_HOST = "gov.nasa.worldwind.avkey.RetrievalMaxConnectionsPerHost";
     final String RETRIEVAL_POOL_SIZE = "gov.nasa.worldwind.avkey.RetrievalPoolSize";
     final String RETRIEVE_PROPERTIES_FROM_SERVICE = "gov.nasa.worldwind.avkey.RetrievePropertiesFromService";
     final String RETRIEVAL_QUEUE_SIZE = "gov.nasa.worldwind.avkey.RetrievalQueueSize";
@@ -370,6 +408,11 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     final String RIGHT_OF_CENTER = "gov.nasa.worldwind.avkey.RightOfCenter";
     final String ROLL = "gov.nasa.worldwind.avkey.Roll";
     final String ROLLOVER_TEXT = "gov.nasa.worldwind.avkey.RolloverText";
+    /**
+     * Indicates the number of bytes of decoded RPF frames to cache in memory. When used as a key, the corresponding
+     * value must be a long integer.
+     */
+    final String RPF_FRAME_CACHE_SIZE = "gov.nasa.worldwind.avkey.RPFFrameCacheSize";
 
     final String SCHEDULED_TASK_POOL_SIZE = "gov.nasa.worldwind.avkey.ScheduledTaskPoolSize";
     final String SCHEDULED_TASK_SERVICE_CLASS_NAME = "gov.nasa.worldwind.avkey.ScheduledTaskServiceClassName";
@@ -394,6 +437,7 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     final String SERVICE_NAME_LOCAL_RASTER_SERVER = "LocalRasterServer";
     final String SERVICE_NAME_OFFLINE = "Offline";
     final String SESSION_CACHE_CLASS_NAME = "gov.nasa.worldwind.avkey.SessionCacheClassName";
+    final String SHAPEFILE_RANDOM_ACCESS = "gov.nasa.worldwind.avkey.ShapefileRandomAccess";
     final String SHAPE_ATTRIBUTES = "gov.nasa.worldwind.avkey.ShapeAttributes";
     final String SHAPE_CIRCLE = "gov.nasa.worldwind.avkey.ShapeCircle";
     final String SHAPE_ELLIPSE = "gov.nasa.worldwind.avkey.ShapeEllipse";
@@ -430,8 +474,11 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     final String TEXTURE = "gov.nasa.worldwind.avkey.Texture";
     final String TEXTURE_CACHE_SIZE = "gov.nasa.worldwind.avkey.TextureCacheSize";
     final String TEXTURE_COORDINATES = "gov.nasa.worldwind.avkey.TextureCoordinates";
+    final String TEXTURE_DECODE_THREAD_POOL_SIZE = "gov.nasa.worldwind.avkey.TextureDecodeThreadPoolSize";
     final String TEXTURE_FORMAT = "gov.nasa.worldwind.avkey.TextureFormat";
     final String TEXTURE_IMAGE_CACHE_SIZE = "gov.nasa.worldwind.avkey.TextureTileCacheSize";
+    final String TEXTURE_READ_THREAD_POOL_SIZE = "gov.nasa.worldwind.avkey.TextureReadThreadPoolSize";
+    final String TEXTURE_UPLOAD_BUDGET = "gov.nasa.worldwind.avkey.TextureUploadBudget";
     final String TARGET = "gov.nasa.worldwind.avkey.Target";
     final String TASK_POOL_SIZE = "gov.nasa.worldwind.avkey.TaskPoolSize";
     final String TASK_QUEUE_SIZE = "gov.nasa.worldwind.avkey.TaskQueueSize";
@@ -452,6 +499,8 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     final String TILED_RASTER_PRODUCER_LARGE_DATASET_THRESHOLD =
         "gov.nasa.worldwind.avkey.TiledRasterProducerLargeDatasetThreshold";
     final String TILED_RASTER_PRODUCER_LIMIT_MAX_LEVEL = "gov.nasa.worldwind.avkey.TiledRasterProducer.LimitMaxLevel";
+    final String TILED_RASTER_PRODUCER_THREAD_POOL_SIZE =
+        "gov.nasa.worldwind.avkey.TiledRasterProducerThreadPoolSize";
     final String TILT = "gov.nasa.worldwind.avkey.Tilt";
     final String TITLE = "gov.nasa.worldwind.avkey.Title";
     final String TOP = "gov.nasa.worldwind.avkey.Top";
@@ -484,6 +533,7 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     final String VIEW_CLASS_NAME = "gov.nasa.worldwind.avkey.ViewClassName";
     final String VIEW_INPUT_HANDLER_CLASS_NAME = "gov.nasa.worldwind.avkey.ViewInputHandlerClassName";
     final String VIEW_QUIET = "gov.nasa.worldwind.avkey.ViewQuiet";
+    final String VPF_MEMORY_MAPPED_TABLES = "gov.nasa.worldwind.avkey.VPFMemoryMappedTables";
 
     // Viewing operations
     final String VIEW_OPERATION = "gov.nasa.worldwind.avkey.ViewOperation";
@@ -514,4 +564,6 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     final String WORLD_WIND_DOT_NET_LAYER_SET = "gov.nasa.worldwind.avkey.WorldWindDotNetLayerSet";
     final String WORLD_WIND_DOT_NET_PERMANENT_DIRECTORY = "gov.nasa.worldwind.avkey.WorldWindDotNetPermanentDirectory";
     final String WORLD_WINDOW_CLASS_NAME = "gov.nasa.worldwind.avkey.WorldWindowClassName";
+
+    final String XML_PARSER_COMPACT_FIELDS = "gov.nasa.worldwind.avkey.XMLParserCompactFields";
 }
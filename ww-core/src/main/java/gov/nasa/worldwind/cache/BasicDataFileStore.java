@@ -452,12 +452,29 @@ public class BasicDataFileStore extends AbstractFileStore
         this.db.add(address, newEntry);
         newEntry.state = DBEntry.PENDING;
 
-        Retriever retriever = URLRetriever.createRetriever(url, new PostProcessor(address, url, saveInLocalCache));
+        Retriever retriever = URLRetriever.createRetriever(url,
+            this.createPostProcessor(address, url, saveInLocalCache));
 
         if (retriever != null && !WorldWind.getRetrievalService().contains(retriever))
             WorldWind.getRetrievalService().runRetriever(retriever);
     }
 
+    /**
+     * Creates the post-processor that saves a file retrieved by {@link #makeLocal(String, java.net.URL, boolean)}.
+     * Subclasses may override this method to customize how retrieved files are saved.
+     *
+     * @param address          the name used to identify the cached file.
+     * @param url              the URL to obtain the file.
+     * @param saveInLocalCache <code>true</code> to add the file to the cache, or <code>false</code> to save it in a
+     *                         temporary location.
+     *
+     * @return the post-processor.
+     */
+    protected PostProcessor createPostProcessor(String address, URL url, boolean saveInLocalCache)
+    {
+        return new PostProcessor(address, url, saveInLocalCache);
+    }
+
     protected class PostProcessor extends AbstractRetrievalPostProcessor
     {
         protected String address;
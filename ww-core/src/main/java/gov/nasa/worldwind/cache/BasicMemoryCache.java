@@ -5,7 +5,7 @@
  */
 package gov.nasa.worldwind.cache;
 
-import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.*;
 
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -321,14 +321,21 @@ public class BasicMemoryCache implements MemoryCache
         {
             entry = this.entries.get(key);
 
-            if (entry == null)
-                return null;
+            if (entry != null)
+            {
+                entry.lastUsed = System.nanoTime(); // nanoTime overflows once every 292 years
+                // which will result in a slowing of the cache
+                // until ww is restarted or the cache is cleared.
+            }
+        }
 
-            entry.lastUsed = System.nanoTime(); // nanoTime overflows once every 292 years
-            // which will result in a slowing of the cache
-            // until ww is restarted or the cache is cleared.
+        if (entry == null)
+        {
+            Instrumentation.count(Instrumentation.MEMORY_CACHE_MISSES, 1);
+            return null;
         }
 
+        Instrumentation.count(Instrumentation.MEMORY_CACHE_HITS, 1);
         return entry.clientObject;
     }
 
@@ -5,6 +5,8 @@
  */
 package gov.nasa.worldwind.cache;
 
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.util.*;
 
 import java.util.*;
@@ -63,6 +65,35 @@ public class BasicMemoryCacheSet implements MemoryCacheSet
         return cache;
     }
 
+    /**
+     * Creates a new memory cache whose class is identified by the configuration property {@link
+     * AVKey#MEMORY_CACHE_CLASS_NAME}. If the property is not specified or the class cannot be instantiated, this
+     * returns a {@link BasicMemoryCache}. The cache is not added to any cache set.
+     *
+     * @param loWater  the low water level of the new cache.
+     * @param capacity the capacity of the new cache.
+     *
+     * @return a new memory cache.
+     */
+    public static MemoryCache createMemoryCache(long loWater, long capacity)
+    {
+        String className = Configuration.getStringValue(AVKey.MEMORY_CACHE_CLASS_NAME);
+        if (WWUtil.isEmpty(className))
+            return new BasicMemoryCache(loWater, capacity);
+
+        try
+        {
+            Class<?> c = Class.forName(className.trim());
+            return (MemoryCache) c.getConstructor(Long.TYPE, Long.TYPE).newInstance(loWater, capacity);
+        }
+        catch (Exception e)
+        {
+            String message = Logging.getMessage("WorldWind.ExceptionCreatingComponent", className);
+            Logging.logger().log(java.util.logging.Level.WARNING, message, e);
+            return new BasicMemoryCache(loWater, capacity);
+        }
+    }
+
     public synchronized void clear()
     {
         for (MemoryCache cache : this.caches.values())
@@ -0,0 +1,33 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A file returned by {@link FileStore#newFile(String)} whose contents the file store keeps somewhere other than at the
+ * file's path, such as in a {@link TileArchive}. Data written with {@link #save(java.nio.ByteBuffer, long)} is kept by
+ * the file store. Data written to the file's path by other means is kept in an ordinary file, which the file store
+ * continues to find.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public interface FileStoreFile
+{
+    /**
+     * Writes the buffer's contents, from its beginning to its limit, to the file store.
+     *
+     * @param buffer     the data to write.
+     * @param expiryTime the time in milliseconds since the Epoch at which the data expires, or 0 if it does not
+     *                   expire.
+     *
+     * @throws IllegalArgumentException if the buffer is null.
+     * @throws IOException              if the data can't be written.
+     */
+    void save(ByteBuffer buffer, long expiryTime) throws IOException;
+}
@@ -0,0 +1,600 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.Logging;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A {@link MemoryCache} that uses a lock-striped segmented LRU eviction policy. Keys are distributed among a fixed
+ * number of independently locked segments, so concurrent threads operating on different keys rarely contend. Each
+ * segment holds a <i>probationary</i> and a <i>protected</i> region, both kept in access order. New entries enter the
+ * probationary region and are promoted to the protected region on their first subsequent access. When the protected
+ * region exceeds its share of the cache capacity its least recently used entries are demoted back to the
+ * probationary region. Eviction removes the least recently used probationary entry of a segment, falling back to the
+ * protected region only when the probationary region is empty.
+ * <p/>
+ * Access, insertion, removal and eviction of a single entry are amortized O(1). Eviction visits the segments in
+ * round-robin order, so the policy approximates, but does not exactly match, a global LRU ordering. As with {@link
+ * BasicMemoryCache}, the cache evicts entries until its used capacity falls to the low water level whenever an add
+ * would exceed the capacity, and {@link MemoryCache.CacheListener}s are notified of every removal. Listeners are called
+ * after the segment lock has been released.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public class SegmentedMemoryCache implements MemoryCache
+{
+    /** The default number of segments. Must be a power of two. */
+    protected static final int DEFAULT_SEGMENT_COUNT = 16;
+    /** The default fraction of the cache capacity reserved for protected entries. */
+    protected static final double DEFAULT_PROTECTED_RATIO = 0.8;
+
+    protected static class CacheEntry
+    {
+        protected final Object key;
+        protected final Object clientObject;
+        protected final long clientObjectSize;
+        protected boolean isProtected;
+
+        protected CacheEntry(Object key, Object clientObject, long clientObjectSize)
+        {
+            this.key = key;
+            this.clientObject = clientObject;
+            this.clientObjectSize = clientObjectSize;
+        }
+
+        public String toString()
+        {
+            return key.toString() + " " + clientObject.toString() + " " + clientObjectSize + " "
+                + (isProtected ? "protected" : "probationary");
+        }
+    }
+
+    /** One lock stripe of the cache. All access to a segment's fields must be synchronized on the segment. */
+    protected static class Segment
+    {
+        // Access-ordered maps: iteration starts at the least recently used entry.
+        protected final LinkedHashMap<Object, CacheEntry> probation =
+            new LinkedHashMap<Object, CacheEntry>(16, 0.75f, true);
+        protected final LinkedHashMap<Object, CacheEntry> protectedEntries =
+            new LinkedHashMap<Object, CacheEntry>(16, 0.75f, true);
+        protected long protectedSize;
+
+        protected CacheEntry get(Object key)
+        {
+            CacheEntry entry = this.protectedEntries.get(key);
+            return entry != null ? entry : this.probation.get(key);
+        }
+
+        protected boolean containsKey(Object key)
+        {
+            return this.protectedEntries.containsKey(key) || this.probation.containsKey(key);
+        }
+
+        protected CacheEntry remove(Object key)
+        {
+            CacheEntry entry = this.protectedEntries.remove(key);
+            if (entry != null)
+            {
+                this.protectedSize -= entry.clientObjectSize;
+                return entry;
+            }
+
+            return this.probation.remove(key);
+        }
+
+        /**
+         * Moves an entry from the probationary region to the protected region, demoting the protected region's least
+         * recently used entries while it exceeds <code>protectedCapacity</code>.
+         *
+         * @param entry             the probationary entry to promote.
+         * @param protectedCapacity the maximum size of this segment's protected region.
+         */
+        protected void promote(CacheEntry entry, long protectedCapacity)
+        {
+            this.probation.remove(entry.key);
+            entry.isProtected = true;
+            this.protectedEntries.put(entry.key, entry);
+            this.protectedSize += entry.clientObjectSize;
+
+            Iterator<CacheEntry> iter = this.protectedEntries.values().iterator();
+            while (this.protectedSize > protectedCapacity && iter.hasNext())
+            {
+                CacheEntry eldest = iter.next();
+                if (eldest == entry)
+                    break; // never demote the entry just promoted
+
+                iter.remove();
+                this.protectedSize -= eldest.clientObjectSize;
+                eldest.isProtected = false;
+                this.probation.put(eldest.key, eldest);
+            }
+        }
+
+        /**
+         * Removes and returns this segment's eviction victim, or null if the segment is empty.
+         *
+         * @return the removed entry, or null if the segment is empty.
+         */
+        protected CacheEntry evict()
+        {
+            Iterator<CacheEntry> iter = this.probation.values().iterator();
+            if (iter.hasNext())
+            {
+                CacheEntry entry = iter.next();
+                iter.remove();
+                return entry;
+            }
+
+            iter = this.protectedEntries.values().iterator();
+            if (iter.hasNext())
+            {
+                CacheEntry entry = iter.next();
+                iter.remove();
+                this.protectedSize -= entry.clientObjectSize;
+                return entry;
+            }
+
+            return null;
+        }
+
+        protected void drainTo(List<CacheEntry> list)
+        {
+            list.addAll(this.probation.values());
+            list.addAll(this.protectedEntries.values());
+            this.probation.clear();
+            this.protectedEntries.clear();
+            this.protectedSize = 0;
+        }
+    }
+
+    protected final Segment[] segments;
+    protected final int segmentMask;
+    protected final double protectedRatio;
+    protected final CopyOnWriteArrayList<MemoryCache.CacheListener> listeners =
+        new CopyOnWriteArrayList<MemoryCache.CacheListener>();
+    protected final AtomicLong capacity = new AtomicLong();
+    protected final AtomicLong currentUsedCapacity = new AtomicLong();
+    protected final AtomicInteger numObjects = new AtomicInteger();
+    protected final AtomicInteger evictionCursor = new AtomicInteger();
+    protected volatile long lowWater;
+    protected String name = "";
+
+    /**
+     * Constructs a new cache using <code>capacity</code> for maximum size, and <code>loWater</code> for the low water.
+     * The cache uses the default number of segments and protected region ratio.
+     *
+     * @param loWater  the low water level.
+     * @param capacity the maximum capacity.
+     */
+    public SegmentedMemoryCache(long loWater, long capacity)
+    {
+        this(loWater, capacity, DEFAULT_SEGMENT_COUNT, DEFAULT_PROTECTED_RATIO);
+    }
+
+    /**
+     * Constructs a new cache with a specified number of lock stripes and protected region size.
+     *
+     * @param loWater        the low water level.
+     * @param capacity       the maximum capacity.
+     * @param segmentCount   the number of lock stripes. Rounded up to the next power of two.
+     * @param protectedRatio the fraction of the capacity, in the range [0, 1], available to protected entries.
+     *
+     * @throws IllegalArgumentException if <code>segmentCount</code> is less than 1 or <code>protectedRatio</code> is
+     *                                  outside the range [0, 1].
+     */
+    public SegmentedMemoryCache(long loWater, long capacity, int segmentCount, double protectedRatio)
+    {
+        if (segmentCount < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "segmentCount < 1");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (protectedRatio < 0 || protectedRatio > 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "protectedRatio");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        int count = 1;
+        while (count < segmentCount)
+        {
+            count <<= 1;
+        }
+
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++)
+        {
+            this.segments[i] = new Segment();
+        }
+
+        this.segmentMask = count - 1;
+        this.protectedRatio = protectedRatio;
+        this.capacity.set(capacity);
+        this.lowWater = loWater;
+    }
+
+    /** @return the number of objects currently stored in this cache. */
+    public int getNumObjects()
+    {
+        return this.numObjects.get();
+    }
+
+    /** @return the capacity of the cache. */
+    public long getCapacity()
+    {
+        return this.capacity.get();
+    }
+
+    /** @return the number of cache units that the cache currently holds. */
+    public long getUsedCapacity()
+    {
+        return this.currentUsedCapacity.get();
+    }
+
+    /** @return the amount of free space left in the cache (in cache units). */
+    public long getFreeCapacity()
+    {
+        return Math.max(this.capacity.get() - this.currentUsedCapacity.get(), 0);
+    }
+
+    public void setName(String name)
+    {
+        this.name = name != null ? name : "";
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Adds a cache listener. Listeners are notified when an item is removed from the cache.
+     *
+     * @param listener The new <code>CacheListener</code>.
+     *
+     * @throws IllegalArgumentException is <code>listener</code> is null.
+     */
+    public void addCacheListener(MemoryCache.CacheListener listener)
+    {
+        if (listener == null)
+        {
+            String message = Logging.getMessage("BasicMemoryCache.nullListenerAdded");
+            Logging.logger().warning(message);
+            throw new IllegalArgumentException(message);
+        }
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Removes a cache listener.
+     *
+     * @param listener The <code>CacheListener</code> to remove.
+     *
+     * @throws IllegalArgumentException if <code>listener</code> is null.
+     */
+    public void removeCacheListener(MemoryCache.CacheListener listener)
+    {
+        if (listener == null)
+        {
+            String message = Logging.getMessage("BasicMemoryCache.nullListenerRemoved");
+            Logging.logger().warning(message);
+            throw new IllegalArgumentException(message);
+        }
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Sets the new capacity for the cache. As with {@link BasicMemoryCache#setCapacity(long)}, entries are not removed
+     * until the next add that exceeds the new capacity, and the low water level is left unchanged.
+     *
+     * @param newCapacity the new capacity of the cache.
+     */
+    public void setCapacity(long newCapacity)
+    {
+        this.capacity.set(newCapacity);
+    }
+
+    /**
+     * Sets the new low water level in cache units. When the cache fills, it removes items until it reaches the low
+     * water level.
+     *
+     * @param loWater the new low water level.
+     */
+    public void setLowWater(long loWater)
+    {
+        if (loWater < this.capacity.get() && loWater >= 0)
+        {
+            this.lowWater = loWater;
+        }
+    }
+
+    /**
+     * Returns the low water level in cache units.
+     *
+     * @return the low water level.
+     */
+    public long getLowWater()
+    {
+        return this.lowWater;
+    }
+
+    /**
+     * Returns true if the cache contains the item referenced by key. This does not mark the item as accessed.
+     *
+     * @param key The key of a specific object.
+     *
+     * @return true if the cache holds the item referenced by key.
+     *
+     * @throws IllegalArgumentException if <code>key</code> is null.
+     */
+    public boolean contains(Object key)
+    {
+        if (key == null)
+        {
+            String msg = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        Segment segment = this.segmentFor(key);
+        synchronized (segment)
+        {
+            return segment.containsKey(key);
+        }
+    }
+
+    /**
+     * Adds an object to the cache. The add fails if the object or key is null, or if the size is zero, negative or
+     * greater than the maximum capacity.
+     *
+     * @param key              The unique reference key that identifies this object.
+     * @param clientObject     The actual object to be cached.
+     * @param clientObjectSize The size of the object in cache units.
+     *
+     * @return returns true if clientObject was added, false otherwise.
+     */
+    public boolean add(Object key, Object clientObject, long clientObjectSize)
+    {
+        long cap = this.capacity.get();
+
+        if (key == null || clientObject == null || clientObjectSize <= 0 || clientObjectSize > cap)
+        {
+            String message = Logging.getMessage("BasicMemoryCache.CacheItemNotAdded");
+
+            if (clientObjectSize > cap)
+            {
+                message += " - " + Logging.getMessage("BasicMemoryCache.ItemTooLargeForCache");
+            }
+
+            Logging.logger().warning(message);
+
+            return false;
+        }
+
+        CacheEntry entry = new CacheEntry(key, clientObject, clientObjectSize);
+        Segment segment = this.segmentFor(key);
+
+        CacheEntry existing;
+        synchronized (segment)
+        {
+            existing = segment.remove(key);
+            if (existing != null)
+                this.currentUsedCapacity.addAndGet(-existing.clientObjectSize);
+        }
+
+        if (existing != null) // replacing
+        {
+            this.numObjects.decrementAndGet();
+            this.notifyRemoved(existing);
+        }
+
+        if (this.currentUsedCapacity.get() + clientObjectSize > cap)
+        {
+            this.makeSpace(clientObjectSize);
+        }
+
+        synchronized (segment)
+        {
+            // Another thread may have added the same key while the segment was unlocked.
+            existing = segment.remove(key);
+            if (existing != null)
+                this.currentUsedCapacity.addAndGet(-existing.clientObjectSize);
+
+            segment.probation.put(key, entry);
+            this.currentUsedCapacity.addAndGet(clientObjectSize);
+        }
+
+        if (existing != null)
+            this.notifyRemoved(existing);
+        else
+            this.numObjects.incrementAndGet();
+
+        return true;
+    }
+
+    public boolean add(Object key, Cacheable clientObject)
+    {
+        return this.add(key, clientObject, clientObject.getSizeInBytes());
+    }
+
+    /**
+     * Remove the object reference by key from the cache. If no object with the corresponding key is found, this method
+     * returns immediately.
+     *
+     * @param key the key of the object to be removed.
+     */
+    public void remove(Object key)
+    {
+        if (key == null)
+        {
+            Logging.logger().finer("nullValue.KeyIsNull");
+
+            return;
+        }
+
+        Segment segment = this.segmentFor(key);
+        CacheEntry entry;
+        synchronized (segment)
+        {
+            entry = segment.remove(key);
+            if (entry != null)
+                this.currentUsedCapacity.addAndGet(-entry.clientObjectSize);
+        }
+
+        if (entry != null)
+        {
+            this.numObjects.decrementAndGet();
+            this.notifyRemoved(entry);
+        }
+    }
+
+    /**
+     * Obtain the object referenced by key without removing it, and mark it as recently used. A probationary entry is
+     * promoted to the protected region.
+     *
+     * @param key The key for the object to be found.
+     *
+     * @return the object referenced by key if it is present, null otherwise.
+     */
+    public Object getObject(Object key)
+    {
+        if (key == null)
+        {
+            Logging.logger().finer("nullValue.KeyIsNull");
+
+            return null;
+        }
+
+        Segment segment = this.segmentFor(key);
+        synchronized (segment)
+        {
+            CacheEntry entry = segment.get(key); // moves the entry to the most recently used position
+
+            if (entry == null)
+                return null;
+
+            if (!entry.isProtected)
+                segment.promote(entry, this.getSegmentProtectedCapacity());
+
+            return entry.clientObject;
+        }
+    }
+
+    /** Empties the cache. */
+    public void clear()
+    {
+        ArrayList<CacheEntry> removed = new ArrayList<CacheEntry>();
+
+        for (Segment segment : this.segments)
+        {
+            removed.clear();
+
+            synchronized (segment)
+            {
+                segment.drainTo(removed);
+                for (CacheEntry entry : removed)
+                {
+                    this.currentUsedCapacity.addAndGet(-entry.clientObjectSize);
+                }
+            }
+
+            this.numObjects.addAndGet(-removed.size());
+            for (CacheEntry entry : removed)
+            {
+                this.notifyRemoved(entry);
+            }
+        }
+    }
+
+    protected Segment segmentFor(Object key)
+    {
+        // Spread the hash so that keys differing only in their upper bits map to different segments.
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        h ^= (h >>> 7);
+
+        return this.segments[h & this.segmentMask];
+    }
+
+    protected long getSegmentProtectedCapacity()
+    {
+        return (long) (this.protectedRatio * this.capacity.get()) / this.segments.length;
+    }
+
+    /**
+     * Makes at least <code>spaceRequired</code> space in the cache, and continues removing entries until the used
+     * capacity is at or below the low water level. Segments are visited in round-robin order and each visit evicts a
+     * single entry, so each segment lock is held only for one O(1) removal.
+     *
+     * @param spaceRequired the amount of space required.
+     */
+    protected void makeSpace(long spaceRequired)
+    {
+        if (spaceRequired > this.capacity.get() || spaceRequired < 0)
+            return;
+
+        int emptyVisits = 0;
+        while ((this.getFreeCapacity() < spaceRequired || this.getUsedCapacity() > this.lowWater)
+            && emptyVisits < this.segments.length)
+        {
+            Segment segment = this.segments[this.evictionCursor.getAndIncrement() & this.segmentMask];
+
+            CacheEntry entry;
+            synchronized (segment)
+            {
+                entry = segment.evict();
+                if (entry != null)
+                    this.currentUsedCapacity.addAndGet(-entry.clientObjectSize);
+            }
+
+            if (entry == null)
+            {
+                emptyVisits++;
+                continue;
+            }
+
+            emptyVisits = 0;
+            this.numObjects.decrementAndGet();
+            this.notifyRemoved(entry);
+        }
+    }
+
+    protected void notifyRemoved(CacheEntry entry)
+    {
+        for (MemoryCache.CacheListener listener : this.listeners)
+        {
+            try
+            {
+                listener.entryRemoved(entry.key, entry.clientObject);
+            }
+            catch (Exception e)
+            {
+                listener.removalException(e, entry.key, entry.clientObject);
+            }
+        }
+    }
+
+    /**
+     * a <code>String</code> representation of this object is returned.&nbsp; This representation consists of maximum
+     * size, current used capacity and number of currently cached items.
+     *
+     * @return a <code>String</code> representation of this object.
+     */
+    @Override
+    public String toString()
+    {
+        return "MemoryCache " + this.name + " max size = " + this.getCapacity() + " current size = "
+            + this.currentUsedCapacity.get() + " number of items: " + this.getNumObjects();
+    }
+}
@@ -0,0 +1,1381 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+/**
+ * Stores many small files, typically image and elevation tiles, in a single archive file. Entries are identified by
+ * the same relative path used to name the files in a file store, e.g., {@link gov.nasa.worldwind.util.Tile#getPath()}.
+ * <p/>
+ * The archive is a header followed by a sequence of records. Each record holds an entry's key, its modification time,
+ * its expiration time, its data and a checksum of its data. Records are only ever appended: replacing an entry appends
+ * a new record, and removing an entry appends a delete record. The location of every live entry is kept in memory.
+ * This index is saved to an index file next to the archive when the archive is closed or compacted, so that opening the
+ * archive scans only the records written since the index was saved. Entry data is read from read-only memory-mapped
+ * segments of the archive file and is verified against its checksum; a damaged entry is removed and reported as
+ * missing.
+ * <p/>
+ * Replaced and removed records are dead space. When the dead space exceeds the archive's compaction ratio, the archive
+ * is compacted on a background thread by copying its live entries to a new file, which then replaces
+ * the archive. Entries may be read and written while the entries are copied. Entries whose expiration time has passed
+ * are discarded during compaction.
+ * <p/>
+ * Archives are thread safe. An archive file is locked while it's open and can't be opened by more than one archive
+ * instance at a time.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public class TileArchive
+{
+    /** The protocol of the URLs returned by {@link #getEntryURL(String)}. */
+    public static final String URL_PROTOCOL = "wwtile";
+
+    /** The suffix appended to the archive file's name to form the name of its index file. */
+    public static final String INDEX_FILE_SUFFIX = ".idx";
+
+    protected static final int MAGIC_NUMBER = 0x57575441; // "WWTA"
+    protected static final int INDEX_MAGIC_NUMBER = 0x57575449; // "WWTI"
+    protected static final int VERSION = 1;
+    /** Magic number (4), version (4) and archive identifier (8). */
+    protected static final int HEADER_SIZE = 16;
+
+    protected static final byte RECORD_ENTRY = 1;
+    protected static final byte RECORD_DELETE = 2;
+    /** Type (1), key length (2), modification time (8), expiration time (8), data length (4) and data CRC (4). */
+    protected static final int RECORD_HEADER_SIZE = 27;
+    /**
+     * Record offset (8), record length (4), data length (4), data CRC (4), modification time (8) and expiration time
+     * (8).
+     */
+    protected static final int INDEX_ENTRY_SIZE = 36;
+    protected static final int MAX_KEY_LENGTH = Short.MAX_VALUE;
+
+    protected static final int DEFAULT_SEGMENT_SIZE = 1 << 26; // 64 MB
+    protected static final int DEFAULT_REMAP_THRESHOLD = 1 << 20; // 1 MB
+    protected static final double DEFAULT_COMPACTION_RATIO = 0.5;
+    protected static final long DEFAULT_MIN_COMPACTION_SIZE = 1L << 24; // 16 MB
+
+    /**
+     * The thread that compacts archives in the background. Compaction doesn't run on a shared task service because
+     * interrupting a thread that's using the archive file's channel closes the channel.
+     */
+    protected static ExecutorService compactionService;
+
+    /** Describes the location and metadata of one live entry. */
+    protected static class Entry
+    {
+        protected long recordOffset;
+        protected int recordLength;
+        protected int dataLength;
+        protected int crc;
+        protected long lastModified;
+        protected long expiryTime;
+
+        protected Entry copy(long recordOffset)
+        {
+            Entry entry = new Entry();
+            entry.recordOffset = recordOffset;
+            entry.recordLength = this.recordLength;
+            entry.dataLength = this.dataLength;
+            entry.crc = this.crc;
+            entry.lastModified = this.lastModified;
+            entry.expiryTime = this.expiryTime;
+
+            return entry;
+        }
+
+        protected long getDataOffset()
+        {
+            return this.recordOffset + this.recordLength - this.dataLength;
+        }
+    }
+
+    protected final File file;
+    protected final File indexFile;
+    protected RandomAccessFile raf;
+    protected FileChannel channel;
+    protected FileLock lock;
+    protected Map<String, Entry> index = new HashMap<String, Entry>();
+    /** Identifies this archive file. Compaction creates a new archive file with a new identifier. */
+    protected long archiveId;
+    /** The end of the last valid record. New records are appended here. */
+    protected long size;
+    /** The number of bytes occupied by replaced entries and delete records. */
+    protected long deadBytes;
+    protected int segmentSize = DEFAULT_SEGMENT_SIZE;
+    protected MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    protected double compactionRatio = DEFAULT_COMPACTION_RATIO;
+    protected long minCompactionSize = DEFAULT_MIN_COMPACTION_SIZE;
+    /** Automatic compaction is not attempted again until the archive reaches this size after a failed compaction. */
+    protected long compactionRetrySize;
+    protected boolean compacting;
+    protected boolean compactionScheduled;
+    protected Runnable compactionTask = new CompactionTask();
+    protected URLStreamHandler urlStreamHandler = new ArchiveURLStreamHandler();
+
+    /**
+     * Opens an archive file, creating it if it does not exist.
+     *
+     * @param file the archive file.
+     *
+     * @throws IllegalArgumentException if the file is null.
+     * @throws IOException              if the file can't be created or read, is not an archive file, or is in use by
+     *                                  another archive.
+     */
+    public TileArchive(File file) throws IOException
+    {
+        if (file == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.file = file;
+        this.indexFile = new File(file.getPath() + INDEX_FILE_SUFFIX);
+        this.open();
+    }
+
+    /**
+     * Returns the archive file.
+     *
+     * @return the archive file.
+     */
+    public File getFile()
+    {
+        return this.file;
+    }
+
+    /**
+     * Indicates the fraction of the archive that may be dead space before the archive is compacted.
+     *
+     * @return the compaction ratio.
+     */
+    public double getCompactionRatio()
+    {
+        return this.compactionRatio;
+    }
+
+    /**
+     * Specifies the fraction of the archive that may be dead space before the archive is compacted. The default is
+     * 0.5.
+     *
+     * @param compactionRatio the compaction ratio, between 0 and 1.
+     *
+     * @throws IllegalArgumentException if the ratio is not between 0 and 1.
+     */
+    public void setCompactionRatio(double compactionRatio)
+    {
+        if (compactionRatio < 0 || compactionRatio > 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", compactionRatio);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.compactionRatio = compactionRatio;
+    }
+
+    /**
+     * Indicates the archive size, in bytes, below which the archive is never compacted automatically.
+     *
+     * @return the minimum archive size for automatic compaction.
+     */
+    public long getMinCompactionSize()
+    {
+        return this.minCompactionSize;
+    }
+
+    /**
+     * Specifies the archive size, in bytes, below which the archive is never compacted automatically. The default is
+     * 16 MB.
+     *
+     * @param minCompactionSize the minimum archive size for automatic compaction.
+     */
+    public void setMinCompactionSize(long minCompactionSize)
+    {
+        this.minCompactionSize = minCompactionSize;
+    }
+
+    /**
+     * Indicates the number of live entries in the archive.
+     *
+     * @return the number of entries.
+     */
+    public synchronized int getEntryCount()
+    {
+        return this.index.size();
+    }
+
+    /**
+     * Indicates the size of the archive, including dead space.
+     *
+     * @return the archive size in bytes.
+     */
+    public synchronized long getSize()
+    {
+        return this.size;
+    }
+
+    /**
+     * Indicates the number of bytes in the archive occupied by replaced or removed entries.
+     *
+     * @return the amount of dead space in bytes.
+     */
+    public synchronized long getDeadBytes()
+    {
+        return this.deadBytes;
+    }
+
+    /**
+     * Returns the keys of all live entries.
+     *
+     * @return a new list of keys.
+     */
+    public synchronized List<String> getKeys()
+    {
+        return new ArrayList<String>(this.index.keySet());
+    }
+
+    /**
+     * Indicates whether the archive contains an entry.
+     *
+     * @param key the entry's key.
+     *
+     * @return true if the archive contains the entry, otherwise false.
+     */
+    public synchronized boolean contains(String key)
+    {
+        return key != null && this.index.containsKey(key);
+    }
+
+    /**
+     * Returns the length of an entry's data.
+     *
+     * @param key the entry's key.
+     *
+     * @return the entry's length in bytes, or -1 if the archive does not contain the entry.
+     */
+    public synchronized int getLength(String key)
+    {
+        Entry entry = key != null ? this.index.get(key) : null;
+        return entry != null ? entry.dataLength : -1;
+    }
+
+    /**
+     * Returns the time an entry was last written.
+     *
+     * @param key the entry's key.
+     *
+     * @return the entry's modification time in milliseconds since the Epoch, or 0 if the archive does not contain the
+     *         entry.
+     */
+    public synchronized long getLastModified(String key)
+    {
+        Entry entry = key != null ? this.index.get(key) : null;
+        return entry != null ? entry.lastModified : 0;
+    }
+
+    /**
+     * Returns the time at which an entry expires.
+     *
+     * @param key the entry's key.
+     *
+     * @return the entry's expiration time in milliseconds since the Epoch, or 0 if the entry never expires or the
+     *         archive does not contain the entry.
+     */
+    public synchronized long getExpiryTime(String key)
+    {
+        Entry entry = key != null ? this.index.get(key) : null;
+        return entry != null ? entry.expiryTime : 0;
+    }
+
+    /**
+     * Returns a URL that can be used to read an entry. The URL's path is the entry's key. Connections to the URL read
+     * the entry from this archive; they report the entry's modification time as the last-modified time and its
+     * expiration time as the expiration.
+     *
+     * @param key the entry's key.
+     *
+     * @return a URL for the entry, or null if the archive does not contain the entry.
+     */
+    public URL getEntryURL(String key)
+    {
+        if (!this.contains(key))
+            return null;
+
+        try
+        {
+            return new URL(URL_PROTOCOL, null, -1, key, this.urlStreamHandler);
+        }
+        catch (MalformedURLException e)
+        {
+            String message = Logging.getMessage("generic.MalformedURL", key);
+            Logging.logger().log(Level.SEVERE, message, e);
+            return null;
+        }
+    }
+
+    /**
+     * Indicates whether a URL was created by {@link #getEntryURL(String)} for an entry of some archive.
+     *
+     * @param url the URL to test.
+     *
+     * @return true if the URL identifies an archive entry, otherwise false.
+     */
+    public static boolean isEntryURL(URL url)
+    {
+        return url != null && URL_PROTOCOL.equals(url.getProtocol());
+    }
+
+    /**
+     * Reads an entry's data. The returned buffer is read-only and is a view of the archive's memory-mapped file when
+     * possible. It remains valid after the entry is replaced or removed and after the archive is compacted or closed.
+     * <p/>
+     * The data is verified against the checksum recorded when the entry was written. If it doesn't match, the entry is
+     * removed from the archive and this method returns null.
+     *
+     * @param key the entry's key.
+     *
+     * @return the entry's data, or null if the archive does not contain the entry or the entry is damaged.
+     *
+     * @throws IOException if the archive is closed or the entry can't be read.
+     */
+    public ByteBuffer get(String key) throws IOException
+    {
+        Entry entry;
+        ByteBuffer buffer;
+
+        synchronized (this)
+        {
+            entry = key != null ? this.index.get(key) : null;
+            if (entry == null)
+                return null;
+
+            this.assertOpen();
+            buffer = this.readData(entry);
+        }
+
+        // Verify the data outside the lock so that concurrent reads of different entries aren't serialized.
+        if (computeCRC(buffer) == entry.crc)
+            return buffer;
+
+        Logging.logger().warning(Logging.getMessage("TileArchive.DiscardingDamagedEntry", this.file, key));
+
+        synchronized (this)
+        {
+            // Remove the entry unless it has been replaced while it was verified.
+            if (this.index.get(key) == entry)
+                this.remove(key);
+        }
+
+        return null;
+    }
+
+    /**
+     * Adds an entry to the archive, replacing any existing entry with the same key. The entry's data is the contents of
+     * the buffer between its position and limit. The buffer's position is not changed.
+     *
+     * @param key        the entry's key.
+     * @param buffer     the entry's data.
+     * @param expiryTime the time in milliseconds since the Epoch after which the entry may be discarded, or 0 if the
+     *                   entry does not expire.
+     *
+     * @throws IllegalArgumentException if the key or buffer is null or the key is too long.
+     * @throws IOException              if the archive is closed or the entry can't be written.
+     */
+    public synchronized void put(String key, ByteBuffer buffer, long expiryTime) throws IOException
+    {
+        if (buffer == null)
+        {
+            String message = Logging.getMessage("nullValue.BufferNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        byte[] keyBytes = this.encodeKey(key);
+
+        this.assertOpen();
+
+        ByteBuffer data = buffer.duplicate();
+        Entry entry = new Entry();
+        entry.recordOffset = this.size;
+        entry.recordLength = RECORD_HEADER_SIZE + keyBytes.length + data.remaining();
+        entry.dataLength = data.remaining();
+        entry.crc = computeCRC(data);
+        entry.lastModified = System.currentTimeMillis();
+        entry.expiryTime = expiryTime;
+
+        ByteBuffer header = this.makeRecordHeader(RECORD_ENTRY, keyBytes, entry);
+        this.appendRecord(header, data);
+
+        Entry oldEntry = this.index.put(key, entry);
+        if (oldEntry != null)
+            this.deadBytes += oldEntry.recordLength;
+
+        this.compactIfNeeded();
+    }
+
+    /**
+     * Removes an entry from the archive.
+     *
+     * @param key the entry's key.
+     *
+     * @return true if the archive contained the entry, otherwise false.
+     *
+     * @throws IOException if the archive is closed or the removal can't be recorded.
+     */
+    public synchronized boolean remove(String key) throws IOException
+    {
+        if (!this.contains(key))
+            return false;
+
+        this.assertOpen();
+
+        Entry deleteEntry = new Entry();
+        deleteEntry.crc = computeCRC(ByteBuffer.allocate(0));
+        deleteEntry.lastModified = System.currentTimeMillis();
+
+        ByteBuffer header = this.makeRecordHeader(RECORD_DELETE, this.encodeKey(key), deleteEntry);
+        this.appendRecord(header, ByteBuffer.allocate(0));
+
+        Entry oldEntry = this.index.remove(key);
+        this.deadBytes += oldEntry.recordLength + header.capacity();
+
+        this.compactIfNeeded();
+
+        return true;
+    }
+
+    /**
+     * Forces any written entries to the storage device.
+     *
+     * @throws IOException if the archive is closed or an I/O error occurs.
+     */
+    public synchronized void flush() throws IOException
+    {
+        this.assertOpen();
+        this.channel.force(false);
+    }
+
+    /**
+     * Saves the archive's index and closes the archive, releasing its file lock. A compaction in progress is abandoned.
+     * Buffers previously returned by {@link #get(String)} remain valid.
+     */
+    public synchronized void close()
+    {
+        if (this.channel == null)
+            return;
+
+        try
+        {
+            this.channel.force(false);
+        }
+        catch (IOException e)
+        {
+            Logging.logger().log(Level.SEVERE, Logging.getMessage("generic.ExceptionClosingFile", this.file), e);
+        }
+
+        this.writeIndexFile();
+        this.closeFile();
+    }
+
+    /**
+     * Indicates whether the archive is open.
+     *
+     * @return true if the archive is open, otherwise false.
+     */
+    public synchronized boolean isOpen()
+    {
+        return this.channel != null;
+    }
+
+    /**
+     * Indicates whether the archive is being compacted.
+     *
+     * @return true if a compaction is in progress, otherwise false.
+     */
+    public synchronized boolean isCompacting()
+    {
+        return this.compacting;
+    }
+
+    /**
+     * Rewrites the archive so that it contains only its live, unexpired entries, and waits for the compaction to
+     * complete. The live entries are copied to a new file without holding the archive's lock, so entries may be read,
+     * written and removed by other threads during compaction; entries written during compaction are carried over to
+     * the new file. This method returns immediately if the archive is already being compacted.
+     * <p/>
+     * The archive is left unchanged if the compacted archive can't replace the existing archive file, which may be the
+     * case on platforms that don't allow memory-mapped files to be replaced.
+     *
+     * @throws IOException if the archive is closed or the archive can't be reopened after compaction.
+     */
+    public void compact() throws IOException
+    {
+        List<Map.Entry<String, Entry>> entries;
+        FileChannel source;
+        long copyEnd;
+
+        synchronized (this)
+        {
+            this.assertOpen();
+
+            if (this.compacting)
+                return;
+
+            // Entries are never modified once they're in the index, so a copy of the index describes the archive up
+            // to its current size no matter what's written later.
+            this.compacting = true;
+            entries = new ArrayList<Map.Entry<String, Entry>>(this.index.entrySet());
+            source = this.channel;
+            copyEnd = this.size;
+        }
+
+        try
+        {
+            this.doCompact(entries, source, copyEnd);
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                this.compacting = false;
+
+                // Entries written during compaction may have left enough dead space for another compaction.
+                if (this.channel != null)
+                    this.compactIfNeeded();
+            }
+        }
+    }
+
+    protected void doCompact(List<Map.Entry<String, Entry>> entries, FileChannel source, long copyEnd)
+        throws IOException
+    {
+        File tempFile = new File(this.file.getPath() + ".compact");
+        long newArchiveId = createArchiveId();
+        Map<Entry, Long> newOffsets = new IdentityHashMap<Entry, Long>(entries.size());
+        FileOutputStream fos = null;
+
+        try
+        {
+            long tailStart;
+            try
+            {
+                fos = new FileOutputStream(tempFile);
+                tailStart = this.writeCompactedEntries(entries, source, fos.getChannel(), newArchiveId, newOffsets);
+            }
+            catch (IOException e)
+            {
+                synchronized (this)
+                {
+                    // Closing the archive during compaction closes the channel being copied; that's not an error.
+                    if (this.channel == source)
+                    {
+                        Logging.logger().log(Level.SEVERE,
+                            Logging.getMessage("TileArchive.ExceptionCompactingArchive", this.file), e);
+                        this.compactionRetrySize = 2 * this.size;
+                    }
+                }
+                return;
+            }
+
+            synchronized (this)
+            {
+                if (this.channel != source)
+                    return;
+
+                // Copy the records appended during compaction. They're few, so the lock is held only briefly.
+                long newSize = tailStart + this.size - copyEnd;
+                this.transferFully(source, copyEnd, this.size - copyEnd, fos.getChannel());
+                fos.getChannel().force(false);
+                WWIO.closeStream(fos, tempFile.getPath());
+                fos = null;
+
+                Map<String, Entry> newIndex = new HashMap<String, Entry>(this.index.size());
+                long liveBytes = 0;
+                for (Map.Entry<String, Entry> mapEntry : this.index.entrySet())
+                {
+                    Entry entry = mapEntry.getValue();
+                    Long newOffset = newOffsets.get(entry);
+                    if (newOffset == null && entry.recordOffset >= copyEnd)
+                        newOffset = tailStart + entry.recordOffset - copyEnd;
+
+                    // Entries that have been neither copied nor written during compaction have expired.
+                    if (newOffset != null)
+                    {
+                        newIndex.put(mapEntry.getKey(), entry.copy(newOffset));
+                        liveBytes += entry.recordLength;
+                    }
+                }
+
+                this.closeFile();
+
+                if (!this.replaceFile(tempFile))
+                {
+                    Logging.logger().warning(Logging.getMessage("TileArchive.CannotReplaceArchive", this.file));
+                    this.compactionRetrySize = 2 * this.size;
+                    this.openFile();
+                    return;
+                }
+
+                this.index = newIndex;
+                this.archiveId = newArchiveId;
+                this.size = newSize;
+                this.deadBytes = newSize - HEADER_SIZE - liveBytes;
+                this.openFile();
+                this.writeIndexFile();
+            }
+        }
+        finally
+        {
+            WWIO.closeStream(fos, tempFile.getPath());
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Writes a new archive header and copies the live, unexpired entries of an archive to a new archive file.
+     *
+     * @param entries    the entries to copy.
+     * @param source     the archive file to copy from.
+     * @param out        the new archive file.
+     * @param archiveId  the identifier of the new archive.
+     * @param newOffsets a map that receives the location of each copied entry in the new archive.
+     *
+     * @return the size of the new archive.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    protected long writeCompactedEntries(List<Map.Entry<String, Entry>> entries, FileChannel source, FileChannel out,
+        long archiveId, Map<Entry, Long> newOffsets) throws IOException
+    {
+        long now = System.currentTimeMillis();
+
+        ByteBuffer header = makeArchiveHeader(archiveId);
+        while (header.hasRemaining())
+        {
+            out.write(header);
+        }
+
+        // Copy the live records in file order so that entries written together stay together.
+        Collections.sort(entries, new Comparator<Map.Entry<String, Entry>>()
+        {
+            public int compare(Map.Entry<String, Entry> a, Map.Entry<String, Entry> b)
+            {
+                long oa = a.getValue().recordOffset;
+                long ob = b.getValue().recordOffset;
+                return oa < ob ? -1 : oa == ob ? 0 : 1;
+            }
+        });
+
+        long offset = HEADER_SIZE;
+        for (Map.Entry<String, Entry> mapEntry : entries)
+        {
+            Entry entry = mapEntry.getValue();
+            if (entry.expiryTime > 0 && entry.expiryTime < now)
+                continue;
+
+            this.transferFully(source, entry.recordOffset, entry.recordLength, out);
+            newOffsets.put(entry, offset);
+            offset += entry.recordLength;
+        }
+
+        return offset;
+    }
+
+    protected void transferFully(FileChannel source, long position, long count, FileChannel out) throws IOException
+    {
+        long transferred = 0;
+        while (transferred < count)
+        {
+            long n = source.transferTo(position + transferred, count - transferred, out);
+            if (n <= 0 && position + transferred >= source.size())
+                throw new EOFException(this.file.getPath());
+
+            transferred += n;
+        }
+    }
+
+    protected void open() throws IOException
+    {
+        this.openFile();
+
+        try
+        {
+            this.readIndex();
+        }
+        catch (IOException e)
+        {
+            this.closeFile();
+            throw e;
+        }
+    }
+
+    protected void openFile() throws IOException
+    {
+        this.raf = new RandomAccessFile(this.file, "rw");
+        this.channel = this.raf.getChannel();
+        this.segments = new MappedByteBuffer[0];
+
+        try
+        {
+            this.lock = this.channel.tryLock();
+        }
+        catch (OverlappingFileLockException e)
+        {
+            this.lock = null; // Another archive in this JVM holds the lock.
+        }
+
+        if (this.lock == null)
+        {
+            this.closeFile();
+            String message = Logging.getMessage("TileArchive.ArchiveInUse", this.file);
+            Logging.logger().severe(message);
+            throw new IOException(message);
+        }
+    }
+
+    protected void closeFile()
+    {
+        // Releasing the lock is implied by closing the channel.
+        WWIO.closeStream(this.raf, this.file.getPath());
+
+        this.raf = null;
+        this.channel = null;
+        this.lock = null;
+        this.segments = new MappedByteBuffer[0];
+    }
+
+    protected void assertOpen() throws IOException
+    {
+        if (this.channel == null)
+        {
+            String message = Logging.getMessage("TileArchive.ArchiveClosed", this.file);
+            Logging.logger().severe(message);
+            throw new IOException(message);
+        }
+
+        // Interrupting a thread while it uses the channel closes the channel. Reopen the file, and discard any part of
+        // a record the interrupted thread wrote.
+        if (!this.channel.isOpen())
+        {
+            this.closeFile();
+            this.openFile();
+            if (this.channel.size() > this.size)
+                this.channel.truncate(this.size);
+        }
+    }
+
+    /**
+     * Builds the index of live entries. The index saved in the index file is used if it describes this archive; only
+     * the records written after the index was saved are scanned. A partially written record at the end of the archive,
+     * left by an interrupted write, is discarded.
+     *
+     * @throws IOException if the file is not an archive or can't be read.
+     */
+    protected void readIndex() throws IOException
+    {
+        this.index.clear();
+        this.deadBytes = 0;
+
+        long fileLength = this.channel.size();
+        if (fileLength == 0)
+        {
+            this.archiveId = createArchiveId();
+            this.writeFully(makeArchiveHeader(this.archiveId), 0);
+            this.size = HEADER_SIZE;
+            //noinspection ResultOfMethodCallIgnored
+            this.indexFile.delete();
+            return;
+        }
+
+        ByteBuffer header = this.readDirect(0, (int) Math.min(HEADER_SIZE, fileLength));
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC_NUMBER || header.getInt() != VERSION)
+        {
+            String message = Logging.getMessage("TileArchive.InvalidArchiveFile", this.file);
+            Logging.logger().severe(message);
+            throw new IOException(message);
+        }
+        this.archiveId = header.getLong();
+
+        long offset = this.readIndexFile(fileLength) ? this.size : HEADER_SIZE;
+        long scanStart = offset;
+
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        String lastKey = null;
+        Entry lastEntry = null;
+        Entry lastReplacedEntry = null;
+
+        while (offset + RECORD_HEADER_SIZE <= fileLength)
+        {
+            recordHeader.clear();
+            this.readFully(recordHeader, offset);
+            recordHeader.flip();
+
+            byte type = recordHeader.get();
+            int keyLength = recordHeader.getShort() & 0xFFFF;
+            long lastModified = recordHeader.getLong();
+            long expiryTime = recordHeader.getLong();
+            int dataLength = recordHeader.getInt();
+            int crc = recordHeader.getInt();
+
+            int recordLength = RECORD_HEADER_SIZE + keyLength + dataLength;
+            if ((type != RECORD_ENTRY && type != RECORD_DELETE) || dataLength < 0
+                || offset + recordLength > fileLength)
+                break;
+
+            ByteBuffer keyBuffer = ByteBuffer.allocate(keyLength);
+            this.readFully(keyBuffer, offset + RECORD_HEADER_SIZE);
+            String key = new String(keyBuffer.array(), "UTF-8");
+
+            Entry oldEntry;
+            if (type == RECORD_ENTRY)
+            {
+                Entry entry = new Entry();
+                entry.recordOffset = offset;
+                entry.recordLength = recordLength;
+                entry.dataLength = dataLength;
+                entry.crc = crc;
+                entry.lastModified = lastModified;
+                entry.expiryTime = expiryTime;
+                oldEntry = this.index.put(key, entry);
+                lastKey = key;
+                lastEntry = entry;
+                lastReplacedEntry = oldEntry;
+            }
+            else
+            {
+                oldEntry = this.index.remove(key);
+                this.deadBytes += recordLength;
+                lastEntry = null;
+            }
+
+            if (oldEntry != null)
+                this.deadBytes += oldEntry.recordLength;
+
+            offset += recordLength;
+        }
+
+        // Only the last record can have been damaged by an interrupted write, so it's the only one whose data is
+        // verified here. Other entries are verified when they're read. The entry the damaged record replaced, if any,
+        // is still intact and is restored.
+        if (lastEntry != null && !this.isRecordValid(lastEntry))
+        {
+            Logging.logger().warning(Logging.getMessage("TileArchive.DiscardingDamagedEntry", this.file, lastKey));
+            offset = lastEntry.recordOffset;
+            if (lastReplacedEntry != null)
+            {
+                this.index.put(lastKey, lastReplacedEntry);
+                this.deadBytes -= lastReplacedEntry.recordLength;
+            }
+            else
+            {
+                this.index.remove(lastKey);
+            }
+        }
+
+        this.size = offset;
+        if (this.size < fileLength)
+            this.channel.truncate(this.size);
+
+        // Save the index if records had to be scanned, so they needn't be scanned again the next time the archive is
+        // opened.
+        if (this.size > scanStart)
+            this.writeIndexFile();
+    }
+
+    /**
+     * Reads the index saved in the index file. The index is used only if it was saved for this archive, is intact,
+     * and describes no more of the archive than the archive contains. When the index is used, the archive's size is
+     * set to the end of the last record it describes.
+     *
+     * @param fileLength the length of the archive file.
+     *
+     * @return true if the index was read, otherwise false.
+     */
+    protected boolean readIndexFile(long fileLength)
+    {
+        if (!this.indexFile.exists())
+            return false;
+
+        try
+        {
+            ByteBuffer buffer = WWIO.readFileToBuffer(this.indexFile);
+            if (buffer.remaining() < 32)
+                return false;
+
+            // The last four bytes are the checksum of the rest of the index file.
+            ByteBuffer contents = buffer.duplicate();
+            contents.limit(buffer.limit() - 4);
+            if (computeCRC(contents) != buffer.getInt(buffer.limit() - 4))
+                return false;
+
+            if (buffer.getInt() != INDEX_MAGIC_NUMBER || buffer.getInt() != VERSION
+                || buffer.getLong() != this.archiveId)
+                return false;
+
+            long indexedSize = buffer.getLong();
+            int count = buffer.getInt();
+            if (indexedSize < HEADER_SIZE || indexedSize > fileLength || count < 0)
+                return false;
+
+            Map<String, Entry> newIndex = new HashMap<String, Entry>(Math.max(16, (int) (count / 0.75) + 1));
+            long liveBytes = 0;
+            for (int i = 0; i < count; i++)
+            {
+                byte[] keyBytes = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(keyBytes);
+
+                Entry entry = new Entry();
+                entry.recordOffset = buffer.getLong();
+                entry.recordLength = buffer.getInt();
+                entry.dataLength = buffer.getInt();
+                entry.crc = buffer.getInt();
+                entry.lastModified = buffer.getLong();
+                entry.expiryTime = buffer.getLong();
+                newIndex.put(new String(keyBytes, "UTF-8"), entry);
+                liveBytes += entry.recordLength;
+            }
+
+            this.index = newIndex;
+            this.size = indexedSize;
+            this.deadBytes = indexedSize - HEADER_SIZE - liveBytes;
+
+            return true;
+        }
+        catch (Exception e)
+        {
+            // An unreadable index is not an error; the archive is scanned instead.
+            Logging.logger().log(Level.FINE, Logging.getMessage("TileArchive.ExceptionReadingIndex", this.indexFile),
+                e);
+            return false;
+        }
+    }
+
+    /**
+     * Saves the index of live entries to the index file. The index is written to a temporary file that then replaces
+     * the index file, so an interrupted write leaves either the previous index or none. Failures are logged but not
+     * reported; the archive is scanned when opened if there's no valid index.
+     */
+    protected void writeIndexFile()
+    {
+        File tempFile = new File(this.indexFile.getPath() + ".tmp");
+
+        try
+        {
+            int capacity = 32;
+            List<byte[]> keys = new ArrayList<byte[]>(this.index.size());
+            List<Entry> entries = new ArrayList<Entry>(this.index.size());
+            for (Map.Entry<String, Entry> mapEntry : this.index.entrySet())
+            {
+                byte[] keyBytes = this.encodeKey(mapEntry.getKey());
+                keys.add(keyBytes);
+                entries.add(mapEntry.getValue());
+                capacity += 2 + keyBytes.length + INDEX_ENTRY_SIZE;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(capacity);
+            buffer.putInt(INDEX_MAGIC_NUMBER).putInt(VERSION).putLong(this.archiveId).putLong(this.size);
+            buffer.putInt(entries.size());
+            for (int i = 0; i < entries.size(); i++)
+            {
+                Entry entry = entries.get(i);
+                buffer.putShort((short) keys.get(i).length).put(keys.get(i));
+                buffer.putLong(entry.recordOffset).putInt(entry.recordLength).putInt(entry.dataLength);
+                buffer.putInt(entry.crc).putLong(entry.lastModified).putLong(entry.expiryTime);
+            }
+            buffer.flip();
+            int crc = computeCRC(buffer);
+            buffer.limit(capacity);
+            buffer.putInt(capacity - 4, crc);
+
+            WWIO.saveBuffer(buffer, tempFile);
+            //noinspection ResultOfMethodCallIgnored
+            this.indexFile.delete();
+            if (!tempFile.renameTo(this.indexFile))
+                throw new IOException(this.indexFile.getPath());
+        }
+        catch (IOException e)
+        {
+            Logging.logger().log(Level.WARNING, Logging.getMessage("TileArchive.ExceptionWritingIndex", this.indexFile),
+                e);
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+        }
+    }
+
+    protected boolean isRecordValid(Entry entry) throws IOException
+    {
+        return entry.crc == computeCRC(this.readDirect(entry.getDataOffset(), entry.dataLength));
+    }
+
+    protected void compactIfNeeded()
+    {
+        if (!this.compacting && !this.compactionScheduled && this.size >= this.minCompactionSize
+            && this.size >= this.compactionRetrySize && this.deadBytes > this.size * this.compactionRatio)
+        {
+            this.startCompaction();
+        }
+    }
+
+    /** Starts compacting the archive on the compaction thread. */
+    protected void startCompaction()
+    {
+        this.compactionScheduled = true;
+        getCompactionService().execute(this.compactionTask);
+    }
+
+    protected static synchronized ExecutorService getCompactionService()
+    {
+        if (compactionService == null)
+        {
+            compactionService = Executors.newSingleThreadExecutor(new ThreadFactory()
+            {
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable);
+                    thread.setDaemon(true);
+                    thread.setName("World Wind Tile Archive Compaction");
+                    return thread;
+                }
+            });
+        }
+
+        return compactionService;
+    }
+
+    protected static long createArchiveId()
+    {
+        return new Random().nextLong();
+    }
+
+    protected static ByteBuffer makeArchiveHeader(long archiveId)
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC_NUMBER).putInt(VERSION).putLong(archiveId).flip();
+
+        return header;
+    }
+
+    protected boolean replaceFile(File tempFile)
+    {
+        if (tempFile.renameTo(this.file))
+            return true;
+
+        // Some platforms won't rename a file over an existing file.
+        return this.file.delete() && tempFile.renameTo(this.file);
+    }
+
+    protected ByteBuffer readData(Entry entry) throws IOException
+    {
+        long offset = entry.getDataOffset();
+        int segmentIndex = (int) (offset / this.segmentSize);
+        int segmentOffset = (int) (offset % this.segmentSize);
+
+        // Entries that cross a segment boundary, and recently written entries beyond a segment's mapped region that
+        // aren't yet worth remapping the segment for, are read directly from the file.
+        if (segmentOffset + entry.dataLength > this.segmentSize)
+            return this.readDirect(offset, entry.dataLength);
+
+        MappedByteBuffer segment = this.getSegment(segmentIndex, segmentOffset + entry.dataLength);
+        if (segment == null)
+            return this.readDirect(offset, entry.dataLength);
+
+        ByteBuffer buffer = segment.duplicate();
+        buffer.limit(segmentOffset + entry.dataLength);
+        buffer.position(segmentOffset);
+
+        return buffer.slice().asReadOnlyBuffer();
+    }
+
+    protected MappedByteBuffer getSegment(int segmentIndex, int requiredLength) throws IOException
+    {
+        if (segmentIndex >= this.segments.length)
+        {
+            MappedByteBuffer[] newSegments = new MappedByteBuffer[segmentIndex + 1];
+            System.arraycopy(this.segments, 0, newSegments, 0, this.segments.length);
+            this.segments = newSegments;
+        }
+
+        MappedByteBuffer segment = this.segments[segmentIndex];
+        if (segment != null && segment.capacity() >= requiredLength)
+            return segment;
+
+        // The segment hasn't been mapped, or the archive has grown since it was mapped. A segment that still has room
+        // to grow is remapped only once enough has been appended to it, to avoid remapping it for every new entry.
+        long segmentStart = (long) segmentIndex * this.segmentSize;
+        int mapLength = (int) Math.min(this.segmentSize, this.size - segmentStart);
+        int mappedLength = segment != null ? segment.capacity() : 0;
+        if (mapLength < this.segmentSize && mapLength - mappedLength < DEFAULT_REMAP_THRESHOLD)
+            return null;
+
+        segment = this.channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, mapLength);
+        this.segments[segmentIndex] = segment;
+
+        return segment;
+    }
+
+    protected ByteBuffer readDirect(long offset, int length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        this.readFully(buffer, offset);
+        buffer.flip();
+
+        return buffer;
+    }
+
+    protected void readFully(ByteBuffer buffer, long offset) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            int count = this.channel.read(buffer, offset);
+            if (count < 0)
+                throw new EOFException(this.file.getPath());
+
+            offset += count;
+        }
+    }
+
+    protected void writeFully(ByteBuffer buffer, long offset) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            offset += this.channel.write(buffer, offset);
+        }
+    }
+
+    protected void appendRecord(ByteBuffer header, ByteBuffer data) throws IOException
+    {
+        long offset = this.size;
+        long recordLength = header.remaining() + data.remaining();
+
+        try
+        {
+            this.writeFully(header, offset);
+            this.writeFully(data, offset + header.capacity());
+        }
+        catch (IOException e)
+        {
+            // Discard whatever part of the record was written so that the next record starts in the right place.
+            this.channel.truncate(offset);
+            throw e;
+        }
+
+        this.size = offset + recordLength;
+    }
+
+    protected ByteBuffer makeRecordHeader(byte type, byte[] keyBytes, Entry entry)
+    {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE + keyBytes.length);
+        header.put(type);
+        header.putShort((short) keyBytes.length);
+        header.putLong(entry.lastModified);
+        header.putLong(entry.expiryTime);
+        header.putInt(entry.dataLength);
+        header.putInt(entry.crc);
+        header.put(keyBytes);
+        header.flip();
+
+        return header;
+    }
+
+    protected byte[] encodeKey(String key)
+    {
+        if (key == null)
+        {
+            String message = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        byte[] keyBytes;
+        try
+        {
+            keyBytes = key.getBytes("UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new IllegalStateException(e); // UTF-8 is always supported
+        }
+
+        if (keyBytes.length > MAX_KEY_LENGTH)
+        {
+            String message = Logging.getMessage("generic.LengthIsInvalid", keyBytes.length);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        return keyBytes;
+    }
+
+    protected static int computeCRC(ByteBuffer data)
+    {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = data.duplicate();
+
+        if (buffer.hasArray())
+        {
+            crc.update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        else
+        {
+            byte[] bytes = new byte[Math.min(buffer.remaining(), 8192)];
+            while (buffer.hasRemaining())
+            {
+                int count = Math.min(buffer.remaining(), bytes.length);
+                buffer.get(bytes, 0, count);
+                crc.update(bytes, 0, count);
+            }
+        }
+
+        return (int) crc.getValue();
+    }
+
+    /** Compacts the archive on the compaction thread. */
+    protected class CompactionTask implements Runnable
+    {
+        public void run()
+        {
+            synchronized (TileArchive.this)
+            {
+                compactionScheduled = false;
+            }
+
+            try
+            {
+                compact();
+            }
+            catch (IOException e)
+            {
+                Logging.logger().log(Level.SEVERE, Logging.getMessage("TileArchive.ExceptionCompactingArchive", file),
+                    e);
+            }
+        }
+    }
+
+    /** Opens connections that read entries of this archive. */
+    protected class ArchiveURLStreamHandler extends URLStreamHandler
+    {
+        protected URLConnection openConnection(URL url) throws IOException
+        {
+            return new ArchiveURLConnection(url);
+        }
+    }
+
+    /** A connection that reads one entry of this archive. */
+    protected class ArchiveURLConnection extends URLConnection
+    {
+        protected ByteBuffer buffer;
+
+        public ArchiveURLConnection(URL url)
+        {
+            super(url);
+        }
+
+        public void connect() throws IOException
+        {
+            if (this.connected)
+                return;
+
+            this.buffer = get(this.url.getPath());
+            if (this.buffer == null)
+                throw new FileNotFoundException(this.url.toString());
+
+            this.connected = true;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException
+        {
+            this.connect();
+
+            return new ByteBufferInputStream(this.buffer.duplicate());
+        }
+
+        @Override
+        public int getContentLength()
+        {
+            return getLength(this.url.getPath());
+        }
+
+        @Override
+        public String getContentType()
+        {
+            return WWIO.makeMimeTypeForSuffix(WWIO.getSuffix(this.url.getPath()));
+        }
+
+        @Override
+        public long getLastModified()
+        {
+            return TileArchive.this.getLastModified(this.url.getPath());
+        }
+
+        @Override
+        public long getExpiration()
+        {
+            return getExpiryTime(this.url.getPath());
+        }
+    }
+
+    /** Reads the contents of a byte buffer without copying them. */
+    protected static class ByteBufferInputStream extends InputStream
+    {
+        protected ByteBuffer buffer;
+
+        public ByteBufferInputStream(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        public int read()
+        {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length)
+        {
+            if (length == 0)
+                return 0;
+
+            if (!this.buffer.hasRemaining())
+                return -1;
+
+            length = Math.min(length, this.buffer.remaining());
+            this.buffer.get(bytes, offset, length);
+
+            return length;
+        }
+
+        @Override
+        public long skip(long n)
+        {
+            int count = (int) Math.max(0, Math.min(n, this.buffer.remaining()));
+            this.buffer.position(this.buffer.position() + count);
+
+            return count;
+        }
+
+        @Override
+        public int available()
+        {
+            return this.buffer.remaining();
+        }
+    }
+}
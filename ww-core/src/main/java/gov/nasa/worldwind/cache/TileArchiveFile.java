@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.Logging;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+
+/**
+ * A file returned by {@link TileArchiveFileStore#newFile(String)} for a file that's stored in a {@link TileArchive}.
+ * Data saved with {@link #save(java.nio.ByteBuffer, long)} is written to the archive. Code that writes to the file by
+ * other means creates an ordinary file at the file's path, which the file store continues to find.
+ * <p/>
+ * The methods <code>exists</code>, <code>length</code>, <code>lastModified</code> and <code>delete</code> consider
+ * both the archive entry and the ordinary file.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public class TileArchiveFile extends File implements FileStoreFile
+{
+    protected final TileArchive archive;
+    protected final String key;
+
+    /**
+     * Creates a file for an archive entry.
+     *
+     * @param pathname the path of the file in the file store's write location.
+     * @param archive  the archive holding the entry.
+     * @param key      the entry's key.
+     *
+     * @throws IllegalArgumentException if any argument is null.
+     */
+    public TileArchiveFile(String pathname, TileArchive archive, String key)
+    {
+        super(pathname);
+
+        if (archive == null)
+        {
+            String message = Logging.getMessage("nullValue.ArchiveIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (key == null)
+        {
+            String message = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.archive = archive;
+        this.key = key;
+    }
+
+    public TileArchive getArchive()
+    {
+        return this.archive;
+    }
+
+    public String getKey()
+    {
+        return this.key;
+    }
+
+    /**
+     * Writes the buffer's contents, from its beginning to its limit, to the archive entry.
+     *
+     * @param buffer     the data to write.
+     * @param expiryTime the time in milliseconds since the Epoch at which the entry expires, or 0 if it does not
+     *                   expire.
+     *
+     * @throws IllegalArgumentException if the buffer is null.
+     * @throws IOException              if the entry can't be written.
+     */
+    public void save(ByteBuffer buffer, long expiryTime) throws IOException
+    {
+        if (buffer == null)
+        {
+            String message = Logging.getMessage("nullValue.BufferNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        ByteBuffer data = buffer.duplicate();
+        data.rewind();
+
+        this.archive.put(this.key, data, expiryTime);
+    }
+
+    @Override
+    public boolean exists()
+    {
+        return this.archive.contains(this.key) || super.exists();
+    }
+
+    @Override
+    public long length()
+    {
+        int length = this.archive.getLength(this.key);
+        return length >= 0 ? length : super.length();
+    }
+
+    @Override
+    public long lastModified()
+    {
+        return this.archive.contains(this.key) ? this.archive.getLastModified(this.key) : super.lastModified();
+    }
+
+    @Override
+    public boolean delete()
+    {
+        boolean removed = false;
+        try
+        {
+            removed = this.archive.remove(this.key);
+        }
+        catch (IOException e)
+        {
+            Logging.logger().log(Level.SEVERE, Logging.getMessage("FileStore.ExceptionRemovingFile", this.key), e);
+        }
+
+        return (super.exists() && super.delete()) || removed;
+    }
+}
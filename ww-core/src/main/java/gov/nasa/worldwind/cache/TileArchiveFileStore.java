@@ -0,0 +1,215 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.Disposable;
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.net.URL;
+import java.util.*;
+import java.util.logging.Level;
+
+/**
+ * A {@link FileStore} that keeps tiles in a single {@link TileArchive} in its write location rather than in one file
+ * per tile. All other files are kept in ordinary files, as in {@link BasicDataFileStore}. Tiles are recognized by
+ * their suffix; see {@link #getArchiveSuffixes()}.
+ * <p/>
+ * Layers and elevation models need no changes to use the archive. They continue to name tiles by {@link
+ * gov.nasa.worldwind.util.Tile#getPath()}: <code>newFile</code> returns a {@link FileStoreFile} whose saved contents
+ * are written to the archive, and <code>findFile</code> returns a URL that reads the archive entry. The URL reports
+ * the time the entry was written as its last-modified time, so {@link
+ * gov.nasa.worldwind.util.WWIO#isFileOutOfDate(java.net.URL, long)} and a level's expiry time work as they do for
+ * ordinary files. Retrieved tiles also record the expiration time reported by their server, and are discarded when
+ * the archive is compacted after that time.
+ * <p/>
+ * Files obtained with <code>requestFile</code> are never archived, since their callers expect file URLs. If the archive
+ * can't be opened, for example because another process is using it, the file store keeps all files in ordinary
+ * files. Disposing of the file store closes the archive and saves its index.
+ * <p/>
+ * To use this file store in place of the default, specify its class name as the value of the World Wind configuration
+ * parameter <code>gov.nasa.worldwind.avkey.DataFileStoreClassName</code>.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public class TileArchiveFileStore extends BasicDataFileStore implements Disposable
+{
+    /** The name of the archive file in the file store's write location. */
+    public static final String ARCHIVE_FILE_NAME = "TileArchive.wwa";
+    /** The default suffixes of the files kept in the archive. */
+    protected static final List<String> DEFAULT_ARCHIVE_SUFFIXES = Arrays.asList(".bil", ".dds", ".jpeg", ".jpg",
+        ".png");
+
+    protected TileArchive archive;
+    protected List<String> archiveSuffixes = new ArrayList<String>(DEFAULT_ARCHIVE_SUFFIXES);
+
+    /**
+     * Create an instance.
+     *
+     * @throws IllegalStateException if the configuration file name cannot be determined from {@link
+     *                               gov.nasa.worldwind.Configuration} or the configuration file cannot be found.
+     */
+    public TileArchiveFileStore()
+    {
+        this.openArchive();
+    }
+
+    /**
+     * Create an instance to manage a specified directory.
+     *
+     * @param directoryPath the directory to manage as a file store.
+     */
+    public TileArchiveFileStore(File directoryPath)
+    {
+        super(directoryPath);
+
+        this.openArchive();
+    }
+
+    protected void openArchive()
+    {
+        if (this.getWriteLocation() == null)
+            return;
+
+        File file = new File(this.getWriteLocation(), ARCHIVE_FILE_NAME);
+        try
+        {
+            this.archive = new TileArchive(file);
+        }
+        catch (IOException e)
+        {
+            Logging.logger().log(Level.WARNING, Logging.getMessage("TileArchive.ArchiveUnavailable", file), e);
+        }
+    }
+
+    /**
+     * Returns the file store's tile archive.
+     *
+     * @return the tile archive, or null if the archive could not be opened.
+     */
+    public TileArchive getArchive()
+    {
+        return this.archive;
+    }
+
+    /** Closes the file store's archive. Files are no longer archived once the archive is closed. */
+    public void dispose()
+    {
+        if (this.archive != null)
+            this.archive.close();
+    }
+
+    /**
+     * Returns the list of suffixes identifying the files that are kept in the archive. The list may be modified to
+     * change which files are archived. Files already in the archive are found regardless of their suffix. The default
+     * list contains .bil, .dds, .jpeg, .jpg and .png.
+     *
+     * @return the list of archived suffixes.
+     */
+    public List<String> getArchiveSuffixes()
+    {
+        return this.archiveSuffixes;
+    }
+
+    /**
+     * Indicates whether a file is kept in the archive.
+     *
+     * @param fileName the file's name in the file store.
+     *
+     * @return true if the file is kept in the archive, otherwise false.
+     */
+    protected boolean isArchived(String fileName)
+    {
+        if (this.archive == null || !this.archive.isOpen())
+            return false;
+
+        String lowerCaseName = fileName.toLowerCase();
+        for (String suffix : this.archiveSuffixes)
+        {
+            if (lowerCaseName.endsWith(suffix))
+                return true;
+        }
+
+        return false;
+    }
+
+    protected String makeArchiveKey(String fileName)
+    {
+        return normalizeFileStoreName(fileName);
+    }
+
+    @Override
+    public boolean containsFile(String fileName)
+    {
+        if (fileName != null && this.archive != null && this.archive.contains(this.makeArchiveKey(fileName)))
+            return true;
+
+        return super.containsFile(fileName);
+    }
+
+    @Override
+    public URL findFile(String fileName, boolean checkClassPath)
+    {
+        if (fileName != null && this.archive != null)
+        {
+            URL url = this.archive.getEntryURL(this.makeArchiveKey(fileName));
+            if (url != null)
+                return url;
+        }
+
+        return super.findFile(fileName, checkClassPath);
+    }
+
+    @Override
+    public File newFile(String fileName)
+    {
+        File file = super.newFile(fileName);
+
+        if (file == null || !this.isArchived(fileName))
+            return file;
+
+        return new TileArchiveFile(file.getPath(), this.archive, this.makeArchiveKey(fileName));
+    }
+
+    @Override
+    public void removeFile(URL url)
+    {
+        if (!TileArchive.isEntryURL(url))
+        {
+            super.removeFile(url);
+            return;
+        }
+
+        if (this.archive == null)
+            return;
+
+        try
+        {
+            this.archive.remove(url.getPath());
+        }
+        catch (IOException e)
+        {
+            Logging.logger().log(Level.SEVERE, Logging.getMessage("FileStore.ExceptionRemovingFile", url.toString()),
+                e);
+        }
+    }
+
+    @Override
+    protected PostProcessor createPostProcessor(String address, URL url, boolean saveInLocalCache)
+    {
+        return new PostProcessor(address, url, saveInLocalCache)
+        {
+            @Override
+            protected File makeOutputFile()
+            {
+                // Files obtained by requestFile are returned to their callers as file URLs, so they can't be archived.
+                File file = super.makeOutputFile();
+                return file instanceof TileArchiveFile ? new File(file.getPath()) : file;
+            }
+        };
+    }
+}
@@ -39,6 +39,10 @@ public class CachedDataRaster extends AVListImpl implements DataRaster
 
     protected final Object rasterUsageLock = new Object();
     protected final Object rasterRetrievalLock = new Object();
+    // Number of threads currently drawing from or reading the cached rasters, guarded by rasterUsageLock.
+    protected int rasterUsageCount = 0;
+    // Rasters evicted from the cache while in use, disposed when the last user is done. Guarded by rasterUsageLock.
+    protected java.util.List<DataRaster[]> pendingDisposal = new java.util.ArrayList<DataRaster[]>();
 
     protected String[] requiredKeys = new String[] {AVKey.SECTOR, AVKey.PIXEL_FORMAT};
 
@@ -84,7 +88,7 @@ public class CachedDataRaster extends AVListImpl implements DataRaster
         this.rasterCache = cache;
         if (this.rasterCache != null)
         {
-            this.cacheListener = new CacheListener(this.dataSource);
+            this.cacheListener = new CacheListener(this);
             this.rasterCache.addCacheListener(this.cacheListener);
         }
     }
@@ -279,7 +283,10 @@ public class CachedDataRaster extends AVListImpl implements DataRaster
 
     public void drawOnTo(DataRaster canvas)
     {
-        synchronized (this.rasterUsageLock)
+        // Several threads may draw this raster at once. The rasters they draw from are kept alive until they are done,
+        // even if the cache evicts them meanwhile.
+        this.beginRasterUsage();
+        try
         {
             try
             {
@@ -310,11 +317,16 @@ public class CachedDataRaster extends AVListImpl implements DataRaster
                 Logging.logger().log(Level.SEVERE, reason, t);
             }
         }
+        finally
+        {
+            this.endRasterUsage();
+        }
     }
 
     public DataRaster getSubRaster(AVList params)
     {
-        synchronized (this.rasterUsageLock)
+        this.beginRasterUsage();
+        try
         {
             try
             {
@@ -344,6 +356,10 @@ public class CachedDataRaster extends AVListImpl implements DataRaster
             Logging.logger().severe(message);
             throw new WWRuntimeException(message);
         }
+        finally
+        {
+            this.endRasterUsage();
+        }
     }
 
     public DataRaster getSubRaster(int width, int height, Sector sector, AVList params)
@@ -358,6 +374,56 @@ public class CachedDataRaster extends AVListImpl implements DataRaster
         return this.getSubRaster(params);
     }
 
+    protected void beginRasterUsage()
+    {
+        synchronized (this.rasterUsageLock)
+        {
+            this.rasterUsageCount++;
+        }
+    }
+
+    protected void endRasterUsage()
+    {
+        java.util.List<DataRaster[]> disposable = null;
+
+        synchronized (this.rasterUsageLock)
+        {
+            if (--this.rasterUsageCount == 0 && !this.pendingDisposal.isEmpty())
+            {
+                disposable = this.pendingDisposal;
+                this.pendingDisposal = new java.util.ArrayList<DataRaster[]>();
+            }
+        }
+
+        if (disposable != null)
+        {
+            for (DataRaster[] rasters : disposable)
+            {
+                disposeRasters(rasters);
+            }
+        }
+    }
+
+    /**
+     * Disposes rasters evicted from the raster cache. If a thread is currently using this raster's data, disposal is
+     * deferred until the last such thread is done.
+     *
+     * @param rasters the rasters to dispose.
+     */
+    protected void disposeEvictedRasters(DataRaster[] rasters)
+    {
+        synchronized (this.rasterUsageLock)
+        {
+            if (this.rasterUsageCount > 0)
+            {
+                this.pendingDisposal.add(rasters);
+                return;
+            }
+        }
+
+        disposeRasters(rasters);
+    }
+
     protected void releaseMemory()
     {
         if (this.rasterCache != null)
@@ -411,11 +477,13 @@ public class CachedDataRaster extends AVListImpl implements DataRaster
 
     private static class CacheListener implements MemoryCache.CacheListener
     {
+        private CachedDataRaster owner;
         private Object key;
 
-        private CacheListener(Object key)
+        private CacheListener(CachedDataRaster owner)
         {
-            this.key = key;
+            this.owner = owner;
+            this.key = owner.dataSource;
         }
 
         public void entryRemoved(Object key, Object clientObject)
@@ -432,7 +500,7 @@ public class CachedDataRaster extends AVListImpl implements DataRaster
 
             try
             {
-                disposeRasters((DataRaster[]) clientObject);
+                this.owner.disposeEvictedRasters((DataRaster[]) clientObject);
             }
             catch (Exception e)
             {
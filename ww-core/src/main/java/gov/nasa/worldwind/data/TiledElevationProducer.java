@@ -302,8 +302,12 @@ public class TiledElevationProducer extends TiledRasterProducer
     {
         // There used to be code here to update the extremes only when processing tiles in the highest-resolution
         // level. But that caused the extremes not to be determined at all when a full pyramid isn't generated. We
-        // now update the extremes for every tile, not just the highest resolution ones.
-        this.updateExtremeElevations(tileRaster);
+        // now update the extremes for every tile, not just the highest resolution ones. Tiles may be produced on
+        // several threads, so updates to the extremes are serialized.
+        synchronized (this)
+        {
+            this.updateExtremeElevations(tileRaster);
+        }
 
         super.installTileRasterLater(levelSet, tile, tileRaster, params);
     }
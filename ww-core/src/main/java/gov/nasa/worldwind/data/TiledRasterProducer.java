@@ -26,6 +26,9 @@ public abstract class TiledRasterProducer extends AbstractDataStoreProducer
     private static final long DEFAULT_TILED_RASTER_PRODUCER_CACHE_SIZE = 300000000L; // ~300 megabytes
     private static final int DEFAULT_TILED_RASTER_PRODUCER_LARGE_DATASET_THRESHOLD = 3000; // 3000 pixels
     private static final int DEFAULT_WRITE_THREAD_POOL_SIZE = 2;
+    private static final int DEFAULT_THREAD_POOL_SIZE = 1;
+    // Number of subtrees created per requested thread when the pyramid is produced in parallel.
+    private static final int SUBTREES_PER_THREAD = 4;
     private static final int DEFAULT_TILE_WIDTH_AND_HEIGHT = 512;
     private static final int DEFAULT_SINGLE_LEVEL_TILE_WIDTH_AND_HEIGHT = 512;
     private static final double DEFAULT_LEVEL_ZERO_TILE_DELTA = 36d;
@@ -41,6 +44,9 @@ public abstract class TiledRasterProducer extends AbstractDataStoreProducer
     // Progress counters.
     private int tile;
     private int tileCount;
+    private final Object progressLock = new Object();
+    // Set when a parallel production task fails, so that the remaining tasks stop early.
+    private volatile boolean productionFailed;
 
     private DataRasterReaderFactory readerFactory;
 
@@ -503,6 +509,29 @@ public abstract class TiledRasterProducer extends AbstractDataStoreProducer
         this.calculateTileCount(levelSet, params);
         this.startProgress();
 
+        int threadPoolSize = this.computeThreadPoolSize(params);
+        if (threadPoolSize > 1)
+        {
+            this.installLevelSetInParallel(levelSet, params, threadPoolSize);
+            return;
+        }
+
+        for (Tile tile : this.createFirstLevelTiles(levelSet))
+        {
+            // Exit if the caller has instructed us to stop production.
+            Thread.yield();
+            if (this.isStopped())
+                break;
+
+            DataRaster tileRaster = this.createTileRaster(levelSet, tile, params);
+            // Write the top-level tile raster to disk.
+            if (tileRaster != null)
+                this.installTileRasterLater(levelSet, tile, tileRaster, params);
+        }
+    }
+
+    protected java.util.List<Tile> createFirstLevelTiles(LevelSet levelSet)
+    {
         Sector sector = levelSet.getSector();
         Level level = levelSet.getFirstLevel();
 
@@ -515,33 +544,169 @@ public abstract class TiledRasterProducer extends AbstractDataStoreProducer
         int lastRow = Tile.computeRow(dLat, sector.getMaxLatitude(), latOrigin);
         int lastCol = Tile.computeColumn(dLon, sector.getMaxLongitude(), lonOrigin);
 
-        buildLoop:
+        java.util.List<Tile> tiles = new java.util.ArrayList<Tile>();
+        Angle p1 = Tile.computeRowLatitude(firstRow, dLat, latOrigin);
+        for (int row = firstRow; row <= lastRow; row++)
         {
-            Angle p1 = Tile.computeRowLatitude(firstRow, dLat, latOrigin);
-            for (int row = firstRow; row <= lastRow; row++)
+            Angle p2 = p1.add(dLat);
+            Angle t1 = Tile.computeColumnLongitude(firstCol, dLon, lonOrigin);
+            for (int col = firstCol; col <= lastCol; col++)
             {
-                Angle p2 = p1.add(dLat);
-                Angle t1 = Tile.computeColumnLongitude(firstCol, dLon, lonOrigin);
-                for (int col = firstCol; col <= lastCol; col++)
-                {
-                    // Exit if the caller has instructed us to stop production.
-                    Thread.yield();
-                    if (this.isStopped())
-                        break buildLoop;
+                Angle t2 = t1.add(dLon);
+                tiles.add(new Tile(new Sector(p1, p2, t1, t2), level, row, col));
+                t1 = t2;
+            }
+            p1 = p2;
+        }
 
-                    Angle t2 = t1.add(dLon);
+        return tiles;
+    }
 
-                    Tile tile = new Tile(new Sector(p1, p2, t1, t2), level, row, col);
-                    DataRaster tileRaster = this.createTileRaster(levelSet, tile, params);
-                    // Write the top-level tile raster to disk.
-                    if (tileRaster != null)
-                        this.installTileRasterLater(levelSet, tile, tileRaster, params);
+    /**
+     * Returns the requested number of production threads. The value of {@link
+     * AVKey#TILED_RASTER_PRODUCER_THREAD_POOL_SIZE} in the production parameters is used if present, otherwise the
+     * configuration value of that key, otherwise 1. A value of 1 produces the pyramid on the calling thread. Larger
+     * values produce it on the shared fork-join pool, see {@link ForkJoinSupport}, and determine how finely the pyramid
+     * is split into subtrees.
+     *
+     * @param params the production parameters.
+     *
+     * @return the requested number of production threads.
+     */
+    protected int computeThreadPoolSize(AVList params)
+    {
+        Integer size = AVListImpl.getIntegerValue(params, AVKey.TILED_RASTER_PRODUCER_THREAD_POOL_SIZE);
+        if (size == null)
+            size = Configuration.getIntegerValue(AVKey.TILED_RASTER_PRODUCER_THREAD_POOL_SIZE,
+                DEFAULT_THREAD_POOL_SIZE);
+
+        return Math.max(1, size);
+    }
+
+    /**
+     * Produces the tile pyramid on the shared fork-join pool. The pyramid is split into independent subtrees rooted at
+     * the first level that has several tiles per requested thread; each subtree is then produced depth first on one
+     * thread, exactly as in sequential production, and the levels above the subtrees are composed from their results.
+     * The number of tile rasters held in memory is therefore proportional to the number of threads, and tile writes
+     * remain limited by the tile write semaphore.
+     * <p/>
+     * If a task fails, the tasks not yet started are cancelled, the running tasks stop at their next stop check, and
+     * the failure is rethrown once they have finished.
+     *
+     * @param levelSet       the level set to produce.
+     * @param params         the production parameters.
+     * @param threadPoolSize the requested number of production threads.
+     *
+     * @throws java.io.IOException if a tile raster cannot be created.
+     */
+    protected void installLevelSetInParallel(LevelSet levelSet, AVList params, int threadPoolSize)
+        throws java.io.IOException
+    {
+        int subtreeLevel = this.computeSubtreeLevel(levelSet, params, threadPoolSize * SUBTREES_PER_THREAD);
+
+        java.util.List<Tile> tiles = this.createFirstLevelTiles(levelSet);
+        java.util.List<TileRasterTask> tasks = new java.util.ArrayList<TileRasterTask>(tiles.size());
+        for (Tile tile : tiles)
+        {
+            tasks.add(new TileRasterTask(levelSet, tile, params, subtreeLevel));
+        }
 
-                    t1 = t2;
+        RuntimeException failure = null;
+        try
+        {
+            for (TileRasterTask task : tasks)
+            {
+                ForkJoinSupport.getPool().execute(task);
+            }
+
+            // Join every task, even after a failure, so that no task is still writing tiles when this method returns.
+            for (TileRasterTask task : tasks)
+            {
+                try
+                {
+                    DataRaster tileRaster = task.join();
+                    // Write the top-level tile raster to disk.
+                    if (tileRaster != null && failure == null)
+                        this.installTileRasterLater(levelSet, task.tile, tileRaster, params);
                 }
-                p1 = p2;
+                catch (java.util.concurrent.CancellationException e)
+                {
+                    // The task was cancelled after an earlier failure.
+                }
+                catch (RuntimeException e)
+                {
+                    if (failure == null)
+                    {
+                        failure = e;
+                        this.productionFailed = true;
+                        for (TileRasterTask t : tasks)
+                        {
+                            t.cancel(false);
+                        }
+                    }
+                }
+            }
+        }
+        finally
+        {
+            this.productionFailed = false;
+        }
+
+        if (failure != null)
+        {
+            // The fork-join pool may rethrow a copy of the task's exception, so search the whole cause chain for the
+            // IOException that stopped production.
+            for (Throwable t = failure.getCause(); t != null; t = t.getCause())
+            {
+                if (t instanceof java.io.IOException)
+                    throw (java.io.IOException) t;
             }
+            throw failure;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Production also stops when a task of a parallel production fails.
+     */
+    @Override
+    protected boolean isStopped()
+    {
+        return this.productionFailed || super.isStopped();
+    }
+
+    /**
+     * Returns the number of the first level having at least the specified number of tiles, or the final level if no
+     * level has that many. Tiles at and below the returned level are produced depth first on a single thread.
+     *
+     * @param levelSet the level set to produce.
+     * @param params   the production parameters.
+     * @param numTiles the desired number of independent subtrees.
+     *
+     * @return the level number at which the pyramid is split into subtrees.
+     */
+    protected int computeSubtreeLevel(LevelSet levelSet, AVList params, int numTiles)
+    {
+        Sector sector = levelSet.getSector();
+
+        for (Level level : levelSet.getLevels())
+        {
+            Angle dLat = level.getTileDelta().getLatitude();
+            Angle dLon = level.getTileDelta().getLongitude();
+            Angle latOrigin = levelSet.getTileOrigin().getLatitude();
+            Angle lonOrigin = levelSet.getTileOrigin().getLongitude();
+            int firstRow = Tile.computeRow(dLat, sector.getMinLatitude(), latOrigin);
+            int firstCol = Tile.computeColumn(dLon, sector.getMinLongitude(), lonOrigin);
+            int lastRow = Tile.computeRow(dLat, sector.getMaxLatitude(), latOrigin);
+            int lastCol = Tile.computeColumn(dLon, sector.getMaxLongitude(), lonOrigin);
+
+            if ((lastRow - firstRow + 1) * (lastCol - firstCol + 1) >= numTiles
+                || this.isFinalLevel(levelSet, level.getLevelNumber(), params))
+                return level.getLevelNumber();
         }
+
+        return levelSet.getLastLevel().getLevelNumber();
     }
 
     protected DataRaster createTileRaster(LevelSet levelSet, Tile tile, AVList params) throws java.io.IOException
@@ -605,9 +770,6 @@ public abstract class TiledRasterProducer extends AbstractDataStoreProducer
 
     protected DataRaster drawDescendants(LevelSet levelSet, Tile tile, AVList params) throws java.io.IOException
     {
-        DataRaster tileRaster = null;
-        boolean hasDescendants = false;
-
         // Recursively create sub-tile rasters.
         Tile[] subTiles = this.createSubTiles(tile, levelSet.getLevel(tile.getLevelNumber() + 1));
         DataRaster[] subRasters = new DataRaster[subTiles.length];
@@ -616,17 +778,27 @@ public abstract class TiledRasterProducer extends AbstractDataStoreProducer
             // If the sub-tile does not intersect the level set, then skip that sub-tile.
             if (subTiles[index].getSector().intersects(levelSet.getSector()))
             {
-                // Recursively create the sub-tile raster.
-                DataRaster subRaster = this.createTileRaster(levelSet, subTiles[index], params);
-                // If creating the sub-tile raster fails, then skip that sub-tile.
-                if (subRaster != null)
-                {
-                    subRasters[index] = subRaster;
-                    hasDescendants = true;
-                }
+                // Recursively create the sub-tile raster. If creating the sub-tile raster fails, then skip that
+                // sub-tile.
+                subRasters[index] = this.createTileRaster(levelSet, subTiles[index], params);
             }
         }
 
+        return this.drawSubRasters(levelSet, tile, subTiles, subRasters, params);
+    }
+
+    protected DataRaster drawSubRasters(LevelSet levelSet, Tile tile, Tile[] subTiles, DataRaster[] subRasters,
+        AVList params)
+    {
+        DataRaster tileRaster = null;
+        boolean hasDescendants = false;
+
+        for (DataRaster subRaster : subRasters)
+        {
+            if (subRaster != null)
+                hasDescendants = true;
+        }
+
         // Exit if the caller has instructed us to stop production.
         if (this.isStopped())
             return null;
@@ -1227,14 +1399,106 @@ public abstract class TiledRasterProducer extends AbstractDataStoreProducer
 
     protected void startProgress()
     {
-        this.tile = 0;
+        synchronized (this.progressLock)
+        {
+            this.tile = 0;
+        }
+
         this.firePropertyChange(AVKey.PROGRESS, null, 0d);
     }
 
     protected void updateProgress()
     {
-        double oldProgress = this.tile / (double) this.tileCount;
-        double newProgress = ++this.tile / (double) this.tileCount;
+        // Tiles may be produced on several threads. Count the tile under the lock, but notify listeners outside it so
+        // that a slow listener doesn't hold up the other threads.
+        double oldProgress;
+        double newProgress;
+        synchronized (this.progressLock)
+        {
+            oldProgress = this.tile / (double) this.tileCount;
+            newProgress = ++this.tile / (double) this.tileCount;
+        }
+
         this.firePropertyChange(AVKey.PROGRESS, oldProgress, newProgress);
     }
+
+    //**************************************************************//
+    //********************  Parallel Production  *******************//
+    //**************************************************************//
+
+    /**
+     * Creates the raster of one tile on the shared fork-join pool. Above the subtree level the tile's four sub-tiles
+     * are created by forked tasks and composed into this tile's raster; at or below that level the tile's whole subtree
+     * is created on the current thread by {@link TiledRasterProducer#createTileRaster(gov.nasa.worldwind.util.LevelSet,
+     * gov.nasa.worldwind.util.Tile, gov.nasa.worldwind.avlist.AVList)}.
+     */
+    protected class TileRasterTask extends java.util.concurrent.RecursiveTask<DataRaster>
+    {
+        protected final LevelSet levelSet;
+        protected final Tile tile;
+        protected final AVList params;
+        protected final int subtreeLevel;
+
+        public TileRasterTask(LevelSet levelSet, Tile tile, AVList params, int subtreeLevel)
+        {
+            this.levelSet = levelSet;
+            this.tile = tile;
+            this.params = params;
+            this.subtreeLevel = subtreeLevel;
+        }
+
+        @Override
+        protected DataRaster compute()
+        {
+            try
+            {
+                if (this.tile.getLevelNumber() >= this.subtreeLevel
+                    || isFinalLevel(this.levelSet, this.tile.getLevelNumber(), this.params))
+                {
+                    return createTileRaster(this.levelSet, this.tile, this.params);
+                }
+
+                return this.computeDescendants();
+            }
+            catch (java.io.IOException e)
+            {
+                throw new WWRuntimeException(e);
+            }
+        }
+
+        protected DataRaster computeDescendants()
+        {
+            // Exit if the caller has instructed us to stop production.
+            if (isStopped())
+                return null;
+
+            Tile[] subTiles = createSubTiles(this.tile, this.levelSet.getLevel(this.tile.getLevelNumber() + 1));
+            TileRasterTask[] subTasks = new TileRasterTask[subTiles.length];
+            java.util.List<TileRasterTask> forked = new java.util.ArrayList<TileRasterTask>(subTiles.length);
+            for (int index = 0; index < subTiles.length; index++)
+            {
+                // If the sub-tile does not intersect the level set, then skip that sub-tile.
+                if (subTiles[index].getSector().intersects(this.levelSet.getSector()))
+                {
+                    subTasks[index] = new TileRasterTask(this.levelSet, subTiles[index], this.params,
+                        this.subtreeLevel);
+                    forked.add(subTasks[index]);
+                }
+            }
+
+            invokeAll(forked);
+
+            DataRaster[] subRasters = new DataRaster[subTiles.length];
+            for (int index = 0; index < subTiles.length; index++)
+            {
+                if (subTasks[index] != null)
+                    subRasters[index] = subTasks[index].join();
+            }
+
+            DataRaster tileRaster = drawSubRasters(this.levelSet, this.tile, subTiles, subRasters, this.params);
+            updateProgress();
+
+            return tileRaster;
+        }
+    }
 }
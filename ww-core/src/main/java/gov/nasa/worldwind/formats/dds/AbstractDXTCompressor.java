@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.formats.dds;
+
+import gov.nasa.worldwind.util.*;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Base class for the DXT compressors. Compresses an image one row of 4x4 blocks at a time, either serially on the
+ * calling thread or, when the compression attributes request more than one thread, in parallel on the shared fork-join
+ * pool. Subclasses define how a range of block rows is compressed.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public abstract class AbstractDXTCompressor implements DXTCompressor
+{
+    /**
+     * The minimum number of 4x4 blocks in an image compressed in parallel. Smaller images, such as the lower levels of
+     * a mipmap chain, compress faster on the calling thread than they can be handed to the pool.
+     */
+    protected static final int MIN_PARALLEL_BLOCK_COUNT = 1024;
+
+    /**
+     * Returns the number of bytes in one compressed 4x4 block.
+     *
+     * @return the compressed block size in bytes.
+     */
+    protected abstract int getCompressedBlockSize();
+
+    /**
+     * Compresses the rows of 4x4 blocks between the pixel rows <code>minY</code> (inclusive) and <code>maxY</code>
+     * (exclusive), and writes the compressed blocks to the specified <code>buffer</code> starting at its current
+     * position.
+     *
+     * @param colorBlockExtractor the extractor that provides the image's color blocks.
+     * @param image               the image to compress.
+     * @param attributes          the attributes that may affect the compression.
+     * @param minY                the first pixel row to compress. Must be a multiple of 4.
+     * @param maxY                the pixel row following the last row to compress.
+     * @param buffer              the buffer that will receive the compressed output.
+     */
+    protected abstract void compressBlockRows(ColorBlockExtractor colorBlockExtractor,
+        java.awt.image.BufferedImage image, DXTCompressionAttributes attributes, int minY, int maxY,
+        java.nio.ByteBuffer buffer);
+
+    public void compressImage(java.awt.image.BufferedImage image, DXTCompressionAttributes attributes,
+        java.nio.ByteBuffer buffer)
+    {
+        if (image == null)
+        {
+            String message = Logging.getMessage("nullValue.ImageIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+        if (attributes == null)
+        {
+            String message = Logging.getMessage("nullValue.AttributesIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+        if (buffer == null)
+        {
+            String message = Logging.getMessage("nullValue.BufferNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        int threadCount = attributes.getCompressionThreadCount();
+        if (threadCount > 1 && this.canCompressInParallel(image, attributes))
+        {
+            this.compressImageParallel(image, attributes, buffer, threadCount);
+        }
+        else
+        {
+            this.compressBlockRows(this.getColorBlockExtractor(image), image, attributes, 0, image.getHeight(),
+                buffer);
+        }
+    }
+
+    /**
+     * Indicates whether the specified image should be compressed on multiple threads. Parallel compression requires
+     * more than one row of blocks, at least {@link #MIN_PARALLEL_BLOCK_COUNT} blocks, and a color block compression
+     * type that produces each block independently of the others.
+     *
+     * @param image      the image to compress.
+     * @param attributes the attributes that may affect the compression.
+     *
+     * @return true if the image can be compressed in parallel, otherwise false.
+     */
+    protected boolean canCompressInParallel(java.awt.image.BufferedImage image, DXTCompressionAttributes attributes)
+    {
+        int blockCount = ((image.getWidth() + 3) / 4) * ((image.getHeight() + 3) / 4);
+
+        return image.getHeight() > 4 && blockCount >= MIN_PARALLEL_BLOCK_COUNT
+            && BlockDXT1Compressor.isColorBlockCompressionTypeSupported(attributes.getColorBlockCompressionType());
+    }
+
+    /**
+     * Compresses the specified image by splitting its rows of 4x4 blocks among tasks on the shared fork-join pool, see
+     * {@link ForkJoinSupport}. Each task writes its blocks at their serial offsets in the buffer, so the output is
+     * identical to the serial path. On return the buffer position is advanced past the compressed image.
+     *
+     * @param image       the image to compress.
+     * @param attributes  the attributes that may affect the compression.
+     * @param buffer      the buffer that will receive the compressed output.
+     * @param threadCount the number of threads to divide the image among.
+     */
+    protected void compressImageParallel(java.awt.image.BufferedImage image, DXTCompressionAttributes attributes,
+        java.nio.ByteBuffer buffer, int threadCount)
+    {
+        int blockRows = (image.getHeight() + 3) / 4;
+        int rowSize = this.getCompressedBlockSize() * ((image.getWidth() + 3) / 4);
+        int position = buffer.position();
+
+        // Split the image into a few tasks per thread so that threads finishing early can steal remaining rows.
+        int rowsPerTask = Math.max(1, blockRows / (4 * threadCount));
+
+        ForkJoinSupport.invoke(new CompressBlockRowsTask(image, attributes, buffer, position, rowSize, 0, blockRows,
+            rowsPerTask));
+
+        buffer.position(position + blockRows * rowSize);
+    }
+
+    protected ColorBlockExtractor getColorBlockExtractor(java.awt.image.BufferedImage image)
+    {
+        return new BasicColorBlockExtractor(image);
+    }
+
+    /**
+     * Returns the color block extractor used by each task of a parallel compression. The extractor must read the same
+     * colors as the extractor returned by {@link #getColorBlockExtractor(java.awt.image.BufferedImage)}.
+     *
+     * @param image the image to extract color blocks from.
+     *
+     * @return a new color block extractor for the image.
+     */
+    protected ColorBlockExtractor getBlockRowExtractor(java.awt.image.BufferedImage image)
+    {
+        return new RasterColorBlockExtractor(image);
+    }
+
+    /** Compresses a range of block rows, dividing the range among forked subtasks until it is small enough. */
+    protected class CompressBlockRowsTask extends RecursiveAction
+    {
+        protected final java.awt.image.BufferedImage image;
+        protected final DXTCompressionAttributes attributes;
+        protected final java.nio.ByteBuffer buffer;
+        protected final int position;
+        protected final int rowSize;
+        protected final int firstRow;
+        protected final int lastRow;
+        protected final int rowsPerTask;
+
+        public CompressBlockRowsTask(java.awt.image.BufferedImage image, DXTCompressionAttributes attributes,
+            java.nio.ByteBuffer buffer, int position, int rowSize, int firstRow, int lastRow, int rowsPerTask)
+        {
+            this.image = image;
+            this.attributes = attributes;
+            this.buffer = buffer;
+            this.position = position;
+            this.rowSize = rowSize;
+            this.firstRow = firstRow;
+            this.lastRow = lastRow;
+            this.rowsPerTask = rowsPerTask;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (this.lastRow - this.firstRow > this.rowsPerTask)
+            {
+                int midRow = (this.firstRow + this.lastRow) / 2;
+                invokeAll(
+                    new CompressBlockRowsTask(this.image, this.attributes, this.buffer, this.position, this.rowSize,
+                        this.firstRow, midRow, this.rowsPerTask),
+                    new CompressBlockRowsTask(this.image, this.attributes, this.buffer, this.position, this.rowSize,
+                        midRow, this.lastRow, this.rowsPerTask));
+                return;
+            }
+
+            // Each task writes through its own view of the buffer. A duplicate buffer shares the content but not the
+            // position or the byte order.
+            java.nio.ByteBuffer taskBuffer = this.buffer.duplicate();
+            taskBuffer.order(this.buffer.order());
+            taskBuffer.position(this.position + this.firstRow * this.rowSize);
+
+            compressBlockRows(getBlockRowExtractor(this.image), this.image, this.attributes, 4 * this.firstRow,
+                Math.min(4 * this.lastRow, this.image.getHeight()), taskBuffer);
+        }
+    }
+}
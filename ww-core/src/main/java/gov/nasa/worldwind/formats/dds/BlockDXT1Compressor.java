@@ -173,6 +173,23 @@ public class BlockDXT1Compressor
         }
     }
 
+    /**
+     * Indicates whether the specified color block compression type is one recognized by this compressor. Blocks
+     * compressed with an unrecognized type reuse the palette end points of the previous block, so the output of such
+     * blocks depends on the order in which they are compressed.
+     *
+     * @param compressionType the color block compression type to test.
+     *
+     * @return true if the compression type is recognized, otherwise false.
+     */
+    protected static boolean isColorBlockCompressionTypeSupported(String compressionType)
+    {
+        //noinspection StringEquality
+        return compressionType == DXTCompressionAttributes.COLOR_BLOCK_COMPRESSION_BBOX
+            || compressionType == DXTCompressionAttributes.COLOR_BLOCK_COMPRESSION_EUCLIDEAN_DISTANCE
+            || compressionType == DXTCompressionAttributes.COLOR_BLOCK_COMPRESSION_LUMINANCE_DISTANCE;
+    }
+
     //**************************************************************//
     //********************  Color Block Palette Assembly  **********//
     //**************************************************************//
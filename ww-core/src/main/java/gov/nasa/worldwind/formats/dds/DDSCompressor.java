@@ -5,6 +5,8 @@
  */
 package gov.nasa.worldwind.formats.dds;
 
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.util.*;
 
 import java.awt.image.*;
@@ -23,6 +25,8 @@ import java.awt.image.*;
  */
 public class DDSCompressor
 {
+    protected static final int DEFAULT_COMPRESSION_THREAD_COUNT = 1;
+
     /** Creates a new DDSCompressor, but otherwise does nothing. */
     public DDSCompressor()
     {
@@ -366,7 +370,9 @@ public class DDSCompressor
      * <table> <tr><th>Attribute</th><th>Value</th></tr> <tr><td>Build Mipmaps</td><td>true</td></tr>
      * <tr><td>Premultiply Alpha</td><td>true</td></tr> <tr><td>DXT Format</td><td>Let DDSCompressor choose optimal
      * format.</td></tr> <tr><td>Enable DXT1 Alpha</td><td>false</td></tr> <tr><td>DXT1 Alpha
-     * Threshold</td><td>128</td></tr> <tr><td>Compression Algorithm</td><td>Euclidean Distance</td></tr> </table>
+     * Threshold</td><td>128</td></tr> <tr><td>Compression Algorithm</td><td>Euclidean Distance</td></tr>
+     * <tr><td>Compression Threads</td><td>Configuration value for {@link AVKey#DDS_COMPRESSOR_THREAD_POOL_SIZE}, or
+     * 1</td></tr> </table>
      *
      * @return the default compression attributes.
      */
@@ -376,6 +382,8 @@ public class DDSCompressor
         attributes.setBuildMipmaps(true); // Always build mipmaps.
         attributes.setPremultiplyAlpha(true); // Always create premultiplied alpha format files..
         attributes.setDXTFormat(0); // Allow the DDSCompressor to choose the appropriate DXT format.
+        attributes.setCompressionThreadCount(Configuration.getIntegerValue(AVKey.DDS_COMPRESSOR_THREAD_POOL_SIZE,
+            DEFAULT_COMPRESSION_THREAD_COUNT));
         return attributes;
     }
 
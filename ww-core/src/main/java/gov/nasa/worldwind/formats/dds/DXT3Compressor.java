@@ -11,7 +11,7 @@ import gov.nasa.worldwind.util.Logging;
  * @author dcollins
  * @version $Id$
  */
-public class DXT3Compressor implements DXTCompressor
+public class DXT3Compressor extends AbstractDXTCompressor
 {
     public DXT3Compressor()
     {
@@ -45,38 +45,22 @@ public class DXT3Compressor implements DXTCompressor
         return (width * height);
     }
     
-    public void compressImage(java.awt.image.BufferedImage image, DXTCompressionAttributes attributes,
-        java.nio.ByteBuffer buffer)
+    protected int getCompressedBlockSize()
     {
-        if (image == null)
-        {
-            String message = Logging.getMessage("nullValue.ImageIsNull");
-            Logging.logger().severe(message);
-            throw new IllegalArgumentException(message);
-        }
-        if (attributes == null)
-        {
-            String message = Logging.getMessage("nullValue.AttributesIsNull");
-            Logging.logger().severe(message);
-            throw new IllegalArgumentException(message);
-        }
-        if (buffer == null)
-        {
-            String message = Logging.getMessage("nullValue.BufferNull");
-            Logging.logger().severe(message);
-            throw new IllegalArgumentException(message);
-        }
+        return 16;
+    }
 
+    protected void compressBlockRows(ColorBlockExtractor colorBlockExtractor, java.awt.image.BufferedImage image,
+        DXTCompressionAttributes attributes, int minY, int maxY, java.nio.ByteBuffer buffer)
+    {
         ColorBlock4x4 colorBlock = new ColorBlock4x4();
-        ColorBlockExtractor colorBlockExtractor = this.getColorBlockExtractor(image);
 
         BlockDXT3 dxt3Block = new BlockDXT3();
         BlockDXT3Compressor dxt3Compressor = new BlockDXT3Compressor();
 
         int width = image.getWidth();
-        int height = image.getHeight();
 
-        for (int j = 0; j < height; j += 4)
+        for (int j = minY; j < maxY; j += 4)
         {
             for (int i = 0; i < width; i += 4)
             {
@@ -93,9 +77,4 @@ public class DXT3Compressor implements DXTCompressor
             }
         }
     }
-
-    protected ColorBlockExtractor getColorBlockExtractor(java.awt.image.BufferedImage image)
-    {
-        return new BasicColorBlockExtractor(image);
-    }
 }
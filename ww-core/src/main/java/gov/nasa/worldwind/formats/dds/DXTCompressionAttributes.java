@@ -21,6 +21,7 @@ public class DXTCompressionAttributes
     private boolean enableDXT1Alpha;
     private int dxt1AlphaThreshold;
     private String colorBlockCompressionType;
+    private int compressionThreadCount;
 
     protected static final int DEFAULT_DXT1_TRANSPARENCY_THRESHOLD = 128;
 
@@ -32,6 +33,7 @@ public class DXTCompressionAttributes
         this.enableDXT1Alpha = false;
         this.dxt1AlphaThreshold = DEFAULT_DXT1_TRANSPARENCY_THRESHOLD;
         this.colorBlockCompressionType = COLOR_BLOCK_COMPRESSION_EUCLIDEAN_DISTANCE;
+        this.compressionThreadCount = 1;
     }
 
     public boolean isBuildMipmaps()
@@ -93,4 +95,27 @@ public class DXTCompressionAttributes
     {
         this.colorBlockCompressionType = compressionType;
     }
+
+    /**
+     * Returns the number of threads used to compress the 4x4 blocks of each image. A value of 1 indicates that blocks
+     * are compressed serially on the calling thread.
+     *
+     * @return the number of compression threads.
+     */
+    public int getCompressionThreadCount()
+    {
+        return this.compressionThreadCount;
+    }
+
+    /**
+     * Specifies the number of threads used to compress the 4x4 blocks of each image. When greater than 1, the
+     * compressor splits each image into rows of blocks and compresses them on a fork-join pool. The compressed output
+     * is identical to the output of the serial path.
+     *
+     * @param threadCount the number of compression threads. Values less than 1 are treated as 1.
+     */
+    public void setCompressionThreadCount(int threadCount)
+    {
+        this.compressionThreadCount = threadCount;
+    }
 }
@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.formats.dds;
+
+import gov.nasa.worldwind.util.Logging;
+
+/**
+ * Provides access to 4x4 blocks of pixel data from a <code>BufferedImage</code> by reading one full row of blocks at a
+ * time into a packed 8888 ARGB <code>int[]</code>. Images of type <code>TYPE_INT_ARGB</code> and
+ * <code>TYPE_INT_RGB</code> are read directly from their raster data. All other image types are read with a single
+ * call to <code>image.getRGB()</code> per block row. The extracted colors are identical to those extracted by {@link
+ * BasicColorBlockExtractor}.
+ * <p>
+ * This class is not thread safe. Each thread compressing part of an image must use its own instance.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public class RasterColorBlockExtractor extends BasicColorBlockExtractor
+{
+    protected int[] rowBuffer;
+    protected int rowY = -1;
+
+    /**
+     * Creates a <code>RasterColorBlockExtractor</code> which will draw its data from the <code>BufferedImage</code>.
+     *
+     * @param image the image to draw data from.
+     *
+     * @throws IllegalArgumentException if <code>image</code> is null.
+     */
+    public RasterColorBlockExtractor(java.awt.image.BufferedImage image)
+    {
+        super(image);
+
+        this.rowBuffer = new int[4 * this.width];
+    }
+
+    /**
+     * Extracts a 4x4 block of pixel data at the specified coordinate <code>(x, y)</code>, and places the data in the
+     * specified <code>colorBlock</code>. The block row containing <code>y</code> is read from the image the first time
+     * one of its blocks is requested. Edge blocks and premultiplied alpha are handled exactly as in {@link
+     * BasicColorBlockExtractor#extractColorBlock4x4(DXTCompressionAttributes, int, int, ColorBlock4x4)}.
+     *
+     * @param attributes the DXT compression attributes which may affect how colors are accessed.
+     * @param x          horizontal coordinate origin to extract pixel data from.
+     * @param y          vertical coordinate origin to extract pixel data from.
+     * @param colorBlock 4x4 block of pixel data that will receive the data.
+     *
+     * @throws IllegalArgumentException if either <code>attributes</code> or <code>colorBlock</code> is null.
+     */
+    public void extractColorBlock4x4(DXTCompressionAttributes attributes, int x, int y, ColorBlock4x4 colorBlock)
+    {
+        if (attributes == null)
+        {
+            String message = Logging.getMessage("nullValue.AttributesIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+        if (colorBlock == null)
+        {
+            String message = Logging.getMessage("nullValue.ColorBlockIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        int bw = Math.min(this.width - x, 4);
+        int bh = Math.min(this.height - y, 4);
+        int bxOffset = 4 * (bw - 1);
+        int byOffset = 4 * (bh - 1);
+        int blockPos = 0;
+
+        if (this.rowY != y)
+        {
+            this.readBlockRow(y, bh);
+            this.rowY = y;
+        }
+
+        for (int j = 0; j < 4; j++)
+        {
+            int rowPos = remainder[byOffset + j] * this.width + x;
+
+            int32ToColor32(this.rowBuffer[rowPos + remainder[bxOffset]], colorBlock.color[blockPos++]);
+            int32ToColor32(this.rowBuffer[rowPos + remainder[bxOffset + 1]], colorBlock.color[blockPos++]);
+            int32ToColor32(this.rowBuffer[rowPos + remainder[bxOffset + 2]], colorBlock.color[blockPos++]);
+            int32ToColor32(this.rowBuffer[rowPos + remainder[bxOffset + 3]], colorBlock.color[blockPos++]);
+        }
+
+        if (attributes.isPremultiplyAlpha())
+        {
+            for (int i = 0; i < 16; i++)
+            {
+                premultiplyAlpha(colorBlock.color[i]);
+            }
+        }
+    }
+
+    protected void readBlockRow(int y, int rowHeight)
+    {
+        int type = this.image.getType();
+
+        if (type == java.awt.image.BufferedImage.TYPE_INT_ARGB || type == java.awt.image.BufferedImage.TYPE_INT_RGB)
+        {
+            // The data elements of these image types are packed 8888 ARGB or 888 RGB ints which are not premultiplied.
+            // These are the same values returned by getRGB(), except that getRGB() reports opaque alpha for images
+            // without an alpha channel.
+            this.image.getRaster().getDataElements(0, y, this.width, rowHeight, this.rowBuffer);
+
+            if (type == java.awt.image.BufferedImage.TYPE_INT_RGB)
+            {
+                for (int i = 0; i < this.width * rowHeight; i++)
+                {
+                    this.rowBuffer[i] |= 0xFF000000;
+                }
+            }
+        }
+        else
+        {
+            this.image.getRGB(0, y, this.width, rowHeight, this.rowBuffer, 0, this.width);
+        }
+    }
+}
@@ -7,8 +7,10 @@ package gov.nasa.worldwind.formats.nitfs;
 
 import gov.nasa.worldwind.formats.rpf.*;
 import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.util.ForkJoinSupport;
 
 import java.nio.*;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * @author Lado Garakanidze
@@ -163,12 +165,99 @@ public class NITFSImageSegment extends NITFSSegment
         this.compressionLUTS[3].copyValues(block16, 12, code, 4);
     }
 
+    /**
+     * Decompresses the image into an array of pixels, one row after another. Subframes are decompressed in parallel
+     * on World Wind's shared fork-join pool.
+     *
+     * @param pixels    the array that receives the pixels. Must hold at least numSignificantRows * numSignificantCols
+     *                  pixels. Transparent pixels and masked subframes are left unchanged.
+     * @param imageType the pixel format.
+     *
+     * @return the pixel array.
+     *
+     * @throws NITFSRuntimeException if the image data is invalid.
+     */
     public int[] getImagePixelsAsArray(int[] pixels, RPFImageType imageType) throws NITFSRuntimeException {
+        return this.getImagePixelsAsArray(pixels, imageType, true);
+    }
+
+    /**
+     * Decompresses the image into an array of pixels, one row after another. Each subframe is decompressed
+     * independently of the others, so when <code>parallel</code> is true the subframes are divided among the threads
+     * of World Wind's shared fork-join pool, see {@link ForkJoinSupport}, and each thread writes its subframes' pixels
+     * directly into the array. When called from one of the pool's threads the subframes are divided among the tasks
+     * of that pool rather than submitted again. The result is identical to decompressing on one thread.
+     *
+     * @param pixels    the array that receives the pixels. Must hold at least numSignificantRows * numSignificantCols
+     *                  pixels. Transparent pixels and masked subframes are left unchanged.
+     * @param imageType the pixel format.
+     * @param parallel  true to decompress subframes in parallel, false to decompress them on the calling thread.
+     *
+     * @return the pixel array.
+     *
+     * @throws NITFSRuntimeException if the image data is invalid.
+     */
+    public int[] getImagePixelsAsArray(int[] pixels, RPFImageType imageType, boolean parallel)
+        throws NITFSRuntimeException {
+        int numSubframes = this.numOfBlocksPerCol * this.numOfBlocksPerRow;
+
+        if (parallel && numSubframes > 1 && ForkJoinSupport.isParallel())
+            ForkJoinSupport.invoke(new DecompressSubframesTask(pixels, imageType, 0, numSubframes));
+        else
+            this.decompressSubframes(pixels, imageType, 0, numSubframes);
+
+        return pixels;
+    }
+
+    /** Decompresses a range of subframes, dividing the range among forked subtasks until it is a single subframe. */
+    protected class DecompressSubframesTask extends RecursiveAction
+    {
+        protected final int[] pixels;
+        protected final RPFImageType imageType;
+        protected final int firstSubframe;
+        protected final int lastSubframe;
+
+        public DecompressSubframesTask(int[] pixels, RPFImageType imageType, int firstSubframe, int lastSubframe)
+        {
+            this.pixels = pixels;
+            this.imageType = imageType;
+            this.firstSubframe = firstSubframe;
+            this.lastSubframe = lastSubframe;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (this.lastSubframe - this.firstSubframe > 1)
+            {
+                int mid = (this.firstSubframe + this.lastSubframe) / 2;
+                invokeAll(
+                    new DecompressSubframesTask(this.pixels, this.imageType, this.firstSubframe, mid),
+                    new DecompressSubframesTask(this.pixels, this.imageType, mid, this.lastSubframe));
+                return;
+            }
+
+            decompressSubframes(this.pixels, this.imageType, this.firstSubframe, this.lastSubframe);
+        }
+    }
+
+    /**
+     * Decompresses the subframes from <code>firstSubframe</code> (inclusive) to <code>lastSubframe</code> (exclusive)
+     * in row major order. Subframes are read through a view of the segment's buffer, so several ranges may be
+     * decompressed at once.
+     *
+     * @param pixels        the array that receives the pixels.
+     * @param imageType     the pixel format.
+     * @param firstSubframe the index of the first subframe to decompress.
+     * @param lastSubframe  the index following the last subframe to decompress.
+     */
+    protected void decompressSubframes(int[] pixels, RPFImageType imageType, int firstSubframe, int lastSubframe)
+    {
         RPFFrameFileComponents rpfComponents = this.getRPFFrameFileComponents();
         RPFLocationSection componentLocationTable = rpfComponents.componentLocationTable;
 
         int spatialDataSubsectionLocation = componentLocationTable.getSpatialDataSubsectionLocation();
-        super.buffer.position( spatialDataSubsectionLocation );
+        java.nio.ByteBuffer buffer = super.buffer.duplicate();
 
         int band = 0; // for(int band = 0; band < rpfComponents.numOfSpectralBandTables;  band++)
         NITFSImageBand imageBand = this.imageBands[band];
@@ -179,108 +268,108 @@ public class NITFSImageSegment extends NITFSSegment
         byte[][] block4x4 = new byte[4][4];
         int rowSize = (short) ((this.numOfImageCodesPerRow * this.imageCodeBitLength) / 8L);
         byte[] rowBytes = new byte[rowSize];
-        int subFrameOffset;
-        short subFrameIdx = 0;
+        int subFrameSize = (int) (this.numOfImageRows * rowSize);
 
-        for (int subFrameH = 0; subFrameH < this.numOfBlocksPerCol; subFrameH++)
+        for (int subFrameIdx = firstSubframe; subFrameIdx < lastSubframe; subFrameIdx++)
         {
-            for (int subFrameW = 0; subFrameW < this.numOfBlocksPerRow; subFrameW++, subFrameIdx++ )
-            {
-                int blockY = (int) (subFrameH * rpfComponents.numOfOutputRowsPerSubframe);
-                int blockX = (int) (subFrameW * rpfComponents.numOfOutputColumnsPerSubframe);
+            int subFrameH = subFrameIdx / this.numOfBlocksPerRow;
+            int subFrameW = subFrameIdx % this.numOfBlocksPerRow;
+            int blockY = (int) (subFrameH * rpfComponents.numOfOutputRowsPerSubframe);
+            int blockX = (int) (subFrameW * rpfComponents.numOfOutputColumnsPerSubframe);
 
-                if(hasMaskedSubframes)
+            if(hasMaskedSubframes)
+            {
+                int subFrameOffset = this.subFrameOffsets[subFrameIdx];
+                if( -1 == subFrameOffset)
+                {   // this is a masked / empty subframe
+                    continue;
+                }
+                else
                 {
-                    subFrameOffset = this.subFrameOffsets[subFrameIdx];
-                    if( -1 == subFrameOffset)
-                    {   // this is a masked / empty subframe
-                        continue;
-                    }
-                    else
-                    {
-                        super.buffer.position( spatialDataSubsectionLocation + subFrameOffset );
-                    }
+                    buffer.position( spatialDataSubsectionLocation + subFrameOffset );
                 }
+            }
+            else
+            {
+                // Subframes without a mask table are stored one after another.
+                buffer.position( spatialDataSubsectionLocation + subFrameIdx * subFrameSize );
+            }
 
-                for (int row = 0; row < this.numOfImageRows; row++)
-                {
-                    int qy = blockY + row * 4;
+            for (int row = 0; row < this.numOfImageRows; row++)
+            {
+                int qy = blockY + row * 4;
 
-                    super.buffer.get(rowBytes, 0, rowSize);
+                buffer.get(rowBytes, 0, rowSize);
 
-                    // short[] codes = new short[(int) this.numOfImageCodesPerRow];
-                    for (int i = 0, cidx = 0, bidx = 0; i < (int) this.numOfImageCodesPerRow / 2; i++)
-                    {
-                        aa = (short) ((0x00FF & (short) rowBytes[bidx++]) << 4);
-                        ab = (short) (0x00FF & (short)  rowBytes[bidx++]);
-                        bb = (short) (0x00FF & (short)  rowBytes[bidx++]);
+                for (int i = 0, cidx = 0, bidx = 0; i < (int) this.numOfImageCodesPerRow / 2; i++)
+                {
+                    aa = (short) ((0x00FF & (short) rowBytes[bidx++]) << 4);
+                    ab = (short) (0x00FF & (short)  rowBytes[bidx++]);
+                    bb = (short) (0x00FF & (short)  rowBytes[bidx++]);
 
-                        codes[cidx++] = (short) (aa | ((0x00F0 & ab) >> 4));
-                        codes[cidx++] = (short) (bb | ((0x000F & ab) << 8));
-                    }
+                    codes[cidx++] = (short) (aa | ((0x00F0 & ab) >> 4));
+                    codes[cidx++] = (short) (bb | ((0x000F & ab) << 8));
+                }
 
-                    for (int col = 0; col < this.numOfImageCodesPerRow; col++)
+                for (int col = 0; col < this.numOfImageCodesPerRow; col++)
+                {
+                    if (hasTransparentPixels)
                     {
-                        if (hasTransparentPixels)
-                        {
-                            if (4095 == codes[col])
-                            {   // this is a transparent kernel
-                                continue;                          
-                            }
+                        if (4095 == codes[col])
+                        {   // this is a transparent kernel
+                            continue;
                         }
+                    }
 
-                        this.decompressBlock4x4( block4x4, codes[col] );
+                    this.decompressBlock4x4( block4x4, codes[col] );
 
-                        int qx = blockX + col * 4;
+                    int qx = blockX + col * 4;
 
-                        for (int h = 0; h < 4; h++)
+                    for (int h = 0; h < 4; h++)
+                    {
+                        for (int w = 0; w < 4; w++)
                         {
-                            for (int w = 0; w < 4; w++)
-                            {
-                                colorCode = 0x00FF & block4x4[h][w];
-
-                                if (hasTransparentPixels)
-                                {
-                                    if (this.transparentOutputPixelCode == colorCode)
-                                    {   // this is a transparent pixel
-                                        continue;
-                                    }
-                                }
+                            colorCode = 0x00FF & block4x4[h][w];
 
-                                if (imageBand.isReservedApplicationCode(colorCode))
-                                {
-                                    // This is a reserved color code used to define an application-specific overlay. We
-                                    // don't know the meaning of application overlay codes, therefore we treat them as
-                                    // transparent or background pixels.
+                            if (hasTransparentPixels)
+                            {
+                                if (this.transparentOutputPixelCode == colorCode)
+                                {   // this is a transparent pixel
                                     continue;
                                 }
+                            }
 
-                                rgbColor = imageBand.lookupRGB(colorCode);
-                                switch (imageType)
-                                {
-                                    case IMAGE_TYPE_ALPHA_RGB:
-                                        rgbColor = 0xFF000000 + rgbColor;
-                                        break;
-                                  //case IMAGE_TYPE_GRAY:
-                                  //    break;
-                                  //case IMAGE_TYPE_RGB:
-                                  //    break;
-                                    case IMAGE_TYPE_GRAY_ALPHA:
-                                        rgbColor = (rgbColor << 8) + 0xFF;
-                                        break;
-                                    case IMAGE_TYPE_RGB_ALPHA:
-                                        rgbColor = (rgbColor << 8) + 0xFF;
-                                        break;
-                                }
-                                pixels[(qy + h) * this.numSignificantCols + (qx + w)] = rgbColor;
+                            if (imageBand.isReservedApplicationCode(colorCode))
+                            {
+                                // This is a reserved color code used to define an application-specific overlay. We
+                                // don't know the meaning of application overlay codes, therefore we treat them as
+                                // transparent or background pixels.
+                                continue;
                             }
-                        }
-                    } // end of column loop
-                } // end of row loop
-            } // end of subFrameW loop
-        } // end of subFrameH loop
 
-        return pixels;
+                            rgbColor = imageBand.lookupRGB(colorCode);
+                            switch (imageType)
+                            {
+                                case IMAGE_TYPE_ALPHA_RGB:
+                                    rgbColor = 0xFF000000 + rgbColor;
+                                    break;
+                              //case IMAGE_TYPE_GRAY:
+                              //    break;
+                              //case IMAGE_TYPE_RGB:
+                              //    break;
+                                case IMAGE_TYPE_GRAY_ALPHA:
+                                    rgbColor = (rgbColor << 8) + 0xFF;
+                                    break;
+                                case IMAGE_TYPE_RGB_ALPHA:
+                                    rgbColor = (rgbColor << 8) + 0xFF;
+                                    break;
+                            }
+                            pixels[(qy + h) * this.numSignificantCols + (qx + w)] = rgbColor;
+                        }
+                    }
+                } // end of column loop
+            } // end of row loop
+        } // end of subframe loop
     }
 
     private void validateImage() throws NITFSRuntimeException {
@@ -0,0 +1,531 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.formats.rpf;
+
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An incremental index of the RPF frame files beneath one or more directories. {@link #update(java.io.File)} walks a
+ * directory tree in parallel on World Wind's shared fork-join pool, see {@link ForkJoinSupport}, where each directory
+ * is a task that forks a task for each of its subdirectories, so idle threads steal whole subtrees from busy ones.
+ * Frame files are recognized by their names, using {@link RPFFrameFilename#isFilename(String)}. Symbolic links to
+ * directories are not followed, so a link to an ancestor directory does not make the walk recurse forever.
+ * <p/>
+ * The index records each directory's modification time, its subdirectories and its frame files, and can be saved to
+ * and loaded from a file with {@link #save(java.io.File)} and {@link #load(java.io.File)}. A later update lists only
+ * the directories whose modification time has changed, and reuses the recorded contents of the others. A directory's
+ * modification time changes when entries are added to, removed from or renamed in that directory, so adding a disc of
+ * frames to an archive lists only the new directories and their parents. Changes to the contents of an existing frame
+ * file are not detected.
+ * <p/>
+ * An {@link UpdateListener} passed to {@link #update(java.io.File, UpdateListener)} is told of each directory as it is
+ * listed, and can cancel the update.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public class RPFDirectoryIndex
+{
+    private static final String FILE_ID = "RPF_DIR_INDEX";
+    private static final String VERSION = "VERSION_0_1";
+    private static final int FILE_ID_LENGTH = 16;
+    private static final int VERSION_LENGTH = 16;
+    private static final String CHARACTER_ENCODING = "UTF-8";
+
+    /**
+     * Directories modified within this many milliseconds of an update are listed again by the next update, because a
+     * file system with a coarse timestamp resolution may not change their modification time when they change again.
+     */
+    protected static final long MODIFICATION_TIME_RESOLUTION = 2000;
+
+    /** The recorded contents of one directory. */
+    public static class DirectoryRecord
+    {
+        protected final long lastModified;
+        protected final String[] subdirectories;
+        protected final String[] frameFiles;
+
+        public DirectoryRecord(long lastModified, String[] subdirectories, String[] frameFiles)
+        {
+            this.lastModified = lastModified;
+            this.subdirectories = subdirectories;
+            this.frameFiles = frameFiles;
+        }
+
+        /**
+         * Returns the directory's modification time when it was last listed, or 0 if it must be listed by the next
+         * update.
+         *
+         * @return the directory's modification time.
+         */
+        public long getLastModified()
+        {
+            return this.lastModified;
+        }
+
+        public String[] getSubdirectories()
+        {
+            return this.subdirectories.clone();
+        }
+
+        public String[] getFrameFiles()
+        {
+            return this.frameFiles.clone();
+        }
+    }
+
+    /** Receives the progress of an update, and may cancel it. */
+    public interface UpdateListener
+    {
+        /**
+         * Called before a directory is listed. Directories are listed on the threads of the shared fork-join pool, so
+         * this may be called on several threads at once.
+         *
+         * @param directory the directory about to be listed.
+         */
+        void directoryListing(File directory);
+
+        /**
+         * Indicates whether the update should stop. Called before each directory is indexed.
+         *
+         * @return true if the update should stop, otherwise false.
+         */
+        boolean isCancelled();
+    }
+
+    /** The directory records, keyed by absolute directory path. */
+    private final Map<String, DirectoryRecord> directories = new HashMap<String, DirectoryRecord>();
+
+    public RPFDirectoryIndex()
+    {
+    }
+
+    /**
+     * Updates the index of the directory tree beneath a root directory, listing only directories that are not in the
+     * index or have been modified since they were indexed. Directories beneath the root that no longer exist are
+     * removed from the index. Records of directories outside the root are unaffected.
+     *
+     * @param root the root directory.
+     *
+     * @return the number of directories listed.
+     *
+     * @throws IllegalArgumentException if the root is null or not a directory.
+     */
+    public int update(File root)
+    {
+        return this.update(root, null);
+    }
+
+    /**
+     * Updates the index of the directory tree beneath a root directory, as {@link #update(java.io.File)} does, and
+     * reports each directory listed to a listener. If the listener cancels the update, the index is left unchanged.
+     *
+     * @param root     the root directory.
+     * @param listener the listener to report progress to and to check for cancellation. May be null.
+     *
+     * @return the number of directories listed, or -1 if the update was cancelled.
+     *
+     * @throws IllegalArgumentException if the root is null or not a directory.
+     */
+    public int update(File root, UpdateListener listener)
+    {
+        if (root == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (!root.isDirectory())
+        {
+            String message = Logging.getMessage("generic.FileNotFound", root);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        String rootPath = root.getAbsolutePath();
+        Map<String, DirectoryRecord> previous;
+        synchronized (this.directories)
+        {
+            previous = new HashMap<String, DirectoryRecord>(this.directories);
+        }
+
+        // Directories modified after this time may change again without changing their modification time.
+        long trustedBefore = System.currentTimeMillis() - MODIFICATION_TIME_RESOLUTION;
+        ConcurrentHashMap<String, DirectoryRecord> current = new ConcurrentHashMap<String, DirectoryRecord>();
+        AtomicInteger numListed = new AtomicInteger();
+
+        ForkJoinSupport.invoke(new IndexDirectoryTask(new File(rootPath), previous, current, trustedBefore, numListed,
+            listener));
+        if (listener != null && listener.isCancelled())
+            return -1;
+
+        synchronized (this.directories)
+        {
+            Iterator<String> iter = this.directories.keySet().iterator();
+            while (iter.hasNext())
+            {
+                if (isInTree(iter.next(), rootPath))
+                    iter.remove();
+            }
+
+            this.directories.putAll(current);
+        }
+
+        return numListed.get();
+    }
+
+    /**
+     * Indexes one directory and forks a task for each of its subdirectories. A directory is listed only if it is not
+     * in the previous index or its modification time has changed. No directories are indexed once the update's
+     * listener, if any, has cancelled the update.
+     */
+    protected class IndexDirectoryTask extends RecursiveAction
+    {
+        protected final File directory;
+        protected final Map<String, DirectoryRecord> previous;
+        protected final ConcurrentHashMap<String, DirectoryRecord> current;
+        protected final long trustedBefore;
+        protected final AtomicInteger numListed;
+        protected final UpdateListener listener;
+
+        public IndexDirectoryTask(File directory, Map<String, DirectoryRecord> previous,
+            ConcurrentHashMap<String, DirectoryRecord> current, long trustedBefore, AtomicInteger numListed,
+            UpdateListener listener)
+        {
+            this.directory = directory;
+            this.previous = previous;
+            this.current = current;
+            this.trustedBefore = trustedBefore;
+            this.numListed = numListed;
+            this.listener = listener;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (this.listener != null && this.listener.isCancelled())
+                return;
+
+            String path = this.directory.getPath();
+            long lastModified = this.directory.lastModified();
+
+            DirectoryRecord record = this.previous.get(path);
+            if (record == null || record.lastModified == 0 || record.lastModified != lastModified)
+            {
+                if (this.listener != null)
+                    this.listener.directoryListing(this.directory);
+
+                record = listDirectory(this.directory, lastModified < this.trustedBefore ? lastModified : 0);
+                if (record == null) // The directory has been removed or cannot be read.
+                    return;
+
+                this.numListed.incrementAndGet();
+            }
+
+            this.current.put(path, record);
+
+            List<IndexDirectoryTask> tasks = new ArrayList<IndexDirectoryTask>(record.subdirectories.length);
+            for (String name : record.subdirectories)
+            {
+                tasks.add(new IndexDirectoryTask(new File(this.directory, name), this.previous, this.current,
+                    this.trustedBefore, this.numListed, this.listener));
+            }
+
+            invokeAll(tasks);
+        }
+    }
+
+    /**
+     * Lists a directory's subdirectories and frame files. Symbolic links to directories are not recorded as
+     * subdirectories.
+     *
+     * @param directory    the directory to list.
+     * @param lastModified the modification time to record for the directory.
+     *
+     * @return the directory's record, or null if the directory cannot be listed.
+     */
+    protected DirectoryRecord listDirectory(File directory, long lastModified)
+    {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return null;
+
+        List<String> subdirectories = new ArrayList<String>();
+        List<String> frameFiles = new ArrayList<String>();
+
+        for (File file : files)
+        {
+            String name = file.getName();
+            // Test the name first, which avoids a file system query for each of the many frame files.
+            if (RPFFrameFilename.isFilename(name.toUpperCase(Locale.US)) && file.isFile())
+                frameFiles.add(name);
+            else if (file.isDirectory() && !Files.isSymbolicLink(file.toPath()))
+                subdirectories.add(name);
+        }
+
+        return new DirectoryRecord(lastModified, subdirectories.toArray(new String[subdirectories.size()]),
+            frameFiles.toArray(new String[frameFiles.size()]));
+    }
+
+    private static boolean isInTree(String path, String rootPath)
+    {
+        return path.equals(rootPath) || (path.startsWith(rootPath)
+            && (rootPath.endsWith(File.separator) || path.startsWith(File.separator, rootPath.length())));
+    }
+
+    /**
+     * Returns the number of indexed directories.
+     *
+     * @return the number of directories.
+     */
+    public int getNumDirectories()
+    {
+        synchronized (this.directories)
+        {
+            return this.directories.size();
+        }
+    }
+
+    /**
+     * Returns the record of an indexed directory.
+     *
+     * @param directory the directory.
+     *
+     * @return the directory's record, or null if the directory is not indexed.
+     *
+     * @throws IllegalArgumentException if the directory is null.
+     */
+    public DirectoryRecord getDirectoryRecord(File directory)
+    {
+        if (directory == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        synchronized (this.directories)
+        {
+            return this.directories.get(directory.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Returns all the indexed frame files.
+     *
+     * @return the frame files.
+     */
+    public List<File> getFrameFiles()
+    {
+        return this.getFrameFiles(null);
+    }
+
+    /**
+     * Returns the indexed frame files of one data series, such as the files passed to {@link
+     * gov.nasa.worldwind.layers.rpf.RPFTiledImageProcessor#makeFileIndex(java.io.File, String, String, Iterable)}.
+     *
+     * @param dataSeriesCode the two character data series code, such as "ON" or "TL", or null to return the files of
+     *                       all data series.
+     *
+     * @return the frame files.
+     */
+    public List<File> getFrameFiles(String dataSeriesCode)
+    {
+        List<File> files = new ArrayList<File>();
+
+        synchronized (this.directories)
+        {
+            for (Map.Entry<String, DirectoryRecord> entry : this.directories.entrySet())
+            {
+                for (String name : entry.getValue().frameFiles)
+                {
+                    // Frame filenames end with the data series code and the zone code.
+                    if (dataSeriesCode == null || name.regionMatches(true, 9, dataSeriesCode, 0, 2))
+                        files.add(new File(entry.getKey(), name));
+                }
+            }
+        }
+
+        return files;
+    }
+
+    /**
+     * Replaces the index's contents with an index saved to a file by {@link #save(java.io.File)}.
+     *
+     * @param file the file to read.
+     *
+     * @throws IllegalArgumentException if the file is null.
+     * @throws IOException              if the file cannot be read or does not contain an index.
+     */
+    public void load(File file) throws IOException
+    {
+        if (file == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.load(WWIO.readFileToBuffer(file));
+    }
+
+    /**
+     * Saves the index's contents to a file, replacing the file's contents.
+     *
+     * @param file the file to write.
+     *
+     * @throws IllegalArgumentException if the file is null.
+     * @throws IOException              if the file cannot be written.
+     */
+    public void save(File file) throws IOException
+    {
+        if (file == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        WWIO.saveBuffer(this.save(), file);
+    }
+
+    public void load(ByteBuffer buffer) throws IOException
+    {
+        if (buffer == null)
+        {
+            String message = Logging.getMessage("nullValue.ByteBufferIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        String fileId = getString(buffer, FILE_ID_LENGTH);
+        if (!FILE_ID.equals(fileId))
+        {
+            String message = "buffer does not contain an RPFDirectoryIndex";
+            Logging.logger().severe(message);
+            throw new IOException(message);
+        }
+        //noinspection UnusedDeclaration
+        String version = getString(buffer, VERSION_LENGTH);
+
+        Map<String, DirectoryRecord> map = new HashMap<String, DirectoryRecord>();
+        int numDirectories = buffer.getInt();
+        for (int i = 0; i < numDirectories; i++)
+        {
+            String path = getString(buffer);
+            long lastModified = buffer.getLong();
+            String[] subdirectories = new String[buffer.getInt()];
+            for (int j = 0; j < subdirectories.length; j++)
+            {
+                subdirectories[j] = getString(buffer);
+            }
+            String[] frameFiles = new String[buffer.getInt()];
+            for (int j = 0; j < frameFiles.length; j++)
+            {
+                frameFiles[j] = getString(buffer);
+            }
+
+            map.put(path, new DirectoryRecord(lastModified, subdirectories, frameFiles));
+        }
+
+        synchronized (this.directories)
+        {
+            this.directories.clear();
+            this.directories.putAll(map);
+        }
+    }
+
+    public ByteBuffer save() throws IOException
+    {
+        synchronized (this.directories)
+        {
+            int length = FILE_ID_LENGTH + VERSION_LENGTH + 4;
+            for (Map.Entry<String, DirectoryRecord> entry : this.directories.entrySet())
+            {
+                length += getStringLength(entry.getKey()) + 8 + 4 + 4;
+                for (String s : entry.getValue().subdirectories)
+                {
+                    length += getStringLength(s);
+                }
+                for (String s : entry.getValue().frameFiles)
+                {
+                    length += getStringLength(s);
+                }
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            putString(buffer, FILE_ID, FILE_ID_LENGTH);
+            putString(buffer, VERSION, VERSION_LENGTH);
+            buffer.putInt(this.directories.size());
+            for (Map.Entry<String, DirectoryRecord> entry : this.directories.entrySet())
+            {
+                DirectoryRecord record = entry.getValue();
+                putString(buffer, entry.getKey());
+                buffer.putLong(record.lastModified);
+                buffer.putInt(record.subdirectories.length);
+                for (String s : record.subdirectories)
+                {
+                    putString(buffer, s);
+                }
+                buffer.putInt(record.frameFiles.length);
+                for (String s : record.frameFiles)
+                {
+                    putString(buffer, s);
+                }
+            }
+
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    private static String getString(ByteBuffer buffer, int len) throws IOException
+    {
+        String s = null;
+        if (buffer != null && buffer.remaining() >= len)
+        {
+            byte[] dest = new byte[len];
+            buffer.get(dest, 0, len);
+            s = new String(dest, CHARACTER_ENCODING).trim();
+        }
+        return s;
+    }
+
+    private static void putString(ByteBuffer buffer, String s, int len) throws IOException
+    {
+        byte[] src = new byte[len];
+        byte[] utfBytes = s.getBytes(CHARACTER_ENCODING);
+        System.arraycopy(utfBytes, 0, src, 0, utfBytes.length);
+        buffer.put(src, 0, len);
+    }
+
+    private static String getString(ByteBuffer buffer) throws IOException
+    {
+        byte[] dest = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(dest);
+        return new String(dest, CHARACTER_ENCODING);
+    }
+
+    private static void putString(ByteBuffer buffer, String s) throws IOException
+    {
+        byte[] utfBytes = s.getBytes(CHARACTER_ENCODING);
+        buffer.putShort((short) utfBytes.length);
+        buffer.put(utfBytes);
+    }
+
+    private static int getStringLength(String s) throws IOException
+    {
+        return 2 + s.getBytes(CHARACTER_ENCODING).length;
+    }
+}
@@ -72,6 +72,17 @@ public abstract class RPFFrameTransform
 
     public abstract RPFImage[] deproject(int frameNumber, BufferedImage frame);
 
+    /**
+     * Indicates whether {@link #deproject(int, java.awt.image.BufferedImage)} resamples frames into new images, rather
+     * than returning the frame's image itself.
+     *
+     * @return true if deprojection creates new images, otherwise false.
+     */
+    public boolean deprojectsToNewImages()
+    {
+        return false;
+    }
+
     /* [Section 30.6, MIL-C-89038] */
     /* [Section A.3.6, MIL-PRF-89041A] */
     static int frameNumber(int row, int column, int columnFrames)
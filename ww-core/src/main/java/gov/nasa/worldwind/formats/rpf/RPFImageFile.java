@@ -5,20 +5,34 @@
  */
 package gov.nasa.worldwind.formats.rpf;
 
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.cache.*;
+import gov.nasa.worldwind.exception.WWRuntimeException;
 import gov.nasa.worldwind.formats.nitfs.NITFSImageSegment;
 import gov.nasa.worldwind.formats.nitfs.NITFSRuntimeException;
 import gov.nasa.worldwind.formats.nitfs.NITFSSegmentType;
 import gov.nasa.worldwind.formats.nitfs.UserDefinedImageSubheader;
+import gov.nasa.worldwind.util.Logging;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.WritableRaster;
+import java.util.concurrent.*;
 
 /**
+ * An RPF frame file. {@link #getCachedBufferedImage(java.io.File)} decodes frame files through a memory cache shared by
+ * all RPF consumers, so that a frame needed by several adjacent tiles is decoded once. The cache's capacity in bytes is
+ * read from the World Wind configuration value {@link AVKey#RPF_FRAME_CACHE_SIZE}.
+ *
  * @author lado
  * @version $Id$
  */
 public class RPFImageFile extends RPFFile
 {
+    /** Frames currently being decoded for the frame cache, keyed by their frame cache key. */
+    private static final ConcurrentHashMap<String, FutureTask<BufferedImage>> pendingFrames
+        = new ConcurrentHashMap<String, FutureTask<BufferedImage>>();
+
     private NITFSImageSegment imageSegment = null;
     private UserDefinedImageSubheader imageSubheader = null;
     private RPFFrameFileComponents rpfFrameFileComponents = null;
@@ -76,7 +90,27 @@ public class RPFImageFile extends RPFFile
     //    return dest;
     //}
 
+    /**
+     * Decodes the frame into a new image. The frame's subframes are decoded in parallel on World Wind's shared
+     * fork-join pool.
+     *
+     * @return the frame's image, in ARGB format.
+     */
     public BufferedImage getBufferedImage()
+    {
+        return this.getBufferedImage(true);
+    }
+
+    /**
+     * Decodes the frame into a new image. Callers that decode several frames at once on their own threads should
+     * decode each frame serially.
+     *
+     * @param parallel true to decode the frame's subframes in parallel on World Wind's shared fork-join pool, false to
+     *                 decode them on the calling thread.
+     *
+     * @return the frame's image, in ARGB format.
+     */
+    public BufferedImage getBufferedImage(boolean parallel)
     {
         if (null == this.imageSegment)
             return null;
@@ -91,7 +125,7 @@ public class RPFImageFile extends RPFFile
 
 //        IntBuffer buffer = IntBuffer.wrap(dataBuffer.getData());
         int[] buffer = dataBuffer.getData();
-        this.getImageSegment().getImagePixelsAsArray(buffer, RPFImageType.IMAGE_TYPE_ALPHA_RGB);
+        this.getImageSegment().getImagePixelsAsArray(buffer, RPFImageType.IMAGE_TYPE_ALPHA_RGB, parallel);
         return bimage;
     }
 
@@ -106,4 +140,124 @@ public class RPFImageFile extends RPFFile
     public static RPFImageFile load(java.io.File rpfFile) throws java.io.IOException, NITFSRuntimeException {
         return new RPFImageFile(rpfFile);
     }
+
+    /**
+     * Returns the memory cache of decoded frames, initializing the cache if it doesn't yet exist. Frames are evicted
+     * least recently used first once the decoded frames exceed the cache's capacity in bytes.
+     *
+     * @return the memory cache of decoded frames.
+     */
+    public static synchronized MemoryCache getMemoryCache()
+    {
+        if (!WorldWind.getMemoryCacheSet().containsCache(RPFImageFile.class.getName()))
+        {
+            long size = Configuration.getLongValue(AVKey.RPF_FRAME_CACHE_SIZE, 134217728L);
+            MemoryCache cache = BasicMemoryCacheSet.createMemoryCache((long) (0.85 * size), size);
+            cache.setName("RPF Frames");
+            WorldWind.getMemoryCacheSet().addCache(RPFImageFile.class.getName(), cache);
+        }
+
+        return WorldWind.getMemoryCacheSet().getCache(RPFImageFile.class.getName());
+    }
+
+    /**
+     * Returns the key that identifies a frame file's decoded image in the frame cache. The key includes the file's
+     * modification time, so a frame file that is replaced is decoded again rather than served from the cache.
+     *
+     * @param rpfFile the frame file.
+     *
+     * @return the frame file's cache key.
+     *
+     * @throws IllegalArgumentException if the file is null.
+     */
+    public static String getFrameCacheKey(java.io.File rpfFile)
+    {
+        if (rpfFile == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        return rpfFile.getAbsolutePath() + "#" + rpfFile.lastModified();
+    }
+
+    /**
+     * Returns the decoded image of a frame file from the frame cache, or loads and decodes the frame file and adds it
+     * to the cache if it's not in the cache. A frame requested by several threads at the same time is decoded once.
+     * The returned image is shared by all callers and must not be modified; use {@link #getBufferedImage()} to obtain
+     * an image that may be modified.
+     *
+     * @param rpfFile the frame file.
+     *
+     * @return the frame's image, in ARGB format.
+     *
+     * @throws IllegalArgumentException if the file is null.
+     * @throws java.io.IOException      if the file cannot be read.
+     * @throws NITFSRuntimeException    if the file is not a valid RPF frame file.
+     */
+    public static BufferedImage getCachedBufferedImage(final java.io.File rpfFile) throws java.io.IOException,
+        NITFSRuntimeException
+    {
+        if (rpfFile == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        final String cacheKey = getFrameCacheKey(rpfFile);
+        BufferedImage image = (BufferedImage) getMemoryCache().getObject(cacheKey);
+        if (image != null)
+            return image;
+
+        FutureTask<BufferedImage> task = new FutureTask<BufferedImage>(new Callable<BufferedImage>()
+        {
+            public BufferedImage call() throws Exception
+            {
+                BufferedImage image = load(rpfFile).getBufferedImage();
+                if (image != null)
+                    getMemoryCache().add(cacheKey, image, 4L * image.getWidth() * image.getHeight());
+
+                return image;
+            }
+        });
+
+        // Decode the frame on this thread, unless another thread is already decoding it.
+        FutureTask<BufferedImage> pending = pendingFrames.putIfAbsent(cacheKey, task);
+        if (pending == null)
+        {
+            pending = task;
+            try
+            {
+                task.run();
+            }
+            finally
+            {
+                pendingFrames.remove(cacheKey, task);
+            }
+        }
+
+        try
+        {
+            return pending.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new java.io.InterruptedIOException(e.getMessage());
+        }
+        catch (ExecutionException e)
+        {
+            // Rethrow the exception that loading the frame threw.
+            if (e.getCause() instanceof java.io.IOException)
+                throw (java.io.IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+
+            throw new WWRuntimeException(e.getCause());
+        }
+    }
 }
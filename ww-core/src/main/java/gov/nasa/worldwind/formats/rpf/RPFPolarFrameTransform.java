@@ -200,6 +200,12 @@ class RPFPolarFrameTransform extends RPFFrameTransform
         return Sector.fromDegrees(bounds.minLat, bounds.maxLat, bounds.minLon, bounds.maxLon);
     }
 
+    @Override
+    public boolean deprojectsToNewImages()
+    {
+        return true;
+    }
+
     public RPFImage[] deproject(int frameNumber, BufferedImage frame)
     {
         if (frame == null)
@@ -47,6 +47,9 @@ public class DBaseFile extends AVListImpl
     protected boolean open;
     protected int numRecordsRead;
     protected ByteBuffer recordBuffer;
+    // Source file and memory mapped file contents used for random access reads.
+    protected File file;
+    protected MappedByteBuffer mappedBuffer;
 
     public DBaseFile(Object source)
     {
@@ -172,6 +175,67 @@ public class DBaseFile extends AVListImpl
         }
     }
 
+    /**
+     * Indicates whether records can be read in any order by calling {@link #readRecord(int)}. Random access is
+     * available when the DBaseFile was opened from a file, and is not available when it was opened from a URL or an
+     * input stream.
+     *
+     * @return <code>true</code> if records can be read by index; <code>false</code> otherwise.
+     */
+    public boolean isRandomAccess()
+    {
+        return this.open && this.file != null;
+    }
+
+    /**
+     * Reads the record at the specified index. The first call memory maps the DBase file, and each record is then read
+     * directly from the mapped file. This does not affect the records returned by {@link #nextRecord()}.
+     *
+     * @param recordIndex the zero-origin index of the record to read.
+     *
+     * @return the record at the specified index.
+     *
+     * @throws IllegalArgumentException if the index is out of range.
+     * @throws IllegalStateException    if the DBaseFile is closed or does not support random access.
+     * @throws WWRuntimeException       if an exception occurs while reading the record.
+     * @see #isRandomAccess()
+     */
+    public DBaseRecord readRecord(int recordIndex)
+    {
+        if (!this.open)
+        {
+            String message = Logging.getMessage("SHP.DBaseFileClosed", this.getStringValue(AVKey.DISPLAY_NAME));
+            Logging.logger().severe(message);
+            throw new IllegalStateException(message);
+        }
+
+        if (this.file == null)
+        {
+            String message = Logging.getMessage("SHP.RandomAccessUnavailable", this.getStringValue(AVKey.DISPLAY_NAME));
+            Logging.logger().severe(message);
+            throw new IllegalStateException(message);
+        }
+
+        if (recordIndex < 0 || recordIndex >= this.getNumberOfRecords())
+        {
+            String message = Logging.getMessage("generic.indexOutOfRange", recordIndex);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        try
+        {
+            return this.readRecordAt(recordIndex);
+        }
+        catch (IOException e)
+        {
+            String message = Logging.getMessage("SHP.ExceptionAttemptingToReadDBaseRecord",
+                this.getStringValue(AVKey.DISPLAY_NAME));
+            Logging.logger().log(java.util.logging.Level.SEVERE, message, e);
+            throw new WWRuntimeException(message, e);
+        }
+    }
+
     public void close()
     {
         if (this.channel != null)
@@ -182,6 +246,7 @@ public class DBaseFile extends AVListImpl
 
         this.open = false;
         this.recordBuffer = null;
+        this.mappedBuffer = null;
     }
 
     //**************************************************************//
@@ -199,6 +264,7 @@ public class DBaseFile extends AVListImpl
 
         // DBase record reading performs about 200% better when the FileInputStream is wrapped in a BufferedInputStream.
         this.channel = Channels.newChannel(WWIO.getBufferedInputStream(new FileInputStream(file)));
+        this.file = file;
         this.initialize();
     }
 
@@ -438,6 +504,29 @@ public class DBaseFile extends AVListImpl
         return this.readRecordFromBuffer(this.recordBuffer, ++this.numRecordsRead);
     }
 
+    /**
+     * Reads the record at the specified index from the memory mapped DBase file, mapping the file if necessary.
+     *
+     * @param recordIndex the zero-origin index of the record to read.
+     *
+     * @return a new {@link DBaseRecord} instance.
+     *
+     * @throws IOException if the file cannot be mapped.
+     */
+    protected synchronized DBaseRecord readRecordAt(int recordIndex) throws IOException
+    {
+        if (this.mappedBuffer == null)
+            this.mappedBuffer = WWIO.mapFile(this.file);
+
+        // Read from a duplicate of the mapped buffer so that concurrent readers do not share a buffer position.
+        int pos = this.getHeaderLength() + recordIndex * this.getRecordLength();
+        ByteBuffer buffer = this.mappedBuffer.duplicate();
+        buffer.limit(pos + this.getRecordLength());
+        buffer.position(pos);
+
+        return this.readRecordFromBuffer(buffer, recordIndex + 1);
+    }
+
     /**
      * Reads a {@link DBaseRecord} instance from the given {@link java.nio.ByteBuffer};
      * <p/>
@@ -83,6 +83,17 @@ import java.util.logging.Level;
  * Shapefile parses an accompanying projection file and validates the coordinate system parameters. Override {@link
  * #readBoundingRectangle(java.nio.ByteBuffer)} and {@link #readPoints(java.nio.ByteBuffer)} to change how the
  * Shapefile's point coordinates are interpreted according to its coordinate system.
+ * <p/>
+ * <h3>Random Access</h3>
+ * <p/>
+ * A Shapefile opened from a file with the parameter {@link gov.nasa.worldwind.avlist.AVKey#SHAPEFILE_RANDOM_ACCESS} set
+ * to <code>true</code> memory maps its shape, index and attribute files and can read records in any order. {@link
+ * #readRecord(int)} reads a record by its index using the record offsets in the index file. {@link
+ * #getRecordIndices(gov.nasa.worldwind.geom.Sector)} and {@link #readRecords(gov.nasa.worldwind.geom.Sector)} use a
+ * {@link ShapefileSpatialIndex} to find the records that intersect a sector. The spatial index is stored in a sidecar
+ * file with the suffix ".shpx" next to the Shapefile, and is built from the records' bounding rectangles when that file
+ * is missing or out of date. Random access requires the accompanying index file. The streaming interface remains
+ * available in random access mode.
  *
  * @author Patrick Murris
  * @version $Id$
@@ -96,6 +107,7 @@ public class Shapefile extends AVListImpl implements Closeable, Exportable
     protected static final String INDEX_FILE_SUFFIX = ".shx";
     protected static final String ATTRIBUTE_FILE_SUFFIX = ".dbf";
     protected static final String PROJECTION_FILE_SUFFIX = ".prj";
+    protected static final String SPATIAL_INDEX_FILE_SUFFIX = ".shpx";
 
     protected static final String[] SHAPE_CONTENT_TYPES =
         {
@@ -177,6 +189,23 @@ public class Shapefile extends AVListImpl implements Closeable, Exportable
     protected ByteBuffer recordHeaderBuffer;
     protected ByteBuffer recordContentBuffer;
     protected MappedByteBuffer mappedShpBuffer;
+    // Random access data.
+    protected File shpFile;
+    protected MappedByteBuffer mappedShxBuffer;
+    /** Record offset and content length pairs from the memory mapped index file, in 16-bit words. */
+    protected IntBuffer mappedIndex;
+    protected ShapefileSpatialIndex spatialIndex;
+    /**
+     * Indicates the records whose point coordinates have been converted in the copy-on-write memory mapped Shapefile.
+     * Points are converted in place, so a record read more than once must not have its points converted again.
+     */
+    protected BitSet convertedRecords;
+    protected boolean skipPointConversion;
+    /**
+     * Maps the byte position of each block of points added to the memory mapped point buffer in random access mode to
+     * the block's index. A record read more than once reuses its blocks rather than adding duplicates.
+     */
+    protected Map<Integer, Integer> pointBlockIndices;
 
     /**
      * Opens an Shapefile from a general source. The source type may be one of the following: <ul> <li>{@link
@@ -421,6 +450,9 @@ public class Shapefile extends AVListImpl implements Closeable, Exportable
      */
     public int getNumberOfRecords()
     {
+        if (this.mappedIndex != null)
+            return this.mappedIndex.limit() / 2;
+
         return this.index != null ? this.index.length / 2 : -1;
     }
 
@@ -530,6 +562,127 @@ public class Shapefile extends AVListImpl implements Closeable, Exportable
         return record;
     }
 
+    /**
+     * Indicates whether this Shapefile can read records in any order. Random access is available when the Shapefile is
+     * open, was opened from a file with {@link gov.nasa.worldwind.avlist.AVKey#SHAPEFILE_RANDOM_ACCESS} set to
+     * <code>true</code>, and both the Shapefile and its accompanying index file could be memory mapped.
+     *
+     * @return <code>true</code> if records can be read by index; <code>false</code> otherwise.
+     */
+    public boolean isRandomAccess()
+    {
+        return this.open && this.mappedShpBuffer != null && this.mappedIndex != null;
+    }
+
+    /**
+     * Reads the record at the specified index. The record's offset is read from the Shapefile's memory mapped index
+     * file, and the record and its attributes are read directly from the memory mapped Shapefile and attribute file.
+     * Reading a record by index does not affect the records returned by {@link #nextRecord()}. This method may be
+     * called from any thread.
+     *
+     * @param recordIndex the zero-origin index of the record to read.
+     *
+     * @return the record at the specified index.
+     *
+     * @throws IllegalArgumentException if the index is out of range.
+     * @throws IllegalStateException    if the Shapefile is closed or is not in random access mode.
+     * @throws WWRuntimeException       if an exception occurs while reading the record.
+     * @see #isRandomAccess()
+     */
+    public ShapefileRecord readRecord(int recordIndex)
+    {
+        this.checkRandomAccess();
+
+        if (recordIndex < 0 || recordIndex >= this.getNumberOfRecords())
+        {
+            String message = Logging.getMessage("generic.indexOutOfRange", recordIndex);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        try
+        {
+            return this.readRecordAt(recordIndex);
+        }
+        catch (Exception e)
+        {
+            String message = Logging.getMessage("SHP.ExceptionAttemptingToReadShapefileRecord",
+                this.getStringValue(AVKey.DISPLAY_NAME));
+            Logging.logger().log(Level.SEVERE, message, e);
+            throw new WWRuntimeException(message, e);
+        }
+    }
+
+    /**
+     * Returns the indices of the records whose bounding rectangles intersect the specified sector, in ascending order.
+     * Null records and records without points are never returned.
+     *
+     * @param sector the sector of interest.
+     *
+     * @return the intersecting record indices. The array is empty if no records intersect the sector.
+     *
+     * @throws IllegalArgumentException if the sector is null.
+     * @throws IllegalStateException    if the Shapefile is closed or is not in random access mode.
+     * @see #getSpatialIndex()
+     */
+    public int[] getRecordIndices(Sector sector)
+    {
+        if (sector == null)
+        {
+            String message = Logging.getMessage("nullValue.SectorIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        return this.getSpatialIndex().getRecordIndices(sector);
+    }
+
+    /**
+     * Reads the records whose bounding rectangles intersect the specified sector, in ascending order of their index.
+     *
+     * @param sector the sector of interest.
+     *
+     * @return the intersecting records. The list is empty if no records intersect the sector.
+     *
+     * @throws IllegalArgumentException if the sector is null.
+     * @throws IllegalStateException    if the Shapefile is closed or is not in random access mode.
+     * @throws WWRuntimeException       if an exception occurs while reading a record.
+     * @see #getRecordIndices(gov.nasa.worldwind.geom.Sector)
+     */
+    public List<ShapefileRecord> readRecords(Sector sector)
+    {
+        int[] recordIndices = this.getRecordIndices(sector);
+
+        ArrayList<ShapefileRecord> records = new ArrayList<ShapefileRecord>(recordIndices.length);
+        for (int recordIndex : recordIndices)
+        {
+            records.add(this.readRecord(recordIndex));
+        }
+
+        return records;
+    }
+
+    /**
+     * Returns the spatial index of this Shapefile's records. The first call reads the index from the Shapefile's
+     * spatial index sidecar file if that file is current, and otherwise builds the index from the records' bounding
+     * rectangles and attempts to write it to the sidecar file. Failing to write the sidecar file is logged and does not
+     * prevent the index from being used.
+     *
+     * @return the Shapefile's spatial index.
+     *
+     * @throws IllegalStateException if the Shapefile is closed or is not in random access mode.
+     * @throws WWRuntimeException    if the spatial index cannot be built.
+     */
+    public synchronized ShapefileSpatialIndex getSpatialIndex()
+    {
+        this.checkRandomAccess();
+
+        if (this.spatialIndex == null)
+            this.spatialIndex = this.createSpatialIndex();
+
+        return this.spatialIndex;
+    }
+
     /**
      * Closes the Shapefile, freeing any resources allocated during reading except the buffer containing the Shapefile's
      * points. This closes any {@link java.io.InputStream} passed to the Shapefile during construction. Subsequent calls
@@ -569,6 +722,9 @@ public class Shapefile extends AVListImpl implements Closeable, Exportable
         this.recordHeaderBuffer = null;
         this.recordContentBuffer = null;
         this.mappedShpBuffer = null;
+        this.mappedShxBuffer = null;
+        this.mappedIndex = null;
+        this.spatialIndex = null;
         this.open = false;
     }
 
@@ -635,9 +791,31 @@ public class Shapefile extends AVListImpl implements Closeable, Exportable
         // thrown while attempting to open these optional resource streams. We wrap each source InputStream in a
         // BufferedInputStream because this increases read performance, even when the stream is wrapped in an NIO
         // Channel.
-        InputStream shxStream = this.getFileStream(WWIO.replaceSuffix(file.getPath(), INDEX_FILE_SUFFIX));
-        if (shxStream != null)
-            this.shxChannel = Channels.newChannel(WWIO.getBufferedInputStream(shxStream));
+        // In random access mode, attempt to memory map the index file instead. Record offsets are then read from the
+        // mapped file as needed rather than loaded into memory.
+        boolean randomAccess = params != null
+            && AVListImpl.getBooleanValue(params, AVKey.SHAPEFILE_RANDOM_ACCESS, false);
+        File shxFile = new File(WWIO.replaceSuffix(file.getPath(), INDEX_FILE_SUFFIX));
+        if (randomAccess && this.mappedShpBuffer != null && shxFile.exists())
+        {
+            try
+            {
+                this.mappedShxBuffer = WWIO.mapFile(shxFile);
+                this.shpFile = file;
+            }
+            catch (IOException e)
+            {
+                Logging.logger().log(Level.WARNING,
+                    Logging.getMessage("SHP.ExceptionAttemptingToMemoryMap", shxFile.getPath()), e);
+            }
+        }
+
+        if (this.mappedShxBuffer == null)
+        {
+            InputStream shxStream = this.getFileStream(shxFile.getPath());
+            if (shxStream != null)
+                this.shxChannel = Channels.newChannel(WWIO.getBufferedInputStream(shxStream));
+        }
 
         InputStream prjStream = this.getFileStream(WWIO.replaceSuffix(file.getPath(), PROJECTION_FILE_SUFFIX));
         if (prjStream != null)
@@ -833,7 +1011,10 @@ public class Shapefile extends AVListImpl implements Closeable, Exportable
         // coordinate system.
         try
         {
-            this.index = this.readIndex();
+            if (this.mappedShxBuffer != null)
+                this.mappedIndex = this.readMappedIndex();
+            else
+                this.index = this.readIndex();
         }
         catch (IOException e)
         {
@@ -1081,6 +1262,186 @@ public class Shapefile extends AVListImpl implements Closeable, Exportable
         return array;
     }
 
+    /**
+     * Returns a view of the Shapefile's memory mapped index file as pairs of integers. Each pair holds the offset of
+     * the i'th record from the start of the Shapefile and the length of its content, both in 16-bit words. This
+     * returns <code>null</code> if the index file is smaller than the minimum required size.
+     *
+     * @return the Shapefile's record offset index, or <code>null</code> if the index file is empty.
+     *
+     * @throws IOException if the index file's header cannot be read.
+     */
+    protected IntBuffer readMappedIndex() throws IOException
+    {
+        ByteBuffer buffer = this.mappedShxBuffer.duplicate();
+
+        // Return null if the index is empty or is smaller than the minimum required size.
+        if (buffer.remaining() < HEADER_LENGTH)
+            return null;
+
+        Header indexHeader = this.readHeaderFromBuffer(buffer);
+        int numRecords = Math.min(indexHeader.fileLength, buffer.capacity()) - HEADER_LENGTH;
+        numRecords /= 8; // 8 bytes per record.
+
+        buffer.position(HEADER_LENGTH);
+        buffer.limit(HEADER_LENGTH + 8 * numRecords);
+
+        return buffer.slice().order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+    }
+
+    /**
+     * Returns the byte offset of the specified record from the start of the Shapefile.
+     *
+     * @param recordIndex the zero-origin index of the record.
+     *
+     * @return the record's byte offset.
+     */
+    protected int getRecordOffset(int recordIndex)
+    {
+        if (this.mappedIndex != null)
+            return 2 * this.mappedIndex.get(2 * recordIndex); // Convert from 16-bit words to bytes.
+
+        return this.index[2 * recordIndex];
+    }
+
+    //**************************************************************//
+    //********************  Spatial Index  *************************//
+    //**************************************************************//
+
+    protected void checkRandomAccess()
+    {
+        if (!this.open)
+        {
+            String message = Logging.getMessage("SHP.ShapefileClosed", this.getStringValue(AVKey.DISPLAY_NAME));
+            Logging.logger().severe(message);
+            throw new IllegalStateException(message);
+        }
+
+        if (!this.isRandomAccess())
+        {
+            String message = Logging.getMessage("SHP.RandomAccessUnavailable", this.getStringValue(AVKey.DISPLAY_NAME));
+            Logging.logger().severe(message);
+            throw new IllegalStateException(message);
+        }
+    }
+
+    /**
+     * Reads the Shapefile's spatial index from its sidecar file, or builds the spatial index and writes it to the
+     * sidecar file if the file is missing, unreadable or was written for a different version of the Shapefile.
+     *
+     * @return the Shapefile's spatial index.
+     */
+    protected ShapefileSpatialIndex createSpatialIndex()
+    {
+        File file = new File(WWIO.replaceSuffix(this.shpFile.getPath(), SPATIAL_INDEX_FILE_SUFFIX));
+        long length = this.shpFile.length();
+        long lastModified = this.shpFile.lastModified();
+
+        try
+        {
+            ShapefileSpatialIndex index = ShapefileSpatialIndex.read(file, length, lastModified);
+            if (index != null)
+                return index;
+        }
+        catch (IOException e)
+        {
+            Logging.logger().log(Level.WARNING,
+                Logging.getMessage("SHP.ExceptionAttemptingToReadSpatialIndex", file.getPath()), e);
+        }
+
+        ShapefileSpatialIndex index = this.buildSpatialIndex();
+
+        try
+        {
+            index.write(file, length, lastModified);
+        }
+        catch (IOException e)
+        {
+            // The spatial index is still usable without the sidecar file; it is just rebuilt the next time the
+            // Shapefile is opened.
+            Logging.logger().log(Level.WARNING,
+                Logging.getMessage("SHP.ExceptionAttemptingToWriteSpatialIndex", file.getPath()), e);
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+
+        return index;
+    }
+
+    /**
+     * Builds a spatial index from the bounding rectangles of the Shapefile's records. Only each record's shape type and
+     * bounding rectangle are read; the record's point coordinates are not read or converted.
+     *
+     * @return a new spatial index of the Shapefile's records.
+     */
+    protected ShapefileSpatialIndex buildSpatialIndex()
+    {
+        int numRecords = this.getNumberOfRecords();
+        int[] recordIndices = new int[numRecords];
+        double[] bounds = new double[4 * numRecords];
+        int numItems = 0;
+
+        ByteBuffer buffer = this.mappedShpBuffer.duplicate();
+        for (int i = 0; i < numRecords; i++)
+        {
+            double[] rect = this.readRecordBounds(buffer, this.getRecordOffset(i));
+            if (rect == null)
+                continue; // exclude null records and records without points
+
+            recordIndices[numItems] = i;
+            System.arraycopy(rect, 0, bounds, 4 * numItems, 4);
+            numItems++;
+        }
+
+        return new ShapefileSpatialIndex(Arrays.copyOf(recordIndices, numItems), Arrays.copyOf(bounds, 4 * numItems));
+    }
+
+    /**
+     * Reads the geographic bounding rectangle of the record at the specified offset. This returns <code>null</code> if
+     * the record is a null record or has no points.
+     *
+     * @param buffer a view of the memory mapped Shapefile. The buffer's position and limit are changed by this method.
+     * @param pos    the record's byte offset from the start of the Shapefile.
+     *
+     * @return a four-element array ordered as follows: (minY, maxY, minX, maxX), or <code>null</code> if the record has
+     *         no points.
+     */
+    protected double[] readRecordBounds(ByteBuffer buffer, int pos)
+    {
+        buffer.clear();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        // Skip the record number and content length, which precede the shape type.
+        int contentStart = pos + ShapefileRecord.RECORD_HEADER_LENGTH;
+        String shapeType = this.getShapeType(buffer.getInt(contentStart));
+        if (shapeType == null || isNullType(shapeType))
+            return null;
+
+        if (isPointType(shapeType))
+        {
+            // Point records have no bounding rectangle. Convert a copy of the point so the mapped Shapefile is not
+            // changed.
+            ByteBuffer point = ByteBuffer.allocate(2 * WWBufferUtil.SIZEOF_DOUBLE).order(ByteOrder.LITTLE_ENDIAN);
+            point.putDouble(buffer.getDouble(contentStart + 4)).putDouble(buffer.getDouble(contentStart + 12));
+            point.flip();
+
+            DoubleBuffer coords = this.readPoints(null, point);
+            double x = coords.get(0);
+            double y = coords.get(1);
+            return new double[] {y, y, x, x};
+        }
+
+        buffer.position(contentStart + 4);
+        BoundingRectangle rect = this.readBoundingRectangle(buffer);
+
+        // Multi-point records store their number of points after the bounding rectangle, while polyline and polygon
+        // records store their number of parts and then their number of points.
+        int numParts = isMultiPointType(shapeType) ? 1 : buffer.getInt();
+        int numPoints = buffer.getInt();
+
+        return numParts > 0 && numPoints > 0 ? rect.coords : null;
+    }
+
     //**************************************************************//
     //********************  Coordinate System  *********************//
     //**************************************************************//
@@ -1196,7 +1557,7 @@ public class Shapefile extends AVListImpl implements Closeable, Exportable
      *
      * @throws IOException if the record cannot be read for any reason.
      */
-    protected ShapefileRecord readNextRecord() throws IOException
+    protected synchronized ShapefileRecord readNextRecord() throws IOException
     {
         ByteBuffer buffer;
 
@@ -1252,10 +1613,19 @@ public class Shapefile extends AVListImpl implements Closeable, Exportable
         ShapefileRecord record;
         try
         {
+            // Random access reads may have already converted this record's points in the mapped Shapefile.
+            if (this.mappedIndex != null)
+                this.skipPointConversion = this.isRecordConverted(this.numRecordsRead);
+
             record = this.readRecordFromBuffer(buffer);
+
+            if (this.mappedIndex != null)
+                this.setRecordConverted(this.numRecordsRead);
         }
         finally
         {
+            this.skipPointConversion = false;
+
             // Restore the mapped buffer's limit to its capacity.
             if (this.mappedShpBuffer != null)
                 this.mappedShpBuffer.limit(this.mappedShpBuffer.capacity());
@@ -1264,6 +1634,59 @@ public class Shapefile extends AVListImpl implements Closeable, Exportable
         return record;
     }
 
+    /**
+     * Reads the record at the specified index from the memory mapped Shapefile and reads its attributes from the
+     * memory mapped attribute file. Access is synchronized because records share the Shapefile's point buffer.
+     *
+     * @param recordIndex the zero-origin index of the record to read.
+     *
+     * @return a {@link ShapefileRecord} instance.
+     */
+    protected synchronized ShapefileRecord readRecordAt(int recordIndex)
+    {
+        // Read from a duplicate of the mapped buffer so that random access reads do not disturb the position used by
+        // the streaming interface.
+        int pos = this.getRecordOffset(recordIndex);
+        ByteBuffer buffer = this.mappedShpBuffer.duplicate();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        int contentLength = buffer.getInt(pos + 4) * 2;
+        buffer.limit(pos + ShapefileRecord.RECORD_HEADER_LENGTH + contentLength);
+        buffer.position(pos);
+
+        ShapefileRecord record;
+        try
+        {
+            this.skipPointConversion = this.isRecordConverted(recordIndex);
+            record = this.createRecord(buffer);
+            this.setRecordConverted(recordIndex);
+        }
+        finally
+        {
+            this.skipPointConversion = false;
+        }
+
+        if (record != null && this.attributeFile != null && this.attributeFile.isRandomAccess()
+            && recordIndex < this.attributeFile.getNumberOfRecords())
+        {
+            record.setAttributes(this.attributeFile.readRecord(recordIndex));
+        }
+
+        return record;
+    }
+
+    protected boolean isRecordConverted(int recordIndex)
+    {
+        return this.convertedRecords != null && this.convertedRecords.get(recordIndex);
+    }
+
+    protected void setRecordConverted(int recordIndex)
+    {
+        if (this.convertedRecords == null)
+            this.convertedRecords = new BitSet();
+
+        this.convertedRecords.set(recordIndex);
+    }
+
     /**
      * Reads a {@link ShapefileRecord} instance from the given {@link java.nio.ByteBuffer}, or null if the buffer
      * contains a null record.
@@ -1517,7 +1940,7 @@ public class Shapefile extends AVListImpl implements Closeable, Exportable
             // Set the buffer's limit to include the number of bytes required to hold 2 double precision values for each
             // point, then read the point data between the buffer's current position and limit.
             buffer.limit(limit);
-            pointBuffer = this.readPoints(record, buffer);
+            pointBuffer = this.skipPointConversion ? null : this.readPoints(record, buffer);
         }
         finally
         {
@@ -1539,8 +1962,27 @@ public class Shapefile extends AVListImpl implements Closeable, Exportable
                 this.pointBuffer = new VecBufferBlocks(2, AVKey.FLOAT64, buf);
             }
 
-            // Add the point's byte range to the VecBufferBlocks.
-            return ((VecBufferBlocks) this.pointBuffer).addBlock(pos, limit - 1);
+            // Add the point's byte range to the VecBufferBlocks. Synchronize with records reading the shared point
+            // buffer, which may happen on other threads in random access mode.
+            synchronized (this.pointBuffer)
+            {
+                // Records may be read any number of times in random access mode. Their points occupy the same byte
+                // range each time, so reuse the block added when the record was first read.
+                if (this.mappedIndex == null)
+                    return ((VecBufferBlocks) this.pointBuffer).addBlock(pos, limit - 1);
+
+                if (this.pointBlockIndices == null)
+                    this.pointBlockIndices = new HashMap<Integer, Integer>();
+
+                Integer index = this.pointBlockIndices.get(pos);
+                if (index == null)
+                {
+                    index = ((VecBufferBlocks) this.pointBuffer).addBlock(pos, limit - 1);
+                    this.pointBlockIndices.put(pos, index);
+                }
+
+                return index;
+            }
         }
         else
         {
@@ -40,6 +40,11 @@ public class ShapefilePolygons extends ShapefileRenderable implements OrderedRen
             super(shapefileRenderable, shapefileRecord);
         }
 
+        public Record(ShapefileRenderable shapefileRenderable, Shapefile shapefile, int recordIndex, Sector sector)
+        {
+            super(shapefileRenderable, shapefile, recordIndex, sector);
+        }
+
         protected double[] getBoundaryEffectiveArea(int boundaryIndex)
         {
             return this.boundaryEffectiveArea != null ? this.boundaryEffectiveArea[boundaryIndex] : null;
@@ -331,7 +336,7 @@ public class ShapefilePolygons extends ShapefileRenderable implements OrderedRen
         if (!WorldWind.getMemoryCacheSet().containsCache(ShapefileGeometry.class.getName()))
         {
             long size = Configuration.getLongValue(AVKey.SHAPEFILE_GEOMETRY_CACHE_SIZE, (long) 50e6); // default 50MB
-            MemoryCache cache = new BasicMemoryCache((long) (0.8 * size), size);
+            MemoryCache cache = BasicMemoryCacheSet.createMemoryCache((long) (0.8 * size), size);
             cache.setName("Shapefile Geometry");
             WorldWind.getMemoryCacheSet().addCache(ShapefileGeometry.class.getName(), cache);
         }
@@ -437,6 +442,22 @@ public class ShapefilePolygons extends ShapefileRenderable implements OrderedRen
         this.recordTree.add(record, record.sector.asDegreesArray());
     }
 
+    @Override
+    protected boolean mustAssembleRecordsLazily(Shapefile shapefile)
+    {
+        return shapefile.isRandomAccess()
+            && (Shapefile.isPolylineType(shapefile.getShapeType())
+            || Shapefile.isPolygonType(shapefile.getShapeType())); // accept both polyline and polygon records
+    }
+
+    @Override
+    protected void assembleRecord(Shapefile shapefile, int recordIndex, Sector sector)
+    {
+        ShapefilePolygons.Record record = new ShapefilePolygons.Record(this, shapefile, recordIndex, sector);
+        this.addRecord(shapefile, recordIndex, record);
+        this.recordTree.add(record, record.sector.asDegreesArray());
+    }
+
     @Override
     protected void recordDidChange(ShapefileRenderable.Record record)
     {
@@ -36,6 +36,11 @@ public class ShapefilePolylines extends ShapefileRenderable implements OrderedRe
         {
             super(shapefileRenderable, shapefileRecord);
         }
+
+        public Record(ShapefileRenderable shapefileRenderable, Shapefile shapefile, int recordIndex, Sector sector)
+        {
+            super(shapefileRenderable, shapefile, recordIndex, sector);
+        }
     }
 
     protected static class RecordGroup
@@ -375,7 +380,8 @@ public class ShapefilePolylines extends ShapefileRenderable implements OrderedRe
 
         super.assembleRecords(shapefile);
 
-        if (this.mustSplitTile(this.rootTile))
+        // Records created lazily are already assigned to tiles by their sectors.
+        if (this.rootTile.children == null && this.mustSplitTile(this.rootTile))
         {
             this.splitTile(this.rootTile);
         }
@@ -401,6 +407,65 @@ public class ShapefilePolylines extends ShapefileRenderable implements OrderedRe
         record.tile = this.rootTile;
     }
 
+    @Override
+    protected boolean mustAssembleRecordsLazily(Shapefile shapefile)
+    {
+        return shapefile.isRandomAccess()
+            && (Shapefile.isPolylineType(shapefile.getShapeType())
+            || Shapefile.isPolygonType(shapefile.getShapeType())); // accept both polyline and polygon records
+    }
+
+    @Override
+    protected void assembleRecord(Shapefile shapefile, int recordIndex, Sector sector)
+    {
+        Record record = new ShapefilePolylines.Record(this, shapefile, recordIndex, sector);
+        this.addRecord(shapefile, recordIndex, record);
+        this.addRecordToTile(this.rootTile, record);
+    }
+
+    /**
+     * Adds a record to the deepest tile beneath the specified tile whose sector contains the record's sector, creating
+     * child tiles down to the maximum tile level as needed. Unlike {@link #splitTile(Tile)}, this places records by
+     * their sectors regardless of how many records a tile holds, so that drawing a tile reads the geometry of only the
+     * lazily created records in that tile.
+     *
+     * @param tile   the tile to start from.
+     * @param record the record to add.
+     */
+    protected void addRecordToTile(Tile tile, Record record)
+    {
+        while (tile.level < this.tileMaxLevel)
+        {
+            if (tile.children == null)
+            {
+                Sector[] childSectors = tile.sector.subdivide();
+                tile.children = new Tile[4];
+                for (int i = 0; i < 4; i++)
+                {
+                    tile.children[i] = new Tile(this, childSectors[i], tile.level + 1);
+                }
+            }
+
+            Tile child = null;
+            for (Tile t : tile.children)
+            {
+                if (t.sector.contains(record.sector))
+                {
+                    child = t;
+                    break;
+                }
+            }
+
+            if (child == null) // the record spans more than one child
+                break;
+
+            tile = child;
+        }
+
+        tile.records.add(record);
+        record.tile = tile;
+    }
+
     protected ShapefilePolylines.Record createRecord(ShapefileRecord shapefileRecord)
     {
         return new ShapefilePolylines.Record(this, shapefileRecord);
@@ -539,7 +604,7 @@ public class ShapefilePolylines extends ShapefileRenderable implements OrderedRe
         int numPoints = 0;
         for (Record record : tile.records)
         {
-            numPoints += record.numberOfPoints;
+            numPoints += record.getPointCount();
         }
 
         // Allocate the geographic coordinate vertices to hold the coordinates for all records in the tile. The records
@@ -858,7 +923,7 @@ public class ShapefilePolylines extends ShapefileRenderable implements OrderedRe
             vertexColors[2] = (byte) color.getBlue();
 
             // Add the unique color each vertex of the record.
-            for (int i = 0; i < record.numberOfPoints; i++)
+            for (int i = 0, numPoints = record.getPointCount(); i < numPoints; i++)
             {
                 colors.put(vertexColors, 0, 3);
             }
@@ -57,10 +57,13 @@ public abstract class ShapefileRenderable extends WWObjectImpl
         protected ShapeAttributes normalAttrs;
         protected ShapeAttributes highlightAttrs;
         // Data structures supporting record tessellation and display.
-        protected final CompoundVecBuffer pointBuffer;
+        protected CompoundVecBuffer pointBuffer;
         protected int firstPartNumber;
         protected int numberOfParts;
         protected int numberOfPoints;
+        // Source of the record's geometry when the geometry is loaded on demand. Null once the geometry is loaded.
+        protected Shapefile shapefile;
+        protected int recordIndex;
 
         public Record(ShapefileRenderable shapefileRenderable, ShapefileRecord shapefileRecord)
         {
@@ -87,6 +90,47 @@ public abstract class ShapefileRenderable extends WWObjectImpl
             this.numberOfPoints = shapefileRecord.getNumberOfPoints();
         }
 
+        /**
+         * Creates a record whose geometry is read from a random access shapefile the first time it is needed. Until
+         * then the record holds only its sector, so records outside the visible region never read their geometry.
+         *
+         * @param shapefileRenderable the renderable containing the record.
+         * @param shapefile           the random access shapefile containing the record's geometry.
+         * @param recordIndex         the zero-origin index of the record in the shapefile.
+         * @param sector              the record's sector.
+         *
+         * @throws IllegalArgumentException if any argument is null.
+         * @see Shapefile#isRandomAccess()
+         */
+        public Record(ShapefileRenderable shapefileRenderable, Shapefile shapefile, int recordIndex, Sector sector)
+        {
+            if (shapefileRenderable == null)
+            {
+                String msg = Logging.getMessage("nullValue.RenderableIsNull");
+                Logging.logger().severe(msg);
+                throw new IllegalArgumentException(msg);
+            }
+
+            if (shapefile == null)
+            {
+                String msg = Logging.getMessage("nullValue.ShapefileIsNull");
+                Logging.logger().severe(msg);
+                throw new IllegalArgumentException(msg);
+            }
+
+            if (sector == null)
+            {
+                String msg = Logging.getMessage("nullValue.SectorIsNull");
+                Logging.logger().severe(msg);
+                throw new IllegalArgumentException(msg);
+            }
+
+            this.shapefileRenderable = shapefileRenderable;
+            this.sector = sector;
+            this.shapefile = shapefile;
+            this.recordIndex = recordIndex;
+        }
+
         public ShapefileRenderable getShapefileRenderable()
         {
             return this.shapefileRenderable;
@@ -162,11 +206,20 @@ public abstract class ShapefileRenderable extends WWObjectImpl
 
         public int getBoundaryCount()
         {
+            this.loadGeometry();
             return this.numberOfParts;
         }
 
+        public int getPointCount()
+        {
+            this.loadGeometry();
+            return this.numberOfPoints;
+        }
+
         public VecBuffer getBoundaryPoints(int index)
         {
+            this.loadGeometry();
+
             if (index < 0 || index >= this.numberOfParts)
             {
                 String msg = Logging.getMessage("generic.indexOutOfRange", index);
@@ -182,6 +235,8 @@ public abstract class ShapefileRenderable extends WWObjectImpl
 
         public Iterable<Position> getBoundaryPositions(int index)
         {
+            this.loadGeometry();
+
             if (index < 0 || index >= this.numberOfParts)
             {
                 String msg = Logging.getMessage("generic.indexOutOfRange", index);
@@ -192,6 +247,23 @@ public abstract class ShapefileRenderable extends WWObjectImpl
             VecBuffer points = this.getBoundaryPoints(index);
             return points.getPositions();
         }
+
+        /**
+         * Reads this record's geometry from its shapefile if the record was created with its geometry unloaded. This
+         * may be called on any thread.
+         */
+        protected synchronized void loadGeometry()
+        {
+            if (this.shapefile == null)
+                return; // the geometry is already loaded
+
+            ShapefileRecord shapefileRecord = this.shapefile.readRecord(this.recordIndex);
+            this.pointBuffer = shapefileRecord.getShapeFile().getPointBuffer();
+            this.firstPartNumber = shapefileRecord.getFirstPartNumber();
+            this.numberOfParts = shapefileRecord.getNumberOfParts();
+            this.numberOfPoints = shapefileRecord.getNumberOfPoints();
+            this.shapefile = null;
+        }
     }
 
     protected Sector sector;
@@ -248,6 +320,13 @@ public abstract class ShapefileRenderable extends WWObjectImpl
     {
         this.records = new ArrayList<ShapefileRenderable.Record>();
 
+        if (this.mustAssembleRecordsLazily(shapefile))
+        {
+            this.assembleRecordsLazily(shapefile);
+            this.records.trimToSize(); // Reduce memory overhead from unused ArrayList capacity.
+            return;
+        }
+
         while (shapefile.hasNext())
         {
             ShapefileRecord shapefileRecord = shapefile.nextRecord();
@@ -274,6 +353,64 @@ public abstract class ShapefileRenderable extends WWObjectImpl
         this.addRecord(shapefileRecord, renderableRecord);
     }
 
+    /**
+     * Indicates whether this renderable's records should be created from the shapefile's spatial index with their
+     * geometry loaded on demand. The default returns <code>false</code>. Subclasses that access record geometry only
+     * through {@link ShapefileRenderable.Record}'s accessors may return <code>true</code> for random access
+     * shapefiles.
+     *
+     * @param shapefile the shapefile to display.
+     *
+     * @return <code>true</code> to create records lazily; <code>false</code> to read every record during assembly.
+     */
+    protected boolean mustAssembleRecordsLazily(Shapefile shapefile)
+    {
+        return false;
+    }
+
+    /**
+     * Creates this renderable's records from the bounding rectangles in the shapefile's spatial index, in shapefile
+     * order. Record geometry is not read until the record is first drawn. If an attribute delegate is specified, each
+     * shapefile record is read for the delegate, but its point coordinates are not retained by this renderable.
+     *
+     * @param shapefile the random access shapefile to display.
+     */
+    protected void assembleRecordsLazily(Shapefile shapefile)
+    {
+        ShapefileSpatialIndex index = shapefile.getSpatialIndex();
+
+        // Order the index items by record index so that record ordinals follow the shapefile order. Each key holds
+        // the record index in its high bits and the item's position in its low bits.
+        long[] keys = new long[index.getNumberOfItems()];
+        for (int i = 0; i < keys.length; i++)
+        {
+            keys[i] = ((long) index.getRecordIndex(i) << 32) | i;
+        }
+
+        Arrays.sort(keys);
+
+        double[] bounds = new double[4];
+        for (long key : keys)
+        {
+            index.getBounds((int) key, bounds);
+            this.assembleRecord(shapefile, (int) (key >>> 32), Sector.fromDegrees(bounds));
+        }
+    }
+
+    protected void assembleRecord(Shapefile shapefile, int recordIndex, Sector sector)
+    {
+        ShapefileRenderable.Record renderableRecord = new ShapefileRenderable.Record(this, shapefile, recordIndex,
+            sector);
+        this.addRecord(shapefile, recordIndex, renderableRecord);
+    }
+
+    protected void addRecord(Shapefile shapefile, int recordIndex, ShapefileRenderable.Record renderableRecord)
+    {
+        // Read the shapefile record only when the attribute delegate needs its dBASE attributes.
+        ShapefileRecord shapefileRecord = this.initAttributeDelegate != null ? shapefile.readRecord(recordIndex) : null;
+        this.addRecord(shapefileRecord, renderableRecord);
+    }
+
     protected void addRecord(ShapefileRecord shapefileRecord, ShapefileRenderable.Record renderableRecord)
     {
         renderableRecord.setAttributes(this.initNormalAttrs);
@@ -0,0 +1,498 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.formats.shapefile;
+
+import gov.nasa.worldwind.exception.WWRuntimeException;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.Arrays;
+
+/**
+ * A packed Hilbert R-tree over the bounding rectangles of a shapefile's records. The tree is built once from the
+ * records' bounding rectangles and is immutable afterwards. Items are sorted along a Hilbert curve through the centers
+ * of their bounding rectangles and packed bottom-up into nodes of a fixed size, which produces a balanced tree with
+ * nearly full nodes and little overlap between sibling nodes.
+ * <p/>
+ * The tree can be written to and read from a sidecar file. A tree read from a file is memory mapped and queried
+ * directly from the mapped file, so opening the index of a large shapefile does not read the index into memory. The
+ * file records the length and modification time of the shapefile it indexes, and {@link #read(java.io.File, long,
+ * long)} returns null when either has changed.
+ * <p/>
+ * Bounding rectangles are stored as four doubles in the order used by {@link Shapefile#getBoundingRectangle()}: (minY,
+ * maxY, minX, maxX).
+ *
+ * @author tag
+ * @version $Id$
+ */
+public class ShapefileSpatialIndex
+{
+    protected static final int FILE_CODE = 0x53485058; // "SHPX"
+    protected static final int VERSION = 1;
+    protected static final int HEADER_LENGTH = 32;
+    protected static final int DEFAULT_NODE_SIZE = 16;
+    /** The number of cells along each axis of the grid used to compute Hilbert values. */
+    protected static final int HILBERT_SIZE = 1 << 15;
+
+    protected final int numItems;
+    protected final int nodeSize;
+    /** The end position of each tree level, leaves first. */
+    protected final int[] levelBounds;
+    /** Four coordinates per node: the items in Hilbert order, followed by each level of interior nodes. */
+    protected final DoubleBuffer boxes;
+    /** The record index of each item, followed by the position of each interior node's first child. */
+    protected final IntBuffer indices;
+
+    /**
+     * Builds a spatial index for the specified items.
+     *
+     * @param recordIndices the record index of each item.
+     * @param bounds        the bounding rectangle of each item, four coordinates per item in the order (minY, maxY,
+     *                      minX, maxX).
+     * @param nodeSize      the maximum number of children per node.
+     *
+     * @throws IllegalArgumentException if either array is null, if the arrays do not describe the same number of
+     *                                  items, or if the node size is less than 2.
+     */
+    public ShapefileSpatialIndex(int[] recordIndices, double[] bounds, int nodeSize)
+    {
+        if (recordIndices == null)
+        {
+            String message = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (bounds == null || bounds.length != 4 * recordIndices.length)
+        {
+            String message = Logging.getMessage("generic.ArrayInvalidLength", bounds != null ? bounds.length : 0);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (nodeSize < 2)
+        {
+            String message = Logging.getMessage("generic.SizeOutOfRange", nodeSize);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.numItems = recordIndices.length;
+        this.nodeSize = nodeSize;
+        this.levelBounds = computeLevelBounds(this.numItems, nodeSize);
+
+        int numNodes = this.levelBounds.length > 0 ? this.levelBounds[this.levelBounds.length - 1] : 0;
+        this.boxes = DoubleBuffer.allocate(4 * numNodes);
+        this.indices = IntBuffer.allocate(numNodes);
+        this.pack(recordIndices, bounds);
+    }
+
+    /**
+     * Builds a spatial index for the specified items with the default node size of 16.
+     *
+     * @param recordIndices the record index of each item.
+     * @param bounds        the bounding rectangle of each item, four coordinates per item in the order (minY, maxY,
+     *                      minX, maxX).
+     *
+     * @throws IllegalArgumentException if either array is null, or if the arrays do not describe the same number of
+     *                                  items.
+     */
+    public ShapefileSpatialIndex(int[] recordIndices, double[] bounds)
+    {
+        this(recordIndices, bounds, DEFAULT_NODE_SIZE);
+    }
+
+    protected ShapefileSpatialIndex(int numItems, int nodeSize, DoubleBuffer boxes, IntBuffer indices)
+    {
+        this.numItems = numItems;
+        this.nodeSize = nodeSize;
+        this.levelBounds = computeLevelBounds(numItems, nodeSize);
+        this.boxes = boxes;
+        this.indices = indices;
+    }
+
+    /**
+     * Reads a spatial index from a file written by {@link #write(java.io.File, long, long)}. This returns null if the
+     * file does not exist, is not a spatial index file, or was written for a shapefile with a different length or
+     * modification time.
+     *
+     * @param file               the spatial index file.
+     * @param sourceLength       the current length of the indexed shapefile, in bytes.
+     * @param sourceLastModified the current modification time of the indexed shapefile.
+     *
+     * @return the spatial index, or null if the file cannot be used.
+     *
+     * @throws IllegalArgumentException if the file is null.
+     * @throws IOException              if the file exists but cannot be read.
+     */
+    public static ShapefileSpatialIndex read(File file, long sourceLength, long sourceLastModified) throws IOException
+    {
+        if (file == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (!file.exists() || file.length() < HEADER_LENGTH)
+            return null;
+
+        ByteBuffer buffer = WWIO.mapFile(file);
+        buffer.order(ByteOrder.BIG_ENDIAN);
+
+        if (buffer.getInt() != FILE_CODE || buffer.getInt() != VERSION)
+            return null;
+
+        int nodeSize = buffer.getInt();
+        int numItems = buffer.getInt();
+        if (buffer.getLong() != sourceLength || buffer.getLong() != sourceLastModified)
+            return null;
+
+        if (nodeSize < 2 || numItems < 0)
+            return null;
+
+        int[] levelBounds = computeLevelBounds(numItems, nodeSize);
+        int numNodes = levelBounds.length > 0 ? levelBounds[levelBounds.length - 1] : 0;
+        if (buffer.capacity() != HEADER_LENGTH + numNodes * (4 * WWBufferUtil.SIZEOF_DOUBLE + WWBufferUtil.SIZEOF_INT))
+            return null;
+
+        buffer.position(HEADER_LENGTH);
+        buffer.limit(HEADER_LENGTH + 4 * numNodes * WWBufferUtil.SIZEOF_DOUBLE);
+        DoubleBuffer boxes = buffer.slice().order(ByteOrder.BIG_ENDIAN).asDoubleBuffer();
+
+        buffer.position(buffer.limit());
+        buffer.limit(buffer.capacity());
+        IntBuffer indices = buffer.slice().order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+
+        return new ShapefileSpatialIndex(numItems, nodeSize, boxes, indices);
+    }
+
+    /**
+     * Writes this spatial index to a file that can be read by {@link #read(java.io.File, long, long)}.
+     *
+     * @param file               the file to write.
+     * @param sourceLength       the length of the indexed shapefile, in bytes.
+     * @param sourceLastModified the modification time of the indexed shapefile.
+     *
+     * @throws IllegalArgumentException if the file is null.
+     * @throws IOException              if the file cannot be written.
+     */
+    public void write(File file, long sourceLength, long sourceLastModified) throws IOException
+    {
+        if (file == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try
+        {
+            out.writeInt(FILE_CODE);
+            out.writeInt(VERSION);
+            out.writeInt(this.nodeSize);
+            out.writeInt(this.numItems);
+            out.writeLong(sourceLength);
+            out.writeLong(sourceLastModified);
+
+            for (int i = 0; i < this.boxes.limit(); i++)
+            {
+                out.writeDouble(this.boxes.get(i));
+            }
+
+            for (int i = 0; i < this.indices.limit(); i++)
+            {
+                out.writeInt(this.indices.get(i));
+            }
+        }
+        finally
+        {
+            WWIO.closeStream(out, file.getPath());
+        }
+    }
+
+    /**
+     * Returns the number of items in this spatial index.
+     *
+     * @return the number of items.
+     */
+    public int getNumberOfItems()
+    {
+        return this.numItems;
+    }
+
+    /**
+     * Returns the record index of an item. Items are ordered along the Hilbert curve, not by record index.
+     *
+     * @param item the item's position in this index, in the range [0, {@link #getNumberOfItems()}).
+     *
+     * @return the item's record index.
+     *
+     * @throws IllegalArgumentException if the item is out of range.
+     */
+    public int getRecordIndex(int item)
+    {
+        if (item < 0 || item >= this.numItems)
+        {
+            String message = Logging.getMessage("generic.indexOutOfRange", item);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        return this.indices.get(item);
+    }
+
+    /**
+     * Returns the bounding rectangle of an item.
+     *
+     * @param item   the item's position in this index, in the range [0, {@link #getNumberOfItems()}).
+     * @param result a four-element array in which to return the bounding rectangle, or null to allocate a new array.
+     *
+     * @return the item's bounding rectangle in the order (minY, maxY, minX, maxX).
+     *
+     * @throws IllegalArgumentException if the item is out of range.
+     */
+    public double[] getBounds(int item, double[] result)
+    {
+        if (item < 0 || item >= this.numItems)
+        {
+            String message = Logging.getMessage("generic.indexOutOfRange", item);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (result == null)
+            result = new double[4];
+
+        for (int i = 0; i < 4; i++)
+        {
+            result[i] = this.boxes.get(4 * item + i);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the record indices of the items whose bounding rectangles intersect a sector, in ascending order.
+     *
+     * @param sector the sector of interest.
+     *
+     * @return the intersecting record indices. The array is empty if no items intersect the sector.
+     *
+     * @throws IllegalArgumentException if the sector is null.
+     */
+    public int[] getRecordIndices(Sector sector)
+    {
+        if (sector == null)
+        {
+            String message = Logging.getMessage("nullValue.SectorIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (this.numItems == 0)
+            return new int[0];
+
+        double minY = sector.getMinLatitude().degrees;
+        double maxY = sector.getMaxLatitude().degrees;
+        double minX = sector.getMinLongitude().degrees;
+        double maxX = sector.getMaxLongitude().degrees;
+
+        int[] result = new int[16];
+        int resultSize = 0;
+        int[] stack = new int[16];
+        int stackSize = 0;
+
+        stack[stackSize++] = this.indices.limit() - 1; // start at the root node
+        while (stackSize > 0)
+        {
+            int node = stack[--stackSize];
+            if (!this.intersects(node, minY, maxY, minX, maxX))
+                continue;
+
+            if (node < this.numItems)
+            {
+                if (resultSize == result.length)
+                    result = Arrays.copyOf(result, 2 * result.length);
+                result[resultSize++] = this.indices.get(node);
+            }
+            else
+            {
+                int firstChild = this.indices.get(node);
+                int lastChild = Math.min(firstChild + this.nodeSize, this.levelEnd(firstChild));
+                for (int child = firstChild; child < lastChild; child++)
+                {
+                    if (stackSize == stack.length)
+                        stack = Arrays.copyOf(stack, 2 * stack.length);
+                    stack[stackSize++] = child;
+                }
+            }
+        }
+
+        result = Arrays.copyOf(result, resultSize);
+        Arrays.sort(result);
+        return result;
+    }
+
+    protected boolean intersects(int node, double minY, double maxY, double minX, double maxX)
+    {
+        int i = 4 * node;
+        return this.boxes.get(i) <= maxY && this.boxes.get(i + 1) >= minY
+            && this.boxes.get(i + 2) <= maxX && this.boxes.get(i + 3) >= minX;
+    }
+
+    protected int levelEnd(int position)
+    {
+        for (int bound : this.levelBounds)
+        {
+            if (position < bound)
+                return bound;
+        }
+
+        return this.levelBounds[this.levelBounds.length - 1];
+    }
+
+    protected void pack(int[] recordIndices, double[] bounds)
+    {
+        if (this.numItems == 0)
+            return;
+
+        // Compute the extent of all items, which maps item centers onto the Hilbert grid.
+        double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+        for (int i = 0; i < this.numItems; i++)
+        {
+            minY = Math.min(minY, bounds[4 * i]);
+            maxY = Math.max(maxY, bounds[4 * i + 1]);
+            minX = Math.min(minX, bounds[4 * i + 2]);
+            maxX = Math.max(maxX, bounds[4 * i + 3]);
+        }
+
+        double scaleY = maxY > minY ? (HILBERT_SIZE - 1) / (maxY - minY) : 0;
+        double scaleX = maxX > minX ? (HILBERT_SIZE - 1) / (maxX - minX) : 0;
+
+        // Sort the items by the Hilbert value of their centers. Each key holds the Hilbert value in its high bits and
+        // the item's original position in its low bits, which avoids allocating an object per item.
+        long[] keys = new long[this.numItems];
+        for (int i = 0; i < this.numItems; i++)
+        {
+            int x = (int) (scaleX * ((bounds[4 * i + 2] + bounds[4 * i + 3]) / 2 - minX));
+            int y = (int) (scaleY * ((bounds[4 * i] + bounds[4 * i + 1]) / 2 - minY));
+            keys[i] = (hilbertValue(x, y) << 32) | i;
+        }
+
+        Arrays.sort(keys);
+
+        // Store the items in Hilbert order as the leaves of the tree.
+        for (int i = 0; i < this.numItems; i++)
+        {
+            int item = (int) keys[i];
+            this.boxes.put(bounds, 4 * item, 4);
+            this.indices.put(recordIndices[item]);
+        }
+
+        // Pack each level into parent nodes until a single root remains.
+        int levelStart = 0;
+        for (int levelEnd : this.levelBounds)
+        {
+            for (int child = levelStart; child < levelEnd && levelEnd - levelStart > 1; child += this.nodeSize)
+            {
+                int lastChild = Math.min(child + this.nodeSize, levelEnd);
+                double nodeMinY = Double.MAX_VALUE, nodeMaxY = -Double.MAX_VALUE;
+                double nodeMinX = Double.MAX_VALUE, nodeMaxX = -Double.MAX_VALUE;
+                for (int i = child; i < lastChild; i++)
+                {
+                    nodeMinY = Math.min(nodeMinY, this.boxes.get(4 * i));
+                    nodeMaxY = Math.max(nodeMaxY, this.boxes.get(4 * i + 1));
+                    nodeMinX = Math.min(nodeMinX, this.boxes.get(4 * i + 2));
+                    nodeMaxX = Math.max(nodeMaxX, this.boxes.get(4 * i + 3));
+                }
+
+                this.boxes.put(nodeMinY).put(nodeMaxY).put(nodeMinX).put(nodeMaxX);
+                this.indices.put(child);
+            }
+
+            levelStart = levelEnd;
+        }
+
+        if (this.boxes.hasRemaining() || this.indices.hasRemaining()) // this should never happen
+            throw new WWRuntimeException(Logging.getMessage("generic.BufferOverflow"));
+
+        this.boxes.rewind();
+        this.indices.rewind();
+    }
+
+    /**
+     * Computes the end position of each level of a packed tree, leaves first. The last element is the total number of
+     * nodes.
+     *
+     * @param numItems the number of items.
+     * @param nodeSize the maximum number of children per node.
+     *
+     * @return the end position of each level.
+     */
+    protected static int[] computeLevelBounds(int numItems, int nodeSize)
+    {
+        if (numItems == 0)
+            return new int[0];
+
+        int[] levelBounds = new int[8];
+        int numLevels = 0;
+        int count = numItems;
+        int total = numItems;
+        levelBounds[numLevels++] = total;
+
+        while (count > 1)
+        {
+            count = (count + nodeSize - 1) / nodeSize;
+            total += count;
+
+            if (numLevels == levelBounds.length)
+                levelBounds = Arrays.copyOf(levelBounds, 2 * levelBounds.length);
+            levelBounds[numLevels++] = total;
+        }
+
+        return Arrays.copyOf(levelBounds, numLevels);
+    }
+
+    /**
+     * Computes the distance along the Hilbert curve of a cell in a grid of {@link #HILBERT_SIZE} cells on each side.
+     *
+     * @param x the cell's column.
+     * @param y the cell's row.
+     *
+     * @return the cell's Hilbert value.
+     */
+    protected static long hilbertValue(int x, int y)
+    {
+        long d = 0;
+        for (int s = HILBERT_SIZE / 2; s > 0; s /= 2)
+        {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+
+            // Rotate the quadrant so that the curve is continuous.
+            if (ry == 0)
+            {
+                if (rx == 1)
+                {
+                    x = HILBERT_SIZE - 1 - x;
+                    y = HILBERT_SIZE - 1 - y;
+                }
+
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+
+        return d;
+    }
+}
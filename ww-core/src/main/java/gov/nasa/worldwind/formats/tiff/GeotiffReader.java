@@ -88,6 +88,7 @@ public class GeotiffReader implements Disposable
     {
         try
         {
+            this.tiffReader.releaseMappedRegion();
             this.sourceFile.close();
         }
         catch (Exception ex)
@@ -136,6 +137,98 @@ public class GeotiffReader implements Disposable
         return this.doRead(imageIndex);
     }
 
+    /**
+     * Reads the pixels of an image that lie within a pixel window. Only the strips or tiles that intersect the window
+     * are read and decoded, so a small window can be read from a very large image without decoding the whole image.
+     * The returned raster's width, height and sector describe the part of the window that lies within the image.
+     *
+     * @param imageIndex the index of the image to read.
+     * @param window     the pixel window to read, with its origin at the image's upper left corner.
+     *
+     * @return a raster containing the window's pixels, or null if the window does not intersect the image.
+     *
+     * @throws IllegalArgumentException if the window is null.
+     * @throws IOException              if the image cannot be read or its format is not supported.
+     */
+    public DataRaster readDataRaster(int imageIndex, Rectangle window) throws IOException
+    {
+        if (window == null)
+        {
+            String message = Logging.getMessage("nullValue.RectangleIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        checkImageIndex(imageIndex);
+        return this.doReadWindow(imageIndex, window);
+    }
+
+    /**
+     * Reads the pixels of a geographic image that lie within a sector. The sector is expanded to whole pixels, and
+     * only the strips or tiles that intersect it are read and decoded.
+     *
+     * @param imageIndex the index of the image to read.
+     * @param sector     the sector to read.
+     *
+     * @return a raster containing the pixels that cover the sector, or null if the sector does not intersect the
+     *         image.
+     *
+     * @throws IllegalArgumentException if the sector is null.
+     * @throws IOException              if the image is not in a geographic coordinate system, cannot be read, or its
+     *                                  format is not supported.
+     */
+    public DataRaster readDataRaster(int imageIndex, Sector sector) throws IOException
+    {
+        if (sector == null)
+        {
+            String message = Logging.getMessage("nullValue.SectorIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        checkImageIndex(imageIndex);
+        AVList values = this.metadata.get(imageIndex);
+
+        Object o = values.getValue(AVKey.SECTOR);
+        if (!AVKey.COORDINATE_SYSTEM_GEOGRAPHIC.equals(values.getValue(AVKey.COORDINATE_SYSTEM))
+            || !(o instanceof Sector))
+        {
+            String message = Logging.getMessage("generic.UnsupportedCoordinateSystem",
+                values.getValue(AVKey.COORDINATE_SYSTEM));
+            Logging.logger().severe(message);
+            throw new IOException(message);
+        }
+
+        Sector imageSector = (Sector) o;
+        int width = this.getWidth(imageIndex);
+        int height = this.getHeight(imageIndex);
+        double dLon = imageSector.getDeltaLonDegrees() / width;
+        double dLat = imageSector.getDeltaLatDegrees() / height;
+
+        // Tolerate round-off so that a sector aligned with pixel boundaries does not gain an extra row or column.
+        double tolerance = 1e-6;
+        int x0 = (int) Math.floor(
+            (sector.getMinLongitude().degrees - imageSector.getMinLongitude().degrees) / dLon + tolerance);
+        int x1 = (int) Math.ceil(
+            (sector.getMaxLongitude().degrees - imageSector.getMinLongitude().degrees) / dLon - tolerance);
+        int y0 = (int) Math.floor(
+            (imageSector.getMaxLatitude().degrees - sector.getMaxLatitude().degrees) / dLat + tolerance);
+        int y1 = (int) Math.ceil(
+            (imageSector.getMaxLatitude().degrees - sector.getMinLatitude().degrees) / dLat - tolerance);
+
+        x0 = Math.max(x0, 0);
+        y0 = Math.max(y0, 0);
+        x1 = Math.min(x1, width);
+        y1 = Math.min(y1, height);
+
+        if (x1 <= x0 || y1 <= y0)
+        {
+            return null;
+        }
+
+        return this.doReadWindow(imageIndex, new Rectangle(x0, y0, x1 - x0, y1 - y0));
+    }
+
     public BufferedImage read() throws IOException
     {
         return this.read(0);
@@ -178,8 +271,6 @@ public class GeotiffReader implements Disposable
         byte[][] cmap = null;
         long[] stripCounts = null;
 
-        boolean tiffDifferencing = false;
-
         TiffIFDEntry[] ifd = this.tiffIFDs.get(imageIndex);
 
         BaselineTiff tiff = BaselineTiff.extract(ifd, this.tiffReader);
@@ -240,6 +331,12 @@ public class GeotiffReader implements Disposable
             throw new IOException(msg);
         }
 
+        // Tiled and compressed images are decoded one strip or tile at a time by the windowed reader.
+        if (this.isSegmentedRead(ifd))
+        {
+            return this.doReadWindow(imageIndex, new Rectangle(0, 0, tiff.width, tiff.height));
+        }
+
         for (TiffIFDEntry entry : ifd)
         {
             try
@@ -279,33 +376,6 @@ public class GeotiffReader implements Disposable
             throw new IOException(message);
         }
 
-        TiffIFDEntry notToday = getByTag(ifd, Tiff.Tag.COMPRESSION);
-        boolean lzwCompressed = false;
-        if (notToday != null && notToday.asLong() == Tiff.Compression.LZW)
-        {
-            lzwCompressed = true;
-            TiffIFDEntry predictorEntry = getByTag(ifd, Tiff.Tag.TIFF_PREDICTOR);
-            if ((predictorEntry != null) && (predictorEntry.asLong() != 0))
-            {
-                tiffDifferencing = true;
-            }
-        }
-        else if (notToday != null && notToday.asLong() != Tiff.Compression.NONE)
-        {
-            String message = Logging.getMessage("GeotiffReader.CompressionFormatNotSupported");
-            Logging.logger().severe(message);
-            throw new IOException(message);
-        }
-
-        notToday = getByTag(ifd, Tiff.Tag.TILE_WIDTH);
-        if (notToday != null)
-        {
-            String message = Logging.getMessage("GeotiffReader.NoTiled");
-            Logging.logger().severe(message);
-            throw new IOException(message);
-        }
-
-        long offset = stripOffsets[0];
 //        int sampleFormat = (null != tiff.sampleFormat) ? tiff.sampleFormat[0] : Tiff.Undefined;
 //        int bitsPerSample = (null != tiff.bitsPerSample) ? tiff.bitsPerSample[0] : Tiff.Undefined;
 
@@ -513,18 +583,8 @@ public class GeotiffReader implements Disposable
             byte[][] imageData;
             if (tiff.planarConfig == Tiff.PlanarConfiguration.CHUNKY)
             {
-                if (lzwCompressed && (tiff.samplesPerPixel > 2))
-                {
-                    imageData = new byte[1][tiff.width * tiff.height * tiff.samplesPerPixel];
-
-                    imageData[0] = this.tiffReader.readLZWCompressed(tiff.width, tiff.height, offset,
-                        tiff.samplesPerPixel, tiffDifferencing, stripOffsets, stripCounts);
-                }
-                else
-                {
-                    imageData = this.tiffReader.readPixelInterleaved8(tiff.width, tiff.height, tiff.samplesPerPixel,
-                        stripOffsets, stripCounts);
-                }
+                imageData = this.tiffReader.readPixelInterleaved8(tiff.width, tiff.height, tiff.samplesPerPixel,
+                    stripOffsets, stripCounts);
             }
             else
             {
@@ -553,6 +613,356 @@ public class GeotiffReader implements Disposable
         throw new IOException(message);
     }
 
+    /*
+     * Indicates whether an image must be read strip by strip or tile by tile: tiled images and compressed images.
+     *
+     */
+    protected boolean isSegmentedRead(TiffIFDEntry[] ifd)
+    {
+        if (getByTag(ifd, Tiff.Tag.TILE_WIDTH) != null)
+        {
+            return true;
+        }
+
+        TiffIFDEntry compression = getByTag(ifd, Tiff.Tag.COMPRESSION);
+        return compression != null && compression.asLong() != Tiff.Compression.NONE;
+    }
+
+    protected DataRaster doReadWindow(int imageIndex, Rectangle window) throws IOException
+    {
+        AVList values = this.metadata.get(imageIndex);
+        TiffIFDEntry[] ifd = this.tiffIFDs.get(imageIndex);
+
+        BaselineTiff tiff = BaselineTiff.extract(ifd, this.tiffReader);
+        if (null == tiff || tiff.width <= 0 || tiff.height <= 0 || tiff.samplesPerPixel <= Tiff.Undefined)
+        {
+            String message = Logging.getMessage("GeotiffReader.BadGeotiff");
+            Logging.logger().severe(message);
+            throw new IOException(message);
+        }
+
+        Rectangle region = window.intersection(new Rectangle(0, 0, tiff.width, tiff.height));
+        if (region.isEmpty())
+        {
+            return null;
+        }
+
+        SegmentLayout layout = this.createSegmentLayout(ifd, tiff);
+        byte[][] bands;
+        try
+        {
+            bands = this.readSegments(layout, region);
+        }
+        finally
+        {
+            this.tiffReader.releaseMappedRegion();
+        }
+
+        AVList params = values.copy();
+        this.setWindowParameters(params, tiff, region);
+
+        return this.makeRaster(ifd, tiff, params, bands, region.width, region.height);
+    }
+
+    protected SegmentLayout createSegmentLayout(TiffIFDEntry[] ifd, BaselineTiff tiff) throws IOException
+    {
+        SegmentLayout layout = new SegmentLayout();
+        layout.imageWidth = tiff.width;
+        layout.imageHeight = tiff.height;
+        layout.samplesPerPixel = tiff.samplesPerPixel;
+        layout.planar = tiff.samplesPerPixel > 1 && tiff.planarConfig == Tiff.PlanarConfiguration.PLANAR;
+
+        int bitsPerSample = (null != tiff.bitsPerSample) ? tiff.bitsPerSample[0] : Byte.SIZE;
+        if (null != tiff.bitsPerSample)
+        {
+            for (int bits : tiff.bitsPerSample)
+            {
+                if (bits != bitsPerSample)
+                    bitsPerSample = Tiff.Undefined;
+            }
+        }
+
+        if (bitsPerSample <= 0 || bitsPerSample % Byte.SIZE != 0)
+        {
+            String message = Logging.getMessage("Geotiff.UnsupportedDataTypeRaster", tiff.toString());
+            Logging.logger().severe(message);
+            throw new IOException(message);
+        }
+        layout.bytesPerSample = bitsPerSample / Byte.SIZE;
+
+        TiffIFDEntry entry = getByTag(ifd, Tiff.Tag.COMPRESSION);
+        layout.compression = (entry != null) ? (int) entry.asLong() : Tiff.Compression.NONE;
+
+        entry = getByTag(ifd, Tiff.Tag.TIFF_PREDICTOR);
+        layout.predictor = (entry != null) ? (int) entry.asLong() : Tiff.Predictor.NONE;
+
+        TiffIFDEntry offsetsEntry;
+        TiffIFDEntry countsEntry;
+        TiffIFDEntry tileWidth = getByTag(ifd, Tiff.Tag.TILE_WIDTH);
+        TiffIFDEntry tileLength = getByTag(ifd, Tiff.Tag.TILE_LENGTH);
+        if (tileWidth != null && tileLength != null)
+        {
+            layout.segmentWidth = (int) tileWidth.asLong();
+            layout.segmentHeight = (int) tileLength.asLong();
+            layout.tiled = true;
+            offsetsEntry = getByTag(ifd, Tiff.Tag.TILE_OFFSETS);
+            countsEntry = getByTag(ifd, Tiff.Tag.TILE_COUNTS);
+        }
+        else
+        {
+            layout.segmentWidth = tiff.width;
+            layout.segmentHeight = (tiff.rowsPerStrip > 0) ? Math.min(tiff.rowsPerStrip, tiff.height) : tiff.height;
+            offsetsEntry = getByTag(ifd, Tiff.Tag.STRIP_OFFSETS);
+            countsEntry = getByTag(ifd, Tiff.Tag.STRIP_BYTE_COUNTS);
+        }
+
+        if (layout.segmentWidth <= 0 || layout.segmentHeight <= 0)
+        {
+            String message = Logging.getMessage("GeotiffReader.BadGeotiff");
+            Logging.logger().severe(message);
+            throw new IOException(message);
+        }
+
+        layout.segmentsAcross = (tiff.width + layout.segmentWidth - 1) / layout.segmentWidth;
+        layout.segmentsDown = (tiff.height + layout.segmentHeight - 1) / layout.segmentHeight;
+        int numSegments = layout.segmentsAcross * layout.segmentsDown * (layout.planar ? layout.samplesPerPixel : 1);
+
+        layout.offsets = (offsetsEntry != null) ? offsetsEntry.getAsLongs() : null;
+        if (null == layout.offsets || layout.offsets.length < numSegments)
+        {
+            String message = Logging.getMessage("GeotiffReader.MissingRequiredTag",
+                layout.tiled ? "TileOffsets" : "StripOffsets");
+            Logging.logger().severe(message);
+            throw new IOException(message);
+        }
+
+        layout.counts = (countsEntry != null) ? countsEntry.getAsLongs() : null;
+        if (null == layout.counts || layout.counts.length < numSegments)
+        {
+            String message = Logging.getMessage("GeotiffReader.MissingRequiredTag",
+                layout.tiled ? "TileByteCounts" : "StripByteCounts");
+            Logging.logger().severe(message);
+            throw new IOException(message);
+        }
+
+        return layout;
+    }
+
+    /*
+     * Decodes the strips or tiles that intersect a region and copies the region's samples into one array per band.
+     * Samples are stored in big-endian order, which is the byte order reported in the image's metadata.
+     *
+     */
+    protected byte[][] readSegments(SegmentLayout layout, Rectangle region) throws IOException
+    {
+        int bytesPerSample = layout.bytesPerSample;
+        byte[][] bands = new byte[layout.samplesPerPixel][region.width * region.height * bytesPerSample];
+
+        int planes = layout.planar ? layout.samplesPerPixel : 1;
+        int samplesPerSegmentPixel = layout.planar ? 1 : layout.samplesPerPixel;
+        int firstColumn = region.x / layout.segmentWidth;
+        int lastColumn = (region.x + region.width - 1) / layout.segmentWidth;
+        int firstRow = region.y / layout.segmentHeight;
+        int lastRow = (region.y + region.height - 1) / layout.segmentHeight;
+
+        for (int plane = 0; plane < planes; plane++)
+        {
+            for (int row = firstRow; row <= lastRow; row++)
+            {
+                for (int column = firstColumn; column <= lastColumn; column++)
+                {
+                    int index = (plane * layout.segmentsDown + row) * layout.segmentsAcross + column;
+                    int segmentX = column * layout.segmentWidth;
+                    int segmentY = row * layout.segmentHeight;
+                    // Tiles are always complete, but the last strip holds only the image's remaining rows.
+                    int segmentRows = layout.tiled ? layout.segmentHeight
+                        : Math.min(layout.segmentHeight, layout.imageHeight - segmentY);
+
+                    ByteBuffer data = this.tiffReader.readSegment(layout.offsets[index], layout.counts[index],
+                        layout.compression, layout.predictor, layout.segmentWidth, segmentRows,
+                        samplesPerSegmentPixel, bytesPerSample);
+                    boolean swap = bytesPerSample > 1 && data.order() != ByteOrder.BIG_ENDIAN;
+
+                    Rectangle overlap = region.intersection(
+                        new Rectangle(segmentX, segmentY, layout.segmentWidth, segmentRows));
+
+                    for (int y = overlap.y; y < overlap.y + overlap.height; y++)
+                    {
+                        for (int x = overlap.x; x < overlap.x + overlap.width; x++)
+                        {
+                            int src = ((y - segmentY) * layout.segmentWidth + (x - segmentX)) * samplesPerSegmentPixel
+                                * bytesPerSample;
+                            int dst = ((y - region.y) * region.width + (x - region.x)) * bytesPerSample;
+
+                            for (int s = 0; s < samplesPerSegmentPixel; s++)
+                            {
+                                byte[] band = bands[layout.planar ? plane : s];
+                                for (int b = 0; b < bytesPerSample; b++)
+                                {
+                                    band[dst + b] = data.get(src + (swap ? bytesPerSample - 1 - b : b));
+                                }
+                                src += bytesPerSample;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return bands;
+    }
+
+    protected void setWindowParameters(AVList params, BaselineTiff tiff, Rectangle region) throws IOException
+    {
+        params.setValue(AVKey.WIDTH, region.width);
+        params.setValue(AVKey.HEIGHT, region.height);
+
+        if (region.width == tiff.width && region.height == tiff.height)
+        {
+            return;
+        }
+
+        if (AVKey.COORDINATE_SYSTEM_PROJECTED.equals(params.getValue(AVKey.COORDINATE_SYSTEM))
+            && params.hasKey(WorldFile.WORLD_FILE_X_LOCATION) && params.hasKey(WorldFile.WORLD_FILE_Y_LOCATION))
+        {
+            double xPixelSize = (Double) params.getValue(WorldFile.WORLD_FILE_X_PIXEL_SIZE);
+            double yPixelSize = (Double) params.getValue(WorldFile.WORLD_FILE_Y_PIXEL_SIZE);
+            double x = (Double) params.getValue(WorldFile.WORLD_FILE_X_LOCATION);
+            double y = (Double) params.getValue(WorldFile.WORLD_FILE_Y_LOCATION);
+
+            params.setValue(WorldFile.WORLD_FILE_X_LOCATION, x + region.x * xPixelSize);
+            params.setValue(WorldFile.WORLD_FILE_Y_LOCATION, y + region.y * yPixelSize);
+            params.setValue(AVKey.SECTOR, ImageUtil.calcBoundingBoxForUTM(params));
+        }
+        else if (params.getValue(AVKey.SECTOR) instanceof Sector)
+        {
+            Sector sector = (Sector) params.getValue(AVKey.SECTOR);
+            double dLon = sector.getDeltaLonDegrees() / tiff.width;
+            double dLat = sector.getDeltaLatDegrees() / tiff.height;
+            double maxLat = sector.getMaxLatitude().degrees;
+            double minLon = sector.getMinLongitude().degrees;
+
+            Sector windowSector = Sector.fromDegrees(
+                maxLat - (region.y + region.height) * dLat, maxLat - region.y * dLat,
+                minLon + region.x * dLon, minLon + (region.x + region.width) * dLon);
+            params.setValue(AVKey.SECTOR, windowSector);
+            params.setValue(AVKey.ORIGIN, new LatLon(windowSector.getMaxLatitude(), windowSector.getMinLongitude()));
+        }
+    }
+
+    protected DataRaster makeRaster(TiffIFDEntry[] ifd, BaselineTiff tiff, AVList params, byte[][] bands, int width,
+        int height) throws IOException
+    {
+        if (params.getValue(AVKey.PIXEL_FORMAT) == AVKey.ELEVATION)
+        {
+            ByteBufferRaster raster = new ByteBufferRaster(width, height, (Sector) params.getValue(AVKey.SECTOR),
+                params);
+            ByteBuffer data = ByteBuffer.wrap(bands[0]);
+            Object dataType = raster.getValue(AVKey.DATA_TYPE);
+
+            int next = 0;
+            for (int y = 0; y < height; y++)
+            {
+                for (int x = 0; x < width; x++, next++)
+                {
+                    double value;
+                    if (dataType == AVKey.INT8)
+                        value = data.get(next);
+                    else if (dataType == AVKey.INT16)
+                        value = data.getShort(2 * next);
+                    else if (dataType == AVKey.INT32)
+                        value = data.getInt(4 * next);
+                    else if (dataType == AVKey.FLOAT32)
+                        value = data.getFloat(4 * next);
+                    else
+                    {
+                        String message = Logging.getMessage("Geotiff.UnsupportedDataTypeRaster", tiff.toString());
+                        Logging.logger().severe(message);
+                        throw new IOException(message);
+                    }
+
+                    raster.setDoubleAtPosition(y, x, value);
+                }
+            }
+
+            ElevationsUtil.rectify(raster);
+
+            return raster;
+        }
+
+        BufferedImage image = null;
+
+        if (params.getValue(AVKey.PIXEL_FORMAT) == AVKey.IMAGE
+            && params.getValue(AVKey.IMAGE_COLOR_FORMAT) == AVKey.GRAYSCALE)
+        {
+            if (params.getValue(AVKey.DATA_TYPE) == AVKey.INT8)
+            {
+                image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+                image.getRaster().setDataElements(0, 0, width, height, bands[0]);
+            }
+            else if (params.getValue(AVKey.DATA_TYPE) == AVKey.INT16)
+            {
+                short[] samples = new short[width * height];
+                ByteBuffer.wrap(bands[0]).asShortBuffer().get(samples);
+
+                image = new BufferedImage(width, height, BufferedImage.TYPE_USHORT_GRAY);
+                image.getRaster().setDataElements(0, 0, width, height, samples);
+            }
+        }
+        else if (params.getValue(AVKey.PIXEL_FORMAT) == AVKey.IMAGE
+            && params.getValue(AVKey.IMAGE_COLOR_FORMAT) == AVKey.COLOR)
+        {
+            for (int bits : tiff.bitsPerSample)
+            {
+                if (bits != 8)
+                {
+                    String message = Logging.getMessage("GeotiffReader.Not8bit", bits);
+                    Logging.logger().warning(message);
+                    throw new IOException(message);
+                }
+            }
+
+            ColorModel colorModel = null;
+            if (tiff.photometric == Tiff.Photometric.Color_RGB
+                && (tiff.samplesPerPixel == Tiff.SamplesPerPixel.RGB
+                || tiff.samplesPerPixel == Tiff.SamplesPerPixel.RGBA))
+            {
+                boolean hasAlpha = tiff.samplesPerPixel == Tiff.SamplesPerPixel.RGBA;
+                colorModel = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), tiff.bitsPerSample,
+                    hasAlpha, false, hasAlpha ? Transparency.TRANSLUCENT : Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+            }
+            else if (tiff.photometric == Tiff.Photometric.Color_Palette)
+            {
+                byte[][] cmap = this.tiffReader.readColorMap(getByTag(ifd, Tiff.Tag.COLORMAP));
+                colorModel = new IndexColorModel(tiff.bitsPerSample[0], cmap[0].length, cmap[0], cmap[1], cmap[2]);
+            }
+
+            if (null != colorModel)
+            {
+                int[] bankIndices = new int[bands.length];
+                int[] bandOffsets = new int[bands.length];
+                for (int i = 0; i < bands.length; i++)
+                {
+                    bankIndices[i] = i;
+                }
+
+                WritableRaster raster = Raster.createBandedRaster(new DataBufferByte(bands, width * height), width,
+                    height, width, bankIndices, bandOffsets, null);
+                image = new BufferedImage(colorModel, raster, false, null);
+            }
+        }
+
+        if (null == image)
+        {
+            String message = Logging.getMessage("Geotiff.UnsupportedDataTypeRaster", tiff.toString());
+            Logging.logger().severe(message);
+            throw new IOException(message);
+        }
+
+        image = ImageUtil.toCompatibleImage(image);
+        return BufferedImageRaster.wrap(image, params);
+    }
+
     /**
      * Returns true if georeferencing information was found in this file.
      * <p/>
@@ -1123,6 +1533,7 @@ public class GeotiffReader implements Disposable
     {
         try
         {
+            this.tiffReader.releaseMappedRegion();
             WWIO.closeStream(this.theChannel, this.sourceFilename);
             WWIO.closeStream(this.sourceFile, this.sourceFilename);
         }
@@ -1139,4 +1550,26 @@ public class GeotiffReader implements Disposable
         this.dispose();
         super.finalize();
     }
+
+    /*
+     * Describes how an image is divided into strips or tiles. Strips are treated as tiles as wide as the image.
+     *
+     */
+    protected static class SegmentLayout
+    {
+        protected int imageWidth;
+        protected int imageHeight;
+        protected int samplesPerPixel;
+        protected int bytesPerSample;
+        protected int compression;
+        protected int predictor;
+        protected boolean planar;
+        protected boolean tiled;
+        protected int segmentWidth;
+        protected int segmentHeight;
+        protected int segmentsAcross;
+        protected int segmentsDown;
+        protected long[] offsets;
+        protected long[] counts;
+    }
 }
\ No newline at end of file
@@ -10,6 +10,7 @@ import gov.nasa.worldwind.util.Logging;
 import java.io.IOException;
 import java.nio.*;
 import java.nio.channels.FileChannel;
+import java.util.zip.*;
 
 /**
  * This is a package private class that contains methods of reading TIFF structures
@@ -28,10 +29,15 @@ class TIFFReader
     private static final int INTEGER_SIZEOF = Integer.SIZE / Byte.SIZE;
     private static final int SHORT_SIZEOF = Short.SIZE / Byte.SIZE;
 
+    // Size of the file regions mapped when reading strips and tiles.
+    private static final long MAP_REGION_SIZE = 64L * 1024L * 1024L;
 
     private FileChannel theChannel;
     private ByteOrder   tiffFileOrder;
 
+    private MappedByteBuffer mappedRegion;
+    private long mappedRegionOffset;
+
     public TIFFReader( FileChannel fileChannel, ByteOrder byteOrder )
     {
         this.theChannel = fileChannel;
@@ -54,75 +60,11 @@ class TIFFReader
     }
 
 
-   /*
-    *
-    *
-    */
-    public byte[] readLZWCompressed(int width, int height, long offset, int samplesPerPixel,
-        boolean differencing, long[] stripOffsets, long[] stripCounts)
-        throws IOException
-    {
-        this.theChannel.position(offset);
-        byte[] pixels = new byte[width * height * samplesPerPixel];
-        int base = 0;
-        for (int i = 0; i < stripOffsets.length; i++)
-        {
-            if (i > 0)
-            {
-                long skip = stripOffsets[i] - stripOffsets[i - 1] - stripCounts[i - 1];
-                if (skip > 0)
-                {
-                    //in.skip(skip);
-                    this.theChannel.position(this.theChannel.position() + skip);
-                }
-            }
-            byte[] byteArray = new byte[(int) stripCounts[i]];
-            ByteBuffer bBuffer = ByteBuffer.wrap(byteArray);
-            int read = 0, left = byteArray.length;
-            while (left > 0)
-            {
-                long r = this.theChannel.read(bBuffer);
-                if (r == -1)
-                {
-                    break;
-                }
-                read += r;
-                left -= r;
-            }
-            byteArray = lzwUncompress(byteArray, (width * samplesPerPixel));
-            if (differencing)
-            {
-                for (int b = 0; b < byteArray.length; b++)
-                {
-                    if (b / samplesPerPixel % width == 0)
-                        continue;
-                    byteArray[b] += byteArray[b - samplesPerPixel];
-                }
-            }
-            int k = 0;
-            int bytesToRead = byteArray.length;
-            bytesToRead = bytesToRead - (bytesToRead % width);
-            int pmax = base + bytesToRead;
-            if (pmax > width * height * samplesPerPixel)
-                pmax = width * height * samplesPerPixel;
-
-            for (int j = base; j < pmax; j++)
-            {
-                pixels[j] = byteArray[k++];
-            }
-
-            base += bytesToRead;
-        }
-
-        return pixels;
-    }
-
-
-
     public byte[] lzwUncompress(byte[] input, int rowNumPixels)
     {
+        // A sparse strip or tile has no data; like the other decoders, return a zero-filled segment.
         if (input == null || input.length == 0)
-            return input;
+            return new byte[rowNumPixels];
         byte[][] symbolTable = new byte[4096][1];
         int bitsToRead = 9; //default
         int nextSymbol = 258;
@@ -152,14 +94,14 @@ class TIFFReader
                 if (code == EOI_CODE || code == -1)
                     break;
 
-                out.put(symbolTable[code]);
+                putSymbol(out, symbolTable[code]);
                 oldCode = code;
             }
             else
             {
                 if (code < nextSymbol)
                 {
-                    out.put(symbolTable[code]);
+                    putSymbol(out, symbolTable[code]);
                     ByteBuffer symbol = java.nio.ByteBuffer.allocate((symbolTable[oldCode].length + 1));
                     symbol.put(symbolTable[oldCode]);
                     symbol.put(symbolTable[code][0]);
@@ -175,7 +117,7 @@ class TIFFReader
                     symbol.put(symbolTable[oldCode][0]);
                     byte[] outString = symbol.array();
 
-                    out.put(outString);
+                    putSymbol(out, outString);
 
                     symbolTable[nextSymbol] = outString;
                     oldCode = code;
@@ -198,6 +140,244 @@ class TIFFReader
         return out.array();
     }
 
+    // Data beyond the expected length of a strip or tile is ignored rather than overflowing the output.
+    private static void putSymbol(ByteBuffer out, byte[] symbol)
+    {
+        out.put(symbol, 0, Math.min(symbol.length, out.remaining()));
+    }
+
+    /*
+     * Returns a read-only view of count bytes starting at the given file offset. The bytes come from a memory-mapped
+     * region of the file, which is remapped only when a request falls outside of it, so reading neighboring strips or
+     * tiles does not copy them through an intermediate buffer.
+     */
+    public ByteBuffer mapSegment(long offset, long count) throws IOException
+    {
+        if (count > MAP_REGION_SIZE)
+            return this.theChannel.map(FileChannel.MapMode.READ_ONLY, offset, count).order(this.tiffFileOrder);
+
+        if (this.mappedRegion == null || offset < this.mappedRegionOffset
+            || offset + count > this.mappedRegionOffset + this.mappedRegion.capacity())
+        {
+            long regionOffset = offset - offset % MAP_REGION_SIZE;
+            if (offset + count > regionOffset + MAP_REGION_SIZE)
+                regionOffset = offset;
+
+            long regionSize = Math.min(MAP_REGION_SIZE, this.theChannel.size() - regionOffset);
+            if (regionSize < offset - regionOffset + count)
+            {
+                String message = Logging.getMessage("GeotiffReader.BadGeotiff");
+                Logging.logger().severe(message);
+                throw new IOException(message);
+            }
+
+            this.mappedRegion = this.theChannel.map(FileChannel.MapMode.READ_ONLY, regionOffset, regionSize);
+            this.mappedRegionOffset = regionOffset;
+        }
+
+        ByteBuffer buffer = this.mappedRegion.duplicate();
+        buffer.position((int) (offset - this.mappedRegionOffset));
+        buffer.limit((int) (offset - this.mappedRegionOffset + count));
+        return buffer.slice().order(this.tiffFileOrder);
+    }
+
+    /*
+     * Releases the memory-mapped region used by mapSegment, so the mapping does not outlive the read that needed it.
+     * The region is mapped again by the next call to mapSegment.
+     */
+    public void releaseMappedRegion()
+    {
+        this.mappedRegion = null;
+        this.mappedRegionOffset = 0;
+    }
+
+    /*
+     * Reads one strip or tile, decompresses it and reverses its predictor. The returned buffer holds
+     * width * height * samplesPerPixel samples of bytesPerSample bytes each, and its byte order is that of the
+     * samples it contains: the file's byte order, or big-endian when the floating point predictor was reversed.
+     *
+     */
+    public ByteBuffer readSegment(long offset, long count, int compression, int predictor, int width, int height,
+        int samplesPerPixel, int bytesPerSample) throws IOException
+    {
+        int length = width * height * samplesPerPixel * bytesPerSample;
+        ByteBuffer source = this.mapSegment(offset, count);
+
+        byte[] data;
+        if (compression == Tiff.Compression.NONE || compression == Tiff.Undefined)
+        {
+            if (predictor <= Tiff.Predictor.NONE && source.remaining() >= length)
+                return source;
+
+            data = new byte[length];
+            source.get(data, 0, Math.min(length, source.remaining()));
+        }
+        else
+        {
+            byte[] input = new byte[source.remaining()];
+            source.get(input);
+
+            if (compression == Tiff.Compression.LZW)
+            {
+                data = this.lzwUncompress(input, length);
+            }
+            else if (compression == Tiff.Compression.DEFLATE || compression == Tiff.Compression.ADOBE_DEFLATE)
+            {
+                data = inflate(input, length);
+            }
+            else if (compression == Tiff.Compression.PACKBITS)
+            {
+                data = unpackBits(input, length);
+            }
+            else
+            {
+                String message = Logging.getMessage("GeotiffReader.CompressionFormatNotSupported");
+                Logging.logger().severe(message);
+                throw new IOException(message);
+            }
+        }
+
+        ByteOrder order = this.tiffFileOrder;
+        if (predictor == Tiff.Predictor.HORIZONTAL_DIFFERENCING)
+        {
+            undoHorizontalDifferencing(data, order, width, height, samplesPerPixel, bytesPerSample);
+        }
+        else if (predictor == Tiff.Predictor.FLOATING_POINT)
+        {
+            undoFloatingPointPredictor(data, width, height, samplesPerPixel, bytesPerSample);
+            order = ByteOrder.BIG_ENDIAN;
+        }
+
+        return ByteBuffer.wrap(data).order(order);
+    }
+
+    protected static byte[] inflate(byte[] input, int length) throws IOException
+    {
+        byte[] output = new byte[length];
+        Inflater inflater = new Inflater();
+        try
+        {
+            inflater.setInput(input);
+
+            int n = 0;
+            while (n < length && !inflater.finished())
+            {
+                int count = inflater.inflate(output, n, length - n);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                n += count;
+            }
+        }
+        catch (DataFormatException e)
+        {
+            String message = Logging.getMessage("GeotiffReader.BadGeotiff");
+            Logging.logger().severe(message);
+            throw new IOException(message, e);
+        }
+        finally
+        {
+            inflater.end();
+        }
+
+        return output;
+    }
+
+    protected static byte[] unpackBits(byte[] input, int length)
+    {
+        byte[] output = new byte[length];
+
+        int in = 0;
+        int out = 0;
+        while (in < input.length && out < length)
+        {
+            int n = input[in++];
+            if (n >= 0)
+            {
+                // Copy the next n + 1 bytes literally.
+                int count = Math.min(n + 1, Math.min(length - out, input.length - in));
+                System.arraycopy(input, in, output, out, count);
+                in += n + 1;
+                out += count;
+            }
+            else if (n != -128 && in < input.length)
+            {
+                // Repeat the next byte -n + 1 times.
+                int count = Math.min(-n + 1, length - out);
+                byte b = input[in++];
+                for (int i = 0; i < count; i++)
+                {
+                    output[out++] = b;
+                }
+            }
+        }
+
+        return output;
+    }
+
+    protected static void undoHorizontalDifferencing(byte[] data, ByteOrder order, int width, int height,
+        int samplesPerPixel, int bytesPerSample)
+    {
+        int rowLength = width * samplesPerPixel;
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(order);
+
+        for (int row = 0; row < height; row++)
+        {
+            int rowStart = row * rowLength;
+            for (int i = samplesPerPixel; i < rowLength; i++)
+            {
+                int index = (rowStart + i) * bytesPerSample;
+                int previous = index - samplesPerPixel * bytesPerSample;
+
+                switch (bytesPerSample)
+                {
+                    case 1:
+                        data[index] += data[previous];
+                        break;
+                    case 2:
+                        buffer.putShort(index, (short) (buffer.getShort(index) + buffer.getShort(previous)));
+                        break;
+                    case 4:
+                        buffer.putInt(index, buffer.getInt(index) + buffer.getInt(previous));
+                        break;
+                    case 8:
+                        buffer.putLong(index, buffer.getLong(index) + buffer.getLong(previous));
+                        break;
+                }
+            }
+        }
+    }
+
+    /*
+     * Reverses the floating point predictor, which stores each row as its samples' bytes grouped by significance, most
+     * significant first, and then differenced byte by byte. The samples are restored in big-endian order.
+     *
+     */
+    protected static void undoFloatingPointPredictor(byte[] data, int width, int height, int samplesPerPixel,
+        int bytesPerSample)
+    {
+        int rowSamples = width * samplesPerPixel;
+        int rowBytes = rowSamples * bytesPerSample;
+        byte[] row = new byte[rowBytes];
+
+        for (int r = 0; r < height; r++)
+        {
+            int rowStart = r * rowBytes;
+            for (int i = rowStart + samplesPerPixel; i < rowStart + rowBytes; i++)
+            {
+                data[i] += data[i - samplesPerPixel];
+            }
+
+            System.arraycopy(data, rowStart, row, 0, rowBytes);
+            for (int i = 0; i < rowSamples; i++)
+            {
+                for (int b = 0; b < bytesPerSample; b++)
+                {
+                    data[rowStart + i * bytesPerSample + b] = row[b * rowSamples + i];
+                }
+            }
+        }
+    }
+
     /*
      * Reads BYTE image data organized as a singular image plane (and pixel interleaved, in the case of color images).
      *
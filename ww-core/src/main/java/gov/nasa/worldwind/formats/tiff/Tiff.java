@@ -191,7 +191,18 @@ public interface Tiff
         public static final int NONE = 1;
         public static final int LZW = 5;
         public static final int JPEG = 6;
+        public static final int ADOBE_DEFLATE = 8;
         public static final int PACKBITS = 32773;
+        public static final int DEFLATE = 32946;
+    }
+
+    public interface Predictor
+    {
+        public static final int NONE = 1;
+        // Each sample is stored as the difference from the same sample of the preceding pixel in the row.
+        public static final int HORIZONTAL_DIFFERENCING = 2;
+        // The bytes of each row of floating point samples are regrouped by significance and then differenced.
+        public static final int FLOATING_POINT = 3;
     }
 
     public interface PlanarConfiguration
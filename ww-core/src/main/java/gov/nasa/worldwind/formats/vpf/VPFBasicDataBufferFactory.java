@@ -683,7 +683,9 @@ public abstract class VPFBasicDataBufferFactory implements VPFDataBufferFactory
             try
             {
                 byteBuffer.limit(limit);
-                BufferWrapper newBuffer = this.doRead(byteBuffer);
+                // Null coordinates are replaced in place, so a read-only buffer such as a memory-mapped table is read
+                // from a copy of the coordinates.
+                BufferWrapper newBuffer = this.doRead(byteBuffer.isReadOnly() ? copyOf(byteBuffer) : byteBuffer);
                 vecBuffer = new VecBuffer(this.coordsPerElem, newBuffer);
             }
             finally
@@ -696,6 +698,14 @@ public abstract class VPFBasicDataBufferFactory implements VPFDataBufferFactory
         }
 
         protected abstract BufferWrapper doRead(ByteBuffer byteBuffer);
+
+        protected static ByteBuffer copyOf(ByteBuffer byteBuffer)
+        {
+            ByteBuffer copy = ByteBuffer.allocateDirect(byteBuffer.remaining()).order(byteBuffer.order());
+            copy.put(byteBuffer.duplicate());
+            copy.flip();
+            return copy;
+        }
     }
 
     protected static class ShortVecReader extends AbstractVecReader
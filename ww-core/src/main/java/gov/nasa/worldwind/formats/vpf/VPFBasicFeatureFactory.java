@@ -127,6 +127,21 @@ public class VPFBasicFeatureFactory implements VPFFeatureFactory
         VPFBufferedRecordData joinTable = this.createJoinTable(featureClass);
         Iterable<String> attributeKeys = this.getFeatureAttributeKeys(featureTable);
 
+        // A feature without a join table lies in the tile identified by its tile_id, so visit only the feature rows
+        // in this factory's tile.
+        if (joinTable == null && this.tile != null && featureTable.getRecordData("tile_id") != null)
+        {
+            for (int id : featureTable.getRecordIds("tile_id", this.tile.getId()))
+            {
+                VPFFeature feature = this.doCreateSimpleFeature(featureClass, featureTable.getRecord(id), null,
+                    attributeKeys);
+                if (feature != null)
+                    results.add(feature);
+            }
+
+            return results;
+        }
+
         for (VPFRecord featureRow : featureTable)
         {
             VPFFeature feature = this.doCreateSimpleFeature(featureClass, featureRow, joinTable, attributeKeys);
@@ -220,8 +235,8 @@ public class VPFBasicFeatureFactory implements VPFFeatureFactory
         VPFBufferedRecordData joinTable, int[] primitiveIds, boolean query)
     {
         // Although a direct link between feature and primitive(s) is provided by the primitive_id column in the join
-        // table, a sequential search of the feature_id column must still be performed to find all primitives associated
-        // with a selected feature.
+        // table, the feature_id column must still be searched to find all primitives associated with a selected
+        // feature. The join table's key index of that column finds them without a sequential search.
 
         VPFRelation featureToJoin = this.getFeatureToJoinRelation(featureClass);
         if (featureToJoin == null)
@@ -239,15 +254,12 @@ public class VPFBasicFeatureFactory implements VPFFeatureFactory
         int numPrimitives = 0;
         VPFBoundingBox bounds = null;
 
-        for (VPFRecord joinRow : joinTable)
+        for (int joinId : joinTable.getRecordIds(joinFeatureKey, featureId))
         {
+            VPFRecord joinRow = joinTable.getRecord(joinId);
             if (this.tile != null && !matchesTile(joinRow, this.tile))
                 continue;
 
-            int fId = asInt(joinRow.getValue(joinFeatureKey));
-            if (featureId != fId)
-                continue;
-
             if (!query)
             {
                 int pId = asInt(joinRow.getValue(joinPrimitiveKey));
@@ -17,10 +17,10 @@ public class VPFBufferedRecordData implements Iterable<VPFRecord>
 {
     protected static class RecordData
     {
-        public VPFDataBuffer dataBuffer;
+        public VPFColumnData dataBuffer;
         protected Map<Object, Integer> recordIndex;
 
-        public RecordData(VPFDataBuffer dataBuffer)
+        public RecordData(VPFColumnData dataBuffer)
         {
             this.dataBuffer = dataBuffer;
         }
@@ -75,6 +75,7 @@ public class VPFBufferedRecordData implements Iterable<VPFRecord>
 
     private int numRecords;
     private Map<String, RecordData> dataMap = new HashMap<String, RecordData>();
+    private Map<String, VPFKeyIndex> keyIndexMap = new HashMap<String, VPFKeyIndex>();
 
     public VPFBufferedRecordData()
     {
@@ -95,7 +96,7 @@ public class VPFBufferedRecordData implements Iterable<VPFRecord>
         return Collections.unmodifiableSet(this.dataMap.keySet());
     }
 
-    public VPFDataBuffer getRecordData(String parameterName)
+    public VPFColumnData getRecordData(String parameterName)
     {
         if (parameterName == null)
         {
@@ -108,7 +109,7 @@ public class VPFBufferedRecordData implements Iterable<VPFRecord>
         return (data != null) ? data.dataBuffer : null;
     }
 
-    public void setRecordData(String parameterName, VPFDataBuffer dataBuffer)
+    public void setRecordData(String parameterName, VPFColumnData dataBuffer)
     {
         if (parameterName == null)
         {
@@ -125,6 +126,11 @@ public class VPFBufferedRecordData implements Iterable<VPFRecord>
         {
             this.dataMap.remove(parameterName);
         }
+
+        synchronized (this.keyIndexMap)
+        {
+            this.keyIndexMap.remove(parameterName);
+        }
     }
 
     public VPFRecord getRecord(int id)
@@ -195,6 +201,69 @@ public class VPFBufferedRecordData implements Iterable<VPFRecord>
         return (data != null) && data.updateIndex(1, this.numRecords);
     }
 
+    /**
+     * Returns the ids of the records whose value for a specified parameter is a specified integer, such as the rows of
+     * a join table referencing a feature, or the rows of a feature table in a tile. The first call for a parameter
+     * builds a {@link VPFKeyIndex} of the parameter's values, which is kept with this record data so that subsequent
+     * calls find the records without scanning the table.
+     *
+     * @param parameterName the parameter name, typically a primary or foreign key column.
+     * @param value         the value to find.
+     *
+     * @return the ids of the records having the value in increasing order, or an empty array if there are no such
+     *         records or this record data has no such parameter.
+     *
+     * @throws IllegalArgumentException if the parameter name is null.
+     */
+    public int[] getRecordIds(String parameterName, int value)
+    {
+        if (parameterName == null)
+        {
+            String message = Logging.getMessage("nullValue.ParameterNameIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        VPFKeyIndex index = this.getKeyIndex(parameterName);
+        return (index != null) ? index.getRecordIds(value) : new int[0];
+    }
+
+    /**
+     * Returns the key index of a specified parameter's values, and builds the index if it does not already exist.
+     *
+     * @param parameterName the parameter name.
+     *
+     * @return the parameter's key index, or null if this record data has no such parameter.
+     *
+     * @throws IllegalArgumentException if the parameter name is null.
+     */
+    public VPFKeyIndex getKeyIndex(String parameterName)
+    {
+        if (parameterName == null)
+        {
+            String message = Logging.getMessage("nullValue.ParameterNameIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        RecordData data = this.dataMap.get(parameterName);
+        if (data == null)
+            return null;
+
+        // Record data may be shared by threads creating features for different tiles.
+        synchronized (this.keyIndexMap)
+        {
+            VPFKeyIndex index = this.keyIndexMap.get(parameterName);
+            if (index == null)
+            {
+                index = new VPFKeyIndex(data.dataBuffer, this.numRecords);
+                this.keyIndexMap.put(parameterName, index);
+            }
+
+            return index;
+        }
+    }
+
     public static int indexFromId(int rowId)
     {
         return rowId - 1;
@@ -220,13 +289,13 @@ public class VPFBufferedRecordData implements Iterable<VPFRecord>
 
         public boolean hasValue(String parameterName)
         {
-            VPFDataBuffer dataBuffer = getRecordData(parameterName);
+            VPFColumnData dataBuffer = getRecordData(parameterName);
             return (dataBuffer != null) && dataBuffer.hasValue(this.id);
         }
 
         public Object getValue(String parameterName)
         {
-            VPFDataBuffer dataBuffer = getRecordData(parameterName);
+            VPFColumnData dataBuffer = getRecordData(parameterName);
             return (dataBuffer != null) ? dataBuffer.get(this.id) : null;
         }
     }
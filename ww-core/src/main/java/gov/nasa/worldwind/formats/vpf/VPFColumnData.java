@@ -0,0 +1,23 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.formats.vpf;
+
+/**
+ * Provides the values of one column of a VPF table. Rows are identified by their id, starting at 1. A {@link
+ * VPFDataBuffer} is column data that is filled by reading rows in order. Other column data, such as a {@link
+ * VPFMappedDataBuffer}, provides the values of an existing table and cannot be filled.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public interface VPFColumnData
+{
+    Object get(int index);
+
+    Object getBackingData();
+
+    boolean hasValue(int index);
+}
@@ -11,14 +11,8 @@ import java.nio.ByteBuffer;
  * @author dcollins
  * @version $Id$
  */
-public interface VPFDataBuffer
+public interface VPFDataBuffer extends VPFColumnData
 {
-    Object get(int index);
-
-    Object getBackingData();
-
-    boolean hasValue(int index);
-
     void read(ByteBuffer byteBuffer);
 
     void read(ByteBuffer byteBuffer, int length);
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.formats.vpf;
+
+import gov.nasa.worldwind.util.Logging;
+
+import java.util.Arrays;
+
+/**
+ * An index of the integer values of a VPF table column, such as a primary key or a foreign key referencing another
+ * table's rows. The index maps each key value to the ids of the rows having that value, in increasing order of row id.
+ * Keys and row ids are held in primitive arrays sorted by key, so an index over a table of N rows occupies 8N bytes and
+ * a lookup takes O(log N) time. Rows whose value is missing or not a number are not indexed.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public class VPFKeyIndex
+{
+    protected static final int[] EMPTY_IDS = new int[0];
+
+    protected final int[] keys;
+    protected final int[] ids;
+
+    /**
+     * Creates an index of the values of a column.
+     *
+     * @param dataBuffer the column's values.
+     * @param numRecords the number of rows in the column's table.
+     *
+     * @throws IllegalArgumentException if the data buffer is null.
+     */
+    public VPFKeyIndex(VPFColumnData dataBuffer, int numRecords)
+    {
+        if (dataBuffer == null)
+        {
+            String message = Logging.getMessage("nullValue.BufferIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        long[] entries = new long[numRecords];
+        int count = 0;
+
+        for (int id = 1; id <= numRecords; id++)
+        {
+            Object o = dataBuffer.get(id);
+            if (!(o instanceof Number))
+                continue;
+
+            // Pack the key in the upper bits and the row id in the lower bits, so that sorting orders entries by key,
+            // then by row id.
+            entries[count++] = ((long) ((Number) o).intValue() << 32) | id;
+        }
+
+        Arrays.sort(entries, 0, count);
+
+        this.keys = new int[count];
+        this.ids = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            this.keys[i] = (int) (entries[i] >> 32);
+            this.ids[i] = (int) entries[i];
+        }
+    }
+
+    /**
+     * Indicates the number of rows in the index.
+     *
+     * @return the number of rows having a numeric value.
+     */
+    public int size()
+    {
+        return this.keys.length;
+    }
+
+    /**
+     * Returns the id of the first row having a specified value.
+     *
+     * @param key the value to find.
+     *
+     * @return the smallest id of the rows having the value, or -1 if no row has the value.
+     */
+    public int indexOf(int key)
+    {
+        int i = this.firstIndexOf(key);
+        return (i >= 0) ? this.ids[i] : -1;
+    }
+
+    /**
+     * Returns the ids of the rows having a specified value.
+     *
+     * @param key the value to find.
+     *
+     * @return the ids of the rows having the value in increasing order, or an empty array if no row has the value.
+     */
+    public int[] getRecordIds(int key)
+    {
+        int first = this.firstIndexOf(key);
+        if (first < 0)
+            return EMPTY_IDS;
+
+        int last = first + 1;
+        while (last < this.keys.length && this.keys[last] == key)
+        {
+            last++;
+        }
+
+        return Arrays.copyOfRange(this.ids, first, last);
+    }
+
+    protected int firstIndexOf(int key)
+    {
+        int low = 0;
+        int high = this.keys.length;
+
+        // Find the first entry whose key is greater than or equal to the key.
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (this.keys[mid] < key)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+
+        return (low < this.keys.length && this.keys[low] == key) ? low : -1;
+    }
+}
@@ -0,0 +1,316 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.formats.vpf;
+
+import gov.nasa.worldwind.util.Logging;
+
+import java.nio.*;
+
+/**
+ * A read-only column of a memory-mapped VPF table, which decodes the column's values when they are first accessed.
+ * Values are decoded a page of rows at a time into a data buffer of the column's type, so a column occupies heap only
+ * for the pages of rows actually accessed. {@link #getBackingData()} decodes the entire column, for consumers that
+ * access a column's backing data directly. The column's values are those of the table, so unlike a {@link
+ * VPFDataBuffer} it cannot be filled by reading rows.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public class VPFMappedDataBuffer implements VPFColumnData
+{
+    /** The number of rows decoded at a time. */
+    protected static final int PAGE_SIZE = 256;
+
+    /**
+     * A memory-mapped VPF table body and its optional variable-length record index, shared by the table's columns. Rows
+     * are located by the record index, if there is one, and otherwise by the table's fixed record length.
+     */
+    public static class MappedTable
+    {
+        protected final ByteBuffer buffer;
+        protected final ByteOrder byteOrder;
+        protected final ByteBuffer indexBuffer;
+        protected final VPFTableReader.Column[] columns;
+        protected final int numRecords;
+        protected final int bodyOffset;
+        protected final int recordLength;
+        /** The offset of each column within a fixed length record, or null if records vary in length. */
+        protected final int[] columnOffsets;
+
+        /**
+         * Creates a mapped table.
+         *
+         * @param buffer       the table file's contents.
+         * @param byteOrder    the byte ordering specified by the table header.
+         * @param headerLength the length of the table header, excluding the header length field.
+         * @param indexBuffer  the contents of the table's variable-length record index file, or null if the table has
+         *                     no record index. Its records must be fixed length if it has no index.
+         * @param columns      the table's column definitions.
+         *
+         * @throws IllegalArgumentException if the buffer or columns are null, or if the table has no index and its
+         *                                  records vary in length.
+         */
+        public MappedTable(ByteBuffer buffer, ByteOrder byteOrder, int headerLength, ByteBuffer indexBuffer,
+            VPFTableReader.Column[] columns)
+        {
+            if (buffer == null)
+            {
+                String message = Logging.getMessage("nullValue.BufferIsNull");
+                Logging.logger().severe(message);
+                throw new IllegalArgumentException(message);
+            }
+
+            if (columns == null)
+            {
+                String message = Logging.getMessage("nullValue.ArrayIsNull");
+                Logging.logger().severe(message);
+                throw new IllegalArgumentException(message);
+            }
+
+            this.buffer = buffer;
+            this.byteOrder = byteOrder;
+            this.columns = columns;
+            // Body offset is size of header length field (4 bytes) plus the length of the header content.
+            this.bodyOffset = 4 + headerLength;
+
+            int length = 0;
+            int[] offsets = new int[columns.length];
+            for (int col = 0; col < columns.length && length >= 0; col++)
+            {
+                offsets[col] = length;
+                length = columns[col].isVariableLengthField() ? -1 : length + columns[col].getFieldLength();
+            }
+
+            this.recordLength = length;
+            this.columnOffsets = (length >= 0) ? offsets : null;
+
+            if (indexBuffer != null)
+            {
+                // The record index is always least significant byte first.
+                this.indexBuffer = indexBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+                this.numRecords = this.indexBuffer.getInt(0);
+            }
+            else if (this.recordLength > 0)
+            {
+                this.indexBuffer = null;
+                this.numRecords = (buffer.limit() - this.bodyOffset) / this.recordLength;
+            }
+            else
+            {
+                String message = Logging.getMessage("VPF.VariableLengthIndexFileMissing");
+                Logging.logger().severe(message);
+                throw new IllegalArgumentException(message);
+            }
+        }
+
+        public int getNumRecords()
+        {
+            return this.numRecords;
+        }
+
+        public VPFTableReader.Column[] getColumns()
+        {
+            return this.columns;
+        }
+
+        /**
+         * Returns the offset of a record in the table file.
+         *
+         * @param id the record's id.
+         *
+         * @return the record's offset.
+         */
+        public int getRecordOffset(int id)
+        {
+            // The index is a header of two 4 byte integers followed by an 8 byte offset and length for each record,
+            // so the offset of record N is at byte 8N. See DIGEST Part 2, Annex C.2.3.1.2.
+            return (this.indexBuffer != null) ? this.indexBuffer.getInt(8 * id)
+                : this.bodyOffset + (id - 1) * this.recordLength;
+        }
+
+        /**
+         * Returns a view of the table's contents with the table's byte ordering, and an independent position.
+         *
+         * @return a view of the table.
+         */
+        public ByteBuffer duplicate()
+        {
+            return this.buffer.duplicate().order(this.byteOrder);
+        }
+
+        /**
+         * Positions a view of the table at a column's field in a specified record.
+         *
+         * @param buffer a view of the table, as returned by {@link #duplicate()}.
+         * @param id     the record's id.
+         * @param column the column's index.
+         */
+        public void positionAtField(ByteBuffer buffer, int id, int column)
+        {
+            int offset = this.getRecordOffset(id);
+
+            if (this.columnOffsets != null)
+            {
+                buffer.position(offset + this.columnOffsets[column]);
+                return;
+            }
+
+            // Records vary in length, so skip the preceding fields of this record.
+            buffer.position(offset);
+            for (int col = 0; col < column; col++)
+            {
+                skipField(buffer, this.columns[col]);
+            }
+        }
+
+        protected static void skipField(ByteBuffer buffer, VPFTableReader.Column column)
+        {
+            VPFDataType type = VPFDataType.fromTypeName(column.dataType);
+
+            if (type == VPFDataType.TRIPLET_ID)
+            {
+                // The type byte specifies the length of each of the three ids. See TripletIdReader.
+                int bits = buffer.get();
+                int length = tripletIdLength(bits >> 6) + tripletIdLength(bits >> 4) + tripletIdLength(bits >> 2);
+                buffer.position(buffer.position() + length);
+            }
+            else if (column.numElements < 0)
+            {
+                // Variable length fields begin with the number of elements.
+                int numElements = buffer.getInt();
+                buffer.position(buffer.position() + numElements * type.getFieldLength());
+            }
+            else
+            {
+                buffer.position(buffer.position() + column.getFieldLength());
+            }
+        }
+
+        protected static int tripletIdLength(int bits)
+        {
+            switch (bits & 3)
+            {
+                case 1:
+                    return 1;
+                case 2:
+                    return 2;
+                case 3:
+                    return 4;
+                default:
+                    return 0;
+            }
+        }
+    }
+
+    protected final MappedTable table;
+    protected final int column;
+    protected final VPFDataType type;
+    protected final int numElements;
+    protected final boolean variableLength;
+    protected VPFDataBuffer[] pages;
+    protected VPFDataBuffer data;
+
+    /**
+     * Creates a column of a mapped table.
+     *
+     * @param table  the table.
+     * @param column the index of the column.
+     *
+     * @throws IllegalArgumentException if the table is null or the column index is out of range.
+     */
+    public VPFMappedDataBuffer(MappedTable table, int column)
+    {
+        if (table == null)
+        {
+            String message = Logging.getMessage("nullValue.TableIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (column < 0 || column >= table.columns.length)
+        {
+            String message = Logging.getMessage("generic.indexOutOfRange", column);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        VPFTableReader.Column col = table.columns[column];
+
+        this.table = table;
+        this.column = column;
+        this.type = VPFDataType.fromTypeName(col.dataType);
+        this.numElements = col.numElements;
+        this.variableLength = col.isVariableLengthField();
+        this.pages = new VPFDataBuffer[(table.numRecords + PAGE_SIZE - 1) / PAGE_SIZE];
+    }
+
+    public Object get(int index)
+    {
+        VPFDataBuffer buffer = this.getBuffer(index);
+        return buffer.get(this.localIndex(buffer, index));
+    }
+
+    public boolean hasValue(int index)
+    {
+        VPFDataBuffer buffer = this.getBuffer(index);
+        return buffer.hasValue(this.localIndex(buffer, index));
+    }
+
+    /**
+     * Returns the backing data of the entire column, which is decoded if it has not been already.
+     *
+     * @return the column's backing data.
+     */
+    public synchronized Object getBackingData()
+    {
+        if (this.data == null)
+        {
+            this.data = this.decode(1, this.table.numRecords);
+            this.pages = null; // The decoded column supersedes any decoded pages.
+        }
+
+        return this.data.getBackingData();
+    }
+
+    protected synchronized VPFDataBuffer getBuffer(int index)
+    {
+        if (this.data != null)
+            return this.data;
+
+        int page = Math.max(0, index - 1) / PAGE_SIZE;
+        if (this.pages[page] == null)
+        {
+            int firstId = 1 + page * PAGE_SIZE;
+            this.pages[page] = this.decode(firstId, Math.min(PAGE_SIZE, this.table.numRecords - firstId + 1));
+        }
+
+        return this.pages[page];
+    }
+
+    protected int localIndex(VPFDataBuffer buffer, int index)
+    {
+        // Data buffers index their rows from 1, and a page's first row is the row following the preceding pages.
+        return (buffer == this.data) ? index : index - ((index - 1) / PAGE_SIZE) * PAGE_SIZE;
+    }
+
+    protected VPFDataBuffer decode(int firstId, int count)
+    {
+        VPFDataBuffer buffer = this.type.createDataBuffer(count, this.numElements);
+        ByteBuffer byteBuffer = this.table.duplicate();
+
+        for (int id = firstId; id < firstId + count; id++)
+        {
+            this.table.positionAtField(byteBuffer, id, this.column);
+
+            if (this.variableLength)
+                buffer.read(byteBuffer);
+            else
+                buffer.read(byteBuffer, this.numElements);
+        }
+
+        return buffer;
+    }
+}
@@ -14,16 +14,43 @@ import java.util.ArrayList;
 
 /**
  * DIGEST Part 2, Annex C.2.2.1.2 and C.2.3.1.1
+ * <p/>
+ * By default the reader decodes every record of a table into memory. A reader in memory-mapped mode instead maps the
+ * table file and its variable-length record index into memory, and returns record data whose columns are decoded
+ * lazily as their records are accessed. See {@link VPFMappedDataBuffer}.
  *
  * @author dcollins
  * @version $Id$
  */
 public class VPFTableReader
 {
+    protected boolean memoryMapped;
+
     public VPFTableReader()
     {
     }
 
+    /**
+     * Constructs a table reader, and specifies whether it memory-maps the tables it reads.
+     *
+     * @param memoryMapped true to map tables into memory and decode their records lazily, false to decode every record
+     *                     when a table is read.
+     */
+    public VPFTableReader(boolean memoryMapped)
+    {
+        this.memoryMapped = memoryMapped;
+    }
+
+    public boolean isMemoryMapped()
+    {
+        return this.memoryMapped;
+    }
+
+    public void setMemoryMapped(boolean memoryMapped)
+    {
+        this.memoryMapped = memoryMapped;
+    }
+
     public VPFBufferedRecordData read(File file)
     {
         if (file == null)
@@ -35,6 +62,9 @@ public class VPFTableReader
 
         try
         {
+            if (this.memoryMapped)
+                return this.doReadMapped(file, this.mapFileToBuffer(file));
+
             ByteBuffer buffer = this.readFileToBuffer(file);
             return this.doRead(file, buffer);
         }
@@ -53,6 +83,45 @@ public class VPFTableReader
         return buffer;
     }
 
+    protected ByteBuffer mapFileToBuffer(File file) throws IOException
+    {
+        ByteBuffer buffer = WWIO.mapFile(file); // Map VPF table to a read-only ByteBuffer.
+        buffer.order(ByteOrder.LITTLE_ENDIAN); // Default to least significant byte first order.
+        return buffer;
+    }
+
+    protected VPFBufferedRecordData doReadMapped(File file, ByteBuffer buffer) throws IOException
+    {
+        // Read the table header.
+        Header header = this.readHeader(buffer);
+
+        // Map the variable-length record index, if any. See DIGEST Part 2 Annex C.2.3.1.2. Its entries are read as
+        // records are accessed.
+        ByteBuffer indexBuffer = null;
+        File recordIndexFile = new File(file.getParent(), getRecordIndexFilename(file.getName()));
+        if (recordIndexFile.exists())
+            indexBuffer = this.mapFileToBuffer(recordIndexFile);
+
+        // Without a record index, records can be located only if the column definitions are fixed length.
+        if (indexBuffer == null)
+        {
+            for (Column col : header.columns)
+            {
+                if (col.isVariableLengthField())
+                {
+                    String message = Logging.getMessage("VPF.VariableLengthIndexFileMissing");
+                    Logging.logger().severe(message);
+                    throw new WWRuntimeException(message);
+                }
+            }
+        }
+
+        VPFMappedDataBuffer.MappedTable table = new VPFMappedDataBuffer.MappedTable(buffer, header.byteOrder,
+            header.length, indexBuffer, header.columns);
+
+        return this.readMappedRecordData(table, header.columns);
+    }
+
     protected VPFBufferedRecordData doRead(File file, ByteBuffer buffer)
     {
         // Read the table header.
@@ -358,6 +427,28 @@ public class VPFTableReader
         return recordData;
     }
 
+    protected VPFBufferedRecordData readMappedRecordData(VPFMappedDataBuffer.MappedTable table, Column[] columns)
+    {
+        VPFBufferedRecordData recordData = new VPFBufferedRecordData();
+        recordData.setNumRecords(table.getNumRecords());
+
+        // Set a lazily decoded record data buffer for each column.
+        for (int col = 0; col < columns.length; col++)
+        {
+            recordData.setRecordData(columns[col].name, new VPFMappedDataBuffer(table, col));
+
+            // Compute an index for any columns which are identified as primary keys or unique keys.
+            if (!columns[col].name.equals(VPFConstants.ID) &&
+                (columns[col].name.equals(VPFConstants.PRIMARY_KEY) ||
+                    columns[col].name.equals(VPFConstants.UNIQUE_KEY)))
+            {
+                recordData.buildRecordIndex(columns[col].name);
+            }
+        }
+
+        return recordData;
+    }
+
     //**************************************************************//
     //********************  Record Index  **************************//
     //**************************************************************//
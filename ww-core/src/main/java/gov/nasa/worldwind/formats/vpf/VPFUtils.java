@@ -5,12 +5,15 @@
  */
 package gov.nasa.worldwind.formats.vpf;
 
-import gov.nasa.worldwind.avlist.AVList;
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.avlist.*;
 import gov.nasa.worldwind.exception.WWRuntimeException;
 import gov.nasa.worldwind.util.*;
 
 import java.io.*;
+import java.lang.ref.*;
 import java.nio.ByteBuffer;
+import java.util.*;
 
 /**
  * @author dcollins
@@ -18,6 +21,39 @@ import java.nio.ByteBuffer;
  */
 public class VPFUtils
 {
+    /**
+     * The memory-mapped tables read by {@link #readTable(java.io.File)}, which are shared so that the key indexes
+     * built on a table persist while the table is in use.
+     */
+    protected static final Map<File, TableReference> mappedTables = new HashMap<File, TableReference>();
+    /** The references to mapped tables that the garbage collector has cleared. */
+    protected static final ReferenceQueue<VPFBufferedRecordData> clearedTables =
+        new ReferenceQueue<VPFBufferedRecordData>();
+
+    /** A soft reference to a mapped table, which remembers the table's file so its entry can be removed. */
+    protected static class TableReference extends SoftReference<VPFBufferedRecordData>
+    {
+        public final File file;
+
+        public TableReference(File file, VPFBufferedRecordData table, ReferenceQueue<VPFBufferedRecordData> queue)
+        {
+            super(table, queue);
+            this.file = file;
+        }
+    }
+
+    /**
+     * Reads a VPF table. If the configuration parameter {@link AVKey#VPF_MEMORY_MAPPED_TABLES} is true, the table is
+     * memory-mapped and its records are decoded as they are accessed, and the table is shared by subsequent calls
+     * for the same file while it remains referenced or memory is available. Otherwise every record of the table is
+     * decoded into memory.
+     *
+     * @param file the table file.
+     *
+     * @return the table's record data, or null if the file does not exist or cannot be read.
+     *
+     * @throws IllegalArgumentException if the file is null.
+     */
     public static VPFBufferedRecordData readTable(File file)
     {
         if (file == null)
@@ -32,6 +68,9 @@ public class VPFUtils
             return null;
         }
 
+        if (Configuration.getBooleanValue(AVKey.VPF_MEMORY_MAPPED_TABLES, false))
+            return readMappedTable(file);
+
         try
         {
             VPFTableReader tableReader = new VPFTableReader();
@@ -44,6 +83,48 @@ public class VPFUtils
         }
     }
 
+    protected static VPFBufferedRecordData readMappedTable(File file)
+    {
+        File key = file.getAbsoluteFile();
+
+        synchronized (mappedTables)
+        {
+            purgeMappedTables();
+
+            TableReference ref = mappedTables.get(key);
+            VPFBufferedRecordData table = (ref != null) ? ref.get() : null;
+            if (table != null)
+                return table;
+
+            try
+            {
+                VPFTableReader tableReader = new VPFTableReader(true);
+                table = tableReader.read(file);
+            }
+            catch (WWRuntimeException e)
+            {
+                // Exception already logged by VPFTableReader.
+                return null;
+            }
+
+            mappedTables.put(key, new TableReference(key, table, clearedTables));
+            return table;
+        }
+    }
+
+    /** Removes the entries of mapped tables that the garbage collector has cleared. Called with the map's lock held. */
+    protected static void purgeMappedTables()
+    {
+        Reference<? extends VPFBufferedRecordData> ref;
+        while ((ref = clearedTables.poll()) != null)
+        {
+            // The entry may already hold a newer reference to the table, read after this one was cleared.
+            File file = ((TableReference) ref).file;
+            if (mappedTables.get(file) == ref)
+                mappedTables.remove(file);
+        }
+    }
+
     public static VPFDatabase readDatabase(File file)
     {
         if (file == null)
@@ -0,0 +1,1032 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.geom.coords;
+
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.globes.Globe;
+import gov.nasa.worldwind.util.Logging;
+
+/**
+ * Converts arrays of geodetic coordinates to and from UTM, UPS and MGRS coordinates. Unlike {@link UTMCoord}, {@link
+ * UPSCoord} and {@link MGRSCoord}, which create a converter and a coordinate object for each point, a bulk converter
+ * computes the ellipsoid's Transverse Mercator constants and the UTM zones' central meridians once, when it's created,
+ * and converts each point in a loop over primitive arrays without allocating. Converters are immutable and may be
+ * shared by any number of threads.
+ * <p/>
+ * Geodetic coordinates are held in arrays of latitude and longitude pairs, in degrees. UTM coordinates are held in an
+ * array of zones and an array of easting and northing pairs, in meters. A zone is positive in the northern hemisphere
+ * and negative in the southern hemisphere. UPS coordinates are held in the same way, with 1 for the northern
+ * hemisphere and -1 for the southern hemisphere in place of the zone. Offsets are point indices: the first point's
+ * latitude and longitude are at <code>latLons[2 * offset]</code> and <code>latLons[2 * offset + 1]</code>, and its zone
+ * is at <code>zones[offset]</code>.
+ * <p/>
+ * A point that can't be converted is marked with a zone or hemisphere of 0 and <code>NaN</code> coordinates, an empty
+ * MGRS string, or <code>NaN</code> latitude and longitude, and conversion continues with the next point. The points
+ * accepted and the values computed are those of the single-point classes.
+ *
+ * @author tag
+ * @version $Id$
+ * @see UTMCoord
+ * @see UPSCoord
+ * @see MGRSCoord
+ */
+public class BulkCoordConverter
+{
+    /** The hemisphere value of UPS coordinates in the northern hemisphere. */
+    public static final int NORTH = 1;
+    /** The hemisphere value of UPS coordinates in the southern hemisphere. */
+    public static final int SOUTH = -1;
+
+    protected static final double PI = Math.PI;
+    protected static final double DEG_TO_RAD = PI / 180;
+    protected static final double RAD_TO_DEG = 180 / PI;
+
+    // UTM parameters. See UTMCoordConverter.
+    protected static final double UTM_MIN_LAT = -82 * DEG_TO_RAD;
+    protected static final double UTM_MAX_LAT = 86 * DEG_TO_RAD;
+    protected static final double UTM_MIN_EASTING = 100000;
+    protected static final double UTM_MAX_EASTING = 900000;
+    protected static final double UTM_MAX_NORTHING = 10000000;
+    protected static final double UTM_FALSE_EASTING = 500000;
+    protected static final double UTM_SCALE = 0.9996;
+
+    // Transverse Mercator limits. See TMCoordConverter.
+    protected static final double TM_MAX_LAT = (PI * 89.99) / 180.0;
+    protected static final double TM_MAX_DELTA_LONG = PI / 2;
+
+    // MGRS parameters. See MGRSCoordConverter.
+    protected static final double MGRS_MIN_UTM_LAT = -80 * DEG_TO_RAD;
+    protected static final double MGRS_MAX_UTM_LAT = 84 * DEG_TO_RAD;
+    protected static final int MGRS_MAX_PRECISION = 5;
+    protected static final double TWOMIL = 2000000;
+    protected static final double ONEHT = 100000;
+    protected static final double MAX_EAST_NORTH = 4000000;
+    protected static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    protected static final int LETTER_A = 0;
+    protected static final int LETTER_B = 1;
+    protected static final int LETTER_C = 2;
+    protected static final int LETTER_H = 7;
+    protected static final int LETTER_J = 9;
+    protected static final int LETTER_L = 11;
+    protected static final int LETTER_N = 13;
+    protected static final int LETTER_S = 18;
+    protected static final int LETTER_U = 20;
+    protected static final int LETTER_V = 21;
+    protected static final int LETTER_X = 23;
+    protected static final int LETTER_Y = 24;
+    protected static final int LETTER_Z = 25;
+    /** The letters of the 8 degree latitude bands from -80 to 72 degrees. */
+    protected static final String LATITUDE_BANDS = "CDEFGHJKLMNPQRSTUVWX";
+    /** The second letter range and false easting and northing of each UPS MGRS zone, A, B, Y and Z. */
+    protected static final int[] UPS_LTR2_LOW = {LETTER_J, LETTER_A, LETTER_J, LETTER_A};
+    protected static final double[] UPS_FALSE_EASTING = {800000, 2000000, 800000, 2000000};
+    protected static final double[] UPS_FALSE_NORTHING = {800000, 800000, 1300000, 1300000};
+
+    protected static final double[] POWERS_OF_TEN = {1, 10, 100, 1000, 10000, 100000};
+
+    protected final Globe globe;
+    protected final double a;
+    protected final double es;
+    protected final double ebs;
+    protected final double ap, bp, cp, dp, ep;
+    /** The easting and northing variance limits of the inverse projection. */
+    protected final double deltaEasting;
+    protected final double deltaNorthing;
+    /** The central meridian of each UTM zone, in radians, indexed by zone. */
+    protected final double[] centralMeridians = new double[61];
+
+    /**
+     * Creates a converter for the ellipsoid of a globe.
+     *
+     * @param globe the globe. May be null, in which case the converter uses the WGS84 ellipsoid.
+     *
+     * @throws IllegalArgumentException if the globe's flattening isn't between 1/350 and 1/250.
+     */
+    public BulkCoordConverter(Globe globe)
+    {
+        double a = UTMCoordConverter.WGS84_A;
+        double f = UTMCoordConverter.WGS84_F;
+        if (globe != null)
+        {
+            a = globe.getEquatorialRadius();
+            f = (globe.getEquatorialRadius() - globe.getPolarRadius()) / globe.getEquatorialRadius();
+        }
+
+        double invF = 1 / f;
+        if (a <= 0 || invF < 250 || invF > 350)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "flattening=" + f);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.globe = globe;
+        this.a = a;
+        this.es = 2 * f - f * f;
+        this.ebs = (1 / (1 - this.es)) - 1;
+
+        double b = a * (1 - f);
+        double tn = (a - b) / (a + b);
+        double tn2 = tn * tn;
+        double tn3 = tn2 * tn;
+        double tn4 = tn3 * tn;
+        double tn5 = tn4 * tn;
+        this.ap = a * (1 - tn + 5 * (tn2 - tn3) / 4 + 81 * (tn4 - tn5) / 64);
+        this.bp = 3 * a * (tn - tn2 + 7 * (tn3 - tn4) / 8 + 55 * tn5 / 64) / 2;
+        this.cp = 15 * a * (tn2 - tn3 + 3 * (tn4 - tn5) / 4) / 16;
+        this.dp = 35 * a * (tn3 - tn4 + 11 * tn5 / 16) / 48;
+        this.ep = 315 * a * (tn4 - tn5) / 512;
+
+        double[] en = new double[2];
+        this.projectTM(TM_MAX_LAT, TM_MAX_DELTA_LONG, 1, 0, 0, en, 0);
+        this.deltaNorthing = en[1];
+        this.projectTM(0, TM_MAX_DELTA_LONG, 1, 0, 0, en, 0);
+        this.deltaEasting = en[0];
+
+        for (int zone = 1; zone <= 60; zone++)
+        {
+            double cm = (zone >= 31 ? 6 * zone - 183 : 6 * zone + 177) * DEG_TO_RAD;
+            this.centralMeridians[zone] = cm > PI ? cm - 2 * PI : cm;
+        }
+    }
+
+    public Globe getGlobe()
+    {
+        return this.globe;
+    }
+
+    // *** UTM ***
+
+    /**
+     * Converts geodetic coordinates to UTM coordinates. Points are accepted between -82 and 86 degrees latitude.
+     *
+     * @param latLons       the latitude and longitude pairs to convert, in degrees.
+     * @param latLonsOffset the index of the first point in <code>latLons</code>.
+     * @param zones         the array to receive the zones, negative in the southern hemisphere.
+     * @param eastNorths    the array to receive the easting and northing pairs.
+     * @param utmOffset     the index of the first point in <code>zones</code> and <code>eastNorths</code>.
+     * @param count         the number of points to convert.
+     *
+     * @return the number of points converted.
+     *
+     * @throws IllegalArgumentException if any array is null, or if any array is too short for its offset and the
+     *                                  count.
+     */
+    public int toUTM(double[] latLons, int latLonsOffset, int[] zones, double[] eastNorths, int utmOffset, int count)
+    {
+        validate(latLons, 2, latLonsOffset, count);
+        validate(zones, utmOffset, count);
+        validate(eastNorths, 2, utmOffset, count);
+
+        int numConverted = 0;
+        for (int i = 0; i < count; i++)
+        {
+            int in = 2 * (latLonsOffset + i);
+            int out = utmOffset + i;
+            zones[out] = this.projectUTM(latLons[in] * DEG_TO_RAD, latLons[in + 1] * DEG_TO_RAD, eastNorths, 2 * out);
+            if (zones[out] != 0)
+                numConverted++;
+        }
+
+        return numConverted;
+    }
+
+    /**
+     * Converts UTM coordinates to geodetic coordinates.
+     *
+     * @param zones         the zones, negative in the southern hemisphere.
+     * @param eastNorths    the easting and northing pairs, in meters.
+     * @param utmOffset     the index of the first point in <code>zones</code> and <code>eastNorths</code>.
+     * @param latLons       the array to receive the latitude and longitude pairs, in degrees.
+     * @param latLonsOffset the index of the first point in <code>latLons</code>.
+     * @param count         the number of points to convert.
+     *
+     * @return the number of points converted.
+     *
+     * @throws IllegalArgumentException if any array is null, or if any array is too short for its offset and the
+     *                                  count.
+     */
+    public int fromUTM(int[] zones, double[] eastNorths, int utmOffset, double[] latLons, int latLonsOffset, int count)
+    {
+        validate(zones, utmOffset, count);
+        validate(eastNorths, 2, utmOffset, count);
+        validate(latLons, 2, latLonsOffset, count);
+
+        int numConverted = 0;
+        for (int i = 0; i < count; i++)
+        {
+            int in = utmOffset + i;
+            int out = 2 * (latLonsOffset + i);
+            if (this.unprojectUTM(zones[in], eastNorths[2 * in], eastNorths[2 * in + 1], latLons, out))
+            {
+                latLons[out] *= RAD_TO_DEG;
+                latLons[out + 1] *= RAD_TO_DEG;
+                numConverted++;
+            }
+            else
+            {
+                latLons[out] = Double.NaN;
+                latLons[out + 1] = Double.NaN;
+            }
+        }
+
+        return numConverted;
+    }
+
+    /**
+     * Computes the UTM coordinates of a location, following {@link UTMCoordConverter#convertGeodeticToUTM(double,
+     * double)}.
+     *
+     * @param lat    the latitude, in radians.
+     * @param lon    the longitude, in radians.
+     * @param out    the array to receive the easting and northing.
+     * @param offset the index at which to write the easting.
+     *
+     * @return the zone, negative in the southern hemisphere, or 0 if the location can't be converted.
+     */
+    protected int projectUTM(double lat, double lon, double[] out, int offset)
+    {
+        if (lat < UTM_MIN_LAT || lat > UTM_MAX_LAT || lon < -PI || lon > 2 * PI || Double.isNaN(lat + lon))
+            return fail(out, offset);
+
+        if (lon < 0)
+            lon += (2 * PI) + 1.0e-10;
+
+        int zone = computeZone(lat, lon);
+        double falseNorthing = lat < 0 ? UTM_MAX_NORTHING : 0;
+        if (lon > PI)
+            lon -= 2 * PI;
+
+        if (!this.projectTM(lat, lon - this.centralMeridians[zone], UTM_SCALE, UTM_FALSE_EASTING, falseNorthing,
+            out, offset))
+            return fail(out, offset);
+
+        double easting = out[offset];
+        double northing = out[offset + 1];
+        if (easting < UTM_MIN_EASTING || easting > UTM_MAX_EASTING || northing < 0 || northing > UTM_MAX_NORTHING)
+            return fail(out, offset);
+
+        return lat < 0 ? -zone : zone;
+    }
+
+    /**
+     * Computes the UTM zone of a location, including the exceptions for Norway and Svalbard.
+     *
+     * @param lat the latitude, in radians.
+     * @param lon the longitude, in radians, between 0 and 2 PI.
+     *
+     * @return the zone.
+     */
+    protected static int computeZone(double lat, double lon)
+    {
+        long latDegrees = (long) (lat * 180.0 / PI);
+        long lonDegrees = (long) (lon * 180.0 / PI);
+
+        long zone;
+        if (lon < PI)
+            zone = (long) (31 + ((lon * 180.0 / PI) / 6.0));
+        else
+            zone = (long) (((lon * 180.0 / PI) / 6.0) - 29);
+        if (zone > 60)
+            zone = 1;
+
+        if (latDegrees > 55 && latDegrees < 64 && lonDegrees > -1 && lonDegrees < 3)
+            zone = 31;
+        if (latDegrees > 55 && latDegrees < 64 && lonDegrees > 2 && lonDegrees < 12)
+            zone = 32;
+        if (latDegrees > 71 && lonDegrees > -1 && lonDegrees < 9)
+            zone = 31;
+        if (latDegrees > 71 && lonDegrees > 8 && lonDegrees < 21)
+            zone = 33;
+        if (latDegrees > 71 && lonDegrees > 20 && lonDegrees < 33)
+            zone = 35;
+        if (latDegrees > 71 && lonDegrees > 32 && lonDegrees < 42)
+            zone = 37;
+
+        return (int) zone;
+    }
+
+    /**
+     * Computes the location of UTM coordinates, following {@link UTMCoordConverter#convertUTMToGeodetic(long, String,
+     * double, double)}.
+     *
+     * @param zone     the zone, negative in the southern hemisphere.
+     * @param easting  the easting, in meters.
+     * @param northing the northing, in meters.
+     * @param out      the array to receive the latitude and longitude, in radians.
+     * @param offset   the index at which to write the latitude.
+     *
+     * @return true if the coordinates were converted, otherwise false.
+     */
+    protected boolean unprojectUTM(int zone, double easting, double northing, double[] out, int offset)
+    {
+        int absZone = Math.abs(zone);
+        if (absZone < 1 || absZone > 60 || northing < 0 || northing > UTM_MAX_NORTHING)
+            return false;
+
+        double falseNorthing = zone < 0 ? UTM_MAX_NORTHING : 0;
+        if (!this.unprojectTM(easting, northing, this.centralMeridians[absZone], UTM_SCALE, UTM_FALSE_EASTING,
+            falseNorthing, out, offset))
+            return false;
+
+        return out[offset] >= UTM_MIN_LAT && out[offset] <= UTM_MAX_LAT;
+    }
+
+    protected static int fail(double[] out, int offset)
+    {
+        out[offset] = Double.NaN;
+        out[offset + 1] = Double.NaN;
+        return 0;
+    }
+
+    // *** Transverse Mercator ***
+
+    /**
+     * Computes the true meridional distance of a latitude, using the multiple angle identities rather than a sine for
+     * each term.
+     *
+     * @param lat the latitude, in radians.
+     * @param s   the sine of the latitude.
+     * @param c   the cosine of the latitude.
+     *
+     * @return the meridional distance, in meters.
+     */
+    protected double meridionalDistance(double lat, double s, double c)
+    {
+        double sin2 = 2 * s * c;
+        double cos2 = c * c - s * s;
+        double sin4 = 2 * sin2 * cos2;
+        double cos4 = cos2 * cos2 - sin2 * sin2;
+        double sin6 = sin4 * cos2 + cos4 * sin2;
+        double sin8 = 2 * sin4 * cos4;
+
+        return this.ap * lat - this.bp * sin2 + this.cp * sin4 - this.dp * sin6 + this.ep * sin8;
+    }
+
+    /**
+     * Projects a location to Transverse Mercator coordinates with an origin latitude of 0, following {@link
+     * TMCoordConverter#convertGeodeticToTransverseMercator(double, double)}.
+     *
+     * @param lat           the latitude, in radians.
+     * @param dlam          the longitude's difference from the central meridian, in radians.
+     * @param scale         the scale factor.
+     * @param falseEasting  the false easting, in meters.
+     * @param falseNorthing the false northing, in meters.
+     * @param out           the array to receive the easting and northing.
+     * @param offset        the index at which to write the easting.
+     *
+     * @return true if the location was projected, false if it's out of the projection's range.
+     */
+    protected boolean projectTM(double lat, double dlam, double scale, double falseEasting, double falseNorthing,
+        double[] out, int offset)
+    {
+        if (lat < -TM_MAX_LAT || lat > TM_MAX_LAT)
+            return false;
+
+        if (dlam > PI)
+            dlam -= 2 * PI;
+        if (dlam < -PI)
+            dlam += 2 * PI;
+        if (dlam < -TM_MAX_DELTA_LONG || dlam > TM_MAX_DELTA_LONG)
+            return false;
+        if (Math.abs(dlam) < 2.e-10)
+            dlam = 0.0;
+
+        double s = Math.sin(lat);
+        double c = Math.cos(lat);
+        double c2 = c * c;
+        double c3 = c2 * c;
+        double c5 = c3 * c2;
+        double c7 = c5 * c2;
+        double t = Math.tan(lat);
+        double tan2 = t * t;
+        double tan4 = tan2 * tan2;
+        double tan6 = tan4 * tan2;
+        double eta = this.ebs * c2;
+        double eta2 = eta * eta;
+        double eta3 = eta2 * eta;
+        double eta4 = eta3 * eta;
+
+        double sn = this.a / Math.sqrt(1 - this.es * s * s);
+        double tmd = this.meridionalDistance(lat, s, c);
+
+        double snk = sn * scale;
+        double t1 = tmd * scale;
+        double t2 = snk * s * c / 2.e0;
+        double t3 = snk * s * c3 * (5.e0 - tan2 + 9.e0 * eta + 4.e0 * eta2) / 24.e0;
+        double t4 = snk * s * c5 * (61.e0 - 58.e0 * tan2 + tan4 + 270.e0 * eta - 330.e0 * tan2 * eta
+            + 445.e0 * eta2 + 324.e0 * eta3 - 680.e0 * tan2 * eta2 + 88.e0 * eta4 - 600.e0 * tan2 * eta3
+            - 192.e0 * tan2 * eta4) / 720.e0;
+        double t5 = snk * s * c7 * (1385.e0 - 3111.e0 * tan2 + 543.e0 * tan4 - tan6) / 40320.e0;
+
+        double d2 = dlam * dlam;
+        out[offset + 1] = falseNorthing + t1 + d2 * (t2 + d2 * (t3 + d2 * (t4 + d2 * t5)));
+
+        double t6 = snk * c;
+        double t7 = snk * c3 * (1.e0 - tan2 + eta) / 6.e0;
+        double t8 = snk * c5 * (5.e0 - 18.e0 * tan2 + tan4 + 14.e0 * eta - 58.e0 * tan2 * eta + 13.e0 * eta2
+            + 4.e0 * eta3 - 64.e0 * tan2 * eta2 - 24.e0 * tan2 * eta3) / 120.e0;
+        double t9 = snk * c7 * (61.e0 - 479.e0 * tan2 + 179.e0 * tan4 - tan6) / 5040.e0;
+
+        out[offset] = falseEasting + dlam * (t6 + d2 * (t7 + d2 * (t8 + d2 * t9)));
+
+        return true;
+    }
+
+    /**
+     * Computes the location of Transverse Mercator coordinates with an origin latitude of 0, following {@link
+     * TMCoordConverter#convertTransverseMercatorToGeodetic(double, double)}.
+     *
+     * @param easting         the easting, in meters.
+     * @param northing        the northing, in meters.
+     * @param centralMeridian the central meridian, in radians.
+     * @param scale           the scale factor.
+     * @param falseEasting    the false easting, in meters.
+     * @param falseNorthing   the false northing, in meters.
+     * @param out             the array to receive the latitude and longitude, in radians.
+     * @param offset          the index at which to write the latitude.
+     *
+     * @return true if the coordinates were converted, false if they're out of the projection's range.
+     */
+    protected boolean unprojectTM(double easting, double northing, double centralMeridian, double scale,
+        double falseEasting, double falseNorthing, double[] out, int offset)
+    {
+        if (easting < falseEasting - this.deltaEasting || easting > falseEasting + this.deltaEasting
+            || northing < falseNorthing - this.deltaNorthing || northing > falseNorthing + this.deltaNorthing)
+            return false;
+
+        double tmd = (northing - falseNorthing) / scale;
+
+        // Iterate to the footpoint latitude, starting from the meridian's radius of curvature at the equator.
+        double oneMinusEs = 1 - this.es;
+        double ftphi = tmd / (this.a * oneMinusEs);
+        double s = 0;
+        double c = 1;
+        double w = 1;
+        for (int i = 0; i < 5; i++)
+        {
+            s = Math.sin(ftphi);
+            c = Math.cos(ftphi);
+            w = Math.sqrt(1 - this.es * s * s);
+            double sr = this.a * oneMinusEs / (w * w * w);
+            ftphi += (tmd - this.meridionalDistance(ftphi, s, c)) / sr;
+        }
+
+        s = Math.sin(ftphi);
+        c = Math.cos(ftphi);
+        w = Math.sqrt(1 - this.es * s * s);
+        double sr = this.a * oneMinusEs / (w * w * w);
+        double sn = this.a / w;
+
+        double t = Math.tan(ftphi);
+        double tan2 = t * t;
+        double tan4 = tan2 * tan2;
+        double tan6 = tan4 * tan2;
+        double eta = this.ebs * c * c;
+        double eta2 = eta * eta;
+        double eta3 = eta2 * eta;
+        double eta4 = eta3 * eta;
+        double de = easting - falseEasting;
+        if (Math.abs(de) < 0.0001)
+            de = 0.0;
+
+        double sn2 = sn * sn;
+        double sn3 = sn2 * sn;
+        double sn5 = sn3 * sn2;
+        double sn7 = sn5 * sn2;
+        double k2 = scale * scale;
+        double k3 = k2 * scale;
+        double k4 = k2 * k2;
+        double k5 = k4 * scale;
+        double k6 = k4 * k2;
+        double k7 = k6 * scale;
+        double k8 = k4 * k4;
+
+        double t10 = t / (2.e0 * sr * sn * k2);
+        double t11 = t * (5.e0 + 3.e0 * tan2 + eta - 4.e0 * eta2 - 9.e0 * tan2 * eta) / (24.e0 * sr * sn3 * k4);
+        double t12 = t * (61.e0 + 90.e0 * tan2 + 46.e0 * eta + 45.E0 * tan4 - 252.e0 * tan2 * eta - 3.e0 * eta2
+            + 100.e0 * eta3 - 66.e0 * tan2 * eta2 - 90.e0 * tan4 * eta + 88.e0 * eta4 + 225.e0 * tan4 * eta2
+            + 84.e0 * tan2 * eta3 - 192.e0 * tan2 * eta4) / (720.e0 * sr * sn5 * k6);
+        double t13 = t * (1385.e0 + 3633.e0 * tan2 + 4095.e0 * tan4 + 1575.e0 * tan6) / (40320.e0 * sr * sn7 * k8);
+
+        double d2 = de * de;
+        double lat = ftphi - d2 * (t10 - d2 * (t11 - d2 * (t12 - d2 * t13)));
+
+        double t14 = 1.e0 / (sn * c * scale);
+        double t15 = (1.e0 + 2.e0 * tan2 + eta) / (6.e0 * sn3 * c * k3);
+        double t16 = (5.e0 + 6.e0 * eta + 28.e0 * tan2 - 3.e0 * eta2 + 8.e0 * tan2 * eta + 24.e0 * tan4
+            - 4.e0 * eta3 + 4.e0 * tan2 * eta2 + 24.e0 * tan2 * eta3) / (120.e0 * sn5 * c * k5);
+        double t17 = (61.e0 + 662.e0 * tan2 + 1320.e0 * tan4 + 720.e0 * tan6) / (5040.e0 * sn7 * c * k7);
+
+        double dlam = de * (t14 - d2 * (t15 - d2 * (t16 - d2 * t17)));
+        double lon = centralMeridian + dlam;
+
+        if (Math.abs(lat) > PI / 2 || Double.isNaN(lat + lon))
+            return false;
+
+        if (lon > PI)
+        {
+            lon -= 2 * PI;
+            if (Math.abs(lon) > PI)
+                return false;
+        }
+
+        out[offset] = lat;
+        out[offset + 1] = lon;
+
+        return true;
+    }
+
+    // *** UPS ***
+
+    /**
+     * Converts geodetic coordinates to UPS coordinates. Points are accepted north of 72 degrees and south of -72
+     * degrees latitude.
+     *
+     * @param latLons       the latitude and longitude pairs to convert, in degrees.
+     * @param latLonsOffset the index of the first point in <code>latLons</code>.
+     * @param hemispheres   the array to receive the hemispheres, {@link #NORTH} or {@link #SOUTH}.
+     * @param eastNorths    the array to receive the easting and northing pairs.
+     * @param upsOffset     the index of the first point in <code>hemispheres</code> and <code>eastNorths</code>.
+     * @param count         the number of points to convert.
+     *
+     * @return the number of points converted.
+     *
+     * @throws IllegalArgumentException if any array is null, or if any array is too short for its offset and the
+     *                                  count.
+     */
+    public int toUPS(double[] latLons, int latLonsOffset, int[] hemispheres, double[] eastNorths, int upsOffset,
+        int count)
+    {
+        validate(latLons, 2, latLonsOffset, count);
+        validate(hemispheres, upsOffset, count);
+        validate(eastNorths, 2, upsOffset, count);
+
+        UPSCoordConverter converter = this.createUPSConverter();
+        int numConverted = 0;
+        for (int i = 0; i < count; i++)
+        {
+            int in = 2 * (latLonsOffset + i);
+            int out = upsOffset + i;
+            hemispheres[out] = projectUPS(converter, latLons[in] * DEG_TO_RAD, latLons[in + 1] * DEG_TO_RAD,
+                eastNorths, 2 * out);
+            if (hemispheres[out] != 0)
+                numConverted++;
+        }
+
+        return numConverted;
+    }
+
+    /**
+     * Converts UPS coordinates to geodetic coordinates.
+     *
+     * @param hemispheres   the hemispheres, {@link #NORTH} or {@link #SOUTH}.
+     * @param eastNorths    the easting and northing pairs, in meters.
+     * @param upsOffset     the index of the first point in <code>hemispheres</code> and <code>eastNorths</code>.
+     * @param latLons       the array to receive the latitude and longitude pairs, in degrees.
+     * @param latLonsOffset the index of the first point in <code>latLons</code>.
+     * @param count         the number of points to convert.
+     *
+     * @return the number of points converted.
+     *
+     * @throws IllegalArgumentException if any array is null, or if any array is too short for its offset and the
+     *                                  count.
+     */
+    public int fromUPS(int[] hemispheres, double[] eastNorths, int upsOffset, double[] latLons, int latLonsOffset,
+        int count)
+    {
+        validate(hemispheres, upsOffset, count);
+        validate(eastNorths, 2, upsOffset, count);
+        validate(latLons, 2, latLonsOffset, count);
+
+        UPSCoordConverter converter = this.createUPSConverter();
+        int numConverted = 0;
+        for (int i = 0; i < count; i++)
+        {
+            int in = upsOffset + i;
+            int out = 2 * (latLonsOffset + i);
+            int hemisphere = hemispheres[in];
+            long err = hemisphere == NORTH || hemisphere == SOUTH ? converter.convertUPSToGeodetic(
+                hemisphere == NORTH ? AVKey.NORTH : AVKey.SOUTH, eastNorths[2 * in], eastNorths[2 * in + 1])
+                : UPSCoordConverter.UPS_HEMISPHERE_ERROR;
+            if (err == UPSCoordConverter.UPS_NO_ERROR)
+            {
+                latLons[out] = converter.getLatitude() * RAD_TO_DEG;
+                latLons[out + 1] = converter.getLongitude() * RAD_TO_DEG;
+                numConverted++;
+            }
+            else
+            {
+                fail(latLons, out);
+            }
+        }
+
+        return numConverted;
+    }
+
+    /**
+     * Creates the converter used for UPS coordinates. The polar stereographic projection is done by the existing
+     * single-point converter, which isn't thread-safe, so each bulk conversion creates its own.
+     *
+     * @return a new UPS converter for this converter's ellipsoid.
+     */
+    protected UPSCoordConverter createUPSConverter()
+    {
+        return new UPSCoordConverter(this.globe);
+    }
+
+    protected static int projectUPS(UPSCoordConverter converter, double lat, double lon, double[] out, int offset)
+    {
+        if (Double.isNaN(lat + lon) || converter.convertGeodeticToUPS(lat, lon) != UPSCoordConverter.UPS_NO_ERROR)
+            return fail(out, offset);
+
+        out[offset] = converter.getEasting();
+        out[offset + 1] = converter.getNorthing();
+
+        return AVKey.NORTH.equals(converter.getHemisphere()) ? NORTH : SOUTH;
+    }
+
+    // *** MGRS ***
+
+    /**
+     * Converts geodetic coordinates to MGRS coordinate strings. Each point's string replaces the contents of its
+     * <code>StringBuilder</code>, and has the format of {@link MGRSCoord#toString()}.
+     *
+     * @param latLons       the latitude and longitude pairs to convert, in degrees.
+     * @param latLonsOffset the index of the first point in <code>latLons</code>.
+     * @param precision     the number of digits of the easting and northing, from 0 to 5.
+     * @param mgrs          the builders to receive the MGRS strings.
+     * @param mgrsOffset    the index of the first point's builder in <code>mgrs</code>.
+     * @param count         the number of points to convert.
+     *
+     * @return the number of points converted.
+     *
+     * @throws IllegalArgumentException if any array or builder is null, if any array is too short for its offset and
+     *                                  the count, or if the precision is out of range.
+     */
+    public int toMGRS(double[] latLons, int latLonsOffset, int precision, StringBuilder[] mgrs, int mgrsOffset,
+        int count)
+    {
+        validate(latLons, 2, latLonsOffset, count);
+        validate(mgrs, mgrsOffset, count);
+        validatePrecision(precision);
+
+        double[] en = new double[2];
+        UPSCoordConverter upsConverter = null;
+        int numConverted = 0;
+        for (int i = 0; i < count; i++)
+        {
+            int in = 2 * (latLonsOffset + i);
+            StringBuilder sb = mgrs[mgrsOffset + i];
+            if (sb == null)
+            {
+                String message = Logging.getMessage("nullValue.StringBuilderIsNull");
+                Logging.logger().severe(message);
+                throw new IllegalArgumentException(message);
+            }
+
+            sb.setLength(0);
+            double lat = latLons[in] * DEG_TO_RAD;
+            double lon = latLons[in + 1] * DEG_TO_RAD;
+            if (lat < -PI / 2 || lat > PI / 2 || lon < -PI || lon > 2 * PI || Double.isNaN(lat + lon))
+                continue;
+
+            boolean converted;
+            if (lat < MGRS_MIN_UTM_LAT || lat > MGRS_MAX_UTM_LAT)
+            {
+                if (upsConverter == null)
+                    upsConverter = this.createUPSConverter();
+                int hemisphere = projectUPS(upsConverter, lat, lon, en, 0);
+                converted = hemisphere != 0 && appendUPSMGRS(hemisphere, en[0], en[1], precision, sb);
+            }
+            else
+            {
+                int zone = this.projectUTM(lat, lon, en, 0);
+                converted = zone != 0 && appendUTMMGRS(Math.abs(zone), lat, en[0], en[1], precision, sb);
+            }
+
+            if (converted)
+                numConverted++;
+            else
+                sb.setLength(0);
+        }
+
+        return numConverted;
+    }
+
+    /**
+     * Appends the MGRS coordinate string of a location to a <code>StringBuilder</code>.
+     *
+     * @param latitude  the latitude, in degrees.
+     * @param longitude the longitude, in degrees.
+     * @param precision the number of digits of the easting and northing, from 0 to 5.
+     * @param sb        the builder to append to.
+     *
+     * @return true if the location was converted, otherwise false, in which case nothing is appended.
+     *
+     * @throws IllegalArgumentException if the builder is null or the precision is out of range.
+     */
+    public boolean appendMGRS(double latitude, double longitude, int precision, StringBuilder sb)
+    {
+        if (sb == null)
+        {
+            String message = Logging.getMessage("nullValue.StringBuilderIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        StringBuilder tmp = new StringBuilder(16);
+        if (this.toMGRS(new double[] {latitude, longitude}, 0, precision, new StringBuilder[] {tmp}, 0, 1) == 0)
+            return false;
+
+        sb.append(tmp);
+        return true;
+    }
+
+    /**
+     * Converts MGRS coordinate strings to geodetic coordinates. Strings are parsed as they are by {@link
+     * MGRSCoord#fromString(String, Globe)}.
+     *
+     * @param mgrs          the MGRS strings.
+     * @param mgrsOffset    the index of the first string in <code>mgrs</code>.
+     * @param latLons       the array to receive the latitude and longitude pairs, in degrees.
+     * @param latLonsOffset the index of the first point in <code>latLons</code>.
+     * @param count         the number of strings to convert.
+     *
+     * @return the number of strings converted.
+     *
+     * @throws IllegalArgumentException if any array is null, or if any array is too short for its offset and the
+     *                                  count.
+     */
+    public int fromMGRS(CharSequence[] mgrs, int mgrsOffset, double[] latLons, int latLonsOffset, int count)
+    {
+        validate(mgrs, mgrsOffset, count);
+        validate(latLons, 2, latLonsOffset, count);
+
+        // MGRS parsing is done by the existing single-point converter, which isn't thread-safe.
+        MGRSCoordConverter converter = new MGRSCoordConverter(this.globe);
+        int numConverted = 0;
+        for (int i = 0; i < count; i++)
+        {
+            CharSequence s = mgrs[mgrsOffset + i];
+            int out = 2 * (latLonsOffset + i);
+            if (s == null || s.length() == 0)
+            {
+                fail(latLons, out);
+                continue;
+            }
+
+            long err;
+            try
+            {
+                err = converter.convertMGRSToGeodetic(s.toString().toUpperCase().replaceAll(" ", ""));
+            }
+            catch (RuntimeException e) // malformed strings can fail with index exceptions
+            {
+                err = MGRSCoordConverter.MGRS_STRING_ERROR;
+            }
+
+            if (err == MGRSCoordConverter.MGRS_NO_ERROR)
+            {
+                latLons[out] = converter.getLatitude() * RAD_TO_DEG;
+                latLons[out + 1] = converter.getLongitude() * RAD_TO_DEG;
+                numConverted++;
+            }
+            else
+            {
+                fail(latLons, out);
+            }
+        }
+
+        return numConverted;
+    }
+
+    /**
+     * Appends the MGRS string of UTM coordinates, following MGRSCoordConverter's <code>convertUTMToMGRS</code> for
+     * the WGS84 lettering pattern.
+     *
+     * @param zone      the zone.
+     * @param lat       the latitude, in radians.
+     * @param easting   the easting, in meters.
+     * @param northing  the northing, in meters.
+     * @param precision the number of digits of the easting and northing.
+     * @param sb        the builder to append to.
+     *
+     * @return true if the string was appended, otherwise false.
+     */
+    protected static boolean appendUTMMGRS(int zone, double lat, double easting, double northing, int precision,
+        StringBuilder sb)
+    {
+        double divisor = POWERS_OF_TEN[5 - precision];
+        easting = roundMGRS(easting / divisor) * divisor;
+        northing = roundMGRS(northing / divisor) * divisor;
+
+        int setNumber = zone % 6 == 0 ? 6 : zone % 6;
+        int ltr2LowValue = (setNumber == 1 || setNumber == 4) ? LETTER_A
+            : (setNumber == 2 || setNumber == 5) ? LETTER_J : LETTER_S;
+        double falseNorthing = setNumber % 2 == 0 ? 500000.0 : 0.0;
+
+        int letter0;
+        double latDegrees = lat * RAD_TO_DEG;
+        if (latDegrees >= 72 && latDegrees < 84.5)
+            letter0 = LETTER_X;
+        else if (latDegrees > -80.5 && latDegrees < 72)
+            letter0 = ALPHABET.indexOf(LATITUDE_BANDS.charAt((int) (((lat + (80.0 * DEG_TO_RAD))
+                / (8.0 * DEG_TO_RAD)) + 1.0e-12)));
+        else
+            return false;
+
+        double gridNorthing = northing;
+        if (gridNorthing == 1.e7)
+            gridNorthing = gridNorthing - 1.0;
+        gridNorthing %= TWOMIL;
+        gridNorthing += falseNorthing;
+        if (gridNorthing >= TWOMIL)
+            gridNorthing -= TWOMIL;
+
+        int letter2 = (int) (gridNorthing / ONEHT);
+        if (letter2 > LETTER_H)
+            letter2++;
+        if (letter2 > LETTER_N)
+            letter2++;
+
+        double gridEasting = easting;
+        if (letter0 == LETTER_V && zone == 31 && gridEasting == 500000.0)
+            gridEasting = gridEasting - 1.0;
+
+        int letter1 = ltr2LowValue + ((int) (gridEasting / ONEHT) - 1);
+        if (ltr2LowValue == LETTER_J && letter1 > LETTER_N)
+            letter1++;
+
+        if (letter1 < 0 || letter1 > LETTER_Z || letter2 < 0 || letter2 > LETTER_Z)
+            return false;
+
+        sb.append((char) ('0' + zone / 10)).append((char) ('0' + zone % 10));
+        appendLettersAndDigits(letter0, letter1, letter2, easting, northing, precision, sb);
+
+        return true;
+    }
+
+    /**
+     * Appends the MGRS string of UPS coordinates, following MGRSCoordConverter's <code>convertUPSToMGRS</code>. As
+     * there, the zone of a polar MGRS string is two spaces.
+     *
+     * @param hemisphere the hemisphere, {@link #NORTH} or {@link #SOUTH}.
+     * @param easting    the easting, in meters.
+     * @param northing   the northing, in meters.
+     * @param precision  the number of digits of the easting and northing.
+     * @param sb         the builder to append to.
+     *
+     * @return true if the string was appended, otherwise false.
+     */
+    protected static boolean appendUPSMGRS(int hemisphere, double easting, double northing, int precision,
+        StringBuilder sb)
+    {
+        if (easting < 0 || easting > MAX_EAST_NORTH || northing < 0 || northing > MAX_EAST_NORTH)
+            return false;
+
+        double divisor = POWERS_OF_TEN[5 - precision];
+        easting = roundMGRS(easting / divisor) * divisor;
+        northing = roundMGRS(northing / divisor) * divisor;
+
+        int letter0;
+        int index;
+        if (hemisphere == NORTH)
+        {
+            letter0 = easting >= TWOMIL ? LETTER_Z : LETTER_Y;
+            index = letter0 - 22;
+        }
+        else
+        {
+            letter0 = easting >= TWOMIL ? LETTER_B : LETTER_A;
+            index = letter0;
+        }
+
+        int letter2 = (int) ((northing - UPS_FALSE_NORTHING[index]) / ONEHT);
+        if (letter2 > LETTER_H)
+            letter2++;
+        if (letter2 > LETTER_N)
+            letter2++;
+
+        int letter1 = UPS_LTR2_LOW[index] + (int) ((easting - UPS_FALSE_EASTING[index]) / ONEHT);
+        if (easting < TWOMIL)
+        {
+            if (letter1 > LETTER_L)
+                letter1 += 3;
+            if (letter1 > LETTER_U)
+                letter1 += 2;
+        }
+        else
+        {
+            if (letter1 > LETTER_C)
+                letter1 += 2;
+            if (letter1 > LETTER_H)
+                letter1 += 1;
+            if (letter1 > LETTER_L)
+                letter1 += 3;
+        }
+
+        if (letter1 < 0 || letter1 > LETTER_Z || letter2 < 0 || letter2 > LETTER_Z)
+            return false;
+
+        sb.append("  ");
+        appendLettersAndDigits(letter0, letter1, letter2, easting, northing, precision, sb);
+
+        return true;
+    }
+
+    protected static void appendLettersAndDigits(int letter0, int letter1, int letter2, double easting,
+        double northing, int precision, StringBuilder sb)
+    {
+        sb.append(ALPHABET.charAt(letter0)).append(ALPHABET.charAt(letter1)).append(ALPHABET.charAt(letter2));
+
+        if (precision == 0)
+            return;
+
+        double divisor = POWERS_OF_TEN[5 - precision];
+        easting %= 100000.0;
+        if (easting >= 99999.5)
+            easting = 99999.0;
+        northing %= 100000.0;
+        if (northing >= 99999.5)
+            northing = 99999.0;
+
+        sb.append(' ');
+        appendDigits((long) (easting / divisor), precision, sb);
+        sb.append(' ');
+        appendDigits((long) (northing / divisor), precision, sb);
+    }
+
+    /** Appends the low <code>numDigits</code> digits of a value, with leading zeros. */
+    protected static void appendDigits(long value, int numDigits, StringBuilder sb)
+    {
+        for (int i = numDigits - 1; i >= 0; i--)
+        {
+            sb.append((char) ('0' + (value / (long) POWERS_OF_TEN[i]) % 10));
+        }
+    }
+
+    /** Rounds to the nearest integer, rounding halves to even, as MGRSCoordConverter does. */
+    protected static double roundMGRS(double value)
+    {
+        double ivalue = Math.floor(value);
+        double fraction = value - ivalue;
+        long ival = (long) ivalue;
+        if ((fraction > 0.5) || ((fraction == 0.5) && (ival % 2 == 1)))
+            ival++;
+        return (double) ival;
+    }
+
+    // *** Argument validation ***
+
+    protected static void validate(double[] array, int stride, int offset, int count)
+    {
+        if (array == null)
+            throwNullArray();
+        else if (count < 0 || offset < 0 || array.length / stride - offset < count)
+            throwOutOfRange(count);
+    }
+
+    protected static void validate(int[] array, int offset, int count)
+    {
+        if (array == null)
+            throwNullArray();
+        else if (count < 0 || offset < 0 || array.length - offset < count)
+            throwOutOfRange(count);
+    }
+
+    protected static void validate(Object[] array, int offset, int count)
+    {
+        if (array == null)
+            throwNullArray();
+        else if (count < 0 || offset < 0 || array.length - offset < count)
+            throwOutOfRange(count);
+    }
+
+    protected static void validatePrecision(int precision)
+    {
+        if (precision < 0 || precision > MGRS_MAX_PRECISION)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "precision=" + precision);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    protected static void throwNullArray()
+    {
+        String message = Logging.getMessage("nullValue.ArrayIsNull");
+        Logging.logger().severe(message);
+        throw new IllegalArgumentException(message);
+    }
+
+    protected static void throwOutOfRange(int count)
+    {
+        String message = Logging.getMessage("generic.ArgumentOutOfRange", "count=" + count);
+        Logging.logger().severe(message);
+        throw new IllegalArgumentException(message);
+    }
+}
@@ -13,6 +13,7 @@ import gov.nasa.worldwind.terrain.*;
 import gov.nasa.worldwind.util.*;
 
 import java.io.IOException;
+import java.nio.*;
 import java.util.List;
 
 /**
@@ -28,6 +29,9 @@ import java.util.List;
  */
 public class EllipsoidalGlobe extends WWObjectImpl implements Globe
 {
+    /** The number of positions converted per block when reading from and writing to buffers. */
+    protected static final int BULK_CHUNK_SIZE = 256;
+
     protected final double equatorialRadius;
     protected final double polarRadius;
     protected final double es;
@@ -601,6 +605,226 @@ public class EllipsoidalGlobe extends WWObjectImpl implements Globe
         this.geodeticToCartesian(sector, numLat, numLon, metersElevation, out);
     }
 
+    /**
+     * Computes the Cartesian points corresponding to a sequence of geographic positions. This method performs the same
+     * computation as {@link #computePointFromPosition(Angle, Angle, double)} but reads and writes primitive arrays,
+     * and allocates nothing per position.
+     * <p/>
+     * Positions are read as consecutive triples of latitude and longitude in degrees followed by elevation in meters.
+     * Points are written as consecutive x, y, z triples. The input and output arrays may be the same array provided
+     * the offsets are equal.
+     *
+     * @param positions       The positions to convert.
+     * @param positionsOffset The index of the first position's latitude.
+     * @param points          The array to receive the Cartesian points.
+     * @param pointsOffset    The index at which to write the first point's x coordinate.
+     * @param count           The number of positions to convert.
+     *
+     * @throws IllegalArgumentException if either array is null, if <code>count</code> is negative, or if either array
+     *                                  is too short for the specified offset and count.
+     */
+    public void computePointsFromPositions(double[] positions, int positionsOffset, double[] points, int pointsOffset,
+        int count)
+    {
+        this.validateBulkArguments(positions, positionsOffset, points, pointsOffset, count);
+
+        this.geodeticToCartesian(positions, positionsOffset, points, pointsOffset, count);
+    }
+
+    /**
+     * Computes the Cartesian points corresponding to the geographic positions remaining in a buffer, optionally
+     * relative to a reference point. Positions are read from the current position of <code>positions</code> to its
+     * limit as consecutive latitude (degrees), longitude (degrees) and elevation (meters) triples. Points are written
+     * as consecutive x, y, z triples starting at the current position of <code>points</code>. The position of both
+     * buffers is advanced past the values read and written.
+     *
+     * @param positions      The positions to convert.
+     * @param referencePoint A point subtracted from each computed point. May be null, in which case the points are in
+     *                       model coordinates.
+     * @param points         The buffer to receive the Cartesian points.
+     *
+     * @throws IllegalArgumentException if either buffer is null, if the number of values remaining in
+     *                                  <code>positions</code> is not a multiple of three, or if <code>points</code>
+     *                                  has too few elements remaining to hold the points.
+     */
+    public void computePointsFromPositions(DoubleBuffer positions, Vec4 referencePoint, DoubleBuffer points)
+    {
+        this.validateBulkArguments(positions, points);
+
+        int count = positions.remaining() / 3;
+        double[] chunk = new double[3 * Math.min(count, BULK_CHUNK_SIZE)];
+
+        while (count > 0)
+        {
+            int n = Math.min(count, BULK_CHUNK_SIZE);
+            positions.get(chunk, 0, 3 * n);
+            this.geodeticToCartesian(chunk, 0, chunk, 0, n);
+
+            if (referencePoint != null)
+                this.translate(chunk, n, -referencePoint.x, -referencePoint.y, -referencePoint.z);
+
+            points.put(chunk, 0, 3 * n);
+            count -= n;
+        }
+    }
+
+    /**
+     * Computes the Cartesian points corresponding to the geographic positions remaining in a buffer, relative to a
+     * reference point, and writes them to a float buffer. This is typically used to fill vertex buffers whose
+     * coordinates are relative to a local origin, where single precision is sufficient. Buffers are read and written as
+     * described for {@link #computePointsFromPositions(java.nio.DoubleBuffer, Vec4, java.nio.DoubleBuffer)}.
+     *
+     * @param positions      The positions to convert.
+     * @param referencePoint A point subtracted from each computed point before it's converted to single precision. May
+     *                       be null, in which case the points are in model coordinates.
+     * @param points         The buffer to receive the Cartesian points.
+     *
+     * @throws IllegalArgumentException if either buffer is null, if the number of values remaining in
+     *                                  <code>positions</code> is not a multiple of three, or if <code>points</code>
+     *                                  has too few elements remaining to hold the points.
+     */
+    public void computePointsFromPositions(DoubleBuffer positions, Vec4 referencePoint, FloatBuffer points)
+    {
+        this.validateBulkArguments(positions, points);
+
+        double rx = referencePoint != null ? referencePoint.x : 0;
+        double ry = referencePoint != null ? referencePoint.y : 0;
+        double rz = referencePoint != null ? referencePoint.z : 0;
+
+        int count = positions.remaining() / 3;
+        double[] chunk = new double[3 * Math.min(count, BULK_CHUNK_SIZE)];
+
+        while (count > 0)
+        {
+            int n = Math.min(count, BULK_CHUNK_SIZE);
+            positions.get(chunk, 0, 3 * n);
+            this.geodeticToCartesian(chunk, 0, chunk, 0, n);
+
+            for (int i = 0; i < 3 * n; i += 3)
+            {
+                points.put((float) (chunk[i] - rx));
+                points.put((float) (chunk[i + 1] - ry));
+                points.put((float) (chunk[i + 2] - rz));
+            }
+
+            count -= n;
+        }
+    }
+
+    /**
+     * Computes the geographic positions corresponding to a sequence of Cartesian points. This method performs the same
+     * computation as {@link #computePositionFromPoint(Vec4)} but reads and writes primitive arrays, and allocates
+     * nothing per point.
+     * <p/>
+     * Points are read as consecutive x, y, z triples. Positions are written as consecutive triples of latitude and
+     * longitude in degrees followed by elevation in meters. The input and output arrays may be the same array provided
+     * the offsets are equal.
+     *
+     * @param points          The Cartesian points to convert.
+     * @param pointsOffset    The index of the first point's x coordinate.
+     * @param positions       The array to receive the geographic positions.
+     * @param positionsOffset The index at which to write the first position's latitude.
+     * @param count           The number of points to convert.
+     *
+     * @throws IllegalArgumentException if either array is null, if <code>count</code> is negative, or if either array
+     *                                  is too short for the specified offset and count.
+     */
+    public void computePositionsFromPoints(double[] points, int pointsOffset, double[] positions, int positionsOffset,
+        int count)
+    {
+        this.validateBulkArguments(points, pointsOffset, positions, positionsOffset, count);
+
+        this.cartesianToGeodetic(points, pointsOffset, positions, positionsOffset, count);
+    }
+
+    /**
+     * Computes the geographic positions corresponding to the Cartesian points remaining in a buffer. Points are read
+     * from the current position of <code>points</code> to its limit as consecutive x, y, z triples, and are relative to
+     * <code>referencePoint</code> if it is non-null. Positions are written as consecutive latitude (degrees), longitude
+     * (degrees) and elevation (meters) triples starting at the current position of <code>positions</code>. The position
+     * of both buffers is advanced past the values read and written.
+     *
+     * @param points         The Cartesian points to convert.
+     * @param referencePoint A point added to each input point before it's converted. May be null.
+     * @param positions      The buffer to receive the geographic positions.
+     *
+     * @throws IllegalArgumentException if either buffer is null, if the number of values remaining in
+     *                                  <code>points</code> is not a multiple of three, or if <code>positions</code>
+     *                                  has too few elements remaining to hold the positions.
+     */
+    public void computePositionsFromPoints(DoubleBuffer points, Vec4 referencePoint, DoubleBuffer positions)
+    {
+        this.validateBulkArguments(points, positions);
+
+        int count = points.remaining() / 3;
+        double[] chunk = new double[3 * Math.min(count, BULK_CHUNK_SIZE)];
+
+        while (count > 0)
+        {
+            int n = Math.min(count, BULK_CHUNK_SIZE);
+            points.get(chunk, 0, 3 * n);
+
+            if (referencePoint != null)
+                this.translate(chunk, n, referencePoint.x, referencePoint.y, referencePoint.z);
+
+            this.cartesianToGeodetic(chunk, 0, chunk, 0, n);
+            positions.put(chunk, 0, 3 * n);
+            count -= n;
+        }
+    }
+
+    protected void validateBulkArguments(double[] in, int inOffset, double[] out, int outOffset, int count)
+    {
+        if (in == null || out == null)
+        {
+            String message = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (count < 0 || inOffset < 0 || outOffset < 0 || in.length - inOffset < 3 * count
+            || out.length - outOffset < 3 * count)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "count=" + count);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    protected void validateBulkArguments(DoubleBuffer in, Buffer out)
+    {
+        if (in == null || out == null)
+        {
+            String message = Logging.getMessage("nullValue.BufferIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (in.remaining() % 3 != 0)
+        {
+            String message = Logging.getMessage("generic.BufferSize", in.remaining());
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (out.remaining() < in.remaining())
+        {
+            String message = Logging.getMessage("generic.BufferSize", out.remaining());
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    protected void translate(double[] coords, int count, double dx, double dy, double dz)
+    {
+        for (int i = 0; i < 3 * count; i += 3)
+        {
+            coords[i] += dx;
+            coords[i + 1] += dy;
+            coords[i + 2] += dz;
+        }
+    }
+
     /**
      * Returns the normal to the Globe at the specified position.
      *
@@ -972,6 +1196,59 @@ public class EllipsoidalGlobe extends WWObjectImpl implements Globe
         }
     }
 
+    /**
+     * Maps a sequence of geographic positions to Cartesian coordinates. Positions are read as consecutive latitude
+     * (degrees), longitude (degrees) and elevation (meters) triples, and points are written as consecutive x, y, z
+     * triples. The input and output may be the same array provided the offsets are equal.
+     *
+     * @param positions       the positions to convert.
+     * @param positionsOffset the index of the first position's latitude.
+     * @param out             the array to receive the Cartesian points.
+     * @param outOffset       the index at which to write the first point's x coordinate.
+     * @param count           the number of positions to convert.
+     *
+     * @see #geodeticToCartesian(gov.nasa.worldwind.geom.Angle, gov.nasa.worldwind.geom.Angle, double)
+     */
+    protected void geodeticToCartesian(double[] positions, int positionsOffset, double[] out, int outOffset,
+        int count)
+    {
+        this.geodeticToEllipsoidal(positions, positionsOffset, out, outOffset, count);
+    }
+
+    /**
+     * Maps a sequence of geographic positions to ellipsoidal coordinates. Positions are read as consecutive latitude
+     * (degrees), longitude (degrees) and elevation (meters) triples, and points are written as consecutive x, y, z
+     * triples. The input and output may be the same array provided the offsets are equal.
+     *
+     * @param positions       the positions to convert.
+     * @param positionsOffset the index of the first position's latitude.
+     * @param out             the array to receive the ellipsoidal points.
+     * @param outOffset       the index at which to write the first point's x coordinate.
+     * @param count           the number of positions to convert.
+     *
+     * @see #geodeticToEllipsoidal(gov.nasa.worldwind.geom.Angle, gov.nasa.worldwind.geom.Angle, double)
+     */
+    protected void geodeticToEllipsoidal(double[] positions, int positionsOffset, double[] out, int outOffset,
+        int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            int ip = positionsOffset + 3 * i;
+            double latRadians = Math.toRadians(positions[ip]);
+            double lonRadians = Math.toRadians(positions[ip + 1]);
+            double metersElevation = positions[ip + 2];
+
+            double cosLat = Math.cos(latRadians);
+            double sinLat = Math.sin(latRadians);
+            double rpm = this.equatorialRadius / Math.sqrt(1.0 - this.es * sinLat * sinLat);
+
+            int io = outOffset + 3 * i;
+            out[io] = (rpm + metersElevation) * cosLat * Math.sin(lonRadians);
+            out[io + 1] = (rpm * (1.0 - this.es) + metersElevation) * sinLat;
+            out[io + 2] = (rpm + metersElevation) * cosLat * Math.cos(lonRadians);
+        }
+    }
+
 //    protected Position cartesianToGeodeticOriginal(Vec4 cart)
 //    {
 //        if (cart == null)
@@ -1028,6 +1305,49 @@ public class EllipsoidalGlobe extends WWObjectImpl implements Globe
         return this.ellipsoidalToGeodetic(cart);
     }
 
+    /**
+     * Computes the geographic positions corresponding to a sequence of Cartesian points. Points are read as consecutive
+     * x, y, z triples, and positions are written as consecutive latitude (degrees), longitude (degrees) and elevation
+     * (meters) triples. The input and output may be the same array provided the offsets are equal.
+     *
+     * @param points          the Cartesian points to convert.
+     * @param pointsOffset    the index of the first point's x coordinate.
+     * @param out             the array to receive the geographic positions.
+     * @param outOffset       the index at which to write the first position's latitude.
+     * @param count           the number of points to convert.
+     *
+     * @see #cartesianToGeodetic(gov.nasa.worldwind.geom.Vec4)
+     */
+    protected void cartesianToGeodetic(double[] points, int pointsOffset, double[] out, int outOffset, int count)
+    {
+        this.ellipsoidalToGeodetic(points, pointsOffset, out, outOffset, count);
+    }
+
+    /**
+     * Computes the geographic positions corresponding to a sequence of ellipsoidal points. Points are read as
+     * consecutive x, y, z triples, and positions are written as consecutive latitude (degrees), longitude (degrees) and
+     * elevation (meters) triples. The input and output may be the same array provided the offsets are equal.
+     *
+     * @param points          the ellipsoidal points to convert.
+     * @param pointsOffset    the index of the first point's x coordinate.
+     * @param out             the array to receive the geographic positions.
+     * @param outOffset       the index at which to write the first position's latitude.
+     * @param count           the number of points to convert.
+     *
+     * @see #ellipsoidalToGeodetic(gov.nasa.worldwind.geom.Vec4)
+     */
+    protected void ellipsoidalToGeodetic(double[] points, int pointsOffset, double[] out, int outOffset, int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            int ip = pointsOffset + 3 * i;
+            int io = outOffset + 3 * i;
+            this.ellipsoidalToGeodetic(points[ip], points[ip + 1], points[ip + 2], out, io);
+            out[io] = Math.toDegrees(out[io]);
+            out[io + 1] = Math.toDegrees(out[io + 1]);
+        }
+    }
+
     /**
      * Compute the geographic position to corresponds to an ellipsoidal point.
      *
@@ -1049,14 +1369,33 @@ public class EllipsoidalGlobe extends WWObjectImpl implements Globe
             throw new IllegalArgumentException(message);
         }
 
+        double[] result = new double[3];
+        this.ellipsoidalToGeodetic(cart.x, cart.y, cart.z, result, 0);
+
+        return Position.fromRadians(result[0], result[1], result[2]);
+    }
+
+    /**
+     * Computes the geodetic latitude and longitude in radians and the elevation in meters corresponding to an
+     * ellipsoidal point.
+     *
+     * @param x      the ellipsoidal point's x coordinate.
+     * @param y      the ellipsoidal point's y coordinate.
+     * @param z      the ellipsoidal point's z coordinate.
+     * @param out    the array to receive the latitude, longitude and elevation.
+     * @param offset the index at which to write the latitude.
+     */
+    @SuppressWarnings({"SuspiciousNameCombination"})
+    protected void ellipsoidalToGeodetic(double x, double y, double z, double[] out, int offset)
+    {
         // According to
         // H. Vermeille,
         // "An analytical method to transform geocentric into geodetic coordinates"
         // http://www.springerlink.com/content/3t6837t27t351227/fulltext.pdf
         // Journal of Geodesy, accepted 10/2010, not yet published
-        double X = cart.z;
-        double Y = cart.x;
-        double Z = cart.y;
+        double X = z;
+        double Y = x;
+        double Z = y;
         double XXpYY = X * X + Y * Y;
         double sqrtXXpYY = Math.sqrt(XXpYY);
 
@@ -1147,7 +1486,9 @@ public class EllipsoidalGlobe extends WWObjectImpl implements Globe
             lambda = Math.PI * 0.5 - 2 * Math.atan2(X, sqrtXXpYY + Y);
         }
 
-        return Position.fromRadians(phi, lambda, h);
+        out[offset] = phi;
+        out[offset + 1] = lambda;
+        out[offset + 2] = h;
     }
 //
 //    /**
@@ -402,6 +402,32 @@ public class FlatGlobe extends EllipsoidalGlobe implements Globe2D
         this.projection.geographicToCartesian(this, sector, numLat, numLon, metersElevation, this.offsetVector, out);
     }
 
+    @Override
+    protected void geodeticToCartesian(double[] positions, int positionsOffset, double[] out, int outOffset,
+        int count)
+    {
+        if (this.projection instanceof AbstractGeographicProjection)
+        {
+            ((AbstractGeographicProjection) this.projection).geographicToCartesian(this, positions, positionsOffset,
+                out, outOffset, count, this.offsetVector);
+            return;
+        }
+
+        // Projections outside the AbstractGeographicProjection hierarchy don't provide a bulk conversion, so convert
+        // each position individually.
+        for (int i = 0; i < count; i++)
+        {
+            int ip = positionsOffset + 3 * i;
+            Vec4 p = this.projection.geographicToCartesian(this, Angle.fromDegrees(positions[ip]),
+                Angle.fromDegrees(positions[ip + 1]), positions[ip + 2], this.offsetVector);
+
+            int io = outOffset + 3 * i;
+            out[io] = p.x;
+            out[io + 1] = p.y;
+            out[io + 2] = p.z;
+        }
+    }
+
     @Override
     protected Position cartesianToGeodetic(Vec4 cart)
     {
@@ -427,6 +453,42 @@ public class FlatGlobe extends EllipsoidalGlobe implements Globe2D
         return pos;
     }
 
+    @Override
+    protected void cartesianToGeodetic(double[] points, int pointsOffset, double[] out, int outOffset, int count)
+    {
+        if (this.projection instanceof AbstractGeographicProjection)
+        {
+            ((AbstractGeographicProjection) this.projection).cartesianToGeographic(this, points, pointsOffset, out,
+                outOffset, count, this.offsetVector);
+        }
+        else
+        {
+            for (int i = 0; i < count; i++)
+            {
+                int ip = pointsOffset + 3 * i;
+                Position pos = this.projection.cartesianToGeographic(this,
+                    new Vec4(points[ip], points[ip + 1], points[ip + 2]), this.offsetVector);
+
+                int io = outOffset + 3 * i;
+                out[io] = pos.getLatitude().degrees;
+                out[io + 1] = pos.getLongitude().degrees;
+                out[io + 2] = pos.getElevation();
+            }
+        }
+
+        if (this.isContinuous())
+        {
+            // Wrap if the globe is continuous.
+            for (int i = outOffset + 1; i < outOffset + 3 * count; i += 3)
+            {
+                if (out[i] < -180)
+                    out[i] += 360;
+                else if (out[i] > 180)
+                    out[i] -= 360;
+            }
+        }
+    }
+
 //
 //    /**
 //     * Returns a cylinder that minimally surrounds the specified minimum and maximum elevations in the sector at a
@@ -5,8 +5,8 @@
  */
 package gov.nasa.worldwind.globes.projections;
 
-import gov.nasa.worldwind.geom.Sector;
-import gov.nasa.worldwind.globes.GeographicProjection;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.*;
 import gov.nasa.worldwind.util.Logging;
 
 /**
@@ -55,4 +55,83 @@ public abstract class AbstractGeographicProjection implements GeographicProjecti
         this.projectionLimits = projectionLimits;
     }
 
+    /**
+     * Converts a sequence of geographic positions to points in Cartesian coordinates, without allocating an
+     * intermediate object for each position.
+     * <p/>
+     * Positions are read as consecutive triples of latitude and longitude in degrees followed by elevation in meters.
+     * Points are written as consecutive x, y, z triples. The input and output arrays may be the same array provided
+     * the offsets are equal.
+     * <p/>
+     * This implementation converts each position with {@link #geographicToCartesian(gov.nasa.worldwind.globes.Globe,
+     * gov.nasa.worldwind.geom.Angle, gov.nasa.worldwind.geom.Angle, double, gov.nasa.worldwind.geom.Vec4)}.
+     * Subclasses should override it to avoid the per-position allocations.
+     *
+     * @param globe           The globe this projection is applied to.
+     * @param positions       The positions to convert.
+     * @param positionsOffset The index of the first position's latitude.
+     * @param points          The array to receive the Cartesian points.
+     * @param pointsOffset    The index at which to write the first point's x coordinate.
+     * @param count           The number of positions to convert.
+     * @param offset          An optional offset to be applied to the Cartesian output. Typically only projections that
+     *                        are continuous (see {@link #isContinuous()}) apply this offset. Others ignore it. May be
+     *                        null.
+     *
+     * @see #cartesianToGeographic(Globe, double[], int, double[], int, int, gov.nasa.worldwind.geom.Vec4)
+     */
+    public void geographicToCartesian(Globe globe, double[] positions, int positionsOffset, double[] points,
+        int pointsOffset, int count, Vec4 offset)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            int ip = positionsOffset + 3 * i;
+            Vec4 p = this.geographicToCartesian(globe, Angle.fromDegrees(positions[ip]),
+                Angle.fromDegrees(positions[ip + 1]), positions[ip + 2], offset);
+
+            int io = pointsOffset + 3 * i;
+            points[io] = p.x;
+            points[io + 1] = p.y;
+            points[io + 2] = p.z;
+        }
+    }
+
+    /**
+     * Converts a sequence of Cartesian points in meters to geographic positions, without allocating an intermediate
+     * object for each point.
+     * <p/>
+     * Points are read as consecutive x, y, z triples. Positions are written as consecutive triples of latitude and
+     * longitude in degrees followed by elevation in meters. The input and output arrays may be the same array provided
+     * the offsets are equal.
+     * <p/>
+     * This implementation converts each point with {@link #cartesianToGeographic(gov.nasa.worldwind.globes.Globe,
+     * gov.nasa.worldwind.geom.Vec4, gov.nasa.worldwind.geom.Vec4)}. Subclasses should override it to avoid the
+     * per-point allocations.
+     *
+     * @param globe           The globe this projection is applied to.
+     * @param points          The Cartesian points to convert.
+     * @param pointsOffset    The index of the first point's x coordinate.
+     * @param positions       The array to receive the geographic positions.
+     * @param positionsOffset The index at which to write the first position's latitude.
+     * @param count           The number of points to convert.
+     * @param offset          An optional offset to be applied to the Cartesian input prior to converting it. Typically
+     *                        only projections that are continuous (see {@link #isContinuous()}) apply this offset.
+     *                        Others ignore it. May be null.
+     *
+     * @see #geographicToCartesian(Globe, double[], int, double[], int, int, gov.nasa.worldwind.geom.Vec4)
+     */
+    public void cartesianToGeographic(Globe globe, double[] points, int pointsOffset, double[] positions,
+        int positionsOffset, int count, Vec4 offset)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            int ip = pointsOffset + 3 * i;
+            Position pos = this.cartesianToGeographic(globe, new Vec4(points[ip], points[ip + 1], points[ip + 2]),
+                offset);
+
+            int io = positionsOffset + 3 * i;
+            positions[io] = pos.getLatitude().degrees;
+            positions[io + 1] = pos.getLongitude().degrees;
+            positions[io + 2] = pos.getElevation();
+        }
+    }
 }
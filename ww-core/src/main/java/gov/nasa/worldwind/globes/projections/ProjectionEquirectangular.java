@@ -78,6 +78,27 @@ public class ProjectionEquirectangular extends AbstractGeographicProjection
         }
     }
 
+    @Override
+    public void geographicToCartesian(Globe globe, double[] positions, int positionsOffset, double[] points,
+        int pointsOffset, int count, Vec4 offset)
+    {
+        double eqr = globe.getEquatorialRadius();
+        double offset_x = offset != null ? offset.x : 0;
+
+        for (int i = 0; i < count; i++)
+        {
+            int ip = positionsOffset + 3 * i;
+            double lat = positions[ip];
+            double lon = positions[ip + 1];
+            double elev = positions[ip + 2];
+
+            int io = pointsOffset + 3 * i;
+            points[io] = eqr * Math.toRadians(lon) + offset_x;
+            points[io + 1] = eqr * Math.toRadians(lat);
+            points[io + 2] = elev;
+        }
+    }
+
     @Override
     public Position cartesianToGeographic(Globe globe, Vec4 cart, Vec4 offset)
     {
@@ -85,6 +106,27 @@ public class ProjectionEquirectangular extends AbstractGeographicProjection
             (cart.x - offset.x) / globe.getEquatorialRadius(), cart.z);
     }
 
+    @Override
+    public void cartesianToGeographic(Globe globe, double[] points, int pointsOffset, double[] positions,
+        int positionsOffset, int count, Vec4 offset)
+    {
+        double eqr = globe.getEquatorialRadius();
+        double offset_x = offset != null ? offset.x : 0;
+
+        for (int i = 0; i < count; i++)
+        {
+            int ip = pointsOffset + 3 * i;
+            double x = points[ip];
+            double y = points[ip + 1];
+            double z = points[ip + 2];
+
+            int io = positionsOffset + 3 * i;
+            positions[io] = Math.toDegrees(y / eqr);
+            positions[io + 1] = Math.toDegrees((x - offset_x) / eqr);
+            positions[io + 2] = z;
+        }
+    }
+
     @Override
     public Vec4 northPointingTangent(Globe globe, Angle latitude, Angle longitude)
     {
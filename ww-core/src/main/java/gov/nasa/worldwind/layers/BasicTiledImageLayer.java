@@ -24,15 +24,22 @@ import java.awt.*;
 import java.io.*;
 import java.net.URL;
 import java.nio.ByteBuffer;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author tag
  * @version $Id$
  */
-public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetrievable
+public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetrievable, Prefetchable
 {
     protected final Object fileLock = new Object();
+    protected TextureTileLoader textureLoader;
+    /** The retriever names of this layer's pending network requests, by tile. */
+    protected final ConcurrentHashMap<TextureTile, String> pendingRetrievals =
+        new ConcurrentHashMap<TextureTile, String>();
+    /** The tiles requested during the current frame. Accessed only by the rendering thread. */
+    protected final HashSet<TextureTile> requestedTiles = new HashSet<TextureTile>();
 
     // Layer resource properties.
     protected static final int RESOURCE_ID_OGC_CAPABILITIES = 1;
@@ -215,15 +222,91 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
 
     protected void requestTexture(DrawContext dc, TextureTile tile)
     {
+        this.requestedTiles.add(tile);
+
+        // Tiles already being loaded from the file store need only be marked as still wanted.
+        if (this.getTextureLoader().touchTile(tile))
+            return;
+
         Vec4 centroid = tile.getCentroidPoint(dc.getGlobe());
         Vec4 referencePoint = this.getReferencePoint(dc);
         if (referencePoint != null)
-            tile.setPriority(centroid.distanceTo3(referencePoint));
+        {
+            // The tile's priority orders its requests in the retrieval services shared with other layers, so it must
+            // remain a distance comparable to theirs.
+            double distance = centroid.distanceTo3(referencePoint);
+            tile.setPriority(distance);
+
+            // A tile's screen-space error is proportional to its texel size divided by its distance from the eye.
+            // The texture loader loads tiles with lower load priorities, and therefore greater error, first.
+            tile.setLoadPriority(distance / tile.getLevel().getTexelSize());
+        }
 
         RequestTask task = this.createRequestTask(tile);
         this.getRequestQ().add(task);
     }
 
+    /**
+     * Returns the loader that reads and decodes this layer's textures from the local file store.
+     *
+     * @return the texture loader. The loader shared by all layers is returned if none has been specified.
+     */
+    public TextureTileLoader getTextureLoader()
+    {
+        return this.textureLoader != null ? this.textureLoader : TextureTileLoader.getInstance();
+    }
+
+    /**
+     * Specifies the loader that reads and decodes this layer's textures from the local file store.
+     *
+     * @param textureLoader the texture loader. May be null to use the loader shared by all layers.
+     */
+    public void setTextureLoader(TextureTileLoader textureLoader)
+    {
+        this.textureLoader = textureLoader;
+    }
+
+    @Override
+    protected void draw(DrawContext dc)
+    {
+        // Take the textures decoded since the last frame, within this frame's upload budget, before selecting the
+        // tiles to draw.
+        this.getTextureLoader().releaseUploads(dc, this);
+
+        super.draw(dc);
+
+        this.demoteUnrequestedRetrievals();
+    }
+
+    /**
+     * Makes the pending network requests for tiles not requested this frame, typically tiles that have left the view,
+     * the least urgent requests of the retrieval service, so that they run only after the requests of visible tiles. A
+     * demoted request regains its priority if its tile is requested again before it runs. Requests are demoted only
+     * when the retrieval service is a {@link PriorityRetrievalService}.
+     */
+    protected void demoteUnrequestedRetrievals()
+    {
+        RetrievalService service = WorldWind.getRetrievalService();
+        if (service instanceof PriorityRetrievalService)
+        {
+            for (Map.Entry<TextureTile, String> entry : this.pendingRetrievals.entrySet())
+            {
+                if (this.requestedTiles.contains(entry.getKey()))
+                    continue;
+
+                // A tile requested again is tracked again once its request is re-submitted.
+                ((PriorityRetrievalService) service).setPriority(entry.getValue(), RetrievalService.PREFETCH_PRIORITY);
+                this.pendingRetrievals.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        else
+        {
+            this.pendingRetrievals.clear();
+        }
+
+        this.requestedTiles.clear();
+    }
+
     protected RequestTask createRequestTask(TextureTile tile)
     {
         return new RequestTask(tile, this);
@@ -248,19 +331,10 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
             final java.net.URL textureURL = this.layer.getDataFileStore().findFile(tile.getPath(), false);
             if (textureURL != null && !this.layer.isTextureFileExpired(tile, textureURL, this.layer.getDataFileStore()))
             {
-                if (this.layer.loadTexture(tile, textureURL))
-                {
-                    layer.getLevels().unmarkResourceAbsent(this.tile);
-                    this.layer.firePropertyChange(AVKey.LAYER, null, this);
-                    return;
-                }
-                else
-                {
-                    // Assume that something is wrong with the file and delete it.
-                    this.layer.getDataFileStore().removeFile(textureURL);
-                    String message = Logging.getMessage("generic.DeletedCorruptDataFile", textureURL);
-                    Logging.logger().info(message);
-                }
+                // Read and decode the texture on the texture loader's threads. If the loader is full the tile is
+                // requested again in a later frame.
+                this.layer.getTextureLoader().addTile(this.layer, this.tile, textureURL);
+                return;
             }
 
             this.layer.retrieveTexture(this.tile, this.layer.createDownloadPostProcessor(this.tile));
@@ -389,6 +463,95 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
         }
     }
 
+    /**
+     * Reads a texture file into memory. Called by the texture loader's read threads.
+     *
+     * @param url the URL of the texture file.
+     *
+     * @return the contents of the file.
+     *
+     * @throws IOException if the file can't be read.
+     */
+    protected ByteBuffer readTextureBuffer(java.net.URL url) throws IOException
+    {
+        synchronized (this.fileLock)
+        {
+            return WWIO.readURLContentToBuffer(url);
+        }
+    }
+
+    /**
+     * Decodes the contents of a texture file read by {@link #readTextureBuffer(java.net.URL)}. Called by the texture
+     * loader's decode threads. The texture format and mip-maps are handled as described for {@link
+     * #readTexture(java.net.URL, String, boolean)}.
+     *
+     * @param url           the URL the texture file was read from.
+     * @param buffer        the contents of the texture file.
+     * @param textureFormat the texture data format to return.
+     * @param useMipMaps    true to generate mip-maps for the texture data or use mip maps already in the texture data,
+     *                      and false to decode the texture data without generating or using mip-maps.
+     *
+     * @return the texture data, or null if the file can't be decoded.
+     */
+    protected TextureData decodeTexture(java.net.URL url, ByteBuffer buffer, String textureFormat, boolean useMipMaps)
+    {
+        try
+        {
+            if ("image/dds".equalsIgnoreCase(textureFormat) && !url.toString().toLowerCase().endsWith("dds"))
+            {
+                DXTCompressionAttributes attributes = DDSCompressor.getDefaultCompressionAttributes();
+                attributes.setBuildMipmaps(useMipMaps);
+                buffer = DDSCompressor.compressImageBuffer(buffer, attributes);
+            }
+
+            return OGLUtil.newTextureData(Configuration.getMaxCompatibleGLProfile(),
+                WWIO.getInputStreamFromByteBuffer(buffer), useMipMaps);
+        }
+        catch (Exception e)
+        {
+            String msg = Logging.getMessage("layers.TextureLayer.ExceptionAttemptingToReadTextureFile", url);
+            Logging.logger().log(java.util.logging.Level.SEVERE, msg, e);
+            return null;
+        }
+    }
+
+    /**
+     * Assigns texture data decoded by the texture loader to its tile and creates the tile's texture. Called on the
+     * rendering thread, within the frame's upload budget.
+     *
+     * @param dc          the current draw context.
+     * @param tile        the tile.
+     * @param textureData the tile's texture data.
+     */
+    protected void applyTextureData(DrawContext dc, TextureTile tile, TextureData textureData)
+    {
+        tile.setTextureData(textureData);
+        if (tile.getLevelNumber() != 0 || !this.isRetainLevelZeroTiles())
+            this.addTileToCache(tile);
+
+        this.getLevels().unmarkResourceAbsent(tile);
+
+        // Upload the texture now rather than when the tile is first bound, so that the upload is counted against the
+        // frame's budget.
+        tile.initializeTexture(dc);
+    }
+
+    /**
+     * Called by the texture loader when a tile's file can't be read or decoded. The file is assumed to be corrupt; it's
+     * deleted and the tile is retrieved again.
+     *
+     * @param tile the tile.
+     * @param url  the URL of the tile's file.
+     */
+    protected void handleTextureLoadFailure(TextureTile tile, java.net.URL url)
+    {
+        this.getDataFileStore().removeFile(url);
+        String message = Logging.getMessage("generic.DeletedCorruptDataFile", url);
+        Logging.logger().info(message);
+
+        this.retrieveTexture(tile, this.createDownloadPostProcessor(tile));
+    }
+
     protected void addTileToCache(TextureTile tile)
     {
         TextureTile.getMemoryCache().add(tile.getTileKey(), tile);
@@ -505,6 +668,70 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
         return downloader.getEstimatedMissingDataSize();
     }
 
+    // *** Prefetch ***
+    // *** Prefetch ***
+    // *** Prefetch ***
+
+    /**
+     * Requests the imagery tiles covering a sector at the level closest to a resolution that are not in the file store.
+     * Tiles are retrieved at {@link RetrievalService#PREFETCH_PRIORITY}, so they neither delay nor change pending
+     * requests for visible tiles, and each is charged to the budget's retrieval bytes at the layer's average tile size.
+     * Tiles in the file store are not loaded, since textures are created only for visible tiles.
+     *
+     * @param sector     the sector to request imagery for.
+     * @param resolution the target resolution, provided in radians of latitude per texel.
+     * @param budget     the budget to charge the requests to.
+     *
+     * @throws IllegalArgumentException if the sector or budget is null.
+     */
+    public void prefetch(Sector sector, double resolution, PrefetchBudget budget)
+    {
+        if (sector == null)
+        {
+            String msg = Logging.getMessage("nullValue.SectorIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (budget == null)
+        {
+            String msg = Logging.getMessage("nullValue.BudgetIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        Sector targetSector = this.getLevels().getSector().intersection(sector);
+        if (targetSector == null)
+            return;
+
+        Long tileSize = (Long) this.getValue(AVKey.AVERAGE_TILE_SIZE);
+        if (tileSize == null)
+            tileSize = BasicTiledImageLayerBulkDownloader.DEFAULT_AVERAGE_FILE_SIZE;
+
+        int levelNumber = this.computeLevelForResolution(targetSector, resolution);
+        for (TextureTile[] row : this.getTilesInSector(targetSector, levelNumber))
+        {
+            for (TextureTile tile : row)
+            {
+                if (tile == null || this.getLevels().isResourceAbsent(tile))
+                    continue;
+
+                if (TextureTile.getMemoryCache().getObject(tile.getTileKey()) != null)
+                    continue;
+
+                java.net.URL url = this.getDataFileStore().findFile(tile.getPath(), false);
+                if (url != null && !this.isTextureFileExpired(tile, url, this.getDataFileStore()))
+                    continue;
+
+                if (!WorldWind.getRetrievalService().isAvailable() || !budget.consumeRetrievalBytes(tileSize))
+                    return;
+
+                tile.setPriority(RetrievalService.PREFETCH_PRIORITY);
+                this.retrieveTexture(tile, this.createDownloadPostProcessor(tile));
+            }
+        }
+    }
+
     // *** Tile download ***
     // *** Tile download ***
     // *** Tile download ***
@@ -593,7 +820,9 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
         if (srl != null && srl > 0)
             retriever.setStaleRequestLimit(srl);
 
-        WorldWind.getRetrievalService().runRetriever(retriever, tile.getPriority());
+        RetrievalFuture future = WorldWind.getRetrievalService().runRetriever(retriever, tile.getPriority());
+        if (future != null && tile.getPriority() != RetrievalService.PREFETCH_PRIORITY)
+            this.pendingRetrievals.put(tile, retriever.getName());
     }
 
     protected DownloadPostProcessor createDownloadPostProcessor(TextureTile tile)
@@ -12,12 +12,15 @@ import gov.nasa.worldwind.render.*;
 import gov.nasa.worldwind.util.*;
 
 import javax.media.opengl.*;
-import java.util.Collection;
+import java.util.*;
 
 /**
  * Holds a collection of Renderables and manages local caching of them. Provides searching for Renderables by sector,
  * location or name.
  * <p/>
+ * The Renderables are held in a {@link ConcurrentQuadTree}, so Renderables may be added and removed on other threads
+ * without blocking rendering or picking.
+ * <p/>
  * NOTE: This class is experimental and not fully implemented. You should not use it now.
  *
  * @author tag
@@ -27,7 +30,8 @@ public class CachedRenderableLayer extends AbstractLayer
 {
     protected static final int DEFAULT_DEPTH = 4;
 
-    protected BasicQuadTree<Renderable> extentTree; // this is used until we work out the caching and retrieval scheme
+    // this is used until we work out the caching and retrieval scheme
+    protected ConcurrentQuadTree<Renderable> extentTree;
     protected PickSupport pickSupport = new PickSupport();
 
     /**
@@ -40,7 +44,7 @@ public class CachedRenderableLayer extends AbstractLayer
     public CachedRenderableLayer(Sector coverage)
     {
         // Extent tree checks args
-        this.extentTree = new BasicQuadTree<Renderable>(DEFAULT_DEPTH, coverage, null);
+        this.extentTree = new ConcurrentQuadTree<Renderable>(DEFAULT_DEPTH, coverage);
     }
 
     /**
@@ -54,7 +58,7 @@ public class CachedRenderableLayer extends AbstractLayer
     public CachedRenderableLayer(Sector coverage, int numLevels)
     {
         // Extent tree checks args
-        this.extentTree = new BasicQuadTree<Renderable>(numLevels, coverage, null);
+        this.extentTree = new ConcurrentQuadTree<Renderable>(numLevels, coverage);
     }
 
     /**
@@ -102,6 +106,42 @@ public class CachedRenderableLayer extends AbstractLayer
         this.extentTree.add(item, ((GeographicExtent) item).getSector().asDegreesArray(), name);
     }
 
+    /**
+     * Adds a collection of Renderables to the layer. This is considerably faster than adding the Renderables one at a
+     * time, see {@link ConcurrentQuadTree#addAll(java.util.List, java.util.List)}. The Renderables have no name.
+     *
+     * @param items the Renderables to add.
+     *
+     * @throws IllegalArgumentException if the collection is null, or if any of the items is null or does not implement
+     *                                  {@link gov.nasa.worldwind.render.GeographicExtent}.
+     */
+    public void addAll(Collection<? extends Renderable> items)
+    {
+        if (items == null)
+        {
+            String message = Logging.getMessage("nullValue.CollectionIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        List<Renderable> itemList = new ArrayList<Renderable>(items.size());
+        List<double[]> coordsList = new ArrayList<double[]>(items.size());
+        for (Renderable item : items)
+        {
+            if (!(item instanceof GeographicExtent))
+            {
+                String message = Logging.getMessage("GeographicTree.NotGeometricExtent");
+                Logging.logger().severe(message);
+                throw new IllegalArgumentException(message);
+            }
+
+            itemList.add(item);
+            coordsList.add(((GeographicExtent) item).getSector().asDegreesArray());
+        }
+
+        this.extentTree.addAll(itemList, coordsList);
+    }
+
     /**
      * Remove a Renderable from the layer if the Renderable is in the layer.
      *
@@ -32,6 +32,7 @@ public class TextureTile extends Tile implements SurfaceTile
     private TextureTile fallbackTile = null; // holds texture to use if own texture not available
     protected boolean hasMipmapData = false;
     protected AtomicLong updateTime = new AtomicLong(0);
+    protected double loadPriority = Double.MAX_VALUE; // Default is minimum priority
 
     /**
      * Returns the memory cache used to cache tiles for this class and its subclasses, initializing the cache if it
@@ -44,7 +45,7 @@ public class TextureTile extends Tile implements SurfaceTile
         if (!WorldWind.getMemoryCacheSet().containsCache(TextureTile.class.getName()))
         {
             long size = Configuration.getLongValue(AVKey.TEXTURE_IMAGE_CACHE_SIZE, 3000000L);
-            MemoryCache cache = new BasicMemoryCache((long) (0.85 * size), size);
+            MemoryCache cache = BasicMemoryCacheSet.createMemoryCache((long) (0.85 * size), size);
             cache.setName("Texture Tiles");
             WorldWind.getMemoryCacheSet().addCache(TextureTile.class.getName(), cache);
         }
@@ -99,6 +100,29 @@ public class TextureTile extends Tile implements SurfaceTile
         this.fallbackTile = fallbackTile;
     }
 
+    /**
+     * Returns the priority with which the tile's texture is read and decoded from the local file store by a {@link
+     * TextureTileLoader}. Lower values are loaded first. This is independent of the tile's {@link #getPriority()
+     * priority}, which orders the tile's requests among those of all layers in the shared retrieval services.
+     *
+     * @return the tile's load priority.
+     */
+    public double getLoadPriority()
+    {
+        return this.loadPriority;
+    }
+
+    /**
+     * Specifies the priority with which the tile's texture is read and decoded from the local file store. See {@link
+     * #getLoadPriority()}.
+     *
+     * @param loadPriority the tile's load priority. Lower values are loaded first.
+     */
+    public void setLoadPriority(double loadPriority)
+    {
+        this.loadPriority = loadPriority;
+    }
+
     /**
      * Returns the texture data most recently specified for the tile. New texture data is typically specified when a new
      * image is read, either initially or in response to image expiration.
@@ -0,0 +1,527 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.layers;
+
+import com.jogamp.opengl.util.texture.TextureData;
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.util.*;
+
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads the textures of {@link BasicTiledImageLayer} tiles from the local file store in three stages:
+ * <ol> <li>Read: the tile's file is read into memory on a read thread.</li> <li>Decode: the file is decoded to texture
+ * data on a decode thread. This includes converting the image to DDS and building its mipmaps when the layer uses
+ * compressed textures.</li> <li>Upload: decoded textures wait in their layer's queue until the layer is next drawn.
+ * At the start of each frame, layers create GL textures from their decoded textures in priority order until that
+ * frame's upload budget is spent.</li> </ol>
+ * <p/>
+ * The read and decode stages each have their own thread pool, and each orders its waiting tiles by the tile's {@link
+ * TextureTile#getLoadPriority() load priority} at the time the tile was requested. Lower priorities are loaded first;
+ * {@link BasicTiledImageLayer} assigns lower load priorities to tiles with greater screen-space error. The number of
+ * tiles in the pipeline is limited, which bounds the memory held by read and decoded textures. Tiles that are no
+ * longer requested by their layer are dropped from the pipeline.
+ * <p/>
+ * The thread pool sizes and upload budget are specified by the World Wind configuration parameters {@link
+ * AVKey#TEXTURE_READ_THREAD_POOL_SIZE}, {@link AVKey#TEXTURE_DECODE_THREAD_POOL_SIZE} and {@link
+ * AVKey#TEXTURE_UPLOAD_BUDGET}. A single loader is shared by all layers. {@link WorldWind#shutDown()} disposes the
+ * shared loader, and a new one is created when it's next requested.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public class TextureTileLoader implements Disposable
+{
+    protected static final int DEFAULT_READ_THREAD_POOL_SIZE = 2;
+    protected static final int DEFAULT_MAX_TILES_IN_PIPELINE = 64;
+    /** The default number of texture bytes released for upload per frame. */
+    protected static final long DEFAULT_UPLOAD_BUDGET = 16L << 20;
+    /** Tiles not requested by their layer for this many milliseconds are dropped from the pipeline. */
+    protected static final long DEFAULT_STALE_TIME = 2000;
+
+    protected static TextureTileLoader instance;
+
+    /** Holds one tile as it passes through the pipeline. */
+    protected static class LoadTask implements Comparable<LoadTask>
+    {
+        protected final BasicTiledImageLayer layer;
+        protected final TextureTile tile;
+        protected final URL url;
+        protected final double priority;
+        protected volatile long requestTime;
+        protected ByteBuffer buffer;
+        protected TextureData textureData;
+        protected long textureSize;
+
+        public LoadTask(BasicTiledImageLayer layer, TextureTile tile, URL url)
+        {
+            this.layer = layer;
+            this.tile = tile;
+            this.url = url;
+            this.priority = tile.getLoadPriority();
+            this.requestTime = System.currentTimeMillis();
+        }
+
+        public int compareTo(LoadTask that)
+        {
+            return this.priority < that.priority ? -1 : this.priority == that.priority ? 0 : 1;
+        }
+
+        public String toString()
+        {
+            return this.tile.toString();
+        }
+    }
+
+    /** Runs one stage of a load task. Stage tasks are ordered by the priority of their tile. */
+    protected abstract static class StageTask implements Runnable, Comparable<StageTask>
+    {
+        protected final LoadTask task;
+
+        public StageTask(LoadTask task)
+        {
+            this.task = task;
+        }
+
+        public int compareTo(StageTask that)
+        {
+            return this.task.compareTo(that.task);
+        }
+    }
+
+    protected final ThreadPoolExecutor readService;
+    protected final ThreadPoolExecutor decodeService;
+    /** Decoded textures waiting for upload, by layer. Access is synchronized on the map. */
+    protected final Map<BasicTiledImageLayer, PriorityQueue<LoadTask>> uploadQueues =
+        new HashMap<BasicTiledImageLayer, PriorityQueue<LoadTask>>();
+    protected final ConcurrentHashMap<TileKey, LoadTask> tasks = new ConcurrentHashMap<TileKey, LoadTask>();
+    protected final int maxTilesInPipeline;
+    protected final long uploadBudget;
+    protected long staleTime = DEFAULT_STALE_TIME;
+    // The upload budget is shared by all layers drawn in the same frame.
+    protected long budgetFrameTime = -1;
+    protected long budgetRemaining;
+    protected AtomicLong bytesReleased = new AtomicLong();
+
+    /**
+     * Returns the loader shared by all layers, creating it the first time it's requested.
+     *
+     * @return the shared loader.
+     */
+    public static synchronized TextureTileLoader getInstance()
+    {
+        if (instance == null)
+        {
+            int readThreads = Configuration.getIntegerValue(AVKey.TEXTURE_READ_THREAD_POOL_SIZE,
+                DEFAULT_READ_THREAD_POOL_SIZE);
+            int decodeThreads = Configuration.getIntegerValue(AVKey.TEXTURE_DECODE_THREAD_POOL_SIZE,
+                Math.max(Runtime.getRuntime().availableProcessors() - 1, 1));
+            long uploadBudget = Configuration.getLongValue(AVKey.TEXTURE_UPLOAD_BUDGET, DEFAULT_UPLOAD_BUDGET);
+
+            instance = new TextureTileLoader(readThreads, decodeThreads, DEFAULT_MAX_TILES_IN_PIPELINE, uploadBudget);
+        }
+
+        return instance;
+    }
+
+    /**
+     * Disposes the loader shared by all layers, if it has been created. The next call to {@link #getInstance()} creates
+     * a new loader.
+     */
+    public static synchronized void disposeInstance()
+    {
+        if (instance != null)
+        {
+            instance.dispose();
+            instance = null;
+        }
+    }
+
+    /**
+     * Creates a loader.
+     *
+     * @param readThreads        the number of threads that read tile files.
+     * @param decodeThreads      the number of threads that decode tile files.
+     * @param maxTilesInPipeline the maximum number of tiles being read, decoded or waiting for upload.
+     * @param uploadBudget       the number of texture bytes released for upload per frame. At least one texture is
+     *                           released per frame regardless of its size.
+     *
+     * @throws IllegalArgumentException if any thread count or the tile limit is less than 1.
+     */
+    public TextureTileLoader(int readThreads, int decodeThreads, int maxTilesInPipeline, long uploadBudget)
+    {
+        if (readThreads < 1 || decodeThreads < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", Math.min(readThreads, decodeThreads));
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (maxTilesInPipeline < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", maxTilesInPipeline);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.readService = this.createStageService(readThreads, "World Wind Texture Read");
+        this.decodeService = this.createStageService(decodeThreads, "World Wind Texture Decode");
+        this.maxTilesInPipeline = maxTilesInPipeline;
+        this.uploadBudget = uploadBudget;
+    }
+
+    protected ThreadPoolExecutor createStageService(int numThreads, final String threadName)
+    {
+        // Each stage's queue is effectively bounded by the limit on tiles in the pipeline.
+        return new ThreadPoolExecutor(numThreads, numThreads, 0L, TimeUnit.MILLISECONDS,
+            new PriorityBlockingQueue<Runnable>(), new ThreadFactory()
+        {
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                thread.setName(threadName);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Stops the loader's read and decode threads and discards the tiles in the pipeline. Tiles added to a disposed
+     * loader are not loaded.
+     */
+    public void dispose()
+    {
+        this.readService.shutdownNow();
+        this.decodeService.shutdownNow();
+        this.tasks.clear();
+
+        synchronized (this.uploadQueues)
+        {
+            this.uploadQueues.clear();
+        }
+    }
+
+    /**
+     * Indicates the number of tiles currently being read, decoded or waiting for upload.
+     *
+     * @return the number of tiles in the pipeline.
+     */
+    public int getTilesInPipeline()
+    {
+        return this.tasks.size();
+    }
+
+    /**
+     * Indicates the total number of texture bytes released for upload since the loader was created.
+     *
+     * @return the number of bytes released.
+     */
+    public long getBytesReleased()
+    {
+        return this.bytesReleased.get();
+    }
+
+    /**
+     * Adds a tile to the pipeline. If the tile is already in the pipeline, its request time is updated so that it's not
+     * dropped.
+     *
+     * @param layer the layer requesting the tile.
+     * @param tile  the tile to load.
+     * @param url   the location of the tile's file in the local file store.
+     *
+     * @return true if the tile is in the pipeline, or false if the pipeline is full and the tile must be requested
+     *         again later.
+     *
+     * @throws IllegalArgumentException if any argument is null.
+     */
+    public boolean addTile(BasicTiledImageLayer layer, TextureTile tile, URL url)
+    {
+        if (layer == null)
+        {
+            String message = Logging.getMessage("nullValue.LayerIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (tile == null)
+        {
+            String message = Logging.getMessage("nullValue.TileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (url == null)
+        {
+            String message = Logging.getMessage("nullValue.URLIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        LoadTask existing = this.tasks.get(tile.getTileKey());
+        if (existing != null)
+        {
+            existing.requestTime = System.currentTimeMillis();
+            return true;
+        }
+
+        if (this.tasks.size() >= this.maxTilesInPipeline)
+        {
+            // Make room by dropping decoded textures that their layers no longer want.
+            this.removeStaleUploads();
+            if (this.tasks.size() >= this.maxTilesInPipeline)
+                return false;
+        }
+
+        LoadTask task = new LoadTask(layer, tile, url);
+        if (this.tasks.putIfAbsent(tile.getTileKey(), task) != null)
+            return true;
+
+        try
+        {
+            this.readService.execute(this.createReadTask(task));
+        }
+        catch (RejectedExecutionException e)
+        {
+            this.tasks.remove(tile.getTileKey(), task);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Indicates whether a tile is in the pipeline, and if it is, records that its layer still wants it.
+     *
+     * @param tile the tile to test.
+     *
+     * @return true if the tile is being read, decoded or is waiting for upload, otherwise false.
+     */
+    public boolean touchTile(TextureTile tile)
+    {
+        LoadTask task = tile != null ? this.tasks.get(tile.getTileKey()) : null;
+        if (task == null)
+            return false;
+
+        task.requestTime = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * Uploads the textures a layer can upload this frame. Decoded textures of the layer are assigned to their tiles and
+     * converted to GL textures in priority order until the frame's upload budget, which is shared by all layers, is
+     * spent. This must be called on the rendering thread before the layer determines which tiles to draw.
+     *
+     * @param dc    the current draw context.
+     * @param layer the layer being drawn.
+     *
+     * @return the number of textures released to the layer.
+     *
+     * @throws IllegalArgumentException if either argument is null.
+     */
+    public int releaseUploads(DrawContext dc, BasicTiledImageLayer layer)
+    {
+        if (dc == null)
+        {
+            String message = Logging.getMessage("nullValue.DrawContextIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (layer == null)
+        {
+            String message = Logging.getMessage("nullValue.LayerIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        boolean firstRelease = false;
+        if (this.budgetFrameTime != dc.getFrameTimeStamp())
+        {
+            this.budgetFrameTime = dc.getFrameTimeStamp();
+            this.budgetRemaining = this.uploadBudget;
+            firstRelease = true;
+        }
+
+        int numReleased = 0;
+        boolean layerHasMore = false;
+        long now = System.currentTimeMillis();
+
+        while (true)
+        {
+            LoadTask task;
+            synchronized (this.uploadQueues)
+            {
+                PriorityQueue<LoadTask> queue = this.uploadQueues.get(layer);
+                if (queue == null)
+                    break;
+
+                if (this.budgetRemaining <= 0 && !(firstRelease && numReleased == 0))
+                {
+                    layerHasMore = true;
+                    break;
+                }
+
+                task = queue.poll();
+                if (queue.isEmpty())
+                    this.uploadQueues.remove(layer);
+            }
+
+            this.tasks.remove(task.tile.getTileKey(), task);
+            if (this.isStale(task, now))
+                continue;
+
+            this.budgetRemaining -= task.textureSize;
+            this.bytesReleased.addAndGet(task.textureSize);
+            layer.applyTextureData(dc, task.tile, task.textureData);
+            numReleased++;
+        }
+
+        // Ask for another frame to upload the textures that didn't fit in this frame's budget.
+        if (layerHasMore)
+            layer.firePropertyChange(AVKey.LAYER, null, layer);
+
+        return numReleased;
+    }
+
+    protected void addUpload(LoadTask task)
+    {
+        synchronized (this.uploadQueues)
+        {
+            PriorityQueue<LoadTask> queue = this.uploadQueues.get(task.layer);
+            if (queue == null)
+            {
+                queue = new PriorityQueue<LoadTask>();
+                this.uploadQueues.put(task.layer, queue);
+            }
+
+            queue.add(task);
+        }
+    }
+
+    protected void removeStaleUploads()
+    {
+        long now = System.currentTimeMillis();
+
+        synchronized (this.uploadQueues)
+        {
+            for (Iterator<PriorityQueue<LoadTask>> queues = this.uploadQueues.values().iterator(); queues.hasNext(); )
+            {
+                PriorityQueue<LoadTask> queue = queues.next();
+                for (Iterator<LoadTask> iter = queue.iterator(); iter.hasNext(); )
+                {
+                    LoadTask task = iter.next();
+                    if (this.isStale(task, now))
+                    {
+                        iter.remove();
+                        this.tasks.remove(task.tile.getTileKey(), task);
+                    }
+                }
+
+                // Drop the queues of layers that are no longer drawn so that the loader doesn't retain them.
+                if (queue.isEmpty())
+                    queues.remove();
+            }
+        }
+    }
+
+    protected boolean isStale(LoadTask task, long now)
+    {
+        return now - task.requestTime > this.staleTime;
+    }
+
+    protected Runnable createReadTask(final LoadTask task)
+    {
+        return new StageTask(task)
+        {
+            public void run()
+            {
+                doRead(task);
+            }
+        };
+    }
+
+    protected Runnable createDecodeTask(final LoadTask task)
+    {
+        return new StageTask(task)
+        {
+            public void run()
+            {
+                doDecode(task);
+            }
+        };
+    }
+
+    protected void doRead(LoadTask task)
+    {
+        if (this.isStale(task, System.currentTimeMillis()))
+        {
+            this.tasks.remove(task.tile.getTileKey(), task);
+            return;
+        }
+
+        try
+        {
+            task.buffer = task.layer.readTextureBuffer(task.url);
+        }
+        catch (Exception e)
+        {
+            String message = Logging.getMessage("layers.TextureLayer.ExceptionAttemptingToReadTextureFile", task.url);
+            Logging.logger().log(java.util.logging.Level.SEVERE, message, e);
+        }
+
+        if (task.buffer == null)
+        {
+            this.tasks.remove(task.tile.getTileKey(), task);
+            task.layer.handleTextureLoadFailure(task.tile, task.url);
+            return;
+        }
+
+        try
+        {
+            this.decodeService.execute(this.createDecodeTask(task));
+        }
+        catch (RejectedExecutionException e)
+        {
+            this.tasks.remove(task.tile.getTileKey(), task);
+        }
+    }
+
+    protected void doDecode(LoadTask task)
+    {
+        if (this.isStale(task, System.currentTimeMillis()))
+        {
+            this.tasks.remove(task.tile.getTileKey(), task);
+            return;
+        }
+
+        ByteBuffer buffer = task.buffer;
+        task.buffer = null; // release the file contents once they're decoded
+
+        task.textureData = task.layer.decodeTexture(task.url, buffer, task.layer.getTextureFormat(),
+            task.layer.isUseMipMaps());
+
+        if (task.textureData == null)
+        {
+            this.tasks.remove(task.tile.getTileKey(), task);
+            task.layer.handleTextureLoadFailure(task.tile, task.url);
+            return;
+        }
+
+        task.textureSize = task.textureData.getEstimatedMemorySize();
+        this.addUpload(task);
+
+        // Ask for a frame so that the layer can take the texture.
+        task.layer.firePropertyChange(AVKey.LAYER, null, task.layer);
+    }
+}
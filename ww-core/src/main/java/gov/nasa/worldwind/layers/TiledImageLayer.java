@@ -338,6 +338,7 @@ public abstract class TiledImageLayer extends AbstractLayer
 
     protected void assembleTiles(DrawContext dc)
     {
+        long start = Instrumentation.start();
         this.currentTiles.clear();
 
         for (TextureTile tile : this.getTopLevels())
@@ -348,6 +349,8 @@ public abstract class TiledImageLayer extends AbstractLayer
                 this.addTileOrDescendants(dc, tile);
             }
         }
+
+        Instrumentation.stop(Instrumentation.ASSEMBLE_TILES, this, start);
     }
 
     protected void addTileOrDescendants(DrawContext dc, TextureTile tile)
@@ -10,14 +10,14 @@ import gov.nasa.worldwind.avlist.*;
 import gov.nasa.worldwind.cache.*;
 import gov.nasa.worldwind.event.BulkRetrievalListener;
 import gov.nasa.worldwind.geom.*;
-import gov.nasa.worldwind.globes.Globe2D;
+import gov.nasa.worldwind.globes.*;
 import gov.nasa.worldwind.layers.AbstractLayer;
 import gov.nasa.worldwind.render.*;
 import gov.nasa.worldwind.retrieve.*;
 import gov.nasa.worldwind.util.*;
 
 import java.io.*;
-import java.nio.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.logging.Level;
@@ -94,7 +94,7 @@ public class PlaceNameLayer extends AbstractLayer implements BulkRetrievable
         if (!WorldWind.getMemoryCacheSet().containsCache(Tile.class.getName()))
         {
             long size = Configuration.getLongValue(AVKey.PLACENAME_LAYER_CACHE_SIZE, 2000000L);
-            MemoryCache cache = new BasicMemoryCache((long) (0.85 * size), size);
+            MemoryCache cache = BasicMemoryCacheSet.createMemoryCache((long) (0.85 * size), size);
             cache.setName("Placename Tiles");
             WorldWind.getMemoryCacheSet().addCache(Tile.class.getName(), cache);
         }
@@ -471,40 +471,95 @@ public class PlaceNameLayer extends AbstractLayer implements BulkRetrievable
     // ============== Place Name Data Structures ======================= //
     // ============== Place Name Data Structures ======================= //
 
+    /**
+     * The place names of one tile, held in columns: an array of names and arrays of their latitudes and longitudes.
+     * Entries are sorted by latitude, so the entries within the visible sector's latitudes are found by binary search.
+     * <p/>
+     * The names' Cartesian points are computed in bulk the first time the chunk is drawn and again only when the
+     * globe's state changes. Names are then culled by visible sector, display distance, horizon and view frustum
+     * directly from these columns. A text object is created for a name the first time it passes, and is reused while
+     * the chunk remains in memory.
+     */
     protected static class PlaceNameChunk implements Cacheable
     {
         protected final PlaceNameService placeNameService;
-        protected final CharBuffer textArray;
-        protected final int[] textIndexArray;
-        protected final double[] latlonArray;
+        protected final String[] names;
+        protected final float[] latitudes;
+        protected final float[] longitudes;
         protected final int numEntries;
         protected final long estimatedMemorySize;
+        /** The names' Cartesian points as x, y, z triples, computed for the globe state identified by pointsKey. */
+        protected double[] points;
+        protected Object pointsKey;
+        /** The names' text objects, created as the names are first drawn. */
+        protected GeographicText[] texts;
 
-        protected PlaceNameChunk(PlaceNameService service, CharBuffer text, int[] textIndices,
-            double[] positions, int numEntries)
+        /**
+         * Creates a chunk from the specified columns, which the chunk sorts in place by latitude.
+         *
+         * @param service    the service the names are from.
+         * @param names      the names.
+         * @param latitudes  the names' latitudes, in degrees.
+         * @param longitudes the names' longitudes, in degrees.
+         * @param numEntries the number of names. The arrays may be longer.
+         */
+        protected PlaceNameChunk(PlaceNameService service, String[] names, float[] latitudes, float[] longitudes,
+            int numEntries)
         {
             this.placeNameService = service;
-            this.textArray = text;
-            this.textIndexArray = textIndices;
-            this.latlonArray = positions;
+            this.names = names;
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
             this.numEntries = numEntries;
+            this.sortByLatitude();
             this.estimatedMemorySize = this.computeEstimatedMemorySize();
         }
 
+        protected void sortByLatitude()
+        {
+            // Sort keys holding the latitude in millionths of a degree above the index, so the sort is stable.
+            long[] keys = new long[this.numEntries];
+            for (int i = 0; i < this.numEntries; i++)
+            {
+                long lat = Math.round((this.latitudes[i] + 90d) * 1e6);
+                keys[i] = (lat << 32) | i;
+            }
+            Arrays.sort(keys);
+
+            String[] sortedNames = new String[this.numEntries];
+            float[] sortedLatitudes = new float[this.numEntries];
+            float[] sortedLongitudes = new float[this.numEntries];
+            for (int i = 0; i < this.numEntries; i++)
+            {
+                int index = (int) (keys[i] & 0xFFFFFFFFL);
+                sortedNames[i] = this.names[index];
+                sortedLatitudes[i] = this.latitudes[index];
+                sortedLongitudes[i] = this.longitudes[index];
+            }
+
+            System.arraycopy(sortedNames, 0, this.names, 0, this.numEntries);
+            System.arraycopy(sortedLatitudes, 0, this.latitudes, 0, this.numEntries);
+            System.arraycopy(sortedLongitudes, 0, this.longitudes, 0, this.numEntries);
+        }
+
         protected long computeEstimatedMemorySize()
         {
             long result = 0;
-            if (!textArray.isDirect())
-                result += (Character.SIZE / 8) * textArray.capacity();
-            result += (Integer.SIZE / 8) * textIndexArray.length;
-            result += (Double.SIZE / 8) * latlonArray.length;
+            result += (Float.SIZE / 8) * (latitudes.length + longitudes.length);
+            result += 3 * (Double.SIZE / 8) * numEntries; // the Cartesian points
+            result += 8 * numEntries; // the text object references
+            // Count the references and, conservatively, each name's storage even though repeated names are shared.
+            result += 8 * names.length;
+            for (int i = 0; i < numEntries; i++)
+            {
+                result += 40 + (Character.SIZE / 8) * names[i].length();
+            }
             return result;
         }
 
         protected Position getPosition(int index)
         {
-            int latlonIndex = 2 * index;
-            return Position.fromDegrees(latlonArray[latlonIndex], latlonArray[latlonIndex + 1], 0);
+            return Position.fromDegrees(latitudes[index], longitudes[index], 0);
         }
 
         protected PlaceNameService getPlaceNameService()
@@ -514,14 +569,7 @@ public class PlaceNameLayer extends AbstractLayer implements BulkRetrievable
 
         protected CharSequence getText(int index)
         {
-            int beginIndex = textIndexArray[index];
-            int endIndex = (index + 1 < numEntries) ? textIndexArray[index + 1] : textArray.length();
-
-            // Cast the textArray CharBuffer to a CharSequence before calling subSequence. Java 7 broke interface
-            // compatibility on this method by changing the return type to a CharBuffer. Compiling
-            // CharBuffer.subSequence on Java 7 results in a NoSuchMethodError on Java 6. We cast to a CharSequence in
-            // order to ensure that this code works on both Java 6 and Java 7 when compiled with Java 7.
-            return ((CharSequence) this.textArray).subSequence(beginIndex, endIndex);
+            return this.names[index];
         }
 
         public long getSizeInBytes()
@@ -529,24 +577,156 @@ public class PlaceNameLayer extends AbstractLayer implements BulkRetrievable
             return this.estimatedMemorySize;
         }
 
+        /**
+         * Returns the index of the first entry whose latitude is at least the specified latitude.
+         *
+         * @param latitude the latitude, in degrees.
+         *
+         * @return the index of the entry, or the number of entries if all latitudes are less than the latitude.
+         */
+        protected int findFirstEntry(double latitude)
+        {
+            int low = 0;
+            int high = this.numEntries;
+            while (low < high)
+            {
+                int mid = (low + high) >>> 1;
+                if (this.latitudes[mid] < latitude)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+
+            return low;
+        }
+
+        protected void updatePoints(DrawContext dc)
+        {
+            Object key = dc.getGlobe().getStateKey(dc);
+            if (this.points != null && key.equals(this.pointsKey))
+                return;
+
+            // Compute the points in place over the positions, which are at the ellipsoid's surface.
+            double[] array = this.points != null ? this.points : new double[3 * this.numEntries];
+            for (int i = 0; i < this.numEntries; i++)
+            {
+                array[3 * i] = this.latitudes[i];
+                array[3 * i + 1] = this.longitudes[i];
+                array[3 * i + 2] = 0;
+            }
+            Globe globe = dc.getGlobe();
+            if (globe instanceof EllipsoidalGlobe)
+            {
+                ((EllipsoidalGlobe) globe).computePointsFromPositions(array, 0, array, 0, this.numEntries);
+            }
+            else
+            {
+                for (int i = 0; i < 3 * this.numEntries; i += 3)
+                {
+                    Vec4 p = globe.computePointFromPosition(Angle.fromDegrees(array[i]),
+                        Angle.fromDegrees(array[i + 1]), array[i + 2]);
+                    array[i] = p.x;
+                    array[i + 1] = p.y;
+                    array[i + 2] = p.z;
+                }
+            }
+
+            this.points = array;
+            this.pointsKey = key;
+        }
+
         protected Iterable<GeographicText> makeIterable(DrawContext dc)
         {
+            Sector visibleSector = dc.getVisibleSector();
+            if (visibleSector == null)
+                return Collections.emptyList();
+
+            this.updatePoints(dc);
+
+            // The points are at the ellipsoid's surface, but names are drawn at the terrain's surface. Allow for the
+            // difference in the horizon and frustum tests. The text renderer repeats these tests on the surface point.
+            double margin = dc.getGlobe().getMaxElevation() * Math.max(dc.getVerticalExaggeration(), 1);
+            double minDistSquared = this.placeNameService.getMinDisplayDistance()
+                * this.placeNameService.getMinDisplayDistance();
+            double maxDistSquared = this.placeNameService.getMaxDisplayDistance()
+                * this.placeNameService.getMaxDisplayDistance();
+            double horizon = dc.getView().getHorizonDistance() + margin;
+            double horizonSquared = dc.is2DGlobe() ? Double.MAX_VALUE : horizon * horizon;
+            Vec4 eye = dc.getView().getEyePoint();
+            Plane[] planes = dc.getView().getFrustumInModelCoordinates().getAllPlanes();
+            double[] planeMargins = new double[planes.length]; // plane vectors aren't necessarily unit length
+            for (int i = 0; i < planes.length; i++)
+            {
+                planeMargins[i] = margin * planes[i].getNormal().getLength3();
+            }
+
+            double minLon = visibleSector.getMinLongitude().degrees;
+            double maxLon = visibleSector.getMaxLongitude().degrees;
+            double maxLat = visibleSector.getMaxLatitude().degrees;
+
             //get dispay dist for this service for use in label annealing
             double maxDisplayDistance = this.getPlaceNameService().getMaxDisplayDistance();
-            ArrayList<GeographicText> list = new ArrayList<GeographicText>();
-            for (int i = 0; i < this.numEntries; i++)
+            ArrayList<GeographicText> list = null;
+            for (int i = this.findFirstEntry(visibleSector.getMinLatitude().degrees); i < this.numEntries; i++)
             {
-                CharSequence str = getText(i);
-                Position pos = getPosition(i);
-                GeographicText text = new UserFacingText(str, pos);
+                if (this.latitudes[i] > maxLat)
+                    break;
+
+                if (this.longitudes[i] < minLon || this.longitudes[i] > maxLon)
+                    continue;
+
+                double x = this.points[3 * i];
+                double y = this.points[3 * i + 1];
+                double z = this.points[3 * i + 2];
+                double dx = x - eye.x;
+                double dy = y - eye.y;
+                double dz = z - eye.z;
+                double distSquared = dx * dx + dy * dy + dz * dz;
+                if (distSquared < minDistSquared || distSquared > maxDistSquared || distSquared > horizonSquared)
+                    continue;
+
+                if (!isInFrustum(planes, planeMargins, x, y, z))
+                    continue;
+
+                GeographicText text = this.getGeographicText(i);
                 text.setFont(this.placeNameService.getFont());
                 text.setColor(this.placeNameService.getColor());
                 text.setBackgroundColor(this.placeNameService.getBackgroundColor());
-                text.setVisible(isNameVisible(dc, this.placeNameService, pos));
                 text.setPriority(maxDisplayDistance);
+
+                if (list == null)
+                    list = new ArrayList<GeographicText>();
                 list.add(text);
             }
-            return list;
+
+            return list != null ? list : Collections.<GeographicText>emptyList();
+        }
+
+        protected GeographicText getGeographicText(int index)
+        {
+            if (this.texts == null)
+                this.texts = new GeographicText[this.numEntries];
+
+            GeographicText text = this.texts[index];
+            if (text == null)
+            {
+                text = new UserFacingText(this.names[index], this.getPosition(index));
+                this.texts[index] = text;
+            }
+
+            return text;
+        }
+
+        protected static boolean isInFrustum(Plane[] planes, double[] margins, double x, double y, double z)
+        {
+            for (int i = 0; i < planes.length; i++)
+            {
+                Vec4 n = planes[i].getVector();
+                if (n.x * x + n.y * y + n.z * z + n.w < -margins[i])
+                    return false;
+            }
+
+            return true;
         }
     }
 
@@ -726,17 +906,6 @@ public class PlaceNameLayer extends AbstractLayer implements BulkRetrievable
         return true;
     }
 
-    protected static boolean isNameVisible(DrawContext dc, PlaceNameService service, Position namePosition)
-    {
-        double elevation = dc.getVerticalExaggeration() * namePosition.getElevation();
-        Vec4 namePoint = dc.getGlobe().computePointFromPosition(namePosition.getLatitude(),
-            namePosition.getLongitude(), elevation);
-        Vec4 eyeVec = dc.getView().getEyePoint();
-
-        double dist = eyeVec.distanceTo3(namePoint);
-        return dist >= service.getMinDisplayDistance() && dist <= service.getMaxDisplayDistance();
-    }
-
     protected static Angle clampAngle(Angle a, Angle min, Angle max)
     {
         double degrees = a.degrees;
@@ -923,13 +1092,6 @@ public class PlaceNameLayer extends AbstractLayer implements BulkRetrievable
         return null;
     }
 
-    protected static CharBuffer newCharBuffer(int numElements)
-    {
-        ByteBuffer bb = ByteBuffer.allocateDirect((Character.SIZE / 8) * numElements);
-        bb.order(ByteOrder.nativeOrder());
-        return bb.asCharBuffer();
-    }
-
     protected static class GMLPlaceNameSAXHandler extends org.xml.sax.helpers.DefaultHandler
     {
         protected static final String GML_FEATURE_MEMBER = "gml:featureMember";
@@ -952,11 +1114,29 @@ public class PlaceNameLayer extends AbstractLayer implements BulkRetrievable
 
         protected PlaceNameChunk createPlaceNameChunk(PlaceNameService service)
         {
-            int numChars = this.textArray.length();
-            CharBuffer textBuffer = newCharBuffer(numChars);
-            textBuffer.put(this.textArray.toString());
-            textBuffer.rewind();
-            return new PlaceNameChunk(service, textBuffer, this.textIndexArray, this.latlonArray, this.numEntries);
+            // Share the strings of names repeated within the tile. Names aren't interned, since interned strings are
+            // held for the life of the JVM.
+            Map<String, String> uniqueNames = new HashMap<String, String>();
+            String[] names = new String[this.numEntries];
+            float[] latitudes = new float[this.numEntries];
+            float[] longitudes = new float[this.numEntries];
+            for (int i = 0; i < this.numEntries; i++)
+            {
+                int beginIndex = this.textIndexArray[i];
+                int endIndex = (i + 1 < this.numEntries) ? this.textIndexArray[i + 1] : this.textArray.length();
+                String name = this.textArray.substring(beginIndex, endIndex);
+                String unique = uniqueNames.get(name);
+                if (unique == null)
+                {
+                    unique = name;
+                    uniqueNames.put(name, name);
+                }
+                names[i] = unique;
+                latitudes[i] = (float) this.latlonArray[2 * i];
+                longitudes[i] = (float) this.latlonArray[2 * i + 1];
+            }
+
+            return new PlaceNameChunk(service, names, latitudes, longitudes, this.numEntries);
         }
 
         protected void beginEntry()
@@ -6,6 +6,7 @@
 package gov.nasa.worldwind.layers.rpf;
 
 import gov.nasa.worldwind.avlist.*;
+import gov.nasa.worldwind.cache.MemoryCache;
 import gov.nasa.worldwind.formats.rpf.*;
 import gov.nasa.worldwind.formats.wvt.*;
 import gov.nasa.worldwind.geom.*;
@@ -432,15 +433,43 @@ class RPFGenerator
 
         //
         // Attempts to return the specified FrameFile as a BufferedImage. Returns null on failure.
+        // Decoded frames are shared with other requests through RPFImageFile's frame cache, so a
+        // frame straddled by adjacent tiles is decoded once. Frames whose deprojection produces new
+        // images (polar frames) keep only their deprojected images in the same cache; the decoded
+        // frame is not cached, since it is not used again once deprojected.
         //
         private RPFFrameTransform.RPFImage[] getImageFromRPFSource(FrameFile frame)
         {
             try
             {
-                File file = frame.rpfFile;
-                RPFImageFile sourceFile = RPFImageFile.load(file);
-                BufferedImage image = sourceFile.getBufferedImage();
-                return frame.getFrameTransform().deproject(frame.getFrameNumber(), image);
+                RPFFrameTransform transform = frame.getFrameTransform();
+                if (!transform.deprojectsToNewImages())
+                {
+                    BufferedImage image = RPFImageFile.getCachedBufferedImage(frame.rpfFile);
+                    return transform.deproject(frame.getFrameNumber(), image);
+                }
+
+                MemoryCache cache = RPFImageFile.getMemoryCache();
+                String deprojectedKey = RPFImageFile.getFrameCacheKey(frame.rpfFile) + "#deprojected";
+
+                RPFFrameTransform.RPFImage[] images = (RPFFrameTransform.RPFImage[]) cache.getObject(deprojectedKey);
+                if (images != null)
+                    return images;
+
+                BufferedImage image = RPFImageFile.load(frame.rpfFile).getBufferedImage();
+                images = transform.deproject(frame.getFrameNumber(), image);
+
+                long size = 0;
+                for (RPFFrameTransform.RPFImage rpfImage : images)
+                {
+                    if (rpfImage.getImage() != null)
+                        size += 4L * rpfImage.getImage().getWidth() * rpfImage.getImage().getHeight();
+                }
+
+                if (size > 0)
+                    cache.add(deprojectedKey, images, size);
+
+                return images;
             }
             catch (Exception e)
             {
@@ -97,6 +97,18 @@ public class RPFTiledImageLayer extends TiledImageLayer
         return path;
     }
 
+    static String getDirectoryIndexCachePath(String rootPath)
+    {
+        String path = null;
+        if (rootPath != null)
+        {
+            path = WWIO.formPath(
+                rootPath,
+                "rpf_directory_index.idx");
+        }
+        return path;
+    }
+
     public static RPFTiledImageLayer fromRestorableState(String stateInXml)
     {
         if (stateInXml == null)
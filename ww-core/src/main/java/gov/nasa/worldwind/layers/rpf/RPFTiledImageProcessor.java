@@ -110,6 +110,81 @@ public class RPFTiledImageProcessor
         return result;
     }
 
+    /**
+     * Returns an index of the RPF frame files beneath a root directory, such as the files to pass to {@link
+     * #makeFileIndex(java.io.File, String, String, Iterable)}. The index is kept in the file cache, so that each call
+     * lists only the directories modified since the previous call for the same root directory.
+     *
+     * @param rootFile the root directory.
+     *
+     * @return the directory index.
+     *
+     * @throws IllegalArgumentException if the root directory is null or not a directory.
+     */
+    public RPFDirectoryIndex makeDirectoryIndex(File rootFile)
+    {
+        return this.makeDirectoryIndex(rootFile, null);
+    }
+
+    /**
+     * Returns an index of the RPF frame files beneath a root directory, as {@link #makeDirectoryIndex(java.io.File)}
+     * does, and reports each directory listed to a listener.
+     *
+     * @param rootFile the root directory.
+     * @param listener the listener to report progress to and to check for cancellation. May be null.
+     *
+     * @return the directory index, or null if the listener cancelled the update.
+     *
+     * @throws IllegalArgumentException if the root directory is null or not a directory.
+     */
+    public RPFDirectoryIndex makeDirectoryIndex(File rootFile, RPFDirectoryIndex.UpdateListener listener)
+    {
+        if (rootFile == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        String path = RPFTiledImageLayer.getDirectoryIndexCachePath(rootFile.getAbsolutePath());
+        RPFDirectoryIndex directoryIndex = new RPFDirectoryIndex();
+
+        // Load the index saved by the previous call, if any. An index that can't be loaded is rebuilt.
+        URL url = WorldWind.getDataFileStore().findFile(path, false);
+        if (url != null)
+        {
+            File file = WWIO.convertURLToFile(url);
+            try
+            {
+                if (file != null)
+                    directoryIndex.load(file);
+            }
+            catch (Exception e)
+            {
+                String message = String.format("Exception while loading RPFDirectoryIndex: %s", file);
+                Logging.logger().log(java.util.logging.Level.SEVERE, message, e);
+            }
+        }
+
+        if (directoryIndex.update(rootFile, listener) < 0)
+            return null;
+
+        // Save the RPFDirectoryIndex to the file cache.
+        File file = WorldWind.getDataFileStore().newFile(path);
+        try
+        {
+            if (file != null)
+                directoryIndex.save(file);
+        }
+        catch (Exception e)
+        {
+            String message = String.format("Exception while saving RPFDirectoryIndex: %s", file);
+            Logging.logger().log(java.util.logging.Level.SEVERE, message, e);
+        }
+
+        return directoryIndex;
+    }
+
     public Layer makeLayer(RPFFileIndex fileIndex)
     {
         if (fileIndex == null)
@@ -277,8 +352,9 @@ public class RPFTiledImageProcessor
             // then create a new wavelet file.
             if (waveletFile != null && (file != null && file.lastModified() > waveletFile.lastModified()))
             {
-                // Get the RPF image file as a BufferedImage.
-                BufferedImage bi = rpfImageFile.getBufferedImage();
+                // Get the RPF image file as a BufferedImage. Frames are already processed in parallel when
+                // there's a thread pool, so decode each frame on its own thread.
+                BufferedImage bi = rpfImageFile.getBufferedImage(this.numThreads <= 1);
 
                 // Must deproject it...
                 bi = deproject(file, bi);
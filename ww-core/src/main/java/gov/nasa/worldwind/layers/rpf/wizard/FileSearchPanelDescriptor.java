@@ -10,8 +10,10 @@ import gov.nasa.worldwind.util.wizard.Wizard;
 import gov.nasa.worldwind.util.wizard.WizardModel;
 import gov.nasa.worldwind.util.FileTree;
 import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.formats.rpf.RPFDirectoryIndex;
 import gov.nasa.worldwind.formats.rpf.RPFFrameFilename;
 import gov.nasa.worldwind.formats.rpf.RPFDataSeries;
+import gov.nasa.worldwind.layers.rpf.RPFTiledImageProcessor;
 
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeEvent;
@@ -197,6 +199,24 @@ public class FileSearchPanelDescriptor extends DefaultPanelDescriptor
         }
     }
 
+    private static class UpdateDescriptionListener implements RPFDirectoryIndex.UpdateListener {
+        private Thread searchThread;
+        private ProgressPanel panel;
+        private UpdateDescriptionListener(Thread searchThread, ProgressPanel panel) {
+            this.searchThread = searchThread;
+            this.panel = panel;
+        }
+        public void directoryListing(File directory) {
+            if (this.panel != null && directory != null && !this.isCancelled()) {
+                this.panel.setProgressDescription1(directory.getPath());
+            }
+        }
+        public boolean isCancelled() {
+            // Directories are listed on the fork-join pool's threads, so cancelling interrupts only the search thread.
+            return this.searchThread.isInterrupted();
+        }
+    }
+
     private List<File> searchSelectedFile(File fileToSearch, FileFilter fileFilter)
     {
         if (Thread.interrupted())
@@ -205,9 +225,21 @@ public class FileSearchPanelDescriptor extends DefaultPanelDescriptor
         List<File> fileList;
         try
         {
-            FileTree fileTree = new FileTree(fileToSearch);
-            fileTree.setMode(FileTree.FILES_ONLY);
-            fileList = fileTree.asList(fileFilter);
+            if (fileToSearch.isDirectory())
+            {
+                // The directory index lists only the directories modified since this directory was last searched.
+                RPFDirectoryIndex directoryIndex = new RPFTiledImageProcessor().makeDirectoryIndex(fileToSearch,
+                    new UpdateDescriptionListener(Thread.currentThread(), this.panelComponent));
+                if (directoryIndex == null || Thread.interrupted())
+                    return null;
+                fileList = directoryIndex.getFrameFiles();
+            }
+            else
+            {
+                FileTree fileTree = new FileTree(fileToSearch);
+                fileTree.setMode(FileTree.FILES_ONLY);
+                fileList = fileTree.asList(fileFilter);
+            }
         }
         catch (Throwable t)
         {
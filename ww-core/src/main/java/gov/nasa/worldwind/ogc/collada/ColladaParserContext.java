@@ -183,5 +183,97 @@ public class ColladaParserContext extends BasicXMLEventParserContext
         this.addDoubleParsers(ns, DoubleFields);
         this.addIntegerParsers(ns, IntegerFields);
         this.addBooleanParsers(ns, BooleanFields);
+
+        this.initializeParserFactories(ns);
+    }
+
+    /**
+     * Registers factories for the geometry and scene graph elements that occur most often in large COLLADA documents,
+     * so that parsers for them are created without reflection. Elements not listed here are created from the
+     * prototype parsers in the parser map.
+     *
+     * @param ns the namespace for which to register the factories.
+     */
+    protected void initializeParserFactories(String ns)
+    {
+        this.registerParserFactory(new QName(ns, "accessor"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new ColladaAccessor(namespaceURI);
+            }
+        });
+
+        this.registerParserFactory(new QName(ns, "float_array"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new ColladaFloatArray(namespaceURI);
+            }
+        });
+
+        this.registerParserFactory(new QName(ns, "input"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new ColladaInput(namespaceURI);
+            }
+        });
+
+        this.registerParserFactory(new QName(ns, "lines"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new ColladaLines(namespaceURI);
+            }
+        });
+
+        this.registerParserFactory(new QName(ns, "matrix"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new ColladaMatrix(namespaceURI);
+            }
+        });
+
+        this.registerParserFactory(new QName(ns, "node"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new ColladaNode(namespaceURI);
+            }
+        });
+
+        this.registerParserFactory(new QName(ns, "p"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new ColladaP(namespaceURI);
+            }
+        });
+
+        this.registerParserFactory(new QName(ns, "param"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new ColladaParam(namespaceURI);
+            }
+        });
+
+        this.registerParserFactory(new QName(ns, "source"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new ColladaSource(namespaceURI);
+            }
+        });
+
+        this.registerParserFactory(new QName(ns, "triangles"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new ColladaTriangles(namespaceURI);
+            }
+        });
     }
 }
@@ -40,7 +40,11 @@ public class KMLAbstractContainer extends KMLAbstractFeature
         throws XMLStreamException
     {
         if (o instanceof KMLAbstractFeature)
-            this.addFeature((KMLAbstractFeature) o);
+        {
+            // When the document is parsed as a feature stream the listener may consume the feature instead.
+            if (!(ctx instanceof KMLParserContext) || ((KMLParserContext) ctx).featureParsed((KMLAbstractFeature) o))
+                this.addFeature((KMLAbstractFeature) o);
+        }
         else
             super.doAddEventContent(o, ctx, event, args);
     }
@@ -0,0 +1,33 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.ogc.kml;
+
+/**
+ * Receives the features of a KML document as they are parsed. Passed to {@link
+ * KMLRoot#parseFeatures(KMLFeatureListener, Object...)} to process documents too large to hold in memory as a complete
+ * object tree.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public interface KMLFeatureListener
+{
+    /**
+     * Called when the end of a feature that is not a container, such as a <i>Placemark</i>, <i>GroundOverlay</i> or
+     * <i>NetworkLink</i>, is reached. The feature is fully parsed and its parent chain leads to the document's {@link
+     * KMLRoot}, so shared styles that precede the feature in the document can be resolved by the feature's style URL.
+     * <p/>
+     * Returning false discards the feature: it is not added to its parent container and its ID is removed from the
+     * document's ID table, so once the listener has converted it to a renderable form the feature may be garbage
+     * collected.
+     *
+     * @param root    the root of the document being parsed.
+     * @param feature the feature that was parsed.
+     *
+     * @return true to retain the feature in the document's object tree, false to discard it.
+     */
+    boolean featureParsed(KMLRoot root, KMLAbstractFeature feature);
+}
@@ -23,6 +23,8 @@ import java.util.Map;
 public class KMLParserContext extends BasicXMLEventParserContext
 {
     protected KMLCoordinatesParser coordinatesParser;
+    /** The listener notified as features are parsed. Null unless the document is being parsed as a feature stream. */
+    protected KMLFeatureListener featureListener;
 
     /** The key used to identify the coordinates parser in the parser context's parser map. */
     protected static QName COORDINATES = new QName("Coordinates");
@@ -258,6 +260,146 @@ public class KMLParserContext extends BasicXMLEventParserContext
         this.addDoubleParsers(ns, DoubleFields);
         this.addIntegerParsers(ns, IntegerFields);
         this.addBooleanParsers(ns, BooleanFields);
+
+        this.initializeParserFactories(ns);
+    }
+
+    /**
+     * Registers factories for the elements that occur most often in large KML documents, such as placemarks and their
+     * geometry, so that parsers for them are created without reflection. Elements not listed here are created from the
+     * prototype parsers in the parser map.
+     *
+     * @param ns the namespace for which to register the factories.
+     */
+    protected void initializeParserFactories(String ns)
+    {
+        this.registerParserFactory(new QName(ns, "Data"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new KMLData(namespaceURI);
+            }
+        });
+
+        this.registerParserFactory(new QName(ns, "ExtendedData"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new KMLExtendedData(namespaceURI);
+            }
+        });
+
+        this.registerParserFactory(new QName(ns, "innerBoundaryIs"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new KMLBoundary(namespaceURI);
+            }
+        });
+
+        this.registerParserFactory(new QName(ns, "LinearRing"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new KMLLinearRing(namespaceURI);
+            }
+        });
+
+        this.registerParserFactory(new QName(ns, "LineString"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new KMLLineString(namespaceURI);
+            }
+        });
+
+        this.registerParserFactory(new QName(ns, "MultiGeometry"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new KMLMultiGeometry(namespaceURI);
+            }
+        });
+
+        this.registerParserFactory(new QName(ns, "outerBoundaryIs"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new KMLBoundary(namespaceURI);
+            }
+        });
+
+        this.registerParserFactory(new QName(ns, "Placemark"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new KMLPlacemark(namespaceURI);
+            }
+        });
+
+        this.registerParserFactory(new QName(ns, "Point"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new KMLPoint(namespaceURI);
+            }
+        });
+
+        this.registerParserFactory(new QName(ns, "Polygon"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new KMLPolygon(namespaceURI);
+            }
+        });
+
+        this.registerParserFactory(new QName(ns, "SchemaData"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new KMLSchemaData(namespaceURI);
+            }
+        });
+
+        this.registerParserFactory(new QName(ns, "SimpleData"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new KMLSimpleData(namespaceURI);
+            }
+        });
+
+        this.registerParserFactory(new QName(ns, "Style"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new KMLStyle(namespaceURI);
+            }
+        });
+
+        this.registerParserFactory(new QName(ns, "styleUrl"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new KMLStyleUrl(namespaceURI);
+            }
+        });
+
+        this.registerParserFactory(new QName(ns, "TimeSpan"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new KMLTimeSpan(namespaceURI);
+            }
+        });
+
+        this.registerParserFactory(new QName(ns, "TimeStamp"), new XMLEventParserFactory()
+        {
+            public XMLEventParser createParser(String namespaceURI)
+            {
+                return new KMLTimeStamp(namespaceURI);
+            }
+        });
     }
 
     protected void initializeVersion2dot1Parsers()
@@ -275,6 +417,11 @@ public class KMLParserContext extends BasicXMLEventParserContext
         {
             this.parsers.put(new QName(ns, entry.getKey().getLocalPart()), entry.getValue());
         }
+
+        for (Map.Entry<QName, XMLEventParserFactory> entry : this.parserFactories.entrySet())
+        {
+            this.parserFactories.put(new QName(ns, entry.getKey().getLocalPart()), entry.getValue());
+        }
     }
 
     protected void initializeCompanionParsers()
@@ -284,6 +431,51 @@ public class KMLParserContext extends BasicXMLEventParserContext
         this.parsers.putAll(XALParserContext.getDefaultParsers());
     }
 
+    /**
+     * Returns the listener notified as features are parsed.
+     *
+     * @return the feature listener, or null if none has been specified.
+     */
+    public KMLFeatureListener getFeatureListener()
+    {
+        return this.featureListener;
+    }
+
+    /**
+     * Specifies the listener to notify as features are parsed. The listener is not shared with parser contexts created
+     * from this one.
+     *
+     * @param listener the feature listener. May be null to indicate that no listener is notified.
+     */
+    public void setFeatureListener(KMLFeatureListener listener)
+    {
+        this.featureListener = listener;
+    }
+
+    /**
+     * Notifies this context's feature listener, if any, that a feature has been parsed. Containers are not passed to
+     * the listener. If the listener discards the feature, the feature's entry in the ID table is removed so that the
+     * table does not retain it.
+     *
+     * @param feature the feature that was parsed.
+     *
+     * @return true if the feature's parent should retain the feature, false if the listener discarded it.
+     */
+    public boolean featureParsed(KMLAbstractFeature feature)
+    {
+        if (this.featureListener == null || feature == null || feature instanceof KMLAbstractContainer)
+            return true;
+
+        if (this.featureListener.featureParsed(feature.getRoot(), feature))
+            return true;
+
+        String id = feature.getId();
+        if (id != null)
+            this.idTable.remove(id, feature);
+
+        return false;
+    }
+
     /**
      * Get the default coordinates parser.
      *
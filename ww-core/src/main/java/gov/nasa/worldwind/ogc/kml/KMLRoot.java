@@ -1107,6 +1107,58 @@ public class KMLRoot extends KMLAbstractObject implements KMLRenderable
         return null;
     }
 
+    /**
+     * Parses the KML document as a stream of features. Each feature that is not a container, such as a
+     * <i>Placemark</i>, is passed to the specified listener as soon as its end element is reached, so the first
+     * features can be displayed before the rest of the document is read. Features the listener discards are not added
+     * to the document's object tree, which allows documents larger than the available memory to be processed by
+     * converting each feature to a compact renderable form and discarding it.
+     * <p/>
+     * Containers, styles and style maps are retained, and styles remain accessible through the document's ID table.
+     * Shared styles that precede a feature in the document can therefore be resolved from within the listener. This
+     * method returns when the full document has been parsed.
+     *
+     * @param listener the listener to receive the parsed features.
+     * @param args     optional arguments to pass to parsers of sub-elements.
+     *
+     * @return <code>this</code> if parsing is successful, otherwise  null.
+     *
+     * @throws IllegalArgumentException if the listener is null.
+     * @throws javax.xml.stream.XMLStreamException
+     *                                  if an exception occurs while attempting to read the event stream.
+     */
+    public KMLRoot parseFeatures(KMLFeatureListener listener, Object... args) throws XMLStreamException
+    {
+        if (listener == null)
+        {
+            String message = Logging.getMessage("nullValue.ListenerIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.parserContext.setFeatureListener(listener);
+        try
+        {
+            return this.parse(args);
+        }
+        finally
+        {
+            this.parserContext.setFeatureListener(null);
+        }
+    }
+
+    @Override
+    protected void doAddEventContent(Object o, XMLEventParserContext ctx, XMLEvent event, Object... args)
+        throws XMLStreamException
+    {
+        // A document may consist of a single feature, which is also passed to the feature listener, if any.
+        if (o instanceof KMLAbstractFeature && ctx instanceof KMLParserContext
+            && !((KMLParserContext) ctx).featureParsed((KMLAbstractFeature) o))
+            return;
+
+        super.doAddEventContent(o, ctx, event, args);
+    }
+
     /** Closes the event stream associated with this context's XML event reader. */
     protected void closeEventStream()
     {
@@ -823,10 +823,11 @@ public class DrawContextImpl extends WWObjectImpl implements DrawContext
         for (OrderedRenderableEntry ore : declutterableArray)
         {
             declutterables.add((Declutterable) ore.or);
-
-            orderedRenderables.remove(ore);
         }
 
+        // Remove the entries in a single pass. Removing each entry individually searches the whole queue for it.
+        this.orderedRenderables.removeAll(new HashSet<OrderedRenderableEntry>(declutterableArray));
+
         // Tell the filter to apply itself and draw whatever it draws.
         this.getClutterFilter().apply(this, declutterables);
     }
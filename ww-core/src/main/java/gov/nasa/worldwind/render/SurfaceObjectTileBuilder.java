@@ -412,8 +412,10 @@ public class SurfaceObjectTileBuilder
             return;
 
         // Assemble the current visible tiles and update their associated textures if necessary.
+        long start = Instrumentation.start();
         this.assembleTiles(dc);
         this.updateTiles(dc);
+        Instrumentation.stop(Instrumentation.BUILD_SURFACE_TILES, start);
 
         // Clear references to surface renderables to avoid dangling references. The surface renderable list is no
         // longer needed, no are the lists held by each tile.
@@ -6,6 +6,7 @@
 package gov.nasa.worldwind.retrieve;
 
 import gov.nasa.worldwind.avlist.*;
+import gov.nasa.worldwind.cache.FileStoreFile;
 import gov.nasa.worldwind.formats.dds.DDSCompressor;
 import gov.nasa.worldwind.util.*;
 
@@ -238,7 +239,12 @@ public abstract class AbstractRetrievalPostProcessor implements RetrievalPostPro
 
         synchronized (this.getFileLock()) // synchronize with read of file in another class
         {
-            WWIO.saveBuffer(buffer != null ? buffer : this.getRetriever().getBuffer(), outFile);
+            // Files kept by their file store also record the expiration time reported by the server.
+            if (outFile instanceof FileStoreFile)
+                ((FileStoreFile) outFile).save(buffer != null ? buffer : this.getRetriever().getBuffer(),
+                    this.getRetriever().getExpirationTime());
+            else
+                WWIO.saveBuffer(buffer != null ? buffer : this.getRetriever().getBuffer(), outFile);
         }
 
         return true;
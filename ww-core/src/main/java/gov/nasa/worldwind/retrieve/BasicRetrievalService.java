@@ -87,6 +87,12 @@ public final class BasicRetrievalService extends WWObjectImpl
                 throw new IllegalArgumentException(msg);
             }
 
+            // Prefetch requests follow all others.
+            boolean thisPrefetch = this.priority == PREFETCH_PRIORITY;
+            boolean thatPrefetch = that.priority == PREFETCH_PRIORITY;
+            if (thisPrefetch != thatPrefetch)
+                return thisPrefetch ? 1 : -1;
+
             if (this.priority > 0 && that.priority > 0) // only secondary priority used if either is negative
             {
                 // Requests submitted within different time-granularity periods are ordered exclusive of their
@@ -376,15 +382,49 @@ public final class BasicRetrievalService extends WWObjectImpl
         RetrievalTask task = new RetrievalTask(retriever, priority);
         retriever.setSubmitTime(System.currentTimeMillis());
 
-        // Do not queue duplicates.
-        if (this.activeTasks.contains(task) || this.executor.getQueue().contains(task))
+        // Do not queue duplicates, except to replace a prefetch request that would otherwise run after every other
+        // request.
+        if (this.activeTasks.contains(task))
+            return null;
+        if (this.executor.getQueue().contains(task) && (priority == PREFETCH_PRIORITY || !this.removePrefetch(task)))
             return null;
 
+        // The service notifies the requester through the retriever's post-processor, so the retriever need not
+        // occupy a retrieval thread while it waits for another request's response.
+        if (retriever instanceof URLRetriever)
+            ((URLRetriever) retriever).setDeferrable(true);
+
         this.executor.execute(task);
 
         return task;
     }
 
+    /**
+     * Removes and cancels the queued prefetch request equivalent to a specified task.
+     *
+     * @param task the task whose equivalent prefetch request to remove.
+     *
+     * @return true if a prefetch request was removed, false if the queued request equivalent to the task is not a
+     *         prefetch request.
+     */
+    private boolean removePrefetch(RetrievalTask task)
+    {
+        for (Runnable runnable : this.executor.getQueue())
+        {
+            RetrievalTask queued = (RetrievalTask) runnable;
+            if (!queued.equals(task))
+                continue;
+
+            if (queued.getPriority() != PREFETCH_PRIORITY || !this.executor.getQueue().remove(queued))
+                return false;
+
+            queued.cancel(false);
+            return true;
+        }
+
+        return false;
+    }
+
     /**
      * @param poolSize the number of threads in the thread pool
      *
@@ -5,20 +5,165 @@
  */
 package gov.nasa.worldwind.retrieve;
 
-import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.util.*;
 
+import java.io.*;
 import java.net.*;
 import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 /**
+ * Retrieves resources using HTTP or HTTPS.
+ * <p/>
+ * Connections are persistent: the response body, including the body of an error response, is always read to its end
+ * so that the connection returns to the Java runtime's per-host keep-alive cache and is reused by the next request to
+ * the same host. The Java runtime keeps up to five idle connections per host. Applications whose retrieval pool is
+ * larger may raise that limit by specifying {@link AVKey#RETRIEVAL_HTTP_MAX_CONNECTIONS} in the World Wind
+ * configuration, which sets the JVM-wide <code>http.maxConnections</code> system property unless the application has
+ * already set it. The property is read by the Java runtime when it makes its first HTTP request, so it has no effect if
+ * another component makes an HTTP request before this class is loaded.
+ * <p/>
+ * Requests for the same URL that are in progress at the same time are coalesced: the first retriever makes the
+ * request, and the others receive its response. A retriever run by a retrieval service is deferred (see {@link
+ * #isDeferred()}): it returns from {@link #call()} at once rather than occupy a retrieval thread while it waits. When
+ * the response arrives, the first retriever runs its own post-processor and then, on the same thread, gives each
+ * deferred retriever its own copy of the content and runs that retriever's post-processor. If the request fails, each
+ * deferred retriever ends in the error state. If the first retriever is interrupted before its response arrives, each
+ * deferred retriever ends in the interrupted state.
+ * <p/>
+ * A retriever that is not {@link #isDeferrable()}, such as one whose <code>call()</code> method is invoked directly,
+ * instead blocks in <code>call()</code> until the response arrives, then reads its own copy of the content and runs its
+ * post-processor on its own thread. If the request fails, its <code>call()</code> method throws an exception. If the
+ * first retriever is interrupted before its response arrives, the blocked retriever makes its own request.
+ *
  * @author Tom Gaskins
  * @version $Id$
  */
 public class HTTPRetriever extends URLRetriever
 {
+    /** The response of a request that other retrievers for the same URL are waiting for. */
+    protected static class SharedResponse
+    {
+        protected boolean done;
+        protected boolean abandoned;
+        protected final List<HTTPRetriever> waiting = new ArrayList<HTTPRetriever>();
+        protected int numBlocked;
+        protected int responseCode;
+        protected String responseMessage;
+        protected String contentType;
+        protected int contentLength;
+        protected long expiration;
+        protected ByteBuffer buffer;
+        protected Exception exception;
+
+        /**
+         * Registers a retriever waiting for this response.
+         *
+         * @param retriever the waiting retriever.
+         *
+         * @return true if the retriever is registered, false if the response is already complete.
+         */
+        protected synchronized boolean addWaiting(HTTPRetriever retriever)
+        {
+            if (this.done)
+                return false;
+
+            this.waiting.add(retriever);
+            return true;
+        }
+
+        /**
+         * Blocks the calling thread until this response is complete.
+         *
+         * @return true if the response completed while the thread waited, false if it was already complete.
+         *
+         * @throws InterruptedException if the calling thread is interrupted while waiting.
+         */
+        protected synchronized boolean awaitCompletion() throws InterruptedException
+        {
+            if (this.done)
+                return false;
+
+            this.numBlocked++;
+            try
+            {
+                while (!this.done)
+                {
+                    this.wait();
+                }
+            }
+            finally
+            {
+                this.numBlocked--;
+            }
+
+            return true;
+        }
+
+        /**
+         * Returns the retrievers waiting for this response. No retrievers are added once the response is complete.
+         *
+         * @return the waiting retrievers.
+         */
+        protected synchronized List<HTTPRetriever> getWaiting()
+        {
+            return new ArrayList<HTTPRetriever>(this.waiting);
+        }
+
+        protected synchronized void complete(HTTPRetriever retriever, ByteBuffer buffer, Exception exception)
+        {
+            if (this.done)
+                return;
+
+            this.responseCode = retriever.responseCode;
+            this.responseMessage = retriever.responseMessage;
+            this.contentType = retriever.contentType;
+            this.contentLength = retriever.contentLength;
+            this.expiration = retriever.expiration.get();
+            this.exception = exception;
+
+            // Keep a private copy for the waiting retrievers, since the first retriever's post-processor may modify its
+            // buffer.
+            if (buffer != null && (!this.waiting.isEmpty() || this.numBlocked > 0))
+                this.buffer = copyBuffer(buffer);
+
+            this.done = true;
+            this.notifyAll();
+        }
+
+        protected synchronized void abandon()
+        {
+            if (this.done)
+                return;
+
+            this.abandoned = true;
+            this.done = true;
+            this.notifyAll();
+        }
+    }
+
+    /** Requests in progress that other retrievers may wait for, keyed by {@link #getSharedResponseKey()}. */
+    protected static final ConcurrentHashMap<String, SharedResponse> sharedResponses =
+        new ConcurrentHashMap<String, SharedResponse>();
+
+    static
+    {
+        // The property affects every HTTP client in the JVM, so it's set only if the configuration asks for it.
+        Integer maxConnections = Configuration.getIntegerValue(AVKey.RETRIEVAL_HTTP_MAX_CONNECTIONS);
+        if (maxConnections != null && maxConnections > 0 && System.getProperty("http.maxConnections") == null)
+            System.setProperty("http.maxConnections", maxConnections.toString());
+    }
+
     private int responseCode;
     private String responseMessage;
+    protected volatile SharedResponse sharedResponse;
+    protected volatile boolean sharedResponseOwner;
+    protected volatile boolean deferred;
+    protected volatile SharedResponse awaitedResponse;
 
     public HTTPRetriever(URL url, RetrievalPostProcessor postProcessor)
     {
@@ -35,6 +180,258 @@ public class HTTPRetriever extends URLRetriever
         return this.responseMessage;
     }
 
+    /**
+     * Indicates whether this retriever received a response requested by another retriever for the same URL rather than
+     * making its own request.
+     *
+     * @return true if the response was shared with another retriever, otherwise false.
+     */
+    public boolean isResponseShared()
+    {
+        return this.sharedResponse != null && !this.sharedResponseOwner;
+    }
+
+    /**
+     * Indicates whether this retriever waits for the response to a request made by another retriever for the same URL.
+     *
+     * @return true if the retriever's response is provided by another retriever, otherwise false.
+     */
+    @Override
+    protected boolean isDeferred()
+    {
+        return this.deferred;
+    }
+
+    /**
+     * Returns the key identifying requests that can share a response. Retrievers that extract zip entries receive
+     * different content than those that don't, so the key includes that option as well as the URL.
+     *
+     * @return the key identifying this retriever's request.
+     */
+    protected String getSharedResponseKey()
+    {
+        return WWUtil.isEmpty(this.getValue(EXTRACT_ZIP_ENTRY)) ? this.url.toString() : this.url.toString() + "#zip";
+    }
+
+    @Override
+    protected URLConnection openConnection() throws IOException
+    {
+        String key = this.getSharedResponseKey();
+        while (true)
+        {
+            SharedResponse response = new SharedResponse();
+            SharedResponse existing = sharedResponses.putIfAbsent(key, response);
+            if (existing == null)
+            {
+                this.sharedResponse = response;
+                this.sharedResponseOwner = true;
+                break;
+            }
+
+            this.sharedResponse = existing;
+            this.setState(RETRIEVER_STATE_READING);
+            if (this.isDeferrable())
+            {
+                // Mark this retriever deferred before registering it, since the existing request's retriever may
+                // complete it as soon as it's registered.
+                this.deferred = true;
+                if (existing.addWaiting(this))
+                    return null;
+            }
+            else if (this.awaitCompletion(existing))
+            {
+                // The response is read by read() on this thread, unless this thread has been interrupted.
+                this.awaitedResponse = existing;
+                return null;
+            }
+
+            // The existing request has completed before this retriever could wait for it, or was abandoned.
+            this.sharedResponse = null;
+            this.deferred = false;
+            this.setState(RETRIEVER_STATE_CONNECTING);
+            sharedResponses.remove(key, existing);
+        }
+
+        try
+        {
+            return super.openConnection();
+        }
+        catch (IOException e)
+        {
+            this.completeSharedResponse(null, e);
+            throw e;
+        }
+        catch (RuntimeException e)
+        {
+            this.completeSharedResponse(null, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Blocks until a request made by another retriever for the same URL completes.
+     *
+     * @param response the response to wait for.
+     *
+     * @return true if this retriever can use the response, false if it must make its own request because the response
+     *         was already complete or was abandoned.
+     */
+    protected boolean awaitCompletion(SharedResponse response)
+    {
+        try
+        {
+            return response.awaitCompletion() && !response.abandoned;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt(); // call() ends this retriever in the interrupted state
+            return true;
+        }
+    }
+
+    @Override
+    protected ByteBuffer read() throws Exception
+    {
+        if (this.awaitedResponse != null)
+            return this.readSharedResponse(this.awaitedResponse);
+
+        try
+        {
+            ByteBuffer buffer = super.read();
+            this.completeSharedResponse(buffer, null);
+            return buffer;
+        }
+        catch (Exception e)
+        {
+            this.completeSharedResponse(null, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the response of a request made by another retriever, which this retriever waited for in {@link
+     * #openConnection()}.
+     *
+     * @param response the completed response.
+     *
+     * @return a copy of the response content, or null if the response has no content.
+     *
+     * @throws IOException if the request failed.
+     */
+    protected ByteBuffer readSharedResponse(SharedResponse response) throws IOException
+    {
+        if (response.exception != null)
+            throw new IOException(response.exception.toString());
+
+        return this.setResponse(response);
+    }
+
+    /**
+     * Copies the response of a request made by another retriever to this retriever.
+     *
+     * @param response the completed response.
+     *
+     * @return a copy of the response content, or null if the response has no content.
+     */
+    protected ByteBuffer setResponse(SharedResponse response)
+    {
+        this.responseCode = response.responseCode;
+        this.responseMessage = response.responseMessage;
+        this.contentType = response.contentType;
+        this.contentLength = response.contentLength;
+        this.expiration.set(response.expiration);
+
+        if (response.buffer == null)
+            return null;
+
+        this.contentLengthRead.set(response.buffer.limit());
+        return copyBuffer(response.buffer);
+    }
+
+    protected void completeSharedResponse(ByteBuffer buffer, Exception exception)
+    {
+        if (!this.sharedResponseOwner)
+            return;
+
+        // Remove the response before completing it so that later requests for the URL make a new request.
+        sharedResponses.remove(this.getSharedResponseKey(), this.sharedResponse);
+        this.sharedResponse.complete(this, buffer, exception);
+    }
+
+    @Override
+    protected void end() throws Exception
+    {
+        if (!this.sharedResponseOwner)
+        {
+            super.end();
+            return;
+        }
+
+        // Release any retrievers still waiting, for example because this retriever was interrupted.
+        sharedResponses.remove(this.getSharedResponseKey(), this.sharedResponse);
+        this.sharedResponse.abandon();
+
+        try
+        {
+            super.end();
+        }
+        finally
+        {
+            for (HTTPRetriever retriever : this.sharedResponse.getWaiting())
+            {
+                retriever.endDeferred(this.sharedResponse);
+            }
+        }
+    }
+
+    /**
+     * Gives a deferred retriever the response it was waiting for, and runs its post-processor. Called on the thread of
+     * the retriever that made the request, once that retriever has been post-processed.
+     *
+     * @param response the completed response.
+     */
+    protected void endDeferred(SharedResponse response)
+    {
+        if (response.abandoned)
+        {
+            this.setState(RETRIEVER_STATE_INTERRUPTED);
+        }
+        else if (response.exception != null)
+        {
+            // Each retriever reports the failure itself rather than sharing the exception of the request.
+            this.setState(RETRIEVER_STATE_ERROR);
+            Logging.logger().log(Level.FINE,
+                Logging.getMessage("URLRetriever.ErrorAttemptingToRetrieve", this.url.toString()),
+                response.exception.toString());
+        }
+        else
+        {
+            this.byteBuffer = this.setResponse(response);
+            this.setState(RETRIEVER_STATE_SUCCESSFUL);
+        }
+
+        try
+        {
+            this.end();
+        }
+        catch (Exception e)
+        {
+            // Logged by end(). A failed post-processor must not prevent the other retrievers' post-processing.
+        }
+    }
+
+    protected static ByteBuffer copyBuffer(ByteBuffer buffer)
+    {
+        ByteBuffer source = buffer.duplicate();
+        source.rewind();
+
+        ByteBuffer copy = ByteBuffer.allocate(source.remaining());
+        copy.put(source);
+        copy.flip();
+
+        return copy;
+    }
+
     protected ByteBuffer doRead(URLConnection connection) throws Exception
     {
         if (connection == null)
@@ -56,6 +453,41 @@ public class HTTPRetriever extends URLRetriever
         if (this.responseCode == HttpURLConnection.HTTP_OK)
             return super.doRead(connection);
 
+        this.discardErrorStream(htpc);
+
         return null;
     }
+
+    /**
+     * Reads and discards the body of an error response. The connection can't be reused until its response has been
+     * read to its end.
+     *
+     * @param connection the connection that received the error response.
+     */
+    protected void discardErrorStream(HttpURLConnection connection)
+    {
+        InputStream errorStream = connection.getErrorStream();
+        if (errorStream == null)
+            return;
+
+        ByteBuffer page = readBufferPool.acquire();
+        try
+        {
+            byte[] bytes = page.array();
+            //noinspection StatementWithEmptyBody
+            while (errorStream.read(bytes) >= 0)
+            {
+            }
+        }
+        catch (IOException e)
+        {
+            Logging.logger().log(Level.FINE, Logging.getMessage("URLRetriever.ErrorReadingFromConnection",
+                connection.getURL()), e);
+        }
+        finally
+        {
+            readBufferPool.release(page);
+            WWIO.closeStream(errorStream, connection.getURL().toString());
+        }
+    }
 }
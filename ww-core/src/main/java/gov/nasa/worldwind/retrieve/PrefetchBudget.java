@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+/**
+ * Tracks the bytes that a prefetch cycle may still retrieve from remote servers and load into memory. A request is
+ * allowed while the corresponding amount is positive, so the last request of a cycle may exceed the budget by the size
+ * of one tile.
+ *
+ * @author tag
+ * @version $Id$
+ * @see Prefetchable
+ */
+public class PrefetchBudget
+{
+    protected long retrievalBytes;
+    protected long memoryBytes;
+
+    /**
+     * Creates a budget.
+     *
+     * @param retrievalBytes the number of bytes that may be retrieved from remote servers.
+     * @param memoryBytes    the number of bytes that may be loaded from the file store into memory.
+     */
+    public PrefetchBudget(long retrievalBytes, long memoryBytes)
+    {
+        this.retrievalBytes = retrievalBytes;
+        this.memoryBytes = memoryBytes;
+    }
+
+    public long getRetrievalBytes()
+    {
+        return this.retrievalBytes;
+    }
+
+    public long getMemoryBytes()
+    {
+        return this.memoryBytes;
+    }
+
+    /**
+     * Indicates whether both the retrieval and the memory budget are spent.
+     *
+     * @return true if no further requests are allowed, otherwise false.
+     */
+    public boolean isExhausted()
+    {
+        return this.retrievalBytes <= 0 && this.memoryBytes <= 0;
+    }
+
+    /**
+     * Charges a retrieval to the budget if any of the retrieval budget remains.
+     *
+     * @param bytes the estimated size of the retrieval.
+     *
+     * @return true if the retrieval is allowed, otherwise false.
+     */
+    public boolean consumeRetrievalBytes(long bytes)
+    {
+        if (this.retrievalBytes <= 0)
+            return false;
+
+        this.retrievalBytes -= bytes;
+        return true;
+    }
+
+    /**
+     * Charges a load into memory to the budget if any of the memory budget remains.
+     *
+     * @param bytes the estimated size of the loaded data.
+     *
+     * @return true if the load is allowed, otherwise false.
+     */
+    public boolean consumeMemoryBytes(long bytes)
+    {
+        if (this.memoryBytes <= 0)
+            return false;
+
+        this.memoryBytes -= bytes;
+        return true;
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import gov.nasa.worldwind.geom.Sector;
+
+/**
+ * Interface for objects whose data can be requested ahead of the view, before it becomes visible. Prefetch requests
+ * are issued by a {@link Prefetcher} from the regions it predicts will soon be visible.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public interface Prefetchable
+{
+    /**
+     * Requests the data covering a sector at a resolution. Data that's neither in memory nor in the file store is
+     * retrieved at {@link RetrievalService#PREFETCH_PRIORITY}, and data in the file store may be loaded into memory.
+     * The cost of each request is charged to the specified budget, and no further requests are made once the
+     * corresponding part of the budget is spent.
+     * <p/>
+     * This method is called on a thread other than the rendering thread. It returns once the requests are issued and
+     * doesn't wait for them to complete.
+     *
+     * @param sector     the sector to request data for.
+     * @param resolution the target resolution, in radians of latitude per texel.
+     * @param budget     the retrieval and memory budget to charge the requests to.
+     *
+     * @throws IllegalArgumentException if the sector or budget is null.
+     */
+    void prefetch(Sector sector, double resolution, PrefetchBudget budget);
+}
@@ -0,0 +1,445 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.animation.Animator;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.event.*;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.*;
+import gov.nasa.worldwind.layers.Layer;
+import gov.nasa.worldwind.terrain.CompoundElevationModel;
+import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.view.orbit.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * Requests the data that a {@link WorldWindow}'s layers and elevation model will need for the regions the view is
+ * expected to show within the next few seconds. Layers and elevation models request only the tiles that are visible,
+ * so without prefetching each newly visible region is blank or coarse until its tiles arrive.
+ * <p/>
+ * The prefetcher samples the location the view looks at, and the distance from which it's viewed, once per prefetch
+ * interval and predicts where the view will look by extrapolating their motion over the prefetch horizon. When an orbit
+ * view is flying to a position, for example with a {@link FlyToOrbitViewAnimator}, the end of the flight is predicted
+ * as well and is prefetched first. For each predicted position the prefetcher estimates the visible sector and
+ * resolution, and calls {@link Prefetchable#prefetch(gov.nasa.worldwind.geom.Sector, double, PrefetchBudget)} on the
+ * model's enabled {@link Prefetchable} layers and elevation models.
+ * <p/>
+ * Prefetching runs on its own thread and only while the retrieval service isn't already busy with visible tiles.
+ * Prefetched tiles are retrieved at {@link RetrievalService#PREFETCH_PRIORITY}, so they never delay or change requests
+ * for visible tiles. Each prefetch cycle may retrieve the number of bytes the prefetch bandwidth allows during one
+ * interval, and load up to the memory budget from the file store into memory.
+ * <p/>
+ * The defaults are read from the World Wind configuration: {@link AVKey#PREFETCH_BANDWIDTH} (bytes per second),
+ * {@link AVKey#PREFETCH_MEMORY_BUDGET} (bytes per cycle), {@link AVKey#PREFETCH_HORIZON} and {@link
+ * AVKey#PREFETCH_INTERVAL} (milliseconds). Prefetching starts when the prefetcher is constructed and stops when it's
+ * disposed.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public class Prefetcher implements RenderingListener, Disposable
+{
+    protected static final long DEFAULT_BANDWIDTH = 1048576; // bytes per second
+    protected static final long DEFAULT_MEMORY_BUDGET = 8388608; // bytes per cycle
+    protected static final long DEFAULT_HORIZON = 3000; // milliseconds
+    protected static final long DEFAULT_INTERVAL = 1000; // milliseconds
+    /** The number of positions predicted along the view's motion. */
+    protected static final int NUM_PREDICTIONS = 3;
+    /** Enlarges the visible radius at a predicted position to allow for the view's pitch and aspect ratio. */
+    protected static final double VISIBLE_RADIUS_SCALE = 1.5;
+    protected static final double MIN_DISTANCE = 100;
+
+    /** The location a view looks at, the distance from which it's viewed, and the view's projection, at one time. */
+    protected static class ViewSample
+    {
+        protected final long time;
+        protected final LatLon location;
+        protected final double distance;
+        protected final Angle fieldOfView;
+        protected final double pixelSizePerMeter;
+
+        protected ViewSample(long time, LatLon location, double distance, Angle fieldOfView, double pixelSizePerMeter)
+        {
+            this.time = time;
+            this.location = location;
+            this.distance = distance;
+            this.fieldOfView = fieldOfView;
+            this.pixelSizePerMeter = pixelSizePerMeter;
+        }
+    }
+
+    /** A location expected to be at the center of the view, and the distance from which it's viewed. */
+    protected static class PrefetchTarget
+    {
+        protected final LatLon location;
+        protected final double distance;
+
+        protected PrefetchTarget(LatLon location, double distance)
+        {
+            this.location = location;
+            this.distance = Math.max(distance, MIN_DISTANCE);
+        }
+    }
+
+    protected final WorldWindow wwd;
+    protected long bandwidth;
+    protected long memoryBudget;
+    protected long horizon;
+    protected long interval;
+    protected ExecutorService executor;
+    protected final AtomicBoolean prefetching = new AtomicBoolean();
+    protected ViewSample lastSample;
+
+    /**
+     * Creates a prefetcher for a World Window and starts prefetching.
+     *
+     * @param wwd the World Window whose layers and elevation model to prefetch for.
+     *
+     * @throws IllegalArgumentException if the World Window is null.
+     */
+    public Prefetcher(WorldWindow wwd)
+    {
+        if (wwd == null)
+        {
+            String msg = Logging.getMessage("nullValue.WorldWindow");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.wwd = wwd;
+        this.bandwidth = Configuration.getLongValue(AVKey.PREFETCH_BANDWIDTH, DEFAULT_BANDWIDTH);
+        this.memoryBudget = Configuration.getLongValue(AVKey.PREFETCH_MEMORY_BUDGET, DEFAULT_MEMORY_BUDGET);
+        this.horizon = Configuration.getLongValue(AVKey.PREFETCH_HORIZON, DEFAULT_HORIZON);
+        this.interval = Configuration.getLongValue(AVKey.PREFETCH_INTERVAL, DEFAULT_INTERVAL);
+
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                thread.setName("World Wind Prefetcher");
+                return thread;
+            }
+        });
+
+        this.wwd.addRenderingListener(this);
+    }
+
+    public WorldWindow getWorldWindow()
+    {
+        return this.wwd;
+    }
+
+    /**
+     * Returns the number of bytes per second that prefetching may retrieve from remote servers.
+     *
+     * @return the prefetch bandwidth, in bytes per second.
+     */
+    public long getBandwidth()
+    {
+        return this.bandwidth;
+    }
+
+    /**
+     * Specifies the number of bytes per second that prefetching may retrieve from remote servers. A value of 0
+     * prevents prefetching from retrieving data.
+     *
+     * @param bandwidth the prefetch bandwidth, in bytes per second.
+     */
+    public void setBandwidth(long bandwidth)
+    {
+        this.bandwidth = bandwidth;
+    }
+
+    /**
+     * Returns the number of bytes that each prefetch cycle may load from the file store into memory.
+     *
+     * @return the memory budget, in bytes.
+     */
+    public long getMemoryBudget()
+    {
+        return this.memoryBudget;
+    }
+
+    /**
+     * Specifies the number of bytes that each prefetch cycle may load from the file store into memory. A value of 0
+     * prevents prefetching from loading data into memory.
+     *
+     * @param memoryBudget the memory budget, in bytes.
+     */
+    public void setMemoryBudget(long memoryBudget)
+    {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Returns how far ahead the view's motion is predicted.
+     *
+     * @return the prefetch horizon, in milliseconds.
+     */
+    public long getHorizon()
+    {
+        return this.horizon;
+    }
+
+    /**
+     * Specifies how far ahead the view's motion is predicted.
+     *
+     * @param horizon the prefetch horizon, in milliseconds.
+     */
+    public void setHorizon(long horizon)
+    {
+        this.horizon = horizon;
+    }
+
+    /**
+     * Returns the time between prefetch cycles.
+     *
+     * @return the prefetch interval, in milliseconds.
+     */
+    public long getInterval()
+    {
+        return this.interval;
+    }
+
+    /**
+     * Specifies the time between prefetch cycles.
+     *
+     * @param interval the prefetch interval, in milliseconds.
+     *
+     * @throws IllegalArgumentException if the interval is less than 1.
+     */
+    public void setInterval(long interval)
+    {
+        if (interval < 1)
+        {
+            String msg = Logging.getMessage("generic.ArgumentOutOfRange", interval);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.interval = interval;
+    }
+
+    /** Stops prefetching. Requests already made to the retrieval service are not cancelled. */
+    public void dispose()
+    {
+        this.wwd.removeRenderingListener(this);
+        this.executor.shutdownNow();
+    }
+
+    public void stageChanged(RenderingEvent event)
+    {
+        if (!RenderingEvent.AFTER_BUFFER_SWAP.equals(event.getStage()))
+            return;
+
+        long now = System.currentTimeMillis();
+        if (this.lastSample != null && now - this.lastSample.time < this.interval)
+            return;
+
+        View view = this.wwd.getView();
+        if (view == null || view.getGlobe() == null || view.getEyePosition() == null)
+            return;
+
+        // Sample the view and its animators here, on the rendering thread, and do the rest on the prefetch thread.
+        ViewSample sample = this.createSample(view, now);
+        List<PrefetchTarget> targets = this.predictTargets(view, this.lastSample, sample);
+        this.lastSample = sample;
+
+        if (targets.isEmpty() || this.executor.isShutdown())
+            return;
+
+        // Visible tiles take precedence. Skip this cycle if they're still waiting for the retrieval service.
+        RetrievalService service = WorldWind.getRetrievalService();
+        if (service.getNumRetrieversPending() > service.getRetrieverPoolSize())
+            return;
+
+        if (!this.prefetching.compareAndSet(false, true))
+            return;
+
+        final Globe globe = view.getGlobe();
+        final List<PrefetchTarget> finalTargets = targets;
+        final ViewSample finalSample = sample;
+        final PrefetchBudget budget = this.createBudget();
+        try
+        {
+            this.executor.execute(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        prefetch(globe, finalTargets, finalSample, budget);
+                    }
+                    catch (Exception e)
+                    {
+                        Logging.logger().log(Level.FINE, Logging.getMessage("Prefetcher.ExceptionPrefetching"), e);
+                    }
+                    finally
+                    {
+                        prefetching.set(false);
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            this.prefetching.set(false); // the prefetcher has been disposed
+        }
+    }
+
+    /**
+     * Samples the location the view looks at. When the view's center isn't on the globe, such as when the view looks
+     * above the horizon, the location beneath the eye and the eye's altitude are used instead.
+     *
+     * @param view the view.
+     * @param time the time of the sample.
+     *
+     * @return the view sample.
+     */
+    protected ViewSample createSample(View view, long time)
+    {
+        LatLon location = view.getEyePosition();
+        double distance = view.getEyePosition().getAltitude();
+
+        Vec4 centerPoint = view.getCenterPoint();
+        if (centerPoint != null && view.getEyePoint() != null)
+        {
+            location = view.getGlobe().computePositionFromPoint(centerPoint);
+            distance = view.getEyePoint().distanceTo3(centerPoint);
+        }
+
+        return new ViewSample(time, location, distance, view.getFieldOfView(), view.computePixelSizeAtDistance(1));
+    }
+
+    protected PrefetchBudget createBudget()
+    {
+        return new PrefetchBudget(this.bandwidth * this.interval / 1000, this.memoryBudget);
+    }
+
+    /**
+     * Predicts the view's positions within the prefetch horizon. The end positions of an orbit view's fly-to animation
+     * come first, followed by positions extrapolated from the motion of the view's look-at location and distance
+     * between two samples, nearest first. No positions are predicted for a view that's stationary.
+     *
+     * @param view     the view.
+     * @param previous the previous sample of the view, or null if there is none.
+     * @param current  the current sample of the view.
+     *
+     * @return the predicted positions.
+     */
+    protected List<PrefetchTarget> predictTargets(View view, ViewSample previous, ViewSample current)
+    {
+        ArrayList<PrefetchTarget> targets = new ArrayList<PrefetchTarget>();
+
+        if (view.getViewInputHandler() instanceof OrbitViewInputHandler)
+        {
+            for (Animator animator : ((OrbitViewInputHandler) view.getViewInputHandler()).getActiveAnimators())
+            {
+                if (animator instanceof FlyToOrbitViewAnimator)
+                {
+                    FlyToOrbitViewAnimator flyTo = (FlyToOrbitViewAnimator) animator;
+                    targets.add(new PrefetchTarget(flyTo.getEndCenterPosition(), flyTo.getEndZoom()));
+                }
+            }
+        }
+
+        if (previous == null || current.time <= previous.time)
+            return targets;
+
+        LatLon p0 = previous.location;
+        LatLon p1 = current.location;
+        double dt = current.time - previous.time;
+        double dLat = (p1.getLatitude().degrees - p0.getLatitude().degrees) / dt;
+        double dLon = Angle.normalizedDegreesLongitude(p1.getLongitude().degrees - p0.getLongitude().degrees) / dt;
+        double dDistance = (current.distance - previous.distance) / dt;
+
+        if (dLat == 0 && dLon == 0 && dDistance == 0)
+            return targets;
+
+        for (int i = 1; i <= NUM_PREDICTIONS; i++)
+        {
+            double t = this.horizon * i / (double) NUM_PREDICTIONS;
+            double lat = Angle.normalizedDegreesLatitude(p1.getLatitude().degrees + dLat * t);
+            double lon = Angle.normalizedDegreesLongitude(p1.getLongitude().degrees + dLon * t);
+            targets.add(new PrefetchTarget(LatLon.fromDegrees(lat, lon), current.distance + dDistance * t));
+        }
+
+        return targets;
+    }
+
+    /**
+     * Prefetches the data for each predicted position, in order, until the budget is spent.
+     *
+     * @param globe   the globe.
+     * @param targets the predicted positions.
+     * @param sample  the view sample the positions were predicted from.
+     * @param budget  the cycle's budget.
+     */
+    protected void prefetch(Globe globe, List<PrefetchTarget> targets, ViewSample sample, PrefetchBudget budget)
+    {
+        Model model = this.wwd.getModel();
+        if (model == null)
+            return;
+
+        for (PrefetchTarget target : targets)
+        {
+            if (budget.isExhausted() || Thread.currentThread().isInterrupted())
+                return;
+
+            // Estimate the sector visible from the target's distance, limited by the distance to the horizon.
+            double radius = target.distance * sample.fieldOfView.tanHalfAngle() * VISIBLE_RADIUS_SCALE;
+            double horizonDistance = Math.sqrt(target.distance * (2 * globe.getRadius() + target.distance));
+            Sector sector = Sector.boundingSector(globe, target.location, Math.min(radius, horizonDistance));
+            double resolution = sample.pixelSizePerMeter * target.distance / globe.getRadius();
+
+            if (globe.getElevationModel() != null)
+                this.prefetch(globe.getElevationModel(), sector, resolution, budget);
+
+            if (model.getLayers() == null)
+                continue;
+
+            for (Layer layer : model.getLayers())
+            {
+                if (budget.isExhausted())
+                    return;
+
+                if (layer instanceof Prefetchable && layer.isEnabled()
+                    && target.distance >= layer.getMinActiveAltitude()
+                    && target.distance <= layer.getMaxActiveAltitude())
+                {
+                    ((Prefetchable) layer).prefetch(sector, resolution, budget);
+                }
+            }
+        }
+    }
+
+    protected void prefetch(ElevationModel elevationModel, Sector sector, double resolution, PrefetchBudget budget)
+    {
+        if (!elevationModel.isEnabled())
+            return;
+
+        if (elevationModel instanceof CompoundElevationModel)
+        {
+            for (ElevationModel em : ((CompoundElevationModel) elevationModel).getElevationModels())
+            {
+                this.prefetch(em, sector, resolution, budget);
+            }
+        }
+        else if (elevationModel instanceof Prefetchable)
+        {
+            ((Prefetchable) elevationModel).prefetch(sector, resolution, budget);
+        }
+    }
+}
@@ -0,0 +1,986 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.util.Logging;
+
+import javax.net.ssl.SSLHandshakeException;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+import java.util.logging.Level;
+
+/**
+ * Performs threaded retrieval of data using a scheduler that indexes pending requests by retriever name. Unlike {@link
+ * BasicRetrievalService}, duplicate detection is a constant time lookup rather than a scan of the pending queue, and
+ * pending requests remain mutable after submission: submitting a retriever whose name is already pending refreshes the
+ * pending request's submit time, and raises its priority if the new priority is more urgent, instead of queuing a
+ * duplicate. A re-submission never makes a pending request less urgent. Layers that request the tiles they need each
+ * frame therefore keep those requests fresh. A pending request may be made less urgent with {@link #setPriority(String,
+ * double)}, or removed with {@link #cancel(String)}, for example when the tile it retrieves leaves the view; otherwise
+ * it ages out through the stale request limit. Requests with {@link RetrievalService#PREFETCH_PRIORITY} run after all
+ * other requests, and never change a pending request. A pending request cancelled through its future is discarded, and
+ * a later request for the same retriever name is queued anew.
+ * <p/>
+ * The queue holds at most the configured retrieval queue size. When it's full, a new request replaces the least urgent
+ * pending request if the new request is more urgent, and is otherwise rejected.
+ * <p/>
+ * Requests are grouped by the host named in the retriever's URL, and no more than {@link
+ * #getMaxConnectionsPerHost()} requests to the same host run concurrently. Retrievers that do not name a network host,
+ * such as local raster server retrievers, are not subject to the per-host limit. Among hosts below their limit, the
+ * next request is chosen using the same ordering as <code>BasicRetrievalService</code>: newer requests first, then
+ * ascending priority among requests submitted within the same time-granularity period.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public class PriorityRetrievalService extends WWObjectImpl
+    implements RetrievalService, Thread.UncaughtExceptionHandler
+{
+    // These constants are last-ditch values in case Configuration lacks defaults
+    protected static final int DEFAULT_QUEUE_SIZE = 100;
+    protected static final int DEFAULT_POOL_SIZE = 5;
+    protected static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
+    protected static final long DEFAULT_STALE_REQUEST_LIMIT = 30000; // milliseconds
+    protected static final int DEFAULT_TIME_PRIORITY_GRANULARITY = 500; // milliseconds
+    /** The host key used for retrievers that do not name a network host. */
+    protected static final String NO_HOST = "";
+
+    protected static final String RUNNING_THREAD_NAME_PREFIX = Logging.getMessage(
+        "BasicRetrievalService.RunningThreadNamePrefix");
+    protected static final String IDLE_THREAD_NAME_PREFIX = Logging.getMessage(
+        "BasicRetrievalService.IdleThreadNamePrefix");
+
+    /** Encapsulates a single threaded retrieval as a {@link java.util.concurrent.FutureTask}. */
+    protected static class RetrievalTask extends FutureTask<Retriever> implements RetrievalFuture
+    {
+        protected final Retriever retriever;
+        protected final String hostKey;
+        protected double priority; // guarded by the service lock
+        protected int heapIndex = -1; // guarded by the service lock
+
+        protected RetrievalTask(Retriever retriever, String hostKey, double priority)
+        {
+            super(retriever);
+            this.retriever = retriever;
+            this.hostKey = hostKey;
+            this.priority = priority;
+        }
+
+        public Retriever getRetriever()
+        {
+            return this.retriever;
+        }
+
+        @Override
+        public void run()
+        {
+            if (this.isDone() || this.isCancelled())
+                return;
+
+            super.run();
+        }
+    }
+
+    /**
+     * Orders tasks as <code>BasicRetrievalService</code> does: requests submitted within different time-granularity
+     * periods are ordered newest first, exclusive of their priority, and requests within the same period are ordered
+     * by ascending priority. Negative priorities disable the time ordering. Prefetch requests follow all others.
+     */
+    protected static final Comparator<RetrievalTask> TASK_ORDER = new Comparator<RetrievalTask>()
+    {
+        public int compare(RetrievalTask a, RetrievalTask b)
+        {
+            boolean aPrefetch = a.priority == PREFETCH_PRIORITY;
+            boolean bPrefetch = b.priority == PREFETCH_PRIORITY;
+            if (aPrefetch != bPrefetch)
+                return aPrefetch ? 1 : -1;
+
+            if (a.priority > 0 && b.priority > 0)
+            {
+                long aSubmit = a.retriever.getSubmitTime();
+                long bSubmit = b.retriever.getSubmitTime();
+                if (((bSubmit - aSubmit) / DEFAULT_TIME_PRIORITY_GRANULARITY) != 0)
+                    return aSubmit > bSubmit ? -1 : 1;
+            }
+
+            return a.priority == b.priority ? 0 : a.priority < b.priority ? -1 : 1;
+        }
+    };
+
+    /**
+     * A binary min-heap of tasks that records each task's position in the task itself, so that a task whose priority
+     * changes can be re-positioned, and an arbitrary task removed, in O(log n).
+     */
+    protected static class TaskHeap
+    {
+        protected RetrievalTask[] tasks = new RetrievalTask[16];
+        protected int size;
+
+        public int size()
+        {
+            return this.size;
+        }
+
+        public RetrievalTask peek()
+        {
+            return this.size > 0 ? this.tasks[0] : null;
+        }
+
+        public void add(RetrievalTask task)
+        {
+            if (this.size == this.tasks.length)
+                this.tasks = Arrays.copyOf(this.tasks, this.size * 2);
+
+            task.heapIndex = this.size++;
+            this.tasks[task.heapIndex] = task;
+            this.siftUp(task.heapIndex);
+        }
+
+        public void remove(RetrievalTask task)
+        {
+            int i = task.heapIndex;
+            if (i < 0 || i >= this.size || this.tasks[i] != task)
+                return;
+
+            RetrievalTask last = this.tasks[--this.size];
+            this.tasks[this.size] = null;
+            task.heapIndex = -1;
+
+            if (last != task)
+            {
+                this.tasks[i] = last;
+                last.heapIndex = i;
+                this.update(last);
+            }
+        }
+
+        /**
+         * Restores heap order after a task's ordering key has changed.
+         *
+         * @param task the task whose ordering key changed.
+         */
+        public void update(RetrievalTask task)
+        {
+            this.siftUp(task.heapIndex);
+            this.siftDown(task.heapIndex);
+        }
+
+        protected void siftUp(int i)
+        {
+            RetrievalTask task = this.tasks[i];
+            while (i > 0)
+            {
+                int parent = (i - 1) >>> 1;
+                if (TASK_ORDER.compare(task, this.tasks[parent]) >= 0)
+                    break;
+
+                this.tasks[i] = this.tasks[parent];
+                this.tasks[i].heapIndex = i;
+                i = parent;
+            }
+
+            this.tasks[i] = task;
+            task.heapIndex = i;
+        }
+
+        protected void siftDown(int i)
+        {
+            RetrievalTask task = this.tasks[i];
+            int half = this.size >>> 1;
+            while (i < half)
+            {
+                int child = 2 * i + 1;
+                int right = child + 1;
+                if (right < this.size && TASK_ORDER.compare(this.tasks[right], this.tasks[child]) < 0)
+                    child = right;
+
+                if (TASK_ORDER.compare(task, this.tasks[child]) <= 0)
+                    break;
+
+                this.tasks[i] = this.tasks[child];
+                this.tasks[i].heapIndex = i;
+                i = child;
+            }
+
+            this.tasks[i] = task;
+            task.heapIndex = i;
+        }
+    }
+
+    /** The pending tasks and running task count for a single host. */
+    protected static class HostQueue
+    {
+        protected final TaskHeap pending = new TaskHeap();
+        protected int activeCount;
+    }
+
+    protected class Worker implements Runnable
+    {
+        public void run()
+        {
+            try
+            {
+                RetrievalTask task;
+                while ((task = takeTask()) != null)
+                {
+                    runTask(task);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                // Service is shutting down.
+            }
+            finally
+            {
+                workerExited();
+            }
+        }
+    }
+
+    protected final Lock lock = new ReentrantLock();
+    protected final Condition taskAvailable = this.lock.newCondition();
+    // All of the following fields are guarded by the lock.
+    protected final HashMap<String, RetrievalTask> pendingTasks = new HashMap<String, RetrievalTask>();
+    protected final HashMap<String, RetrievalTask> activeTasks = new HashMap<String, RetrievalTask>();
+    protected final HashMap<String, HostQueue> hostQueues = new HashMap<String, HostQueue>();
+    protected final ArrayList<Thread> workers = new ArrayList<Thread>();
+    protected int poolSize;
+    protected int maxConnectionsPerHost;
+    protected boolean shutdown;
+
+    protected int queueSize; // maximum number of pending requests
+    protected long staleRequestLimit; // reject requests older than this
+    protected SSLExceptionListener sslExceptionListener;
+
+    public PriorityRetrievalService()
+    {
+        this.poolSize = Configuration.getIntegerValue(AVKey.RETRIEVAL_POOL_SIZE, DEFAULT_POOL_SIZE);
+        this.queueSize = Configuration.getIntegerValue(AVKey.RETRIEVAL_QUEUE_SIZE, DEFAULT_QUEUE_SIZE);
+        this.maxConnectionsPerHost = Configuration.getIntegerValue(AVKey.RETRIEVAL_MAX_CONNECTIONS_PER_HOST,
+            DEFAULT_MAX_CONNECTIONS_PER_HOST);
+        this.staleRequestLimit = Configuration.getLongValue(AVKey.RETRIEVAL_QUEUE_STALE_REQUEST_LIMIT,
+            DEFAULT_STALE_REQUEST_LIMIT);
+    }
+
+    public SSLExceptionListener getSSLExceptionListener()
+    {
+        return sslExceptionListener;
+    }
+
+    public void setSSLExceptionListener(SSLExceptionListener sslExceptionListener)
+    {
+        this.sslExceptionListener = sslExceptionListener;
+    }
+
+    public void uncaughtException(Thread thread, Throwable throwable)
+    {
+        Logging.logger().fine(Logging.getMessage("BasicRetrievalService.UncaughtExceptionDuringRetrieval",
+            thread.getName()));
+    }
+
+    public void shutdown(boolean immediately)
+    {
+        this.lock.lock();
+        try
+        {
+            this.shutdown = true;
+
+            if (immediately)
+            {
+                for (RetrievalTask task : this.pendingTasks.values())
+                {
+                    task.cancel(false);
+                }
+                this.pendingTasks.clear();
+                this.hostQueues.clear();
+
+                for (Thread thread : this.workers)
+                {
+                    thread.interrupt();
+                }
+            }
+
+            this.taskAvailable.signalAll();
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @param retriever the retriever to run
+     *
+     * @return a future object that can be used to query the request status of cancel the request.
+     *
+     * @throws IllegalArgumentException if <code>retriever</code> is null or has no name
+     */
+    public RetrievalFuture runRetriever(Retriever retriever)
+    {
+        if (retriever == null)
+        {
+            String msg = Logging.getMessage("nullValue.RetrieverIsNull");
+            Logging.logger().fine(msg);
+            throw new IllegalArgumentException(msg);
+        }
+        if (retriever.getName() == null)
+        {
+            String message = Logging.getMessage("nullValue.RetrieverNameIsNull");
+            Logging.logger().fine(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        // Add with secondary priority that removes most recently added requests first.
+        return this.runRetriever(retriever, (double) (Long.MAX_VALUE - System.currentTimeMillis()));
+    }
+
+    /**
+     * Queues a retriever for execution. If a retriever with the same name is already pending, that request's submit
+     * time is refreshed, its priority is changed to the more urgent of its current and the specified priority, and its
+     * future is returned. A pending request is not changed by a request with {@link
+     * RetrievalService#PREFETCH_PRIORITY}. If a retriever with the same name is running, its future is returned.
+     *
+     * @param retriever the retriever to run
+     * @param priority  the secondary priority of the retriever, or negative if it is to be the primary priority
+     *
+     * @return a future object that can be used to query the request status of cancel the request, or null if the
+     *         service has been shut down or the queue is full of more urgent requests.
+     *
+     * @throws IllegalArgumentException if <code>retriever</code> is null or has no name
+     */
+    public RetrievalFuture runRetriever(Retriever retriever, double priority)
+    {
+        if (retriever == null)
+        {
+            String message = Logging.getMessage("nullValue.RetrieverIsNull");
+            Logging.logger().fine(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        String name = retriever.getName();
+        if (name == null)
+        {
+            String message = Logging.getMessage("nullValue.RetrieverNameIsNull");
+            Logging.logger().fine(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.lock.lock();
+        try
+        {
+            if (this.shutdown)
+                return null;
+
+            RetrievalTask active = this.activeTasks.get(name);
+            if (active != null)
+                return active;
+
+            long now = System.currentTimeMillis();
+            RetrievalTask pending = this.getPendingTask(name);
+            if (pending != null)
+            {
+                // Prefetch requests must not make a pending request appear newer than the requests submitted since.
+                if (priority == PREFETCH_PRIORITY)
+                    return pending;
+
+                pending.retriever.setSubmitTime(now);
+                pending.priority = Math.min(pending.priority, priority);
+                this.hostQueues.get(pending.hostKey).pending.update(pending);
+                return pending;
+            }
+
+            RetrievalTask task = new RetrievalTask(retriever, this.getHostKey(retriever), priority);
+            retriever.setSubmitTime(now);
+
+            if (this.pendingTasks.size() >= this.queueSize)
+            {
+                // Make room by dropping the least urgent pending request, unless the new request is less urgent.
+                RetrievalTask last = this.findLastPendingTask();
+                if (last == null || (!last.isCancelled() && TASK_ORDER.compare(task, last) >= 0))
+                {
+                    Logging.logger().finer(Logging.getMessage("BasicRetrievalService.ResourceRejected", name));
+                    return null;
+                }
+
+                this.removePendingTask(last.retriever.getName());
+                last.cancel(false);
+                Logging.logger().finer(Logging.getMessage("BasicRetrievalService.ResourceRejected",
+                    last.retriever.getName()));
+            }
+
+            // The service notifies the requester through the retriever's post-processor, so the retriever need not
+            // occupy a retrieval thread while it waits for another request's response.
+            if (retriever instanceof URLRetriever)
+                ((URLRetriever) retriever).setDeferrable(true);
+
+            this.pendingTasks.put(name, task);
+            this.getHostQueue(task.hostKey).pending.add(task);
+
+            this.ensureWorkers();
+            this.taskAvailable.signal();
+
+            return task;
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Changes the priority of a pending request. Unlike a re-submission of the request's retriever, this may make the
+     * request less urgent. The request's submit time is not modified.
+     *
+     * @param retrieverName the name of the retriever whose request to re-prioritize.
+     * @param priority      the new priority.
+     *
+     * @return true if the request was pending and its priority changed, otherwise false.
+     */
+    public boolean setPriority(String retrieverName, double priority)
+    {
+        if (retrieverName == null)
+            return false;
+
+        this.lock.lock();
+        try
+        {
+            RetrievalTask task = this.getPendingTask(retrieverName);
+            if (task == null)
+                return false;
+
+            task.priority = priority;
+            this.hostQueues.get(task.hostKey).pending.update(task);
+            return true;
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels a pending or running request.
+     *
+     * @param retrieverName the name of the retriever whose request to cancel.
+     *
+     * @return true if a request with the specified name was pending or running, otherwise false.
+     */
+    public boolean cancel(String retrieverName)
+    {
+        if (retrieverName == null)
+            return false;
+
+        RetrievalTask task;
+        this.lock.lock();
+        try
+        {
+            task = this.removePendingTask(retrieverName);
+            if (task == null)
+                task = this.activeTasks.get(retrieverName);
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+
+        return task != null && task.cancel(true);
+    }
+
+    /**
+     * @param poolSize the number of threads in the thread pool
+     *
+     * @throws IllegalArgumentException if <code>poolSize</code> is non-positive
+     */
+    public void setRetrieverPoolSize(int poolSize)
+    {
+        if (poolSize < 1)
+        {
+            String message = Logging.getMessage("BasicRetrievalService.RetrieverPoolSizeIsLessThanOne");
+            Logging.logger().fine(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.lock.lock();
+        try
+        {
+            this.poolSize = poolSize;
+            this.ensureWorkers();
+            this.taskAvailable.signalAll(); // surplus workers exit when they wake
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    public int getRetrieverPoolSize()
+    {
+        this.lock.lock();
+        try
+        {
+            return this.poolSize;
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Indicates the maximum number of requests to a single host that may run concurrently.
+     *
+     * @return the maximum number of concurrent requests per host.
+     */
+    public int getMaxConnectionsPerHost()
+    {
+        this.lock.lock();
+        try
+        {
+            return this.maxConnectionsPerHost;
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Specifies the maximum number of requests to a single host that may run concurrently.
+     *
+     * @param maxConnectionsPerHost the maximum number of concurrent requests per host.
+     *
+     * @throws IllegalArgumentException if <code>maxConnectionsPerHost</code> is less than 1.
+     */
+    public void setMaxConnectionsPerHost(int maxConnectionsPerHost)
+    {
+        if (maxConnectionsPerHost < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "maxConnectionsPerHost < 1");
+            Logging.logger().fine(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.lock.lock();
+        try
+        {
+            this.maxConnectionsPerHost = maxConnectionsPerHost;
+            this.taskAvailable.signalAll();
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    public boolean hasActiveTasks()
+    {
+        this.lock.lock();
+        try
+        {
+            return !this.activeTasks.isEmpty();
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    public boolean isAvailable()
+    {
+        this.lock.lock();
+        try
+        {
+            return this.pendingTasks.size() < this.queueSize;
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    public int getNumRetrieversPending()
+    {
+        this.lock.lock();
+        try
+        {
+            return this.activeTasks.size() + this.pendingTasks.size();
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @param retriever the retriever to check
+     *
+     * @return <code>true</code> if a retriever with the same name is being run or pending execution
+     *
+     * @throws IllegalArgumentException if <code>retriever</code> is null
+     */
+    public boolean contains(Retriever retriever)
+    {
+        if (retriever == null)
+        {
+            String msg = Logging.getMessage("nullValue.RetrieverIsNull");
+            Logging.logger().fine(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        String name = retriever.getName();
+        if (name == null)
+            return false;
+
+        this.lock.lock();
+        try
+        {
+            return this.getPendingTask(name) != null || this.activeTasks.containsKey(name);
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    public double getProgress()
+    {
+        ArrayList<RetrievalTask> tasks;
+        this.lock.lock();
+        try
+        {
+            tasks = new ArrayList<RetrievalTask>(this.activeTasks.values());
+            tasks.addAll(this.pendingTasks.values());
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+
+        int totalContentLength = 0;
+        int totalBytesRead = 0;
+
+        for (RetrievalTask task : tasks)
+        {
+            if (task.isDone())
+                continue;
+
+            Retriever retriever = task.getRetriever();
+            try
+            {
+                double tcl = retriever.getContentLength();
+                if (tcl > 0)
+                {
+                    totalContentLength += tcl;
+                    totalBytesRead += retriever.getContentLengthRead();
+                }
+            }
+            catch (Exception e)
+            {
+                Logging.logger().log(Level.FINE,
+                    Logging.getMessage("BasicRetrievalService.ExceptionRetrievingContentSizes",
+                        retriever.getName() != null ? retriever.getName() : ""), e);
+            }
+        }
+
+        if (totalContentLength < 1)
+            return 0;
+
+        return Math.min(100.0, 100.0 * (double) totalBytesRead / (double) totalContentLength);
+    }
+
+    /**
+     * Determines the key used to group a retriever's requests for the per-host connection limit.
+     *
+     * @param retriever the retriever.
+     *
+     * @return the retriever's host and port, or {@link #NO_HOST} if the retriever does not name a network host.
+     */
+    protected String getHostKey(Retriever retriever)
+    {
+        URL url = null;
+
+        if (retriever instanceof URLRetriever)
+        {
+            url = ((URLRetriever) retriever).getUrl();
+        }
+        else
+        {
+            try
+            {
+                url = new URL(retriever.getName());
+            }
+            catch (MalformedURLException e)
+            {
+                // Not a URL; the retriever is not subject to the per-host limit.
+            }
+        }
+
+        if (url == null || url.getHost() == null || url.getHost().length() == 0)
+            return NO_HOST;
+
+        return url.getHost().toLowerCase() + ":" + (url.getPort() >= 0 ? url.getPort() : url.getDefaultPort());
+    }
+
+    protected HostQueue getHostQueue(String hostKey) // MUST BE CALLED WITH THE LOCK HELD
+    {
+        HostQueue queue = this.hostQueues.get(hostKey);
+        if (queue == null)
+        {
+            queue = new HostQueue();
+            this.hostQueues.put(hostKey, queue);
+        }
+
+        return queue;
+    }
+
+    /**
+     * Returns the pending task for a retriever name. A pending task that has been cancelled through its future is
+     * removed and not returned.
+     *
+     * @param name the retriever name.
+     *
+     * @return the pending task, or null if no task with the name is pending.
+     */
+    protected RetrievalTask getPendingTask(String name) // MUST BE CALLED WITH THE LOCK HELD
+    {
+        RetrievalTask task = this.pendingTasks.get(name);
+        if (task != null && task.isCancelled())
+        {
+            this.removePendingTask(name);
+            return null;
+        }
+
+        return task;
+    }
+
+    protected RetrievalTask removePendingTask(String name) // MUST BE CALLED WITH THE LOCK HELD
+    {
+        RetrievalTask task = this.pendingTasks.remove(name);
+        if (task == null)
+            return null;
+
+        HostQueue queue = this.hostQueues.get(task.hostKey);
+        queue.pending.remove(task);
+        if (queue.pending.size() == 0 && queue.activeCount == 0)
+            this.hostQueues.remove(task.hostKey);
+
+        return task;
+    }
+
+    protected RetrievalTask findLastPendingTask() // MUST BE CALLED WITH THE LOCK HELD
+    {
+        // Only called when the queue is full, so a linear scan of the bounded queue is acceptable.
+        RetrievalTask last = null;
+
+        for (RetrievalTask task : this.pendingTasks.values())
+        {
+            if (task.isCancelled())
+                return task; // discarding a cancelled task makes room without losing a live request
+
+            if (last == null || TASK_ORDER.compare(task, last) > 0)
+                last = task;
+        }
+
+        return last;
+    }
+
+    protected void ensureWorkers() // MUST BE CALLED WITH THE LOCK HELD
+    {
+        while (this.workers.size() < this.poolSize && !this.shutdown)
+        {
+            Thread thread = new Thread(new Worker());
+            thread.setName(IDLE_THREAD_NAME_PREFIX);
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY); // Subordinate thread priority to rendering
+            thread.setUncaughtExceptionHandler(this);
+            this.workers.add(thread);
+            thread.start();
+        }
+    }
+
+    protected void workerExited()
+    {
+        this.lock.lock();
+        try
+        {
+            this.workers.remove(Thread.currentThread());
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for and removes the highest priority pending task whose host is below its connection limit, and marks it
+     * active. Tasks that exceeded the stale request limit while pending are cancelled and skipped, as are tasks
+     * cancelled through their futures.
+     *
+     * @return the next task to run, or null if the calling worker should exit.
+     *
+     * @throws InterruptedException if the calling worker is interrupted while waiting.
+     */
+    protected RetrievalTask takeTask() throws InterruptedException
+    {
+        this.lock.lock();
+        try
+        {
+            while (true)
+            {
+                if (this.workers.size() > this.poolSize || (this.shutdown && this.pendingTasks.isEmpty()))
+                {
+                    this.workers.remove(Thread.currentThread());
+                    return null;
+                }
+
+                RetrievalTask task = this.selectTask();
+                if (task == null)
+                {
+                    this.taskAvailable.await();
+                    continue;
+                }
+
+                this.removePendingTask(task.retriever.getName());
+                if (task.isCancelled())
+                    continue;
+
+                long limit = task.retriever.getStaleRequestLimit() >= 0
+                    ? task.retriever.getStaleRequestLimit() : this.staleRequestLimit;
+                if (System.currentTimeMillis() - task.retriever.getSubmitTime() > limit)
+                {
+                    // Task has been sitting on the queue too long
+                    Logging.logger().finer(Logging.getMessage("BasicRetrievalService.CancellingTooOldRetrieval",
+                        task.getRetriever().getName()));
+                    task.cancel(false);
+                    continue;
+                }
+
+                this.activeTasks.put(task.retriever.getName(), task);
+                this.getHostQueue(task.hostKey).activeCount++;
+
+                return task;
+            }
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    protected RetrievalTask selectTask() // MUST BE CALLED WITH THE LOCK HELD
+    {
+        // The number of distinct hosts is small, so comparing the head of each host's queue is cheap.
+        RetrievalTask best = null;
+
+        for (Map.Entry<String, HostQueue> entry : this.hostQueues.entrySet())
+        {
+            HostQueue queue = entry.getValue();
+            RetrievalTask head = queue.pending.peek();
+            if (head == null)
+                continue;
+
+            if (!NO_HOST.equals(entry.getKey()) && queue.activeCount >= this.maxConnectionsPerHost)
+                continue;
+
+            if (best == null || TASK_ORDER.compare(head, best) < 0)
+                best = head;
+        }
+
+        return best;
+    }
+
+    protected void runTask(RetrievalTask task)
+    {
+        Thread thread = Thread.currentThread();
+        thread.setName(RUNNING_THREAD_NAME_PREFIX + task.getRetriever().getName());
+
+        Throwable throwable = null;
+        try
+        {
+            task.retriever.setBeginTime(System.currentTimeMillis());
+            task.run();
+        }
+        catch (Throwable t)
+        {
+            throwable = t;
+        }
+        finally
+        {
+            this.lock.lock();
+            try
+            {
+                this.activeTasks.remove(task.retriever.getName());
+
+                HostQueue queue = this.hostQueues.get(task.hostKey);
+                if (queue != null && --queue.activeCount == 0 && queue.pending.size() == 0)
+                    this.hostQueues.remove(task.hostKey);
+
+                this.taskAvailable.signal(); // a host may have dropped below its connection limit
+
+                // Clear an interrupt left by cancelling the task so the worker can continue to wait for tasks.
+                if (!this.shutdown)
+                    Thread.interrupted();
+            }
+            finally
+            {
+                this.lock.unlock();
+            }
+
+            task.retriever.setEndTime(System.currentTimeMillis());
+            this.logTaskCompletion(task, throwable);
+            thread.setName(IDLE_THREAD_NAME_PREFIX);
+        }
+    }
+
+    protected void logTaskCompletion(RetrievalTask task, Throwable throwable)
+    {
+        try
+        {
+            if (throwable != null)
+            {
+                Logging.logger().log(Level.FINE,
+                    Logging.getMessage("BasicRetrievalService.ExceptionDuringRetrieval",
+                        task.getRetriever().getName()), throwable);
+            }
+
+            task.get(); // Task has finished, been cancelled or broken
+        }
+        catch (ExecutionException e)
+        {
+            String message = Logging.getMessage("BasicRetrievalService.ExecutionExceptionDuringRetrieval",
+                task.getRetriever().getName());
+            if (e.getCause() instanceof SocketTimeoutException)
+            {
+                Logging.logger().fine(message + " " + e.getCause().getLocalizedMessage());
+            }
+            else if (e.getCause() instanceof SSLHandshakeException)
+            {
+                if (this.sslExceptionListener != null)
+                    this.sslExceptionListener.onException(e.getCause(), task.getRetriever().getName());
+                else
+                    Logging.logger().fine(message + " " + e.getCause().getLocalizedMessage());
+            }
+            else
+            {
+                Logging.logger().log(Level.FINE, message, e);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Logging.logger().log(Level.FINE, Logging.getMessage("BasicRetrievalService.RetrievalInterrupted",
+                task.getRetriever().getName()), e);
+        }
+        catch (CancellationException e)
+        {
+            Logging.logger().fine(Logging.getMessage("BasicRetrievalService.RetrievalCancelled",
+                task.getRetriever().getName()));
+        }
+    }
+}
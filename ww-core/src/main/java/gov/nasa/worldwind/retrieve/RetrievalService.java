@@ -13,6 +13,13 @@ import gov.nasa.worldwind.WWObject;
  */
 public interface RetrievalService extends WWObject
 {
+    /**
+     * The priority of requests made ahead of need, such as those of a {@link Prefetcher}. Requests with this priority
+     * run after all other pending requests regardless of when they were submitted. Submitting such a request for a
+     * retriever that is already pending leaves the pending request unchanged.
+     */
+    double PREFETCH_PRIORITY = Double.POSITIVE_INFINITY;
+
     RetrievalFuture runRetriever(Retriever retriever);
 
     RetrievalFuture runRetriever(Retriever retriever, double priority);
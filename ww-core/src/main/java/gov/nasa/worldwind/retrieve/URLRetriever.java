@@ -15,6 +15,7 @@ import java.io.*;
 import java.net.*;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
+import java.util.ArrayList;
 import java.util.concurrent.atomic.*;
 import java.util.logging.Level;
 import java.util.regex.*;
@@ -34,6 +35,12 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
      */
     public static final String EXTRACT_ZIP_ENTRY = "URLRetriever.ExtractZipEntry";
 
+    /**
+     * Temporary buffers for reads whose length isn't known in advance. Content of known length is read directly into
+     * the retriever's buffer.
+     */
+    protected static final ByteBufferPool readBufferPool = new ByteBufferPool(32768, 64);
+
     protected volatile String state = RETRIEVER_STATE_NOT_STARTED;
     protected volatile int contentLength = 0;
     protected AtomicInteger contentLengthRead = new AtomicInteger(0);
@@ -49,6 +56,7 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
     protected long submitTime;
     protected long beginTime;
     protected long endTime;
+    protected volatile boolean deferrable;
 
     /**
      * Create the appropriate retriever for a URL's protocol.
@@ -223,11 +231,36 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
         this.endTime = endTime;
     }
 
+    /**
+     * Indicates whether this retriever may return from {@link #call()} before its response arrives, leaving another
+     * thread to complete it. See {@link #isDeferred()}.
+     *
+     * @return true if the retriever may be deferred, otherwise false.
+     */
+    public boolean isDeferrable()
+    {
+        return this.deferrable;
+    }
+
+    /**
+     * Specifies whether this retriever may return from {@link #call()} before its response arrives. Retrieval services
+     * set this for the retrievers they run, since they notify the requester through the post-processor rather than the
+     * return from <code>call()</code>. A retriever called directly is not deferrable by default, and its
+     * <code>call()</code> returns only once the retriever has been read and post-processed.
+     *
+     * @param deferrable true if the retriever may be deferred, otherwise false.
+     */
+    public void setDeferrable(boolean deferrable)
+    {
+        this.deferrable = deferrable;
+    }
+
     public final Retriever call() throws Exception
     {
         if (this.interrupted())
             return this;
 
+        long start = Instrumentation.start();
         try
         {
             this.setState(RETRIEVER_STATE_STARTED);
@@ -238,6 +271,9 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
                 this.connection = this.openConnection();
             }
 
+            if (this.isDeferred())
+                return this;
+
             if (!this.interrupted())
             {
                 this.setState(RETRIEVER_STATE_READING);
@@ -277,12 +313,34 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
         }
         finally
         {
-            this.end();
+            if (!this.isDeferred())
+            {
+                this.end();
+
+                Instrumentation.stop(Instrumentation.RETRIEVAL, start);
+                if (RETRIEVER_STATE_ERROR.equals(this.state))
+                    Instrumentation.count(Instrumentation.RETRIEVAL_ERRORS, 1);
+                else
+                    Instrumentation.count(Instrumentation.RETRIEVAL_BYTES, this.contentLengthRead.get());
+            }
         }
 
         return this;
     }
 
+    /**
+     * Indicates whether this retriever's response is provided later by another thread. A deferred retriever returns
+     * from {@link #call()} once {@link #openConnection()} has deferred it, without reading or post-processing. Whatever
+     * provides the response sets the retriever's state and calls {@link #end()}. Only a retriever that is {@link
+     * #isDeferrable()} may be deferred. The default implementation returns false.
+     *
+     * @return true if the retriever's response is provided later, otherwise false.
+     */
+    protected boolean isDeferred()
+    {
+        return false;
+    }
+
     protected void setState(String state)
     {
         String oldState = this.state;
@@ -472,34 +530,47 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
 
     protected ByteBuffer readNonSpecificStreamUnknownLength(InputStream inputStream) throws IOException
     {
-        final int pageSize = (int) Math.ceil(Math.pow(2, 15));
-
+        // Read into pooled pages, then copy the pages once into a buffer of the content's size.
         ReadableByteChannel channel = Channels.newChannel(inputStream);
-        ByteBuffer buffer = ByteBuffer.allocate(pageSize);
-
-        int count = 0;
-        int numBytesRead = 0;
-        while (!this.interrupted() && count >= 0)
+        ArrayList<ByteBuffer> pages = new ArrayList<ByteBuffer>();
+        try
         {
-            count = channel.read(buffer);
-            if (count > 0)
+            ByteBuffer page = null;
+            int count = 0;
+            int numBytesRead = 0;
+            while (!this.interrupted() && count >= 0)
             {
-                numBytesRead += count;
-                this.contentLengthRead.getAndAdd(count);
+                if (page == null || !page.hasRemaining())
+                {
+                    page = readBufferPool.acquire();
+                    pages.add(page);
+                }
+
+                count = channel.read(page);
+                if (count > 0)
+                {
+                    numBytesRead += count;
+                    this.contentLengthRead.getAndAdd(count);
+                }
             }
 
-            if (count > 0 && !buffer.hasRemaining())
+            ByteBuffer buffer = ByteBuffer.allocate(numBytesRead);
+            for (ByteBuffer p : pages)
             {
-                ByteBuffer biggerBuffer = ByteBuffer.allocate(buffer.limit() + pageSize);
-                biggerBuffer.put((ByteBuffer) buffer.rewind());
-                buffer = biggerBuffer;
+                p.flip();
+                buffer.put(p);
             }
-        }
-
-        if (buffer != null)
             buffer.flip();
 
-        return buffer;
+            return buffer;
+        }
+        finally
+        {
+            for (ByteBuffer p : pages)
+            {
+                readBufferPool.release(p);
+            }
+        }
     }
 
     /**
@@ -527,16 +598,24 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
         {
             buffer = ByteBuffer.allocate((int) ze.getSize());
 
-            byte[] inputBuffer = new byte[8192];
-            while (buffer.hasRemaining())
+            ByteBuffer page = readBufferPool.acquire();
+            try
             {
-                int count = zis.read(inputBuffer);
-                if (count > 0)
+                byte[] inputBuffer = page.array();
+                while (buffer.hasRemaining())
                 {
-                    buffer.put(inputBuffer, 0, count);
-                    this.contentLengthRead.getAndAdd(buffer.position() + 1);
+                    int count = zis.read(inputBuffer, 0, Math.min(inputBuffer.length, buffer.remaining()));
+                    if (count > 0)
+                    {
+                        buffer.put(inputBuffer, 0, count);
+                        this.contentLengthRead.getAndAdd(buffer.position() + 1);
+                    }
                 }
             }
+            finally
+            {
+                readBufferPool.release(page);
+            }
         }
         if (buffer != null)
             buffer.flip();
@@ -0,0 +1,476 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.symbology;
+
+import gov.nasa.worldwind.avlist.*;
+import gov.nasa.worldwind.cache.*;
+import gov.nasa.worldwind.exception.WWRuntimeException;
+import gov.nasa.worldwind.util.*;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.*;
+import java.io.*;
+import java.security.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+
+/**
+ * An icon retriever that caches the icons created by another icon retriever. Icons are cached in memory, up to a
+ * specified number of bytes, and optionally on disk as PNG files in a specified directory. Icons are keyed by their
+ * normalized symbol identifier and by the retrieval parameters, so symbols that differ only in fields that don't affect
+ * their icon share one icon. Subclasses may override {@link #normalizeSymbolId(String)} to identify those fields.
+ * <p/>
+ * A caching retriever may be used by many threads at once. An icon that is requested by several threads at the same
+ * time is created once, and the other threads wait for it. {@link #warmUp(Iterable, gov.nasa.worldwind.avlist.AVList)}
+ * creates icons on a background thread before they're needed, for example when the identifiers of the symbols an
+ * application is about to display are known in advance.
+ * <p/>
+ * Cached icons are shared by every caller that requests them, so the images returned by {@link #createIcon(String,
+ * gov.nasa.worldwind.avlist.AVList)} must not be modified. The disk cache directory should be dedicated to icons from a
+ * single symbol repository, because the file names identify an icon's symbol and parameters, but not the repository it
+ * was created from.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public class CachingIconRetriever implements IconRetriever
+{
+    protected static final String CACHE_FILE_SUFFIX = ".png";
+
+    protected final IconRetriever retriever;
+    protected final MemoryCache memoryCache;
+    /** Icons currently being created, keyed by their cache key. */
+    protected final ConcurrentHashMap<Object, FutureTask<BufferedImage>> pendingIcons
+        = new ConcurrentHashMap<Object, FutureTask<BufferedImage>>();
+    protected volatile File cacheDirectory;
+    protected ExecutorService executor;
+
+    /**
+     * Creates a caching retriever for the icons created by another retriever.
+     *
+     * @param retriever the retriever that creates icons which aren't cached.
+     * @param capacity  the number of bytes of icons to cache in memory. Each icon occupies four bytes per pixel.
+     *
+     * @throws IllegalArgumentException if the retriever is null or the capacity is less than 1.
+     */
+    public CachingIconRetriever(IconRetriever retriever, long capacity)
+    {
+        if (retriever == null)
+        {
+            String msg = Logging.getMessage("nullValue.RetrieverIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (capacity < 1)
+        {
+            String msg = Logging.getMessage("generic.CapacityIsInvalid", capacity);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.retriever = retriever;
+        this.memoryCache = new BasicMemoryCache((long) (0.8 * capacity), capacity);
+        this.memoryCache.setName("Tactical Icons");
+    }
+
+    /**
+     * Indicates the retriever that creates icons which aren't cached.
+     *
+     * @return the wrapped retriever.
+     */
+    public IconRetriever getRetriever()
+    {
+        return this.retriever;
+    }
+
+    /**
+     * Indicates the cache's memory tier.
+     *
+     * @return the memory cache holding recently used icons.
+     */
+    public MemoryCache getMemoryCache()
+    {
+        return this.memoryCache;
+    }
+
+    /**
+     * Indicates the directory icons are cached in on disk.
+     *
+     * @return the disk cache directory, or null if icons are cached only in memory.
+     */
+    public File getCacheDirectory()
+    {
+        return this.cacheDirectory;
+    }
+
+    /**
+     * Specifies the directory to cache icons in on disk. Icons created by the wrapped retriever are written to the
+     * directory in the background, and icons that aren't cached in memory are read from the directory if they're there.
+     * The directory is created if it doesn't exist.
+     *
+     * @param cacheDirectory the disk cache directory. May be null, in which case icons are cached only in memory.
+     */
+    public void setCacheDirectory(File cacheDirectory)
+    {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Returns the icon for a symbol from the cache, or creates it with the wrapped retriever and caches it if it's not
+     * in the cache. The returned image is shared and must not be modified.
+     *
+     * @param symbolId Identifier for the symbol. The format of this identifier depends on the symbology set.
+     * @param params   Parameters that affect icon retrieval.
+     *
+     * @return A BufferedImage containing the requested icon, or null if the icon cannot be retrieved.
+     */
+    public BufferedImage createIcon(String symbolId, AVList params)
+    {
+        final Object key = this.createCacheKey(symbolId, params);
+        if (key == null) // The symbol or parameters can't be cached, so create the icon each time it's requested.
+            return this.retriever.createIcon(symbolId, params);
+
+        BufferedImage image = (BufferedImage) this.memoryCache.getObject(key);
+        if (image != null)
+            return image;
+
+        // Copy the parameters, since the task that creates the icon may complete after the caller modifies them.
+        final String id = symbolId;
+        final AVList paramsCopy = (params != null) ? params.copy() : null;
+        FutureTask<BufferedImage> task = new FutureTask<BufferedImage>(new Callable<BufferedImage>()
+        {
+            public BufferedImage call() throws Exception
+            {
+                return loadIcon(key, id, paramsCopy);
+            }
+        });
+
+        // Create the icon on this thread, unless another thread is already creating it.
+        FutureTask<BufferedImage> pending = this.pendingIcons.putIfAbsent(key, task);
+        if (pending == null)
+        {
+            pending = task;
+            try
+            {
+                task.run();
+            }
+            finally
+            {
+                this.pendingIcons.remove(key, task);
+            }
+        }
+
+        return this.getResult(pending);
+    }
+
+    /**
+     * Creates the icons for a collection of symbols in the background, so they're cached when they're requested.
+     * Symbols whose icons can't be created are skipped.
+     *
+     * @param symbolIds the identifiers of the symbols.
+     * @param params    the parameters that the icons will be requested with. May be null.
+     *
+     * @return a future that completes when all the icons have been created.
+     *
+     * @throws IllegalArgumentException if the symbol identifiers are null.
+     */
+    public Future<?> warmUp(Iterable<String> symbolIds, AVList params)
+    {
+        if (symbolIds == null)
+        {
+            String msg = Logging.getMessage("nullValue.IterableIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        final List<String> ids = new ArrayList<String>();
+        for (String symbolId : symbolIds)
+        {
+            if (symbolId != null)
+                ids.add(symbolId);
+        }
+
+        final AVList paramsCopy = (params != null) ? params.copy() : null;
+        return this.getExecutor().submit(new Runnable()
+        {
+            public void run()
+            {
+                for (String symbolId : ids)
+                {
+                    try
+                    {
+                        createIcon(symbolId, paramsCopy);
+                    }
+                    catch (Exception e)
+                    {
+                        String msg = Logging.getMessage("Symbology.ExceptionRetrievingTacticalIcon", symbolId);
+                        Logging.logger().log(Level.FINE, msg, e);
+                    }
+                }
+            }
+        });
+    }
+
+    /** Removes all icons from the memory cache. Icons cached on disk are retained. */
+    public void clear()
+    {
+        this.memoryCache.clear();
+    }
+
+    /**
+     * Returns the symbol identifier that identifies a symbol's icon in the cache. Symbols having the same normalized
+     * identifier must have the same icon. This returns the identifier in upper case. Subclasses may override this
+     * method to remove fields of the identifier that don't affect the icon.
+     *
+     * @param symbolId the symbol's identifier.
+     *
+     * @return the normalized identifier, or null if the symbol's icon can't be cached.
+     */
+    protected String normalizeSymbolId(String symbolId)
+    {
+        return symbolId.toUpperCase();
+    }
+
+    /**
+     * Returns a string identifying the retrieval parameters that affect a symbol's icon. This returns the parameters in
+     * order of their key, and returns null if any parameter's value is not a string, a number, a boolean, or a color,
+     * since other values may not be compared reliably.
+     *
+     * @param params the retrieval parameters. May be null.
+     *
+     * @return the parameters' string, or null if the parameters can't be cached.
+     */
+    protected String composeParamsString(AVList params)
+    {
+        if (params == null)
+            return "";
+
+        TreeMap<String, Object> sorted = new TreeMap<String, Object>();
+        for (Map.Entry<String, Object> entry : params.getEntries())
+        {
+            if (entry.getValue() != null)
+                sorted.put(entry.getKey(), entry.getValue());
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Object> entry : sorted.entrySet())
+        {
+            Object value = entry.getValue();
+            sb.append(entry.getKey()).append('=');
+
+            if (value instanceof Color)
+                sb.append('#').append(Integer.toHexString(((Color) value).getRGB()));
+            else if (value instanceof String || value instanceof Number || value instanceof Boolean)
+                sb.append(value);
+            else
+                return null;
+
+            sb.append(';');
+        }
+
+        return sb.toString();
+    }
+
+    protected Object createCacheKey(String symbolId, AVList params)
+    {
+        if (symbolId == null)
+            return null;
+
+        String id = this.normalizeSymbolId(symbolId);
+        String paramsString = this.composeParamsString(params);
+
+        return (id != null && paramsString != null) ? id + "|" + paramsString : null;
+    }
+
+    protected BufferedImage getResult(FutureTask<BufferedImage> task)
+    {
+        try
+        {
+            boolean interrupted = false;
+            while (true)
+            {
+                try
+                {
+                    BufferedImage image = task.get();
+                    if (interrupted)
+                        Thread.currentThread().interrupt();
+                    return image;
+                }
+                catch (InterruptedException e)
+                {
+                    // The icon is being created by another thread, which will complete the task regardless.
+                    interrupted = true;
+                }
+            }
+        }
+        catch (ExecutionException e)
+        {
+            // Rethrow the exception the wrapped retriever threw.
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+
+            throw new WWRuntimeException(e.getCause());
+        }
+    }
+
+    protected BufferedImage loadIcon(Object key, String symbolId, AVList params)
+    {
+        File file = this.getCacheFile(key);
+
+        BufferedImage image = (file != null) ? this.readCacheFile(file) : null;
+        if (image == null)
+        {
+            image = this.retriever.createIcon(symbolId, params);
+
+            if (image != null && file != null)
+                this.writeCacheFile(file, image);
+        }
+
+        if (image != null)
+            this.memoryCache.add(key, image, 4L * image.getWidth() * image.getHeight());
+
+        return image;
+    }
+
+    protected File getCacheFile(Object key)
+    {
+        File directory = this.cacheDirectory;
+        if (directory == null)
+            return null;
+
+        // The key may contain any character, so identify the icon by a digest of its key. The digest is prefixed with
+        // the readable part of the symbol identifier, to make the directory easier to inspect.
+        String s = key.toString();
+        int length = Math.min(s.indexOf('|'), 15);
+        String name = WWIO.replaceIllegalFileNameCharacters(s.substring(0, Math.max(length, 0)));
+
+        return new File(directory, name + "-" + digest(s) + CACHE_FILE_SUFFIX);
+    }
+
+    protected BufferedImage readCacheFile(File file)
+    {
+        if (!file.exists())
+            return null;
+
+        try
+        {
+            return ImageIO.read(file);
+        }
+        catch (IOException e)
+        {
+            String msg = Logging.getMessage("generic.ExceptionAttemptingToReadFile", file.getPath());
+            Logging.logger().log(Level.WARNING, msg, e);
+            return null;
+        }
+    }
+
+    protected void writeCacheFile(final File file, final BufferedImage image)
+    {
+        // Writing the icon is not needed to display it, so write it in the background. The icon is written to a
+        // temporary file and then renamed, so that readers never see a partially written icon.
+        this.getExecutor().execute(new Runnable()
+        {
+            public void run()
+            {
+                File tmpFile = null;
+                try
+                {
+                    File directory = file.getParentFile();
+                    if (!directory.exists() && !directory.mkdirs() && !directory.exists())
+                    {
+                        String msg = Logging.getMessage("generic.CannotCreateFile", directory.getPath());
+                        Logging.logger().warning(msg);
+                        return;
+                    }
+
+                    tmpFile = File.createTempFile("icon", ".tmp", directory);
+                    if (ImageIO.write(image, "png", tmpFile) && (file.exists() || tmpFile.renameTo(file)))
+                        return;
+                }
+                catch (IOException e)
+                {
+                    String msg = Logging.getMessage("generic.ExceptionAttemptingToWriteTo", file.getPath());
+                    Logging.logger().log(Level.WARNING, msg, e);
+                }
+
+                if (tmpFile != null)
+                {
+                    //noinspection ResultOfMethodCallIgnored
+                    tmpFile.delete();
+                }
+            }
+        });
+    }
+
+    protected synchronized ExecutorService getExecutor()
+    {
+        if (this.executor == null)
+        {
+            this.executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+            {
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable);
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    thread.setName("World Wind Icon Cache");
+                    return thread;
+                }
+            });
+        }
+
+        return this.executor;
+    }
+
+    protected static String digest(String s)
+    {
+        try
+        {
+            byte[] bytes = MessageDigest.getInstance("SHA-1").digest(s.getBytes("UTF-8"));
+
+            StringBuilder sb = new StringBuilder();
+            for (byte b : bytes)
+            {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new WWRuntimeException(e);
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new WWRuntimeException(e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o)
+            return true;
+        if (o == null || this.getClass() != o.getClass())
+            return false;
+
+        // Caching retrievers for equivalent retrievers create the same icons.
+        CachingIconRetriever that = (CachingIconRetriever) o;
+        return this.retriever.equals(that.retriever);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return this.retriever.hashCode();
+    }
+}
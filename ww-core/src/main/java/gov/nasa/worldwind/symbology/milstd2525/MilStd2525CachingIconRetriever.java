@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.symbology.milstd2525;
+
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.avlist.*;
+import gov.nasa.worldwind.symbology.*;
+import gov.nasa.worldwind.util.Logging;
+
+import java.awt.*;
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A caching icon retriever for MIL-STD-2525 tactical symbols, which caches the icons created by a {@link
+ * MilStd2525IconRetriever}. Symbol identifiers are normalized by removing the Symbol Modifier, Country Code and Order
+ * of Battle fields, which don't affect a symbol's icon, so symbols that differ only in those fields share one icon.
+ * Icons are keyed by the retrieval parameters that affect them: SymbologyConstants.SHOW_FILL, SHOW_FRAME, SHOW_ICON,
+ * and AVKey.COLOR.
+ * <p/>
+ * {@link #getInstance(String)} returns a caching retriever shared by all the tactical symbols that retrieve icons from
+ * the same location. The shared retriever's memory capacity is read from the World Wind configuration value {@link
+ * AVKey#MIL_STD_2525_ICON_CACHE_SIZE}, and it caches icons on disk if the configuration specifies a directory with
+ * {@link AVKey#MIL_STD_2525_ICON_CACHE_PATH}.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public class MilStd2525CachingIconRetriever extends CachingIconRetriever
+{
+    /** The shared caching retrievers, keyed by their retrieval path. */
+    protected static final ConcurrentHashMap<String, MilStd2525CachingIconRetriever> sharedInstances
+        = new ConcurrentHashMap<String, MilStd2525CachingIconRetriever>();
+
+    /**
+     * Returns the caching retriever shared by the tactical symbols that retrieve icons from a specified location, and
+     * creates it if it doesn't exist.
+     *
+     * @param retrieverPath File path or URL to the symbol directory, for example "http://myserver.com/milstd2525/".
+     *
+     * @return the shared caching retriever for the location.
+     *
+     * @throws IllegalArgumentException if the retriever path is null.
+     */
+    public static MilStd2525CachingIconRetriever getInstance(String retrieverPath)
+    {
+        if (retrieverPath == null)
+        {
+            String msg = Logging.getMessage("nullValue.PathIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        MilStd2525CachingIconRetriever retriever = sharedInstances.get(retrieverPath);
+        if (retriever != null)
+            return retriever;
+
+        long capacity = Configuration.getLongValue(AVKey.MIL_STD_2525_ICON_CACHE_SIZE,
+            MilStd2525Constants.DEFAULT_ICON_CACHE_SIZE);
+        retriever = new MilStd2525CachingIconRetriever(retrieverPath, capacity);
+
+        String cachePath = Configuration.getStringValue(AVKey.MIL_STD_2525_ICON_CACHE_PATH);
+        if (cachePath != null)
+            retriever.setCacheDirectory(new File(cachePath));
+
+        MilStd2525CachingIconRetriever existing = sharedInstances.putIfAbsent(retrieverPath, retriever);
+        return existing != null ? existing : retriever;
+    }
+
+    /**
+     * Create a new caching retriever for icons retrieved from the specified location.
+     *
+     * @param retrieverPath File path or URL to the symbol directory, for example "http://myserver.com/milstd2525/".
+     * @param capacity      the number of bytes of icons to cache in memory.
+     *
+     * @throws IllegalArgumentException if the capacity is less than 1.
+     */
+    public MilStd2525CachingIconRetriever(String retrieverPath, long capacity)
+    {
+        super(new MilStd2525IconRetriever(retrieverPath), capacity);
+    }
+
+    /**
+     * Removes the Symbol Modifier, Country Code and Order of Battle fields from a symbol identifier, and returns the
+     * identifier in upper case.
+     *
+     * @param symbolId the symbol's identifier.
+     *
+     * @return the normalized identifier, or null if the identifier is not a recognized SIDC.
+     */
+    @Override
+    protected String normalizeSymbolId(String symbolId)
+    {
+        SymbolCode symbolCode;
+        try
+        {
+            symbolCode = new SymbolCode(symbolId);
+        }
+        catch (RuntimeException e)
+        {
+            // The icon retriever reports unrecognized identifiers when it attempts to create their icon.
+            return null;
+        }
+
+        symbolCode.setSymbolModifier(null);
+        symbolCode.setCountryCode(null);
+        symbolCode.setOrderOfBattle(null);
+
+        String s = symbolCode.toString();
+        return s != null ? s.toUpperCase() : null;
+    }
+
+    /**
+     * Returns a string identifying the retrieval parameters that {@link MilStd2525IconRetriever} uses. Other parameters
+     * are ignored.
+     *
+     * @param params the retrieval parameters. May be null.
+     *
+     * @return the parameters' string.
+     */
+    @Override
+    protected String composeParamsString(AVList params)
+    {
+        Object color = params != null ? params.getValue(AVKey.COLOR) : null;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(this.isEnabled(params, SymbologyConstants.SHOW_FILL) ? 'T' : 'F');
+        sb.append(this.isEnabled(params, SymbologyConstants.SHOW_FRAME) ? 'T' : 'F');
+        sb.append(this.isEnabled(params, SymbologyConstants.SHOW_ICON) ? 'T' : 'F');
+
+        if (color instanceof Color) // The icon retriever ignores colors of other types.
+            sb.append('#').append(Integer.toHexString(((Color) color).getRGB()));
+
+        return sb.toString();
+    }
+
+    protected boolean isEnabled(AVList params, String key)
+    {
+        // MilStd2525IconRetriever shows the fill, frame and icon unless the parameter is specified and not true.
+        Object o = params != null ? params.getValue(key) : null;
+        return o == null || o.equals(Boolean.TRUE);
+    }
+}
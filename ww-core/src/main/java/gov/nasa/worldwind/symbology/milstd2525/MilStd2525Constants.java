@@ -22,6 +22,8 @@ public interface MilStd2525Constants
      * http://worldwind.arc.nasa.gov/milstd2525c/rev1/
      */
     final String DEFAULT_ICON_RETRIEVER_PATH = "http://worldwind.arc.nasa.gov/milstd2525c/rev1/";
+    /** The default number of bytes of icons that MIL-STD-2525 tactical symbols cache in memory: 32 MB. */
+    final long DEFAULT_ICON_CACHE_SIZE = 33554432;
 
     // Color RGB values from MIL-STD-2525C Table XIII, pg. 44.
     /** Default material used to color tactical graphics that represent friendly entities. */
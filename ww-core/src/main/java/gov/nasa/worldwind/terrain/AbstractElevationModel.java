@@ -150,6 +150,188 @@ abstract public class AbstractElevationModel extends WWObjectImpl implements Ele
         return new double[] {this.getElevations(sector, latLons, targetResolutions[0], elevations)};
     }
 
+    /**
+     * Returns the elevations of a collection of locations specified as primitive coordinates. The locations are read
+     * from <code>locations</code> as consecutive latitude and longitude pairs, in degrees, between the buffer's
+     * position and its limit. The buffer's position is not changed. Otherwise this method behaves as {@link
+     * #getElevations(gov.nasa.worldwind.geom.Sector, java.util.List, double, double[])}: missing data is replaced by
+     * the missing data replacement value, locations that cannot currently be determined receive the minimum extreme
+     * elevation, and the output buffer is not modified for locations outside the elevation model's coverage area or
+     * for locations whose latitude or longitude is NaN.
+     * <p/>
+     * This method is intended for callers that sample large numbers of locations, such as profile and line-of-sight
+     * computations. Subclasses may group the locations by elevation tile to avoid per-location lookups. This
+     * implementation converts the locations to a list and calls the list form.
+     *
+     * @param sector           the sector in question.
+     * @param locations        the latitude and longitude pairs, in degrees, to return elevations for.
+     * @param targetResolution the desired horizontal resolution, in radians, of the raster or other elevation sample
+     *                         from which elevations are drawn.
+     * @param buffer           an array in which to place the returned elevations. The array must be pre-allocated and
+     *                         contain at least one element for each pair of coordinates.
+     *
+     * @return the resolution achieved, in radians, or {@link Double#MAX_VALUE} if individual elevations cannot be
+     *         determined for all of the locations.
+     *
+     * @throws IllegalArgumentException if either the sector, locations buffer or elevations array is null.
+     */
+    public double getElevations(Sector sector, java.nio.DoubleBuffer locations, double targetResolution,
+        double[] buffer)
+    {
+        this.validateLocationsBuffer(sector, locations, buffer);
+
+        return this.getElevations(sector, this.makeLocationList(locations), targetResolution, buffer);
+    }
+
+    /**
+     * Returns the elevations of a collection of locations specified as primitive coordinates. <em>Does not</em>
+     * replace any elevation values corresponding to the missing data signal with the elevation model's missing data
+     * replacement value. Otherwise this method behaves as {@link #getElevations(gov.nasa.worldwind.geom.Sector,
+     * java.nio.DoubleBuffer, double, double[])}.
+     *
+     * @param sector           the sector in question.
+     * @param locations        the latitude and longitude pairs, in degrees, to return elevations for.
+     * @param targetResolution the desired horizontal resolution, in radians, of the raster or other elevation sample
+     *                         from which elevations are drawn.
+     * @param buffer           an array in which to place the returned elevations. The array must be pre-allocated and
+     *                         contain at least one element for each pair of coordinates.
+     *
+     * @return the resolution achieved, in radians, or {@link Double#MAX_VALUE} if individual elevations cannot be
+     *         determined for all of the locations.
+     *
+     * @throws IllegalArgumentException if either the sector, locations buffer or elevations array is null.
+     */
+    public double getUnmappedElevations(Sector sector, java.nio.DoubleBuffer locations, double targetResolution,
+        double[] buffer)
+    {
+        this.validateLocationsBuffer(sector, locations, buffer);
+
+        return this.getUnmappedElevations(sector, this.makeLocationList(locations), targetResolution, buffer);
+    }
+
+    /**
+     * Returns the elevations of a collection of locations specified as an array of latitude and longitude pairs, in
+     * degrees. See {@link #getElevations(gov.nasa.worldwind.geom.Sector, java.nio.DoubleBuffer, double, double[])}.
+     *
+     * @param sector           the sector in question.
+     * @param locations        the latitude and longitude pairs, in degrees, to return elevations for.
+     * @param targetResolution the desired horizontal resolution, in radians, of the raster or other elevation sample
+     *                         from which elevations are drawn.
+     * @param buffer           an array in which to place the returned elevations. The array must be pre-allocated and
+     *                         contain at least one element for each pair of coordinates.
+     *
+     * @return the resolution achieved, in radians, or {@link Double#MAX_VALUE} if individual elevations cannot be
+     *         determined for all of the locations.
+     *
+     * @throws IllegalArgumentException if either the sector, locations array or elevations array is null.
+     */
+    public double getElevations(Sector sector, double[] locations, double targetResolution, double[] buffer)
+    {
+        if (locations == null)
+        {
+            String msg = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        return this.getElevations(sector, java.nio.DoubleBuffer.wrap(locations), targetResolution, buffer);
+    }
+
+    /**
+     * Returns the unmapped elevations of a collection of locations specified as an array of latitude and longitude
+     * pairs, in degrees. See {@link #getUnmappedElevations(gov.nasa.worldwind.geom.Sector, java.nio.DoubleBuffer,
+     * double, double[])}.
+     *
+     * @param sector           the sector in question.
+     * @param locations        the latitude and longitude pairs, in degrees, to return elevations for.
+     * @param targetResolution the desired horizontal resolution, in radians, of the raster or other elevation sample
+     *                         from which elevations are drawn.
+     * @param buffer           an array in which to place the returned elevations. The array must be pre-allocated and
+     *                         contain at least one element for each pair of coordinates.
+     *
+     * @return the resolution achieved, in radians, or {@link Double#MAX_VALUE} if individual elevations cannot be
+     *         determined for all of the locations.
+     *
+     * @throws IllegalArgumentException if either the sector, locations array or elevations array is null.
+     */
+    public double getUnmappedElevations(Sector sector, double[] locations, double targetResolution, double[] buffer)
+    {
+        if (locations == null)
+        {
+            String msg = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        return this.getUnmappedElevations(sector, java.nio.DoubleBuffer.wrap(locations), targetResolution, buffer);
+    }
+
+    /**
+     * Validates the arguments to the primitive forms of <code>getElevations</code> and
+     * <code>getUnmappedElevations</code>.
+     *
+     * @param sector    the sector in question.
+     * @param locations the latitude and longitude pairs, in degrees.
+     * @param buffer    the array to receive the elevations.
+     *
+     * @throws IllegalArgumentException if any argument is null, or if the array is too small to hold an elevation for
+     *                                  each pair of coordinates.
+     */
+    protected void validateLocationsBuffer(Sector sector, java.nio.DoubleBuffer locations, double[] buffer)
+    {
+        if (sector == null)
+        {
+            String msg = Logging.getMessage("nullValue.SectorIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (locations == null)
+        {
+            String msg = Logging.getMessage("nullValue.BufferIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (buffer == null)
+        {
+            String msg = Logging.getMessage("nullValue.ElevationsBufferIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (buffer.length < locations.remaining() / 2)
+        {
+            String msg = Logging.getMessage("ElevationModel.ElevationsBufferTooSmall", locations.remaining() / 2);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+    }
+
+    /**
+     * Creates a list of locations from latitude and longitude pairs, in degrees, held in a buffer. Pairs with a NaN
+     * coordinate are represented by a null entry. The buffer's position is not changed.
+     *
+     * @param locations the latitude and longitude pairs.
+     *
+     * @return a list of the buffer's locations.
+     */
+    protected List<LatLon> makeLocationList(java.nio.DoubleBuffer locations)
+    {
+        int position = locations.position();
+        int count = locations.remaining() / 2;
+        List<LatLon> list = new java.util.ArrayList<LatLon>(count);
+
+        for (int i = 0; i < count; i++)
+        {
+            double lat = locations.get(position + 2 * i);
+            double lon = locations.get(position + 2 * i + 1);
+            list.add(Double.isNaN(lat) || Double.isNaN(lon) ? null : LatLon.fromDegrees(lat, lon));
+        }
+
+        return list;
+    }
+
     public double[] getBestResolutions(Sector sector)
     {
         return new double[] {this.getBestResolution(sector)};
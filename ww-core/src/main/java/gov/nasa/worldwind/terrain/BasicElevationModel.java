@@ -50,7 +50,7 @@ import java.util.*;
  * @author Tom Gaskins
  * @version $Id$
  */
-public class BasicElevationModel extends AbstractElevationModel implements BulkRetrievable
+public class BasicElevationModel extends AbstractElevationModel implements BulkRetrievable, Prefetchable
 {
     protected final LevelSet levels;
     protected final double minElevation;
@@ -68,6 +68,8 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
     protected MemoryCache extremesLookupCache;
     // Model resource properties.
     protected static final int RESOURCE_ID_OGC_CAPABILITIES = 1;
+    // Same conversion factor as Angle.fromDegrees, so primitive lookups match lookups made with Angles.
+    protected static final double DEGREES_TO_RADIANS = Math.PI / 180d;
 
     public BasicElevationModel(AVList params)
     {
@@ -223,7 +225,7 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         else
         {
             long size = Configuration.getLongValue(AVKey.ELEVATION_TILE_CACHE_SIZE, 20000000L);
-            MemoryCache mc = new BasicMemoryCache((long) (0.85 * size), size);
+            MemoryCache mc = BasicMemoryCacheSet.createMemoryCache((long) (0.85 * size), size);
             mc.setName("Elevation Tiles");
             WorldWind.getMemoryCacheSet().addCache(cacheName, mc);
             return mc;
@@ -796,6 +798,98 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         return downloader.getEstimatedMissingDataSize();
     }
 
+    // *** Prefetch ***
+    // *** Prefetch ***
+    // *** Prefetch ***
+
+    /**
+     * Requests the elevation tiles covering a sector at the level closest to a resolution that are not in memory.
+     * Tiles in the file store are loaded into memory on the calling thread, rather than the task service that loads
+     * visible tiles, and charged to the budget's memory bytes. Tiles not in the file store are retrieved at {@link
+     * RetrievalService#PREFETCH_PRIORITY} and charged to the budget's retrieval bytes. Each tile is charged at its
+     * uncompressed size.
+     *
+     * @param sector     the sector to request elevations for.
+     * @param resolution the target resolution, provided in radians of latitude per texel.
+     * @param budget     the budget to charge the requests to.
+     *
+     * @throws IllegalArgumentException if the sector or budget is null.
+     */
+    public void prefetch(Sector sector, double resolution, PrefetchBudget budget)
+    {
+        if (sector == null)
+        {
+            String msg = Logging.getMessage("nullValue.SectorIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (budget == null)
+        {
+            String msg = Logging.getMessage("nullValue.BudgetIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        Sector targetSector = this.getLevels().getSector().intersection(sector);
+        if (targetSector == null)
+            return;
+
+        int levelNumber = this.computeLevelForResolution(targetSector, resolution);
+        for (Tile[] row : this.getTilesInSector(targetSector, levelNumber))
+        {
+            for (Tile tile : row)
+            {
+                if (budget.isExhausted())
+                    return;
+
+                if (tile == null || this.getLevels().isResourceAbsent(tile)
+                    || this.areElevationsInMemory(tile.getTileKey()))
+                    continue;
+
+                long tileSize = (long) tile.getWidth() * tile.getHeight()
+                    * (AVKey.FLOAT32.equals(this.elevationDataType) ? 4 : 2);
+
+                URL url = this.getDataFileStore().findFile(tile.getPath(), false);
+                if (url != null && !this.isFileExpired(tile, url, this.getDataFileStore()))
+                {
+                    if (budget.consumeMemoryBytes(tileSize))
+                        this.prefetchElevations(tile.getTileKey(), url);
+                }
+                else if (WorldWind.getRetrievalService().isAvailable() && budget.consumeRetrievalBytes(tileSize))
+                {
+                    this.retrieveElevations(tile, new DownloadPostProcessor(tile, this),
+                        RetrievalService.PREFETCH_PRIORITY);
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads a prefetched tile's elevations from the file store into memory. A file that can't be read is left for the
+     * visible tile requests to replace.
+     *
+     * @param key the tile's key.
+     * @param url the URL of the tile's file in the file store.
+     */
+    protected void prefetchElevations(TileKey key, URL url)
+    {
+        try
+        {
+            ElevationTile tile = this.createTile(key);
+            if (this.loadElevations(tile, url))
+            {
+                this.levels.unmarkResourceAbsent(tile);
+                this.firePropertyChange(AVKey.ELEVATION_MODEL, null, this);
+            }
+        }
+        catch (Exception e)
+        {
+            String msg = Logging.getMessage("ElevationModel.ExceptionRequestingElevations", key.toString());
+            Logging.logger().log(java.util.logging.Level.FINE, msg, e);
+        }
+    }
+
     // *** Tile download ***
     // *** Tile download ***
     // *** Tile download ***
@@ -819,7 +913,21 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
             this.retrieveRemoteElevations(tile, postProcessor);
     }
 
+    protected void retrieveElevations(final Tile tile, DownloadPostProcessor postProcessor, double priority)
+    {
+        if (this.getValue(AVKey.RETRIEVER_FACTORY_LOCAL) != null)
+            this.retrieveLocalElevations(tile, postProcessor, priority);
+        else
+            // Assume it's remote, which handles the legacy cases.
+            this.retrieveRemoteElevations(tile, postProcessor, priority);
+    }
+
     protected void retrieveLocalElevations(Tile tile, DownloadPostProcessor postProcessor)
+    {
+        this.retrieveLocalElevations(tile, postProcessor, tile.getPriority());
+    }
+
+    protected void retrieveLocalElevations(Tile tile, DownloadPostProcessor postProcessor, double priority)
     {
         if (!WorldWind.getLocalRetrievalService().isAvailable())
             return;
@@ -836,10 +944,15 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
 
         Retriever retriever = retrieverFactory.createRetriever(avList, postProcessor);
 
-        WorldWind.getLocalRetrievalService().runRetriever(retriever, tile.getPriority());
+        WorldWind.getLocalRetrievalService().runRetriever(retriever, priority);
     }
 
     protected void retrieveRemoteElevations(final Tile tile, DownloadPostProcessor postProcessor)
+    {
+        this.retrieveRemoteElevations(tile, postProcessor, 0d);
+    }
+
+    protected void retrieveRemoteElevations(final Tile tile, DownloadPostProcessor postProcessor, double priority)
     {
         if (!this.isNetworkRetrievalEnabled())
         {
@@ -874,7 +987,7 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         if (WorldWind.getRetrievalService().contains(retriever))
             return;
 
-        WorldWind.getRetrievalService().runRetriever(retriever, 0d);
+        WorldWind.getRetrievalService().runRetriever(retriever, priority);
     }
 
     protected static class DownloadPostProcessor extends AbstractRetrievalPostProcessor
@@ -1347,6 +1460,207 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         return elevations.achievedResolution;
     }
 
+    @Override
+    public double getElevations(Sector sector, DoubleBuffer locations, double targetResolution, double[] buffer)
+    {
+        return this.getElevations(sector, locations, targetResolution, buffer, true);
+    }
+
+    @Override
+    public double getUnmappedElevations(Sector sector, DoubleBuffer locations, double targetResolution,
+        double[] buffer)
+    {
+        return this.getElevations(sector, locations, targetResolution, buffer, false);
+    }
+
+    /**
+     * Computes the elevations of latitude and longitude pairs held in a buffer. The locations are first grouped by the
+     * elevation tile that contains them, then each group is interpolated directly from its tile's elevations. The
+     * results are identical to those of {@link #getElevations(gov.nasa.worldwind.geom.Sector, java.util.List, double,
+     * double[], boolean)}, but no objects are created for individual locations.
+     *
+     * @param sector           the sector in question.
+     * @param locations        the latitude and longitude pairs, in degrees.
+     * @param targetResolution the desired horizontal resolution, in radians.
+     * @param buffer           the array to receive the elevations.
+     * @param mapMissingData   true to replace missing data with the missing data replacement value.
+     *
+     * @return the resolution achieved, in radians, or {@link Double#MAX_VALUE} if individual elevations cannot be
+     *         determined for all of the locations.
+     */
+    protected double getElevations(Sector sector, DoubleBuffer locations, double targetResolution, double[] buffer,
+        boolean mapMissingData)
+    {
+        this.validateLocationsBuffer(sector, locations, buffer);
+
+        Level targetLevel = this.getTargetLevel(sector, targetResolution);
+        if (targetLevel == null)
+            return Double.MAX_VALUE;
+
+        Elevations elevations = this.getElevations(sector, this.levels, targetLevel.getLevelNumber());
+        if (elevations == null)
+            return Double.MAX_VALUE;
+
+        if (this.intersects(sector) == -1)
+            return Double.MAX_VALUE;
+
+        // Mark the model as used this frame.
+        this.setValue(AVKey.FRAME_TIMESTAMP, System.currentTimeMillis());
+
+        int position = locations.position();
+        int count = locations.remaining() / 2;
+
+        // Group the locations by tile. The tiles are kept in the order Elevations.getElevation searches them, and
+        // index tiles.length collects the locations not covered by any tile. Locations with a NaN coordinate are
+        // assigned -1 and left unmodified.
+        ElevationTile[] tiles = elevations.tiles != null
+            ? elevations.tiles.toArray(new ElevationTile[elevations.tiles.size()]) : new ElevationTile[0];
+        int[] tileIndices = new int[count];
+        int[] offsets = new int[tiles.length + 2];
+        this.assignLocationsToTiles(locations, tiles, tileIndices, offsets);
+
+        // Convert the per-tile counts into offsets, then order the location indices by tile.
+        for (int k = 1; k < offsets.length; k++)
+        {
+            offsets[k] += offsets[k - 1];
+        }
+        int[] order = new int[offsets[offsets.length - 1]];
+        int[] next = new int[tiles.length + 1];
+        System.arraycopy(offsets, 0, next, 0, next.length);
+        for (int i = 0; i < count; i++)
+        {
+            if (tileIndices[i] >= 0)
+                order[next[tileIndices[i]]++] = i;
+        }
+
+        double missingDataSignal = this.getMissingDataSignal();
+        double missingDataReplacement = this.getMissingDataReplacement();
+        boolean missingDataTransparent = missingDataReplacement == missingDataSignal;
+        Sector coverage = this.levels.getSector();
+
+        for (int k = 0; k < tiles.length; k++)
+        {
+            for (int n = offsets[k]; n < offsets[k + 1]; n++)
+            {
+                int i = order[n];
+                double lat = locations.get(position + 2 * i);
+                double lon = locations.get(position + 2 * i + 1);
+
+                double value;
+                try
+                {
+                    value = this.lookupElevation(DEGREES_TO_RADIANS * lat, DEGREES_TO_RADIANS * lon, tiles[k]);
+                }
+                catch (Exception e)
+                {
+                    Logging.logger().log(java.util.logging.Level.SEVERE,
+                        Logging.getMessage("BasicElevationModel.ExceptionComputingElevation", lat, lon), e);
+
+                    // Treat the location as if no tile covers it, as Elevations.getElevation does.
+                    if (!missingDataTransparent && coverage.containsDegrees(lat, lon))
+                        buffer[i] = this.getExtremeElevations(sector)[0];
+                    continue;
+                }
+
+                // Compare bit patterns to match Double.equals, which isTransparentValue uses.
+                if (missingDataTransparent
+                    && Double.doubleToLongBits(value) == Double.doubleToLongBits(missingDataSignal))
+                    continue;
+
+                if (value != missingDataSignal)
+                    buffer[i] = value;
+                else if (mapMissingData && coverage.containsDegrees(lat, lon))
+                    buffer[i] = missingDataReplacement;
+            }
+        }
+
+        // Locations not covered by any tile receive the model's minimum extreme elevation for the sector, if they're
+        // within the model's coverage.
+        if (!missingDataTransparent && offsets[tiles.length] < offsets[tiles.length + 1])
+        {
+            double minElevation = this.getExtremeElevations(sector)[0];
+            for (int n = offsets[tiles.length]; n < offsets[tiles.length + 1]; n++)
+            {
+                int i = order[n];
+                if (coverage.containsDegrees(locations.get(position + 2 * i), locations.get(position + 2 * i + 1)))
+                    buffer[i] = minElevation;
+            }
+        }
+
+        return elevations.achievedResolution;
+    }
+
+    /**
+     * Determines the tile that provides the elevation of each location in a buffer, and counts the locations assigned
+     * to each tile. A location is assigned to the first tile in the array whose sector contains it. Locations not
+     * contained in any tile are assigned index <code>tiles.length</code>, and locations with a NaN coordinate are
+     * assigned -1 and not counted.
+     *
+     * @param locations   the latitude and longitude pairs, in degrees.
+     * @param tiles       the tiles to search, in priority order.
+     * @param tileIndices the array to receive the tile index of each location.
+     * @param counts      the array whose element <code>k + 1</code> receives the number of locations assigned to tile
+     *                    <code>k</code>.
+     */
+    protected void assignLocationsToTiles(DoubleBuffer locations, ElevationTile[] tiles, int[] tileIndices,
+        int[] counts)
+    {
+        // Capture each tile's bounds in degrees, and note whether an earlier tile overlaps its interior. Nearby
+        // locations usually fall in the same tile, so the previous location's tile is tested first. That shortcut is
+        // only valid when the location lies strictly inside a tile that no earlier tile overlaps.
+        int numTiles = tiles.length;
+        double[] bounds = new double[4 * numTiles];
+        boolean[] overlapped = new boolean[numTiles];
+        for (int k = 0; k < numTiles; k++)
+        {
+            Sector s = tiles[k].getSector();
+            bounds[4 * k] = s.getMinLatitude().degrees;
+            bounds[4 * k + 1] = s.getMaxLatitude().degrees;
+            bounds[4 * k + 2] = s.getMinLongitude().degrees;
+            bounds[4 * k + 3] = s.getMaxLongitude().degrees;
+
+            for (int j = 0; j < k && !overlapped[k]; j++)
+            {
+                overlapped[k] = bounds[4 * j] < bounds[4 * k + 1] && bounds[4 * j + 1] > bounds[4 * k]
+                    && bounds[4 * j + 2] < bounds[4 * k + 3] && bounds[4 * j + 3] > bounds[4 * k + 2];
+            }
+        }
+
+        int position = locations.position();
+        int lastTile = -1;
+
+        for (int i = 0; i < tileIndices.length; i++)
+        {
+            double lat = locations.get(position + 2 * i);
+            double lon = locations.get(position + 2 * i + 1);
+
+            if (Double.isNaN(lat) || Double.isNaN(lon))
+            {
+                tileIndices[i] = -1;
+                continue;
+            }
+
+            int b = 4 * lastTile;
+            if (lastTile < 0 || lastTile == numTiles || overlapped[lastTile]
+                || lat <= bounds[b] || lat >= bounds[b + 1] || lon <= bounds[b + 2] || lon >= bounds[b + 3])
+            {
+                lastTile = numTiles;
+                for (int k = 0; k < numTiles; k++)
+                {
+                    b = 4 * k;
+                    if (lat >= bounds[b] && lat <= bounds[b + 1] && lon >= bounds[b + 2] && lon <= bounds[b + 3])
+                    {
+                        lastTile = k;
+                        break;
+                    }
+                }
+            }
+
+            tileIndices[i] = lastTile;
+            counts[lastTile + 1]++;
+        }
+    }
+
     protected Level getTargetLevel(Sector sector, double targetSize)
     {
         Level lastLevel = this.levels.getLastLevel(sector); // finest resolution available
@@ -1577,6 +1891,11 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
     }
 
     protected double lookupElevation(Angle latitude, Angle longitude, final ElevationTile tile)
+    {
+        return this.lookupElevation(latitude.radians, longitude.radians, tile);
+    }
+
+    protected double lookupElevation(double latRadians, double lonRadians, final ElevationTile tile)
     {
         BufferWrapper elevations = tile.getElevations();
         Sector sector = tile.getSector();
@@ -1584,8 +1903,8 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         final int tileWidth = tile.getWidth();
         final double sectorDeltaLat = sector.getDeltaLat().radians;
         final double sectorDeltaLon = sector.getDeltaLon().radians;
-        final double dLat = sector.getMaxLatitude().radians - latitude.radians;
-        final double dLon = longitude.radians - sector.getMinLongitude().radians;
+        final double dLat = sector.getMaxLatitude().radians - latRadians;
+        final double dLon = lonRadians - sector.getMinLongitude().radians;
         final double sLat = dLat / sectorDeltaLat;
         final double sLon = dLon / sectorDeltaLon;
 
@@ -605,6 +605,89 @@ public class CompoundElevationModel extends AbstractElevationModel
         return resolutionAchieved;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The same locations buffer is passed to each of the compound model's elevation models, from lowest resolution to
+     * highest, so no copy of the locations is made. Elevation models that are not {@link AbstractElevationModel}s
+     * receive the locations as a list instead. As with {@link #getElevations(gov.nasa.worldwind.geom.Sector,
+     * java.util.List, double, double[])}, this method returns only unmapped elevations if the compound model contains
+     * more than one elevation model.
+     *
+     * @param sector           the sector in question.
+     * @param locations        the latitude and longitude pairs, in degrees, to return elevations for.
+     * @param targetResolution the desired horizontal resolution, in radians, of the raster or other elevation sample
+     *                         from which elevations are drawn.
+     * @param buffer           an array in which to place the returned elevations. The array must be pre-allocated and
+     *                         contain at least one element for each pair of coordinates.
+     *
+     * @return the resolution achieved, in radians, or {@link Double#MAX_VALUE} if individual elevations cannot be
+     * determined for all of the locations.
+     */
+    @Override
+    public double getElevations(Sector sector, java.nio.DoubleBuffer locations, double targetResolution,
+        double[] buffer)
+    {
+        return this.doGetElevations(sector, locations, targetResolution, buffer, false);
+    }
+
+    @Override
+    public double getUnmappedElevations(Sector sector, java.nio.DoubleBuffer locations, double targetResolution,
+        double[] buffer)
+    {
+        return this.doGetElevations(sector, locations, targetResolution, buffer, false);
+    }
+
+    protected double doGetElevations(Sector sector, java.nio.DoubleBuffer locations, double targetResolution,
+        double[] buffer, boolean mapMissingData)
+    {
+        this.validateLocationsBuffer(sector, locations, buffer);
+
+        // Fill the buffer with ElevationModel contents from lowest resolution to highest, potentially overwriting
+        // values at each step. ElevationModels are expected to leave the buffer untouched for locations outside their
+        // coverage area.
+        double resolutionAchieved = 0;
+        List<LatLon> locationList = null;
+        for (int i = 0; i < this.elevationModels.size(); i++)
+        {
+            ElevationModel em = this.elevationModels.get(i);
+
+            if (!em.isEnabled())
+                continue;
+
+            int c = em.intersects(sector);
+            if (c < 0) // no intersection
+                continue;
+
+            // Models that don't support primitive coordinates receive the locations as a list, which is created at
+            // most once.
+            double r;
+            if (em instanceof AbstractElevationModel)
+            {
+                AbstractElevationModel aem = (AbstractElevationModel) em;
+                if (mapMissingData || this.elevationModels.size() == 1)
+                    r = aem.getElevations(sector, locations, targetResolution, buffer);
+                else
+                    r = aem.getUnmappedElevations(sector, locations, targetResolution, buffer);
+            }
+            else
+            {
+                if (locationList == null)
+                    locationList = this.makeLocationList(locations);
+
+                if (mapMissingData || this.elevationModels.size() == 1)
+                    r = em.getElevations(sector, locationList, targetResolution, buffer);
+                else
+                    r = em.getUnmappedElevations(sector, locationList, targetResolution, buffer);
+            }
+
+            if (i == 0)
+                resolutionAchieved = r;
+        }
+
+        return resolutionAchieved;
+    }
+
     public void composeElevations(Sector sector, List<? extends LatLon> latlons, int tileWidth,
         double[] buffer) throws Exception
     {
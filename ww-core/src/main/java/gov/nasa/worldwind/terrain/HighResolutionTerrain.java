@@ -6,6 +6,7 @@
 package gov.nasa.worldwind.terrain;
 
 import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.cache.*;
 import gov.nasa.worldwind.exception.*;
 import gov.nasa.worldwind.geom.*;
@@ -77,6 +78,12 @@ public class HighResolutionTerrain extends WWObjectImpl implements Terrain
 
     protected static final int DEFAULT_DENSITY = 3;
     protected static final long DEFAULT_CACHE_CAPACITY = (long) 200e6;
+    protected static final int DEFAULT_INTERSECTION_THREAD_POOL_SIZE = 10;
+    /** The number of line segments intersected by each task of a bulk intersection. */
+    protected static final int SEGMENTS_PER_TASK = 32;
+
+    /** The executor shared by all bulk intersections that have not been given their own executor. */
+    protected static ExecutorService sharedIntersectionService;
 
     // User-specified fields.
     protected Globe globe;
@@ -93,6 +100,7 @@ public class HighResolutionTerrain extends WWObjectImpl implements Terrain
     protected int numCols;
     protected MemoryCache geometryCache;
     protected ThreadLocal<Long> startTime = new ThreadLocal<Long>();
+    protected ExecutorService intersectionService;
 
     /**
      * Constructs a terrain object for a specified globe.
@@ -439,47 +447,391 @@ public class HighResolutionTerrain extends WWObjectImpl implements Terrain
     }
 
     /**
-     * Intersects a specified list of geographic two-position lines with the terrain.
+     * Intersects a specified list of geographic two-position lines with the terrain. This method blocks until all the
+     * lines have been intersected. The lines are intersected on this terrain's intersection executor, as described in
+     * {@link #submitIntersections(java.util.List, HighResolutionTerrain.IntersectionCallback, long)}.
      *
      * @param positions The positions to intersect, with the line segments formed by each pair of positions, e.g. the
      *                  first line in formed by positions[0] and positions[1], the second by positions[2] and
      *                  positions[3], etc.
      * @param callback  An object to call in order to return the computed intersections.
      *
-     * @throws InterruptedException
+     * @throws InterruptedException if the current thread is interrupted while waiting. The remaining lines are not
+     *                              intersected.
      */
     public void intersect(List<Position> positions, final IntersectionCallback callback) throws InterruptedException
     {
-        ExecutorService service = Executors.newFixedThreadPool(10);
+        Future<Integer> batch = this.submitIntersections(positions, callback, 0);
+
+        try
+        {
+            batch.get();
+        }
+        catch (InterruptedException e)
+        {
+            batch.cancel(true);
+            throw e;
+        }
+        catch (ExecutionException e)
+        {
+            callback.exception(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+        }
+    }
+
+    /**
+     * Starts intersecting a specified list of geographic two-position lines with the terrain, and returns without
+     * waiting for the intersections to be computed. The lines are ordered by the terrain tiles they cross before they
+     * are intersected, so that lines sharing tiles are intersected close together in time and reuse the tiles' cached
+     * geometry. Intersections are reported to the callback as they are computed, from the executor's threads, and
+     * therefore not in the order of the specified positions.
+     * <p/>
+     * Only a few tasks per executor thread are queued at a time, so a large batch does not flood an executor shared
+     * with other batches. The returned future can be used to wait for the batch, to cancel the lines not yet
+     * intersected, or to bound the time spent waiting. If a batch timeout is specified, the lines not intersected
+     * before it expires are abandoned and the future's <code>get</code> methods throw an
+     * <code>ExecutionException</code> whose cause is a {@link gov.nasa.worldwind.exception.WWTimeoutException}.
+     *
+     * @param positions    The positions to intersect, with the line segments formed by each pair of positions.
+     * @param callback     An object to call in order to return the computed intersections.
+     * @param batchTimeout the maximum number of milliseconds to spend intersecting the lines. Zero or less allows
+     *                     unlimited time.
+     *
+     * @return a future that completes when all the lines have been intersected. Its value is the number of lines that
+     *         intersect the terrain.
+     *
+     * @throws IllegalArgumentException if the positions list or the callback is null.
+     * @see #setIntersectionService(java.util.concurrent.ExecutorService)
+     */
+    public Future<Integer> submitIntersections(List<Position> positions, IntersectionCallback callback,
+        long batchTimeout)
+    {
+        if (positions == null)
+        {
+            String msg = Logging.getMessage("nullValue.PositionsListIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
 
-        for (int i = 0; i < positions.size(); i += 2)
+        if (callback == null)
         {
-            final Position pA = positions.get(i);
-            final Position pB = positions.get(i + 1);
+            String msg = Logging.getMessage("nullValue.CallbackIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        long deadline = batchTimeout > 0 ? System.currentTimeMillis() + batchTimeout : Long.MAX_VALUE;
+        ExecutorService service = this.getIntersectionService();
+
+        IntersectionBatch batch = new IntersectionBatch(positions, callback, this.sortSegmentsByTile(positions),
+            deadline, service);
+        batch.start(2 * this.getIntersectionServiceSize(service));
+
+        return batch;
+    }
+
+    /**
+     * Returns the executor used to compute bulk intersections. Unless an executor has been specified for this
+     * terrain, this is an executor shared by all <code>HighResolutionTerrain</code> instances. The size of the shared
+     * executor is given by the {@link gov.nasa.worldwind.avlist.AVKey#HIGH_RESOLUTION_TERRAIN_THREAD_POOL_SIZE}
+     * configuration value, and defaults to 10.
+     *
+     * @return the executor used to compute bulk intersections.
+     */
+    public synchronized ExecutorService getIntersectionService()
+    {
+        return this.intersectionService != null ? this.intersectionService : getSharedIntersectionService();
+    }
+
+    /**
+     * Specifies the executor used to compute bulk intersections.
+     *
+     * @param service the executor to use. May be null to use the executor shared by all terrain instances.
+     */
+    public synchronized void setIntersectionService(ExecutorService service)
+    {
+        this.intersectionService = service;
+    }
 
-            service.submit(new Runnable()
+    protected static synchronized ExecutorService getSharedIntersectionService()
+    {
+        if (sharedIntersectionService == null)
+        {
+            int size = Configuration.getIntegerValue(AVKey.HIGH_RESOLUTION_TERRAIN_THREAD_POOL_SIZE,
+                DEFAULT_INTERSECTION_THREAD_POOL_SIZE);
+
+            sharedIntersectionService = Executors.newFixedThreadPool(Math.max(size, 1), new ThreadFactory()
             {
-                @Override
-                public void run()
+                public Thread newThread(Runnable runnable)
                 {
-                    try
+                    Thread thread = new Thread(runnable);
+                    thread.setDaemon(true);
+                    thread.setName("World Wind Terrain Intersection");
+                    return thread;
+                }
+            });
+        }
+
+        return sharedIntersectionService;
+    }
+
+    protected int getIntersectionServiceSize(ExecutorService service)
+    {
+        if (service instanceof ThreadPoolExecutor)
+            return Math.max(((ThreadPoolExecutor) service).getMaximumPoolSize(), 1);
+
+        return Math.max(Configuration.getIntegerValue(AVKey.HIGH_RESOLUTION_TERRAIN_THREAD_POOL_SIZE,
+            DEFAULT_INTERSECTION_THREAD_POOL_SIZE), 1);
+    }
+
+    /**
+     * Orders the line segments of a position list by the terrain tile containing each segment's midpoint. Tiles are
+     * visited in Z-order, so consecutive segments tend to cross the same or neighboring tiles.
+     *
+     * @param positions the segment end points, as pairs of positions.
+     *
+     * @return the segment indices in intersection order.
+     */
+    protected int[] sortSegmentsByTile(List<Position> positions)
+    {
+        int numSegments = positions.size() / 2;
+
+        // Reduce the tile row and column to 15 bits each so that the Z-order key fits in the upper half of a long, and
+        // the segment index in the lower half. Coarser keys still keep nearby tiles together.
+        int shift = 0;
+        while ((Math.max(this.numRows, this.numCols) >> shift) >= (1 << 15))
+        {
+            shift++;
+        }
+
+        long[] keys = new long[numSegments];
+        for (int i = 0; i < numSegments; i++)
+        {
+            Position pA = positions.get(2 * i);
+            Position pB = positions.get(2 * i + 1);
+
+            long tileKey = Integer.MAX_VALUE; // sorts segments that can't be located last
+            if (pA != null && pB != null)
+            {
+                Angle lat = Angle.fromDegrees(0.5 * (pA.getLatitude().degrees + pB.getLatitude().degrees));
+                Angle lon = Angle.fromDegrees(0.5 * (pA.getLongitude().degrees + pB.getLongitude().degrees));
+                if (this.sector.contains(lat, lon))
+                {
+                    tileKey = interleaveBits(this.computeRow(this.sector, lat) >> shift,
+                        this.computeColumn(this.sector, lon) >> shift);
+                }
+            }
+
+            keys[i] = (tileKey << 32) | i;
+        }
+
+        Arrays.sort(keys);
+
+        int[] order = new int[numSegments];
+        for (int i = 0; i < numSegments; i++)
+        {
+            order[i] = (int) keys[i];
+        }
+
+        return order;
+    }
+
+    /**
+     * Interleaves the low 15 bits of two values to form a Z-order key.
+     *
+     * @param row the value whose bits occupy the odd bit positions.
+     * @param col the value whose bits occupy the even bit positions.
+     *
+     * @return the Z-order key.
+     */
+    protected static long interleaveBits(int row, int col)
+    {
+        long key = 0;
+        for (int bit = 0; bit < 15; bit++)
+        {
+            key |= (long) ((col >> bit) & 1) << (2 * bit);
+            key |= (long) ((row >> bit) & 1) << (2 * bit + 1);
+        }
+
+        return key;
+    }
+
+    /**
+     * Intersects a batch of line segments on an executor. The segments are divided into tasks of {@link
+     * #SEGMENTS_PER_TASK} segments, and only a limited number of tasks are queued on the executor at a time. Each
+     * completed task queues the next one.
+     */
+    protected class IntersectionBatch implements Future<Integer>
+    {
+        protected final List<Position> positions;
+        protected final IntersectionCallback callback;
+        protected final int[] order;
+        protected final long deadline;
+        protected final ExecutorService service;
+        protected final int numTasks;
+        protected final CountDownLatch done = new CountDownLatch(1);
+        protected final java.util.concurrent.atomic.AtomicInteger numIntersected =
+            new java.util.concurrent.atomic.AtomicInteger();
+        protected final Map<Integer, Future<?>> runningTasks = new HashMap<Integer, Future<?>>();
+        protected int nextTask;
+        protected volatile boolean cancelled;
+        protected volatile boolean timedOut;
+        protected volatile Exception failure;
+
+        public IntersectionBatch(List<Position> positions, IntersectionCallback callback, int[] order, long deadline,
+            ExecutorService service)
+        {
+            this.positions = positions;
+            this.callback = callback;
+            this.order = order;
+            this.deadline = deadline;
+            this.service = service;
+            this.numTasks = (order.length + SEGMENTS_PER_TASK - 1) / SEGMENTS_PER_TASK;
+        }
+
+        protected synchronized void start(int maxQueuedTasks)
+        {
+            while (this.nextTask < this.numTasks && this.runningTasks.size() < maxQueuedTasks && !this.isStopped())
+            {
+                this.submitNextTask();
+            }
+
+            if (this.runningTasks.isEmpty())
+                this.done.countDown();
+        }
+
+        protected boolean isStopped()
+        {
+            return this.cancelled || this.timedOut || this.failure != null;
+        }
+
+        protected void submitNextTask()
+        {
+            final int task = this.nextTask++;
+
+            try
+            {
+                this.runningTasks.put(task, this.service.submit(new Runnable()
+                {
+                    public void run()
                     {
-                        Intersection[] intersections = intersect(pA, pB);
-                        if (intersections != null)
+                        try
+                        {
+                            intersectSegments(task * SEGMENTS_PER_TASK,
+                                Math.min((task + 1) * SEGMENTS_PER_TASK, order.length));
+                        }
+                        finally
                         {
-                            callback.intersection(pA, pB, intersections);
+                            taskDone(task);
                         }
                     }
-                    catch (Exception e)
+                }));
+            }
+            catch (RejectedExecutionException e)
+            {
+                this.failure = e;
+            }
+        }
+
+        protected synchronized void taskDone(int task)
+        {
+            this.runningTasks.remove(task);
+
+            if (this.nextTask < this.numTasks && !this.isStopped())
+                this.submitNextTask();
+
+            if (this.runningTasks.isEmpty())
+                this.done.countDown();
+        }
+
+        protected void intersectSegments(int start, int end)
+        {
+            for (int n = start; n < end && !this.isStopped(); n++)
+            {
+                if (System.currentTimeMillis() > this.deadline)
+                {
+                    this.timedOut = true;
+                    return;
+                }
+
+                Position pA = this.positions.get(2 * this.order[n]);
+                Position pB = this.positions.get(2 * this.order[n] + 1);
+
+                try
+                {
+                    Intersection[] intersections = intersect(pA, pB);
+                    if (intersections != null && !this.cancelled)
                     {
-                        callback.exception(e);
+                        this.numIntersected.incrementAndGet();
+                        this.callback.intersection(pA, pB, intersections);
                     }
                 }
-            });
+                catch (Exception e)
+                {
+                    // Interrupts caused by cancellation are expected and not reported.
+                    if (!this.cancelled)
+                        this.callback.exception(e);
+                }
+            }
         }
 
-        service.shutdown();
-        service.awaitTermination(100, TimeUnit.DAYS); // wait indefinitely for all threads to complete
+        public synchronized boolean cancel(boolean mayInterruptIfRunning)
+        {
+            if (this.isDone())
+                return false;
+
+            this.cancelled = true;
+            for (Future<?> future : this.runningTasks.values())
+            {
+                future.cancel(mayInterruptIfRunning);
+            }
+            this.runningTasks.clear();
+            this.done.countDown();
+
+            return true;
+        }
+
+        public boolean isCancelled()
+        {
+            return this.cancelled;
+        }
+
+        public boolean isDone()
+        {
+            return this.done.getCount() == 0;
+        }
+
+        public Integer get() throws InterruptedException, ExecutionException
+        {
+            this.done.await();
+
+            return this.getResult();
+        }
+
+        public Integer get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+            TimeoutException
+        {
+            if (!this.done.await(timeout, unit))
+                throw new TimeoutException();
+
+            return this.getResult();
+        }
+
+        protected Integer getResult() throws ExecutionException
+        {
+            if (this.cancelled)
+                throw new CancellationException();
+
+            if (this.failure != null)
+                throw new ExecutionException(this.failure);
+
+            if (this.timedOut)
+            {
+                String msg = Logging.getMessage("HighResolutionTerrain.IntersectionBatchTimedOut");
+                throw new ExecutionException(new WWTimeoutException(msg));
+            }
+
+            return this.numIntersected.get();
+        }
     }
 
     /**
@@ -427,11 +427,12 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         if (!WorldWind.getMemoryCacheSet().containsCache(CACHE_ID))
         {
             long size = Configuration.getLongValue(AVKey.SECTOR_GEOMETRY_CACHE_SIZE, 10000000L);
-            MemoryCache cache = new BasicMemoryCache((long) (0.85 * size), size);
+            MemoryCache cache = BasicMemoryCacheSet.createMemoryCache((long) (0.85 * size), size);
             cache.setName(CACHE_NAME);
             WorldWind.getMemoryCacheSet().addCache(CACHE_ID, cache);
         }
 
+        long start = Instrumentation.start();
         this.maxLevel = Configuration.getIntegerValue(AVKey.RECTANGULAR_TESSELLATOR_MAX_LEVEL, DEFAULT_MAX_LEVEL);
 
         TopLevelTiles topLevels = (TopLevelTiles) this.topLevelTilesCache.get(dc.getGlobe().getStateKey(dc));
@@ -462,6 +463,7 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         // See SceneController2D.
         SectorGeometryList sgl = new SectorGeometryList(this.currentTiles);
         sgl.setSector(this.currentTiles.getSector());
+        Instrumentation.stop(Instrumentation.TESSELLATE, start);
         return sgl;
     }
 
@@ -695,8 +697,11 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         LatLon centroid = tile.sector.getCentroid();
         Vec4 refCenter = globe.computePointFromPosition(centroid.getLatitude(), centroid.getLongitude(), 0d);
 
+        // Gather the vertex positions into one array so that globes providing a bulk conversion can convert them
+        // without an intermediate Vec4 per vertex.
+        double[] positions = new double[3 * numVertices];
         int ie = 0;
-        int iv = 0;
+        int ip = 0;
         Iterator<LatLon> latLonIter = latlons.iterator();
         for (int j = 0; j <= density + 2; j++)
         {
@@ -710,13 +715,28 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
                     (j == 0 || j >= tile.density + 2 || i == 0 || i >= tile.density + 2))
                     elevation = exaggeratedMinElevation;
 
-                Vec4 p = globe.computePointFromPosition(latlon.getLatitude(), latlon.getLongitude(), elevation);
-                verts.put(iv++, (float) (p.x - refCenter.x));
-                verts.put(iv++, (float) (p.y - refCenter.y));
-                verts.put(iv++, (float) (p.z - refCenter.z));
+                positions[ip++] = latlon.getLatitude().degrees;
+                positions[ip++] = latlon.getLongitude().degrees;
+                positions[ip++] = elevation;
             }
         }
 
+        verts.rewind();
+        if (globe instanceof EllipsoidalGlobe)
+        {
+            ((EllipsoidalGlobe) globe).computePointsFromPositions(DoubleBuffer.wrap(positions), refCenter, verts);
+        }
+        else
+        {
+            for (int i = 0; i < positions.length; i += 3)
+            {
+                Vec4 p = globe.computePointFromPosition(Angle.fromDegrees(positions[i]),
+                    Angle.fromDegrees(positions[i + 1]), positions[i + 2]);
+                verts.put((float) (p.x - refCenter.x));
+                verts.put((float) (p.y - refCenter.y));
+                verts.put((float) (p.z - refCenter.z));
+            }
+        }
         verts.rewind();
 
         if (tile.ri != null)
@@ -57,6 +57,29 @@ public class ZeroElevationModel extends AbstractElevationModel
         return this.getElevations(sector, latlons, targetResolution, buffer);
     }
 
+    @Override
+    public double getElevations(Sector sector, java.nio.DoubleBuffer locations, double targetResolution,
+        double[] buffer)
+    {
+        int count = locations.remaining() / 2;
+        for (int i = 0; i < count; i++)
+        {
+            buffer[i] = 0;
+        }
+
+        // Mark the model as used this frame.
+        this.setValue(AVKey.FRAME_TIMESTAMP, System.currentTimeMillis());
+
+        return 0;
+    }
+
+    @Override
+    public double getUnmappedElevations(Sector sector, java.nio.DoubleBuffer locations, double targetResolution,
+        double[] buffer)
+    {
+        return this.getElevations(sector, locations, targetResolution, buffer);
+    }
+
     public int intersects(Sector sector)
     {
         return 0;
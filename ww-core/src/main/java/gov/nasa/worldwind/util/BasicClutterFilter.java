@@ -8,20 +8,25 @@ package gov.nasa.worldwind.util;
 import gov.nasa.worldwind.render.*;
 
 import java.awt.geom.*;
-import java.util.*;
+import java.util.List;
 
 /**
- * A simple clutter filter that compares bounding rectangles to each other.
+ * A simple clutter filter that compares bounding rectangles to each other. Shapes are accepted in the order specified,
+ * and a shape is accepted if its bounds intersect none of the shapes already accepted. The accepted bounds are indexed
+ * in a screen-space {@link ClutterGrid}, so each shape is compared only with the accepted shapes near it.
  *
  * @author tag
  * @version $Id$
  */
 public class BasicClutterFilter implements ClutterFilter
 {
-    protected List<Rectangle2D> rectList = new ArrayList<Rectangle2D>();
+    /** Holds the rectangles of the regions already drawn. Reused each frame. */
+    protected ClutterGrid grid = new ClutterGrid();
 
     public void apply(DrawContext dc, List<Declutterable> shapes)
     {
+        this.grid.clear(dc.getView() != null ? dc.getView().getViewport() : null);
+
         for (Declutterable shape : shapes)
         {
             Rectangle2D bounds = shape.getBounds(dc);
@@ -34,7 +39,7 @@ public class BasicClutterFilter implements ClutterFilter
             if (intersectingRegion == null)
             {
                 dc.addOrderedRenderable(shape);
-                this.rectList.add(bounds);
+                this.grid.add(bounds);
             }
         }
 
@@ -43,7 +48,7 @@ public class BasicClutterFilter implements ClutterFilter
 
     protected void clear()
     {
-        this.rectList.clear();
+        this.grid.clear(null);
     }
 
     /**
@@ -51,20 +56,11 @@ public class BasicClutterFilter implements ClutterFilter
      *
      * @param rectangle the region to test.
      *
-     * @return true if the region intersects one or more other regions in the filter, otherwise false.
+     * @return the first region added to the filter that intersects the specified region, or null if the specified
+     *         region intersects no other regions.
      */
     protected Rectangle2D intersects(Rectangle2D rectangle)
     {
-        if (rectangle == null)
-            return null;
-
-        // Performs a simple linear search. This is a performance bottleneck for very large lists.
-        for (Rectangle2D rect : this.rectList)
-        {
-            if (rectangle.intersects(rect))
-                return rect;
-        }
-
-        return null;
+        return this.grid.intersects(rectangle);
     }
 }
@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread-safe pool of equally sized, array-backed byte buffers, for use as temporary storage by code that would
+ * otherwise allocate a new buffer for each read. Buffers are obtained with {@link #acquire()} and must be returned with
+ * {@link #release(java.nio.ByteBuffer)} once their contents are no longer needed. A buffer must not be used after it's
+ * released.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public class ByteBufferPool
+{
+    protected final int bufferSize;
+    protected final int maxPooledBuffers;
+    protected final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+    protected final AtomicInteger numPooledBuffers = new AtomicInteger();
+
+    /**
+     * Creates a pool.
+     *
+     * @param bufferSize       the capacity of the pool's buffers, in bytes.
+     * @param maxPooledBuffers the maximum number of released buffers the pool retains. Buffers released while the pool
+     *                         holds this many are discarded.
+     *
+     * @throws IllegalArgumentException if the buffer size is less than 1 or the maximum number of buffers is negative.
+     */
+    public ByteBufferPool(int bufferSize, int maxPooledBuffers)
+    {
+        if (bufferSize < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", bufferSize);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (maxPooledBuffers < 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", maxPooledBuffers);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.bufferSize = bufferSize;
+        this.maxPooledBuffers = maxPooledBuffers;
+    }
+
+    public int getBufferSize()
+    {
+        return this.bufferSize;
+    }
+
+    public int getMaxPooledBuffers()
+    {
+        return this.maxPooledBuffers;
+    }
+
+    /**
+     * Returns the number of released buffers the pool currently holds.
+     *
+     * @return the number of pooled buffers.
+     */
+    public int getNumPooledBuffers()
+    {
+        return this.numPooledBuffers.get();
+    }
+
+    /**
+     * Returns a cleared buffer from the pool, or a new buffer if the pool is empty.
+     *
+     * @return a buffer with the pool's buffer size.
+     */
+    public ByteBuffer acquire()
+    {
+        ByteBuffer buffer = this.buffers.poll();
+        if (buffer == null)
+            return ByteBuffer.allocate(this.bufferSize);
+
+        this.numPooledBuffers.decrementAndGet();
+        buffer.clear();
+
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. Buffers not obtained from a pool with the same buffer size are ignored.
+     *
+     * @param buffer the buffer to release. May be null.
+     */
+    public void release(ByteBuffer buffer)
+    {
+        if (buffer == null || buffer.capacity() != this.bufferSize || !buffer.hasArray() || buffer.isReadOnly())
+            return;
+
+        if (this.numPooledBuffers.incrementAndGet() > this.maxPooledBuffers)
+        {
+            this.numPooledBuffers.decrementAndGet();
+            return;
+        }
+
+        buffer.clear();
+        this.buffers.offer(buffer);
+    }
+}
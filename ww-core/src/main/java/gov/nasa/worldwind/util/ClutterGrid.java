@@ -0,0 +1,231 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import java.awt.*;
+import java.awt.geom.*;
+import java.util.Arrays;
+
+/**
+ * A uniform grid of screen-space cells that indexes the rectangles accepted by a clutter filter, so that a filter
+ * can find the rectangles intersecting a new rectangle by testing only those in the cells the new rectangle overlaps.
+ * Rectangles outside the viewport are indexed in the grid's edge cells. The grid's arrays are retained when the grid
+ * is cleared, so a grid reused each frame doesn't allocate once it has grown to the frame's number of rectangles.
+ * <p/>
+ * {@link #intersects(java.awt.geom.Rectangle2D)} returns the first rectangle added that intersects the specified
+ * rectangle, which is the rectangle a linear search of the rectangles in the order added would find.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public class ClutterGrid
+{
+    /** The default width and height of a grid cell, in pixels. */
+    protected static final int DEFAULT_CELL_SIZE = 64;
+
+    protected int cellSize;
+    protected int x;
+    protected int y;
+    protected int numColumns;
+    protected int numRows;
+    /** The first and last entry of each cell, or -1 if the cell is empty. */
+    protected int[] cellFirst = new int[0];
+    protected int[] cellLast = new int[0];
+    /** The rectangle of each entry, and the next entry in the same cell or -1. */
+    protected int[] entryRect = new int[256];
+    protected int[] entryNext = new int[256];
+    protected int numEntries;
+    /** The rectangles added, and their coordinates. */
+    protected Rectangle2D[] rects = new Rectangle2D[64];
+    protected double[] coords = new double[4 * 64];
+    protected int numRects;
+
+    /** Creates a grid with the default cell size. */
+    public ClutterGrid()
+    {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Creates a grid with a specified cell size.
+     *
+     * @param cellSize the width and height of a grid cell, in pixels.
+     *
+     * @throws IllegalArgumentException if the cell size is less than 1.
+     */
+    public ClutterGrid(int cellSize)
+    {
+        if (cellSize < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "cellSize=" + cellSize);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.cellSize = cellSize;
+    }
+
+    public int getCellSize()
+    {
+        return this.cellSize;
+    }
+
+    /**
+     * Removes all rectangles from the grid and sizes the grid to cover a viewport.
+     *
+     * @param viewport the viewport to cover. If null, the grid covers a single cell at the origin.
+     */
+    public void clear(Rectangle viewport)
+    {
+        this.x = viewport != null ? viewport.x : 0;
+        this.y = viewport != null ? viewport.y : 0;
+        this.numColumns = viewport != null ? Math.max(1, (viewport.width + this.cellSize - 1) / this.cellSize) : 1;
+        this.numRows = viewport != null ? Math.max(1, (viewport.height + this.cellSize - 1) / this.cellSize) : 1;
+
+        int numCells = this.numColumns * this.numRows;
+        if (this.cellFirst.length < numCells)
+        {
+            this.cellFirst = new int[numCells];
+            this.cellLast = new int[numCells];
+        }
+        Arrays.fill(this.cellFirst, 0, numCells, -1);
+
+        Arrays.fill(this.rects, 0, this.numRects, null); // release the rectangles
+        this.numRects = 0;
+        this.numEntries = 0;
+    }
+
+    /**
+     * Indicates the number of rectangles in the grid.
+     *
+     * @return the number of rectangles added since the grid was last cleared.
+     */
+    public int size()
+    {
+        return this.numRects;
+    }
+
+    /**
+     * Adds a rectangle to the grid. Empty rectangles intersect no others, and are not added.
+     *
+     * @param rectangle the rectangle to add. If null, the grid is not modified.
+     */
+    public void add(Rectangle2D rectangle)
+    {
+        if (rectangle == null || rectangle.isEmpty())
+            return;
+
+        int index = this.numRects++;
+        if (index == this.rects.length)
+        {
+            this.rects = Arrays.copyOf(this.rects, 2 * index);
+            this.coords = Arrays.copyOf(this.coords, 8 * index);
+        }
+
+        this.rects[index] = rectangle;
+        this.coords[4 * index] = rectangle.getX();
+        this.coords[4 * index + 1] = rectangle.getY();
+        this.coords[4 * index + 2] = rectangle.getWidth();
+        this.coords[4 * index + 3] = rectangle.getHeight();
+
+        int minCol = this.column(rectangle.getMinX());
+        int maxCol = this.column(rectangle.getMaxX());
+        int minRow = this.row(rectangle.getMinY());
+        int maxRow = this.row(rectangle.getMaxY());
+
+        for (int row = minRow; row <= maxRow; row++)
+        {
+            for (int col = minCol; col <= maxCol; col++)
+            {
+                this.addEntry(col + row * this.numColumns, index);
+            }
+        }
+    }
+
+    protected void addEntry(int cell, int rectIndex)
+    {
+        int entry = this.numEntries++;
+        if (entry == this.entryRect.length)
+        {
+            this.entryRect = Arrays.copyOf(this.entryRect, 2 * entry);
+            this.entryNext = Arrays.copyOf(this.entryNext, 2 * entry);
+        }
+
+        // Append the entry to the end of the cell's list, so that each list is in the order the rectangles were added.
+        this.entryRect[entry] = rectIndex;
+        this.entryNext[entry] = -1;
+        if (this.cellFirst[cell] < 0)
+            this.cellFirst[cell] = entry;
+        else
+            this.entryNext[this.cellLast[cell]] = entry;
+        this.cellLast[cell] = entry;
+    }
+
+    /**
+     * Returns the first rectangle added to the grid that intersects a specified rectangle.
+     *
+     * @param rectangle the rectangle to test.
+     *
+     * @return the first rectangle intersecting the specified rectangle, or null if the specified rectangle is null or
+     *         intersects none of the grid's rectangles.
+     */
+    public Rectangle2D intersects(Rectangle2D rectangle)
+    {
+        if (rectangle == null || rectangle.isEmpty() || this.numRects == 0)
+            return null;
+
+        double rx = rectangle.getX();
+        double ry = rectangle.getY();
+        double rw = rectangle.getWidth();
+        double rh = rectangle.getHeight();
+
+        int minCol = this.column(rectangle.getMinX());
+        int maxCol = this.column(rectangle.getMaxX());
+        int minRow = this.row(rectangle.getMinY());
+        int maxRow = this.row(rectangle.getMaxY());
+
+        int first = Integer.MAX_VALUE;
+        for (int row = minRow; row <= maxRow; row++)
+        {
+            for (int col = minCol; col <= maxCol; col++)
+            {
+                // Each cell's list is in the order added, so only entries before the first intersection found so far
+                // need be tested.
+                for (int entry = this.cellFirst[col + row * this.numColumns]; entry >= 0;
+                    entry = this.entryNext[entry])
+                {
+                    int index = this.entryRect[entry];
+                    if (index >= first)
+                        break;
+
+                    // The same test as Rectangle2D.intersects, for rectangles known not to be empty.
+                    int k = 4 * index;
+                    double x0 = this.coords[k];
+                    double y0 = this.coords[k + 1];
+                    if (rx + rw > x0 && ry + rh > y0 && rx < x0 + this.coords[k + 2] && ry < y0 + this.coords[k + 3])
+                    {
+                        first = index;
+                        break;
+                    }
+                }
+            }
+        }
+
+        return first != Integer.MAX_VALUE ? this.rects[first] : null;
+    }
+
+    protected int column(double value)
+    {
+        int col = (int) Math.floor((value - this.x) / this.cellSize);
+        return col < 0 ? 0 : col >= this.numColumns ? this.numColumns - 1 : col;
+    }
+
+    protected int row(double value)
+    {
+        int row = (int) Math.floor((value - this.y) / this.cellSize);
+        return row < 0 ? 0 : row >= this.numRows ? this.numRows - 1 : row;
+    }
+}
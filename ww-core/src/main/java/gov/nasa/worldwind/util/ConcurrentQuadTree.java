@@ -0,0 +1,832 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.terrain.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A quadtree that may be queried while it is being modified. It has the same cell structure and query methods as
+ * {@link BasicQuadTree}, but queries never block:
+ * <ul> <li>Each leaf cell holds its items in an array that is replaced, never modified, when an item is added to or
+ * removed from the cell.</li> <li>Cell occupancy is held in an atomic bit set.</li> </ul>
+ * A query therefore sees each cell either as it was before or as it is after a concurrent modification. Modifications
+ * are serialized with each other, but compute the cells an item occupies before acquiring the tree's lock.
+ * <p/>
+ * Large collections can be loaded with {@link #addAll(java.util.List, java.util.List)}, which computes the cells of
+ * the items in parallel and updates each cell once, rather than walking the tree from the root and copying a cell's
+ * array once per item.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public class ConcurrentQuadTree<T> implements Iterable<T>
+{
+    /** The number of items whose cells are computed by a single task during a bulk load. */
+    protected static final int BULK_LOAD_GRAIN_SIZE = 4096;
+
+    protected final int numLevels;
+    protected final int[] levelSizes;
+    protected final ArrayList<double[]> levelZeroCells;
+    protected final boolean allowDuplicates;
+    /** One bit per cell at every level. A set bit indicates that the cell or one of its descendants holds items. */
+    protected final AtomicLongArray occupiedCells;
+    /** Maps the bit number of each occupied leaf cell to the cell's items. The arrays are never modified. */
+    protected final ConcurrentHashMap<Integer, Object[]> items = new ConcurrentHashMap<Integer, Object[]>();
+    protected final ConcurrentHashMap<String, T> nameMap = new ConcurrentHashMap<String, T>();
+
+    /**
+     * Constructs a quadtree of a specified level and spanning a specified region. See {@link
+     * BasicQuadTree#BasicQuadTree(int, gov.nasa.worldwind.geom.Sector, java.util.Map)} for a description of the effect
+     * of the number of levels.
+     *
+     * @param numLevels       the number of levels in the quadtree.
+     * @param sector          the region the tree spans.
+     * @param allowDuplicates indicates whether an item whose coordinates fall on a cell boundary is associated with
+     *                        each of the cells it touches. If false, the item is associated with only the first such
+     *                        cell.
+     *
+     * @throws IllegalArgumentException if <code>numLevels</code> is less than 1 or the sector is null.
+     */
+    public ConcurrentQuadTree(int numLevels, Sector sector, boolean allowDuplicates)
+    {
+        if (numLevels < 1)
+        {
+            String message = Logging.getMessage("generic.DepthOutOfRange", numLevels);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (sector == null)
+        {
+            String message = Logging.getMessage("nullValue.SectorIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.numLevels = numLevels;
+        this.levelSizes = BitSetQuadTreeFilter.computeLevelSizes(numLevels);
+        this.allowDuplicates = allowDuplicates;
+        this.occupiedCells = new AtomicLongArray((this.levelSizes[numLevels] + 63) / 64);
+
+        Sector[] subSectors = sector.subdivide();
+        this.levelZeroCells = new ArrayList<double[]>(4);
+        this.levelZeroCells.add(subSectors[0].asDegreesArray());
+        this.levelZeroCells.add(subSectors[1].asDegreesArray());
+        this.levelZeroCells.add(subSectors[3].asDegreesArray());
+        this.levelZeroCells.add(subSectors[2].asDegreesArray());
+    }
+
+    /**
+     * Constructs a quadtree of a specified level and spanning a specified region. Items whose coordinates fall on a
+     * cell boundary are associated with each of the cells they touch.
+     *
+     * @param numLevels the number of levels in the quadtree.
+     * @param sector    the region the tree spans.
+     *
+     * @throws IllegalArgumentException if <code>numLevels</code> is less than 1 or the sector is null.
+     */
+    public ConcurrentQuadTree(int numLevels, Sector sector)
+    {
+        this(numLevels, sector, true);
+    }
+
+    public int getNumLevels()
+    {
+        return this.numLevels;
+    }
+
+    /**
+     * Indicates whether the tree contains any items.
+     *
+     * @return true if the tree contains items, otherwise false.
+     */
+    public boolean hasItems()
+    {
+        return !this.items.isEmpty();
+    }
+
+    /**
+     * Indicates whether an item is contained in the tree.
+     *
+     * @param item the item to check. If null, false is returned.
+     *
+     * @return true if the item is in the tree, otherwise false.
+     */
+    public boolean contains(T item)
+    {
+        if (item == null)
+            return false;
+
+        for (Object[] cellItems : this.items.values())
+        {
+            if (indexOf(cellItems, item) >= 0)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Add a named item to the quadtree. Any name duplicates replace the current name association.
+     *
+     * @param item       the item to add.
+     * @param itemCoords an array specifying the region or location of the item. If the array's length is 2 it
+     *                   represents a location in [latitude, longitude]. If its length is 4 it represents a region in
+     *                   [minLatitude, maxLatitude, minLongitude, maxLongitude].
+     * @param itemName   the item name. If null, the item is added without a name.
+     *
+     * @throws IllegalArgumentException if either <code>item</code> or <code>itemCoords</code> is null.
+     */
+    public void add(T item, double[] itemCoords, String itemName)
+    {
+        if (item == null)
+        {
+            String message = Logging.getMessage("nullValue.ItemIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (itemCoords == null)
+        {
+            String message = Logging.getMessage("nullValue.CoordinatesAreNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        // Find the cells outside the lock; only the update of the cells is serialized.
+        List<Integer> cells = new FindItemCellsOp(this).getItemCells(itemCoords, new ArrayList<Integer>());
+
+        synchronized (this)
+        {
+            for (Integer cell : cells)
+            {
+                this.addToCell(cell, Collections.singletonList(item));
+            }
+
+            if (itemName != null)
+                this.nameMap.put(itemName, item);
+        }
+    }
+
+    /**
+     * Add an item to the quadtree.
+     *
+     * @param item       the item to add.
+     * @param itemCoords an array specifying the region or location of the item, as described for {@link #add(Object,
+     *                   double[], String)}.
+     *
+     * @throws IllegalArgumentException if either <code>item</code> or <code>itemCoords</code> is null.
+     */
+    public void add(T item, double[] itemCoords)
+    {
+        this.add(item, itemCoords, null);
+    }
+
+    /**
+     * Adds a collection of items to the quadtree. The cells of the items are computed in parallel on the shared
+     * fork-join pool, see {@link ForkJoinSupport}, and each cell is then updated once with all the items it receives.
+     * Concurrent queries see the items of a cell either all or none at a time.
+     *
+     * @param itemList   the items to add.
+     * @param coordsList the region or location of each item, as described for {@link #add(Object, double[],
+     *                   String)}. Must be the same size as <code>itemList</code>.
+     *
+     * @throws IllegalArgumentException if either list is null, if the lists differ in size, or if either list contains
+     *                                  a null element.
+     */
+    public void addAll(List<? extends T> itemList, List<double[]> coordsList)
+    {
+        if (itemList == null || coordsList == null)
+        {
+            String message = Logging.getMessage("nullValue.ListIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (itemList.size() != coordsList.size())
+        {
+            String message = Logging.getMessage("generic.ListSizesDiffer", itemList.size(), coordsList.size());
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (itemList.isEmpty())
+            return;
+
+        // Collections that fit in one task are computed on the calling thread. Larger ones are split among the
+        // threads of the shared fork-join pool.
+        BulkLoadTask<T> task = new BulkLoadTask<T>(this, itemList, coordsList, 0, itemList.size());
+        Map<Integer, List<T>> cellItems = itemList.size() <= BULK_LOAD_GRAIN_SIZE ? task.invoke()
+            : ForkJoinSupport.invoke(task);
+
+        synchronized (this)
+        {
+            for (Map.Entry<Integer, List<T>> entry : cellItems.entrySet())
+            {
+                this.addToCell(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Removes an item from the tree.
+     * <p/>
+     * <em>Note:</em> This searches every cell of the tree. If the item's coordinates are known, use {@link
+     * #remove(Object, double[])}.
+     *
+     * @param item the item to remove. If null, no item is removed.
+     */
+    synchronized public void remove(T item)
+    {
+        if (item == null)
+            return;
+
+        for (Integer cell : this.items.keySet())
+        {
+            this.removeFromCell(cell, item);
+        }
+    }
+
+    /**
+     * Removes an item from the cells corresponding to specified coordinates. Only those cells are searched, so this is
+     * the efficient way to remove or move items whose coordinates are known.
+     *
+     * @param item       the item to remove. If null, no item is removed.
+     * @param itemCoords the coordinates with which the item was added.
+     *
+     * @throws IllegalArgumentException if <code>itemCoords</code> is null.
+     */
+    public void remove(T item, double[] itemCoords)
+    {
+        if (itemCoords == null)
+        {
+            String message = Logging.getMessage("nullValue.CoordinatesAreNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (item == null)
+            return;
+
+        // The cells are computed the same way as when the item was added, so duplicates are found too.
+        List<Integer> cells = new FindItemCellsOp(this).getItemCells(itemCoords, new ArrayList<Integer>());
+
+        synchronized (this)
+        {
+            for (Integer cell : cells)
+            {
+                this.removeFromCell(cell, item);
+            }
+        }
+    }
+
+    /**
+     * Removes an item from the tree by name.
+     * <p/>
+     * <em>Note:</em> For large collections, this can be an expensive operation.
+     *
+     * @param name the name of the item to remove. If null, no item is removed.
+     */
+    synchronized public void removeByName(String name)
+    {
+        if (name == null)
+            return;
+
+        T item = this.nameMap.remove(name);
+        if (item != null)
+            this.remove(item);
+    }
+
+    /** Removes all items from the tree. */
+    synchronized public void clear()
+    {
+        this.items.clear();
+        this.nameMap.clear();
+
+        for (int i = 0; i < this.occupiedCells.length(); i++)
+        {
+            this.occupiedCells.set(i, 0);
+        }
+    }
+
+    /**
+     * Returns a named item.
+     *
+     * @param name the item name. If null, null is returned.
+     *
+     * @return the named item, or null if the item is not in the tree or the specified name is null.
+     */
+    public T getByName(String name)
+    {
+        return name != null ? this.nameMap.get(name) : null;
+    }
+
+    /**
+     * Returns an iterator over the items in the tree. There is no specific iteration order and the iterator may return
+     * duplicate entries. The iterator reflects the items in each cell at the time the iterator reaches the cell, and
+     * never throws {@link java.util.ConcurrentModificationException}.
+     * <p/>
+     * <em>Note</em> The {@link java.util.Iterator#remove()} operation is not supported.
+     *
+     * @return an iterator over the items in the tree.
+     */
+    public Iterator<T> iterator()
+    {
+        return new Iterator<T>()
+        {
+            private Iterator<Object[]> cellIterator = ConcurrentQuadTree.this.items.values().iterator();
+            private Object[] cellItems;
+            private int index;
+
+            public boolean hasNext()
+            {
+                while (this.cellItems == null || this.index >= this.cellItems.length)
+                {
+                    if (!this.cellIterator.hasNext())
+                        return false;
+
+                    this.cellItems = this.cellIterator.next();
+                    this.index = 0;
+                }
+
+                return true;
+            }
+
+            @SuppressWarnings({"unchecked"})
+            public T next()
+            {
+                if (!this.hasNext())
+                    throw new NoSuchElementException("Iteration has no more elements.");
+
+                return (T) this.cellItems[this.index++];
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException("The remove() operations is not supported by this Iterator.");
+            }
+        };
+    }
+
+    /**
+     * Finds and returns the items within a tree cell containing a specified location.
+     *
+     * @param location the location of interest.
+     * @param outItems a {@link Set} in which to place the items. If null, a new set is created.
+     *
+     * @return the set of intersecting items. The same set passed as the <code>outItems</code> argument is returned, or
+     *         a new set if that argument is null.
+     *
+     * @throws IllegalArgumentException if <code>location</code> is null.
+     */
+    public Set<T> getItemsAtLocation(LatLon location, Set<T> outItems)
+    {
+        if (location == null)
+        {
+            String message = Logging.getMessage("nullValue.LatLonIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        FindOccupiedCellsOp op = new FindOccupiedCellsOp(this);
+
+        return this.buildItemSet(op.getOccupiedCells(location.asDegreesArray(), new ArrayList<Integer>()), outItems);
+    }
+
+    /**
+     * Finds and returns the items within tree cells containing specified locations.
+     *
+     * @param locations the locations of interest.
+     * @param outItems  a {@link Set} in which to place the items. If null, a new set is created.
+     *
+     * @return the set of intersecting items. The same set passed as the <code>outItems</code> argument is returned, or
+     *         a new set if that argument is null.
+     *
+     * @throws IllegalArgumentException if <code>locations</code> is null.
+     */
+    public Set<T> getItemsAtLocation(Iterable<LatLon> locations, Set<T> outItems)
+    {
+        if (locations == null)
+        {
+            String message = Logging.getMessage("nullValue.LatLonListIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        FindOccupiedCellsOp op = new FindOccupiedCellsOp(this);
+
+        List<Integer> cells = new ArrayList<Integer>();
+        for (LatLon location : locations)
+        {
+            if (location != null)
+                cells = op.getOccupiedCells(location.asDegreesArray(), cells);
+        }
+
+        return this.buildItemSet(cells, outItems);
+    }
+
+    /**
+     * Finds and returns the items intersecting a specified sector.
+     *
+     * @param testSector the sector of interest.
+     * @param outItems   a {@link Set} in which to place the items. If null, a new set is created.
+     *
+     * @return the set of intersecting items. The same set passed as the <code>outItems</code> argument is returned, or
+     *         a new set if that argument is null.
+     *
+     * @throws IllegalArgumentException if <code>testSector</code> is null.
+     */
+    public Set<T> getItemsInRegion(Sector testSector, Set<T> outItems)
+    {
+        if (testSector == null)
+        {
+            String message = Logging.getMessage("nullValue.SectorIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        FindOccupiedCellsOp op = new FindOccupiedCellsOp(this);
+
+        return this.buildItemSet(op.getOccupiedCells(testSector.asDegreesArray(), new ArrayList<Integer>()), outItems);
+    }
+
+    /**
+     * Finds and returns the items intersecting a specified collection of sectors.
+     *
+     * @param testSectors the sectors of interest.
+     * @param outItems    a {@link Set} in which to place the items. If null, a new set is created.
+     *
+     * @return the set of intersecting items. The same set passed as the <code>outItems</code> argument is returned, or
+     *         a new set if that argument is null.
+     *
+     * @throws IllegalArgumentException if <code>testSectors</code> is null.
+     */
+    public Set<T> getItemsInRegions(Iterable<Sector> testSectors, Set<T> outItems)
+    {
+        if (testSectors == null)
+        {
+            String message = Logging.getMessage("nullValue.SectorListIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        FindOccupiedCellsOp op = new FindOccupiedCellsOp(this);
+
+        List<Integer> cells = new ArrayList<Integer>();
+        for (Sector testSector : testSectors)
+        {
+            if (testSector != null)
+                cells = op.getOccupiedCells(testSector.asDegreesArray(), cells);
+        }
+
+        return this.buildItemSet(cells, outItems);
+    }
+
+    /**
+     * Finds and returns the items intersecting a specified collection of {@link
+     * gov.nasa.worldwind.terrain.SectorGeometry}. This method is a convenience for finding the items intersecting the
+     * current visible regions.
+     *
+     * @param geometryList the list of sector geometry.
+     * @param outItems     a {@link Set} in which to place the items. If null, a new set is created.
+     *
+     * @return the set of intersecting items. The same set passed as the <code>outItems</code> argument is returned, or
+     *         a new set if that argument is null.
+     *
+     * @throws IllegalArgumentException if <code>geometryList</code> is null.
+     */
+    public Set<T> getItemsInRegions(SectorGeometryList geometryList, Set<T> outItems)
+    {
+        if (geometryList == null)
+        {
+            String message = Logging.getMessage("nullValue.SectorGeometryListIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        FindOccupiedCellsOp op = new FindOccupiedCellsOp(this);
+
+        List<Integer> cells = new ArrayList<Integer>();
+        for (SectorGeometry testSector : geometryList)
+        {
+            if (testSector != null)
+                cells = op.getOccupiedCells(testSector.getSector().asDegreesArray(), cells);
+        }
+
+        return this.buildItemSet(cells, outItems);
+    }
+
+    /**
+     * Adds the items of a list of leaf cells to the set returned by the get methods.
+     *
+     * @param cells    the bit numbers of the cells containing the items to return.
+     * @param outItems a {@link Set} in which to place the items. If null, a new set is created.
+     *
+     * @return the set of items. The value passed as the <code>outItems</code> is returned.
+     */
+    @SuppressWarnings({"unchecked"})
+    protected Set<T> buildItemSet(List<Integer> cells, Set<T> outItems)
+    {
+        if (outItems == null)
+            outItems = new HashSet<T>();
+
+        for (Integer cell : cells)
+        {
+            Object[] cellItems = this.items.get(cell);
+            if (cellItems == null)
+                continue;
+
+            for (Object item : cellItems)
+            {
+                outItems.add((T) item);
+            }
+        }
+
+        return outItems;
+    }
+
+    /**
+     * Replaces a leaf cell's item array with one that includes additional items, and marks the cell and its ancestors
+     * occupied. Must be called while holding this tree's lock.
+     *
+     * @param cell     the bit number of the leaf cell.
+     * @param newItems the items to add to the cell.
+     */
+    protected void addToCell(Integer cell, List<? extends T> newItems)
+    {
+        Object[] oldItems = this.items.get(cell);
+        int oldLength = oldItems != null ? oldItems.length : 0;
+
+        Object[] cellItems = new Object[oldLength + newItems.size()];
+        if (oldItems != null)
+            System.arraycopy(oldItems, 0, cellItems, 0, oldLength);
+        for (int i = 0; i < newItems.size(); i++)
+        {
+            cellItems[oldLength + i] = newItems.get(i);
+        }
+
+        // Publish the items before marking the cell occupied so that a query finding the bit set finds the items.
+        this.items.put(cell, cellItems);
+
+        int index = cell - this.levelSizes[this.numLevels - 1];
+        for (int level = this.numLevels - 1; level >= 0; level--)
+        {
+            if (!this.setOccupied(this.levelSizes[level] + index))
+                break; // the ancestors were marked when this cell was marked
+
+            index /= 4;
+        }
+    }
+
+    /**
+     * Replaces a leaf cell's item array with one that excludes a specified item. The cell is marked unoccupied if it
+     * becomes empty. Must be called while holding this tree's lock.
+     *
+     * @param cell the bit number of the leaf cell.
+     * @param item the item to remove.
+     */
+    protected void removeFromCell(Integer cell, T item)
+    {
+        Object[] oldItems = this.items.get(cell);
+        if (oldItems == null)
+            return;
+
+        int i = indexOf(oldItems, item);
+        if (i < 0)
+            return;
+
+        if (oldItems.length == 1)
+        {
+            this.clearOccupied(cell);
+            this.items.remove(cell);
+            return;
+        }
+
+        Object[] cellItems = new Object[oldItems.length - 1];
+        System.arraycopy(oldItems, 0, cellItems, 0, i);
+        System.arraycopy(oldItems, i + 1, cellItems, i, cellItems.length - i);
+        this.items.put(cell, cellItems);
+    }
+
+    protected static int indexOf(Object[] cellItems, Object item)
+    {
+        for (int i = 0; i < cellItems.length; i++)
+        {
+            if (cellItems[i] == item || cellItems[i].equals(item))
+                return i;
+        }
+
+        return -1;
+    }
+
+    protected boolean isOccupied(int bitNum)
+    {
+        return (this.occupiedCells.get(bitNum >>> 6) & (1L << bitNum)) != 0;
+    }
+
+    /**
+     * Marks a cell occupied.
+     *
+     * @param bitNum the cell's bit number.
+     *
+     * @return true if the cell was not already marked occupied, otherwise false.
+     */
+    protected boolean setOccupied(int bitNum)
+    {
+        int word = bitNum >>> 6;
+        long mask = 1L << bitNum;
+
+        while (true)
+        {
+            long bits = this.occupiedCells.get(word);
+            if ((bits & mask) != 0)
+                return false;
+
+            if (this.occupiedCells.compareAndSet(word, bits, bits | mask))
+                return true;
+        }
+    }
+
+    protected void clearOccupied(int bitNum)
+    {
+        // Only leaf cells are cleared. Ancestors left marked merely cause queries to visit empty cells.
+        int word = bitNum >>> 6;
+        long mask = 1L << bitNum;
+
+        while (true)
+        {
+            long bits = this.occupiedCells.get(word);
+            if (this.occupiedCells.compareAndSet(word, bits, bits & ~mask))
+                return;
+        }
+    }
+
+    /**
+     * Finds the leaf cells an item is associated with when it is added. This operation depends only on the item's
+     * coordinates and the tree's structure, so it may be performed concurrently with modifications and queries.
+     */
+    protected static class FindItemCellsOp extends BitSetQuadTreeFilter
+    {
+        protected final ConcurrentQuadTree<?> tree;
+        protected List<Integer> cells;
+
+        public FindItemCellsOp(ConcurrentQuadTree<?> tree)
+        {
+            // The tree's occupancy is held in an atomic bit set, so the filter's own bit set is unused.
+            super(tree.getNumLevels(), new BitSet(0));
+
+            this.tree = tree;
+        }
+
+        public List<Integer> getItemCells(double[] itemCoords, List<Integer> outCells)
+        {
+            this.cells = outCells;
+            this.start();
+
+            for (int i = 0; i < this.tree.levelZeroCells.size(); i++)
+            {
+                this.testAndDo(0, i, this.tree.levelZeroCells.get(i), itemCoords);
+            }
+
+            return this.cells;
+        }
+
+        protected boolean doOperation(int level, int position, double[] cellRegion, double[] itemCoords)
+        {
+            if (level < this.maxLevel)
+                return true;
+
+            this.cells.add(this.computeBitPosition(level, position));
+
+            if (!this.tree.allowDuplicates)
+                this.stop();
+
+            return false;
+        }
+    }
+
+    /** Finds the occupied leaf cells intersecting a region or location, skipping unoccupied subtrees. */
+    protected static class FindOccupiedCellsOp extends BitSetQuadTreeFilter
+    {
+        protected final ConcurrentQuadTree<?> tree;
+        protected List<Integer> cells;
+
+        public FindOccupiedCellsOp(ConcurrentQuadTree<?> tree)
+        {
+            // The tree's occupancy is held in an atomic bit set, so the filter's own bit set is unused.
+            super(tree.getNumLevels(), new BitSet(0));
+
+            this.tree = tree;
+        }
+
+        public List<Integer> getOccupiedCells(double[] testRegion, List<Integer> outCells)
+        {
+            this.cells = outCells;
+
+            for (int i = 0; i < this.tree.levelZeroCells.size(); i++)
+            {
+                this.testAndDo(0, i, this.tree.levelZeroCells.get(i), testRegion);
+            }
+
+            return this.cells;
+        }
+
+        protected boolean doOperation(int level, int position, double[] cellRegion, double[] testRegion)
+        {
+            int bitNum = this.computeBitPosition(level, position);
+
+            if (!this.tree.isOccupied(bitNum))
+                return false;
+
+            if (level < this.maxLevel)
+                return true;
+
+            this.cells.add(bitNum);
+
+            return false;
+        }
+    }
+
+    /** Computes the cells of a range of items and groups the items by cell, splitting the range among threads. */
+    protected static class BulkLoadTask<T> extends RecursiveTask<Map<Integer, List<T>>>
+    {
+        protected final ConcurrentQuadTree<?> tree;
+        protected final List<? extends T> itemList;
+        protected final List<double[]> coordsList;
+        protected final int start;
+        protected final int end;
+
+        public BulkLoadTask(ConcurrentQuadTree<?> tree, List<? extends T> itemList, List<double[]> coordsList,
+            int start, int end)
+        {
+            this.tree = tree;
+            this.itemList = itemList;
+            this.coordsList = coordsList;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Map<Integer, List<T>> compute()
+        {
+            if (this.end - this.start > BULK_LOAD_GRAIN_SIZE)
+            {
+                int mid = (this.start + this.end) >>> 1;
+                BulkLoadTask<T> left = new BulkLoadTask<T>(this.tree, this.itemList, this.coordsList, this.start, mid);
+                BulkLoadTask<T> right = new BulkLoadTask<T>(this.tree, this.itemList, this.coordsList, mid, this.end);
+                left.fork();
+
+                Map<Integer, List<T>> cellItems = right.compute();
+                for (Map.Entry<Integer, List<T>> entry : left.join().entrySet())
+                {
+                    List<T> list = cellItems.get(entry.getKey());
+                    if (list != null)
+                        list.addAll(entry.getValue());
+                    else
+                        cellItems.put(entry.getKey(), entry.getValue());
+                }
+
+                return cellItems;
+            }
+
+            Map<Integer, List<T>> cellItems = new HashMap<Integer, List<T>>();
+            FindItemCellsOp op = new FindItemCellsOp(this.tree);
+            List<Integer> cells = new ArrayList<Integer>();
+
+            for (int i = this.start; i < this.end; i++)
+            {
+                T item = this.itemList.get(i);
+                double[] itemCoords = this.coordsList.get(i);
+                if (item == null || itemCoords == null)
+                {
+                    String message = Logging.getMessage("nullValue.ListElementIsNull", i);
+                    Logging.logger().severe(message);
+                    throw new IllegalArgumentException(message);
+                }
+
+                cells.clear();
+                for (Integer cell : op.getItemCells(itemCoords, cells))
+                {
+                    List<T> list = cellItems.get(cell);
+                    if (list == null)
+                    {
+                        list = new ArrayList<T>();
+                        cellItems.put(cell, list);
+                    }
+                    list.add(item);
+                }
+            }
+
+            return cellItems;
+        }
+    }
+}
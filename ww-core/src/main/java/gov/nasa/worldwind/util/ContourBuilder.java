@@ -8,6 +8,7 @@ package gov.nasa.worldwind.util;
 import gov.nasa.worldwind.geom.*;
 
 import java.util.*;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Generates contour lines at threshold values in a rectangular array of numeric values. ContourBuilder differs from the
@@ -28,158 +29,120 @@ import java.util.*;
  * the rectangular array's maximum value, though the result is an empty list of contour lines. The domain of contour
  * line coordinates is the XY Cartesian space defined by the rectangular array's width and height. X coordinates range
  * from 0 to width-1, and Y coordinates range from 0 to height-1.
+ * <p/>
+ * Contour lines at several threshold values may be computed together by calling {@link #buildContourLines(double[])} or
+ * {@link #buildContourLines(double[], gov.nasa.worldwind.geom.Sector, double)}. These methods divide the array into
+ * tiles of contouring cells and trace the tiles in parallel on the shared {@link ForkJoinSupport} pool. Each tile's
+ * cells are classified against all the threshold values in one pass over the tile's values, and then each threshold
+ * value's contour lines are traced within the tile. Finally the pieces that cross tile boundaries are joined. The
+ * traced tiles are retained for the threshold values of the most recent call, so calling these methods again after
+ * changing the contour interval traces only the threshold values not already computed. When a region of the array
+ * changes, call {@link #updateValues(int, int, int, int, double[])} or {@link #invalidate(int, int, int, int)} and only
+ * the tiles overlapping the region are traced again.
+ * <p/>
+ * ContourBuilder is not thread-safe.
  *
  * @author dcollins
  * @version $Id$
  */
 public class ContourBuilder
 {
-    protected static class CellInfo
-    {
-        public final int x;
-        public final int y;
-        public final int contourMask;
-        public final Map<Direction, Double> edgeWeights = new HashMap<Direction, Double>();
-        public final Set<Direction> visitedDirections = new HashSet<Direction>(4);
+    /** The default number of contouring cells along each side of a tile. */
+    protected static final int DEFAULT_TILE_SIZE = 128;
+
+    // Cell edge directions. The bit for a direction in a cell's visited mask is 1 << direction.
+    protected static final int NORTH = 0;
+    protected static final int SOUTH = 1;
+    protected static final int EAST = 2;
+    protected static final int WEST = 3;
+
+    /** The direction opposite each direction. */
+    protected static final int[] DIR_REV = {SOUTH, NORTH, WEST, EAST};
+    /**
+     * The direction in which a contour leaves a cell, indexed by the cell's contour mask and the direction from which
+     * the contour enters the cell. -1 indicates the contour doesn't cross the entry edge.
+     */
+    protected static final int[][] DIR_NEXT = new int[16][4];
+    /**
+     * The directions from which contours are traced in a cell, indexed by the cell's contour mask. Each pair of
+     * consecutive directions are the two ends of one contour segment, and the pairs are traced in this order.
+     */
+    protected static final int[][] START_DIRS = new int[16][];
 
-        public CellInfo(int x, int y, int contourMask)
+    static
+    {
+        for (int[] dirs : DIR_NEXT)
         {
-            this.x = x;
-            this.y = y;
-            this.contourMask = contourMask;
+            Arrays.fill(dirs, -1);
         }
+
+        putSegments(1, SOUTH, WEST);
+        putSegments(2, SOUTH, EAST);
+        putSegments(3, EAST, WEST);
+        putSegments(4, NORTH, EAST);
+        putSegments(5, NORTH, WEST, SOUTH, EAST);
+        putSegments(6, NORTH, SOUTH);
+        putSegments(7, NORTH, WEST);
+        putSegments(8, NORTH, WEST);
+        putSegments(9, NORTH, SOUTH);
+        putSegments(10, NORTH, EAST, SOUTH, WEST);
+        putSegments(11, NORTH, EAST);
+        putSegments(12, EAST, WEST);
+        putSegments(13, SOUTH, EAST);
+        putSegments(14, SOUTH, WEST);
+        START_DIRS[0] = new int[0];
+        START_DIRS[15] = new int[0];
     }
 
-    protected static class CellKey
+    protected static void putSegments(int mask, int... dirs)
     {
-        public final int x;
-        public final int y;
-
-        public CellKey(int x, int y)
+        for (int i = 0; i < dirs.length; i += 2)
         {
-            this.x = x;
-            this.y = y;
+            DIR_NEXT[mask][dirs[i]] = dirs[i + 1];
+            DIR_NEXT[mask][dirs[i + 1]] = dirs[i];
         }
 
-        @Override
-        public boolean equals(Object o)
-        {
-            if (this == o)
-                return true;
-            if (o == null || this.getClass() != o.getClass())
-                return false;
+        START_DIRS[mask] = dirs;
+    }
 
-            CellKey that = (CellKey) o;
-            return this.x == that.x && this.y == that.y;
-        }
+    /**
+     * A piece of a contour line within one tile. Coordinates are held as consecutive x and y values. A piece that
+     * leaves its tile through an edge shared with another tile records the edge's identifier so that it can be joined
+     * with the piece in the other tile.
+     */
+    protected static class ContourFragment
+    {
+        public final double[] coords;
+        /** The edge at the fragment's first point, or -1 if the fragment doesn't leave its tile there. */
+        public final long startEdge;
+        /** The edge at the fragment's last point, or -1 if the fragment doesn't leave its tile there. */
+        public final long endEdge;
 
-        @Override
-        public int hashCode()
+        public ContourFragment(double[] coords, long startEdge, long endEdge)
         {
-            return 31 * this.x + this.y;
+            this.coords = coords;
+            this.startEdge = startEdge;
+            this.endEdge = endEdge;
         }
     }
 
-    protected static enum Direction
+    /** The contour fragments of one threshold value in one tile. */
+    protected static class ContourTile
     {
-        NORTH, SOUTH, EAST, WEST
+        public final List<ContourFragment> fragments;
+
+        public ContourTile(List<ContourFragment> fragments)
+        {
+            this.fragments = fragments;
+        }
     }
 
     protected int width;
     protected int height;
     protected double[] values;
-    protected Map<CellKey, CellInfo> contourCellMap = new HashMap<CellKey, CellInfo>();
-    protected List<CellKey> contourCellList = new ArrayList<CellKey>();
-    protected List<List<double[]>> contourList = new ArrayList<List<double[]>>();
-    protected List<double[]> currentContour;
-
-    protected static Map<Direction, Direction> dirRev = new HashMap<Direction, Direction>();
-    protected static Map<Integer, LinkedHashMap<Direction, Direction>> dirNext
-        = new HashMap<Integer, LinkedHashMap<Direction, Direction>>();
-
-    static
-    {
-        dirRev.put(Direction.NORTH, Direction.SOUTH);
-        dirRev.put(Direction.SOUTH, Direction.NORTH);
-        dirRev.put(Direction.EAST, Direction.WEST);
-        dirRev.put(Direction.WEST, Direction.EAST);
-
-        // Use LinkedHaspMap to store the maps in dirNext in order to preserve enumeration order. The method
-        // traverseContourCells requires that the directions are enumerated in the order listed here.
-        LinkedHashMap<Direction, Direction> map = new LinkedHashMap<Direction, Direction>();
-        map.put(Direction.SOUTH, Direction.WEST);
-        map.put(Direction.WEST, Direction.SOUTH);
-        dirNext.put(1, map);
-
-        map = new LinkedHashMap<Direction, Direction>();
-        map.put(Direction.SOUTH, Direction.EAST);
-        map.put(Direction.EAST, Direction.SOUTH);
-        dirNext.put(2, map);
-
-        map = new LinkedHashMap<Direction, Direction>();
-        map.put(Direction.EAST, Direction.WEST);
-        map.put(Direction.WEST, Direction.EAST);
-        dirNext.put(3, map);
-
-        map = new LinkedHashMap<Direction, Direction>();
-        map.put(Direction.NORTH, Direction.EAST);
-        map.put(Direction.EAST, Direction.NORTH);
-        dirNext.put(4, map);
-
-        map = new LinkedHashMap<Direction, Direction>();
-        map.put(Direction.NORTH, Direction.WEST);
-        map.put(Direction.WEST, Direction.NORTH);
-        map.put(Direction.SOUTH, Direction.EAST);
-        map.put(Direction.EAST, Direction.SOUTH);
-        dirNext.put(5, map);
-
-        map = new LinkedHashMap<Direction, Direction>();
-        map.put(Direction.NORTH, Direction.SOUTH);
-        map.put(Direction.SOUTH, Direction.NORTH);
-        dirNext.put(6, map);
-
-        map = new LinkedHashMap<Direction, Direction>();
-        map.put(Direction.NORTH, Direction.WEST);
-        map.put(Direction.WEST, Direction.NORTH);
-        dirNext.put(7, map);
-
-        map = new LinkedHashMap<Direction, Direction>();
-        map.put(Direction.NORTH, Direction.WEST);
-        map.put(Direction.WEST, Direction.NORTH);
-        dirNext.put(8, map);
-
-        map = new LinkedHashMap<Direction, Direction>();
-        map.put(Direction.NORTH, Direction.SOUTH);
-        map.put(Direction.SOUTH, Direction.NORTH);
-        dirNext.put(9, map);
-
-        map = new LinkedHashMap<Direction, Direction>();
-        map.put(Direction.NORTH, Direction.EAST);
-        map.put(Direction.EAST, Direction.NORTH);
-        map.put(Direction.SOUTH, Direction.WEST);
-        map.put(Direction.WEST, Direction.SOUTH);
-        dirNext.put(10, map);
-
-        map = new LinkedHashMap<Direction, Direction>();
-        map.put(Direction.NORTH, Direction.EAST);
-        map.put(Direction.EAST, Direction.NORTH);
-        dirNext.put(11, map);
-
-        map = new LinkedHashMap<Direction, Direction>();
-        map.put(Direction.EAST, Direction.WEST);
-        map.put(Direction.WEST, Direction.EAST);
-        dirNext.put(12, map);
-
-        map = new LinkedHashMap<Direction, Direction>();
-        map.put(Direction.SOUTH, Direction.EAST);
-        map.put(Direction.EAST, Direction.SOUTH);
-        dirNext.put(13, map);
-
-        map = new LinkedHashMap<Direction, Direction>();
-        map.put(Direction.SOUTH, Direction.WEST);
-        map.put(Direction.WEST, Direction.SOUTH);
-        dirNext.put(14, map);
-    }
+    protected int tileSize = DEFAULT_TILE_SIZE;
+    /** The traced tiles of the threshold values of the most recent multi-value build, in row-major tile order. */
+    protected Map<Double, ContourTile[]> tileCache = new HashMap<Double, ContourTile[]>();
 
     /**
      * Creates a new ContourBuilder with the specified rectangular array arguments. The array is understood to be
@@ -230,6 +193,41 @@ public class ContourBuilder
         this.values = values;
     }
 
+    /**
+     * Indicates the number of contouring cells along each side of the tiles used by the multi-value build methods.
+     *
+     * @return the tile size, in cells.
+     */
+    public int getTileSize()
+    {
+        return this.tileSize;
+    }
+
+    /**
+     * Specifies the number of contouring cells along each side of the tiles used by the multi-value build methods.
+     * Smaller tiles spread the work across more threads and limit the work of an incremental update, but create more
+     * contour pieces to join. Changing the tile size discards the retained tiles.
+     *
+     * @param tileSize the tile size, in cells.
+     *
+     * @throws IllegalArgumentException if the tile size is less than 1.
+     */
+    public void setTileSize(int tileSize)
+    {
+        if (tileSize < 1)
+        {
+            String msg = Logging.getMessage("generic.ArgumentOutOfRange", "tileSize=" + tileSize);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (this.tileSize != tileSize)
+        {
+            this.tileSize = tileSize;
+            this.tileCache.clear();
+        }
+    }
+
     /**
      * Computes the contour lines at a specified threshold value. The returned list represents a collection of
      * individual geographic polylines, which may or may not represent a closed loop. Each polyline is represented as a
@@ -248,14 +246,7 @@ public class ContourBuilder
      */
     public List<List<double[]>> buildContourLines(double value)
     {
-        this.assembleContourCells(value);
-        this.traverseContourCells();
-
-        List<List<double[]>> result = new ArrayList<List<double[]>>(this.contourList); // return a copy to insulate from changes
-
-        this.clearContourCells(); // clears contourList
-
-        return result;
+        return this.toCoordLists(this.traceContourLines(value));
     }
 
     /**
@@ -294,247 +285,855 @@ public class ContourBuilder
             throw new IllegalArgumentException(msg);
         }
 
-        this.assembleContourCells(value);
-        this.traverseContourCells();
+        return this.toPositionLists(this.traceContourLines(value), sector, altitude);
+    }
 
-        double maxLat = sector.getMaxLatitude().degrees;
-        double minLon = sector.getMinLongitude().degrees;
-        double deltaLat = sector.getDeltaLatDegrees();
-        double deltaLon = sector.getDeltaLonDegrees();
+    /**
+     * Computes the contour lines at each of several threshold values. The contour lines of each value are those
+     * returned by {@link #buildContourLines(double)}, although a contour line may start at a different point.
+     * <p/>
+     * The array is divided into tiles, and the tiles are traced in parallel. The traced tiles of these threshold values
+     * are retained, replacing those of the previous call, and are reused by the next call unless the array values they
+     * depend on are invalidated.
+     *
+     * @param values the threshold values to compute contour lines for.
+     *
+     * @return a list containing, for each threshold value in the order specified, a list of the value's contour lines.
+     *
+     * @throws java.lang.IllegalArgumentException if the threshold values array is null.
+     */
+    public List<List<List<double[]>>> buildContourLines(double[] values)
+    {
+        if (values == null)
+        {
+            String msg = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        List<List<List<double[]>>> result = new ArrayList<List<List<double[]>>>(values.length);
+        for (List<double[]> contours : this.traceContourLines(values))
+        {
+            result.add(this.toCoordLists(contours));
+        }
+
+        return result;
+    }
+
+    /**
+     * Computes the geographic contour lines at each of several threshold values, mapping the rectangular array to a
+     * sector as {@link #buildContourLines(double, gov.nasa.worldwind.geom.Sector, double)} does. See {@link
+     * #buildContourLines(double[])} for a description of how the contour lines are computed.
+     *
+     * @param values   the threshold values to compute contour lines for.
+     * @param sector   the sector to associate with the rectangular array.
+     * @param altitude the altitude to assign to the geographic positions.
+     *
+     * @return a list containing, for each threshold value in the order specified, a list of the value's geographic
+     *         contour lines.
+     *
+     * @throws java.lang.IllegalArgumentException if the threshold values array or the sector is null.
+     */
+    public List<List<List<Position>>> buildContourLines(double[] values, Sector sector, double altitude)
+    {
+        if (values == null)
+        {
+            String msg = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (sector == null)
+        {
+            String msg = Logging.getMessage("nullValue.SectorIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        List<List<List<Position>>> result = new ArrayList<List<List<Position>>>(values.length);
+        for (List<double[]> contours : this.traceContourLines(values))
+        {
+            result.add(this.toPositionLists(contours, sector, altitude));
+        }
+
+        return result;
+    }
+
+    /**
+     * Copies new values into a rectangular region of the array and discards the retained tiles that depend on them.
+     *
+     * @param x            the column of the region's upper-left corner.
+     * @param y            the row of the region's upper-left corner.
+     * @param regionWidth  the region's width.
+     * @param regionHeight the region's height.
+     * @param regionValues the region's values, in row-major order.
+     *
+     * @throws java.lang.IllegalArgumentException if the region values array is null, if the region isn't within the
+     *                                            array, or if the region values array is shorter than the region.
+     */
+    public void updateValues(int x, int y, int regionWidth, int regionHeight, double[] regionValues)
+    {
+        if (regionValues == null)
+        {
+            String msg = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
 
-        List<List<Position>> result = new ArrayList<List<Position>>();
+        this.validateRegion(x, y, regionWidth, regionHeight);
 
-        for (List<double[]> coordList : this.contourList)
+        if (regionValues.length < regionWidth * regionHeight)
         {
-            ArrayList<Position> positionList = new ArrayList<Position>();
+            String msg = Logging.getMessage("generic.ArrayInvalidLength", regionValues.length);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
 
-            for (double[] coord : coordList)
+        for (int row = 0; row < regionHeight; row++)
+        {
+            System.arraycopy(regionValues, row * regionWidth, this.values, x + (y + row) * this.width, regionWidth);
+        }
+
+        this.invalidate(x, y, regionWidth, regionHeight);
+    }
+
+    /**
+     * Discards the retained tiles that depend on a rectangular region of the array. Call this after changing values in
+     * the array passed to the constructor.
+     *
+     * @param x            the column of the region's upper-left corner.
+     * @param y            the row of the region's upper-left corner.
+     * @param regionWidth  the region's width.
+     * @param regionHeight the region's height.
+     *
+     * @throws java.lang.IllegalArgumentException if the region isn't within the array.
+     */
+    public void invalidate(int x, int y, int regionWidth, int regionHeight)
+    {
+        this.validateRegion(x, y, regionWidth, regionHeight);
+
+        int cellsWide = this.width - 1;
+        int cellsHigh = this.height - 1;
+        if (cellsWide < 1 || cellsHigh < 1 || regionWidth == 0 || regionHeight == 0)
+            return;
+
+        // A value is a corner of the cells to its upper-left, upper-right, lower-left and lower-right.
+        int minTileX = Math.max(x - 1, 0) / this.tileSize;
+        int maxTileX = Math.min(x + regionWidth - 1, cellsWide - 1) / this.tileSize;
+        int minTileY = Math.max(y - 1, 0) / this.tileSize;
+        int maxTileY = Math.min(y + regionHeight - 1, cellsHigh - 1) / this.tileSize;
+        int tilesWide = (cellsWide + this.tileSize - 1) / this.tileSize;
+
+        for (ContourTile[] tiles : this.tileCache.values())
+        {
+            for (int tileY = minTileY; tileY <= maxTileY; tileY++)
             {
-                double s = coord[0] / (this.width - 1); // normalized x coordinate in the range 0 to 1
-                double t = coord[1] / (this.height - 1); // normalized y coordinate in the range 0 to 1
-                double lat = maxLat - t * deltaLat; // map y coordinate to latitude
-                double lon = minLon + s * deltaLon; // map x coordinate to longitude
-                positionList.add(Position.fromDegrees(lat, lon, altitude));
+                for (int tileX = minTileX; tileX <= maxTileX; tileX++)
+                {
+                    tiles[tileX + tileY * tilesWide] = null;
+                }
             }
+        }
+    }
 
-            result.add(positionList);
+    protected void validateRegion(int x, int y, int regionWidth, int regionHeight)
+    {
+        if (x < 0 || y < 0 || regionWidth < 0 || regionHeight < 0 || x + regionWidth > this.width
+            || y + regionHeight > this.height)
+        {
+            String msg = Logging.getMessage("generic.ArgumentOutOfRange",
+                "x=" + x + ", y=" + y + ", width=" + regionWidth + ", height=" + regionHeight);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
         }
+    }
+
+    /**
+     * Traces the contour lines of one threshold value over the whole array, as a single tile.
+     *
+     * @param value the threshold value.
+     *
+     * @return the contour lines, each as consecutive x and y coordinates.
+     */
+    protected List<double[]> traceContourLines(double value)
+    {
+        List<double[]> result = new ArrayList<double[]>();
+        if (this.width < 2 || this.height < 2)
+            return result;
 
-        this.clearContourCells(); // clears contourList
+        for (ContourFragment fragment : this.traceTile(value, 0, 0, this.width - 1, this.height - 1))
+        {
+            result.add(fragment.coords);
+        }
 
         return result;
     }
 
-    protected void assembleContourCells(double value)
+    /**
+     * Traces the contour lines of several threshold values, reusing the retained tiles and tracing the missing ones in
+     * parallel.
+     *
+     * @param values the threshold values.
+     *
+     * @return for each threshold value, the contour lines, each as consecutive x and y coordinates.
+     */
+    protected List<List<double[]>> traceContourLines(double[] values)
     {
-        // Divide the 2D scalar field into a grid of evenly spaced contouring cells. Every 2x2 block of field values
-        // forms a cell. The contouring grid's dimensions are therefore one less than the 2D scalar field. Based on
-        // the approach outlined at http://en.wikipedia.org/wiki/Marching_squares
+        List<List<double[]>> result = new ArrayList<List<double[]>>(values.length);
+        if (this.width < 2 || this.height < 2)
+        {
+            for (double ignored : values)
+            {
+                result.add(new ArrayList<double[]>());
+            }
+            return result;
+        }
+
+        int tilesWide = (this.width - 2 + this.tileSize) / this.tileSize;
+        int tilesHigh = (this.height - 2 + this.tileSize) / this.tileSize;
 
-        this.contourCellMap.clear();
-        this.contourCellList.clear();
+        // Retain only the tiles of the requested values.
+        Map<Double, ContourTile[]> newCache = new HashMap<Double, ContourTile[]>();
+        for (double value : values)
+        {
+            if (newCache.containsKey(value))
+                continue;
+
+            ContourTile[] tiles = this.tileCache.get(value);
+            newCache.put(value, tiles != null ? tiles : new ContourTile[tilesWide * tilesHigh]);
+        }
+        this.tileCache = newCache;
 
-        for (int y = 0; y < this.height - 1; y++)
+        // Find the tiles that must be traced, and the values each must be traced for, in ascending order.
+        double[] sortedValues = new double[newCache.size()];
+        int numValues = 0;
+        for (Double value : newCache.keySet())
         {
-            for (int x = 0; x < this.width - 1; x++)
+            sortedValues[numValues++] = value;
+        }
+        Arrays.sort(sortedValues);
+
+        List<TileJob> jobs = new ArrayList<TileJob>();
+        for (int i = 0; i < tilesWide * tilesHigh; i++)
+        {
+            TileJob job = null;
+            for (double value : sortedValues)
             {
-                // Get the field values associated with the contouring cell's four corners.
-                double nw = this.valueFor(x, y);
-                double ne = this.valueFor(x + 1, y);
-                double se = this.valueFor(x + 1, y + 1);
-                double sw = this.valueFor(x, y + 1);
-
-                // Assemble a 4-bit mask indicating whether or not the field values at the cell's corners are above or
-                // below the threshold. The mask has 1 where the field value is above the threshold, and 0 otherwise.
-                int mask = 0;
-                mask |= (nw > value) ? 1 : 0; // 1000
-                mask <<= 1;
-                mask |= (ne > value) ? 1 : 0; // 0100
-                mask <<= 1;
-                mask |= (se > value) ? 1 : 0; // 0010
-                mask <<= 1;
-                mask |= (sw > value) ? 1 : 0; // 0001
-
-                if (mask == 0 || mask == 15)
-                    continue; // no contour; all values above or below the threshold value
-
-                // Disambiguate saddle point for masks 0x0101 and 0x1010, per Wikipedia page suggestion.
-                if (mask == 5 || mask == 10)
-                {
-                    double ctr = (nw + ne + se + sw) / 4; // sample center value as the average of four corners
-                    if (mask == 5 && ctr <= value) // center value causes change in direction; flip the mask to 10
-                        mask = 10;
-                    else if (mask == 10 && ctr <= value) // center value causes change in direction; flip the mask to 5
-                        mask = 5;
-                }
+                ContourTile[] tiles = newCache.get(value);
+                if (tiles[i] != null)
+                    continue;
 
-                CellInfo cell = new CellInfo(x, y, mask);
+                if (job == null)
+                    jobs.add(job = new TileJob(i, tilesWide));
+                job.add(value, tiles);
+            }
+        }
 
-                // Compute weights associated with edge intersections.
-                if ((ne > value) ^ (nw > value))
-                    cell.edgeWeights.put(Direction.NORTH, (value - nw) / (ne - nw));
-                if ((se > value) ^ (sw > value))
-                    cell.edgeWeights.put(Direction.SOUTH, (value - sw) / (se - sw));
-                if ((se > value) ^ (ne > value))
-                    cell.edgeWeights.put(Direction.EAST, (value - ne) / (se - ne));
-                if ((sw > value) ^ (nw > value))
-                    cell.edgeWeights.put(Direction.WEST, (value - nw) / (sw - nw));
+        if (jobs.size() > 1 && ForkJoinSupport.isParallel())
+        {
+            ForkJoinSupport.invoke(new TraceTilesTask(jobs, 0, jobs.size()));
+        }
+        else
+        {
+            for (TileJob job : jobs)
+            {
+                this.traceTile(job);
+            }
+        }
+
+        for (double value : values)
+        {
+            result.add(joinFragments(this.tileCache.get(value)));
+        }
 
-                this.putContourCell(cell);
+        return result;
+    }
+
+    /** Identifies a tile to trace, the threshold values to trace it for, and the array slots to receive it. */
+    protected static class TileJob
+    {
+        public final int index;
+        public final int tilesWide;
+        /** The threshold values, in ascending order. */
+        public final List<Double> values = new ArrayList<Double>();
+        public final List<ContourTile[]> tiles = new ArrayList<ContourTile[]>();
+
+        public TileJob(int index, int tilesWide)
+        {
+            this.index = index;
+            this.tilesWide = tilesWide;
+        }
+
+        public void add(double value, ContourTile[] tiles)
+        {
+            this.values.add(value);
+            this.tiles.add(tiles);
+        }
+    }
+
+    /** Traces a range of tiles, dividing the range among forked subtasks until each traces one tile. */
+    protected class TraceTilesTask extends RecursiveAction
+    {
+        protected final List<TileJob> jobs;
+        protected final int first;
+        protected final int last;
+
+        public TraceTilesTask(List<TileJob> jobs, int first, int last)
+        {
+            this.jobs = jobs;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (this.last - this.first > 1)
+            {
+                int mid = (this.first + this.last) / 2;
+                invokeAll(new TraceTilesTask(this.jobs, this.first, mid),
+                    new TraceTilesTask(this.jobs, mid, this.last));
+                return;
             }
+
+            traceTile(this.jobs.get(this.first));
         }
     }
 
-    protected void traverseContourCells()
+    protected void traceTile(TileJob job)
     {
-        List<List<double[]>> contours = new ArrayList<List<double[]>>();
+        int x = (job.index % job.tilesWide) * this.tileSize;
+        int y = (job.index / job.tilesWide) * this.tileSize;
+        int cellsWide = Math.min(this.tileSize, this.width - 1 - x);
+        int cellsHigh = Math.min(this.tileSize, this.height - 1 - y);
 
-        this.contourList.clear();
+        double[] values = new double[job.values.size()];
+        for (int k = 0; k < values.length; k++)
+        {
+            values[k] = job.values.get(k);
+        }
 
-        for (CellKey key : this.contourCellList) // iterate over all possible contour starting points
+        // Each job writes distinct slots of the arrays, and the fork-join pool's completion makes the writes visible.
+        List<List<ContourFragment>> fragments = this.traceTile(values, x, y, cellsWide, cellsHigh);
+        for (int k = 0; k < values.length; k++)
         {
-            CellInfo cell = this.contourCellMap.get(key);
+            job.tiles.get(k)[job.index] = new ContourTile(fragments.get(k));
+        }
+    }
 
-            for (Direction dir : dirNext.get(cell.contourMask).keySet()) // either 2 or 4 starting directions
+    /**
+     * Traces the contour lines of a threshold value within a rectangle of contouring cells. Contour lines are traced
+     * with the marching squares algorithm, and stop where they leave the rectangle. Only the rectangle's cell masks and
+     * visited directions are stored, in primitive arrays; edge intersections are computed from the array values as
+     * they are needed.
+     *
+     * @param value     the threshold value.
+     * @param x         the column of the rectangle's upper-left cell.
+     * @param y         the row of the rectangle's upper-left cell.
+     * @param cellsWide the rectangle's width, in cells.
+     * @param cellsHigh the rectangle's height, in cells.
+     *
+     * @return the contour fragments within the rectangle.
+     */
+    protected List<ContourFragment> traceTile(double value, int x, int y, int cellsWide, int cellsHigh)
+    {
+        ContourTracer tracer = new ContourTracer(value, x, y, cellsWide, cellsHigh);
+        tracer.assembleContourCells();
+        return tracer.traverseContourCells();
+    }
+
+    /**
+     * Traces the contour lines of several threshold values within a rectangle of contouring cells. The rectangle's
+     * values are read once: each cell is classified against only the threshold values between its least and greatest
+     * corner values, which are found by binary search. The other threshold values don't cross the cell. Each threshold
+     * value's contour lines are then traced as by {@link #traceTile(double, int, int, int, int)}.
+     *
+     * @param values    the threshold values, in ascending order.
+     * @param x         the column of the rectangle's upper-left cell.
+     * @param y         the row of the rectangle's upper-left cell.
+     * @param cellsWide the rectangle's width, in cells.
+     * @param cellsHigh the rectangle's height, in cells.
+     *
+     * @return for each threshold value, the contour fragments within the rectangle.
+     */
+    protected List<List<ContourFragment>> traceTile(double[] values, int x, int y, int cellsWide, int cellsHigh)
+    {
+        ContourTracer[] tracers = new ContourTracer[values.length];
+        boolean[] crossed = new boolean[values.length];
+        for (int k = 0; k < values.length; k++)
+        {
+            tracers[k] = new ContourTracer(values[k], x, y, cellsWide, cellsHigh);
+        }
+
+        for (int j = 0; j < cellsHigh; j++)
+        {
+            int north = x + (y + j) * this.width;
+            int south = north + this.width;
+
+            for (int i = 0; i < cellsWide; i++)
             {
-                if (cell.visitedDirections.contains(dir))
+                double nw = this.values[north + i];
+                double ne = this.values[north + i + 1];
+                double se = this.values[south + i + 1];
+                double sw = this.values[south + i];
+                double min = Math.min(Math.min(nw, ne), Math.min(se, sw));
+                double max = Math.max(Math.max(nw, ne), Math.max(se, sw));
+                if (Double.isNaN(min))
                 {
-                    continue;
+                    // A missing value is never above a threshold, so bound the cell by its other corners.
+                    min = Double.NEGATIVE_INFINITY;
+                    max = maxIgnoringNaN(nw, ne, se, sw);
+                }
+
+                // Threshold values at or above the cell's maximum leave every corner below, and those below its
+                // minimum leave every corner above. Neither has a contour in the cell, and the cell's mask stays 0.
+                int cell = i + j * cellsWide;
+                for (int k = firstValueAtLeast(values, min); k < values.length && values[k] < max; k++)
+                {
+                    tracers[k].masks[cell] = (byte) computeMask(nw, ne, se, sw, values[k]);
+                    crossed[k] = true;
                 }
+            }
+        }
+
+        List<List<ContourFragment>> result = new ArrayList<List<ContourFragment>>(values.length);
+        for (int k = 0; k < values.length; k++)
+        {
+            result.add(crossed[k] ? tracers[k].traverseContourCells() : new ArrayList<ContourFragment>());
+        }
+
+        return result;
+    }
+
+    protected static double maxIgnoringNaN(double... values)
+    {
+        double max = Double.NEGATIVE_INFINITY;
+        for (double value : values)
+        {
+            if (value > max)
+                max = value;
+        }
+
+        return max;
+    }
+
+    protected static int firstValueAtLeast(double[] values, double value)
+    {
+        int low = 0;
+        int high = values.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < value)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+
+        return low;
+    }
+
+    /**
+     * Computes the marching squares mask of a contouring cell. The mask has a bit set for each corner whose field value
+     * is above the threshold, with saddle points disambiguated by the average of the four corners.
+     */
+    protected static int computeMask(double nw, double ne, double se, double sw, double value)
+    {
+        // Assemble a 4-bit mask indicating whether or not the field values at the cell's corners are above or below
+        // the threshold. The mask has 1 where the field value is above the threshold, and 0 otherwise.
+        int mask = ((nw > value) ? 8 : 0) | ((ne > value) ? 4 : 0) | ((se > value) ? 2 : 0) | ((sw > value) ? 1 : 0);
+
+        // Disambiguate saddle point for masks 0x0101 and 0x1010, per Wikipedia page suggestion.
+        if (mask == 5 || mask == 10)
+        {
+            double ctr = (nw + ne + se + sw) / 4; // sample center value as the average of four corners
+            if (ctr <= value) // center value causes change in direction; flip the mask
+                mask = 15 - mask;
+        }
 
-                this.currentContour = new ArrayList<double[]>();
-                this.traverseContour(cell, dir);
-                contours.add(this.currentContour);
-                this.currentContour = null;
+        return mask;
+    }
 
-                if (contours.size() == 2) // combine each pair of starting directions into a single polyline
+    /** The state of tracing one threshold value within one rectangle of contouring cells. */
+    protected class ContourTracer
+    {
+        protected final double value;
+        protected final int x0;
+        protected final int y0;
+        protected final int cellsWide;
+        protected final int cellsHigh;
+        protected final byte[] masks;
+        protected final byte[] visited;
+        protected final List<ContourFragment> fragments = new ArrayList<ContourFragment>();
+        // The coordinates of the two traversals from a contour segment's ends.
+        protected double[][] coords = {new double[64], new double[64]};
+        protected int[] coordCount = new int[2];
+        protected long[] exitEdges = new long[2];
+
+        public ContourTracer(double value, int x, int y, int cellsWide, int cellsHigh)
+        {
+            this.value = value;
+            this.x0 = x;
+            this.y0 = y;
+            this.cellsWide = cellsWide;
+            this.cellsHigh = cellsHigh;
+            this.masks = new byte[cellsWide * cellsHigh];
+            this.visited = new byte[cellsWide * cellsHigh];
+        }
+
+        protected void assembleContourCells()
+        {
+            // Divide the 2D scalar field into a grid of evenly spaced contouring cells. Every 2x2 block of field values
+            // forms a cell. The contouring grid's dimensions are therefore one less than the 2D scalar field. Based on
+            // the approach outlined at http://en.wikipedia.org/wiki/Marching_squares
+
+            double[] values = ContourBuilder.this.values;
+            int width = ContourBuilder.this.width;
+            double value = this.value;
+
+            for (int j = 0; j < this.cellsHigh; j++)
+            {
+                int north = this.x0 + (this.y0 + j) * width;
+                int south = north + width;
+
+                for (int i = 0; i < this.cellsWide; i++)
                 {
-                    if (contours.get(0).size() == 0 && contours.get(1).size() == 0)
-                    {
-                        String msg = Logging.getMessage("generic.UnexpectedCondition", "both contours are of zero length");
-                        Logging.logger().severe(msg);
-                    }
-                    else
+                    // Get the field values associated with the contouring cell's four corners.
+                    double nw = values[north + i];
+                    double ne = values[north + i + 1];
+                    double se = values[south + i + 1];
+                    double sw = values[south + i];
+
+                    this.masks[i + j * this.cellsWide] = (byte) computeMask(nw, ne, se, sw, value);
+                }
+            }
+        }
+
+        protected List<ContourFragment> traverseContourCells()
+        {
+            for (int j = 0; j < this.cellsHigh; j++) // iterate over all possible contour starting points
+            {
+                for (int i = 0; i < this.cellsWide; i++)
+                {
+                    int cell = i + j * this.cellsWide;
+                    int[] startDirs = START_DIRS[this.masks[cell]];
+
+                    for (int k = 0; k < startDirs.length; k++) // either 0, 2 or 4 starting directions
                     {
-                        Collections.reverse(contours.get(0));
-                        contours.get(0).addAll(contours.get(1));
-                        this.contourList.add(contours.get(0));
+                        int dir = startDirs[k];
+                        if ((this.visited[cell] & (1 << dir)) != 0)
+                            continue;
+
+                        // The ends of a segment are consecutive starting directions, and are visited together.
+                        int end = k % 2;
+                        this.traverseContour(i, j, dir, end);
+                        if (end == 1)
+                            this.addFragment();
                     }
+                }
+            }
+
+            return this.fragments;
+        }
+
+        protected void traverseContour(int i, int j, int dir, int end)
+        {
+            int dirNext = dir;
+            int dirPrev = dir; // use Prev same as Next for first iteration (i.e., for seed cell)
+            this.coordCount[end] = 0;
+            this.exitEdges[end] = -1;
 
-                    contours.clear();
+            while (true)
+            {
+                int cell = i + j * this.cellsWide;
+                if ((this.visited[cell] & (1 << dirNext)) != 0)
+                    break;
+
+                // Mark the contour cell as visited.
+                this.visited[cell] |= (1 << dirNext) | (1 << dirPrev);
+
+                this.addIntersection(i, j, dirNext, end);
+
+                // Advance to the next cell.
+                switch (dirNext)
+                {
+                    case NORTH:
+                        j--;
+                        break;
+                    case SOUTH:
+                        j++;
+                        break;
+                    case EAST:
+                        i++;
+                        break;
+                    default:
+                        i--;
+                        break;
+                }
+
+                if (i < 0 || i >= this.cellsWide || j < 0 || j >= this.cellsHigh)
+                {
+                    // The contour leaves the rectangle. Record the edge if it continues into a neighboring tile.
+                    int x = this.x0 + i;
+                    int y = this.y0 + j;
+                    if (x >= 0 && x < ContourBuilder.this.width - 1 && y >= 0 && y < ContourBuilder.this.height - 1)
+                        this.exitEdges[end] = this.edgeFor(i, j, DIR_REV[dirNext]);
+                    break;
+                }
+
+                // Advance to the next direction.
+                dirPrev = DIR_REV[dirNext];
+                dirNext = DIR_NEXT[this.masks[i + j * this.cellsWide]][dirPrev];
+                if (dirNext < 0)
+                {
+                    String msg = Logging.getMessage("generic.UnexpectedCondition", "contour enters cell with no edge");
+                    Logging.logger().severe(msg);
+                    break;
                 }
             }
+        }
 
-            if (contours.size() != 0)
+        protected void addIntersection(int i, int j, int dir, int end)
+        {
+            // Compute the intersection of the contour cell in the next direction. The cell's xy coordinates initially
+            // indicate the cell's Northwest corner.
+            int x = this.x0 + i;
+            int y = this.y0 + j;
+            double xIntersect = x;
+            double yIntersect = y;
+
+            switch (dir)
             {
-                String msg = Logging.getMessage("generic.UnexpectedCondition", "non-empty contours list");
-                Logging.logger().severe(msg);
+                case NORTH:
+                    xIntersect += this.edgeWeight(x, y, x + 1, y); // interpolate along the north edge
+                    break;
+                case SOUTH:
+                    xIntersect += this.edgeWeight(x, y + 1, x + 1, y + 1); // interpolate along the south edge
+                    yIntersect += 1; // move from the north to the south
+                    break;
+                case EAST:
+                    xIntersect += 1; // move from the west to the east
+                    yIntersect += this.edgeWeight(x + 1, y, x + 1, y + 1); // interpolate along the east edge
+                    break;
+                default:
+                    yIntersect += this.edgeWeight(x, y, x, y + 1); // interpolate along the west edge
+                    break;
             }
+
+            double[] array = this.coords[end];
+            int n = this.coordCount[end];
+            if (n + 2 > array.length)
+                this.coords[end] = array = Arrays.copyOf(array, 2 * array.length);
+            array[n] = xIntersect;
+            array[n + 1] = yIntersect;
+            this.coordCount[end] = n + 2;
         }
-    }
 
-    protected void traverseContour(CellInfo cell, Direction dir)
-    {
-        Direction dirNext = dir;
-        Direction dirPrev = dir;  // use Prev same as Next for first iteration (i.e., for seed cell)
+        protected double edgeWeight(int x1, int y1, int x2, int y2)
+        {
+            double v1 = ContourBuilder.this.valueFor(x1, y1);
+            double v2 = ContourBuilder.this.valueFor(x2, y2);
+            return (this.value - v1) / (v2 - v1);
+        }
 
-        while (cell != null && !cell.visitedDirections.contains(dirNext))
+        /**
+         * Identifies a cell edge uniquely within the array, so that the two tiles sharing an edge compute the same
+         * identifier.
+         */
+        protected long edgeFor(int i, int j, int dir)
         {
-            // Mark the contour cell as visited.
-            cell.visitedDirections.add(dirNext);
-            cell.visitedDirections.add(dirPrev);
+            long x = this.x0 + i;
+            long y = this.y0 + j;
 
-            addIntersection(cell, dirNext);
+            switch (dir)
+            {
+                case NORTH:
+                    return 2 * (x + y * ContourBuilder.this.width);
+                case SOUTH:
+                    return 2 * (x + (y + 1) * ContourBuilder.this.width);
+                case EAST:
+                    return 2 * (x + 1 + y * ContourBuilder.this.width) + 1;
+                default:
+                    return 2 * (x + y * ContourBuilder.this.width) + 1;
+            }
+        }
 
-            // Advance to the next cell.
-            cell = this.nextCell(cell, dirNext);
+        /** Combines the traversals from a segment's two ends into one fragment, reversing the first. */
+        protected void addFragment()
+        {
+            int n0 = this.coordCount[0];
+            int n1 = this.coordCount[1];
+            if (n0 == 0 && n1 == 0)
+            {
+                String msg = Logging.getMessage("generic.UnexpectedCondition", "both contours are of zero length");
+                Logging.logger().severe(msg);
+                return;
+            }
 
-            // guard cell use in computing dirNext
-            if (cell != null)
+            double[] a = this.coords[0];
+            double[] combined = new double[n0 + n1];
+            for (int k = 0; k < n0; k += 2)
             {
-                // Advance to the next direction.
-                dirPrev = ContourBuilder.dirRev.get(dirNext);
-                dirNext = ContourBuilder.dirNext.get(cell.contourMask).get(dirPrev);
+                combined[k] = a[n0 - 2 - k];
+                combined[k + 1] = a[n0 - 1 - k];
             }
+            System.arraycopy(this.coords[1], 0, combined, n0, n1);
+
+            this.fragments.add(new ContourFragment(combined, this.exitEdges[0], this.exitEdges[1]));
         }
     }
 
-    protected void addIntersection(CellInfo cell, Direction dir)
+    /**
+     * Joins the contour fragments of adjacent tiles into contour lines. Fragments meet at edges shared by two tiles,
+     * where each has a copy of the same intersection point.
+     *
+     * @param tiles the traced tiles, in row-major order.
+     *
+     * @return the contour lines, each as consecutive x and y coordinates.
+     */
+    protected static List<double[]> joinFragments(ContourTile[] tiles)
     {
-        // Compute the intersection of the contour cell in the next direction. The cell's xy coordinates initially
-        // indicate the cell's Southwest corner.
-        double xIntersect = cell.x;
-        double yIntersect = cell.y;
-
-        switch (dir)
-        {
-            case NORTH:
-                xIntersect += cell.edgeWeights.get(dir); // interpolate along the north edge
-                break;
-            case SOUTH:
-                xIntersect += cell.edgeWeights.get(dir); // interpolate along the south edge
-                yIntersect += 1; // move from the north to the south
-                break;
-            case EAST:
-                xIntersect += 1; // move from the west to the east
-                yIntersect += cell.edgeWeights.get(dir); // interpolate along the east edge
-                break;
-            case WEST:
-                yIntersect += cell.edgeWeights.get(dir); // interpolate along the west edge
-                break;
-            default:
-                String msg = Logging.getMessage("generic.UnexpectedDirection", dirNext);
-                Logging.logger().severe(msg);
-                break;
+        List<ContourFragment> fragments = new ArrayList<ContourFragment>();
+        for (ContourTile tile : tiles)
+        {
+            fragments.addAll(tile.fragments);
         }
 
-        this.currentContour.add(new double[] {xIntersect, yIntersect});
-    }
+        // Fragment endpoints are numbered 2 * index for the start and 2 * index + 1 for the end. Link each endpoint to
+        // the endpoint of another fragment on the same edge.
+        int[] partners = new int[2 * fragments.size()];
+        Arrays.fill(partners, -1);
+        Map<Long, Integer> endpoints = new HashMap<Long, Integer>();
+        for (int i = 0; i < fragments.size(); i++)
+        {
+            linkEndpoint(fragments.get(i).startEdge, 2 * i, endpoints, partners);
+            linkEndpoint(fragments.get(i).endEdge, 2 * i + 1, endpoints, partners);
+        }
 
-    protected void clearContourCells()
-    {
-        this.contourCellMap.clear();
-        this.contourCellList.clear();
-        this.contourList.clear();
-        this.currentContour = null;
+        List<double[]> result = new ArrayList<double[]>();
+        boolean[] used = new boolean[fragments.size()];
+        for (int i = 0; i < fragments.size(); i++)
+        {
+            if (used[i])
+                continue;
+
+            if (partners[2 * i] < 0 && partners[2 * i + 1] < 0)
+            {
+                used[i] = true;
+                result.add(fragments.get(i).coords);
+                continue;
+            }
+
+            // Walk back to the first fragment of the contour line, or around a closed loop to the fragment before
+            // this one.
+            int first = 2 * i;
+            int partner;
+            while ((partner = partners[first]) >= 0 && partner / 2 != i)
+            {
+                first = partner ^ 1;
+            }
+
+            // Walk forward, appending each fragment without its first point, which duplicates the previous point.
+            int length = 0;
+            int endpoint = first;
+            do
+            {
+                length += fragments.get(endpoint / 2).coords.length - (length > 0 ? 2 : 0);
+                partner = partners[endpoint ^ 1];
+                endpoint = partner;
+            }
+            while (endpoint >= 0 && endpoint / 2 != first / 2);
+
+            double[] coords = new double[length];
+            int n = 0;
+            endpoint = first;
+            do
+            {
+                int index = endpoint / 2;
+                double[] c = fragments.get(index).coords;
+                boolean reversed = (endpoint & 1) != 0;
+                for (int k = (n > 0 ? 2 : 0); k < c.length; k += 2)
+                {
+                    int src = reversed ? c.length - 2 - k : k;
+                    coords[n++] = c[src];
+                    coords[n++] = c[src + 1];
+                }
+                used[index] = true;
+                endpoint = partners[endpoint ^ 1];
+            }
+            while (endpoint >= 0 && endpoint / 2 != first / 2);
+
+            result.add(coords);
+        }
+
+        return result;
     }
 
-    protected CellInfo nextCell(CellInfo cell, Direction dir)
+    protected static void linkEndpoint(long edge, int endpoint, Map<Long, Integer> endpoints, int[] partners)
     {
-        int x = cell.x;
-        int y = cell.y;
-
-        switch (dir)
-        {
-            case NORTH:
-                return this.getContourCell(x, y - 1);
-            case SOUTH:
-                return this.getContourCell(x, y + 1);
-            case EAST:
-                return this.getContourCell(x + 1, y);
-            case WEST:
-                return this.getContourCell(x - 1, y);
-            default:
-                String msg = Logging.getMessage("generic.UnexpectedDirection", dirNext);
-                Logging.logger().severe(msg);
-                return null;
+        if (edge < 0)
+            return;
+
+        Integer other = endpoints.remove(edge);
+        if (other != null)
+        {
+            partners[endpoint] = other;
+            partners[other] = endpoint;
+        }
+        else
+        {
+            endpoints.put(edge, endpoint);
         }
     }
 
-    protected double valueFor(int x, int y)
+    protected List<List<double[]>> toCoordLists(List<double[]> contours)
     {
-        return this.values[x + y * this.width];
+        List<List<double[]>> result = new ArrayList<List<double[]>>(contours.size());
+
+        for (double[] coords : contours)
+        {
+            List<double[]> coordList = new ArrayList<double[]>(coords.length / 2);
+            for (int k = 0; k < coords.length; k += 2)
+            {
+                coordList.add(new double[] {coords[k], coords[k + 1]});
+            }
+
+            result.add(coordList);
+        }
+
+        return result;
     }
 
-    protected void putContourCell(CellInfo cell)
+    protected List<List<Position>> toPositionLists(List<double[]> contours, Sector sector, double altitude)
     {
-        CellKey key = new CellKey(cell.x, cell.y);
-        this.contourCellMap.put(key, cell);
-        this.contourCellList.add(key);
+        double maxLat = sector.getMaxLatitude().degrees;
+        double minLon = sector.getMinLongitude().degrees;
+        double deltaLat = sector.getDeltaLatDegrees();
+        double deltaLon = sector.getDeltaLonDegrees();
+
+        List<List<Position>> result = new ArrayList<List<Position>>(contours.size());
+
+        for (double[] coords : contours)
+        {
+            ArrayList<Position> positionList = new ArrayList<Position>(coords.length / 2);
+
+            for (int k = 0; k < coords.length; k += 2)
+            {
+                double s = coords[k] / (this.width - 1); // normalized x coordinate in the range 0 to 1
+                double t = coords[k + 1] / (this.height - 1); // normalized y coordinate in the range 0 to 1
+                double lat = maxLat - t * deltaLat; // map y coordinate to latitude
+                double lon = minLon + s * deltaLon; // map x coordinate to longitude
+                positionList.add(Position.fromDegrees(lat, lon, altitude));
+            }
+
+            result.add(positionList);
+        }
+
+        return result;
     }
 
-    protected CellInfo getContourCell(int x, int y)
+    protected double valueFor(int x, int y)
     {
-        return this.contourCellMap.get(new CellKey(x, y));
+        return this.values[x + y * this.width];
     }
 }
@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import java.util.concurrent.*;
+
+/**
+ * Provides the fork-join pool shared by World Wind's data-parallel algorithms, such as image compression, raster
+ * production and contour generation. Sharing one pool bounds the number of compute threads to the number of
+ * processors no matter how many callers run parallel work at once, and avoids creating and tearing down a pool for
+ * each call.
+ * <p/>
+ * The pool's threads are daemon threads, and the pool is never shut down. Callers that need to abandon work cancel
+ * their tasks instead.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public class ForkJoinSupport
+{
+    protected static ForkJoinPool pool;
+
+    /**
+     * Returns the shared fork-join pool, creating it on first use. The pool's parallelism is the number of available
+     * processors.
+     *
+     * @return the shared fork-join pool.
+     */
+    public static synchronized ForkJoinPool getPool()
+    {
+        if (pool == null)
+            pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+        return pool;
+    }
+
+    /**
+     * Indicates whether the shared pool has more than one thread, and therefore whether splitting work into parallel
+     * tasks can be expected to pay off.
+     *
+     * @return true if the shared pool runs tasks on more than one thread, otherwise false.
+     */
+    public static boolean isParallel()
+    {
+        return getPool().getParallelism() > 1;
+    }
+
+    /**
+     * Indicates whether the current thread is a fork-join worker thread. Work started on such a thread is already
+     * running in parallel with other work, so callers may choose to run nested work serially.
+     *
+     * @return true if the current thread is a fork-join worker thread, otherwise false.
+     */
+    public static boolean isWorkerThread()
+    {
+        return Thread.currentThread() instanceof ForkJoinWorkerThread;
+    }
+
+    /**
+     * Runs a task and waits for its result. When called from a fork-join worker thread the task runs directly on that
+     * thread, and any tasks it forks join the worker's pool. Otherwise the task is submitted to the shared pool.
+     *
+     * @param task the task to run.
+     * @param <T>  the task's result type.
+     *
+     * @return the task's result.
+     *
+     * @throws IllegalArgumentException if the task is null.
+     */
+    public static <T> T invoke(ForkJoinTask<T> task)
+    {
+        if (task == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        return isWorkerThread() ? task.invoke() : getPool().invoke(task);
+    }
+}
@@ -0,0 +1,215 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.render.*;
+
+import java.awt.geom.*;
+import java.util.*;
+
+/**
+ * A clutter filter that accepts shapes in priority order and favors the shapes it accepted in the previous frame.
+ * Shapes are considered in order of decreasing priority. Among shapes of equal priority, those accepted in the previous
+ * frame are considered first, and the rest in the order specified, which is front to back when the filter is applied
+ * by the draw context. A shape is accepted if its bounds intersect none of the shapes already accepted. Considering the
+ * previous frame's shapes first keeps a label that is displayed from being displaced by a label of equal priority that
+ * comes into view or moves closer, which would otherwise make overlapping labels alternate from frame to frame as the
+ * view moves.
+ * <p/>
+ * The priority of a {@link DeclutterableText} is its text's priority, and the priority of other shapes is 0. A shape is
+ * identified across frames by its text's characters and position, by its placemark for a {@link
+ * PointPlacemark.OrderedPlacemark}, or otherwise by the shape itself. Text is identified by content rather than by
+ * object because layers may create new text objects each frame. Subclasses may override {@link
+ * #getPriority(gov.nasa.worldwind.render.Declutterable)} and {@link
+ * #getShapeKey(gov.nasa.worldwind.render.Declutterable)} to prioritize and identify other shapes.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public class GridClutterFilter extends BasicClutterFilter
+{
+    protected static class Entry implements Comparable<Entry>
+    {
+        public final Declutterable shape;
+        public final Object key;
+        public final double priority;
+        public final boolean accepted;
+
+        public Entry(Declutterable shape, Object key, double priority, boolean accepted)
+        {
+            this.shape = shape;
+            this.key = key;
+            this.priority = priority;
+            this.accepted = accepted;
+        }
+
+        public int compareTo(Entry that)
+        {
+            int order = Double.compare(that.priority, this.priority);
+            if (order != 0)
+                return order;
+
+            return this.accepted == that.accepted ? 0 : this.accepted ? -1 : 1;
+        }
+    }
+
+    /** Identifies a text by its characters and position. */
+    protected static class TextKey
+    {
+        public final String text;
+        public final Position position;
+
+        public TextKey(String text, Position position)
+        {
+            this.text = text;
+            this.position = position;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+                return true;
+            if (o == null || this.getClass() != o.getClass())
+                return false;
+
+            TextKey that = (TextKey) o;
+            return this.text.equals(that.text)
+                && (this.position != null ? this.position.equals(that.position) : that.position == null);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * this.text.hashCode() + (this.position != null ? this.position.hashCode() : 0);
+        }
+    }
+
+    protected boolean temporalCoherence = true;
+    /** The keys of the shapes accepted in the previous frame. */
+    protected Set<Object> acceptedKeys = new HashSet<Object>();
+    /** The keys of the shapes accepted in the current frame. */
+    protected Set<Object> currentKeys = new HashSet<Object>();
+    protected ArrayList<Entry> entries = new ArrayList<Entry>();
+
+    /**
+     * Indicates whether shapes accepted in the previous frame are considered before other shapes of the same
+     * priority.
+     *
+     * @return true if the previous frame's shapes are considered first, otherwise false.
+     */
+    public boolean isTemporalCoherence()
+    {
+        return this.temporalCoherence;
+    }
+
+    /**
+     * Specifies whether shapes accepted in the previous frame are considered before other shapes of the same
+     * priority.
+     *
+     * @param temporalCoherence true to consider the previous frame's shapes first, otherwise false.
+     */
+    public void setTemporalCoherence(boolean temporalCoherence)
+    {
+        this.temporalCoherence = temporalCoherence;
+        this.acceptedKeys.clear();
+    }
+
+    @Override
+    public void apply(DrawContext dc, List<Declutterable> shapes)
+    {
+        this.grid.clear(dc.getView() != null ? dc.getView().getViewport() : null);
+
+        for (Declutterable shape : shapes)
+        {
+            Object key = this.getShapeKey(shape);
+            this.entries.add(new Entry(shape, key, this.getPriority(shape),
+                this.temporalCoherence && this.acceptedKeys.contains(key)));
+        }
+
+        // The sort is stable, so shapes of equal priority and acceptance remain in the order specified.
+        Collections.sort(this.entries);
+
+        for (Entry entry : this.entries)
+        {
+            Rectangle2D bounds = entry.shape.getBounds(dc);
+            if (bounds == null)
+                continue;
+
+            if (this.intersects(bounds) == null)
+            {
+                dc.addOrderedRenderable(entry.shape);
+                this.grid.add(bounds);
+
+                if (this.temporalCoherence)
+                    this.currentKeys.add(entry.key);
+            }
+        }
+
+        // The current frame's shapes become the previous frame's.
+        Set<Object> keys = this.acceptedKeys;
+        this.acceptedKeys = this.currentKeys;
+        this.currentKeys = keys;
+
+        this.clear();
+    }
+
+    @Override
+    protected void clear()
+    {
+        super.clear();
+
+        this.currentKeys.clear();
+        this.entries.clear();
+    }
+
+    /**
+     * Returns the priority of a shape. Shapes of higher priority are considered first.
+     *
+     * @param shape the shape.
+     *
+     * @return the shape's priority.
+     */
+    protected double getPriority(Declutterable shape)
+    {
+        if (shape instanceof DeclutterableText)
+            return ((DeclutterableText) shape).getText().getPriority();
+
+        return 0;
+    }
+
+    /**
+     * Returns the object that identifies a shape from frame to frame. Shapes are commonly recreated each frame, so the
+     * key should be the long-lived object that the shape represents, or a value computed from the shape's content.
+     *
+     * @param shape the shape.
+     *
+     * @return the shape's key. Keys are compared by {@link Object#equals(Object)}.
+     */
+    protected Object getShapeKey(Declutterable shape)
+    {
+        if (shape instanceof DeclutterableText)
+            return this.getTextKey(((DeclutterableText) shape).getText());
+
+        if (shape instanceof PointPlacemark.OrderedPlacemark)
+            return ((PointPlacemark.OrderedPlacemark) shape).getPlacemark();
+
+        return shape;
+    }
+
+    /**
+     * Returns the object that identifies a text from frame to frame: its characters and position.
+     *
+     * @param text the text.
+     *
+     * @return the text's key.
+     */
+    protected Object getTextKey(GeographicText text)
+    {
+        return new TextKey(text.getText().toString(), text.getPosition());
+    }
+}
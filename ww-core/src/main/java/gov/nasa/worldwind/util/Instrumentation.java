@@ -0,0 +1,488 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.avlist.*;
+
+import javax.management.*;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Records timers and counters from World Wind's rendering, retrieval and caching code, for finding the phases and
+ * layers that consume a frame's time. Unlike {@link PerformanceStatistic}, which holds the last value of a statistic
+ * for display, instrumentation accumulates each metric's values and their distribution over the session and per frame.
+ * See {@link InstrumentationMetric}.
+ * <p/>
+ * Instrumentation is disabled by default, in which case each call costs a single volatile read. It's enabled by the
+ * configuration parameter {@link AVKey#INSTRUMENTATION_ENABLED} or by {@link #setEnabled(boolean)}. A timed section of
+ * code is recorded as follows:
+ * <pre>
+ * long start = Instrumentation.start();
+ * ... // the timed code
+ * Instrumentation.stop(Instrumentation.TESSELLATE, start);
+ * </pre>
+ * Per-layer metrics are recorded by passing the layer as the source; their names are the metric name followed by the
+ * layer's name in brackets. The scene controller calls {@link #endFrame()} after each frame.
+ * <p/>
+ * Metrics are exported as JMX MBeans, named <code>gov.nasa.worldwind:type=Instrumentation,name=&lt;metric
+ * name&gt;</code>, when the configuration parameter {@link AVKey#INSTRUMENTATION_JMX_ENABLED} is true or after a call
+ * to {@link #setJMXEnabled(boolean)}. They are written as JSON by {@link #writeJSON(java.io.Writer)}, and written to
+ * the file named by the configuration parameter {@link AVKey#INSTRUMENTATION_DUMP_FILE}, if any, when the virtual
+ * machine exits.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public class Instrumentation
+{
+    public static final String FRAME = "SceneController.Frame";
+    public static final String PRE_RENDER = "SceneController.PreRender";
+    public static final String PICK = "SceneController.Pick";
+    public static final String DRAW = "SceneController.Draw";
+    public static final String ORDERED_RENDERING = "SceneController.OrderedRendering";
+    public static final String LAYER_PRE_RENDER = "Layer.PreRender";
+    public static final String LAYER_PICK = "Layer.Pick";
+    public static final String LAYER_RENDER = "Layer.Render";
+    public static final String TESSELLATE = "RectangularTessellator.Tessellate";
+    public static final String BUILD_SURFACE_TILES = "SurfaceObjectTileBuilder.BuildTiles";
+    public static final String ASSEMBLE_TILES = "TiledImageLayer.AssembleTiles";
+    public static final String RETRIEVAL = "Retrieval.Time";
+    public static final String RETRIEVAL_BYTES = "Retrieval.Bytes";
+    public static final String RETRIEVAL_ERRORS = "Retrieval.Errors";
+    public static final String MEMORY_CACHE_HITS = "MemoryCache.Hits";
+    public static final String MEMORY_CACHE_MISSES = "MemoryCache.Misses";
+
+    protected static final String JMX_DOMAIN = "gov.nasa.worldwind";
+
+    protected static volatile boolean enabled;
+    protected static volatile boolean jmxEnabled;
+    protected static final ConcurrentHashMap<String, InstrumentationMetric> metrics =
+        new ConcurrentHashMap<String, InstrumentationMetric>();
+    protected static final AtomicLong frameCount = new AtomicLong();
+
+    static
+    {
+        enabled = Configuration.getBooleanValue(AVKey.INSTRUMENTATION_ENABLED, false);
+
+        if (Configuration.getBooleanValue(AVKey.INSTRUMENTATION_JMX_ENABLED, false))
+            setJMXEnabled(true);
+
+        final String dumpFile = Configuration.getStringValue(AVKey.INSTRUMENTATION_DUMP_FILE);
+        if (!WWUtil.isEmpty(dumpFile))
+        {
+            Runtime.getRuntime().addShutdownHook(new Thread("World Wind Instrumentation Dump")
+            {
+                @Override
+                public void run()
+                {
+                    writeJSON(new File(dumpFile));
+                }
+            });
+        }
+    }
+
+    protected Instrumentation()
+    {
+    }
+
+    public static boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Specifies whether metrics are recorded. Disabling instrumentation keeps the values recorded so far.
+     *
+     * @param enabled true to record metrics, otherwise false.
+     */
+    public static void setEnabled(boolean enabled)
+    {
+        Instrumentation.enabled = enabled;
+    }
+
+    /**
+     * Returns the start time of a timed section, to be passed to one of the <code>stop</code> methods.
+     *
+     * @return the current value of <code>System.nanoTime()</code>, or 0 if instrumentation is disabled.
+     */
+    public static long start()
+    {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time elapsed since a timed section started.
+     *
+     * @param name      the timer's name.
+     * @param startTime the value returned by {@link #start()} when the section started.
+     */
+    public static void stop(String name, long startTime)
+    {
+        if (!enabled || startTime == 0)
+            return;
+
+        getMetric(name, true).record(System.nanoTime() - startTime);
+    }
+
+    /**
+     * Records the time elapsed since a timed section started, as a metric of a specific source such as a layer.
+     *
+     * @param name      the timer's name.
+     * @param source    the source of the timed section. The metric is named for the source's display name if it's an
+     *                  {@link AVList} with one, otherwise for its class. May be null, in which case the time is
+     *                  recorded as it is by {@link #stop(String, long)}.
+     * @param startTime the value returned by {@link #start()} when the section started.
+     */
+    public static void stop(String name, Object source, long startTime)
+    {
+        if (!enabled || startTime == 0)
+            return;
+
+        getMetric(makeSourceMetricName(name, source), true).record(System.nanoTime() - startTime);
+    }
+
+    /**
+     * Adds an amount to a counter.
+     *
+     * @param name   the counter's name.
+     * @param amount the amount to add.
+     */
+    public static void count(String name, long amount)
+    {
+        if (!enabled)
+            return;
+
+        getMetric(name, false).record(amount);
+    }
+
+    /**
+     * Ends the current frame for all metrics. Called by the scene controller after each frame.
+     *
+     * @see InstrumentationMetric
+     */
+    public static void endFrame()
+    {
+        if (!enabled)
+            return;
+
+        frameCount.incrementAndGet();
+        for (InstrumentationMetric metric : metrics.values())
+        {
+            metric.endFrame();
+        }
+    }
+
+    /**
+     * Returns the number of frames ended while instrumentation was enabled.
+     *
+     * @return the number of frames.
+     */
+    public static long getFrameCount()
+    {
+        return frameCount.get();
+    }
+
+    /**
+     * Returns a metric by name.
+     *
+     * @param name the metric's name.
+     *
+     * @return the metric, or null if it has not been recorded.
+     */
+    public static InstrumentationMetric getMetric(String name)
+    {
+        return name != null ? metrics.get(name) : null;
+    }
+
+    /**
+     * Returns the recorded metrics, sorted by name.
+     *
+     * @return the metrics.
+     */
+    public static List<InstrumentationMetric> getMetrics()
+    {
+        ArrayList<InstrumentationMetric> list = new ArrayList<InstrumentationMetric>(metrics.values());
+        Collections.sort(list, new Comparator<InstrumentationMetric>()
+        {
+            public int compare(InstrumentationMetric a, InstrumentationMetric b)
+            {
+                return a.getName().compareTo(b.getName());
+            }
+        });
+
+        return list;
+    }
+
+    /** Resets the values of all metrics and the frame count. */
+    public static void reset()
+    {
+        frameCount.set(0);
+        for (InstrumentationMetric metric : metrics.values())
+        {
+            metric.reset();
+        }
+    }
+
+    protected static InstrumentationMetric getMetric(String name, boolean timer)
+    {
+        InstrumentationMetric metric = metrics.get(name);
+        if (metric != null)
+            return metric;
+
+        metric = new InstrumentationMetric(name, timer);
+        InstrumentationMetric existing = metrics.putIfAbsent(name, metric);
+        if (existing != null)
+            return existing;
+
+        if (jmxEnabled)
+            registerMBean(metric);
+
+        return metric;
+    }
+
+    protected static String makeSourceMetricName(String name, Object source)
+    {
+        if (source == null)
+            return name;
+
+        String sourceName = null;
+        if (source instanceof AVList)
+            sourceName = ((AVList) source).getStringValue(AVKey.DISPLAY_NAME);
+
+        return name + "[" + (sourceName != null ? sourceName : source.getClass().getName()) + "]";
+    }
+
+    // *** JMX ***
+
+    public static boolean isJMXEnabled()
+    {
+        return jmxEnabled;
+    }
+
+    /**
+     * Specifies whether metrics are registered as MBeans with the platform MBean server. Metrics recorded later are
+     * registered when they're first recorded.
+     *
+     * @param enabled true to register the metrics, false to unregister them.
+     */
+    public static synchronized void setJMXEnabled(boolean enabled)
+    {
+        if (enabled == jmxEnabled)
+            return;
+
+        jmxEnabled = enabled;
+        for (InstrumentationMetric metric : metrics.values())
+        {
+            if (enabled)
+                registerMBean(metric);
+            else
+                unregisterMBean(metric);
+        }
+    }
+
+    /**
+     * Returns the JMX object name of a metric.
+     *
+     * @param metric the metric.
+     *
+     * @return the metric's object name.
+     *
+     * @throws MalformedObjectNameException if the name can't be formed.
+     */
+    public static ObjectName getObjectName(InstrumentationMetric metric) throws MalformedObjectNameException
+    {
+        return new ObjectName(JMX_DOMAIN + ":type=Instrumentation,name=" + ObjectName.quote(metric.getName()));
+    }
+
+    protected static void registerMBean(InstrumentationMetric metric)
+    {
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = getObjectName(metric);
+            if (!server.isRegistered(name))
+                server.registerMBean(metric, name);
+        }
+        catch (Exception e)
+        {
+            Logging.logger().log(Level.WARNING,
+                Logging.getMessage("Instrumentation.ExceptionRegisteringMBean", metric.getName()), e);
+        }
+    }
+
+    protected static void unregisterMBean(InstrumentationMetric metric)
+    {
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = getObjectName(metric);
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+        }
+        catch (Exception e)
+        {
+            Logging.logger().log(Level.WARNING,
+                Logging.getMessage("Instrumentation.ExceptionRegisteringMBean", metric.getName()), e);
+        }
+    }
+
+    // *** JSON ***
+
+    /**
+     * Writes the metrics as a JSON object to a file.
+     *
+     * @param file the file to write.
+     *
+     * @return true if the file was written, otherwise false.
+     *
+     * @throws IllegalArgumentException if the file is null.
+     */
+    public static boolean writeJSON(File file)
+    {
+        if (file == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        Writer writer = null;
+        try
+        {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+            writeJSON(writer);
+            return true;
+        }
+        catch (IOException e)
+        {
+            Logging.logger().log(Level.SEVERE, Logging.getMessage("generic.ExceptionAttemptingToWriteTo", file), e);
+            return false;
+        }
+        finally
+        {
+            WWIO.closeStream(writer, file.getPath());
+        }
+    }
+
+    /**
+     * Returns the metrics as a JSON object.
+     *
+     * @return a JSON string.
+     */
+    public static String toJSON()
+    {
+        StringWriter writer = new StringWriter();
+        try
+        {
+            writeJSON(writer);
+        }
+        catch (IOException e)
+        {
+            // StringWriter doesn't throw IOException.
+        }
+
+        return writer.toString();
+    }
+
+    /**
+     * Writes the metrics as a JSON object. The object has the members <code>timestamp</code>, <code>frameCount</code>
+     * and <code>metrics</code>, an array with one object per metric. Each metric's histograms are arrays of
+     * <code>[upperBound, count]</code> pairs for the non-empty buckets, with bounds in reported units.
+     *
+     * @param writer the writer to write to.
+     *
+     * @throws IOException              if an error occurs while writing.
+     * @throws IllegalArgumentException if the writer is null.
+     */
+    public static void writeJSON(Writer writer) throws IOException
+    {
+        if (writer == null)
+        {
+            String message = Logging.getMessage("nullValue.WriterIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        writer.write("{\"timestamp\":" + System.currentTimeMillis());
+        writer.write(",\"frameCount\":" + getFrameCount());
+        writer.write(",\"metrics\":[");
+
+        boolean first = true;
+        for (InstrumentationMetric metric : getMetrics())
+        {
+            if (!first)
+                writer.write(",");
+            first = false;
+
+            writer.write("\n{\"name\":" + quoteJSON(metric.getName()));
+            writer.write(",\"unit\":" + quoteJSON(metric.getUnit()));
+            writer.write(",\"count\":" + metric.getCount());
+            writer.write(",\"total\":" + metric.getTotal());
+            writer.write(",\"min\":" + metric.getMin());
+            writer.write(",\"max\":" + metric.getMax());
+            writer.write(",\"mean\":" + metric.getMean());
+            writer.write(",\"p50\":" + metric.getMedian());
+            writer.write(",\"p95\":" + metric.get95thPercentile());
+            writer.write(",\"p99\":" + metric.get99thPercentile());
+            writer.write(",\"histogram\":");
+            writeJSONHistogram(writer, metric, metric.getHistogram());
+            writer.write(",\"frameCount\":" + metric.getFrameCount());
+            writer.write(",\"frameMean\":" + metric.getFrameMean());
+            writer.write(",\"frameMax\":" + metric.getFrameMax());
+            writer.write(",\"frameP95\":" + metric.getFrame95thPercentile());
+            writer.write(",\"frameHistogram\":");
+            writeJSONHistogram(writer, metric, metric.getFrameHistogram());
+            writer.write("}");
+        }
+
+        writer.write("\n]}\n");
+        writer.flush();
+    }
+
+    protected static void writeJSONHistogram(Writer writer, InstrumentationMetric metric, long[] counts)
+        throws IOException
+    {
+        writer.write("[");
+        boolean first = true;
+        for (int i = 0; i < counts.length; i++)
+        {
+            if (counts[i] == 0)
+                continue;
+
+            if (!first)
+                writer.write(",");
+            first = false;
+
+            writer.write("[" + metric.scale(InstrumentationMetric.bucketUpperBound(i)) + "," + counts[i] + "]");
+        }
+        writer.write("]");
+    }
+
+    protected static String quoteJSON(String s)
+    {
+        StringBuilder sb = new StringBuilder(s.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if (c < 0x20)
+                sb.append(String.format("\\u%04x", (int) c));
+            else
+                sb.append(c);
+        }
+        sb.append('"');
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,337 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * A timer or counter recorded by {@link Instrumentation}. A metric accumulates the count, total, minimum and maximum of
+ * the values recorded, and a histogram of the values with power-of-two buckets. It also accumulates the values
+ * recorded during each frame, and keeps a second histogram of the per-frame totals for the frames in which the metric
+ * was recorded. Recording is lock-free and may be done from any thread.
+ * <p/>
+ * Timer values are recorded in nanoseconds and reported in milliseconds. Counter values are recorded and reported in
+ * the counter's own units. Percentiles are estimated from the histograms and are accurate to within a factor of two.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public class InstrumentationMetric implements InstrumentationMetricMBean
+{
+    public static final String UNIT_COUNT = "count";
+    public static final String UNIT_MILLISECONDS = "ms";
+
+    /** The number of histogram buckets. Bucket i holds values whose highest set bit is bit i - 1; bucket 0 holds 0. */
+    protected static final int NUM_BUCKETS = 64;
+
+    protected final String name;
+    protected final boolean timer;
+    protected final AtomicLong count = new AtomicLong();
+    protected final AtomicLong total = new AtomicLong();
+    protected final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    protected final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+    protected final AtomicLongArray histogram = new AtomicLongArray(NUM_BUCKETS);
+    // Per-frame values.
+    protected final AtomicLong frameSamples = new AtomicLong();
+    protected final AtomicLong frameTotal = new AtomicLong();
+    protected final AtomicLong frameCount = new AtomicLong();
+    protected final AtomicLong framesTotal = new AtomicLong();
+    protected final AtomicLong frameMax = new AtomicLong(Long.MIN_VALUE);
+    protected final AtomicLongArray frameHistogram = new AtomicLongArray(NUM_BUCKETS);
+    protected volatile long lastFrameTotal;
+
+    /**
+     * Creates a metric.
+     *
+     * @param name  the metric's name.
+     * @param timer true if the metric records times in nanoseconds, false if it records counts.
+     *
+     * @throws IllegalArgumentException if the name is null.
+     */
+    public InstrumentationMetric(String name, boolean timer)
+    {
+        if (name == null)
+        {
+            String message = Logging.getMessage("nullValue.NameIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.name = name;
+        this.timer = timer;
+    }
+
+    public String getName()
+    {
+        return this.name;
+    }
+
+    public boolean isTimer()
+    {
+        return this.timer;
+    }
+
+    public String getUnit()
+    {
+        return this.timer ? UNIT_MILLISECONDS : UNIT_COUNT;
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param value the value to record, in nanoseconds for a timer. Negative values are recorded as 0.
+     */
+    public void record(long value)
+    {
+        if (value < 0)
+            value = 0;
+
+        this.count.incrementAndGet();
+        this.total.addAndGet(value);
+        updateMin(this.min, value);
+        updateMax(this.max, value);
+        this.histogram.incrementAndGet(bucketIndex(value));
+
+        this.frameSamples.incrementAndGet();
+        this.frameTotal.addAndGet(value);
+    }
+
+    /**
+     * Ends the current frame. If the metric was recorded during the frame, the frame's total is added to the per-frame
+     * histogram. Called by {@link Instrumentation#endFrame()}.
+     */
+    protected void endFrame()
+    {
+        if (this.frameSamples.getAndSet(0) == 0)
+            return;
+
+        long value = this.frameTotal.getAndSet(0);
+        this.lastFrameTotal = value;
+        this.frameCount.incrementAndGet();
+        this.framesTotal.addAndGet(value);
+        updateMax(this.frameMax, value);
+        this.frameHistogram.incrementAndGet(bucketIndex(value));
+    }
+
+    public void reset()
+    {
+        this.count.set(0);
+        this.total.set(0);
+        this.min.set(Long.MAX_VALUE);
+        this.max.set(Long.MIN_VALUE);
+        this.frameSamples.set(0);
+        this.frameTotal.set(0);
+        this.frameCount.set(0);
+        this.framesTotal.set(0);
+        this.frameMax.set(Long.MIN_VALUE);
+        this.lastFrameTotal = 0;
+
+        for (int i = 0; i < NUM_BUCKETS; i++)
+        {
+            this.histogram.set(i, 0);
+            this.frameHistogram.set(i, 0);
+        }
+    }
+
+    public long getCount()
+    {
+        return this.count.get();
+    }
+
+    public double getTotal()
+    {
+        return this.scale(this.total.get());
+    }
+
+    public double getMin()
+    {
+        long value = this.min.get();
+        return value != Long.MAX_VALUE ? this.scale(value) : 0;
+    }
+
+    public double getMax()
+    {
+        long value = this.max.get();
+        return value != Long.MIN_VALUE ? this.scale(value) : 0;
+    }
+
+    public double getMean()
+    {
+        long n = this.count.get();
+        return n > 0 ? this.scale(this.total.get()) / n : 0;
+    }
+
+    public double getMedian()
+    {
+        return this.getPercentile(0.5);
+    }
+
+    public double get95thPercentile()
+    {
+        return this.getPercentile(0.95);
+    }
+
+    public double get99thPercentile()
+    {
+        return this.getPercentile(0.99);
+    }
+
+    /**
+     * Estimates a percentile of the recorded values.
+     *
+     * @param fraction the percentile, as a fraction between 0 and 1.
+     *
+     * @return the estimated percentile, or 0 if no values have been recorded.
+     */
+    public double getPercentile(double fraction)
+    {
+        return this.scale(estimatePercentile(this.histogram, fraction, this.min.get(), this.max.get()));
+    }
+
+    public long getFrameCount()
+    {
+        return this.frameCount.get();
+    }
+
+    public double getLastFrameTotal()
+    {
+        return this.scale(this.lastFrameTotal);
+    }
+
+    public double getFrameMean()
+    {
+        long n = this.frameCount.get();
+        return n > 0 ? this.scale(this.framesTotal.get()) / n : 0;
+    }
+
+    public double getFrameMax()
+    {
+        long value = this.frameMax.get();
+        return value != Long.MIN_VALUE ? this.scale(value) : 0;
+    }
+
+    public double getFrame95thPercentile()
+    {
+        return this.getFramePercentile(0.95);
+    }
+
+    /**
+     * Estimates a percentile of the per-frame totals.
+     *
+     * @param fraction the percentile, as a fraction between 0 and 1.
+     *
+     * @return the estimated percentile, or 0 if no frames have been recorded.
+     */
+    public double getFramePercentile(double fraction)
+    {
+        return this.scale(estimatePercentile(this.frameHistogram, fraction, 0, this.frameMax.get()));
+    }
+
+    /**
+     * Returns the histogram of recorded values. Element i is the number of values less than 2<sup>i</sup> and, for i
+     * greater than 0, at least 2<sup>i - 1</sup>, in recorded units.
+     *
+     * @return the histogram's bucket counts.
+     */
+    public long[] getHistogram()
+    {
+        return toArray(this.histogram);
+    }
+
+    /**
+     * Returns the histogram of per-frame totals, with the same buckets as {@link #getHistogram()}.
+     *
+     * @return the histogram's bucket counts.
+     */
+    public long[] getFrameHistogram()
+    {
+        return toArray(this.frameHistogram);
+    }
+
+    /**
+     * Converts a value in recorded units to reported units.
+     *
+     * @param value the value in recorded units.
+     *
+     * @return the value in reported units.
+     */
+    public double scale(long value)
+    {
+        return this.timer ? value / 1e6 : value;
+    }
+
+    protected static int bucketIndex(long value)
+    {
+        return 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * Returns the largest value held by a histogram bucket.
+     *
+     * @param index the bucket index.
+     *
+     * @return the bucket's upper bound, in recorded units.
+     */
+    public static long bucketUpperBound(int index)
+    {
+        return index == 0 ? 0 : index >= 63 ? Long.MAX_VALUE : (1L << index) - 1;
+    }
+
+    protected static long estimatePercentile(AtomicLongArray histogram, double fraction, long min, long max)
+    {
+        long[] counts = toArray(histogram);
+        long n = 0;
+        for (long c : counts)
+        {
+            n += c;
+        }
+
+        if (n == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(fraction * n));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++)
+        {
+            cumulative += counts[i];
+            if (cumulative >= rank)
+                return Math.max(min, Math.min(max, bucketUpperBound(i)));
+        }
+
+        return max;
+    }
+
+    protected static long[] toArray(AtomicLongArray array)
+    {
+        long[] values = new long[array.length()];
+        for (int i = 0; i < values.length; i++)
+        {
+            values[i] = array.get(i);
+        }
+
+        return values;
+    }
+
+    protected static void updateMin(AtomicLong min, long value)
+    {
+        long current;
+        while (value < (current = min.get()))
+        {
+            if (min.compareAndSet(current, value))
+                return;
+        }
+    }
+
+    protected static void updateMax(AtomicLong max, long value)
+    {
+        long current;
+        while (value > (current = max.get()))
+        {
+            if (max.compareAndSet(current, value))
+                return;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+/**
+ * The JMX management interface of an {@link InstrumentationMetric}. Times are reported in milliseconds and counts in
+ * the metric's own units.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public interface InstrumentationMetricMBean
+{
+    String getName();
+
+    String getUnit();
+
+    long getCount();
+
+    double getTotal();
+
+    double getMin();
+
+    double getMax();
+
+    double getMean();
+
+    double getMedian();
+
+    double get95thPercentile();
+
+    double get99thPercentile();
+
+    long getFrameCount();
+
+    double getLastFrameTotal();
+
+    double getFrameMean();
+
+    double getFrame95thPercentile();
+
+    void reset();
+}
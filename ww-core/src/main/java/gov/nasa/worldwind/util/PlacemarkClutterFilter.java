@@ -26,13 +26,15 @@ import java.util.List;
  */
 public class PlacemarkClutterFilter implements ClutterFilter
 {
-    /** Holds the rectangles of the regions already drawn. */
-    protected List<Rectangle2D> rectList = new ArrayList<Rectangle2D>();
+    /** Holds the rectangles of the regions already drawn. Reused each frame. */
+    protected ClutterGrid grid = new ClutterGrid();
     /** Maintains a list of regions and the shapes associated with each region. */
     protected Map<Rectangle2D, List<Declutterable>> shapeMap = new HashMap<Rectangle2D, List<Declutterable>>();
 
     public void apply(DrawContext dc, List<Declutterable> shapes)
     {
+        this.grid.clear(dc.getView() != null ? dc.getView().getViewport() : null);
+
         for (Declutterable shape : shapes)
         {
             Rectangle2D bounds = shape.getBounds(dc);
@@ -59,7 +61,7 @@ public class PlacemarkClutterFilter implements ClutterFilter
     /** Release all the resources used in the most recent filter application. */
     protected void clear()
     {
-        this.rectList.clear();
+        this.grid.clear(null);
         this.shapeMap.clear();
     }
 
@@ -73,16 +75,7 @@ public class PlacemarkClutterFilter implements ClutterFilter
      */
     protected Rectangle2D intersects(Rectangle2D rectangle)
     {
-        if (rectangle == null)
-            return null;
-
-        for (Rectangle2D rect : this.rectList)
-        {
-            if (rectangle.intersects(rect))
-                return rect;
-        }
-
-        return null;
+        return this.grid.intersects(rectangle);
     }
 
     /**
@@ -99,7 +92,7 @@ public class PlacemarkClutterFilter implements ClutterFilter
         {
             shapeList = new ArrayList<Declutterable>(1);
             this.shapeMap.put(rectangle, shapeList);
-            this.rectList.add(rectangle);
+            this.grid.add(rectangle);
         }
 
         shapeList.add(shape);
@@ -1214,7 +1214,18 @@ public class WWIO
             // Determine whether the file can be treated like a File, e.g., a jar entry.
             URI uri = url.toURI();
             if (uri.isOpaque())
+            {
+                // Use the modification time reported by the URL's connection, if any. Jar entries are part of the
+                // class path and never expire.
+                if (!"jar".equals(url.getProtocol()))
+                {
+                    long lastModified = url.openConnection().getLastModified();
+                    if (lastModified > 0)
+                        return lastModified < expiryTime;
+                }
+
                 return false; // TODO: Determine how to check the date of non-Files
+            }
 
             File file = new File(uri);
 
@@ -1225,6 +1236,11 @@ public class WWIO
             Logging.logger().log(Level.SEVERE, "WWIO.ExceptionValidatingFileExpiration", url);
             return false;
         }
+        catch (IOException e)
+        {
+            Logging.logger().log(Level.SEVERE, "WWIO.ExceptionValidatingFileExpiration", url);
+            return false;
+        }
     }
 
     public static Proxy configureProxy()
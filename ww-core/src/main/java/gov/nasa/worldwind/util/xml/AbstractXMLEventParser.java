@@ -5,6 +5,7 @@
  */
 package gov.nasa.worldwind.util.xml;
 
+import gov.nasa.worldwind.Configuration;
 import gov.nasa.worldwind.avlist.*;
 import gov.nasa.worldwind.util.*;
 
@@ -13,6 +14,7 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.events.*;
 import java.lang.reflect.Constructor;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Base class for XML event parsers. Handles parsing control and creation of new parser instances.
@@ -28,6 +30,11 @@ import java.util.*;
  * <p/>
  * A parser can be associated with a specific namespace. The namespace is used to qualify the parser's association with
  * event types.
+ * <p/>
+ * A parser's fields are held in an {@link AVListImpl} by default. Setting the configuration value {@link
+ * AVKey#XML_PARSER_COMPACT_FIELDS} to true causes them to be held in a {@link CompactFieldList}, which uses less
+ * memory when, as is typical, a parser has few fields. Subclasses may also choose the storage by overriding {@link
+ * #isCompactFields()}.
  *
  * @author tag
  * @version $Id$
@@ -36,6 +43,19 @@ abstract public class AbstractXMLEventParser implements XMLEventParser
 {
     protected static final String CHARACTERS_CONTENT = "CharactersContent";
 
+    /** Indicates whether parsers hold their fields in a {@link CompactFieldList} rather than an {@link AVListImpl}. */
+    protected static final boolean COMPACT_FIELDS = Configuration.getBooleanValue(AVKey.XML_PARSER_COMPACT_FIELDS,
+        false);
+
+    /**
+     * The constructors used by {@link #newInstance()}, keyed by parser class. Caching them avoids repeating the
+     * reflective constructor lookup for every element parsed.
+     */
+    protected static final Map<Class<?>, Constructor<? extends AbstractXMLEventParser>> namespaceConstructors =
+        new ConcurrentHashMap<Class<?>, Constructor<? extends AbstractXMLEventParser>>();
+    protected static final Map<Class<?>, Constructor<? extends AbstractXMLEventParser>> defaultConstructors =
+        new ConcurrentHashMap<Class<?>, Constructor<? extends AbstractXMLEventParser>>();
+
     protected String namespaceURI;
 
     protected AVList fields;
@@ -74,17 +94,53 @@ abstract public class AbstractXMLEventParser implements XMLEventParser
 
     public XMLEventParser newInstance() throws Exception
     {
-        Constructor<? extends AbstractXMLEventParser> constructor = this.getAConstructor(String.class);
+        Constructor<? extends AbstractXMLEventParser> constructor = namespaceConstructors.get(this.getClass());
+        if (constructor != null)
+            return constructor.newInstance(this.getNamespaceURI());
+
+        constructor = defaultConstructors.get(this.getClass());
+        if (constructor != null)
+            return constructor.newInstance();
+
+        constructor = this.getAConstructor(String.class);
         if (constructor != null)
+        {
+            namespaceConstructors.put(this.getClass(), constructor);
             return constructor.newInstance(this.getNamespaceURI());
+        }
 
         constructor = this.getAConstructor();
         if (constructor != null)
+        {
+            defaultConstructors.put(this.getClass(), constructor);
             return constructor.newInstance();
+        }
 
         return null;
     }
 
+    /**
+     * Indicates whether this parser holds its fields in a {@link CompactFieldList} rather than an {@link AVListImpl}.
+     * The default is the value of the configuration key {@link AVKey#XML_PARSER_COMPACT_FIELDS}, or false if that key
+     * is not set.
+     *
+     * @return true if this parser uses compact field storage, otherwise false.
+     */
+    protected boolean isCompactFields()
+    {
+        return COMPACT_FIELDS;
+    }
+
+    /**
+     * Creates the list that holds this parser's fields. Called the first time a field is set.
+     *
+     * @return a new, empty field list.
+     */
+    protected AVList createFields()
+    {
+        return this.isCompactFields() ? new CompactFieldList() : new AVListImpl();
+    }
+
     public void setField(QName keyName, Object value)
     {
         this.setField(keyName.getLocalPart(), value);
@@ -93,7 +149,7 @@ abstract public class AbstractXMLEventParser implements XMLEventParser
     public void setField(String keyName, Object value)
     {
         if (this.fields == null)
-            this.fields = new AVListImpl();
+            this.fields = this.createFields();
 
         this.fields.setValue(keyName, value);
     }
@@ -101,7 +157,7 @@ abstract public class AbstractXMLEventParser implements XMLEventParser
     public void setFields(Map<String, Object> newFields)
     {
         if (this.fields == null)
-            this.fields = new AVListImpl();
+            this.fields = this.createFields();
 
         for (Map.Entry<String, Object> nf : newFields.entrySet())
         {
@@ -50,6 +50,12 @@ public class BasicXMLEventParserContext extends AVListImpl implements XMLEventPa
     protected ConcurrentHashMap<String, Object> idTable = new ConcurrentHashMap<String, Object>();
 
     protected ConcurrentHashMap<QName, XMLEventParser> parsers = new ConcurrentHashMap<QName, XMLEventParser>();
+    /**
+     * Factories that create parsers directly, without the reflective construction performed by a prototype parser's
+     * {@link XMLEventParser#newInstance()}. A factory takes precedence over a prototype registered for the same name.
+     */
+    protected ConcurrentHashMap<QName, XMLEventParserFactory> parserFactories =
+        new ConcurrentHashMap<QName, XMLEventParserFactory>();
 
     /** Construct an instance. Invokes {@link #initializeParsers()} and {@link #initialize()}. */
     public BasicXMLEventParserContext()
@@ -91,6 +97,7 @@ public class BasicXMLEventParserContext extends AVListImpl implements XMLEventPa
     public BasicXMLEventParserContext(BasicXMLEventParserContext ctx)
     {
         this.parsers = ctx.parsers;
+        this.parserFactories = ctx.parserFactories;
         this.setDefaultNamespaceURI(ctx.getDefaultNamespaceURI());
         this.initialize();
     }
@@ -473,9 +480,42 @@ public class BasicXMLEventParserContext extends AVListImpl implements XMLEventPa
             throw new IllegalArgumentException(message);
         }
 
+        // The most recent registration wins, so discard any factory that would otherwise shadow this parser.
+        this.parserFactories.remove(elementName);
         this.parsers.put(elementName, parser);
     }
 
+    /**
+     * Registers a factory to create the parser for a specified element name. Parsers for the element are subsequently
+     * created by calling {@link XMLEventParserFactory#createParser(String)} with the namespace URI of
+     * <code>elementName</code>, rather than by calling {@link XMLEventParser#newInstance()} on a prototype parser. A
+     * factory takes precedence over a prototype registered for the same name until {@link #registerParser(QName,
+     * XMLEventParser)} is called for that name.
+     *
+     * @param elementName the element name for which to create parsers.
+     * @param factory     the factory that creates the parsers.
+     *
+     * @throws IllegalArgumentException if either argument is null.
+     */
+    public void registerParserFactory(QName elementName, XMLEventParserFactory factory)
+    {
+        if (factory == null)
+        {
+            String message = Logging.getMessage("nullValue.FactoryIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (elementName == null)
+        {
+            String message = Logging.getMessage("nullValue.ElementNameIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.parserFactories.put(elementName, factory);
+    }
+
     public XMLEventParser getParser(QName name)
     {
         if (name == null)
@@ -485,26 +525,35 @@ public class BasicXMLEventParserContext extends AVListImpl implements XMLEventPa
             throw new IllegalArgumentException(message);
         }
 
-        XMLEventParser factoryParser = this.parsers.get(name);
-        if (factoryParser == null)
+        QName key = name;
+        XMLEventParserFactory factory = this.parserFactories.get(key);
+        XMLEventParser factoryParser = factory == null ? this.parsers.get(key) : null;
+        if (factory == null && factoryParser == null)
         {
             // Try alternate forms that assume a default namespace in either the input name or the table key.
             if (isNullNamespace(name.getNamespaceURI()))
             {
                 // input name has no namespace but table key has the default namespace
-                QName altName = new QName(this.getDefaultNamespaceURI(), name.getLocalPart());
-                factoryParser = this.parsers.get(altName);
+                key = new QName(this.getDefaultNamespaceURI(), name.getLocalPart());
             }
             else if (this.isDefaultNamespace(name.getNamespaceURI()))
             {
                 // input name has the default namespace but table name has no namespace
-                QName altName = new QName(name.getLocalPart());
-                factoryParser = this.parsers.get(altName);
+                key = new QName(name.getLocalPart());
+            }
+
+            if (key != name)
+            {
+                factory = this.parserFactories.get(key);
+                factoryParser = factory == null ? this.parsers.get(key) : null;
             }
         }
 
         try
         {
+            if (factory != null)
+                return factory.createParser(isNullNamespace(key.getNamespaceURI()) ? null : key.getNamespaceURI());
+
             if (factoryParser == null)
                 return null;
 
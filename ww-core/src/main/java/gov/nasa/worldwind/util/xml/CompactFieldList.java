@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util.xml;
+
+import gov.nasa.worldwind.avlist.*;
+import gov.nasa.worldwind.util.Logging;
+
+import java.util.*;
+
+/**
+ * An attribute-value list that holds its entries in parallel key and value arrays rather than a hash map. XML parsers
+ * typically hold only a handful of fields, for which a linear search of a small array is both faster and considerably
+ * smaller than a hash map. Used by {@link AbstractXMLEventParser} when compact field storage is enabled.
+ * <p/>
+ * The collections returned by {@link #getValues()} and {@link #getEntries()} are snapshots; modifying them does not
+ * modify the list.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public class CompactFieldList extends AVListImpl
+{
+    protected static final int INITIAL_CAPACITY = 4;
+
+    protected String[] keys;
+    protected Object[] values;
+    protected int size;
+
+    /** Creates an empty list. */
+    public CompactFieldList()
+    {
+    }
+
+    protected int indexOf(String key)
+    {
+        for (int i = 0; i < this.size; i++)
+        {
+            // Element and attribute names are usually interned by the XML reader, so try identity first.
+            if (this.keys[i] == key || this.keys[i].equals(key))
+                return i;
+        }
+
+        return -1;
+    }
+
+    protected static void checkKey(String key)
+    {
+        if (key == null)
+        {
+            String message = Logging.getMessage("nullValue.AttributeKeyIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    @Override
+    synchronized public Object getValue(String key)
+    {
+        checkKey(key);
+
+        int i = this.indexOf(key);
+        return i >= 0 ? this.values[i] : null;
+    }
+
+    @Override
+    synchronized public Collection<Object> getValues()
+    {
+        List<Object> list = new ArrayList<Object>(this.size);
+
+        for (int i = 0; i < this.size; i++)
+        {
+            list.add(this.values[i]);
+        }
+
+        return list;
+    }
+
+    @Override
+    synchronized public Set<Map.Entry<String, Object>> getEntries()
+    {
+        Set<Map.Entry<String, Object>> entries = new LinkedHashSet<Map.Entry<String, Object>>(this.size);
+
+        for (int i = 0; i < this.size; i++)
+        {
+            entries.add(new AbstractMap.SimpleEntry<String, Object>(this.keys[i], this.values[i]));
+        }
+
+        return entries;
+    }
+
+    @Override
+    synchronized public Object setValue(String key, Object value)
+    {
+        checkKey(key);
+
+        int i = this.indexOf(key);
+        if (i >= 0)
+        {
+            Object oldValue = this.values[i];
+            this.values[i] = value;
+            return oldValue;
+        }
+
+        if (this.keys == null)
+        {
+            this.keys = new String[INITIAL_CAPACITY];
+            this.values = new Object[INITIAL_CAPACITY];
+        }
+        else if (this.size == this.keys.length)
+        {
+            this.keys = Arrays.copyOf(this.keys, 2 * this.size);
+            this.values = Arrays.copyOf(this.values, 2 * this.size);
+        }
+
+        this.keys[this.size] = key;
+        this.values[this.size] = value;
+        this.size++;
+
+        return null;
+    }
+
+    @Override
+    synchronized public boolean hasKey(String key)
+    {
+        if (key == null)
+        {
+            String message = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        return this.indexOf(key) >= 0;
+    }
+
+    @Override
+    synchronized public Object removeKey(String key)
+    {
+        if (key == null)
+        {
+            String message = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        int i = this.indexOf(key);
+        if (i < 0)
+            return null;
+
+        Object oldValue = this.values[i];
+
+        // Preserve insertion order so that entries are reported in the order they were parsed.
+        int numMoved = this.size - i - 1;
+        if (numMoved > 0)
+        {
+            System.arraycopy(this.keys, i + 1, this.keys, i, numMoved);
+            System.arraycopy(this.values, i + 1, this.values, i, numMoved);
+        }
+
+        this.size--;
+        this.keys[this.size] = null;
+        this.values[this.size] = null;
+
+        return oldValue;
+    }
+
+    @Override
+    synchronized public AVList copy()
+    {
+        CompactFieldList clone = new CompactFieldList();
+
+        if (this.keys != null)
+        {
+            clone.keys = Arrays.copyOf(this.keys, this.keys.length);
+            clone.values = Arrays.copyOf(this.values, this.values.length);
+            clone.size = this.size;
+        }
+
+        return clone;
+    }
+
+    @Override
+    synchronized public AVList clearList()
+    {
+        if (this.keys != null)
+        {
+            Arrays.fill(this.keys, null);
+            Arrays.fill(this.values, null);
+        }
+
+        this.size = 0;
+        return this;
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util.xml;
+
+/**
+ * Creates new, empty parser instances for a specific element type. Factories registered with a {@link
+ * BasicXMLEventParserContext} via {@link BasicXMLEventParserContext#registerParserFactory(javax.xml.namespace.QName,
+ * XMLEventParserFactory)} take precedence over the prototype parsers registered via {@link
+ * XMLEventParserContext#registerParser(javax.xml.namespace.QName, XMLEventParser)}, and avoid the reflective
+ * constructor lookup performed by {@link AbstractXMLEventParser#newInstance()}.
+ *
+ * @author tag
+ * @version $Id$
+ */
+public interface XMLEventParserFactory
+{
+    /**
+     * Creates a new parser qualified for the specified namespace.
+     *
+     * @param namespaceURI the qualifying namespace URI. May be null to indicate no namespace qualification.
+     *
+     * @return a new parser instance with empty fields.
+     */
+    XMLEventParser createParser(String namespaceURI);
+}
@@ -141,6 +141,26 @@ public class FlyToOrbitViewAnimator extends CompoundAnimator
         }
     }
 
+    /**
+     * Returns the center position at which the animation ends.
+     *
+     * @return the final center position.
+     */
+    public Position getEndCenterPosition()
+    {
+        return this.centerAnimator.getEnd();
+    }
+
+    /**
+     * Returns the zoom at which the animation ends.
+     *
+     * @return the final zoom, in meters.
+     */
+    public double getEndZoom()
+    {
+        return this.zoomAnimator.getEnd();
+    }
+
     @Override
     public void stop()
     {
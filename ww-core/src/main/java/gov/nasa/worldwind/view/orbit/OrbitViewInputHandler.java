@@ -16,7 +16,9 @@ import gov.nasa.worldwind.view.*;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 /**
  * @author dcollins
@@ -1244,6 +1246,31 @@ public class OrbitViewInputHandler extends BasicViewInputHandler
         return (this.uiAnimControl.hasActiveAnimation() || this.gotoAnimControl.hasActiveAnimation());
     }
 
+    /**
+     * Returns the animators that are currently changing the view, such as a {@link FlyToOrbitViewAnimator} started by
+     * a call to <code>addPanToAnimator</code>. This method must be called on the thread that renders the view.
+     *
+     * @return the active animators. The list is empty if the view is not animating.
+     */
+    public List<Animator> getActiveAnimators()
+    {
+        ArrayList<Animator> animators = new ArrayList<Animator>();
+
+        for (Animator animator : this.gotoAnimControl.values())
+        {
+            if (animator.hasNext())
+                animators.add(animator);
+        }
+
+        for (Animator animator : this.uiAnimControl.values())
+        {
+            if (animator.hasNext())
+                animators.add(animator);
+        }
+
+        return animators;
+    }
+
     public void addAnimator(Animator animator)
     {
         long date = new Date().getTime();
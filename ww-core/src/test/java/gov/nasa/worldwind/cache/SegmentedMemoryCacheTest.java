@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author tag
+ * @version $Id$
+ */
+public class SegmentedMemoryCacheTest
+{
+    protected static class RecordingListener implements MemoryCache.CacheListener
+    {
+        protected List<Object> removedKeys = new ArrayList<Object>();
+
+        public synchronized void entryRemoved(Object key, Object clientObject)
+        {
+            this.removedKeys.add(key);
+        }
+
+        public void removalException(Throwable exception, Object key, Object clientObject)
+        {
+        }
+    }
+
+    @Test
+    public void testAddGetRemove()
+    {
+        SegmentedMemoryCache cache = new SegmentedMemoryCache(80, 100);
+        RecordingListener listener = new RecordingListener();
+        cache.addCacheListener(listener);
+
+        assertTrue(cache.add("a", "A", 10));
+        assertTrue(cache.add("b", "B", 20));
+        assertEquals(2, cache.getNumObjects());
+        assertEquals(30, cache.getUsedCapacity());
+        assertEquals("A", cache.getObject("a"));
+        assertTrue(cache.contains("b"));
+
+        cache.remove("a");
+        assertFalse(cache.contains("a"));
+        assertNull(cache.getObject("a"));
+        assertEquals(20, cache.getUsedCapacity());
+        assertEquals(Arrays.<Object>asList("a"), listener.removedKeys);
+
+        cache.clear();
+        assertEquals(0, cache.getNumObjects());
+        assertEquals(0, cache.getUsedCapacity());
+    }
+
+    @Test
+    public void testReplaceNotifiesListener()
+    {
+        SegmentedMemoryCache cache = new SegmentedMemoryCache(80, 100);
+        RecordingListener listener = new RecordingListener();
+        cache.addCacheListener(listener);
+
+        cache.add("a", "A1", 10);
+        cache.add("a", "A2", 15);
+
+        assertEquals("A2", cache.getObject("a"));
+        assertEquals(1, cache.getNumObjects());
+        assertEquals(15, cache.getUsedCapacity());
+        assertEquals(Arrays.<Object>asList("a"), listener.removedKeys);
+    }
+
+    @Test
+    public void testItemTooLargeIsRejected()
+    {
+        SegmentedMemoryCache cache = new SegmentedMemoryCache(80, 100);
+
+        assertFalse(cache.add("a", "A", 101));
+        assertFalse(cache.add("a", "A", 0));
+        assertEquals(0, cache.getNumObjects());
+    }
+
+    @Test
+    public void testEvictionReachesLowWater()
+    {
+        SegmentedMemoryCache cache = new SegmentedMemoryCache(500, 1000);
+
+        for (int i = 0; i < 1000; i++)
+        {
+            cache.add(i, i, 10);
+            assertTrue("Capacity exceeded", cache.getUsedCapacity() <= cache.getCapacity());
+        }
+
+        assertTrue(cache.getUsedCapacity() > 0);
+        assertEquals(cache.getUsedCapacity(), cache.getNumObjects() * 10L);
+        assertTrue("Most recent entry evicted", cache.contains(999));
+    }
+
+    @Test
+    public void testProtectedEntriesSurviveScan()
+    {
+        // A single segment makes the eviction order deterministic.
+        SegmentedMemoryCache cache = new SegmentedMemoryCache(50, 100, 1, 0.5);
+
+        cache.add("hot", "H", 10);
+        cache.getObject("hot"); // promote to the protected region
+
+        for (int i = 0; i < 100; i++)
+        {
+            cache.add(i, i, 10);
+        }
+
+        assertTrue("Frequently used entry was evicted by a scan", cache.contains("hot"));
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.retrieve.*;
+import gov.nasa.worldwind.util.WWIO;
+import org.junit.*;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.net.URL;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author tag
+ * @version $Id$
+ */
+public class TileArchiveFileStoreTest
+{
+    protected static final String TILE_PATH = "Earth/Test/3/5/5_7.dds";
+
+    protected File storeDir;
+    protected TileArchiveFileStore store;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.storeDir = File.createTempFile("TileArchiveFileStoreTest", "");
+        assertTrue(this.storeDir.delete());
+        assertTrue(this.storeDir.mkdirs());
+
+        this.store = new TileArchiveFileStore(this.storeDir);
+        assertNotNull(this.store.getArchive());
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.store.dispose();
+        delete(this.storeDir);
+    }
+
+    @Test
+    public void testTileIsArchived() throws IOException
+    {
+        File file = this.store.newFile(TILE_PATH);
+        assertTrue(file instanceof FileStoreFile);
+        ((FileStoreFile) file).save(makeData(5000, 1), 0);
+
+        assertFalse(new File(this.storeDir, TILE_PATH).exists());
+        assertTrue(file.exists());
+        assertEquals(5000, file.length());
+        assertTrue(this.store.containsFile(TILE_PATH));
+
+        URL url = this.store.findFile(TILE_PATH, false);
+        assertTrue(TileArchive.isEntryURL(url));
+        assertEquals(makeData(5000, 1), WWIO.readURLContentToBuffer(url));
+
+        assertFalse(WWIO.isFileOutOfDate(url, file.lastModified()));
+        assertTrue(WWIO.isFileOutOfDate(url, System.currentTimeMillis() + 1000));
+
+        this.store.removeFile(url);
+        assertFalse(this.store.containsFile(TILE_PATH));
+        assertNull(this.store.findFile(TILE_PATH, false));
+    }
+
+    @Test
+    public void testOtherFilesAreNotArchived() throws IOException
+    {
+        String path = "Earth/Test/Test.xml";
+        File file = this.store.newFile(path);
+        assertFalse(file instanceof FileStoreFile);
+        WWIO.saveBuffer(makeData(100, 2), file);
+
+        assertTrue(new File(this.storeDir, path).exists());
+        URL url = this.store.findFile(path, false);
+        assertEquals("file", url.getProtocol());
+        assertFalse(this.store.getArchive().contains(path));
+    }
+
+    @Test
+    public void testRetrievedTileIsArchived() throws Exception
+    {
+        final long expiryTime = System.currentTimeMillis() + 60000;
+        Retriever retriever = makeRetriever(makeData(3000, 3), "image/dds", expiryTime);
+
+        AbstractRetrievalPostProcessor postProcessor = new AbstractRetrievalPostProcessor()
+        {
+            protected File doGetOutputFile()
+            {
+                return store.newFile(TILE_PATH);
+            }
+
+            @Override
+            protected boolean validateResponseCode()
+            {
+                return true;
+            }
+        };
+        assertNotNull(postProcessor.run(retriever));
+
+        assertFalse(new File(this.storeDir, TILE_PATH).exists());
+        assertEquals(makeData(3000, 3), WWIO.readURLContentToBuffer(this.store.findFile(TILE_PATH, false)));
+        assertEquals(expiryTime, this.store.getArchive().getExpiryTime(TILE_PATH));
+    }
+
+    @Test
+    public void testArchiveIsReopened() throws IOException
+    {
+        ((FileStoreFile) this.store.newFile(TILE_PATH)).save(makeData(2000, 4), 0);
+        this.store.dispose();
+
+        this.store = new TileArchiveFileStore(this.storeDir);
+        assertTrue(this.store.containsFile(TILE_PATH));
+        assertEquals(makeData(2000, 4), WWIO.readURLContentToBuffer(this.store.findFile(TILE_PATH, false)));
+    }
+
+    protected static ByteBuffer makeData(int length, int seed)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (int i = 0; i < length; i++)
+        {
+            buffer.put((byte) (i * 31 + seed));
+        }
+        buffer.flip();
+
+        return buffer;
+    }
+
+    /** Creates a retriever that has successfully retrieved the specified data. */
+    protected static Retriever makeRetriever(final ByteBuffer buffer, final String contentType, final long expiryTime)
+    {
+        return (Retriever) Proxy.newProxyInstance(Retriever.class.getClassLoader(), new Class[] {Retriever.class},
+            new InvocationHandler()
+            {
+                public Object invoke(Object proxy, Method method, Object[] args)
+                {
+                    String name = method.getName();
+                    if (name.equals("getBuffer"))
+                        return buffer;
+                    else if (name.equals("getContentType"))
+                        return contentType;
+                    else if (name.equals("getExpirationTime"))
+                        return expiryTime;
+                    else if (name.equals("getState"))
+                        return Retriever.RETRIEVER_STATE_SUCCESSFUL;
+                    else if (name.equals("getName"))
+                        return TILE_PATH;
+                    else if (method.getReturnType() == int.class)
+                        return 0;
+                    else if (method.getReturnType() == long.class)
+                        return 0L;
+                    else
+                        return null;
+                }
+            });
+    }
+
+    protected static void delete(File file)
+    {
+        File[] files = file.listFiles();
+        if (files != null)
+        {
+            for (File child : files)
+            {
+                delete(child);
+            }
+        }
+
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+}
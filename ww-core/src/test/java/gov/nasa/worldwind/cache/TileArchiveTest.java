@@ -0,0 +1,471 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.WWIO;
+import org.junit.*;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author tag
+ * @version $Id$
+ */
+public class TileArchiveTest
+{
+    protected File file;
+    protected File indexFile;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.file = File.createTempFile("TileArchiveTest", ".wwa");
+        this.indexFile = new File(this.file.getPath() + TileArchive.INDEX_FILE_SUFFIX);
+        //noinspection ResultOfMethodCallIgnored
+        this.file.delete();
+    }
+
+    @After
+    public void tearDown()
+    {
+        //noinspection ResultOfMethodCallIgnored
+        this.file.delete();
+        //noinspection ResultOfMethodCallIgnored
+        this.indexFile.delete();
+    }
+
+    protected static ByteBuffer makeData(int length, int seed)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (int i = 0; i < length; i++)
+        {
+            buffer.put((byte) (i * 31 + seed));
+        }
+        buffer.flip();
+
+        return buffer;
+    }
+
+    @Test
+    public void testPutGetRemove() throws IOException
+    {
+        TileArchive archive = new TileArchive(this.file);
+        try
+        {
+            archive.put("Earth/BMNG/0/0/0_0.dds", makeData(1000, 1), 0);
+            archive.put("Earth/BMNG/0/0/0_1.dds", makeData(2000, 2), 0);
+
+            assertEquals(2, archive.getEntryCount());
+            assertTrue(archive.contains("Earth/BMNG/0/0/0_0.dds"));
+            assertEquals(2000, archive.getLength("Earth/BMNG/0/0/0_1.dds"));
+            assertEquals(makeData(1000, 1), archive.get("Earth/BMNG/0/0/0_0.dds"));
+            assertEquals(makeData(2000, 2), archive.get("Earth/BMNG/0/0/0_1.dds"));
+
+            // Replacing an entry leaves the old record as dead space.
+            archive.put("Earth/BMNG/0/0/0_0.dds", makeData(500, 3), 0);
+            assertEquals(makeData(500, 3), archive.get("Earth/BMNG/0/0/0_0.dds"));
+            assertTrue(archive.getDeadBytes() > 1000);
+
+            assertTrue(archive.remove("Earth/BMNG/0/0/0_1.dds"));
+            assertFalse(archive.remove("Earth/BMNG/0/0/0_1.dds"));
+            assertFalse(archive.contains("Earth/BMNG/0/0/0_1.dds"));
+            assertNull(archive.get("Earth/BMNG/0/0/0_1.dds"));
+            assertEquals(1, archive.getEntryCount());
+        }
+        finally
+        {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void testReopen() throws IOException
+    {
+        TileArchive archive = new TileArchive(this.file);
+        archive.put("a.dds", makeData(100, 1), 0);
+        archive.put("b.dds", makeData(200, 2), 12345L);
+        archive.put("a.dds", makeData(300, 3), 0);
+        archive.remove("b.dds");
+        archive.put("c.dds", makeData(400, 4), 67890L);
+        long deadBytes = archive.getDeadBytes();
+        long size = archive.getSize();
+        archive.close();
+
+        // Reopen once using the saved index, then again scanning the archive.
+        assertTrue(this.indexFile.exists());
+        for (int i = 0; i < 2; i++)
+        {
+            if (i == 1)
+                assertTrue(this.indexFile.delete());
+
+            archive = new TileArchive(this.file);
+            try
+            {
+                assertEquals(2, archive.getEntryCount());
+                assertEquals(makeData(300, 3), archive.get("a.dds"));
+                assertEquals(makeData(400, 4), archive.get("c.dds"));
+                assertFalse(archive.contains("b.dds"));
+                assertEquals(67890L, archive.getExpiryTime("c.dds"));
+                assertEquals(deadBytes, archive.getDeadBytes());
+                assertEquals(size, archive.getSize());
+            }
+            finally
+            {
+                archive.close();
+            }
+        }
+    }
+
+    @Test
+    public void testRecordsWrittenAfterIndexAreScanned() throws IOException
+    {
+        TileArchive archive = new TileArchive(this.file);
+        archive.put("a.dds", makeData(100, 1), 0);
+        archive.put("b.dds", makeData(200, 2), 0);
+        archive.close();
+
+        // Keep the index describing the first two entries, as if the archive had not been closed after later writes.
+        ByteBuffer index = WWIO.readFileToBuffer(this.indexFile);
+
+        archive = new TileArchive(this.file);
+        archive.put("c.dds", makeData(300, 3), 0);
+        archive.put("a.dds", makeData(400, 4), 0);
+        archive.remove("b.dds");
+        long deadBytes = archive.getDeadBytes();
+        long size = archive.getSize();
+        archive.close();
+
+        WWIO.saveBuffer(index, this.indexFile);
+
+        archive = new TileArchive(this.file);
+        try
+        {
+            assertEquals(2, archive.getEntryCount());
+            assertEquals(makeData(400, 4), archive.get("a.dds"));
+            assertEquals(makeData(300, 3), archive.get("c.dds"));
+            assertFalse(archive.contains("b.dds"));
+            assertEquals(deadBytes, archive.getDeadBytes());
+            assertEquals(size, archive.getSize());
+        }
+        finally
+        {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void testIndexOfOtherArchiveIsIgnored() throws IOException
+    {
+        TileArchive archive = new TileArchive(this.file);
+        archive.put("a.dds", makeData(100, 1), 0);
+        archive.close();
+        ByteBuffer index = WWIO.readFileToBuffer(this.indexFile);
+
+        // Replace the archive with a different archive of the same size.
+        assertTrue(this.file.delete());
+        archive = new TileArchive(this.file);
+        archive.put("b.dds", makeData(100, 2), 0);
+        archive.close();
+        WWIO.saveBuffer(index, this.indexFile);
+
+        archive = new TileArchive(this.file);
+        try
+        {
+            assertEquals(1, archive.getEntryCount());
+            assertFalse(archive.contains("a.dds"));
+            assertEquals(makeData(100, 2), archive.get("b.dds"));
+        }
+        finally
+        {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void testDamagedTailIsDiscarded() throws IOException
+    {
+        TileArchive archive = new TileArchive(this.file);
+        archive.put("a.dds", makeData(100, 1), 0);
+        archive.put("b.dds", makeData(200, 2), 0);
+        long size = archive.getSize();
+        archive.close();
+
+        // Simulate an interrupted write of the last entry. The archive was not closed, so there's no saved index.
+        damage(this.file, size - 10);
+        assertTrue(this.indexFile.delete());
+
+        archive = new TileArchive(this.file);
+        try
+        {
+            assertEquals(1, archive.getEntryCount());
+            assertEquals(makeData(100, 1), archive.get("a.dds"));
+
+            archive.put("b.dds", makeData(200, 5), 0);
+            assertEquals(makeData(200, 5), archive.get("b.dds"));
+        }
+        finally
+        {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void testDamagedTailRestoresReplacedEntry() throws IOException
+    {
+        TileArchive archive = new TileArchive(this.file);
+        archive.put("a.dds", makeData(100, 1), 0);
+        archive.put("b.dds", makeData(200, 2), 0);
+        long deadBytes = archive.getDeadBytes();
+        archive.put("a.dds", makeData(300, 3), 0);
+        long size = archive.getSize();
+        archive.close();
+
+        damage(this.file, size - 10);
+        assertTrue(this.indexFile.delete());
+
+        archive = new TileArchive(this.file);
+        try
+        {
+            assertEquals(2, archive.getEntryCount());
+            assertEquals(makeData(100, 1), archive.get("a.dds"));
+            assertEquals(makeData(200, 2), archive.get("b.dds"));
+            assertEquals(deadBytes, archive.getDeadBytes());
+        }
+        finally
+        {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void testDamagedEntryIsNotReturned() throws IOException
+    {
+        TileArchive archive = new TileArchive(this.file);
+        archive.put("a.dds", makeData(100, 1), 0);
+        long size = archive.getSize();
+        archive.put("b.dds", makeData(200, 2), 0);
+        archive.close();
+
+        // Damage the data of the first entry, which the saved index describes.
+        damage(this.file, size - 10);
+
+        archive = new TileArchive(this.file);
+        try
+        {
+            assertEquals(2, archive.getEntryCount());
+            assertNull(archive.get("a.dds"));
+            assertFalse(archive.contains("a.dds"));
+            assertEquals(makeData(200, 2), archive.get("b.dds"));
+        }
+        finally
+        {
+            archive.close();
+        }
+
+        archive = new TileArchive(this.file);
+        try
+        {
+            assertEquals(1, archive.getEntryCount());
+        }
+        finally
+        {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void testCompaction() throws IOException
+    {
+        TileArchive archive = new WritingTileArchive(this.file);
+        try
+        {
+            archive.setMinCompactionSize(0);
+            archive.setCompactionRatio(1); // disable automatic compaction
+
+            for (int i = 0; i < 100; i++)
+            {
+                archive.put("tile" + i + ".dds", makeData(1000, i), 0);
+            }
+
+            for (int i = 0; i < 100; i += 2)
+            {
+                archive.put("tile" + i + ".dds", makeData(1000, -i), 0);
+            }
+
+            for (int i = 1; i < 100; i += 4)
+            {
+                archive.remove("tile" + i + ".dds");
+            }
+
+            archive.put("expired.dds", makeData(1000, 7), System.currentTimeMillis() - 1000);
+
+            // Buffers obtained before compaction remain valid after it.
+            ByteBuffer before = archive.get("tile0.dds");
+            long size = archive.getSize();
+            archive.compact();
+
+            assertTrue(archive.getSize() < size);
+            assertFalse(archive.contains("expired.dds"));
+            assertEquals(makeData(1000, 0), before);
+            assertTiles(archive);
+
+            // Compaction leaves as dead space only the records written while the live entries were copied.
+            assertTrue(archive.getDeadBytes() > 0);
+            assertTrue(archive.getDeadBytes() < 3000);
+        }
+        finally
+        {
+            archive.close();
+        }
+
+        assertTrue(this.indexFile.exists());
+        for (int i = 0; i < 2; i++)
+        {
+            if (i == 1)
+                assertTrue(this.indexFile.delete());
+
+            archive = new TileArchive(this.file);
+            try
+            {
+                assertEquals(75, archive.getEntryCount());
+                assertTiles(archive);
+            }
+            finally
+            {
+                archive.close();
+            }
+        }
+    }
+
+    protected static void assertTiles(TileArchive archive) throws IOException
+    {
+        for (int i = 0; i < 100; i++)
+        {
+            ByteBuffer data = archive.get("tile" + i + ".dds");
+            if (i % 4 == 1 || i == 2)
+                assertNull(data);
+            else if (i == 0)
+                assertEquals(makeData(500, 10), data);
+            else
+                assertEquals(makeData(1000, i % 2 == 0 ? -i : i), data);
+        }
+
+        assertEquals(makeData(700, 11), archive.get("written.dds"));
+    }
+
+    @Test
+    public void testAutomaticCompaction() throws Exception
+    {
+        TileArchive archive = new TileArchive(this.file);
+        try
+        {
+            archive.setMinCompactionSize(0);
+
+            for (int i = 0; i < 50; i++)
+            {
+                archive.put("tile.dds", makeData(1000, i), 0);
+            }
+
+            // Compaction runs on a task service thread. The last write starts another compaction if it's needed.
+            for (int i = 0; i < 100 && archive.getDeadBytes() > archive.getSize() / 2; i++)
+            {
+                Thread.sleep(50);
+            }
+
+            assertTrue(archive.getDeadBytes() <= archive.getSize() / 2);
+            assertEquals(makeData(1000, 49), archive.get("tile.dds"));
+        }
+        finally
+        {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void testEntryURL() throws IOException
+    {
+        TileArchive archive = new TileArchive(this.file);
+        try
+        {
+            archive.put("Earth/BMNG/3/5/5_7.dds", makeData(5000, 9), 0);
+
+            URL url = archive.getEntryURL("Earth/BMNG/3/5/5_7.dds");
+            assertNotNull(url);
+            assertNull(archive.getEntryURL("missing.dds"));
+            assertTrue(TileArchive.isEntryURL(url));
+            assertEquals("Earth/BMNG/3/5/5_7.dds", url.getPath());
+            assertEquals(makeData(5000, 9), WWIO.readURLContentToBuffer(url));
+
+            assertFalse(WWIO.isFileOutOfDate(url, archive.getLastModified("Earth/BMNG/3/5/5_7.dds")));
+            assertTrue(WWIO.isFileOutOfDate(url, System.currentTimeMillis() + 1000));
+        }
+        finally
+        {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void testArchiveInUse() throws IOException
+    {
+        TileArchive archive = new TileArchive(this.file);
+        try
+        {
+            new TileArchive(this.file);
+            fail("Archive opened twice");
+        }
+        catch (IOException e)
+        {
+            // Expected.
+        }
+        finally
+        {
+            archive.close();
+        }
+    }
+
+    protected static void damage(File file, long offset) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try
+        {
+            raf.seek(offset);
+            raf.write(new byte[10]);
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    /** Replaces, writes and removes entries while its live entries are copied during compaction. */
+    protected static class WritingTileArchive extends TileArchive
+    {
+        public WritingTileArchive(File file) throws IOException
+        {
+            super(file);
+        }
+
+        @Override
+        protected long writeCompactedEntries(java.util.List<java.util.Map.Entry<String, Entry>> entries,
+            java.nio.channels.FileChannel source, java.nio.channels.FileChannel out, long archiveId,
+            java.util.Map<Entry, Long> newOffsets) throws IOException
+        {
+            long size = super.writeCompactedEntries(entries, source, out, archiveId, newOffsets);
+
+            // The archive is not locked while the entries are copied.
+            this.put("tile0.dds", makeData(500, 10), 0);
+            this.put("written.dds", makeData(700, 11), 0);
+            this.remove("tile2.dds");
+
+            return size;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.data;
+
+import gov.nasa.worldwind.avlist.*;
+import gov.nasa.worldwind.util.*;
+import org.junit.*;
+
+import java.beans.*;
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author tag
+ * @version $Id$
+ */
+public class TiledImageProducerTest
+{
+    protected static final String SOURCE_PATH = "./testData/sba_rgb_wgs84_512x512.tif";
+
+    protected File tempDir;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.tempDir = File.createTempFile("TiledImageProducerTest", "");
+        assertTrue(this.tempDir.delete());
+        assertTrue(this.tempDir.mkdirs());
+    }
+
+    @After
+    public void tearDown()
+    {
+        delete(this.tempDir);
+    }
+
+    @Test
+    public void testParallelProductionMatchesSequentialProduction() throws Exception
+    {
+        File sequentialDir = new File(this.tempDir, "sequential");
+        File parallelDir = new File(this.tempDir, "parallel");
+
+        produce(new TiledImageProducer(), sequentialDir, 1);
+        produce(new TiledImageProducer(), parallelDir, 4);
+
+        Map<String, File> sequentialFiles = listTiles(sequentialDir);
+        Map<String, File> parallelFiles = listTiles(parallelDir);
+
+        assertFalse(sequentialFiles.isEmpty());
+        assertEquals(sequentialFiles.keySet(), parallelFiles.keySet());
+        for (Map.Entry<String, File> entry : sequentialFiles.entrySet())
+        {
+            assertEquals(entry.getKey(), WWIO.readFileToBuffer(entry.getValue()),
+                WWIO.readFileToBuffer(parallelFiles.get(entry.getKey())));
+        }
+    }
+
+    @Test
+    public void testParallelProductionReportsEveryTile() throws Exception
+    {
+        final List<Double> progress = Collections.synchronizedList(new ArrayList<Double>());
+
+        TiledImageProducer producer = new TiledImageProducer();
+        producer.addPropertyChangeListener(AVKey.PROGRESS, new PropertyChangeListener()
+        {
+            public void propertyChange(PropertyChangeEvent event)
+            {
+                progress.add((Double) event.getNewValue());
+            }
+        });
+        produce(producer, new File(this.tempDir, "progress"), 4);
+
+        // The first event reports the start of production; each later event reports one more tile.
+        assertEquals(0d, progress.get(0), 0d);
+        assertEquals(1d, Collections.max(progress), 1e-9);
+        assertEquals(new HashSet<Double>(progress).size(), progress.size());
+    }
+
+    @Test
+    public void testParallelProductionFailureIsPropagated() throws Exception
+    {
+        FailingProducer producer = new FailingProducer();
+
+        try
+        {
+            produce(producer, new File(this.tempDir, "failing"), 4);
+            fail("Expected the tile failure to stop production");
+        }
+        catch (IOException e)
+        {
+            assertEquals(FailingProducer.MESSAGE, e.getMessage());
+        }
+
+        // No production task may still be running once the failure has been reported.
+        int tileCount = producer.tileCount.get();
+        Thread.sleep(200);
+        assertEquals(tileCount, producer.tileCount.get());
+        // The failure must not leave the producer stopped for later productions.
+        assertFalse(producer.isStopped());
+    }
+
+    protected static void produce(TiledImageProducer producer, File fileStore, int threadPoolSize) throws Exception
+    {
+        AVList params = new AVListImpl();
+        params.setValue(AVKey.FILE_STORE_LOCATION, fileStore.getAbsolutePath());
+        params.setValue(AVKey.DATA_CACHE_NAME, "tiles");
+        params.setValue(AVKey.DATASET_NAME, "tiles");
+        params.setValue(AVKey.TILED_RASTER_PRODUCER_THREAD_POOL_SIZE, threadPoolSize);
+
+        producer.setStoreParameters(params);
+        producer.offerDataSource(new File(SOURCE_PATH), null);
+        producer.startProduction();
+    }
+
+    protected static Map<String, File> listTiles(File root)
+    {
+        Map<String, File> tiles = new TreeMap<String, File>();
+        listTiles(root, root, tiles);
+        return tiles;
+    }
+
+    protected static void listTiles(File root, File dir, Map<String, File> tiles)
+    {
+        File[] files = dir.listFiles();
+        if (files == null)
+            return;
+
+        for (File file : files)
+        {
+            if (file.isDirectory())
+                listTiles(root, file, tiles);
+            else if (file.getName().endsWith(".png"))
+                tiles.put(file.getAbsolutePath().substring(root.getAbsolutePath().length()), file);
+        }
+    }
+
+    protected static void delete(File file)
+    {
+        File[] files = file.listFiles();
+        if (files != null)
+        {
+            for (File child : files)
+            {
+                delete(child);
+            }
+        }
+
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    /** Fails to create the first final-level tile and counts the final-level tiles created after that. */
+    protected static class FailingProducer extends TiledImageProducer
+    {
+        protected static final String MESSAGE = "Test failure";
+
+        protected final java.util.concurrent.atomic.AtomicInteger tileCount =
+            new java.util.concurrent.atomic.AtomicInteger();
+        protected final java.util.concurrent.atomic.AtomicBoolean failed =
+            new java.util.concurrent.atomic.AtomicBoolean();
+
+        @Override
+        protected DataRaster drawDataSources(LevelSet levelSet, Tile tile, Iterable<DataRaster> dataRasters,
+            AVList params) throws IOException
+        {
+            if (this.failed.compareAndSet(false, true))
+                throw new IOException(MESSAGE);
+
+            this.tileCount.incrementAndGet();
+            return super.drawDataSources(levelSet, tile, dataRasters, params);
+        }
+    }
+}
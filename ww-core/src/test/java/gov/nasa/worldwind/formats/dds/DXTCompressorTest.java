@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.formats.dds;
+
+import org.junit.Test;
+
+import java.awt.image.*;
+import java.nio.*;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author tag
+ * @version $Id$
+ */
+public class DXTCompressorTest
+{
+    protected static final int[] IMAGE_TYPES =
+        {
+            BufferedImage.TYPE_INT_ARGB,
+            BufferedImage.TYPE_INT_ARGB_PRE,
+            BufferedImage.TYPE_INT_RGB,
+            BufferedImage.TYPE_4BYTE_ABGR,
+        };
+
+    protected static final String[] COMPRESSION_TYPES =
+        {
+            DXTCompressionAttributes.COLOR_BLOCK_COMPRESSION_BBOX,
+            DXTCompressionAttributes.COLOR_BLOCK_COMPRESSION_EUCLIDEAN_DISTANCE,
+            DXTCompressionAttributes.COLOR_BLOCK_COMPRESSION_LUMINANCE_DISTANCE,
+        };
+
+    protected BufferedImage createImage(int width, int height, int type)
+    {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Random random = new Random(width * 31 + type);
+
+        for (int y = 0; y < height; y++)
+        {
+            for (int x = 0; x < width; x++)
+            {
+                // Mix smooth gradients with noise and a few transparent pixels.
+                int a = (x + y) % 7 == 0 ? random.nextInt(256) : 255;
+                int r = (x * 255 / width + random.nextInt(32)) & 0xFF;
+                int g = (y * 255 / height + random.nextInt(32)) & 0xFF;
+                int b = random.nextInt(256);
+                image.setRGB(x, y, (a << 24) | (r << 16) | (g << 8) | b);
+            }
+        }
+
+        return image;
+    }
+
+    protected ByteBuffer compress(DXTCompressor compressor, BufferedImage image, DXTCompressionAttributes attributes)
+    {
+        // Leave room before the image data to verify that the compressor honors the buffer's starting position.
+        ByteBuffer buffer = ByteBuffer.allocate(16 + compressor.getCompressedSize(image, attributes));
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(16);
+        compressor.compressImage(image, attributes, buffer);
+
+        assertEquals("Buffer position incorrect ", buffer.capacity(), buffer.position());
+        buffer.rewind();
+        return buffer;
+    }
+
+    protected void assertParallelMatchesSerial(DXTCompressor compressor, DXTCompressionAttributes attributes)
+    {
+        int[] sizes = {4, 64, 256, 1024};
+
+        for (int type : IMAGE_TYPES)
+        {
+            for (int size : sizes)
+            {
+                BufferedImage image = this.createImage(size, size / 4 > 0 ? size / 4 : 1, type);
+
+                attributes.setCompressionThreadCount(1);
+                ByteBuffer serial = this.compress(compressor, image, attributes);
+
+                attributes.setCompressionThreadCount(4);
+                ByteBuffer parallel = this.compress(compressor, image, attributes);
+
+                assertEquals("Parallel output differs for image type " + type + " and size " + size, serial,
+                    parallel);
+            }
+        }
+    }
+
+    @Test
+    /**
+     * Tests that parallel DXT1 compression produces the same bytes as serial compression.
+     */
+    public void testParallelDXT1()
+    {
+        DXTCompressionAttributes attributes = new DXTCompressionAttributes();
+
+        for (String compressionType : COMPRESSION_TYPES)
+        {
+            attributes.setColorBlockCompressionType(compressionType);
+
+            attributes.setEnableDXT1Alpha(false);
+            this.assertParallelMatchesSerial(new DXT1Compressor(), attributes);
+
+            attributes.setEnableDXT1Alpha(true);
+            this.assertParallelMatchesSerial(new DXT1Compressor(), attributes);
+        }
+    }
+
+    @Test
+    /**
+     * Tests that parallel DXT3 compression produces the same bytes as serial compression.
+     */
+    public void testParallelDXT3()
+    {
+        DXTCompressionAttributes attributes = new DXTCompressionAttributes();
+
+        for (String compressionType : COMPRESSION_TYPES)
+        {
+            attributes.setColorBlockCompressionType(compressionType);
+
+            attributes.setPremultiplyAlpha(true);
+            this.assertParallelMatchesSerial(new DXT3Compressor(), attributes);
+
+            attributes.setPremultiplyAlpha(false);
+            this.assertParallelMatchesSerial(new DXT3Compressor(), attributes);
+        }
+    }
+
+    @Test
+    /**
+     * Tests that a compressed DDS file with mipmaps is the same whether its levels are compressed serially or in
+     * parallel.
+     */
+    public void testParallelMipmaps()
+    {
+        BufferedImage image = this.createImage(512, 512, BufferedImage.TYPE_INT_ARGB);
+        DDSCompressor compressor = new DDSCompressor();
+
+        DXTCompressionAttributes attributes = DDSCompressor.getDefaultCompressionAttributes();
+        attributes.setCompressionThreadCount(1);
+        ByteBuffer serial = compressor.compressImage(image, attributes);
+
+        attributes.setCompressionThreadCount(3);
+        ByteBuffer parallel = compressor.compressImage(image, attributes);
+
+        assertEquals("Parallel DDS file differs ", serial, parallel);
+    }
+}
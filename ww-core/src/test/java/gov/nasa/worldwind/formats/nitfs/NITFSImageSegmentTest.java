@@ -0,0 +1,314 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.formats.nitfs;
+
+import gov.nasa.worldwind.formats.rpf.RPFImageType;
+import org.junit.*;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author tag
+ * @version $Id$
+ */
+public class NITFSImageSegmentTest
+{
+    protected static final int SUBFRAMES_PER_ROW = 3;
+    protected static final int SUBFRAMES_PER_COL = 3;
+    protected static final int CODES_PER_ROW = 4;
+    protected static final int CODE_ROWS = 4;
+    protected static final int SUBFRAME_SIZE = 4 * CODES_PER_ROW;
+    protected static final int NUM_COLORS = 216;
+    protected static final int NUM_CODES = 4096;
+    protected static final int TRANSPARENT_PIXEL_CODE = 7;
+    protected static final int UNMODIFIED = 0x12345678;
+
+    @Test
+    public void testParallelDecompressionMatchesSerialDecompression()
+    {
+        NITFSImageSegment segment = makeSegment(null);
+        assertFalse(segment.hasMaskedSubframes());
+
+        assertDecompressionsMatch(segment);
+    }
+
+    @Test
+    public void testParallelDecompressionOfMaskedSubframesMatchesSerialDecompression()
+    {
+        NITFSImageSegment segment = makeSegment(new int[] {0, 2, 4, 8});
+        assertTrue(segment.hasMaskedSubframes());
+        assertTrue(segment.hasTransparentPixels());
+
+        int[] serial = assertDecompressionsMatch(segment);
+
+        // Pixels of the masked subframes are left unchanged, and those of the others are written.
+        int width = SUBFRAMES_PER_ROW * SUBFRAME_SIZE;
+        int numModified = 0;
+        for (int i = 0; i < serial.length; i++)
+        {
+            int subframe = (i / width / SUBFRAME_SIZE) * SUBFRAMES_PER_ROW + (i % width) / SUBFRAME_SIZE;
+            if (subframe == 0 || subframe == 2 || subframe == 4 || subframe == 8)
+                assertEquals(UNMODIFIED, serial[i]);
+            else if (serial[i] != UNMODIFIED)
+                numModified++;
+        }
+        assertTrue(numModified > 0);
+    }
+
+    /**
+     * Decompresses the segment serially, in parallel on the shared pool and in parallel on a pool with several
+     * threads, and asserts that all three produce the same pixels.
+     *
+     * @param segment the segment to decompress.
+     *
+     * @return the serially decompressed pixels.
+     */
+    protected static int[] assertDecompressionsMatch(NITFSImageSegment segment)
+    {
+        int numPixels = segment.numSignificantRows * segment.numSignificantCols;
+
+        int[] serial = newPixels(numPixels);
+        segment.getImagePixelsAsArray(serial, RPFImageType.IMAGE_TYPE_ALPHA_RGB, false);
+
+        int[] parallel = newPixels(numPixels);
+        segment.getImagePixelsAsArray(parallel, RPFImageType.IMAGE_TYPE_ALPHA_RGB, true);
+        assertArrayEquals(serial, parallel);
+
+        // The shared pool may have only one thread, so also divide the subframes among the threads of a larger pool.
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try
+        {
+            int[] forked = newPixels(numPixels);
+            pool.invoke(segment.new DecompressSubframesTask(forked, RPFImageType.IMAGE_TYPE_ALPHA_RGB, 0,
+                SUBFRAMES_PER_ROW * SUBFRAMES_PER_COL));
+            assertArrayEquals(serial, forked);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        return serial;
+    }
+
+    protected static int[] newPixels(int length)
+    {
+        int[] pixels = new int[length];
+        Arrays.fill(pixels, UNMODIFIED);
+        return pixels;
+    }
+
+    /**
+     * Creates an image segment holding a CADRG frame with random image codes. When masked subframes are specified the
+     * frame has a subframe mask table, stores its subframes in reverse order, and includes transparent kernels and
+     * pixels.
+     *
+     * @param maskedSubframes the indices of the subframes absent from the frame, or null if the frame has no subframe
+     *                        mask table.
+     *
+     * @return the image segment.
+     */
+    protected static NITFSImageSegment makeSegment(int[] maskedSubframes)
+    {
+        Random random = new Random(1);
+        boolean masked = maskedSubframes != null;
+        int numSubframes = SUBFRAMES_PER_ROW * SUBFRAMES_PER_COL;
+        int rowSize = CODES_PER_ROW * 12 / 8;
+
+        ByteBuffer buffer = ByteBuffer.allocate(128 * 1024);
+
+        // [ nitf identification, security, structure fields ]
+        putString(buffer, "IM", 2);
+        putString(buffer, "CADRG", 10);
+        putString(buffer, "", 14 + 17 + 80 + 1 + 40 + 40 + 40 + 20 + 20 + 6);
+        putString(buffer, "0", 1);
+        putString(buffer, "", 42);
+        putNumber(buffer, SUBFRAMES_PER_COL * SUBFRAME_SIZE, 8);
+        putNumber(buffer, SUBFRAMES_PER_ROW * SUBFRAME_SIZE, 8);
+        putString(buffer, "INT", 3);
+        putString(buffer, "RGB/LUT", 8);
+        putString(buffer, "MAP", 8);
+        putNumber(buffer, 8, 2);
+        putString(buffer, "R", 1);
+        putString(buffer, "G", 1);
+        // [ nitf image geographic location ]
+        for (int i = 0; i < 4; i++)
+        {
+            putString(buffer, "000000N0000000E", 15);
+        }
+        // [ nitf comments ]
+        putNumber(buffer, 0, 1);
+        // [ nitf image compression structure ]
+        putString(buffer, "C4", 2);
+        putString(buffer, "", 4);
+        putNumber(buffer, 1, 1);
+        // [ nitf image band ], with a color lookup table
+        putString(buffer, "", 2 + 6 + 1 + 3);
+        putNumber(buffer, 3, 1);
+        putNumber(buffer, NUM_COLORS, 5);
+        for (int i = 0; i < 3 * NUM_COLORS; i++)
+        {
+            buffer.put((byte) random.nextInt(256));
+        }
+        // [ nitf image table structure ]
+        putNumber(buffer, 0, 1);
+        putString(buffer, "B", 1);
+        putNumber(buffer, SUBFRAMES_PER_ROW, 4);
+        putNumber(buffer, SUBFRAMES_PER_COL, 4);
+        putNumber(buffer, SUBFRAME_SIZE, 4);
+        putNumber(buffer, SUBFRAME_SIZE, 4);
+        putNumber(buffer, 8, 2);
+        putNumber(buffer, 1, 3);
+        putNumber(buffer, 0, 3);
+        // [ nitf image location and magnification ]
+        putNumber(buffer, 0, 5);
+        putNumber(buffer, 0, 5);
+        putString(buffer, "1.0", 4);
+        // [ nitf user-defined image subheader ]
+        putNumber(buffer, 1000, 5);
+        putNumber(buffer, 0, 3);
+        putString(buffer, "RPFIMG", 6);
+        putNumber(buffer, 1000, 5);
+
+        // The RPF sections follow the subheader at fixed locations.
+        int imageDescriptionLocation = 2048;
+        int displayParametersLocation = imageDescriptionLocation + 64;
+        int compressionLocation = displayParametersLocation + 64;
+        int maskLocation = compressionLocation + 64;
+        int lookupLocation = maskLocation + 256;
+        int spatialDataLocation = lookupLocation + 64 + 4 * NUM_CODES * 4;
+
+        // [ rpf location section ]
+        int[][] components = {
+            {136, 28, imageDescriptionLocation},
+            {137, 9, displayParametersLocation},
+            {131, 6, compressionLocation},
+            {132, 6 + 4 * 14, lookupLocation},
+            {138, masked ? 7 + 4 * numSubframes : 0, maskLocation},
+            {140, numSubframes * CODE_ROWS * rowSize, spatialDataLocation}};
+        buffer.putShort((short) (14 + 10 * components.length));
+        buffer.putInt(14);
+        buffer.putShort((short) components.length);
+        buffer.putShort((short) 10);
+        buffer.putInt(0);
+        for (int[] component : components)
+        {
+            buffer.putShort((short) component[0]);
+            buffer.putInt(component[1]);
+            buffer.putInt(component[2]);
+        }
+
+        // [ rpf image description subheader ]
+        buffer.position(imageDescriptionLocation);
+        buffer.putShort((short) 1);
+        buffer.putShort((short) 1);
+        buffer.putShort((short) 1);
+        buffer.putShort((short) 1);
+        buffer.putShort((short) SUBFRAMES_PER_ROW);
+        buffer.putShort((short) SUBFRAMES_PER_COL);
+        buffer.putInt(SUBFRAME_SIZE);
+        buffer.putInt(SUBFRAME_SIZE);
+        buffer.putInt(masked ? 7 : -1);
+        buffer.putInt(-1);
+
+        // [ rpf image display parameters subheader ]
+        buffer.position(displayParametersLocation);
+        buffer.putInt(CODE_ROWS);
+        buffer.putInt(CODES_PER_ROW);
+        buffer.put((byte) 12);
+
+        // [ rpf compression section subheader ]
+        buffer.position(compressionLocation);
+        buffer.putShort((short) 1);
+        buffer.putShort((short) 4);
+        buffer.putShort((short) 0);
+
+        // [ rpf compression lookup subsection ], one table per row of the 4x4 kernels
+        buffer.position(lookupLocation);
+        buffer.putInt(6);
+        buffer.putShort((short) 14);
+        for (int i = 0; i < 4; i++)
+        {
+            buffer.putShort((short) (i + 1));
+            buffer.putInt(NUM_CODES);
+            buffer.putShort((short) 4);
+            buffer.putShort((short) 8);
+            buffer.putInt(64 + i * NUM_CODES * 4);
+        }
+        buffer.position(lookupLocation + 64);
+        for (int i = 0; i < 4 * NUM_CODES * 4; i++)
+        {
+            // Include codes beyond the color table, which are reserved for application overlays.
+            buffer.put((byte) random.nextInt(NUM_COLORS + 8));
+        }
+
+        // [ rpf mask subsection ], with the subframes stored in reverse order
+        int[] subframeOffsets = new int[numSubframes];
+        int numStored = 0;
+        for (int i = numSubframes - 1; i >= 0; i--)
+        {
+            boolean isMasked = masked && Arrays.binarySearch(maskedSubframes, i) >= 0;
+            subframeOffsets[i] = isMasked ? -1 : numStored++ * CODE_ROWS * rowSize;
+        }
+        if (masked)
+        {
+            buffer.position(maskLocation);
+            buffer.putShort((short) 4);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 8);
+            buffer.put((byte) TRANSPARENT_PIXEL_CODE);
+            for (int offset : subframeOffsets)
+            {
+                buffer.putInt(offset);
+            }
+        }
+
+        // [ rpf spatial data subsection ], two 12-bit image codes in every three bytes
+        buffer.position(spatialDataLocation);
+        for (int i = 0; i < numStored * CODE_ROWS * CODES_PER_ROW / 2; i++)
+        {
+            int code1 = masked && random.nextInt(10) == 0 ? NUM_CODES - 1 : random.nextInt(NUM_CODES);
+            int code2 = random.nextInt(NUM_CODES);
+            buffer.put((byte) (code1 >> 4));
+            buffer.put((byte) (((code1 & 0xF) << 4) | (code2 >> 8)));
+            buffer.put((byte) code2);
+        }
+
+        int headerLength = imageDescriptionLocation;
+        buffer.position(0);
+        return new NITFSImageSegment(buffer, 0, headerLength, spatialDataLocation,
+            buffer.capacity() - spatialDataLocation);
+    }
+
+    protected static void putString(ByteBuffer buffer, String s, int length)
+    {
+        StringBuilder sb = new StringBuilder(s);
+        while (sb.length() < length)
+        {
+            sb.append(' ');
+        }
+
+        for (int i = 0; i < length; i++)
+        {
+            buffer.put((byte) sb.charAt(i));
+        }
+    }
+
+    protected static void putNumber(ByteBuffer buffer, int value, int length)
+    {
+        String s = Integer.toString(value);
+        while (s.length() < length)
+        {
+            s = "0" + s;
+        }
+
+        putString(buffer, s, length);
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.formats.rpf;
+
+import org.junit.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author tag
+ * @version $Id$
+ */
+public class RPFDirectoryIndexTest
+{
+    /** A modification time well before the current time, which the index trusts. */
+    private static final long PAST = System.currentTimeMillis() - 3600000;
+
+    private File root;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.root = File.createTempFile("RPFDirectoryIndexTest", "");
+        assertTrue(this.root.delete());
+        assertTrue(this.root.mkdir());
+    }
+
+    @After
+    public void tearDown()
+    {
+        delete(this.root);
+    }
+
+    private static void delete(File file)
+    {
+        // Delete symbolic links without deleting what they link to.
+        File[] files = Files.isSymbolicLink(file.toPath()) ? null : file.listFiles();
+        if (files != null)
+        {
+            for (File f : files)
+            {
+                delete(f);
+            }
+        }
+
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    private static File makeDirectory(File parent, String name, String... frameFiles) throws IOException
+    {
+        File dir = new File(parent, name);
+        assertTrue(dir.mkdir());
+        for (String frameFile : frameFiles)
+        {
+            assertTrue(new File(dir, frameFile).createNewFile());
+        }
+
+        return dir;
+    }
+
+    private static Set<String> names(List<File> files)
+    {
+        Set<String> names = new HashSet<String>();
+        for (File file : files)
+        {
+            names.add(file.getName());
+        }
+
+        return names;
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws IOException
+    {
+        File rpf = makeDirectory(this.root, "RPF", "A.TOC");
+        File onc = makeDirectory(rpf, "ONC", "0000A011.ON1", "0000B011.ON1", "README.TXT");
+        File tlm = makeDirectory(rpf, "TLM", "0000C011.TL2");
+        for (File dir : new File[] {this.root, rpf, onc, tlm})
+        {
+            assertTrue(dir.setLastModified(PAST));
+        }
+
+        RPFDirectoryIndex index = new RPFDirectoryIndex();
+        assertEquals(4, index.update(this.root));
+        assertEquals(3, index.getFrameFiles().size());
+        assertEquals(new HashSet<String>(Arrays.asList("0000C011.TL2")), names(index.getFrameFiles("TL")));
+
+        // Unmodified directories are not listed again.
+        assertEquals(0, index.update(this.root));
+
+        // Adding a directory lists only the new directory and its parent.
+        File gnc = makeDirectory(rpf, "GNC", "0000D011.GN3");
+        assertTrue(gnc.setLastModified(PAST));
+        assertTrue(rpf.setLastModified(PAST + 1000));
+        assertEquals(2, index.update(this.root));
+        assertEquals(4, index.getFrameFiles().size());
+
+        // Removing a directory removes its frames.
+        delete(onc);
+        assertTrue(rpf.setLastModified(PAST + 2000));
+        assertEquals(1, index.update(this.root));
+        assertEquals(new HashSet<String>(Arrays.asList("0000C011.TL2", "0000D011.GN3")),
+            names(index.getFrameFiles()));
+        assertNull(index.getDirectoryRecord(onc));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException
+    {
+        File rpf = makeDirectory(this.root, "RPF");
+        File onc = makeDirectory(rpf, "ONC", "0000A011.ON1", "0000B011.ON1");
+        for (File dir : new File[] {this.root, rpf, onc})
+        {
+            assertTrue(dir.setLastModified(PAST));
+        }
+
+        RPFDirectoryIndex index = new RPFDirectoryIndex();
+        index.update(this.root);
+
+        // Save the index outside the indexed tree, so that saving does not modify the root directory.
+        RPFDirectoryIndex loaded = new RPFDirectoryIndex();
+        File indexFile = File.createTempFile("RPFDirectoryIndexTest", ".idx");
+        try
+        {
+            index.save(indexFile);
+            loaded.load(indexFile);
+        }
+        finally
+        {
+            //noinspection ResultOfMethodCallIgnored
+            indexFile.delete();
+        }
+        assertEquals(index.getNumDirectories(), loaded.getNumDirectories());
+        assertEquals(names(index.getFrameFiles()), names(loaded.getFrameFiles()));
+        assertEquals(PAST / 1000, loaded.getDirectoryRecord(onc).getLastModified() / 1000);
+
+        // The loaded index needs to list only modified directories.
+        assertEquals(0, loaded.update(this.root));
+    }
+
+    @Test
+    public void testSymbolicLinksToDirectoriesAreNotFollowed() throws IOException
+    {
+        File rpf = makeDirectory(this.root, "RPF");
+        makeDirectory(rpf, "ONC", "0000A011.ON1");
+        try
+        {
+            // A link to an ancestor would make the walk recurse forever if it were followed.
+            Files.createSymbolicLink(new File(rpf, "LOOP").toPath(), this.root.toPath());
+        }
+        catch (Exception e)
+        {
+            Assume.assumeNoException(e);
+        }
+
+        RPFDirectoryIndex index = new RPFDirectoryIndex();
+        assertEquals(3, index.update(this.root));
+        assertEquals(1, index.getFrameFiles().size());
+        assertEquals(1, index.getDirectoryRecord(rpf).getSubdirectories().length);
+    }
+
+    @Test
+    public void testUpdateListener() throws IOException
+    {
+        File rpf = makeDirectory(this.root, "RPF");
+        makeDirectory(rpf, "ONC", "0000A011.ON1");
+        makeDirectory(rpf, "TLM", "0000C011.TL2");
+
+        final Set<File> listed = Collections.synchronizedSet(new HashSet<File>());
+        final boolean[] cancelled = new boolean[1];
+        RPFDirectoryIndex.UpdateListener listener = new RPFDirectoryIndex.UpdateListener()
+        {
+            public void directoryListing(File directory)
+            {
+                listed.add(directory);
+            }
+
+            public boolean isCancelled()
+            {
+                return cancelled[0];
+            }
+        };
+
+        // A cancelled update lists nothing and leaves the index unchanged.
+        RPFDirectoryIndex index = new RPFDirectoryIndex();
+        cancelled[0] = true;
+        assertEquals(-1, index.update(this.root, listener));
+        assertTrue(listed.isEmpty());
+        assertEquals(0, index.getNumDirectories());
+
+        // Each directory listed is reported to the listener.
+        cancelled[0] = false;
+        assertEquals(4, index.update(this.root, listener));
+        assertEquals(4, listed.size());
+        assertTrue(listed.contains(rpf));
+        assertEquals(2, index.getFrameFiles().size());
+    }
+}
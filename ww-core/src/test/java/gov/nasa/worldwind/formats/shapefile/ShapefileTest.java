@@ -12,6 +12,8 @@ import gov.nasa.worldwind.exception.WWRuntimeException;
 import gov.nasa.worldwind.formats.shapefile.*;
 import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Sector;
 import gov.nasa.worldwind.util.WWIO;
 import gov.nasa.worldwind.util.WWUtil;
 
@@ -19,12 +21,15 @@ import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
@@ -203,10 +208,243 @@ public class ShapefileTest
         shapefile.close();
     }
 
+    //**************************************************************//
+    //********************  Test Random Access  ********************//
+    //**************************************************************//
+
+    @Test
+    public void testRandomAccessMatchesStreaming() throws Exception
+    {
+        String path = copyToTempDir(STATE_BOUNDS_PATH);
+        Shapefile randomAccess = openRandomAccess(path);
+        Shapefile streaming = new Shapefile(STATE_BOUNDS_PATH);
+        try
+        {
+            assertTrue("Shapefile is not random access", randomAccess.isRandomAccess());
+            assertEquals("Number of records not as expected", 19, randomAccess.getNumberOfRecords());
+
+            for (int i = 0; streaming.hasNext(); i++)
+            {
+                ShapefileRecord expected = streaming.nextRecord();
+                ShapefileRecord actual = randomAccess.readRecord(i);
+                assertRecordAppearsNormal(randomAccess, actual);
+                assertEquals("Record number not as expected", expected.getRecordNumber(), actual.getRecordNumber());
+                assertTrue("Record bounds not as expected", Arrays.equals(expected.getBoundingRectangle(),
+                    actual.getBoundingRectangle()));
+                assertEquals("Record attribute not as expected", expected.getAttributes().getValue("ID"),
+                    actual.getAttributes().getValue("ID"));
+            }
+
+            // Reading a record a second time returns the same points, and reuses the record's point blocks.
+            int numBlocks = randomAccess.getPointBuffer().size();
+            int firstPartNumber = randomAccess.readRecord(18).getFirstPartNumber();
+            ShapefileRecord record = randomAccess.readRecord(18);
+            assertEquals("Record point not as expected", LatLon.fromDegrees(39.53649, -75.530616),
+                record.getPointBuffer(0).getLocation(0));
+            assertEquals("Record first part number not as expected", firstPartNumber, record.getFirstPartNumber());
+            assertEquals("Number of point blocks not as expected", numBlocks, randomAccess.getPointBuffer().size());
+        }
+        finally
+        {
+            streaming.close();
+            closeRandomAccess(randomAccess, path);
+        }
+    }
+
+    @Test
+    public void testRandomAccessRecordsInSector() throws Exception
+    {
+        String path = copyToTempDir(STATE_BOUNDS_PATH);
+        Shapefile shapefile = openRandomAccess(path);
+        try
+        {
+            Sector sector = Sector.fromDegrees(39.5, 39.6, -75.6, -75.5);
+            List<ShapefileRecord> records = shapefile.readRecords(sector);
+            assertFalse("No records in sector", records.isEmpty());
+
+            boolean found = false;
+            for (ShapefileRecord record : records)
+            {
+                assertTrue("Record does not intersect sector",
+                    Sector.fromDegrees(record.getBoundingRectangle()).intersects(sector));
+                found |= record.getRecordNumber() == 19;
+            }
+
+            assertTrue("Expected record not in sector", found);
+            assertEquals("Records outside the sector are not as expected", 0,
+                shapefile.getRecordIndices(Sector.fromDegrees(-10, -5, 10, 20)).length);
+            assertEquals("Records in the full sphere are not as expected", 19,
+                shapefile.getRecordIndices(Sector.FULL_SPHERE).length);
+        }
+        finally
+        {
+            closeRandomAccess(shapefile, path);
+        }
+    }
+
+    @Test
+    public void testSpatialIndexFile() throws Exception
+    {
+        String path = copyToTempDir(STATE_BOUNDS_PATH);
+        File file = new File(WWIO.replaceSuffix(path, ".shpx"));
+        Shapefile shapefile = openRandomAccess(path);
+        try
+        {
+            ShapefileSpatialIndex index = shapefile.getSpatialIndex();
+            assertTrue("Spatial index file not written", file.exists());
+
+            File shpFile = new File(path);
+            ShapefileSpatialIndex read = ShapefileSpatialIndex.read(file, shpFile.length(), shpFile.lastModified());
+            assertNotNull("Spatial index file not readable", read);
+            assertEquals("Number of items not as expected", index.getNumberOfItems(), read.getNumberOfItems());
+            assertTrue("Query results not as expected", Arrays.equals(
+                index.getRecordIndices(Sector.fromDegrees(30, 40, -100, -80)),
+                read.getRecordIndices(Sector.fromDegrees(30, 40, -100, -80))));
+
+            assertNull("Stale spatial index file was read",
+                ShapefileSpatialIndex.read(file, shpFile.length() + 1, shpFile.lastModified()));
+        }
+        finally
+        {
+            closeRandomAccess(shapefile, path);
+        }
+    }
+
+    @Test
+    public void testLazyRecordPositions() throws Exception
+    {
+        String path = copyToTempDir(STATE_BOUNDS_PATH);
+        Shapefile shapefile = openRandomAccess(path);
+        Shapefile streaming = new Shapefile(STATE_BOUNDS_PATH);
+        try
+        {
+            ShapefilePolylines polylines = new ShapefilePolylines(shapefile);
+            assertEquals("Number of records not as expected", 19, polylines.getRecordCount());
+
+            // Read the positions of each record before anything else loads the record's geometry.
+            for (int i = 0; streaming.hasNext(); i++)
+            {
+                ShapefileRecord expected = streaming.nextRecord();
+                ShapefileRenderable.Record record = polylines.getRecord(i);
+                assertNotNull("Record geometry already loaded", record.shapefile);
+
+                Iterator<Position> actual = record.getBoundaryPositions(0).iterator();
+                for (LatLon location : expected.getPointBuffer(0).getLocations())
+                {
+                    assertEquals("Record position not as expected", location, new LatLon(actual.next()));
+                }
+                assertFalse("Record has extra positions", actual.hasNext());
+            }
+        }
+        finally
+        {
+            streaming.close();
+            closeRandomAccess(shapefile, path);
+        }
+    }
+
+    @Test
+    public void testLazyRecordsAreAssignedToTilesBySector() throws Exception
+    {
+        String path = copyToTempDir(STATE_BOUNDS_PATH);
+        Shapefile shapefile = openRandomAccess(path);
+        try
+        {
+            ShapefilePolylines polylines = new ShapefilePolylines(shapefile);
+
+            int numBelowRoot = 0;
+            for (int i = 0; i < polylines.getRecordCount(); i++)
+            {
+                ShapefilePolylines.Record record = (ShapefilePolylines.Record) polylines.getRecord(i);
+                assertNotNull("Record geometry loaded during assembly", record.shapefile);
+                assertTrue("Record not in its tile's sector", record.tile.sector.contains(record.getSector()));
+                assertTrue("Record not in its tile's records", record.tile.records.contains(record));
+                if (record.tile != polylines.rootTile)
+                    numBelowRoot++;
+            }
+
+            assertTrue("All records are in the root tile", numBelowRoot > 0);
+        }
+        finally
+        {
+            closeRandomAccess(shapefile, path);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStreamingIsNotRandomAccess()
+    {
+        Shapefile shapefile = new Shapefile(STATE_BOUNDS_PATH);
+        try
+        {
+            assertFalse("Shapefile is random access", shapefile.isRandomAccess());
+            shapefile.readRecord(0);
+        }
+        finally
+        {
+            shapefile.close();
+        }
+    }
+
     //**************************************************************//
     //********************  Utilities  *****************************//
     //**************************************************************//
 
+    /**
+     * Copies a Shapefile and its accompanying files to a new temporary directory, so that random access tests write
+     * their spatial index files there rather than next to the test data.
+     *
+     * @param path the Shapefile's path.
+     *
+     * @return the path of the copied Shapefile.
+     *
+     * @throws java.io.IOException if the files cannot be copied.
+     */
+    public static String copyToTempDir(String path) throws java.io.IOException
+    {
+        File dir = File.createTempFile("ShapefileTest", "");
+        //noinspection ResultOfMethodCallIgnored
+        dir.delete();
+        //noinspection ResultOfMethodCallIgnored
+        dir.mkdirs();
+
+        for (String suffix : new String[] {".shp", ".shx", ".dbf", ".prj"})
+        {
+            File source = new File(WWIO.replaceSuffix(path, suffix));
+            if (source.exists())
+                WWIO.copyFile(source, new File(dir, source.getName()));
+        }
+
+        return new File(dir, new File(path).getName()).getPath();
+    }
+
+    public static Shapefile openRandomAccess(String path)
+    {
+        AVList params = new AVListImpl();
+        params.setValue(AVKey.SHAPEFILE_RANDOM_ACCESS, true);
+        return new Shapefile(new File(path), params);
+    }
+
+    public static void closeRandomAccess(Shapefile shapefile, String path)
+    {
+        shapefile.close();
+
+        // Delete the temporary directory holding the copied Shapefile and its spatial index file.
+        File dir = new File(path).getParentFile();
+        File[] files = dir.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+
+        //noinspection ResultOfMethodCallIgnored
+        dir.delete();
+    }
+
     public static void assertShapefileAppearsNormal(Shapefile shapefile)
     {
         double[] rect = shapefile.getBoundingRectangle();
@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.formats.tiff;
+
+import gov.nasa.worldwind.data.*;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author tag
+ * @version $Id$
+ */
+public class GeotiffReaderTest
+{
+    protected static final String[] TEST_FILES =
+        {
+            "./testData/elev16_nad83_512x512.tif",
+            "./testData/elev16_wgs84_512x512.tif",
+            "./testData/elev32_nad83_512x512.tif",
+            "./testData/sba_elev32_wgs84_512x512.tif",
+            "./testData/sba_rgb_wgs84_512x512.tif",
+            "./testData/test_image_rgb_nogeo.tif",
+        };
+
+    @Test
+    public void testFullWindowMatchesBaselineRead() throws IOException
+    {
+        for (String path : TEST_FILES)
+        {
+            GeotiffReader reader = new GeotiffReader(path);
+            try
+            {
+                DataRaster baseline = reader.readDataRaster(0);
+                DataRaster window = reader.readDataRaster(0,
+                    new Rectangle(0, 0, reader.getWidth(0), reader.getHeight(0)));
+
+                assertRastersEqual(path, baseline, window, 0, 0);
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+    }
+
+    @Test
+    public void testPartialWindowMatchesBaselineRead() throws IOException
+    {
+        for (String path : TEST_FILES)
+        {
+            GeotiffReader reader = new GeotiffReader(path);
+            try
+            {
+                DataRaster baseline = reader.readDataRaster(0);
+
+                // A window that starts and ends inside strips, and extends past the image's right edge.
+                int x = 37;
+                int y = 101;
+                DataRaster window = reader.readDataRaster(0, new Rectangle(x, y, reader.getWidth(0), 150));
+
+                assertEquals(path, reader.getWidth(0) - x, window.getWidth());
+                assertEquals(path, 150, window.getHeight());
+                assertRastersEqual(path, baseline, window, x, y);
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+    }
+
+    @Test
+    public void testSparseLZWSegmentIsZeroFilled() throws IOException
+    {
+        RandomAccessFile file = new RandomAccessFile(TEST_FILES[0], "r");
+        try
+        {
+            FileChannel channel = file.getChannel();
+            TIFFReader tiffReader = new TIFFReader(channel, ByteOrder.LITTLE_ENDIAN);
+
+            // A sparse tile has an offset and byte count of zero.
+            ByteBuffer data = tiffReader.readSegment(0, 0, Tiff.Compression.LZW,
+                Tiff.Predictor.HORIZONTAL_DIFFERENCING, 16, 8, 1, 2);
+
+            assertEquals(16 * 8 * 2, data.remaining());
+            while (data.hasRemaining())
+            {
+                assertEquals(0, data.get());
+            }
+        }
+        finally
+        {
+            file.close();
+        }
+    }
+
+    protected static void assertRastersEqual(String path, DataRaster baseline, DataRaster window, int x, int y)
+    {
+        assertNotNull(path, window);
+        assertEquals(path, baseline.getClass(), window.getClass());
+
+        if (baseline instanceof BufferedImageRaster)
+        {
+            BufferedImage expected = ((BufferedImageRaster) baseline).getBufferedImage();
+            BufferedImage actual = ((BufferedImageRaster) window).getBufferedImage();
+
+            for (int row = 0; row < window.getHeight(); row++)
+            {
+                for (int col = 0; col < window.getWidth(); col++)
+                {
+                    assertEquals(path + " at " + row + "," + col, expected.getRGB(x + col, y + row),
+                        actual.getRGB(col, row));
+                }
+            }
+        }
+        else
+        {
+            BufferWrapperRaster expected = (BufferWrapperRaster) baseline;
+            BufferWrapperRaster actual = (BufferWrapperRaster) window;
+
+            for (int row = 0; row < window.getHeight(); row++)
+            {
+                for (int col = 0; col < window.getWidth(); col++)
+                {
+                    assertEquals(path + " at " + row + "," + col, expected.getDoubleAtPosition(y + row, x + col),
+                        actual.getDoubleAtPosition(row, col), 0d);
+                }
+            }
+        }
+    }
+}
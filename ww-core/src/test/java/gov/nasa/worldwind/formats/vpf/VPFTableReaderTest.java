@@ -0,0 +1,279 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.formats.vpf;
+
+import gov.nasa.worldwind.util.*;
+import org.junit.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author tag
+ * @version $Id$
+ */
+public class VPFTableReaderTest
+{
+    private static final int NUM_RECORDS = 700;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.dir = File.createTempFile("VPFTableReaderTest", "");
+        assertTrue(this.dir.delete());
+        assertTrue(this.dir.mkdir());
+    }
+
+    @After
+    public void tearDown()
+    {
+        File[] files = this.dir.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+
+        //noinspection ResultOfMethodCallIgnored
+        this.dir.delete();
+    }
+
+    private static byte[] createHeader(ByteOrder order, String... columns)
+    {
+        StringBuilder sb = new StringBuilder(order == ByteOrder.BIG_ENDIAN ? "M" : "L").append(";Test table;-;");
+        for (String column : columns)
+        {
+            sb.append(column).append(",-,-,-,:");
+        }
+        sb.append(";");
+
+        return sb.toString().getBytes(Charset.forName("US-ASCII"));
+    }
+
+    private static void writeFile(File file, ByteBuffer buffer) throws IOException
+    {
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(buffer.array(), 0, buffer.position());
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /** Writes a table of variable length records and its record index. */
+    private File writeVariableLengthTable() throws IOException
+    {
+        byte[] header = createHeader(ByteOrder.BIG_ENDIAN,
+            "id=I,1,P,Row id", "name=T,*,N,Name", "tile_id=S,1,N,Tile", "feature_id=I,1,F,Feature",
+            "triplet=K,1,N,Triplet", "coordinates=C,*,N,Coordinates");
+
+        ByteBuffer table = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        table.putInt(header.length).put(header).order(ByteOrder.BIG_ENDIAN);
+
+        ByteBuffer index = ByteBuffer.allocate(8 + 8 * NUM_RECORDS).order(ByteOrder.LITTLE_ENDIAN);
+        index.putInt(NUM_RECORDS).putInt(header.length);
+
+        for (int id = 1; id <= NUM_RECORDS; id++)
+        {
+            int offset = table.position();
+
+            byte[] name = ("row " + id + (id % 3 == 0 ? "" : " with a longer name")).getBytes("US-ASCII");
+            table.putInt(id);
+            table.putInt(id % 5 == 0 ? 0 : name.length);
+            if (id % 5 != 0)
+                table.put(name);
+            table.putShort((short) (1 + id % 4));
+            table.putInt(1 + id % 37);
+
+            // Vary the lengths of the triplet id's components.
+            switch (id % 3)
+            {
+                case 0:
+                    table.put((byte) 0);
+                    break;
+                case 1:
+                    table.put((byte) ((1 << 6) | (2 << 4) | (3 << 2))).put((byte) id).putShort((short) 7).putInt(id);
+                    break;
+                default:
+                    table.put((byte) (3 << 6)).putInt(id * 11);
+                    break;
+            }
+
+            int numCoords = 1 + id % 4;
+            table.putInt(numCoords);
+            for (int i = 0; i < numCoords; i++)
+            {
+                table.putFloat(id + i).putFloat(-id - i);
+            }
+
+            index.putInt(offset).putInt(table.position() - offset);
+        }
+
+        File file = new File(this.dir, "edg");
+        writeFile(file, table);
+        writeFile(new File(this.dir, "edx"), index);
+        return file;
+    }
+
+    /** Writes a table of fixed length records, which has no record index. */
+    private File writeFixedLengthTable() throws IOException
+    {
+        byte[] header = createHeader(ByteOrder.LITTLE_ENDIAN,
+            "id=I,1,P,Row id", "code=T,4,N,Code", "tile_id=S,1,N,Tile", "value=R,1,N,Value");
+
+        ByteBuffer table = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        table.putInt(header.length).put(header);
+
+        for (int id = 1; id <= NUM_RECORDS; id++)
+        {
+            table.putInt(id);
+            table.put(String.format("C%03d", id % 1000).getBytes("US-ASCII"));
+            table.putShort((short) (id % 9));
+            table.putDouble(id * 0.25);
+        }
+
+        File file = new File(this.dir, "fixed.tab");
+        writeFile(file, table);
+        return file;
+    }
+
+    private static void assertValueEquals(Object expected, Object actual)
+    {
+        if (expected instanceof VPFTripletId)
+        {
+            VPFTripletId a = (VPFTripletId) expected;
+            VPFTripletId b = (VPFTripletId) actual;
+            assertEquals(a.getId(), b.getId());
+            assertEquals(a.getTileId(), b.getTileId());
+            assertEquals(a.getExtId(), b.getExtId());
+        }
+        else if (expected instanceof VecBuffer)
+        {
+            VecBuffer a = (VecBuffer) expected;
+            VecBuffer b = (VecBuffer) actual;
+            assertEquals(a.getSize(), b.getSize());
+            for (int i = 0; i < a.getSize(); i++)
+            {
+                assertTrue(Arrays.equals(a.get(i, new double[2]), b.get(i, new double[2])));
+            }
+        }
+        else
+        {
+            assertEquals(expected, actual);
+        }
+    }
+
+    private static void assertTablesEqual(VPFBufferedRecordData expected, VPFBufferedRecordData actual)
+    {
+        assertEquals(expected.getNumRecords(), actual.getNumRecords());
+
+        // Access the records in reverse order, so that the mapped table decodes its pages out of order.
+        for (int id = expected.getNumRecords(); id >= 1; id--)
+        {
+            VPFRecord a = expected.getRecord(id);
+            VPFRecord b = actual.getRecord(id);
+
+            for (String name : expected.getRecordParameterNames())
+            {
+                assertEquals(a.hasValue(name), b.hasValue(name));
+                assertValueEquals(a.getValue(name), b.getValue(name));
+            }
+        }
+    }
+
+    @Test
+    public void testMappedVariableLengthTable() throws IOException
+    {
+        File file = this.writeVariableLengthTable();
+
+        VPFBufferedRecordData expected = new VPFTableReader().read(file);
+        VPFBufferedRecordData mapped = new VPFTableReader(true).read(file);
+
+        assertEquals(NUM_RECORDS, expected.getNumRecords());
+        assertTrue(mapped.getRecordData("coordinates") instanceof VPFMappedDataBuffer);
+        assertTablesEqual(expected, mapped);
+
+        // Decoding the entire column yields the same backing data.
+        VecBufferSequence a = (VecBufferSequence) expected.getRecordData("coordinates").getBackingData();
+        VecBufferSequence b = (VecBufferSequence) mapped.getRecordData("coordinates").getBackingData();
+        assertEquals(a.size(), b.size());
+        assertTablesEqual(expected, mapped);
+    }
+
+    @Test
+    public void testMappedFixedLengthTable() throws IOException
+    {
+        File file = this.writeFixedLengthTable();
+
+        VPFBufferedRecordData expected = new VPFTableReader().read(file);
+        VPFBufferedRecordData mapped = new VPFTableReader(true).read(file);
+
+        assertEquals(NUM_RECORDS, expected.getNumRecords());
+        assertTablesEqual(expected, mapped);
+        assertEquals(expected.getRecord("code", "C123").getId(), mapped.getRecord("code", "C123").getId());
+    }
+
+    @Test
+    public void testKeyIndex() throws IOException
+    {
+        File file = this.writeVariableLengthTable();
+
+        for (VPFTableReader reader : new VPFTableReader[] {new VPFTableReader(), new VPFTableReader(true)})
+        {
+            VPFBufferedRecordData table = reader.read(file);
+
+            for (int featureId = 0; featureId <= 40; featureId++)
+            {
+                int count = 0;
+                int[] ids = table.getRecordIds("feature_id", featureId);
+
+                for (VPFRecord record : table)
+                {
+                    if (((Number) record.getValue("feature_id")).intValue() == featureId)
+                        assertEquals(record.getId(), ids[count++]);
+                }
+
+                assertEquals(count, ids.length);
+            }
+
+            assertEquals(5, table.getKeyIndex("id").indexOf(5));
+            assertEquals(-1, table.getKeyIndex("id").indexOf(NUM_RECORDS + 1));
+            assertEquals(0, table.getRecordIds("no_such_column", 1).length);
+        }
+    }
+
+    @Test
+    public void testClearedMappedTablesArePurged() throws IOException
+    {
+        File file = this.writeFixedLengthTable().getAbsoluteFile();
+        VPFBufferedRecordData table = new VPFTableReader(true).read(file);
+
+        synchronized (VPFUtils.mappedTables)
+        {
+            VPFUtils.TableReference ref = new VPFUtils.TableReference(file, table, VPFUtils.clearedTables);
+            VPFUtils.mappedTables.put(file, ref);
+
+            // Simulate the garbage collector clearing the reference.
+            ref.clear();
+            assertTrue(ref.enqueue());
+
+            VPFUtils.purgeMappedTables();
+            assertFalse(VPFUtils.mappedTables.containsKey(file));
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.geom.coords;
+
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.geom.Angle;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author tag
+ * @version $Id$
+ */
+public class BulkCoordConverterTest
+{
+    private static final double EN_THRESHOLD = 1e-6; // meters
+    private static final double LATLON_THRESHOLD = 1e-9; // degrees
+
+    private final BulkCoordConverter converter = new BulkCoordConverter(null);
+
+    /** Creates random latitude and longitude pairs, including the Norway and Svalbard zone exceptions. */
+    private static double[] createLatLons(int count, double minLat, double maxLat)
+    {
+        Random random = new Random(12345);
+        double[] latLons = new double[2 * count];
+        for (int i = 0; i < count; i++)
+        {
+            latLons[2 * i] = minLat + random.nextDouble() * (maxLat - minLat);
+            latLons[2 * i + 1] = i % 10 == 0 ? random.nextDouble() * 42 : -180 + random.nextDouble() * 360;
+        }
+
+        return latLons;
+    }
+
+    @Test
+    public void testUTMMatchesUTMCoord()
+    {
+        int count = 2000;
+        double[] latLons = createLatLons(count, -80, 84);
+        int[] zones = new int[count];
+        double[] eastNorths = new double[2 * count];
+
+        assertEquals(count, this.converter.toUTM(latLons, 0, zones, eastNorths, 0, count));
+
+        for (int i = 0; i < count; i++)
+        {
+            UTMCoord utm = UTMCoord.fromLatLon(Angle.fromDegrees(latLons[2 * i]),
+                Angle.fromDegrees(latLons[2 * i + 1]));
+            assertEquals(utm.getZone(), Math.abs(zones[i]));
+            assertEquals(AVKey.NORTH.equals(utm.getHemisphere()), zones[i] > 0);
+            assertEquals(utm.getEasting(), eastNorths[2 * i], EN_THRESHOLD);
+            assertEquals(utm.getNorthing(), eastNorths[2 * i + 1], EN_THRESHOLD);
+        }
+
+        double[] result = new double[2 * count];
+        assertEquals(count, this.converter.fromUTM(zones, eastNorths, 0, result, 0, count));
+
+        for (int i = 0; i < count; i++)
+        {
+            UTMCoord utm = UTMCoord.fromUTM(Math.abs(zones[i]), zones[i] > 0 ? AVKey.NORTH : AVKey.SOUTH,
+                eastNorths[2 * i], eastNorths[2 * i + 1]);
+            assertEquals(utm.getLatitude().degrees, result[2 * i], LATLON_THRESHOLD);
+            assertEquals(utm.getLongitude().degrees, result[2 * i + 1], LATLON_THRESHOLD);
+            assertEquals(latLons[2 * i], result[2 * i], 1e-7);
+            assertEquals(latLons[2 * i + 1], result[2 * i + 1], 1e-7);
+        }
+    }
+
+    @Test
+    public void testUPSMatchesUPSCoord()
+    {
+        int count = 200;
+        double[] latLons = createLatLons(count, 84, 90);
+        for (int i = 0; i < count; i += 2)
+        {
+            latLons[2 * i] = -latLons[2 * i];
+        }
+        int[] hemispheres = new int[count];
+        double[] eastNorths = new double[2 * count];
+
+        assertEquals(count, this.converter.toUPS(latLons, 0, hemispheres, eastNorths, 0, count));
+
+        for (int i = 0; i < count; i++)
+        {
+            UPSCoord ups = UPSCoord.fromLatLon(Angle.fromDegrees(latLons[2 * i]),
+                Angle.fromDegrees(latLons[2 * i + 1]));
+            assertEquals(AVKey.NORTH.equals(ups.getHemisphere()) ? BulkCoordConverter.NORTH : BulkCoordConverter.SOUTH,
+                hemispheres[i]);
+            assertEquals(ups.getEasting(), eastNorths[2 * i], EN_THRESHOLD);
+            assertEquals(ups.getNorthing(), eastNorths[2 * i + 1], EN_THRESHOLD);
+        }
+
+        double[] result = new double[2 * count];
+        assertEquals(count, this.converter.fromUPS(hemispheres, eastNorths, 0, result, 0, count));
+
+        for (int i = 0; i < count; i++)
+        {
+            assertEquals(latLons[2 * i], result[2 * i], LATLON_THRESHOLD);
+        }
+    }
+
+    @Test
+    public void testMGRSMatchesMGRSCoord()
+    {
+        int count = 1000;
+        double[] latLons = createLatLons(count, -90, 90);
+        StringBuilder[] mgrs = new StringBuilder[count];
+        for (int i = 0; i < count; i++)
+        {
+            mgrs[i] = new StringBuilder();
+        }
+
+        for (int precision = 1; precision <= 5; precision++)
+        {
+            assertEquals(count, this.converter.toMGRS(latLons, 0, precision, mgrs, 0, count));
+
+            for (int i = 0; i < count; i++)
+            {
+                MGRSCoord coord = MGRSCoord.fromLatLon(Angle.fromDegrees(latLons[2 * i]),
+                    Angle.fromDegrees(latLons[2 * i + 1]), precision);
+                assertEquals(coord.toString(), mgrs[i].toString());
+            }
+        }
+
+        double[] result = new double[2 * count];
+        int numConverted = this.converter.fromMGRS(mgrs, 0, result, 0, count);
+
+        int numExpected = 0;
+        for (int i = 0; i < count; i++)
+        {
+            MGRSCoord coord;
+            try
+            {
+                coord = MGRSCoord.fromString(mgrs[i].toString(), null);
+            }
+            catch (IllegalArgumentException e)
+            {
+                assertTrue(Double.isNaN(result[2 * i]));
+                continue;
+            }
+
+            numExpected++;
+            assertEquals(coord.getLatitude().degrees, result[2 * i], LATLON_THRESHOLD);
+            assertEquals(coord.getLongitude().degrees, result[2 * i + 1], LATLON_THRESHOLD);
+        }
+        assertEquals(numExpected, numConverted);
+    }
+
+    @Test
+    public void testInvalidPoints()
+    {
+        double[] latLons = {87, 10, 10, 10, Double.NaN, 0};
+        int[] zones = new int[4];
+        double[] eastNorths = new double[8];
+
+        assertEquals(1, this.converter.toUTM(latLons, 0, zones, eastNorths, 1, 3));
+        assertEquals(0, zones[1]);
+        assertTrue(Double.isNaN(eastNorths[2]));
+        assertEquals(32, zones[2]);
+        assertEquals(0, zones[3]);
+
+        double[] result = new double[6];
+        assertEquals(0, this.converter.fromMGRS(new String[] {"", "invalid", null}, 0, result, 0, 3));
+        assertTrue(Double.isNaN(result[2]));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testArrayTooShort()
+    {
+        this.converter.toUTM(new double[4], 0, new int[2], new double[2], 0, 2);
+    }
+}
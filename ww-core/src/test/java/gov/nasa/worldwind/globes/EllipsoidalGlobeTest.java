@@ -5,12 +5,14 @@
  */
 package gov.nasa.worldwind.globes;
 
+import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.LatLon;
 import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.geom.Vec4;
 
 import gov.nasa.worldwind.globes.Earth;
 import gov.nasa.worldwind.globes.Globe;
+import gov.nasa.worldwind.globes.projections.*;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -18,6 +20,9 @@ import org.junit.Test;
 import org.junit.experimental.runners.Enclosed;
 import org.junit.runner.RunWith;
 
+import java.nio.*;
+import java.util.*;
+
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -359,4 +364,142 @@ public class EllipsoidalGlobeTest
             }
         }
     }
+
+    /** These tests make sure that the bulk conversions produce the same results as the per-point conversions. */
+    public static class BulkConversionTests
+    {
+        private static final double REQUIRED_PRECISION = 1e-6;
+
+        private static double[] makePositions()
+        {
+            List<Double> list = new ArrayList<Double>();
+            for (double lat = -90; lat <= 90; lat += 15)
+            {
+                for (double lon = -180; lon <= 180; lon += 30)
+                {
+                    list.add(lat);
+                    list.add(lon);
+                    list.add(lat * 100);
+                }
+            }
+
+            double[] positions = new double[list.size()];
+            for (int i = 0; i < positions.length; i++)
+            {
+                positions[i] = list.get(i);
+            }
+
+            return positions;
+        }
+
+        private static void assertPointsMatch(Globe globe, double[] positions, double[] points, Vec4 referencePoint)
+        {
+            for (int i = 0; i < positions.length; i += 3)
+            {
+                Vec4 p = globe.computePointFromPosition(Angle.fromDegrees(positions[i]),
+                    Angle.fromDegrees(positions[i + 1]), positions[i + 2]);
+                if (referencePoint != null)
+                    p = p.subtract3(referencePoint);
+
+                String msg = "At position " + i / 3;
+                assertEquals(msg, p.x, points[i], REQUIRED_PRECISION);
+                assertEquals(msg, p.y, points[i + 1], REQUIRED_PRECISION);
+                assertEquals(msg, p.z, points[i + 2], REQUIRED_PRECISION);
+            }
+        }
+
+        @Test
+        public void testPointsFromPositions()
+        {
+            Earth earth = new Earth();
+            double[] positions = makePositions();
+            double[] points = new double[positions.length];
+
+            earth.computePointsFromPositions(positions, 0, points, 0, positions.length / 3);
+
+            assertPointsMatch(earth, positions, points, null);
+        }
+
+        @Test
+        public void testPointsFromPositionsInPlace()
+        {
+            Earth earth = new Earth();
+            double[] positions = makePositions();
+            double[] points = positions.clone();
+
+            earth.computePointsFromPositions(points, 0, points, 0, points.length / 3);
+
+            assertPointsMatch(earth, positions, points, null);
+        }
+
+        @Test
+        public void testPointsFromPositionsBuffers()
+        {
+            Earth earth = new Earth();
+            double[] positions = makePositions();
+            Vec4 referencePoint = earth.computePointFromPosition(Angle.fromDegrees(30), Angle.fromDegrees(60), 0);
+
+            DoubleBuffer doublePoints = DoubleBuffer.allocate(positions.length);
+            earth.computePointsFromPositions(DoubleBuffer.wrap(positions), referencePoint, doublePoints);
+            assertEquals(0, doublePoints.remaining());
+            assertPointsMatch(earth, positions, doublePoints.array(), referencePoint);
+
+            FloatBuffer floatPoints = FloatBuffer.allocate(positions.length);
+            earth.computePointsFromPositions(DoubleBuffer.wrap(positions), referencePoint, floatPoints);
+            assertEquals(0, floatPoints.remaining());
+            for (int i = 0; i < positions.length; i++)
+            {
+                assertEquals(doublePoints.get(i), floatPoints.get(i), Math.abs(doublePoints.get(i)) * 1e-6);
+            }
+        }
+
+        @Test
+        public void testPositionsFromPoints()
+        {
+            Earth earth = new Earth();
+            double[] points = new double[makePositions().length];
+            earth.computePointsFromPositions(makePositions(), 0, points, 0, points.length / 3);
+
+            double[] positions = new double[points.length];
+            earth.computePositionsFromPoints(points, 0, positions, 0, points.length / 3);
+
+            for (int i = 0; i < points.length; i += 3)
+            {
+                Position p = earth.computePositionFromPoint(new Vec4(points[i], points[i + 1], points[i + 2]));
+
+                String msg = "At point " + i / 3;
+                assertEquals(msg, p.getLatitude().degrees, positions[i], REQUIRED_PRECISION);
+                assertEquals(msg, p.getLongitude().degrees, positions[i + 1], REQUIRED_PRECISION);
+                assertEquals(msg, p.getElevation(), positions[i + 2], REQUIRED_PRECISION);
+            }
+        }
+
+        @Test
+        public void testFlatGlobePointsFromPositions()
+        {
+            GeographicProjection[] projections = new GeographicProjection[]
+                {new ProjectionEquirectangular(), new ProjectionMercator(), new ProjectionSinusoidal()};
+
+            for (GeographicProjection projection : projections)
+            {
+                EarthFlat globe = new EarthFlat();
+                globe.setProjection(projection);
+
+                double[] positions = makePositions();
+                double[] points = new double[positions.length];
+                globe.computePointsFromPositions(positions, 0, points, 0, positions.length / 3);
+
+                assertPointsMatch(globe, positions, points, null);
+            }
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void testPartialTripleRejected()
+        {
+            Earth earth = new Earth();
+            DoubleBuffer positions = DoubleBuffer.wrap(new double[] {10, 20, 30, 40});
+
+            earth.computePointsFromPositions(positions, null, DoubleBuffer.allocate(6));
+        }
+    }
 }
@@ -0,0 +1,246 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.layers;
+
+import com.jogamp.opengl.util.texture.TextureData;
+import gov.nasa.worldwind.avlist.*;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.render.*;
+import gov.nasa.worldwind.util.*;
+import org.junit.*;
+
+import javax.media.opengl.GL;
+import java.beans.*;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author tag
+ * @version $Id$
+ */
+public class TextureTileLoaderTest
+{
+    protected static final long TEXTURE_SIZE = 100;
+
+    protected TextureTileLoader loader;
+    protected DrawContext dc;
+
+    @Before
+    public void setUp()
+    {
+        this.loader = new TextureTileLoader(1, 1, 64, (long) (2.5 * TEXTURE_SIZE));
+        this.dc = new DrawContextImpl();
+        this.dc.setFrameTimeStamp(1);
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.loader.dispose();
+    }
+
+    @Test
+    public void testUploadsAreReleasedInLoadPriorityOrderWithinBudget() throws Exception
+    {
+        TestLayer layer = new TestLayer("Layer");
+        this.load(layer, 5, 1, 4, 2, 3);
+
+        // Each frame releases textures until its budget is spent, so the frame's last texture may exceed the budget.
+        assertEquals(3, this.loader.releaseUploads(this.dc, layer));
+        assertEquals(0, this.loader.releaseUploads(this.dc, layer));
+        assertEquals(Arrays.asList(1d, 2d, 3d), layer.applied);
+
+        this.dc.setFrameTimeStamp(2);
+        assertEquals(2, this.loader.releaseUploads(this.dc, layer));
+        assertEquals(Arrays.asList(1d, 2d, 3d, 4d, 5d), layer.applied);
+        assertEquals(5 * TEXTURE_SIZE, this.loader.getBytesReleased());
+        assertEquals(0, this.loader.getTilesInPipeline());
+    }
+
+    @Test
+    public void testOneUploadIsReleasedPerFrameRegardlessOfBudget() throws Exception
+    {
+        this.loader = new TextureTileLoader(1, 1, 64, TEXTURE_SIZE / 2);
+
+        TestLayer layer = new TestLayer("Layer");
+        this.load(layer, 2, 1);
+
+        assertEquals(1, this.loader.releaseUploads(this.dc, layer));
+        assertEquals(0, this.loader.releaseUploads(this.dc, layer));
+
+        this.dc.setFrameTimeStamp(2);
+        assertEquals(1, this.loader.releaseUploads(this.dc, layer));
+        assertEquals(Arrays.asList(1d, 2d), layer.applied);
+    }
+
+    @Test
+    public void testLayersReleaseOnlyTheirOwnUploads() throws Exception
+    {
+        this.loader = new TextureTileLoader(1, 1, 64, 100 * TEXTURE_SIZE);
+
+        TestLayer layerA = new TestLayer("LayerA");
+        TestLayer layerB = new TestLayer("LayerB");
+        this.load(layerA, 1, 3);
+        this.load(layerB, 2, 4);
+
+        assertEquals(2, this.loader.releaseUploads(this.dc, layerA));
+        assertEquals(Arrays.asList(1d, 3d), layerA.applied);
+        assertTrue(layerB.applied.isEmpty());
+        assertEquals(2, this.loader.getTilesInPipeline());
+
+        assertEquals(2, this.loader.releaseUploads(this.dc, layerB));
+        assertEquals(Arrays.asList(2d, 4d), layerB.applied);
+    }
+
+    @Test
+    public void testStaleUploadsAreDropped() throws Exception
+    {
+        TestLayer layer = new TestLayer("Layer");
+        this.load(layer, 1, 2);
+
+        this.loader.staleTime = 10;
+        Thread.sleep(50);
+
+        assertEquals(0, this.loader.releaseUploads(this.dc, layer));
+        assertTrue(layer.applied.isEmpty());
+        assertEquals(0, this.loader.getTilesInPipeline());
+    }
+
+    @Test
+    public void testDisposeStopsLoading() throws Exception
+    {
+        TestLayer layer = new TestLayer("Layer");
+        this.load(layer, 1, 2);
+
+        this.loader.dispose();
+        assertTrue(this.loader.readService.isShutdown());
+        assertTrue(this.loader.decodeService.isShutdown());
+        assertEquals(0, this.loader.getTilesInPipeline());
+        assertEquals(0, this.loader.releaseUploads(this.dc, layer));
+
+        // A disposed loader accepts no more tiles.
+        TextureTile tile = new TextureTile(layer.getLevels().getSector(), layer.getLevels().getFirstLevel(), 0, 99);
+        assertFalse(this.loader.addTile(layer, tile, new URL("file:/tile99")));
+        assertEquals(0, this.loader.getTilesInPipeline());
+    }
+
+    @Test
+    public void testDisposeInstance()
+    {
+        TextureTileLoader shared = TextureTileLoader.getInstance();
+        assertSame(shared, TextureTileLoader.getInstance());
+
+        // A new shared loader is created after the previous one is disposed.
+        TextureTileLoader.disposeInstance();
+        assertTrue(shared.readService.isShutdown());
+        assertNotSame(shared, TextureTileLoader.getInstance());
+        TextureTileLoader.disposeInstance();
+    }
+
+    /**
+     * Adds tiles with the specified load priorities to the loader and waits until their textures are decoded.
+     *
+     * @param layer      the layer requesting the tiles.
+     * @param priorities the load priorities of the tiles.
+     *
+     * @throws Exception if the thread is interrupted while waiting.
+     */
+    protected void load(TestLayer layer, double... priorities) throws Exception
+    {
+        final Object lock = new Object();
+        final int[] numDecoded = new int[1];
+        PropertyChangeListener listener = new PropertyChangeListener()
+        {
+            public void propertyChange(PropertyChangeEvent event)
+            {
+                synchronized (lock)
+                {
+                    numDecoded[0]++;
+                    lock.notifyAll();
+                }
+            }
+        };
+        layer.addPropertyChangeListener(AVKey.LAYER, listener);
+
+        Level level = layer.getLevels().getFirstLevel();
+        for (double priority : priorities)
+        {
+            TextureTile tile = new TextureTile(layer.getLevels().getSector(), level, 0, layer.numTiles++);
+            tile.setLoadPriority(priority);
+            assertTrue(this.loader.addTile(layer, tile, new URL("file:/tile" + priority)));
+        }
+
+        long timeout = System.currentTimeMillis() + 10000;
+        synchronized (lock)
+        {
+            while (numDecoded[0] < priorities.length && System.currentTimeMillis() < timeout)
+            {
+                lock.wait(100);
+            }
+        }
+        layer.removePropertyChangeListener(AVKey.LAYER, listener);
+
+        assertEquals("Textures not decoded", priorities.length, numDecoded[0]);
+    }
+
+    /** A layer whose textures are decoded in memory and that records the load priority of each uploaded tile. */
+    protected static class TestLayer extends BasicTiledImageLayer
+    {
+        protected final List<Double> applied = new ArrayList<Double>();
+        protected int numTiles;
+
+        public TestLayer(String name)
+        {
+            super(makeParams(name));
+        }
+
+        protected static AVList makeParams(String name)
+        {
+            AVList params = new AVListImpl();
+            params.setValue(AVKey.SECTOR, Sector.FULL_SPHERE);
+            params.setValue(AVKey.LEVEL_ZERO_TILE_DELTA, LatLon.fromDegrees(36, 36));
+            params.setValue(AVKey.TILE_ORIGIN, LatLon.fromDegrees(-90, -180));
+            params.setValue(AVKey.NUM_LEVELS, 1);
+            params.setValue(AVKey.TILE_WIDTH, 512);
+            params.setValue(AVKey.TILE_HEIGHT, 512);
+            // Layers with distinct cache names have distinct tile keys.
+            params.setValue(AVKey.DATA_CACHE_NAME, "TextureTileLoaderTest/" + name);
+            params.setValue(AVKey.DATASET_NAME, name);
+            params.setValue(AVKey.FORMAT_SUFFIX, ".dds");
+            return params;
+        }
+
+        @Override
+        protected ByteBuffer readTextureBuffer(URL url)
+        {
+            return ByteBuffer.allocate(1);
+        }
+
+        @Override
+        protected TextureData decodeTexture(URL url, ByteBuffer buffer, String textureFormat, boolean useMipMaps)
+        {
+            return new TextureData(null, GL.GL_RGBA, 1, 1, 0, GL.GL_RGBA, GL.GL_UNSIGNED_BYTE, false, false, false,
+                null, null)
+            {
+                @Override
+                public int getEstimatedMemorySize()
+                {
+                    return (int) TEXTURE_SIZE;
+                }
+            };
+        }
+
+        @Override
+        protected void applyTextureData(DrawContext dc, TextureTile tile, TextureData textureData)
+        {
+            // Record the upload rather than create a GL texture.
+            this.applied.add(tile.getLoadPriority());
+        }
+    }
+}
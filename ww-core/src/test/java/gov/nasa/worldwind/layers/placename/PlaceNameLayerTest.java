@@ -0,0 +1,198 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.layers.placename;
+
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.*;
+import gov.nasa.worldwind.layers.LayerList;
+import gov.nasa.worldwind.render.*;
+import gov.nasa.worldwind.terrain.ZeroElevationModel;
+import org.junit.*;
+
+import java.lang.reflect.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author tag
+ * @version $Id$
+ */
+public class PlaceNameLayerTest
+{
+    protected static final int NUM_NAMES = 5000;
+
+    protected Globe globe;
+    protected PlaceNameService service;
+    protected PlaceNameLayer.PlaceNameChunk chunk;
+
+    @Before
+    public void setUp()
+    {
+        this.globe = new EllipsoidalGlobe(Earth.WGS84_EQUATORIAL_RADIUS, Earth.WGS84_POLAR_RADIUS, Earth.WGS84_ES,
+            new ZeroElevationModel());
+        this.service = new PlaceNameService("http://localhost/", "test", "Earth/PlaceNameLayerTest",
+            Sector.FULL_SPHERE, LatLon.fromDegrees(30, 30), new java.awt.Font("Arial", java.awt.Font.PLAIN, 10),
+            false);
+
+        // Names record their location, and a few share a location to exercise the stable sort.
+        Random random = new Random(1);
+        String[] names = new String[NUM_NAMES];
+        float[] latitudes = new float[NUM_NAMES];
+        float[] longitudes = new float[NUM_NAMES];
+        for (int i = 0; i < NUM_NAMES; i++)
+        {
+            latitudes[i] = i % 100 == 0 ? 5f : (float) (random.nextDouble() * 60 - 30);
+            longitudes[i] = i % 100 == 0 ? 5f : (float) (random.nextDouble() * 60 - 30);
+            names[i] = i + ":" + latitudes[i] + ":" + longitudes[i];
+        }
+
+        this.chunk = new PlaceNameLayer.PlaceNameChunk(this.service, names, latitudes, longitudes, NUM_NAMES);
+    }
+
+    @Test
+    public void testEntriesAreSortedByLatitude()
+    {
+        int previousIndex = -1;
+        for (int i = 0; i < this.chunk.numEntries; i++)
+        {
+            String[] fields = this.chunk.getText(i).toString().split(":");
+            assertEquals(Float.parseFloat(fields[1]), this.chunk.latitudes[i], 0f);
+            assertEquals(Float.parseFloat(fields[2]), this.chunk.longitudes[i], 0f);
+
+            if (i > 0)
+            {
+                assertTrue(this.chunk.latitudes[i - 1] <= this.chunk.latitudes[i]);
+
+                // Entries at the same location keep their original order.
+                int index = Integer.parseInt(fields[0]);
+                if (this.chunk.latitudes[i - 1] == this.chunk.latitudes[i]
+                    && this.chunk.longitudes[i - 1] == this.chunk.longitudes[i])
+                    assertTrue(previousIndex < index);
+            }
+
+            previousIndex = Integer.parseInt(fields[0]);
+        }
+    }
+
+    @Test
+    public void testFindFirstEntry()
+    {
+        double[] latitudes = {-90, -30, -12.5, 0, 5, 5.0001, 17, 30, 90};
+        for (double latitude : latitudes)
+        {
+            int expected = 0;
+            while (expected < this.chunk.numEntries && this.chunk.latitudes[expected] < latitude)
+            {
+                expected++;
+            }
+
+            assertEquals("Latitude " + latitude, expected, this.chunk.findFirstEntry(latitude));
+        }
+    }
+
+    @Test
+    public void testNamesAreCulled()
+    {
+        this.service.setMinDisplayDistance(500e3);
+        this.service.setMaxDisplayDistance(3000e3);
+
+        Sector visibleSector = Sector.fromDegrees(-20, 20, -15, 25);
+        DrawContext dc = this.makeDrawContext(Position.fromDegrees(0, 5, 1000e3), Position.fromDegrees(10, 5, 0),
+            visibleSector);
+
+        Set<String> expected = new HashSet<String>();
+        Frustum frustum = dc.getView().getFrustumInModelCoordinates();
+        Vec4 eye = dc.getView().getEyePoint();
+        for (int i = 0; i < this.chunk.numEntries; i++)
+        {
+            Position position = this.chunk.getPosition(i);
+            Vec4 point = this.globe.computePointFromPosition(position);
+            double distance = eye.distanceTo3(point);
+            if (visibleSector.contains(position) && frustum.contains(point)
+                && distance >= this.service.getMinDisplayDistance()
+                && distance <= this.service.getMaxDisplayDistance()
+                && distance <= dc.getView().getHorizonDistance())
+                expected.add(this.chunk.getText(i).toString());
+        }
+
+        Set<String> actual = new HashSet<String>();
+        for (GeographicText text : this.chunk.makeIterable(dc))
+        {
+            actual.add(text.getText().toString());
+        }
+
+        assertFalse(expected.isEmpty());
+        assertTrue(expected.size() < this.chunk.numEntries / 2);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testTextIsReused()
+    {
+        DrawContext dc = this.makeDrawContext(Position.fromDegrees(0, 5, 5000e3), Position.fromDegrees(0, 5, 0),
+            Sector.fromDegrees(-10, 10, -5, 15));
+
+        List<GeographicText> first = new ArrayList<GeographicText>();
+        for (GeographicText text : this.chunk.makeIterable(dc))
+        {
+            first.add(text);
+        }
+
+        List<GeographicText> second = new ArrayList<GeographicText>();
+        for (GeographicText text : this.chunk.makeIterable(dc))
+        {
+            second.add(text);
+        }
+
+        assertFalse(first.isEmpty());
+        assertEquals(first.size(), second.size());
+        for (int i = 0; i < first.size(); i++)
+        {
+            assertSame(first.get(i), second.get(i));
+        }
+    }
+
+    protected DrawContext makeDrawContext(Position eyePosition, Position centerPosition, Sector visibleSector)
+    {
+        Vec4 eyePoint = this.globe.computePointFromPosition(eyePosition);
+        Vec4 centerPoint = this.globe.computePointFromPosition(centerPosition);
+        Vec4 up = this.globe.computeNorthPointingTangentAtLocation(centerPosition.getLatitude(),
+            centerPosition.getLongitude());
+        Matrix modelview = Matrix.fromViewLookAt(eyePoint, centerPoint, up);
+        Frustum frustum = Frustum.fromPerspective(Angle.fromDegrees(60), 100, 100, 1, 1e8).transformBy(
+            modelview.getTranspose());
+        double horizon = this.globe.getEquatorialRadius() * Math.sqrt(
+            2 * eyePosition.getElevation() / this.globe.getEquatorialRadius());
+
+        DrawContext dc = new DrawContextImpl();
+        dc.setModel(new BasicModel(this.globe, new LayerList()));
+        dc.setView(makeView(eyePoint, frustum, horizon));
+        dc.setVisibleSector(visibleSector);
+        return dc;
+    }
+
+    protected static View makeView(final Vec4 eyePoint, final Frustum frustum, final double horizon)
+    {
+        return (View) Proxy.newProxyInstance(View.class.getClassLoader(), new Class[] {View.class},
+            new InvocationHandler()
+            {
+                public Object invoke(Object proxy, Method method, Object[] args)
+                {
+                    String name = method.getName();
+                    if (name.equals("getEyePoint"))
+                        return eyePoint;
+                    else if (name.equals("getFrustumInModelCoordinates"))
+                        return frustum;
+                    else if (name.equals("getHorizonDistance"))
+                        return horizon;
+                    else
+                        return null;
+                }
+            });
+    }
+}
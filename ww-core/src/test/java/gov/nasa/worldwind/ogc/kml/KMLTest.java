@@ -5,6 +5,7 @@
  */
 package gov.nasa.worldwind.ogc.kml;
 
+import gov.nasa.worldwind.avlist.AVList;
 import gov.nasa.worldwind.exception.WWRuntimeException;
 import gov.nasa.worldwind.geom.*;
 import gov.nasa.worldwind.ogc.kml.*;
@@ -14,6 +15,7 @@ import gov.nasa.worldwind.util.xml.*;
 import gov.nasa.worldwind.util.xml.atom.AtomConstants;
 import gov.nasa.worldwind.util.xml.xal.XALConstants;
 
+import javax.xml.namespace.QName;
 import java.io.*;
 import java.net.URL;
 import java.util.*;
@@ -750,6 +752,108 @@ public class KMLTest
         assertEquals("Coordinates not as expected", coords, positions);
     }
 
+    @Test
+    public void testParseFeatures() throws Exception
+    {
+        StringBuilder sb = this.newDocument();
+        sb.append("<Document>");
+        sb.append("<Style id=\"shared\"><LineStyle><width>3</width></LineStyle></Style>");
+        sb.append("<Folder>");
+        for (int i = 0; i < 3; i++)
+        {
+            sb.append("<Placemark id=\"p").append(i).append("\">");
+            sb.append("<name>").append(i).append("</name>");
+            sb.append("<styleUrl>#shared</styleUrl>");
+            sb.append("<Point><coordinates>").append(i).append(",0</coordinates></Point>");
+            sb.append("</Placemark>");
+        }
+        sb.append("</Folder>");
+        sb.append("</Document>");
+        this.endDocument(sb);
+
+        final List<String> names = new ArrayList<String>();
+        final List<KMLAbstractStyleSelector> styles = new ArrayList<KMLAbstractStyleSelector>();
+
+        KMLRoot root = new KMLRoot(this.createInputStream(sb), KMLConstants.KML_MIME_TYPE);
+        root = root.parseFeatures(new KMLFeatureListener()
+        {
+            public boolean featureParsed(KMLRoot root, KMLAbstractFeature feature)
+            {
+                names.add(feature.getName());
+                styles.add(feature.getStyleUrl().resolveStyleUrl());
+
+                // Retain only the last placemark.
+                return feature.getName().equals("2");
+            }
+        });
+        assertNotNull("KML root is null", root);
+
+        assertEquals("Streamed features not as expected", Arrays.asList("0", "1", "2"), names);
+        for (KMLAbstractStyleSelector style : styles)
+        {
+            assertTrue("Shared style not resolved", style instanceof KMLStyle);
+        }
+
+        KMLDocument document = (KMLDocument) root.getFeature();
+        KMLFolder folder = (KMLFolder) document.getFeatures().get(0);
+        assertEquals("Retained features not as expected", 1, folder.getFeatures().size());
+        assertEquals("Retained feature not as expected", "2", folder.getFeatures().get(0).getName());
+
+        assertNull("Discarded feature still indexed", root.getItemByID("p0"));
+        assertNotNull("Retained feature not indexed", root.getItemByID("p2"));
+        assertNotNull("Shared style not indexed", root.getItemByID("shared"));
+    }
+
+    @Test
+    public void testParserFactories()
+    {
+        KMLParserContext ctx = new KMLParserContext(KMLConstants.KML_NAMESPACE);
+
+        XMLEventParser parser = ctx.getParser(new QName(KMLConstants.KML_NAMESPACE, "Placemark"));
+        assertTrue("Placemark parser not as expected", parser instanceof KMLPlacemark);
+        assertEquals("Placemark namespace not as expected", KMLConstants.KML_NAMESPACE,
+            ((KMLPlacemark) parser).getNamespaceURI());
+        assertTrue("Parser instance is shared",
+            parser != ctx.getParser(new QName(KMLConstants.KML_NAMESPACE, "Placemark")));
+
+        // The default namespace is assumed for unqualified names, and old versions share the version 2.2 factories.
+        assertTrue("Unqualified parser not as expected", ctx.getParser(new QName("Point")) instanceof KMLPoint);
+        parser = ctx.getParser(new QName(KMLConstants.KML_2dot0_NAMESPACE, "outerBoundaryIs"));
+        assertTrue("Version 2.0 parser not as expected", parser instanceof KMLBoundary);
+        assertEquals("Version 2.0 namespace not as expected", KMLConstants.KML_2dot0_NAMESPACE,
+            ((KMLBoundary) parser).getNamespaceURI());
+
+        // A parser registered after the factory replaces it.
+        QName name = new QName(KMLConstants.KML_NAMESPACE, "Style");
+        ctx.registerParser(name, new UnrecognizedXMLEventParser(KMLConstants.KML_NAMESPACE));
+        assertTrue("Registered parser not used", ctx.getParser(name) instanceof UnrecognizedXMLEventParser);
+    }
+
+    @Test
+    public void testCompactFieldList()
+    {
+        CompactFieldList fields = new CompactFieldList();
+        for (int i = 0; i < 10; i++)
+        {
+            fields.setValue("key" + i, i);
+        }
+
+        assertEquals("Field count not as expected", 10, fields.getEntries().size());
+        assertEquals("Field value not as expected", 7, fields.getValue("key7"));
+        assertEquals("Replaced value not as expected", 3, fields.setValue("key3", "three"));
+        assertEquals("Field value not as expected", "three", fields.getValue("key3"));
+
+        assertEquals("Removed value not as expected", 0, fields.removeKey("key0"));
+        assertFalse("Removed key still present", fields.hasKey("key0"));
+        assertEquals("Field count not as expected", 9, fields.getValues().size());
+        assertEquals("First field not as expected", "key1", fields.getEntries().iterator().next().getKey());
+
+        AVList copy = fields.copy();
+        fields.clearList();
+        assertNull("Cleared value still present", fields.getValue("key9"));
+        assertEquals("Copied value not as expected", 9, copy.getValue("key9"));
+    }
+
     @Test
     public void testNestedUnrecognizedElement()
     {
@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import org.junit.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author tag
+ * @version $Id$
+ */
+public class BasicRetrievalServiceTest
+{
+    protected final List<String> runOrder = Collections.synchronizedList(new ArrayList<String>());
+    protected final CountDownLatch release = new CountDownLatch(1);
+    protected BasicRetrievalService service;
+
+    @Before
+    public void setUp() throws InterruptedException
+    {
+        // Occupy the only retrieval thread so that the requests the tests submit are queued together.
+        this.service = new BasicRetrievalService();
+        this.service.setRetrieverPoolSize(1);
+
+        PriorityRetrievalServiceTest.TestRetriever blocker =
+            new PriorityRetrievalServiceTest.TestRetriever("blocker", this.runOrder, this.release);
+        this.service.runRetriever(blocker, 0);
+        assertTrue(blocker.started.await(10, TimeUnit.SECONDS));
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.release.countDown();
+        this.service.shutdown(true);
+    }
+
+    @Test
+    public void testRequestReplacesQueuedPrefetch() throws Exception
+    {
+        Retriever a = new PriorityRetrievalServiceTest.TestRetriever("a", this.runOrder, null);
+        Retriever b = new PriorityRetrievalServiceTest.TestRetriever("b", this.runOrder, null);
+
+        RetrievalFuture prefetch = this.service.runRetriever(a, RetrievalService.PREFETCH_PRIORITY);
+        assertNotNull(prefetch);
+        RetrievalFuture fb = this.service.runRetriever(b, 2);
+
+        // A second prefetch request is a duplicate, but a normal request replaces the queued prefetch request.
+        assertNull(this.service.runRetriever(a, RetrievalService.PREFETCH_PRIORITY));
+        RetrievalFuture fa = this.service.runRetriever(a, 1);
+        assertNotNull(fa);
+        assertTrue(((Future<?>) prefetch).isCancelled());
+        assertNull(this.service.runRetriever(a, 1));
+
+        this.release.countDown();
+        ((Future<?>) fa).get(10, TimeUnit.SECONDS);
+        ((Future<?>) fb).get(10, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList("blocker", "a", "b"), this.runOrder);
+    }
+}
@@ -0,0 +1,291 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import com.sun.net.httpserver.*;
+import org.junit.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author tag
+ * @version $Id$
+ */
+public class HTTPRetrieverTest
+{
+    protected static final byte[] CONTENT = makeContent(100000);
+
+    protected HttpServer server;
+    protected final AtomicInteger numRequests = new AtomicInteger();
+    protected final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+    protected final CountDownLatch requestReceived = new CountDownLatch(1);
+    protected volatile CountDownLatch releaseResponse;
+
+    protected static byte[] makeContent(int length)
+    {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++)
+        {
+            content[i] = (byte) (i * 31);
+        }
+
+        return content;
+    }
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.setExecutor(Executors.newCachedThreadPool());
+        this.server.createContext("/", new HttpHandler()
+        {
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                numRequests.incrementAndGet();
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+                requestReceived.countDown();
+
+                try
+                {
+                    if (releaseResponse != null)
+                        releaseResponse.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+
+                if (exchange.getRequestURI().getPath().startsWith("/truncated"))
+                {
+                    // Close the connection before the promised content is sent.
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, CONTENT.length);
+                    exchange.getResponseBody().write(CONTENT, 0, 100);
+                    exchange.getResponseBody().flush();
+                    exchange.close();
+                    return;
+                }
+
+                boolean found = exchange.getRequestURI().getPath().startsWith("/tile");
+                byte[] body = found ? CONTENT : "Not found".getBytes("UTF-8");
+                exchange.getResponseHeaders().set("Content-Type", found ? "image/dds" : "text/plain");
+                exchange.sendResponseHeaders(found ? HttpURLConnection.HTTP_OK : HttpURLConnection.HTTP_NOT_FOUND,
+                    body.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+            }
+        });
+        this.server.start();
+    }
+
+    @After
+    public void tearDown()
+    {
+        if (this.releaseResponse != null)
+            this.releaseResponse.countDown();
+
+        this.server.stop(0);
+    }
+
+    protected URL makeURL(String path) throws MalformedURLException
+    {
+        return new URL("http", "127.0.0.1", this.server.getAddress().getPort(), path);
+    }
+
+    @Test
+    public void testRetrieve() throws Exception
+    {
+        HTTPRetriever retriever = new HTTPRetriever(this.makeURL("/tile/0_0.dds"), null);
+        retriever.call();
+
+        assertEquals(Retriever.RETRIEVER_STATE_SUCCESSFUL, retriever.getState());
+        assertEquals(HttpURLConnection.HTTP_OK, retriever.getResponseCode());
+        assertEquals("image/dds", retriever.getContentType());
+        assertEquals(ByteBuffer.wrap(CONTENT), retriever.getBuffer());
+        assertFalse(retriever.isResponseShared());
+    }
+
+    @Test
+    public void testConnectionReuse() throws Exception
+    {
+        for (int i = 0; i < 6; i++)
+        {
+            // Error responses must not prevent the connection from being reused.
+            String path = i % 2 == 0 ? "/tile/" + i + ".dds" : "/missing/" + i + ".dds";
+            HTTPRetriever retriever = new HTTPRetriever(this.makeURL(path), null);
+            retriever.call();
+
+            assertEquals(i % 2 == 0 ? HttpURLConnection.HTTP_OK : HttpURLConnection.HTTP_NOT_FOUND,
+                retriever.getResponseCode());
+        }
+
+        assertEquals(6, this.numRequests.get());
+        assertEquals(1, this.clientPorts.size());
+    }
+
+    @Test
+    public void testCoalescedRequests() throws Exception
+    {
+        this.releaseResponse = new CountDownLatch(1);
+
+        URL url = this.makeURL("/tile/1_1.dds");
+        TestPostProcessor firstPostProcessor = new TestPostProcessor();
+        HTTPRetriever first = new HTTPRetriever(url, firstPostProcessor);
+        TestPostProcessor secondPostProcessor = new TestPostProcessor();
+        HTTPRetriever second = new HTTPRetriever(url, secondPostProcessor);
+        second.setDeferrable(true);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            Future<Retriever> firstResult = executor.submit(first);
+            assertTrue(this.requestReceived.await(10, TimeUnit.SECONDS));
+
+            // The second retriever is deferred: it returns at once rather than wait for the first one's response.
+            second.call();
+            assertTrue(second.isDeferred());
+            assertTrue(second.isResponseShared());
+            assertNull(second.getBuffer());
+            assertEquals(0, secondPostProcessor.numRuns.get());
+
+            // The first retriever completes the second one on its own thread, after its own post-processing.
+            this.releaseResponse.countDown();
+            firstResult.get(10, TimeUnit.SECONDS);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, this.numRequests.get());
+        assertFalse(first.isResponseShared());
+        assertEquals(1, firstPostProcessor.numRuns.get());
+        assertEquals(1, secondPostProcessor.numRuns.get());
+        assertTrue(firstPostProcessor.runTime.get() <= secondPostProcessor.runTime.get());
+        assertEquals(Retriever.RETRIEVER_STATE_SUCCESSFUL, second.getState());
+        assertEquals(HttpURLConnection.HTTP_OK, second.getResponseCode());
+        assertEquals("image/dds", second.getContentType());
+        assertEquals(ByteBuffer.wrap(CONTENT), first.getBuffer());
+        assertEquals(ByteBuffer.wrap(CONTENT), second.getBuffer());
+        assertNotSame(first.getBuffer(), second.getBuffer());
+
+        // Once the response is complete, a new request is made.
+        HTTPRetriever third = new HTTPRetriever(url, null);
+        third.call();
+        assertEquals(2, this.numRequests.get());
+        assertFalse(third.isResponseShared());
+    }
+
+    @Test
+    public void testDirectCallWaitsForCoalescedRequest() throws Exception
+    {
+        this.releaseResponse = new CountDownLatch(1);
+
+        URL url = this.makeURL("/tile/2_2.dds");
+        HTTPRetriever first = new HTTPRetriever(url, null);
+        first.setDeferrable(true);
+        TestPostProcessor secondPostProcessor = new TestPostProcessor();
+        HTTPRetriever second = new HTTPRetriever(url, secondPostProcessor);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            Future<Retriever> firstResult = executor.submit(first);
+            assertTrue(this.requestReceived.await(10, TimeUnit.SECONDS));
+
+            // A retriever called directly is not deferred: it waits for the in-flight request's response.
+            Future<Retriever> secondResult = executor.submit(second);
+            long timeout = System.currentTimeMillis() + 10000;
+            while (!second.isResponseShared() && System.currentTimeMillis() < timeout)
+            {
+                Thread.sleep(10);
+            }
+            assertTrue(second.isResponseShared());
+            assertFalse(second.isDeferred());
+            assertFalse(secondResult.isDone());
+
+            this.releaseResponse.countDown();
+            firstResult.get(10, TimeUnit.SECONDS);
+            secondResult.get(10, TimeUnit.SECONDS);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        // The second retriever has been read and post-processed by the time its call() returns.
+        assertEquals(1, this.numRequests.get());
+        assertEquals(1, secondPostProcessor.numRuns.get());
+        assertEquals(Retriever.RETRIEVER_STATE_SUCCESSFUL, second.getState());
+        assertEquals(HttpURLConnection.HTTP_OK, second.getResponseCode());
+        assertEquals("image/dds", second.getContentType());
+        assertEquals(ByteBuffer.wrap(CONTENT), second.getBuffer());
+        assertNotSame(first.getBuffer(), second.getBuffer());
+    }
+
+    @Test
+    public void testCoalescedRequestFailure() throws Exception
+    {
+        this.releaseResponse = new CountDownLatch(1);
+
+        URL url = this.makeURL("/truncated/1_1.dds");
+        HTTPRetriever first = new HTTPRetriever(url, null);
+        TestPostProcessor secondPostProcessor = new TestPostProcessor();
+        HTTPRetriever second = new HTTPRetriever(url, secondPostProcessor);
+        second.setDeferrable(true);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            Future<Retriever> firstResult = executor.submit(first);
+            assertTrue(this.requestReceived.await(10, TimeUnit.SECONDS));
+            second.call();
+            assertTrue(second.isDeferred());
+
+            this.releaseResponse.countDown();
+            try
+            {
+                firstResult.get(10, TimeUnit.SECONDS);
+                fail("Truncated response read");
+            }
+            catch (ExecutionException e)
+            {
+                // The first retriever fails with the exception reading the response.
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        // The second retriever reports the failure without receiving the first one's exception.
+        assertEquals(1, this.numRequests.get());
+        assertEquals(Retriever.RETRIEVER_STATE_ERROR, second.getState());
+        assertNull(second.getBuffer());
+        assertEquals(1, secondPostProcessor.numRuns.get());
+    }
+
+    /** A post-processor that records when it runs. */
+    protected static class TestPostProcessor implements RetrievalPostProcessor
+    {
+        protected final AtomicInteger numRuns = new AtomicInteger();
+        protected final AtomicLong runTime = new AtomicLong();
+
+        public ByteBuffer run(Retriever retriever)
+        {
+            this.runTime.set(System.nanoTime());
+            this.numRuns.incrementAndGet();
+            return retriever.getBuffer();
+        }
+    }
+}
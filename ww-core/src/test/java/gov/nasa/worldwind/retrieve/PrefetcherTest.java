@@ -0,0 +1,234 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.*;
+import gov.nasa.worldwind.layers.*;
+import gov.nasa.worldwind.terrain.ZeroElevationModel;
+import gov.nasa.worldwind.view.orbit.BasicOrbitView;
+import org.junit.*;
+
+import java.lang.reflect.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author tag
+ * @version $Id$
+ */
+public class PrefetcherTest
+{
+    protected Globe globe;
+    protected LayerList layers;
+    protected Prefetcher prefetcher;
+
+    @Before
+    public void setUp()
+    {
+        this.globe = new EllipsoidalGlobe(Earth.WGS84_EQUATORIAL_RADIUS, Earth.WGS84_POLAR_RADIUS, Earth.WGS84_ES,
+            new ZeroElevationModel());
+        this.layers = new LayerList();
+        this.prefetcher = new Prefetcher(makeWorldWindow(new BasicModel(this.globe, this.layers), null));
+        this.prefetcher.setHorizon(3000);
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.prefetcher.dispose();
+    }
+
+    @Test
+    public void testStationaryViewPredictsNoTargets()
+    {
+        Prefetcher.ViewSample previous = makeSample(0, 10, 20, 1000);
+        Prefetcher.ViewSample current = makeSample(1000, 10, 20, 1000);
+
+        assertTrue(this.prefetcher.predictTargets(new BasicOrbitView(), previous, current).isEmpty());
+        assertTrue(this.prefetcher.predictTargets(new BasicOrbitView(), null, current).isEmpty());
+    }
+
+    @Test
+    public void testTargetsExtrapolateTheViewMotion()
+    {
+        Prefetcher.ViewSample previous = makeSample(0, 10, 20, 1000);
+        Prefetcher.ViewSample current = makeSample(1000, 11, 22, 2000);
+
+        List<Prefetcher.PrefetchTarget> targets = this.prefetcher.predictTargets(new BasicOrbitView(), previous,
+            current);
+
+        // One target per second of the three second horizon, nearest first.
+        assertEquals(3, targets.size());
+        for (int i = 0; i < 3; i++)
+        {
+            assertEquals(12 + i, targets.get(i).location.getLatitude().degrees, 1e-9);
+            assertEquals(24 + 2 * i, targets.get(i).location.getLongitude().degrees, 1e-9);
+            assertEquals(3000 + 1000 * i, targets.get(i).distance, 1e-9);
+        }
+    }
+
+    @Test
+    public void testTargetsCrossTheAntimeridian()
+    {
+        Prefetcher.ViewSample previous = makeSample(0, 0, 179, 1000);
+        Prefetcher.ViewSample current = makeSample(1000, 0, -179, 1000);
+
+        List<Prefetcher.PrefetchTarget> targets = this.prefetcher.predictTargets(new BasicOrbitView(), previous,
+            current);
+
+        assertEquals(-177, targets.get(0).location.getLongitude().degrees, 1e-9);
+    }
+
+    @Test
+    public void testSampleIsTakenAtTheLookAtLocation()
+    {
+        // The eye is over the equator and looks north at a location 10 degrees away.
+        Vec4 eyePoint = this.globe.computePointFromPosition(Position.fromDegrees(0, 20, 500000));
+        Vec4 centerPoint = this.globe.computePointFromPosition(Position.fromDegrees(10, 20, 0));
+        View view = makeView(this.globe, eyePoint, centerPoint);
+
+        Prefetcher.ViewSample sample = this.prefetcher.createSample(view, 0);
+
+        assertEquals(10, sample.location.getLatitude().degrees, 1e-6);
+        assertEquals(20, sample.location.getLongitude().degrees, 1e-6);
+        assertEquals(eyePoint.distanceTo3(centerPoint), sample.distance, 1e-6);
+    }
+
+    @Test
+    public void testPrefetchStopsWhenTheBudgetIsSpent()
+    {
+        TestLayer a = new TestLayer(100);
+        TestLayer b = new TestLayer(100);
+        TestLayer c = new TestLayer(100);
+        this.layers.add(a);
+        this.layers.add(b);
+        this.layers.add(c);
+
+        Prefetcher.ViewSample sample = makeSample(0, 10, 20, 1000);
+        List<Prefetcher.PrefetchTarget> targets = Arrays.asList(
+            new Prefetcher.PrefetchTarget(LatLon.fromDegrees(10, 20), 1000),
+            new Prefetcher.PrefetchTarget(LatLon.fromDegrees(11, 20), 1000));
+
+        // The second layer's request exceeds the budget, and no further requests are made.
+        PrefetchBudget budget = new PrefetchBudget(150, 0);
+        this.prefetcher.prefetch(this.globe, targets, sample, budget);
+
+        assertTrue(budget.isExhausted());
+        assertEquals(1, a.numRequests);
+        assertEquals(1, b.numRequests);
+        assertEquals(0, c.numRequests);
+    }
+
+    @Test
+    public void testDisabledAndInactiveLayersAreNotPrefetched()
+    {
+        TestLayer enabled = new TestLayer(1);
+        TestLayer disabled = new TestLayer(1);
+        disabled.setEnabled(false);
+        TestLayer inactive = new TestLayer(1);
+        inactive.setMaxActiveAltitude(500);
+        this.layers.add(enabled);
+        this.layers.add(disabled);
+        this.layers.add(inactive);
+
+        this.prefetcher.prefetch(this.globe,
+            Arrays.asList(new Prefetcher.PrefetchTarget(LatLon.fromDegrees(10, 20), 1000)),
+            makeSample(0, 10, 20, 1000), new PrefetchBudget(1000, 1000));
+
+        assertEquals(1, enabled.numRequests);
+        assertEquals(0, disabled.numRequests);
+        assertEquals(0, inactive.numRequests);
+    }
+
+    @Test
+    public void testBudget()
+    {
+        PrefetchBudget budget = new PrefetchBudget(100, 50);
+        assertFalse(budget.isExhausted());
+
+        // A request is allowed while any of its budget remains, so the last may exceed it.
+        assertTrue(budget.consumeRetrievalBytes(60));
+        assertTrue(budget.consumeRetrievalBytes(60));
+        assertFalse(budget.consumeRetrievalBytes(1));
+        assertEquals(-20, budget.getRetrievalBytes());
+        assertFalse(budget.isExhausted());
+
+        assertTrue(budget.consumeMemoryBytes(50));
+        assertFalse(budget.consumeMemoryBytes(1));
+        assertTrue(budget.isExhausted());
+    }
+
+    protected static Prefetcher.ViewSample makeSample(long time, double lat, double lon, double distance)
+    {
+        return new Prefetcher.ViewSample(time, LatLon.fromDegrees(lat, lon), distance, Angle.fromDegrees(45), 1e-3);
+    }
+
+    protected static WorldWindow makeWorldWindow(final Model model, final View view)
+    {
+        return (WorldWindow) Proxy.newProxyInstance(WorldWindow.class.getClassLoader(),
+            new Class[] {WorldWindow.class}, new InvocationHandler()
+        {
+            public Object invoke(Object proxy, Method method, Object[] args)
+            {
+                if (method.getName().equals("getModel"))
+                    return model;
+                else if (method.getName().equals("getView"))
+                    return view;
+                else if (method.getReturnType() == boolean.class)
+                    return false;
+                else
+                    return null;
+            }
+        });
+    }
+
+    protected static View makeView(final Globe globe, final Vec4 eyePoint, final Vec4 centerPoint)
+    {
+        return (View) Proxy.newProxyInstance(View.class.getClassLoader(), new Class[] {View.class},
+            new InvocationHandler()
+            {
+                public Object invoke(Object proxy, Method method, Object[] args)
+                {
+                    String name = method.getName();
+                    if (name.equals("getGlobe"))
+                        return globe;
+                    else if (name.equals("getEyePoint"))
+                        return eyePoint;
+                    else if (name.equals("getEyePosition"))
+                        return globe.computePositionFromPoint(eyePoint);
+                    else if (name.equals("getCenterPoint"))
+                        return centerPoint;
+                    else if (name.equals("getFieldOfView"))
+                        return Angle.fromDegrees(45);
+                    else if (name.equals("computePixelSizeAtDistance"))
+                        return 1e-3;
+                    else
+                        return null;
+                }
+            });
+    }
+
+    /** A layer that charges each prefetch request to the retrieval budget. */
+    protected static class TestLayer extends RenderableLayer implements Prefetchable
+    {
+        protected final long requestSize;
+        protected int numRequests;
+
+        public TestLayer(long requestSize)
+        {
+            this.requestSize = requestSize;
+        }
+
+        public void prefetch(Sector sector, double resolution, PrefetchBudget budget)
+        {
+            if (budget.consumeRetrievalBytes(this.requestSize))
+                this.numRequests++;
+        }
+    }
+}
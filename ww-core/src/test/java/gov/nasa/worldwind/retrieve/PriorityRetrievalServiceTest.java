@@ -0,0 +1,349 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.avlist.AVKey;
+import org.junit.*;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author tag
+ * @version $Id$
+ */
+public class PriorityRetrievalServiceTest
+{
+    /** A retriever that records the order in which retrievers run, and optionally waits to be released. */
+    protected static class TestRetriever extends WWObjectImpl implements Retriever
+    {
+        protected final String name;
+        protected final List<String> runOrder;
+        protected final CountDownLatch started = new CountDownLatch(1);
+        protected final CountDownLatch release;
+        protected long submitTime;
+        protected long beginTime;
+        protected long endTime;
+        protected int staleRequestLimit = -1;
+
+        public TestRetriever(String name, List<String> runOrder, CountDownLatch release)
+        {
+            this.name = name;
+            this.runOrder = runOrder;
+            this.release = release;
+        }
+
+        public Retriever call() throws Exception
+        {
+            this.runOrder.add(this.name);
+            this.started.countDown();
+            if (this.release != null)
+                this.release.await(10, TimeUnit.SECONDS);
+            return this;
+        }
+
+        public ByteBuffer getBuffer()
+        {
+            return null;
+        }
+
+        public int getContentLength()
+        {
+            return 0;
+        }
+
+        public int getContentLengthRead()
+        {
+            return 0;
+        }
+
+        public String getName()
+        {
+            return this.name;
+        }
+
+        public String getState()
+        {
+            return RETRIEVER_STATE_SUCCESSFUL;
+        }
+
+        public String getContentType()
+        {
+            return null;
+        }
+
+        public long getExpirationTime()
+        {
+            return 0;
+        }
+
+        public long getSubmitTime()
+        {
+            return this.submitTime;
+        }
+
+        public void setSubmitTime(long submitTime)
+        {
+            this.submitTime = submitTime;
+        }
+
+        public long getBeginTime()
+        {
+            return this.beginTime;
+        }
+
+        public void setBeginTime(long beginTime)
+        {
+            this.beginTime = beginTime;
+        }
+
+        public long getEndTime()
+        {
+            return this.endTime;
+        }
+
+        public void setEndTime(long endTime)
+        {
+            this.endTime = endTime;
+        }
+
+        public int getConnectTimeout()
+        {
+            return 0;
+        }
+
+        public int getReadTimeout()
+        {
+            return 0;
+        }
+
+        public void setReadTimeout(int readTimeout)
+        {
+        }
+
+        public void setConnectTimeout(int connectTimeout)
+        {
+        }
+
+        public int getStaleRequestLimit()
+        {
+            return this.staleRequestLimit;
+        }
+
+        public void setStaleRequestLimit(int staleRequestLimit)
+        {
+            this.staleRequestLimit = staleRequestLimit;
+        }
+    }
+
+    protected final List<String> runOrder = Collections.synchronizedList(new ArrayList<String>());
+    protected final CountDownLatch release = new CountDownLatch(1);
+    protected PriorityRetrievalService service;
+
+    @After
+    public void tearDown()
+    {
+        this.release.countDown();
+        if (this.service != null)
+            this.service.shutdown(true);
+    }
+
+    /**
+     * Creates a service with a single worker, and occupies the worker with a retriever that runs until the test
+     * releases it, so that the requests the test submits are all pending together.
+     */
+    protected void createBlockedService() throws InterruptedException
+    {
+        this.service = new PriorityRetrievalService();
+        this.service.setRetrieverPoolSize(1);
+
+        TestRetriever blocker = new TestRetriever("blocker", this.runOrder, this.release);
+        this.service.runRetriever(blocker, 0);
+        assertTrue(blocker.started.await(10, TimeUnit.SECONDS));
+    }
+
+    protected RetrievalFuture submit(String name, double priority)
+    {
+        return this.service.runRetriever(new TestRetriever(name, this.runOrder, null), priority);
+    }
+
+    protected void releaseAndWait(RetrievalFuture... futures) throws Exception
+    {
+        this.release.countDown();
+        for (RetrievalFuture future : futures)
+        {
+            ((Future<?>) future).get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testPriorityOrder() throws Exception
+    {
+        this.createBlockedService();
+
+        RetrievalFuture a = this.submit("a", 3);
+        RetrievalFuture b = this.submit("b", 1);
+        RetrievalFuture c = this.submit("c", 2);
+        this.releaseAndWait(a, b, c);
+
+        assertEquals(Arrays.asList("blocker", "b", "c", "a"), this.runOrder);
+    }
+
+    @Test
+    public void testDuplicateKeepsMoreUrgentPriority() throws Exception
+    {
+        this.createBlockedService();
+
+        RetrievalFuture a = this.submit("a", 1);
+        RetrievalFuture b = this.submit("b", 2);
+        RetrievalFuture c = this.submit("c", 3);
+
+        // A less urgent re-submission doesn't demote a pending request, and a more urgent one promotes it.
+        assertSame(a, this.submit("a", 5));
+        assertSame(c, this.submit("c", 0.5));
+        assertEquals(4, this.service.getNumRetrieversPending());
+
+        this.releaseAndWait(a, b, c);
+
+        assertEquals(Arrays.asList("blocker", "c", "a", "b"), this.runOrder);
+    }
+
+    @Test
+    public void testPrefetchRequestsFollowOthers() throws Exception
+    {
+        this.createBlockedService();
+
+        RetrievalFuture a = this.submit("a", 3);
+        Thread.sleep(2 * PriorityRetrievalService.DEFAULT_TIME_PRIORITY_GRANULARITY);
+        RetrievalFuture b = this.submit("b", 3);
+        RetrievalFuture p = this.submit("p", RetrievalService.PREFETCH_PRIORITY);
+
+        // A prefetch request for a pending retriever neither refreshes nor demotes it.
+        assertSame(a, this.submit("a", RetrievalService.PREFETCH_PRIORITY));
+
+        this.releaseAndWait(a, b, p);
+
+        assertEquals(Arrays.asList("blocker", "b", "a", "p"), this.runOrder);
+    }
+
+    @Test
+    public void testQueueCapacity() throws Exception
+    {
+        String queueSize = Configuration.getStringValue(AVKey.RETRIEVAL_QUEUE_SIZE);
+        Configuration.setValue(AVKey.RETRIEVAL_QUEUE_SIZE, 2);
+        try
+        {
+            this.createBlockedService();
+        }
+        finally
+        {
+            if (queueSize != null)
+                Configuration.setValue(AVKey.RETRIEVAL_QUEUE_SIZE, queueSize);
+            else
+                Configuration.removeKey(AVKey.RETRIEVAL_QUEUE_SIZE);
+        }
+
+        RetrievalFuture a = this.submit("a", 2);
+        RetrievalFuture b = this.submit("b", 3);
+        assertFalse(this.service.isAvailable());
+
+        // A request less urgent than every pending request is rejected.
+        assertNull(this.submit("c", 4));
+
+        // A more urgent request replaces the least urgent pending request.
+        RetrievalFuture d = this.submit("d", 1);
+        assertNotNull(d);
+        assertTrue(((Future<?>) b).isCancelled());
+        assertEquals(3, this.service.getNumRetrieversPending());
+
+        this.releaseAndWait(a, d);
+
+        assertEquals(Arrays.asList("blocker", "d", "a"), this.runOrder);
+    }
+
+    @Test
+    public void testCancelledRequestIsQueuedAgain() throws Exception
+    {
+        this.createBlockedService();
+
+        RetrievalFuture a = this.submit("a", 1);
+        assertTrue(((Future<?>) a).cancel(false));
+        assertFalse(this.service.contains(new TestRetriever("a", this.runOrder, null)));
+
+        // A request cancelled through its future is discarded rather than returned to the next request.
+        RetrievalFuture again = this.submit("a", 1);
+        assertNotSame(a, again);
+        assertFalse(((Future<?>) again).isCancelled());
+
+        this.releaseAndWait(again);
+
+        assertEquals(Arrays.asList("blocker", "a"), this.runOrder);
+    }
+
+    @Test
+    public void testCancelByName() throws Exception
+    {
+        this.createBlockedService();
+
+        RetrievalFuture a = this.submit("a", 1);
+        RetrievalFuture b = this.submit("b", 2);
+
+        assertTrue(this.service.cancel("a"));
+        assertFalse(this.service.cancel("missing"));
+        assertTrue(((Future<?>) a).isCancelled());
+        assertEquals(2, this.service.getNumRetrieversPending());
+
+        this.releaseAndWait(b);
+
+        assertEquals(Arrays.asList("blocker", "b"), this.runOrder);
+    }
+
+    @Test
+    public void testSetPriorityDemotesRequest() throws Exception
+    {
+        this.createBlockedService();
+
+        RetrievalFuture a = this.submit("a", 1);
+        RetrievalFuture b = this.submit("b", 2);
+
+        // Unlike a re-submission, setPriority may make a pending request less urgent.
+        assertTrue(this.service.setPriority("a", RetrievalService.PREFETCH_PRIORITY));
+        assertFalse(this.service.setPriority("missing", 1));
+
+        this.releaseAndWait(a, b);
+
+        assertEquals(Arrays.asList("blocker", "b", "a"), this.runOrder);
+    }
+
+    @Test
+    public void testMaxConnectionsPerHost() throws Exception
+    {
+        this.service = new PriorityRetrievalService();
+        this.service.setRetrieverPoolSize(3);
+        this.service.setMaxConnectionsPerHost(1);
+
+        TestRetriever a1 = new TestRetriever("http://a.example.com/1", this.runOrder, this.release);
+        TestRetriever a2 = new TestRetriever("http://a.example.com/2", this.runOrder, this.release);
+        TestRetriever b1 = new TestRetriever("http://b.example.com/1", this.runOrder, this.release);
+
+        RetrievalFuture fa1 = this.service.runRetriever(a1, 1);
+        assertTrue(a1.started.await(10, TimeUnit.SECONDS));
+        RetrievalFuture fa2 = this.service.runRetriever(a2, 1);
+        RetrievalFuture fb1 = this.service.runRetriever(b1, 2);
+
+        // A request to another host runs on an idle worker, but a second request to a busy host waits.
+        assertTrue(b1.started.await(10, TimeUnit.SECONDS));
+        assertFalse(a2.started.await(200, TimeUnit.MILLISECONDS));
+
+        this.releaseAndWait(fa1, fa2, fb1);
+
+        assertEquals(Arrays.asList(a1.getName(), b1.getName(), a2.getName()), this.runOrder);
+    }
+}
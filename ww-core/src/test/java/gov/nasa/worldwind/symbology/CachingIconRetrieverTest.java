@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.symbology;
+
+import gov.nasa.worldwind.avlist.*;
+import org.junit.*;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.io.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author tag
+ * @version $Id$
+ */
+public class CachingIconRetrieverTest
+{
+    /** Creates a small icon whose color encodes the symbol identifier, and counts the icons it creates. */
+    private static class CountingRetriever implements IconRetriever
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public BufferedImage createIcon(String symbolId, AVList params)
+        {
+            this.count.incrementAndGet();
+
+            if (symbolId.startsWith("X"))
+                return null;
+
+            try
+            {
+                Thread.sleep(5); // Give concurrent requests for the same icon a chance to overlap.
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB);
+            image.setRGB(0, 0, 0xFF000000 | symbolId.toUpperCase().hashCode());
+            return image;
+        }
+    }
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.dir = File.createTempFile("CachingIconRetrieverTest", "");
+        assertTrue(this.dir.delete());
+    }
+
+    @After
+    public void tearDown()
+    {
+        File[] files = this.dir.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+
+        //noinspection ResultOfMethodCallIgnored
+        this.dir.delete();
+    }
+
+    @Test
+    public void testCachesByNormalizedIdAndParams()
+    {
+        CountingRetriever counter = new CountingRetriever();
+        CachingIconRetriever retriever = new CachingIconRetriever(counter, 1000000);
+
+        AVList red = new AVListImpl();
+        red.setValue(AVKey.COLOR, Color.RED);
+
+        BufferedImage a = retriever.createIcon("abc", null);
+        assertSame(a, retriever.createIcon("ABC", null));
+        assertSame(a, retriever.createIcon("abc", new AVListImpl()));
+        assertEquals(1, counter.count.get());
+
+        BufferedImage b = retriever.createIcon("abc", red);
+        assertNotSame(a, b);
+        assertSame(b, retriever.createIcon("abc", red.copy()));
+        assertEquals(2, counter.count.get());
+
+        // Parameters that can't be compared aren't cached.
+        AVList other = new AVListImpl();
+        other.setValue("key", new Object());
+        retriever.createIcon("abc", other);
+        retriever.createIcon("abc", other);
+        assertEquals(4, counter.count.get());
+
+        // Icons that can't be created are requested again.
+        assertNull(retriever.createIcon("XYZ", null));
+        assertNull(retriever.createIcon("XYZ", null));
+        assertEquals(6, counter.count.get());
+    }
+
+    @Test
+    public void testConcurrentRequestsCreateIconOnce() throws Exception
+    {
+        CountingRetriever counter = new CountingRetriever();
+        final CachingIconRetriever retriever = new CachingIconRetriever(counter, 1000000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try
+        {
+            List<Future<BufferedImage>> futures = new ArrayList<Future<BufferedImage>>();
+            for (int i = 0; i < 64; i++)
+            {
+                final String symbolId = "sym" + (i % 4);
+                futures.add(executor.submit(new Callable<BufferedImage>()
+                {
+                    public BufferedImage call()
+                    {
+                        return retriever.createIcon(symbolId, null);
+                    }
+                }));
+            }
+
+            for (int i = 0; i < futures.size(); i++)
+            {
+                assertSame(futures.get(i % 4).get(), futures.get(i).get());
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        assertEquals(4, counter.count.get());
+    }
+
+    @Test
+    public void testWarmUpAndDiskCache() throws Exception
+    {
+        CountingRetriever counter = new CountingRetriever();
+        CachingIconRetriever retriever = new CachingIconRetriever(counter, 1000000);
+        retriever.setCacheDirectory(this.dir);
+
+        retriever.warmUp(Arrays.asList("one", "two", "XBAD"), null).get();
+        assertEquals(3, counter.count.get());
+
+        // Wait for the background writes, which are queued behind the warm-up.
+        retriever.warmUp(Collections.<String>emptyList(), null).get();
+        String[] names = this.dir.list();
+        assertNotNull(names);
+        assertEquals(2, names.length);
+
+        BufferedImage one = retriever.createIcon("ONE", null);
+        assertEquals(3, counter.count.get());
+
+        // A new cache with an empty memory tier reads the icons from disk.
+        CachingIconRetriever other = new CachingIconRetriever(counter, 1000000);
+        other.setCacheDirectory(this.dir);
+        BufferedImage fromDisk = other.createIcon("one", null);
+        assertEquals(3, counter.count.get());
+        assertEquals(one.getWidth(), fromDisk.getWidth());
+        assertEquals(one.getRGB(0, 0), fromDisk.getRGB(0, 0));
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.terrain;
+
+import gov.nasa.worldwind.avlist.*;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.util.*;
+import org.junit.*;
+
+import java.nio.DoubleBuffer;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author tag
+ * @version $Id$
+ */
+public class BasicElevationModelTest
+{
+    protected static final double MISSING_DATA_SIGNAL = -9999;
+    protected static final double MISSING_DATA_REPLACEMENT = -100;
+    protected static final double UNMODIFIED = 12345;
+
+    protected TestElevationModel model;
+    protected Sector sector;
+    protected double[] coords;
+    protected List<LatLon> latLons;
+
+    @Before
+    public void setUp()
+    {
+        this.sector = Sector.fromDegrees(0, 20, 0, 20);
+        this.model = new TestElevationModel(this.sector);
+        this.model.loadTiles();
+
+        // Random locations in and around the model's coverage, plus locations on tile boundaries and NaN coordinates.
+        Random random = new Random(1);
+        int count = 2000;
+        this.coords = new double[2 * count];
+        this.latLons = new ArrayList<LatLon>(count);
+        for (int i = 0; i < count; i++)
+        {
+            double lat;
+            double lon;
+            if (i % 50 == 0)
+            {
+                lat = Double.NaN;
+                lon = 10;
+            }
+            else if (i % 7 == 0)
+            {
+                lat = 5 * random.nextInt(5);
+                lon = 5 * random.nextInt(5);
+            }
+            else
+            {
+                lat = random.nextDouble() * 24 - 2;
+                lon = random.nextDouble() * 24 - 2;
+            }
+
+            this.coords[2 * i] = lat;
+            this.coords[2 * i + 1] = lon;
+            this.latLons.add(Double.isNaN(lat) ? null : LatLon.fromDegrees(lat, lon));
+        }
+    }
+
+    @Test
+    public void testBulkElevationsMatchPerLocationElevations()
+    {
+        for (Level level : this.model.getLevels().getLevels())
+        {
+            double resolution = level.getTexelSize();
+
+            double[] expected = newBuffer(this.latLons.size());
+            double expectedResolution = this.model.getElevations(this.sector, this.latLons, resolution, expected);
+
+            double[] actual = newBuffer(this.latLons.size());
+            double actualResolution = this.model.getElevations(this.sector, this.coords, resolution, actual);
+
+            assertEquals("Resolution differs at level " + level.getLevelNumber(), expectedResolution,
+                actualResolution, 0d);
+            assertArrayEquals("Elevations differ at level " + level.getLevelNumber(), expected, actual, 0d);
+            assertTrue("No missing data sampled", contains(actual, MISSING_DATA_REPLACEMENT));
+        }
+    }
+
+    @Test
+    public void testBulkUnmappedElevationsMatchPerLocationElevations()
+    {
+        double resolution = this.model.getLevels().getLastLevel().getTexelSize();
+
+        double[] expected = newBuffer(this.latLons.size());
+        this.model.getUnmappedElevations(this.sector, this.latLons, resolution, expected);
+
+        double[] actual = newBuffer(this.latLons.size());
+        this.model.getUnmappedElevations(this.sector, this.coords, resolution, actual);
+
+        assertArrayEquals("Unmapped elevations differ", expected, actual, 0d);
+        assertFalse("Missing data replaced", contains(actual, MISSING_DATA_REPLACEMENT));
+    }
+
+    @Test
+    public void testBulkElevationsHonorBufferPosition()
+    {
+        double resolution = this.model.getLevels().getLastLevel().getTexelSize();
+
+        double[] expected = newBuffer(this.latLons.size() - 10);
+        this.model.getElevations(this.sector, this.latLons.subList(10, this.latLons.size()), resolution, expected);
+
+        DoubleBuffer locations = DoubleBuffer.wrap(this.coords);
+        locations.position(20);
+        double[] actual = newBuffer(this.latLons.size() - 10);
+        this.model.getElevations(this.sector, locations, resolution, actual);
+
+        assertArrayEquals("Elevations differ", expected, actual, 0d);
+        assertEquals("Buffer position changed", 20, locations.position());
+    }
+
+    @Test
+    public void testCompoundModelBulkElevationsMatchPerLocationElevations()
+    {
+        CompoundElevationModel compound = new CompoundElevationModel();
+        compound.addElevationModel(new ZeroElevationModel());
+        compound.addElevationModel(this.model);
+
+        double resolution = this.model.getLevels().getLastLevel().getTexelSize();
+
+        double[] expected = newBuffer(this.latLons.size());
+        compound.getElevations(this.sector, this.latLons, resolution, expected);
+
+        double[] actual = newBuffer(this.latLons.size());
+        compound.getElevations(this.sector, this.coords, resolution, actual);
+
+        assertArrayEquals("Compound elevations differ", expected, actual, 0d);
+    }
+
+    protected static double[] newBuffer(int length)
+    {
+        double[] buffer = new double[length];
+        Arrays.fill(buffer, UNMODIFIED);
+        return buffer;
+    }
+
+    protected static boolean contains(double[] array, double value)
+    {
+        for (double d : array)
+        {
+            if (d == value)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * An elevation model whose tiles are generated in memory. Every level zero tile is present, but only every other
+     * level one tile, so that queries at the finest level mix target tiles with fallback tiles.
+     */
+    protected static class TestElevationModel extends BasicElevationModel
+    {
+        protected static final int TILE_SIZE = 11;
+
+        public TestElevationModel(Sector sector)
+        {
+            super(makeParams(sector));
+        }
+
+        protected static AVList makeParams(Sector sector)
+        {
+            AVList params = new AVListImpl();
+            params.setValue(AVKey.SECTOR, sector);
+            params.setValue(AVKey.LEVEL_ZERO_TILE_DELTA, LatLon.fromDegrees(10, 10));
+            params.setValue(AVKey.TILE_ORIGIN, LatLon.ZERO);
+            params.setValue(AVKey.NUM_LEVELS, 2);
+            params.setValue(AVKey.TILE_WIDTH, TILE_SIZE);
+            params.setValue(AVKey.TILE_HEIGHT, TILE_SIZE);
+            params.setValue(AVKey.DATA_CACHE_NAME, "BasicElevationModelTest");
+            params.setValue(AVKey.DATASET_NAME, "BasicElevationModelTest");
+            params.setValue(AVKey.FORMAT_SUFFIX, ".bil");
+            params.setValue(AVKey.MISSING_DATA_SIGNAL, MISSING_DATA_SIGNAL);
+            params.setValue(AVKey.MISSING_DATA_REPLACEMENT, MISSING_DATA_REPLACEMENT);
+            params.setValue(AVKey.ELEVATION_MIN, -500d);
+            params.setValue(AVKey.ELEVATION_MAX, 5000d);
+            return params;
+        }
+
+        public void loadTiles()
+        {
+            Random random = new Random(2);
+
+            for (Level level : this.getLevels().getLevels())
+            {
+                int numTiles = 20 / (int) level.getTileDelta().getLatitude().degrees;
+                for (int row = 0; row < numTiles; row++)
+                {
+                    for (int col = 0; col < numTiles; col++)
+                    {
+                        if (level.getLevelNumber() > 0 && (row + col) % 2 != 0)
+                            continue;
+
+                        double[] values = new double[TILE_SIZE * TILE_SIZE];
+                        for (int i = 0; i < values.length; i++)
+                        {
+                            values[i] = random.nextInt(20) == 0 ? MISSING_DATA_SIGNAL : random.nextDouble() * 4000;
+                        }
+
+                        ElevationTile tile = this.createTile(
+                            new TileKey(level.getLevelNumber(), row, col, level.getCacheName()));
+                        BufferWrapper elevations = new BufferWrapper.DoubleBufferWrapper(DoubleBuffer.wrap(values));
+                        tile.setElevations(elevations, this);
+                        this.addTileToCache(tile, elevations);
+                    }
+                }
+            }
+        }
+
+        @Override
+        protected void requestTile(TileKey key)
+        {
+            // All available tiles are already in memory.
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.geom.*;
+import java.util.*;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author tag
+ * @version $Id$
+ */
+public class ClutterGridTest
+{
+    /** Returns the first rectangle in a list that intersects a rectangle, as BasicClutterFilter once did. */
+    private static Rectangle2D linearSearch(List<Rectangle2D> rects, Rectangle2D rectangle)
+    {
+        for (Rectangle2D rect : rects)
+        {
+            if (rectangle.intersects(rect))
+                return rect;
+        }
+
+        return null;
+    }
+
+    @Test
+    public void testMatchesLinearSearch()
+    {
+        Rectangle viewport = new Rectangle(0, 0, 1000, 700);
+        ClutterGrid grid = new ClutterGrid(50);
+        Random random = new Random(42);
+
+        for (int frame = 0; frame < 3; frame++)
+        {
+            grid.clear(viewport);
+            List<Rectangle2D> accepted = new ArrayList<Rectangle2D>();
+            List<Rectangle2D> all = new ArrayList<Rectangle2D>();
+
+            for (int i = 0; i < 5000; i++)
+            {
+                // Include rectangles partially and entirely outside the viewport.
+                Rectangle2D rect = new Rectangle2D.Double(-100 + random.nextDouble() * 1200,
+                    -100 + random.nextDouble() * 900, random.nextDouble() * 120, random.nextDouble() * 30);
+
+                Rectangle2D expected = linearSearch(all, rect);
+                assertSame(expected, grid.intersects(rect));
+
+                // Add every rectangle to exercise the search order, and accept some as a clutter filter would.
+                all.add(rect);
+                grid.add(rect);
+                if (expected == null)
+                    accepted.add(rect);
+            }
+
+            assertEquals(all.size(), grid.size());
+            assertFalse(accepted.isEmpty());
+        }
+    }
+
+    @Test
+    public void testEmptyAndEdgeRectangles()
+    {
+        ClutterGrid grid = new ClutterGrid(10);
+        grid.clear(new Rectangle(0, 0, 100, 100));
+
+        grid.add(new Rectangle2D.Double(20, 20, 0, 10));
+        assertEquals(0, grid.size());
+        assertNull(grid.intersects(new Rectangle2D.Double(15, 15, 10, 10)));
+
+        Rectangle2D rect = new Rectangle2D.Double(20, 20, 10, 10);
+        grid.add(rect);
+        assertNull(grid.intersects(new Rectangle2D.Double(30, 20, 10, 10))); // touching edges don't intersect
+        assertSame(rect, grid.intersects(new Rectangle2D.Double(29.5, 29.5, 10, 10)));
+        assertNull(grid.intersects(null));
+
+        grid.clear(new Rectangle(0, 0, 100, 100));
+        assertEquals(0, grid.size());
+        assertNull(grid.intersects(rect));
+    }
+}
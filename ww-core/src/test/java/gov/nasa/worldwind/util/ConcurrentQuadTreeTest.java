@@ -0,0 +1,191 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.geom.Sector;
+
+import java.util.*;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author tag
+ * @version $Id$
+ */
+public class ConcurrentQuadTreeTest
+{
+    protected int countItemsInTree(ConcurrentQuadTree<Integer> tree)
+    {
+        // Counts only unique items.
+        Set<Integer> map = new HashSet<Integer>();
+
+        for (Integer i : tree)
+        {
+            map.add(i);
+        }
+
+        return map.size();
+    }
+
+    protected List<double[]> makeCoordinates(int numItems)
+    {
+        Random random = new Random(1);
+        List<double[]> coords = new ArrayList<double[]>(numItems);
+
+        for (int i = 0; i < numItems; i++)
+        {
+            coords.add(new double[] {random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180});
+        }
+
+        return coords;
+    }
+
+    @Test
+    /**
+     * Tests that a bulk-loaded tree answers queries the same way as a tree loaded one item at a time.
+     */
+    public void testBulkLoad()
+    {
+        int numItems = 20000;
+        List<double[]> coords = this.makeCoordinates(numItems);
+        List<Integer> items = new ArrayList<Integer>(numItems);
+
+        ConcurrentQuadTree<Integer> incrementalTree = new ConcurrentQuadTree<Integer>(6, Sector.FULL_SPHERE);
+        for (int i = 0; i < numItems; i++)
+        {
+            items.add(i);
+            incrementalTree.add(i, coords.get(i));
+        }
+
+        ConcurrentQuadTree<Integer> bulkTree = new ConcurrentQuadTree<Integer>(6, Sector.FULL_SPHERE);
+        bulkTree.addAll(items, coords);
+
+        assertEquals("Item count incorrect ", numItems, countItemsInTree(bulkTree));
+
+        Sector sector = Sector.fromDegrees(10, 20, 30, 45);
+        Set<Integer> expected = incrementalTree.getItemsInRegion(sector, null);
+        assertFalse("No items found ", expected.isEmpty());
+        assertEquals("Bulk loaded items differ ", expected, bulkTree.getItemsInRegion(sector, null));
+
+        for (int i = 0; i < numItems; i++)
+        {
+            double[] c = coords.get(i);
+            if (c[0] >= 10 && c[0] <= 20 && c[1] >= 30 && c[1] <= 45)
+                assertTrue("Item in region not found ", expected.contains(i));
+        }
+    }
+
+    @Test
+    /**
+     * Tests that a collection small enough to be loaded on the calling thread is loaded completely.
+     */
+    public void testSmallBulkLoad()
+    {
+        int numItems = 100;
+        List<double[]> coords = this.makeCoordinates(numItems);
+        List<Integer> items = new ArrayList<Integer>(numItems);
+        for (int i = 0; i < numItems; i++)
+        {
+            items.add(i);
+        }
+
+        ConcurrentQuadTree<Integer> tree = new ConcurrentQuadTree<Integer>(4, Sector.FULL_SPHERE);
+        tree.addAll(items, coords);
+
+        assertEquals("Item count incorrect ", numItems, countItemsInTree(tree));
+        for (int i = 0; i < numItems; i++)
+        {
+            assertTrue("Item not found at its location ",
+                tree.getItemsAtLocation(LatLon.fromDegrees(coords.get(i)[0], coords.get(i)[1]), null).contains(i));
+        }
+    }
+
+    @Test
+    /**
+     * Tests removal of items by coordinates and by name.
+     */
+    public void testRemoval()
+    {
+        int numItems = 1000;
+        ConcurrentQuadTree<Integer> tree = new ConcurrentQuadTree<Integer>(5, Sector.FULL_SPHERE);
+
+        for (int i = 1; i <= numItems; i++)
+        {
+            tree.add(i, new double[] {i % 90, i % 180}, Integer.toString(i));
+        }
+        assertEquals("Item count incorrect at start ", numItems, countItemsInTree(tree));
+
+        for (int i = numItems; i > numItems / 2; i--)
+        {
+            tree.remove(i, new double[] {i % 90, i % 180});
+            assertFalse("Item not removed from tree ", tree.contains(i));
+        }
+        assertEquals("Item count incorrect ", numItems / 2, countItemsInTree(tree));
+
+        for (int i = numItems / 2; i > 0; i--)
+        {
+            tree.removeByName(Integer.toString(i));
+            assertNull("Item not fully removed from tree ", tree.getByName(Integer.toString(i)));
+        }
+        assertFalse("Tree not empty ", tree.hasItems());
+        assertTrue("Items found in empty tree ", tree.getItemsInRegion(Sector.FULL_SPHERE, null).isEmpty());
+    }
+
+    @Test
+    /**
+     * Tests that queries made while another thread adds and removes items see every item that is never removed.
+     */
+    public void testConcurrentQueries() throws Exception
+    {
+        final int numItems = 5000;
+        final List<double[]> coords = this.makeCoordinates(numItems);
+        final ConcurrentQuadTree<Integer> tree = new ConcurrentQuadTree<Integer>(6, Sector.FULL_SPHERE);
+
+        // Even items stay in the tree throughout; odd items are repeatedly removed and added again.
+        for (int i = 0; i < numItems; i += 2)
+        {
+            tree.add(i, coords.get(i));
+        }
+
+        Thread writer = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                for (int pass = 0; pass < 10; pass++)
+                {
+                    for (int i = 1; i < numItems; i += 2)
+                    {
+                        tree.add(i, coords.get(i));
+                    }
+
+                    for (int i = 1; i < numItems; i += 2)
+                    {
+                        tree.remove(i, coords.get(i));
+                    }
+                }
+            }
+        });
+        writer.start();
+
+        while (writer.isAlive())
+        {
+            Set<Integer> items = tree.getItemsInRegion(Sector.FULL_SPHERE, null);
+            for (int i = 0; i < numItems; i += 2)
+            {
+                assertTrue("Item missing during update ", items.contains(i));
+            }
+        }
+        writer.join();
+
+        assertEquals("Item count incorrect ", numItems / 2, countItemsInTree(tree));
+    }
+}
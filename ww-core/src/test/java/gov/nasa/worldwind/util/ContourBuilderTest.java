@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author tag
+ * @version $Id$
+ */
+public class ContourBuilderTest
+{
+    private static final int WIDTH = 157;
+    private static final int HEIGHT = 113;
+    private static final double[] THRESHOLDS = {-1.5, -0.75, -0.1, 0, 0.3, 0.9, 1.6};
+
+    private static double[] createValues(int width, int height, double phase)
+    {
+        double[] values = new double[width * height];
+        for (int y = 0; y < height; y++)
+        {
+            for (int x = 0; x < width; x++)
+            {
+                values[x + y * width] = Math.sin(0.11 * x + phase) + Math.cos(0.07 * y) + 0.3 * Math.sin(0.05 * x * y);
+            }
+        }
+
+        return values;
+    }
+
+    /** Returns the segments of a set of contour lines, independent of where each line starts and its direction. */
+    private static Map<String, Integer> segmentsOf(List<List<double[]>> contours)
+    {
+        Map<String, Integer> segments = new HashMap<String, Integer>();
+        for (List<double[]> contour : contours)
+        {
+            for (int i = 1; i < contour.size(); i++)
+            {
+                String a = String.format("%.9f,%.9f", contour.get(i - 1)[0], contour.get(i - 1)[1]);
+                String b = String.format("%.9f,%.9f", contour.get(i)[0], contour.get(i)[1]);
+                if (a.equals(b))
+                    continue;
+
+                String key = a.compareTo(b) < 0 ? a + " " + b : b + " " + a;
+                Integer count = segments.get(key);
+                segments.put(key, count != null ? count + 1 : 1);
+            }
+        }
+
+        return segments;
+    }
+
+    private static int closedCount(List<List<double[]>> contours)
+    {
+        int count = 0;
+        for (List<double[]> contour : contours)
+        {
+            if (Arrays.equals(contour.get(0), contour.get(contour.size() - 1)))
+                count++;
+        }
+
+        return count;
+    }
+
+    @Test
+    public void testTiledMatchesSingleValue()
+    {
+        ContourBuilder builder = new ContourBuilder(WIDTH, HEIGHT, createValues(WIDTH, HEIGHT, 0));
+        builder.setTileSize(16);
+
+        List<List<List<double[]>>> tiled = builder.buildContourLines(THRESHOLDS);
+        assertEquals(THRESHOLDS.length, tiled.size());
+
+        for (int i = 0; i < THRESHOLDS.length; i++)
+        {
+            List<List<double[]>> single = builder.buildContourLines(THRESHOLDS[i]);
+            assertFalse(single.isEmpty());
+            assertEquals(single.size(), tiled.get(i).size());
+            assertEquals(closedCount(single), closedCount(tiled.get(i)));
+            assertEquals(segmentsOf(single), segmentsOf(tiled.get(i)));
+        }
+    }
+
+    @Test
+    public void testTiledMatchesSingleValueWithMissingAndEqualValues()
+    {
+        // Quantized values put corners exactly at the threshold values, and NaN values mark missing data.
+        double[] values = createValues(WIDTH, HEIGHT, 0);
+        for (int i = 0; i < values.length; i++)
+        {
+            values[i] = i % 37 == 0 ? Double.NaN : Math.round(values[i] * 10) / 10d;
+        }
+
+        ContourBuilder builder = new ContourBuilder(WIDTH, HEIGHT, values);
+        builder.setTileSize(16);
+
+        double[] thresholds = {-1.5, -0.7, 0, 0.3, 0.9, 1.6};
+        List<List<List<double[]>>> tiled = builder.buildContourLines(thresholds);
+        for (int i = 0; i < thresholds.length; i++)
+        {
+            assertEquals(segmentsOf(builder.buildContourLines(thresholds[i])), segmentsOf(tiled.get(i)));
+        }
+    }
+
+    @Test
+    public void testIncrementalUpdate()
+    {
+        double[] values = createValues(WIDTH, HEIGHT, 0);
+        ContourBuilder builder = new ContourBuilder(WIDTH, HEIGHT, values);
+        builder.setTileSize(20);
+        builder.buildContourLines(THRESHOLDS);
+
+        // Replace a region with the values of a shifted field, and compare with a builder created from scratch.
+        double[] changed = createValues(WIDTH, HEIGHT, 1);
+        int x = 30, y = 41, regionWidth = 45, regionHeight = 12;
+        double[] regionValues = new double[regionWidth * regionHeight];
+        for (int row = 0; row < regionHeight; row++)
+        {
+            System.arraycopy(changed, x + (y + row) * WIDTH, regionValues, row * regionWidth, regionWidth);
+        }
+        builder.updateValues(x, y, regionWidth, regionHeight, regionValues);
+
+        ContourBuilder expected = new ContourBuilder(WIDTH, HEIGHT, values.clone());
+        List<List<List<double[]>>> updated = builder.buildContourLines(THRESHOLDS);
+        for (int i = 0; i < THRESHOLDS.length; i++)
+        {
+            assertEquals(segmentsOf(expected.buildContourLines(THRESHOLDS[i])), segmentsOf(updated.get(i)));
+        }
+    }
+
+    @Test
+    public void testClosedLoopAcrossTiles()
+    {
+        // A single peak in the center of the array yields one closed contour line at each threshold value.
+        int size = 41;
+        double[] values = new double[size * size];
+        for (int y = 0; y < size; y++)
+        {
+            for (int x = 0; x < size; x++)
+            {
+                values[x + y * size] = -Math.hypot(x - 20.3, y - 19.6);
+            }
+        }
+
+        ContourBuilder builder = new ContourBuilder(size, size, values);
+        builder.setTileSize(7);
+
+        for (List<List<double[]>> contours : builder.buildContourLines(new double[] {-3, -10, -15}))
+        {
+            assertEquals(1, contours.size());
+            assertEquals(1, closedCount(contours));
+        }
+    }
+
+    @Test
+    public void testOutOfRangeValue()
+    {
+        ContourBuilder builder = new ContourBuilder(WIDTH, HEIGHT, createValues(WIDTH, HEIGHT, 0));
+
+        assertTrue(builder.buildContourLines(10).isEmpty());
+        assertTrue(builder.buildContourLines(new double[] {10}).get(0).isEmpty());
+    }
+}
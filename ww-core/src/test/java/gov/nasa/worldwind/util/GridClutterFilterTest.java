@@ -0,0 +1,175 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.render.*;
+import org.junit.*;
+
+import java.awt.geom.*;
+import java.util.*;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author tag
+ * @version $Id$
+ */
+public class GridClutterFilterTest
+{
+    protected TestFilter filter;
+
+    @Before
+    public void setUp()
+    {
+        this.filter = new TestFilter();
+    }
+
+    @Test
+    public void testTextKeysCompareContent()
+    {
+        Position position = Position.fromDegrees(10, 20, 0);
+        Object key = this.filter.getTextKey(new UserFacingText("Pasadena", position));
+
+        // Layers may create a new text object, and a new character sequence, for the same name each frame.
+        assertEquals(key, this.filter.getTextKey(
+            new UserFacingText(new StringBuilder("Pasadena"), Position.fromDegrees(10, 20, 0))));
+        assertEquals(key.hashCode(), this.filter.getTextKey(
+            new UserFacingText(new StringBuilder("Pasadena"), Position.fromDegrees(10, 20, 0))).hashCode());
+        assertFalse(key.equals(
+            this.filter.getTextKey(new UserFacingText("Pasadena", Position.fromDegrees(10, 21, 0)))));
+        assertFalse(key.equals(this.filter.getTextKey(new UserFacingText("Altadena", position))));
+        assertEquals(this.filter.getTextKey(new UserFacingText("Pasadena", null)),
+            this.filter.getTextKey(new UserFacingText("Pasadena", null)));
+    }
+
+    @Test
+    public void testHigherPriorityIsAccepted()
+    {
+        TestShape low = new TestShape("low", 1, 0, 0);
+        TestShape high = new TestShape("high", 2, 5, 0);
+        TestShape separate = new TestShape("separate", 0, 100, 0);
+
+        assertEquals(set(high, separate), this.apply(low, high, separate));
+    }
+
+    @Test
+    public void testPreviouslyAcceptedShapesAreFavored()
+    {
+        assertEquals(set("a"), keys(this.apply(new TestShape("a", 1, 0, 0), new TestShape("b", 1, 5, 0))));
+
+        // The shapes are recreated, and now arrive in the opposite order.
+        assertEquals(set("a"), keys(this.apply(new TestShape("b", 1, 5, 0), new TestShape("a", 1, 0, 0))));
+
+        // A shape of higher priority still displaces the previous frame's shape.
+        assertEquals(set("c"), keys(this.apply(new TestShape("a", 1, 0, 0), new TestShape("c", 2, 5, 0))));
+    }
+
+    @Test
+    public void testShapesAreConsideredInOrderWithoutTemporalCoherence()
+    {
+        this.filter.setTemporalCoherence(false);
+
+        assertEquals(set("a"), keys(this.apply(new TestShape("a", 1, 0, 0), new TestShape("b", 1, 5, 0))));
+        assertEquals(set("b"), keys(this.apply(new TestShape("b", 1, 5, 0), new TestShape("a", 1, 0, 0))));
+    }
+
+    @Test
+    public void testShapesWithoutBoundsAreSkipped()
+    {
+        TestShape unbounded = new TestShape("unbounded", 2, 0, 0);
+        unbounded.bounds = null;
+        TestShape bounded = new TestShape("bounded", 1, 0, 0);
+
+        assertEquals(set(bounded), this.apply(unbounded, bounded));
+    }
+
+    protected Set<OrderedRenderable> apply(TestShape... shapes)
+    {
+        DrawContext dc = new DrawContextImpl();
+        this.filter.apply(dc, new ArrayList<Declutterable>(Arrays.asList(shapes)));
+
+        Set<OrderedRenderable> accepted = new HashSet<OrderedRenderable>();
+        OrderedRenderable or;
+        while ((or = dc.pollOrderedRenderables()) != null)
+        {
+            accepted.add(or);
+        }
+
+        return accepted;
+    }
+
+    protected static <T> Set<T> set(T... items)
+    {
+        return new HashSet<T>(Arrays.asList(items));
+    }
+
+    protected static Set<String> keys(Set<OrderedRenderable> shapes)
+    {
+        Set<String> keys = new HashSet<String>();
+        for (OrderedRenderable shape : shapes)
+        {
+            keys.add(((TestShape) shape).key);
+        }
+
+        return keys;
+    }
+
+    /** A filter that identifies and prioritizes test shapes by their key and priority. */
+    protected static class TestFilter extends GridClutterFilter
+    {
+        @Override
+        protected double getPriority(Declutterable shape)
+        {
+            return shape instanceof TestShape ? ((TestShape) shape).priority : super.getPriority(shape);
+        }
+
+        @Override
+        protected Object getShapeKey(Declutterable shape)
+        {
+            return shape instanceof TestShape ? ((TestShape) shape).key : super.getShapeKey(shape);
+        }
+    }
+
+    /** A 10 by 10 pixel shape. */
+    protected static class TestShape implements Declutterable
+    {
+        protected final String key;
+        protected final double priority;
+        protected Rectangle2D bounds;
+
+        public TestShape(String key, double priority, double x, double y)
+        {
+            this.key = key;
+            this.priority = priority;
+            this.bounds = new Rectangle2D.Double(x, y, 10, 10);
+        }
+
+        public boolean isEnableDecluttering()
+        {
+            return true;
+        }
+
+        public Rectangle2D getBounds(DrawContext dc)
+        {
+            return this.bounds;
+        }
+
+        public double getDistanceFromEye()
+        {
+            return 0;
+        }
+
+        public void pick(DrawContext dc, java.awt.Point pickPoint)
+        {
+        }
+
+        public void render(DrawContext dc)
+        {
+        }
+    }
+}
@@ -5,18 +5,24 @@
  */
 package gov.nasa.worldwind.util;
 
+import gov.nasa.worldwind.exception.WWTimeoutException;
 import gov.nasa.worldwind.geom.*;
 import gov.nasa.worldwind.globes.*;
 import gov.nasa.worldwind.terrain.*;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Ignore;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author tag
@@ -258,4 +264,154 @@ public class HighResolutionTerrainTest
             currentIntersections.clear();
         }
     }
+
+    protected static HighResolutionTerrain createFlatTerrain(Sector sector)
+    {
+        Globe globe = new Earth();
+        globe.setElevationModel(new ZeroElevationModel());
+
+        return new HighResolutionTerrain(globe, sector, null, 1.0);
+    }
+
+    protected static List<Position> generateDescendingLines(Sector sector, int numLines)
+    {
+        // Each line starts above the terrain and ends below it, so every line intersects the terrain.
+        Random random = new Random(1);
+        List<Position> positions = new ArrayList<Position>(2 * numLines);
+        for (int i = 0; i < numLines; i++)
+        {
+            double lat = sector.getMinLatitude().degrees + 0.1 * sector.getDeltaLatDegrees()
+                + 0.8 * random.nextDouble() * sector.getDeltaLatDegrees();
+            double lon = sector.getMinLongitude().degrees + 0.1 * sector.getDeltaLonDegrees()
+                + 0.8 * random.nextDouble() * sector.getDeltaLonDegrees();
+            positions.add(Position.fromDegrees(lat, lon, 100));
+            positions.add(Position.fromDegrees(lat + 0.001, lon + 0.001, -100));
+        }
+
+        return positions;
+    }
+
+    @Test
+    public void testSubmitIntersections() throws Exception
+    {
+        Sector sector = Sector.fromDegrees(34.4, 34.5, -119.7, -119.6);
+        HighResolutionTerrain hrt = createFlatTerrain(sector);
+        List<Position> positions = generateDescendingLines(sector, 500);
+
+        final AtomicInteger numCallbacks = new AtomicInteger();
+        final AtomicReference<Exception> error = new AtomicReference<Exception>();
+        Future<Integer> batch = hrt.submitIntersections(positions, new HighResolutionTerrain.IntersectionCallback()
+        {
+            public void intersection(Position pA, Position pB, Intersection[] intersections)
+            {
+                numCallbacks.incrementAndGet();
+            }
+
+            public void exception(Exception exception)
+            {
+                error.compareAndSet(null, exception);
+            }
+        }, 0);
+
+        assertEquals("Intersected line count incorrect ", 500, (int) batch.get(5, TimeUnit.MINUTES));
+        assertNull("Intersection failed ", error.get());
+        assertEquals("Callback count incorrect ", 500, numCallbacks.get());
+        assertTrue("Batch not done ", batch.isDone());
+    }
+
+    @Test
+    public void testCancelIntersections() throws Exception
+    {
+        Sector sector = Sector.fromDegrees(34.4, 34.5, -119.7, -119.6);
+        HighResolutionTerrain hrt = createFlatTerrain(sector);
+        List<Position> positions = generateDescendingLines(sector, 100000);
+
+        ExecutorService service = Executors.newFixedThreadPool(2);
+        hrt.setIntersectionService(service);
+        try
+        {
+            Future<Integer> batch = hrt.submitIntersections(positions, new HighResolutionTerrain.IntersectionCallback()
+            {
+                public void intersection(Position pA, Position pB, Intersection[] intersections)
+                {
+                }
+
+                public void exception(Exception exception)
+                {
+                }
+            }, 0);
+
+            assertTrue("Batch not cancelled ", batch.cancel(true));
+            assertTrue("Batch not marked cancelled ", batch.isCancelled());
+            assertTrue("Cancelled batch not done ", batch.isDone());
+
+            try
+            {
+                batch.get();
+                fail("Cancelled batch returned a result");
+            }
+            catch (CancellationException e)
+            {
+                // Expected.
+            }
+        }
+        finally
+        {
+            service.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testIntersectionsTimeOut() throws Exception
+    {
+        Sector sector = Sector.fromDegrees(34.4, 34.5, -119.7, -119.6);
+        Globe globe = new Earth();
+        globe.setElevationModel(new ZeroElevationModel());
+
+        // Each intersection takes long enough that the batch exceeds its timeout well before all lines are done.
+        HighResolutionTerrain hrt = new HighResolutionTerrain(globe, sector, null, 1.0)
+        {
+            @Override
+            public Intersection[] intersect(Position pA, Position pB)
+            {
+                try
+                {
+                    Thread.sleep(20);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+
+                return super.intersect(pA, pB);
+            }
+        };
+        List<Position> positions = generateDescendingLines(sector, 200);
+
+        final AtomicInteger numCallbacks = new AtomicInteger();
+        Future<Integer> batch = hrt.submitIntersections(positions, new HighResolutionTerrain.IntersectionCallback()
+        {
+            public void intersection(Position pA, Position pB, Intersection[] intersections)
+            {
+                numCallbacks.incrementAndGet();
+            }
+
+            public void exception(Exception exception)
+            {
+            }
+        }, 100);
+
+        try
+        {
+            batch.get(1, TimeUnit.MINUTES);
+            fail("Timed out batch returned a result");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue("Timeout cause incorrect ", e.getCause() instanceof WWTimeoutException);
+        }
+
+        assertTrue("Timed out batch not done ", batch.isDone());
+        assertTrue("Timed out batch intersected every line ", numCallbacks.get() < 200);
+    }
 }
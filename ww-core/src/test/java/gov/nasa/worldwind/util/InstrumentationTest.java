@@ -0,0 +1,169 @@
+/**
+ * Copyright (C) 2014, United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration,
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import org.junit.*;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author tag
+ * @version $Id$
+ */
+public class InstrumentationTest
+{
+    protected boolean wasEnabled;
+
+    @Before
+    public void setUp()
+    {
+        this.wasEnabled = Instrumentation.isEnabled();
+        Instrumentation.setEnabled(true);
+        Instrumentation.reset();
+    }
+
+    @After
+    public void tearDown()
+    {
+        Instrumentation.setJMXEnabled(false);
+        Instrumentation.reset();
+        Instrumentation.setEnabled(this.wasEnabled);
+    }
+
+    @Test
+    public void testMetricValues()
+    {
+        InstrumentationMetric metric = new InstrumentationMetric("Test.Counter", false);
+        for (int i = 1; i <= 100; i++)
+        {
+            metric.record(i);
+        }
+
+        assertEquals(100, metric.getCount());
+        assertEquals(5050, metric.getTotal(), 0);
+        assertEquals(1, metric.getMin(), 0);
+        assertEquals(100, metric.getMax(), 0);
+        assertEquals(50.5, metric.getMean(), 0);
+
+        // Percentiles are the upper bounds of the histogram buckets, which are accurate to within a factor of two.
+        assertEquals(63, metric.getMedian(), 0);
+        assertEquals(100, metric.get95thPercentile(), 0);
+        assertTrue(metric.getMedian() >= 50 && metric.getMedian() < 100);
+
+        long[] histogram = metric.getHistogram();
+        assertEquals(0, histogram[0]);
+        assertEquals(1, histogram[1]); // 1
+        assertEquals(2, histogram[2]); // 2..3
+        assertEquals(37, histogram[7]); // 64..100
+
+        metric.reset();
+        assertEquals(0, metric.getCount());
+        assertEquals(0, metric.getMax(), 0);
+        assertEquals(0, metric.getMedian(), 0);
+    }
+
+    @Test
+    public void testTimerUnits()
+    {
+        InstrumentationMetric metric = new InstrumentationMetric("Test.Timer", true);
+        metric.record(2500000);
+
+        assertEquals(InstrumentationMetric.UNIT_MILLISECONDS, metric.getUnit());
+        assertEquals(2.5, metric.getTotal(), 1e-9);
+        assertEquals(2.5, metric.getMax(), 1e-9);
+    }
+
+    @Test
+    public void testFrames()
+    {
+        Instrumentation.count("Test.Frames", 3);
+        Instrumentation.count("Test.Frames", 4);
+        Instrumentation.endFrame();
+        Instrumentation.endFrame(); // a frame in which the metric isn't recorded
+        Instrumentation.count("Test.Frames", 20);
+        Instrumentation.endFrame();
+
+        InstrumentationMetric metric = Instrumentation.getMetric("Test.Frames");
+        assertNotNull(metric);
+        assertEquals(3, Instrumentation.getFrameCount());
+        assertEquals(3, metric.getCount());
+        assertEquals(2, metric.getFrameCount());
+        assertEquals(20, metric.getLastFrameTotal(), 0);
+        assertEquals(13.5, metric.getFrameMean(), 0);
+        assertEquals(20, metric.getFrameMax(), 0);
+
+        long[] frameHistogram = metric.getFrameHistogram();
+        assertEquals(1, frameHistogram[3]); // 7
+        assertEquals(1, frameHistogram[5]); // 20
+    }
+
+    @Test
+    public void testTimers() throws Exception
+    {
+        long start = Instrumentation.start();
+        assertTrue(start != 0);
+        Thread.sleep(2);
+        Instrumentation.stop("Test.Timer", start);
+        Instrumentation.stop("Test.Timer", "source", Instrumentation.start());
+
+        InstrumentationMetric metric = Instrumentation.getMetric("Test.Timer");
+        assertNotNull(metric);
+        assertEquals(1, metric.getCount());
+        assertTrue(metric.getTotal() >= 2);
+        assertNotNull(Instrumentation.getMetric("Test.Timer[java.lang.String]"));
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        Instrumentation.setEnabled(false);
+
+        assertEquals(0, Instrumentation.start());
+        Instrumentation.stop("Test.Disabled", System.nanoTime());
+        Instrumentation.count("Test.Disabled", 1);
+        Instrumentation.endFrame();
+
+        assertNull(Instrumentation.getMetric("Test.Disabled"));
+        assertEquals(0, Instrumentation.getFrameCount());
+    }
+
+    @Test
+    public void testJSON()
+    {
+        Instrumentation.count("Test.\"JSON\"", 5);
+        Instrumentation.endFrame();
+
+        String json = Instrumentation.toJSON();
+        assertTrue(json.startsWith("{\"timestamp\":"));
+        assertTrue(json.contains("\"frameCount\":1,"));
+        assertTrue(json.contains("{\"name\":\"Test.\\\"JSON\\\"\",\"unit\":\"count\",\"count\":1,\"total\":5.0,"));
+        assertTrue(json.contains("\"histogram\":[[7.0,1]]"));
+        assertTrue(json.trim().endsWith("]}"));
+    }
+
+    @Test
+    public void testJMX() throws Exception
+    {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        Instrumentation.count("Test.JMX1", 1);
+        Instrumentation.setJMXEnabled(true);
+        Instrumentation.count("Test.JMX2", 2);
+
+        ObjectName name1 = Instrumentation.getObjectName(Instrumentation.getMetric("Test.JMX1"));
+        ObjectName name2 = Instrumentation.getObjectName(Instrumentation.getMetric("Test.JMX2"));
+        assertTrue(server.isRegistered(name1));
+        assertTrue(server.isRegistered(name2));
+        assertEquals(2.0, server.getAttribute(name2, "Total"));
+
+        Instrumentation.setJMXEnabled(false);
+        assertFalse(server.isRegistered(name1));
+        assertFalse(server.isRegistered(name2));
+    }
+}
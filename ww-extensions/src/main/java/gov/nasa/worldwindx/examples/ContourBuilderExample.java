@@ -63,12 +63,13 @@ public class ContourBuilderExample extends ApplicationTemplate
             // the first value indicating the value at the upper-left corner.
             ContourBuilder cb = new ContourBuilder(this.arrayWidth, this.arrayHeight, this.arrayValues);
 
-            // Build contour lines for a list of pre-determined threshold values. Contour line coordinates are computed
-            // by mapping the rectangular array's coordinates to a geographic sector.
-            for (double value : Arrays.asList(0.083, 0.250, 0.416, 0.583, 0.75, 0.916))
+            // Build contour lines for a list of pre-determined threshold values in a single call. Contour line
+            // coordinates are computed by mapping the rectangular array's coordinates to a geographic sector.
+            double[] values = {0.083, 0.250, 0.416, 0.583, 0.75, 0.916};
+            List<List<List<Position>>> contourLists = cb.buildContourLines(values, this.arraySector, 0); // altitude 0
+            for (int i = 0; i < values.length; i++)
             {
-                List<List<Position>> contourList = cb.buildContourLines(value, this.arraySector, 0); // altitude 0
-                this.addContourShapes(contourList, value, contourLayer);
+                this.addContourShapes(contourLists.get(i), values[i], contourLayer);
             }
         }
 